@@ -14,13 +14,10 @@
  */
 package org.candlepin.common.jackson;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 
 
@@ -28,46 +25,137 @@ import java.util.Map;
  * DynamicFilterData
  *
  * Class to hold filtering data to be passed from DynamicJsonFilter
- * to DynamicPropertyFilter
+ * to DynamicPropertyFilter.
+ *
+ * The include and exclude filters are compiled into a trie of path nodes the first time they are
+ * evaluated, with the outcome of each node precomputed. This lets the DynamicPropertyFilter
+ * resolve a property by stepping through the trie one path segment at a time, without building
+ * the property path or comparing it against every filter.
  */
 public class DynamicFilterData {
-    private static Logger log = LoggerFactory.getLogger(DynamicFilterData.class);
 
-    private static class Match {
-        private final int level;
-        private final boolean exact;
+    /**
+     * A node of the compiled filter trie, representing a property path. Nodes reached by
+     * stepping off the trie represent every path below the last matching node, as only the
+     * filters which matched up to that point can still apply to them.
+     */
+    static final class PathNode {
+        private final Map<String, PathNode> children;
+
+        // Whether an include or exclude filter ends at, or continues below, this node
+        private boolean includeEnds;
+        private boolean excludeEnds;
+        private boolean includesBelow;
+        private boolean excludesBelow;
+
+        private boolean excluded;
+        private PathNode offTrie;
+
+        private PathNode(boolean onTrie) {
+            this.children = onTrie ? new TreeMap<>(String.CASE_INSENSITIVE_ORDER) : null;
+        }
 
-        public Match(int level, boolean exact) {
-            this.level = level;
-            this.exact = exact;
+        /**
+         * Fetches the node for the given property of the path represented by this node.
+         *
+         * @param name
+         *  the name of the property
+         *
+         * @return
+         *  the node representing the path of the property
+         */
+        PathNode getChild(String name) {
+            if (this.children != null) {
+                PathNode child = this.children.get(name);
+                if (child != null) {
+                    return child;
+                }
+            }
+
+            return this.offTrie;
         }
 
-        public int getLevel() {
-            return this.level;
+        /**
+         * Checks whether the path represented by this node is excluded by the filters.
+         *
+         * @return
+         *  true if the path is excluded; false otherwise
+         */
+        boolean isExcluded() {
+            return this.excluded;
         }
 
-        public boolean isExact() {
-            return this.exact;
+        /**
+         * Precomputes the outcome of this node and its descendants.
+         *
+         * @param depth
+         *  the depth of this node in the trie
+         *
+         * @param includeDepth
+         *  the depth of the deepest include filter ending above this node, or zero if none do
+         *
+         * @param excludeDepth
+         *  the depth of the deepest exclude filter ending above this node, or zero if none do
+         *
+         * @param whitelist
+         *  whether or not paths not matched by any filter are excluded
+         */
+        private void compile(int depth, int includeDepth, int excludeDepth, boolean whitelist) {
+            includeDepth = this.includeEnds ? depth : includeDepth;
+            excludeDepth = this.excludeEnds ? depth : excludeDepth;
+
+            // Impl note: the levels are offset by one so that a level of zero indicates no match.
+            // Filters ending at or above this path win over those which only continue below it,
+            // and of those, the deepest filter wins.
+            boolean iExact = includeDepth > 0;
+            boolean eExact = excludeDepth > 0;
+            int iLevel = iExact ? includeDepth + 1 : (this.includesBelow ? depth + 1 : 0);
+            int eLevel = eExact ? excludeDepth + 1 : (this.excludesBelow ? depth + 1 : 0);
+
+            if (iExact && iLevel > eLevel) {
+                this.excluded = false;
+            }
+            else if (eExact && eLevel > iLevel) {
+                this.excluded = true;
+            }
+            else {
+                this.excluded = whitelist && (iLevel < 1 || iLevel < eLevel);
+            }
+
+            if (this.children != null) {
+                this.offTrie = new PathNode(false);
+                this.offTrie.compile(depth + 1, includeDepth, excludeDepth, whitelist);
+
+                for (PathNode child : this.children.values()) {
+                    child.compile(depth + 1, includeDepth, excludeDepth, whitelist);
+                }
+            }
+            else {
+                // Every path below an off-trie node resolves the same way
+                this.offTrie = this;
+            }
         }
     }
 
-
-    private Map<String, List<String>> includeFilters;
-    private Map<String, List<String>> excludeFilters;
+    private Map<String, String[]> includeFilters;
+    private Map<String, String[]> excludeFilters;
     private boolean whitelist;
 
+    private PathNode root;
+
     public DynamicFilterData() {
         this(false);
     }
 
     public DynamicFilterData(boolean whitelist) {
-        this.includeFilters = new HashMap<>();
-        this.excludeFilters = new HashMap<>();
+        this.includeFilters = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        this.excludeFilters = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
         this.whitelist = whitelist;
     }
 
     public void setWhitelistMode(boolean whitelist) {
         this.whitelist = whitelist;
+        this.root = null;
     }
 
     public void includeAttribute(String path) {
@@ -86,57 +174,68 @@ public class DynamicFilterData {
         this.addAttributeFilter(this.excludeFilters, path);
     }
 
-    private void addAttributeFilter(Map<String, List<String>> filters, String path) {
-        String[] chunklets = path.split("\\.");
-        filters.put(path.toLowerCase(), Arrays.asList(chunklets));
+    private void addAttributeFilter(Map<String, String[]> filters, String path) {
+        filters.put(path, path.split("\\."));
+        this.root = null;
     }
 
     public boolean isAttributeExcluded(String path) {
-        String[] chunklets = path.split("\\.");
-        return this.isAttributeExcluded(Arrays.asList(chunklets));
+        return this.isAttributeExcluded(Arrays.asList(path.split("\\.")));
     }
 
     public boolean isAttributeExcluded(List<String> path) {
-        Match iLevel = this.getFilterLevel(this.includeFilters, path);
-        Match eLevel = this.getFilterLevel(this.excludeFilters, path);
-
-        if (iLevel.isExact() && iLevel.getLevel() > eLevel.getLevel()) {
-            return false;
+        PathNode node = this.getRootNode();
+        for (String chunk : path) {
+            node = node.getChild(chunk);
         }
 
-        if (eLevel.isExact() && eLevel.getLevel() > iLevel.getLevel()) {
-            return true;
-        }
-
-        return this.whitelist && (iLevel.getLevel() < 1 || iLevel.getLevel() < eLevel.getLevel());
+        return node.isExcluded();
     }
 
-    private Match getFilterLevel(Map<String, List<String>> filters, List<String> path) {
-        int level = 0;
-        boolean exact = false;
+    /**
+     * Fetches the root node of the compiled filter trie, compiling the filters if they have not
+     * yet been compiled or have changed since.
+     *
+     * @return
+     *  the root node of the compiled filter trie
+     */
+    PathNode getRootNode() {
+        PathNode node = this.root;
+
+        if (node == null) {
+            node = new PathNode(true);
 
-        for (List<String> fpath : filters.values()) {
-            boolean match = false;
-            int i = 0;
+            this.addToTrie(node, this.includeFilters, true);
+            this.addToTrie(node, this.excludeFilters, false);
 
-            do {
-                String fchunk = fpath.get(i);
-                String pchunk = path.get(i);
+            node.compile(0, 0, 0, this.whitelist);
+            this.root = node;
+        }
 
-                match = fchunk != null && fchunk.equalsIgnoreCase(pchunk);
-                ++i;
-            } while (match && i < path.size() && i < fpath.size());
+        return node;
+    }
 
-            if (match && i > level) {
-                level = i + 1;
-                exact = i >= fpath.size();
+    private void addToTrie(PathNode root, Map<String, String[]> filters, boolean include) {
+        for (String[] fpath : filters.values()) {
+            PathNode node = root;
 
-                if (exact) {
-                    break;
+            for (String chunk : fpath) {
+                if (include) {
+                    node.includesBelow = true;
+                }
+                else {
+                    node.excludesBelow = true;
                 }
+
+                node = node.children.computeIfAbsent(chunk, key -> new PathNode(true));
             }
-        }
 
-        return new Match(level, exact);
+            if (include) {
+                node.includeEnds = true;
+            }
+            else {
+                node.excludeEnds = true;
+            }
+        }
     }
 }
@@ -21,9 +21,6 @@ import com.fasterxml.jackson.databind.ser.PropertyWriter;
 
 import org.jboss.resteasy.spi.ResteasyProviderFactory;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * DynamicPropertyFilter
  *
@@ -38,23 +35,33 @@ public class DynamicPropertyFilter extends CheckableBeanPropertyFilter {
         DynamicFilterData filterData = ResteasyProviderFactory.getContextData(DynamicFilterData.class);
 
         if (filterData != null) {
-            List<String> path = new ArrayList<>(10);
-            path.clear();
-            path.add(0, writer.getName());
-
-            // Build full path from the context...
+            // The output context is that of the object owning the property; the names of the
+            // properties leading to it are held by its parents
             JsonStreamContext context = jsonGenerator.getOutputContext();
-            while ((context = context.getParent()) != null) {
-                String cname = context.getCurrentName();
-                if (cname != null) {
-                    path.add(0, cname);
-                }
-            }
-
-            return !filterData.isAttributeExcluded(path);
+            DynamicFilterData.PathNode node = resolve(filterData, context.getParent());
+
+            return !node.getChild(writer.getName()).isExcluded();
         }
 
         // Allow serialization by default
         return true;
     }
+
+    /**
+     * Resolves the filter trie node for the path leading to the given context, stepping through
+     * the trie from the outermost context inward. Contexts without a name, such as those of
+     * arrays, do not add to the path.
+     */
+    private static DynamicFilterData.PathNode resolve(DynamicFilterData filterData,
+        JsonStreamContext context) {
+
+        if (context == null) {
+            return filterData.getRootNode();
+        }
+
+        DynamicFilterData.PathNode node = resolve(filterData, context.getParent());
+        String name = context.getCurrentName();
+
+        return name != null ? node.getChild(name) : node;
+    }
 }
@@ -24,6 +24,7 @@ package org.candlepin.common.paging;
 public class Page<T> {
     private T pageData;
     private Integer maxRecords;
+    private boolean maxRecordsEstimated;
     private PageRequest pageRequest;
 
     public T getPageData() {
@@ -42,6 +43,21 @@ public class Page<T> {
         this.maxRecords = maxRecords;
     }
 
+    /**
+     * Checks whether or not the total record count of this page is an estimate, rather than an
+     * exact count of the records available.
+     *
+     * @return
+     *  true if the total record count is an estimate; false otherwise
+     */
+    public boolean isMaxRecordsEstimated() {
+        return maxRecordsEstimated;
+    }
+
+    public void setMaxRecordsEstimated(boolean maxRecordsEstimated) {
+        this.maxRecordsEstimated = maxRecordsEstimated;
+    }
+
     public PageRequest getPageRequest() {
         return pageRequest;
     }
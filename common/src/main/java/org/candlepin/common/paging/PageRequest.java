@@ -30,6 +30,7 @@ public class PageRequest {
     public static final String SORT_BY_PARAM = "sort_by";
     public static final String PAGE_PARAM = "page";
     public static final String PER_PAGE_PARAM = "per_page";
+    public static final String EXACT_COUNT_PARAM = "exact_count";
 
     public static final Integer DEFAULT_PAGE = Integer.valueOf(1);
     public static final Integer DEFAULT_PER_PAGE = Integer.valueOf(10);
@@ -39,6 +40,7 @@ public class PageRequest {
     private Integer perPage;
     private String sortBy;
     private Order order;
+    private boolean exactCount;
 
     public Integer getPage() {
         return page;
@@ -72,6 +74,22 @@ public class PageRequest {
         this.order = order;
     }
 
+    /**
+     * Checks whether or not the caller requires the total record count of the page to be exact.
+     * Where counting every record is expensive, such as when results must be filtered after they
+     * are fetched, an estimated total may otherwise be returned.
+     *
+     * @return
+     *  true if the total record count must be exact; false otherwise
+     */
+    public boolean isExactCount() {
+        return exactCount;
+    }
+
+    public void setExactCount(boolean exactCount) {
+        this.exactCount = exactCount;
+    }
+
     public boolean isPaging() {
         return perPage != null && page != null;
     }
@@ -56,6 +56,7 @@ public class LinkHeaderResponseFilter implements ContainerResponseFilter {
 
     public static final String LINK_HEADER = "Link";
     public static final String TOTAL_RECORDS_COUNT = "X-total-count";
+    public static final String TOTAL_RECORDS_COUNT_ESTIMATED = "X-total-count-estimated";
 
     private String apiUrlPrefixKey;
     private Configuration config;
@@ -119,6 +120,10 @@ public class LinkHeaderResponseFilter implements ContainerResponseFilter {
         }
 
         respContext.getHeaders().add(TOTAL_RECORDS_COUNT, page.getMaxRecords());
+
+        if (page.isMaxRecordsEstimated()) {
+            respContext.getHeaders().add(TOTAL_RECORDS_COUNT_ESTIMATED, Boolean.TRUE);
+        }
     }
 
     protected String buildPageLink(UriBuilder b, int value) {
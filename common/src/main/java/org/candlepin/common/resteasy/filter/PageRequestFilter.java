@@ -55,6 +55,7 @@ public class PageRequestFilter implements ContainerRequestFilter {
         String perPage = params.getFirst(PageRequest.PER_PAGE_PARAM);
         String order = params.getFirst(PageRequest.ORDER_PARAM);
         String sortBy = params.getFirst(PageRequest.SORT_BY_PARAM);
+        String exactCount = params.getFirst(PageRequest.EXACT_COUNT_PARAM);
 
         if (page != null || perPage != null || order != null || sortBy != null) {
             p = new PageRequest();
@@ -69,6 +70,7 @@ public class PageRequestFilter implements ContainerRequestFilter {
             /* We'll leave it to the curator layer to figure out what to sort by if
              * sortBy is null. */
             p.setSortBy(sortBy);
+            p.setExactCount(Boolean.parseBoolean(exactCount));
 
             try {
                 if (page == null && perPage != null) {
@@ -129,4 +129,61 @@ public class DynamicFilterDataTest {
         assertTrue(filterData.isAttributeExcluded(Arrays.asList("a", "b2", "d3")));
     }
 
+    @Test
+    public void testDeepestMatchingFilterWins() {
+        DynamicFilterData filterData = new DynamicFilterData(false);
+        filterData.includeAttribute("a.b.c");
+        filterData.excludeAttribute("a.b");
+        filterData.includeAttribute("a");
+
+        assertFalse(filterData.isAttributeExcluded("a"));
+        assertTrue(filterData.isAttributeExcluded("a.b.d"));
+        assertFalse(filterData.isAttributeExcluded("a.b.c"));
+        assertFalse(filterData.isAttributeExcluded("a.b.c.d"));
+        assertFalse(filterData.isAttributeExcluded("a.e"));
+    }
+
+    @Test
+    public void testFilteringIsCaseInsensitive() {
+        DynamicFilterData filterData = new DynamicFilterData(true);
+        filterData.includeAttribute("Bacon.EGG");
+
+        assertFalse(filterData.isAttributeExcluded("bacon"));
+        assertFalse(filterData.isAttributeExcluded("BACON.egg.cheese"));
+        assertTrue(filterData.isAttributeExcluded("bacon.spinach"));
+    }
+
+    @Test
+    public void testFiltersAddedAfterEvaluationAreApplied() {
+        DynamicFilterData filterData = new DynamicFilterData(false);
+        filterData.excludeAttribute("bacon");
+
+        assertFalse(filterData.isAttributeExcluded("egg"));
+
+        filterData.excludeAttribute("egg");
+        assertTrue(filterData.isAttributeExcluded("egg"));
+
+        filterData.setWhitelistMode(true);
+        assertTrue(filterData.isAttributeExcluded("spinach"));
+    }
+
+    @Test
+    public void testPathNodesResolveIncrementally() {
+        DynamicFilterData filterData = new DynamicFilterData(false);
+        filterData.excludeAttribute("a.b1.c2");
+
+        DynamicFilterData.PathNode node = filterData.getRootNode().getChild("a");
+        assertFalse(node.isExcluded());
+
+        DynamicFilterData.PathNode b1 = node.getChild("b1");
+        assertFalse(b1.isExcluded());
+        assertTrue(b1.getChild("c2").isExcluded());
+        assertTrue(b1.getChild("c2").getChild("d").getChild("e").isExcluded());
+
+        DynamicFilterData.PathNode b2 = node.getChild("b2");
+        assertFalse(b2.isExcluded());
+        assertFalse(b2.getChild("c2").isExcluded());
+        assertSame(b2.getChild("c2"), b2.getChild("c3").getChild("d"));
+    }
+
 }
@@ -17,9 +17,13 @@ package org.candlepin.common.jackson;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 
 import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.junit.jupiter.api.BeforeEach;
@@ -29,13 +33,11 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Arrays;
+import java.util.List;
 
 @ExtendWith(MockitoExtension.class)
 public class DynamicPropertyFilterTest {
 
-    @Mock
-    private DynamicFilterData dynamicFilterData;
-
     @Mock
     private PropertyWriter writer;
 
@@ -59,18 +61,15 @@ public class DynamicPropertyFilterTest {
     }
 
     @Test
-    @SuppressWarnings("unchecked")
     public void nonEmptyIsSerializable() {
-        //Implicitly return true
-        when(dynamicFilterData.isAttributeExcluded(anyList()))
-            .thenReturn(true);
-        when(dynamicFilterData.isAttributeExcluded(Arrays.asList("CONTEXT_NAME_1", "WRITER_NAME")))
-            .thenReturn(false);
+        DynamicFilterData filterData = new DynamicFilterData();
+        filterData.excludeAttribute("CONTEXT_NAME_1.OTHER_NAME");
+
         when(jsonGenerator.getOutputContext()).thenReturn(context);
         when(context.getParent()).thenReturn(context).thenReturn(null);
         when(context.getCurrentName()).thenReturn("CONTEXT_NAME_1");
         when(writer.getName()).thenReturn("WRITER_NAME");
-        ResteasyProviderFactory.pushContext(DynamicFilterData.class, dynamicFilterData);
+        ResteasyProviderFactory.pushContext(DynamicFilterData.class, filterData);
         DynamicPropertyFilter propertyFilter = new DynamicPropertyFilter();
         assertTrue(propertyFilter.isSerializable(null, jsonGenerator, null, writer));
         verify(jsonGenerator).getOutputContext();
@@ -80,13 +79,14 @@ public class DynamicPropertyFilterTest {
 
     @Test
     public void nonEmptyIsNotSerializable() {
-        when(dynamicFilterData.isAttributeExcluded(Arrays.asList("CONTEXT_NAME_1", "WRITER_NAME")))
-            .thenReturn(true);
+        DynamicFilterData filterData = new DynamicFilterData();
+        filterData.excludeAttribute("context_name_1.writer_name");
+
         when(jsonGenerator.getOutputContext()).thenReturn(context);
         when(context.getParent()).thenReturn(context).thenReturn(null);
         when(context.getCurrentName()).thenReturn("CONTEXT_NAME_1");
         when(writer.getName()).thenReturn("WRITER_NAME");
-        ResteasyProviderFactory.pushContext(DynamicFilterData.class, dynamicFilterData);
+        ResteasyProviderFactory.pushContext(DynamicFilterData.class, filterData);
         DynamicPropertyFilter propertyFilter = new DynamicPropertyFilter();
         assertFalse(propertyFilter.isSerializable(null, jsonGenerator, null, writer));
         verify(jsonGenerator).getOutputContext();
@@ -94,4 +94,45 @@ public class DynamicPropertyFilterTest {
         verify(context).getCurrentName();
     }
 
+    @Test
+    public void filtersNestedPropertiesOfSerializedObjects() throws Exception {
+        DynamicFilterData filterData = new DynamicFilterData();
+        filterData.excludeAttribute("children.name");
+        filterData.excludeAttribute("id");
+        ResteasyProviderFactory.pushContext(DynamicFilterData.class, filterData);
+
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setFilterProvider(new SimpleFilterProvider().setDefaultFilter(new DynamicPropertyFilter()));
+
+        Node parent = new Node("p", "parent", new Node("c1", "child1"), new Node("c2", "child2"));
+
+        assertEquals("[{\"name\":\"parent\",\"children\":[{\"id\":\"c1\",\"children\":[]}," +
+            "{\"id\":\"c2\",\"children\":[]}]}]", mapper.writeValueAsString(Arrays.asList(parent)));
+    }
+
+    @JsonFilter("NodeFilter")
+    @JsonPropertyOrder({ "id", "name", "children" })
+    private static class Node {
+        private final String id;
+        private final String name;
+        private final List<Node> children;
+
+        Node(String id, String name, Node... children) {
+            this.id = id;
+            this.name = name;
+            this.children = Arrays.asList(children);
+        }
+
+        public String getId() {
+            return this.id;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public List<Node> getChildren() {
+            return this.children;
+        }
+    }
 }
@@ -352,5 +352,34 @@ public class LinkHeaderResponseFilterTest {
         assertTrue(header.contains("rel=\"last\""));
         assertTrue(header.contains("rel=\"next\""));
         assertTrue(header.contains("rel=\"prev\""));
+        assertNull(map.getFirst(LinkHeaderResponseFilter.TOTAL_RECORDS_COUNT_ESTIMATED));
+    }
+
+    @Test
+    public void testPostProcessWithEstimatedTotal() throws Exception {
+        when(page.getPageRequest()).thenReturn(pageRequest);
+        when(page.getMaxRecords()).thenReturn(15);
+        when(page.isMaxRecordsEstimated()).thenReturn(true);
+        when(pageRequest.isPaging()).thenReturn(true);
+        when(pageRequest.getPage()).thenReturn(2);
+        when(pageRequest.getPerPage()).thenReturn(5);
+
+        when(config.containsKey(eq(this.apiUrlPrefixKey))).thenReturn(false);
+
+        MultivaluedMap<String, Object> map = new MultivaluedMapImpl<>();
+
+        ResteasyProviderFactory.pushContext(Page.class, page);
+
+        mockReq = MockHttpRequest.create("GET",
+                new URI("/candlepin/resource?order=asc&page=1&per_page=10"),
+                new URI("https://example.com"));
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+
+        when(mockResponseContext.getHeaders()).thenReturn(map);
+
+        interceptor.filter(mockRequestContext, mockResponseContext);
+
+        assertEquals(15, map.getFirst(LinkHeaderResponseFilter.TOTAL_RECORDS_COUNT));
+        assertEquals(Boolean.TRUE, map.getFirst(LinkHeaderResponseFilter.TOTAL_RECORDS_COUNT_ESTIMATED));
     }
 }
@@ -80,6 +80,19 @@ public class PageRequestFilterTest {
         assertEquals(Integer.valueOf(4), p.getPage());
         assertEquals(PageRequest.DEFAULT_ORDER, p.getOrder());
         assertNull(p.getSortBy());
+        assertFalse(p.isExactCount());
+    }
+
+    @Test
+    public void testExactCount() throws Exception {
+        mockReq = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?per_page=10&page=4&exact_count=true");
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+
+        interceptor.filter(mockRequestContext);
+
+        PageRequest p = ResteasyProviderFactory.getContextData(PageRequest.class);
+        assertTrue(p.isExactCount());
     }
 
     @Test
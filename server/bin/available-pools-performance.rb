@@ -0,0 +1,94 @@
+#!/usr/bin/env ruby
+#
+# Script to create an account with a large number of pools, and time the
+# listing of available pools for a consumer in that account. The time
+# required for each listing is printed to stdout.
+#
+# Available pools are selected from the in-memory pool availability index
+# unless "matches" or attribute filters are used, in which case the
+# criteria-based lookup is used. To compare the two paths on the same data,
+# run the script once as-is, and once more against a server configured with:
+#
+#   candlepin.pool_availability_index.enabled=false
+#
+# Can be run and re-run against a typical dev deployment without any arguments.
+# The number of pools and listings may be given as arguments.
+
+require  "../client/ruby/candlepin_api"
+require  "../client/ruby/hostedtest_api"
+
+require 'benchmark'
+
+include HostedTest
+
+ADMIN_USERNAME = "admin"
+ADMIN_PASSWORD = "admin"
+HOST = "localhost"
+PORT = 8443
+
+def random_string(prefix=nil)
+  prefix ||= "rand"
+  return "#{prefix}-#{rand(100000)}"
+end
+
+pool_count = (ARGV[0] || 500).to_i
+list_count = (ARGV[1] || 20).to_i
+
+@cp = Candlepin.new(ADMIN_USERNAME, ADMIN_PASSWORD, nil, nil, HOST, PORT)
+
+owner = @cp.create_owner random_string("availabletest")
+puts "Created owner: #{owner['key']}"
+
+all_provided_products = Array.new(50) { |idx| random_string("provided") }
+all_provided_products.each do |pid|
+  @cp.create_product(owner['key'], pid, pid, {})
+end
+
+skus = Array.new(10) do |idx|
+  attrs = { 'multi-entitlement' => 'yes' }
+  attrs['virt_only'] = 'true' if idx % 5 == 0
+  @cp.create_product(owner['key'], random_string("sku"), random_string("sku"), { :attributes => attrs })
+end
+
+Benchmark.bm (30) do |x|
+  x.report("Creating #{pool_count} pools:") {
+    pool_count.times do |i|
+      create_pool_and_subscription(owner['key'], skus.sample['id'], 10, all_provided_products.sample(5),
+        '', '12345', nil, nil, nil, true)
+    end
+  }
+  x.report("Refresh:") {
+    @cp.refresh_pools(owner['key'])
+  }
+end
+
+consumer = @cp.register(random_string('dummyconsumer'), :system, nil, {}, nil, owner['key'])
+puts "Created consumer: id = #{consumer['id']}, uuid = #{consumer['uuid']}"
+
+product_id = all_provided_products.first
+
+Benchmark.bm (30) do |x|
+  x.report("First listing:") {
+    @cp.list_pools(:consumer => consumer['uuid'])
+  }
+  x.report("#{list_count} listings:") {
+    list_count.times { @cp.list_pools(:consumer => consumer['uuid']) }
+  }
+  x.report("#{list_count} product listings:") {
+    list_count.times { @cp.list_pools(:consumer => consumer['uuid'], :product => product_id) }
+  }
+  x.report("#{list_count} attribute listings:") {
+    list_count.times do
+      @cp.list_owner_pools(owner['key'], { :consumer => consumer['uuid'] }, ['multi-entitlement:yes'])
+    end
+  }
+end
+
+pool = @cp.list_owner_pools(owner['key']).first
+@cp.delete_pool(pool['id'])
+
+Benchmark.bm (30) do |x|
+  x.report("Listing after pool deletion:") {
+    @cp.list_pools(:consumer => consumer['uuid'])
+  }
+end
@@ -41,8 +41,13 @@ public class ActiveMQContextListener {
 
     private EmbeddedActiveMQ activeMQServer;
     private EventSource eventSource;
+    private CacheInvalidationBroadcaster cacheInvalidationBroadcaster;
 
     public void contextDestroyed() {
+        if (cacheInvalidationBroadcaster != null) {
+            cacheInvalidationBroadcaster.shutDown();
+        }
+
         if (activeMQServer != null) {
             eventSource.shutDown();
             try {
@@ -102,6 +107,13 @@ public class ActiveMQContextListener {
 
         setupAmqp(injector, candlepinConfig, eventSource);
 
+        // Second-level cache invalidations are exchanged with the other nodes through the broker,
+        // and like the EventSource, must reconnect whenever the broker comes back up.
+        if (candlepinConfig.getBoolean(ConfigProperties.CACHE_INVALIDATION_ENABLED)) {
+            cacheInvalidationBroadcaster = injector.getInstance(CacheInvalidationBroadcaster.class);
+            activeMQStatusMonitor.registerListener(cacheInvalidationBroadcaster);
+        }
+
         // Register all listeners now that a connection to the server is established.
         List<EventListener> eventListeners = new ArrayList<>();
         getActiveMQListeners(candlepinConfig).forEach(listenerClass -> {
@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+import org.candlepin.cache.CacheInvalidation;
+import org.candlepin.controller.ActiveMQStatusListener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.apache.activemq.artemis.api.core.ActiveMQException;
+import org.apache.activemq.artemis.api.core.RoutingType;
+import org.apache.activemq.artemis.api.core.SimpleString;
+import org.apache.activemq.artemis.api.core.client.ClientConsumer;
+import org.apache.activemq.artemis.api.core.client.ClientMessage;
+import org.apache.activemq.artemis.api.core.client.ClientProducer;
+import org.apache.activemq.artemis.api.core.client.ClientSession;
+import org.apache.activemq.artemis.api.core.client.MessageHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+
+
+/**
+ * Exchanges second-level cache invalidations with the other Candlepin nodes connected to the
+ * same message broker.
+ * <p>
+ * Each node binds a temporary queue to the multicast cache invalidation address, filtered to
+ * exclude the messages it sent itself. Invalidations are sent from a single background thread so
+ * that committing transactions never wait on the broker. Messages are not durable, and are
+ * dropped while the broker is unavailable; in that case the expiry of the cache regions bounds
+ * how long other nodes may serve a stale entry.
+ */
+@Singleton
+public class CacheInvalidationBroadcaster implements ActiveMQStatusListener, MessageHandler {
+    private static Logger log = LoggerFactory.getLogger(CacheInvalidationBroadcaster.class);
+
+    /** The message property identifying the node which sent an invalidation */
+    static final String NODE_PROPERTY = "cp_node";
+
+    private final ActiveMQConnection connection;
+    private final ObjectMapper mapper;
+    private final Executor executor;
+    private final String nodeId;
+
+    private volatile Consumer<CacheInvalidation> handler;
+    private ClientSession session;
+    private ClientProducer producer;
+
+    @Inject
+    public CacheInvalidationBroadcaster(CacheInvalidationConnection connection, ObjectMapper mapper) {
+        this(connection, mapper, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-invalidation");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    CacheInvalidationBroadcaster(ActiveMQConnection connection, ObjectMapper mapper, Executor executor) {
+        this.connection = connection;
+        this.mapper = mapper;
+        this.executor = executor;
+        this.nodeId = UUID.randomUUID().toString();
+    }
+
+    /**
+     * Sets the handler to receive the invalidations broadcast by other nodes.
+     *
+     * @param handler
+     *  the handler to receive invalidations
+     */
+    public void setHandler(Consumer<CacheInvalidation> handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Broadcasts the given invalidation to the other nodes. The invalidation is sent
+     * asynchronously, and silently dropped if the broker is not connected.
+     *
+     * @param invalidation
+     *  the invalidation to broadcast
+     */
+    public void publish(CacheInvalidation invalidation) {
+        this.executor.execute(() -> this.send(invalidation));
+    }
+
+    synchronized void send(CacheInvalidation invalidation) {
+        if (this.session == null || this.session.isClosed()) {
+            log.warn("Message broker is not connected; dropping {}. Other nodes may serve the " +
+                "stale entity until it expires from their caches.", invalidation);
+            return;
+        }
+
+        try {
+            ClientMessage message = this.session.createMessage(false);
+            message.putStringProperty(NODE_PROPERTY, this.nodeId);
+            message.getBodyBuffer().writeString(this.mapper.writeValueAsString(invalidation));
+
+            this.producer.send(message);
+        }
+        catch (Exception e) {
+            log.warn("Unable to broadcast {}", invalidation, e);
+        }
+    }
+
+    @Override
+    public void onMessage(ClientMessage message) {
+        try {
+            message.acknowledge();
+
+            CacheInvalidation invalidation = this.mapper.readValue(message.getBodyBuffer().readString(),
+                CacheInvalidation.class);
+
+            Consumer<CacheInvalidation> handler = this.handler;
+            if (handler != null) {
+                log.debug("Received {}", invalidation);
+                handler.accept(invalidation);
+            }
+        }
+        catch (Exception e) {
+            log.warn("Unable to process cache invalidation message {}", message.getMessageID(), e);
+        }
+    }
+
+    @Override
+    public void onStatusUpdate(ActiveMQStatus oldStatus, ActiveMQStatus newStatus) {
+        if (ActiveMQStatus.DOWN.equals(newStatus) && !ActiveMQStatus.DOWN.equals(oldStatus)) {
+            this.close();
+        }
+        else if (ActiveMQStatus.CONNECTED.equals(newStatus) && !ActiveMQStatus.CONNECTED.equals(oldStatus)) {
+            this.connect();
+        }
+    }
+
+    synchronized void connect() {
+        this.close();
+
+        SimpleString address = SimpleString.toSimpleString(MessageAddress.CACHE_INVALIDATION_ADDRESS);
+        SimpleString queue = address.concat("." + this.nodeId);
+        SimpleString filter = SimpleString.toSimpleString(
+            String.format("%s <> '%s'", NODE_PROPERTY, this.nodeId));
+
+        try {
+            this.session = this.connection.createClientSession();
+            this.session.createTemporaryQueue(address, RoutingType.MULTICAST, queue, filter);
+
+            ClientConsumer consumer = this.session.createConsumer(queue);
+            consumer.setMessageHandler(this);
+            this.producer = this.session.createProducer(address);
+
+            this.session.start();
+            log.info("Listening for cache invalidations on {}", queue);
+        }
+        catch (ActiveMQException e) {
+            log.warn("Unable to listen for cache invalidations; cached entities will not be invalidated " +
+                "across nodes until the broker connection is restored", e);
+
+            this.close();
+        }
+    }
+
+    synchronized void close() {
+        if (this.session != null && !this.session.isClosed()) {
+            try {
+                this.session.close();
+            }
+            catch (ActiveMQException e) {
+                log.warn("Error closing cache invalidation session.", e);
+            }
+        }
+
+        this.session = null;
+        this.producer = null;
+        this.connection.close();
+    }
+
+    /**
+     * Closes the broker session and stops the background sender.
+     */
+    public void shutDown() {
+        this.close();
+
+        if (this.executor instanceof ExecutorService) {
+            ((ExecutorService) this.executor).shutdown();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.activemq.artemis.api.core.ActiveMQException;
+import org.apache.activemq.artemis.api.core.client.ActiveMQClient;
+import org.apache.activemq.artemis.api.core.client.ClientSession;
+import org.apache.activemq.artemis.api.core.client.ClientSessionFactory;
+import org.apache.activemq.artemis.api.core.client.ServerLocator;
+import org.candlepin.common.config.Configuration;
+
+/**
+ * An ActiveMQ connection configured for the CacheInvalidationBroadcaster. It is kept separate from
+ * the EventSource connection so that rebuilding the event receivers does not tear down the cache
+ * invalidation session. Broker outages are detected by the ActiveMQStatusMonitor through the
+ * EventSource connection.
+ */
+@Singleton
+public class CacheInvalidationConnection extends ActiveMQConnection {
+
+    @Inject
+    public CacheInvalidationConnection(Configuration config) {
+        super(config);
+    }
+
+    @Override
+    ServerLocator initLocator() throws Exception {
+        return ActiveMQClient.createServerLocator(serverUrl);
+    }
+
+    @Override
+    ClientSessionFactory initClientSessionFactory(ServerLocator locator) throws Exception {
+        return locator.createSessionFactory();
+    }
+
+    @Override
+    ClientSession createClientSession() throws ActiveMQException {
+        // Invalidations are advisory, so sends and acknowledgements are committed as they happen.
+        return getFactory().createSession(true, true);
+    }
+
+}
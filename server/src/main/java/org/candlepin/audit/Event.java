@@ -42,10 +42,11 @@ public class Event {
     private static final long serialVersionUID = 1L;
 
     /**
-     * Type - Constant representing the type of this event.
+     * Type - Constant representing the type of this event. BULK_DELETED events describe the deletion
+     * of a batch of entities of the target type in a single message.
      */
     public enum Type {
-        CREATED, MODIFIED, DELETED, EXPIRED
+        CREATED, MODIFIED, DELETED, EXPIRED, BULK_DELETED
     }
 
     /**
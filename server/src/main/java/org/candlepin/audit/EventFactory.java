@@ -40,6 +40,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -96,6 +97,37 @@ public class EventFactory {
             .buildEvent();
     }
 
+    /**
+     * Builds a single, compact event describing the deletion of a batch of consumers of the given
+     * owner. Rather than the full consumer, the event data carries only the owner key and the UUIDs
+     * of the deleted consumers.
+     *
+     * @param owner
+     *  the owner of the deleted consumers
+     *
+     * @param consumerUuids
+     *  the UUIDs of the deleted consumers
+     *
+     * @return
+     *  a consumer BULK_DELETED event
+     */
+    public Event consumersDeleted(Owner owner, Collection<String> consumerUuids) {
+        Map<String, Object> eventData = new HashMap<>();
+        eventData.put("ownerKey", owner.getKey());
+        eventData.put("consumerUuids", consumerUuids);
+
+        try {
+            String eventDataJson = mapper.writeValueAsString(eventData);
+
+            return new Event(Type.BULK_DELETED, Target.CONSUMER, owner.getKey(), principalProvider.get(),
+                owner.getId(), null, null, eventDataJson, null, null);
+        }
+        catch (JsonProcessingException e) {
+            log.error("Error while building JSON for consumer.bulk_deleted event.", e);
+            throw new IseException("Error while building JSON for consumer.bulk_deleted event.", e);
+        }
+    }
+
     public Event entitlementCreated(Entitlement e) {
         return getEventBuilder(Target.ENTITLEMENT, Type.CREATED)
             .setEventData(e)
@@ -25,6 +25,8 @@ import org.candlepin.model.activationkeys.ActivationKey;
 import org.candlepin.dto.manifest.v1.SubscriptionDTO;
 import org.candlepin.policy.SystemPurposeComplianceStatus;
 import org.candlepin.policy.js.compliance.ComplianceStatus;
+import org.candlepin.tracing.Span;
+import org.candlepin.tracing.Tracer;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -135,7 +137,9 @@ public class EventSinkImpl implements EventSink {
     /**
      * Dispatch queued events. (if there are any)
      *
-     * Typically only called after a successful request or job execution.
+     * Typically only called after a successful request or job execution. Work which commits in
+     * several transactions may also call it as each of them commits; events queued afterwards are
+     * sent or rolled back separately.
      */
     @Override
     public void sendEvents() {
@@ -143,7 +147,14 @@ public class EventSinkImpl implements EventSink {
             log.debug("No events to send.");
             return;
         }
-        messageSender.sendMessages();
+
+        try {
+            Tracer.run(Span.Phase.EVENTS, "events.send", messageSender::sendMessages);
+        }
+        finally {
+            // The session of the sender is closed once its messages are sent
+            messageSender = null;
+        }
     }
 
     @Override
@@ -152,7 +163,13 @@ public class EventSinkImpl implements EventSink {
             log.debug("No events to roll back.");
             return;
         }
-        messageSender.cancelMessages();
+
+        try {
+            messageSender.cancelMessages();
+        }
+        finally {
+            messageSender = null;
+        }
     }
 
     private boolean hasQueuedMessages() {
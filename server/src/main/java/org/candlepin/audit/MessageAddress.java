@@ -34,6 +34,12 @@ public final class MessageAddress {
      */
     static final String QPID_EVENT_MESSAGE_ADDRESS = String.format("%s.qpid", EVENT_ADDRESS_PREFIX);
 
+    /**
+     * The multicast address that second-level cache invalidations are broadcast to. Each node
+     * binds its own temporary queue to it.
+     */
+    static final String CACHE_INVALIDATION_ADDRESS = "cache.invalidation";
+
     private MessageAddress() {
     }
 }
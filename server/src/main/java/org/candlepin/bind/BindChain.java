@@ -63,7 +63,7 @@ public class BindChain {
         operations.add(complianceOp);
     }
 
-    private boolean preProcess(BindContext context) {
+    boolean preProcess(BindContext context) {
         for (BindOperation operation : operations) {
             log.debug("Starting preprocess of {}", operation.getClass().getSimpleName());
             if (operation.preProcess(context)) {
@@ -84,7 +84,7 @@ public class BindChain {
         log.debug("Successfully achieved locks");
     }
 
-    private boolean execute(BindContext context) {
+    boolean execute(BindContext context) {
         for (BindOperation operation : operations) {
             log.debug("Starting execute of {}", operation.getClass().getSimpleName());
             try {
@@ -104,6 +104,10 @@ public class BindChain {
         return true;
     }
 
+    BindContext getContext() {
+        return context;
+    }
+
     public Collection<Entitlement> run() throws EntitlementRefusedException {
         if (preProcess(context)) {
             lock(context);
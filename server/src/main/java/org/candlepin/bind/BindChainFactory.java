@@ -27,4 +27,6 @@ import java.util.Map;
 public interface BindChainFactory {
 
     BindChain create(Consumer consumer, Map<String, Integer> quantities, Enforcer.CallerType caller);
+
+    BulkBindChain createBulk(Map<Consumer, Map<String, Integer>> requests, Enforcer.CallerType caller);
 }
@@ -32,9 +32,11 @@ import com.google.inject.assistedinject.Assisted;
 
 import org.xnap.commons.i18n.I18n;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -53,6 +55,7 @@ public class BindContext {
     private Map<String, PoolQuantity> poolQuantities;
     private Map<String, Entitlement> entitlementMap;
     private Map<String, Integer> quantities;
+    private Map<String, Pool> sharedPools;
     private boolean quantityRequested = false;
     //change to generic type in future if needed
     private EntitlementRefusedException exception;
@@ -99,11 +102,31 @@ public class BindContext {
         return owner;
     }
 
+    /**
+     * Supplies pools which have already been loaded by the caller, such as when binding many
+     * consumers in a single batch. When set, the requested pools are resolved from the given map
+     * rather than fetched from the database.
+     *
+     * @param pools
+     *  a mapping of pool IDs to pools already loaded in the current session
+     */
+    public void setSharedPools(Map<String, Pool> pools) {
+        this.sharedPools = pools;
+    }
+
+    /**
+     * @return
+     *  the IDs of the pools requested by this bind, which have not yet been resolved
+     */
+    public Collection<String> getRequestedPoolIds() {
+        return quantities.keySet();
+    }
+
     public Map<String, PoolQuantity> getPoolQuantities() {
         if (poolQuantities == null) {
             poolQuantities = new HashMap<>();
 
-            for (Pool pool : poolCurator.listAllByIds(quantities.keySet())) {
+            for (Pool pool : this.resolvePools()) {
                 Integer quantity = quantities.get(pool.getId());
                 if (quantity > 0) {
                     quantityRequested = true;
@@ -121,14 +144,44 @@ public class BindContext {
         return poolQuantities;
     }
 
+    private Iterable<Pool> resolvePools() {
+        if (sharedPools == null) {
+            return poolCurator.listAllByIds(quantities.keySet());
+        }
+
+        List<Pool> pools = new ArrayList<>();
+        for (String poolId : quantities.keySet()) {
+            Pool pool = sharedPools.get(poolId);
+            if (pool != null) {
+                pools.add(pool);
+            }
+        }
+
+        return pools;
+    }
+
     /**
      * locks the pools and replaces the existing entities in poolQuantities.
      */
     public void lockPools() {
         Collection<Pool> pools = poolCurator.lockAndLoad(poolQuantities.keySet());
         this.poolCurator.refresh(pools);
-        for (Pool pool: pools) {
-            poolQuantities.get(pool.getId()).setPool(pool);
+        this.setLockedPools(pools);
+    }
+
+    /**
+     * Replaces the existing entities in poolQuantities with the given pools, which must have
+     * already been locked by the caller. Pools which were not requested are ignored.
+     *
+     * @param pools
+     *  the locked pools
+     */
+    public void setLockedPools(Collection<Pool> pools) {
+        for (Pool pool : pools) {
+            PoolQuantity poolQuantity = poolQuantities.get(pool.getId());
+            if (poolQuantity != null) {
+                poolQuantity.setPool(pool);
+            }
         }
     }
 
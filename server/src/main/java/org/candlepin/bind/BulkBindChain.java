@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.bind;
+
+import org.candlepin.model.Consumer;
+import org.candlepin.model.Pool;
+import org.candlepin.model.PoolCurator;
+import org.candlepin.policy.js.entitlement.Enforcer;
+
+import com.google.inject.Inject;
+import com.google.inject.assistedinject.Assisted;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Runs the binding chains of many consumers as a single batch. Unlike running each consumer's
+ * BindChain independently, the pools referenced by every request are fetched and validated once,
+ * and are locked together in a single, globally sorted lock request before any chain executes.
+ * Since the chains operate on the same locked pool instances, the consumption of one chain is
+ * visible to the quantity checks of the chains which follow it.
+ * <p></p>
+ * A refusal for one consumer does not affect the remaining consumers; the refusal is recorded in
+ * the result instead of being thrown.
+ */
+public class BulkBindChain {
+    private static Logger log = LoggerFactory.getLogger(BulkBindChain.class);
+
+    private PoolCurator poolCurator;
+    private I18n i18n;
+    private Map<String, BindChain> chains;
+
+    @Inject
+    public BulkBindChain(
+        BindChainFactory bindChainFactory,
+        PoolCurator poolCurator,
+        I18n i18n,
+        @Assisted Map<Consumer, Map<String, Integer>> requests,
+        @Assisted Enforcer.CallerType caller) {
+
+        this.poolCurator = poolCurator;
+        this.i18n = i18n;
+
+        // Chains are processed in consumer UUID order, so the consumer locks taken by the chains
+        // are acquired in a deterministic order as well
+        this.chains = new TreeMap<>();
+        for (Map.Entry<Consumer, Map<String, Integer>> entry : requests.entrySet()) {
+            this.chains.put(entry.getKey().getUuid(),
+                bindChainFactory.create(entry.getKey(), new HashMap<>(entry.getValue()), caller));
+        }
+    }
+
+    private Map<String, Pool> loadPools() {
+        Set<String> poolIds = new HashSet<>();
+        for (BindChain chain : this.chains.values()) {
+            poolIds.addAll(chain.getContext().getRequestedPoolIds());
+        }
+
+        Map<String, Pool> pools = new HashMap<>();
+        for (Pool pool : this.poolCurator.listAllByIds(poolIds)) {
+            pools.put(pool.getId(), pool);
+        }
+
+        poolIds.removeAll(pools.keySet());
+        if (!poolIds.isEmpty()) {
+            throw new IllegalArgumentException(i18n.tr("Subscription pool(s) {0} do not exist.", poolIds));
+        }
+
+        return pools;
+    }
+
+    private void lockPools(List<BindChain> chains) {
+        Set<String> poolIds = new HashSet<>();
+        for (BindChain chain : chains) {
+            poolIds.addAll(chain.getContext().getPoolQuantities().keySet());
+        }
+
+        log.debug("Requesting locks on {} pools for {} consumers", poolIds.size(), chains.size());
+        Collection<Pool> pools = this.poolCurator.lockAndLoad(poolIds);
+        this.poolCurator.refresh(pools);
+        log.debug("Successfully achieved locks");
+
+        for (BindChain chain : chains) {
+            chain.getContext().setLockedPools(pools);
+        }
+    }
+
+    /**
+     * Runs the binding chains of all consumers in this batch.
+     *
+     * @throws IllegalArgumentException
+     *  if any of the requests reference a pool which does not exist
+     *
+     * @return
+     *  the entitlements created for each consumer, and the refusals of any consumers which could
+     *  not be bound
+     */
+    public BulkBindResult run() {
+        BulkBindResult result = new BulkBindResult();
+        if (this.chains.isEmpty()) {
+            return result;
+        }
+
+        Map<String, Pool> pools = this.loadPools();
+
+        List<BindChain> accepted = new ArrayList<>();
+        for (Map.Entry<String, BindChain> entry : this.chains.entrySet()) {
+            BindContext context = entry.getValue().getContext();
+            context.setSharedPools(pools);
+
+            if (entry.getValue().preProcess(context)) {
+                accepted.add(entry.getValue());
+            }
+            else {
+                result.addRefusal(entry.getKey(), context.getException());
+            }
+        }
+
+        if (accepted.isEmpty()) {
+            return result;
+        }
+
+        this.lockPools(accepted);
+
+        for (BindChain chain : accepted) {
+            BindContext context = chain.getContext();
+            String consumerUuid = context.getConsumer().getUuid();
+
+            if (chain.execute(context)) {
+                result.addEntitlements(consumerUuid, context.getEntitlementMap().values());
+            }
+            else {
+                result.addRefusal(consumerUuid, context.getException());
+            }
+        }
+
+        log.debug("Bulk bind finished: {} consumers bound, {} refused", result.getEntitlements().size(),
+            result.getRefusals().size());
+
+        return result;
+    }
+}
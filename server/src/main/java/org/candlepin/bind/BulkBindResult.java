@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.bind;
+
+import org.candlepin.model.Entitlement;
+import org.candlepin.policy.EntitlementRefusedException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * Holds the outcome of a bulk bind, keyed by consumer UUID. Each consumer submitted to the bulk
+ * bind will either have a list of entitlements, or the exception describing why its request was
+ * refused.
+ */
+public class BulkBindResult {
+    private final Map<String, List<Entitlement>> entitlements = new HashMap<>();
+    private final Map<String, EntitlementRefusedException> refusals = new HashMap<>();
+
+    void addEntitlements(String consumerUuid, Collection<Entitlement> ents) {
+        this.entitlements.put(consumerUuid, new ArrayList<>(ents));
+    }
+
+    void addRefusal(String consumerUuid, EntitlementRefusedException exception) {
+        this.refusals.put(consumerUuid, exception);
+    }
+
+    /**
+     * Adds the entitlements and refusals of another result to this result.
+     *
+     * @param other
+     *  the result to add to this result
+     */
+    public void addAll(BulkBindResult other) {
+        this.entitlements.putAll(other.entitlements);
+        this.refusals.putAll(other.refusals);
+    }
+
+    /**
+     * @return
+     *  a mapping of consumer UUIDs to the entitlements created for that consumer
+     */
+    public Map<String, List<Entitlement>> getEntitlements() {
+        return Collections.unmodifiableMap(this.entitlements);
+    }
+
+    /**
+     * @return
+     *  a mapping of consumer UUIDs to the exception describing why the consumer's request was
+     *  refused
+     */
+    public Map<String, EntitlementRefusedException> getRefusals() {
+        return Collections.unmodifiableMap(this.refusals);
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.cache;
+
+
+
+/**
+ * Identifies second-level cached entity data which has changed on one Candlepin node, and must
+ * be evicted from the caches of the others.
+ */
+public class CacheInvalidation {
+
+    private String entity;
+    private String id;
+
+    public CacheInvalidation() {
+        // Intentionally left empty
+    }
+
+    /**
+     * Creates an invalidation for the given entity.
+     *
+     * @param entity
+     *  the Hibernate entity name of the changed entity
+     *
+     * @param id
+     *  the identifier of the changed entity, or null to invalidate all entities of the type
+     */
+    public CacheInvalidation(String entity, String id) {
+        this.entity = entity;
+        this.id = id;
+    }
+
+    public String getEntity() {
+        return this.entity;
+    }
+
+    public void setEntity(String entity) {
+        this.entity = entity;
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheInvalidation [entity: %s, id: %s]", this.entity, this.id);
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.cache;
+
+import org.candlepin.audit.CacheInvalidationBroadcaster;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+
+import javax.persistence.EntityManagerFactory;
+
+
+
+/**
+ * Keeps the second-level caches of a cluster of Candlepin nodes coherent. Once a transaction
+ * updating or deleting a cached entity commits, the change is broadcast to the other nodes, and
+ * the invalidations received from them are evicted from the local cache.
+ * <p>
+ * Only changes made through the session are observed; bulk updates bypass entity events and are
+ * only invalidated locally by Hibernate.
+ */
+@Singleton
+public class CacheInvalidationListener implements PostCommitUpdateEventListener,
+    PostCommitDeleteEventListener {
+
+    private static Logger log = LoggerFactory.getLogger(CacheInvalidationListener.class);
+
+    private final CacheInvalidationBroadcaster broadcaster;
+    private final Provider<EntityManagerFactory> emfProvider;
+
+    @Inject
+    public CacheInvalidationListener(CacheInvalidationBroadcaster broadcaster,
+        Provider<EntityManagerFactory> emfProvider) {
+
+        this.broadcaster = broadcaster;
+        this.emfProvider = emfProvider;
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        this.publish(event.getPersister(), event.getId());
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        // Nothing was committed, so other nodes have nothing to invalidate
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        this.publish(event.getPersister(), event.getId());
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        // Nothing was committed, so other nodes have nothing to invalidate
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return persister.canWriteToCache();
+    }
+
+    private void publish(EntityPersister persister, Serializable id) {
+        if (!persister.canWriteToCache()) {
+            return;
+        }
+
+        // Identifiers are sent as strings; entities with other identifier types are evicted wholesale
+        String entityId = id instanceof String ? (String) id : null;
+        this.broadcaster.publish(new CacheInvalidation(persister.getEntityName(), entityId));
+    }
+
+    /**
+     * Evicts the entity data identified by an invalidation received from another node from the
+     * local second-level cache.
+     *
+     * @param invalidation
+     *  the invalidation to apply
+     */
+    public void evict(CacheInvalidation invalidation) {
+        Cache cache = this.emfProvider.get().unwrap(SessionFactory.class).getCache();
+
+        try {
+            if (invalidation.getId() != null) {
+                cache.evictEntityData(invalidation.getEntity(), invalidation.getId());
+            }
+            else {
+                cache.evictEntityData(invalidation.getEntity());
+            }
+        }
+        catch (RuntimeException e) {
+            // Most likely an entity unknown to this node, such as during a rolling upgrade
+            log.warn("Unable to apply {}", invalidation, e);
+        }
+    }
+}
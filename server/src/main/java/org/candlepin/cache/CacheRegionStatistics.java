@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.cache;
+
+import java.beans.ConstructorProperties;
+
+
+
+/**
+ * An immutable view of the hit and miss counts of a cache region, as collected by its JCache
+ * statistics MBean since the region was created.
+ */
+public class CacheRegionStatistics {
+
+    private final long hits;
+    private final long misses;
+    private final float hitPercentage;
+    private final long puts;
+    private final long removals;
+    private final long evictions;
+
+    @ConstructorProperties({"hits", "misses", "hitPercentage", "puts", "removals", "evictions"})
+    public CacheRegionStatistics(long hits, long misses, float hitPercentage, long puts, long removals,
+        long evictions) {
+
+        this.hits = hits;
+        this.misses = misses;
+        this.hitPercentage = hitPercentage;
+        this.puts = puts;
+        this.removals = removals;
+        this.evictions = evictions;
+    }
+
+    public long getHits() {
+        return this.hits;
+    }
+
+    public long getMisses() {
+        return this.misses;
+    }
+
+    public float getHitPercentage() {
+        return this.hitPercentage;
+    }
+
+    public long getPuts() {
+        return this.puts;
+    }
+
+    public long getRemovals() {
+        return this.removals;
+    }
+
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheRegionStatistics [hits: %d, misses: %d, hit percentage: %.1f]",
+            this.hits, this.misses, this.hitPercentage);
+    }
+}
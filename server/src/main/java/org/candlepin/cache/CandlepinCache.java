@@ -16,8 +16,20 @@ package org.candlepin.cache;
 
 import com.google.inject.Inject;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
 import javax.cache.CacheManager;
+import javax.cache.management.CacheStatisticsMXBean;
 import javax.inject.Singleton;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 
 /**
  * Wrapper that makes it easier to retrieve various caches in Candlepin
@@ -26,6 +38,8 @@ import javax.inject.Singleton;
  */
 @Singleton
 public class CandlepinCache {
+    private static Logger log = LoggerFactory.getLogger(CandlepinCache.class);
+
     /**
      * Cache manager for Ehcache configured caches.
      */
@@ -56,4 +70,46 @@ public class CandlepinCache {
         return this.statusCache;
     }
 
+    /**
+     * Retrieves the hit and miss statistics of the named entity regions. Regions which are not
+     * defined by the cache configuration, or which do not have statistics enabled, are omitted.
+     *
+     * @return a map of region names to the statistics of the region
+     */
+    public SortedMap<String, CacheRegionStatistics> getRegionStatistics() {
+        SortedMap<String, CacheRegionStatistics> statistics = new TreeMap<>();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        for (String region : CandlepinCacheRegions.ENTITY_REGIONS) {
+            ObjectName name = this.getStatisticsObjectName(region);
+
+            if (name != null && server.isRegistered(name)) {
+                CacheStatisticsMXBean bean = JMX.newMXBeanProxy(server, name, CacheStatisticsMXBean.class);
+
+                statistics.put(region, new CacheRegionStatistics(bean.getCacheHits(), bean.getCacheMisses(),
+                    bean.getCacheHitPercentage(), bean.getCachePuts(), bean.getCacheRemovals(),
+                    bean.getCacheEvictions()));
+            }
+        }
+
+        return statistics;
+    }
+
+    /**
+     * Builds the name under which the JCache statistics MBean of the given cache is registered.
+     * Characters which are not valid in an object name are replaced with periods, as required by
+     * the JCache specification.
+     */
+    private ObjectName getStatisticsObjectName(String cacheName) {
+        String managerName = this.cacheManager.getURI().toString();
+
+        try {
+            return new ObjectName(String.format("javax.cache:type=CacheStatistics,CacheManager=%s,Cache=%s",
+                managerName.replaceAll("[,:=\\n]", "."), cacheName.replaceAll("[,:=\\n]", ".")));
+        }
+        catch (MalformedObjectNameException e) {
+            log.warn("Unable to build statistics MBean name for cache: {}", cacheName, e);
+            return null;
+        }
+    }
 }
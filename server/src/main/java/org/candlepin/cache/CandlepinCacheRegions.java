@@ -14,6 +14,10 @@
  */
 package org.candlepin.cache;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Make sure that constants in this file are in sync with what is
  * in ehcache*xml
@@ -21,6 +25,31 @@ package org.candlepin.cache;
 public class CandlepinCacheRegions {
     public static final String FIVE_SECONDS_QUERY_CACHE = "query-5-seconds";
 
+    /** Second-level cache region for products and their attributes, content and branding */
+    public static final String PRODUCTS = "candlepin-products";
+
+    /** Second-level cache region for content */
+    public static final String CONTENT = "candlepin-content";
+
+    /** Second-level cache region for owners */
+    public static final String OWNERS = "candlepin-owners";
+
+    /** Second-level cache region for consumer types */
+    public static final String CONSUMER_TYPES = "candlepin-consumer-types";
+
+    /** Second-level cache region for the rules */
+    public static final String RULES = "candlepin-rules";
+
+    /** Region for the product snapshots of the product catalog */
+    public static final String PRODUCT_CATALOG = "candlepin-product-catalog";
+
+    /** Region for the content snapshots of the product catalog */
+    public static final String CONTENT_CATALOG = "candlepin-content-catalog";
+
+    /** The cache regions holding entity data, for which statistics are collected */
+    public static final List<String> ENTITY_REGIONS = Collections.unmodifiableList(
+        Arrays.asList(PRODUCTS, CONTENT, OWNERS, CONSUMER_TYPES, RULES, PRODUCT_CATALOG, CONTENT_CATALOG));
+
     private CandlepinCacheRegions() {
 
     }
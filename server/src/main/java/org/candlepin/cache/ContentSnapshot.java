@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.cache;
+
+import org.candlepin.model.Content;
+import org.candlepin.util.Arch;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+
+
+/**
+ * An immutable, detached copy of the content data needed to build entitlement certificates. The
+ * arches and required tags are parsed once, when the snapshot is created, rather than every time
+ * a certificate is generated.
+ */
+public class ContentSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String uuid;
+    private final long updated;
+    private final String id;
+    private final String type;
+    private final String label;
+    private final String name;
+    private final String vendor;
+    private final String contentUrl;
+    private final String gpgUrl;
+    private final Long metadataExpiration;
+    private final Set<String> arches;
+    private final List<String> requiredTags;
+    private final Set<String> modifiedProductIds;
+
+    /**
+     * Creates a snapshot of the given content entity.
+     *
+     * @param content
+     *  the content entity to copy
+     */
+    public ContentSnapshot(Content content) {
+        if (content == null) {
+            throw new IllegalArgumentException("content is null");
+        }
+
+        this.uuid = content.getUuid();
+        this.updated = timestamp(content.getUpdated());
+        this.id = content.getId();
+        this.type = content.getType();
+        this.label = content.getLabel();
+        this.name = content.getName();
+        this.vendor = content.getVendor();
+        this.contentUrl = content.getContentUrl();
+        this.gpgUrl = content.getGpgUrl();
+        this.metadataExpiration = content.getMetadataExpiration();
+        this.arches = Collections.unmodifiableSet(Arch.parseArches(content.getArches()));
+        this.requiredTags = Collections.unmodifiableList(parseTags(content.getRequiredTags()));
+        this.modifiedProductIds = Collections.unmodifiableSet(new HashSet<>(content.getModifiedProductIds()));
+    }
+
+    private static List<String> parseTags(String tags) {
+        List<String> parsed = new ArrayList<>();
+
+        if (tags != null && !tags.isEmpty()) {
+            StringTokenizer tokenizer = new StringTokenizer(tags, ",");
+
+            while (tokenizer.hasMoreTokens()) {
+                parsed.add(tokenizer.nextToken());
+            }
+        }
+
+        return parsed;
+    }
+
+    static long timestamp(Date date) {
+        return date != null ? date.getTime() : Long.MIN_VALUE;
+    }
+
+    /**
+     * Checks whether or not this snapshot still reflects the given content entity. Content is
+     * versioned and never changes once created, but the last update time is compared anyway to
+     * guard against entities which were modified in place.
+     *
+     * @param content
+     *  the content entity to check
+     *
+     * @return
+     *  true if this snapshot was created from the current state of the given content; false
+     *  otherwise
+     */
+    public boolean isSnapshotOf(Content content) {
+        return this.uuid != null && this.uuid.equals(content.getUuid()) &&
+            this.updated == timestamp(content.getUpdated());
+    }
+
+    public String getUuid() {
+        return this.uuid;
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public String getType() {
+        return this.type;
+    }
+
+    public String getLabel() {
+        return this.label;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public String getVendor() {
+        return this.vendor;
+    }
+
+    public String getContentUrl() {
+        return this.contentUrl;
+    }
+
+    public String getGpgUrl() {
+        return this.gpgUrl;
+    }
+
+    public Long getMetadataExpiration() {
+        return this.metadataExpiration;
+    }
+
+    /**
+     * @return
+     *  an unmodifiable set of the arches parsed from the content's arch string
+     */
+    public Set<String> getArches() {
+        return this.arches;
+    }
+
+    /**
+     * @return
+     *  an unmodifiable list of the tags parsed from the content's required tags string
+     */
+    public List<String> getRequiredTags() {
+        return this.requiredTags;
+    }
+
+    /**
+     * @return
+     *  an unmodifiable set of the IDs of the products modified by this content
+     */
+    public Set<String> getModifiedProductIds() {
+        return this.modifiedProductIds;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ContentSnapshot [uuid: %s, id: %s, label: %s]", this.uuid, this.id, this.label);
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.cache;
+
+import org.candlepin.model.Content;
+import org.candlepin.model.Product;
+
+import com.google.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.HashSet;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.inject.Singleton;
+
+
+
+/**
+ * Catalog of immutable product and content snapshots, keyed by entity UUID, which are used in
+ * place of the product and content entities when building entitlement certificates.
+ * <p></p>
+ * Each snapshot records the UUID and last-updated time of the entity it was built from. A cached
+ * snapshot is only returned while both still match the entity being looked up; otherwise, such as
+ * when an entity is modified in place, the snapshot is rebuilt and replaces the stale entry. The
+ * product and content managers also evict the snapshot of a version when an owner moves off of it;
+ * any other owners still using that version will simply rebuild its snapshot on next use.
+ * <p></p>
+ * The snapshots are stored in the product and content catalog regions of the cache, which keep
+ * the most recently used entries on heap and the rest off-heap. If the regions are not defined
+ * by the cache configuration, snapshots are built as needed and never cached.
+ */
+@Singleton
+public class ProductCatalog {
+    private static Logger log = LoggerFactory.getLogger(ProductCatalog.class);
+
+    private final Cache<Object, Object> productCache;
+    private final Cache<Object, Object> contentCache;
+
+    @Inject
+    public ProductCatalog(CacheManager cacheManager) {
+        this.productCache = this.getCache(cacheManager, CandlepinCacheRegions.PRODUCT_CATALOG);
+        this.contentCache = this.getCache(cacheManager, CandlepinCacheRegions.CONTENT_CATALOG);
+    }
+
+    private Cache<Object, Object> getCache(CacheManager cacheManager, String region) {
+        Cache<Object, Object> cache = cacheManager != null ? cacheManager.getCache(region) : null;
+
+        if (cache == null) {
+            log.warn("Cache region \"{}\" is not defined; catalog snapshots will not be cached", region);
+        }
+
+        return cache;
+    }
+
+    /**
+     * Fetches the snapshot of the given product, creating and caching it if the catalog does not
+     * yet contain an up-to-date one. Products which have not been persisted are never cached, though the
+     * snapshots of their content may be.
+     *
+     * @param product
+     *  the product for which to fetch a snapshot
+     *
+     * @throws IllegalArgumentException
+     *  if product is null
+     *
+     * @return
+     *  the snapshot of the given product
+     */
+    public ProductSnapshot getProduct(Product product) {
+        if (product == null) {
+            throw new IllegalArgumentException("product is null");
+        }
+
+        String uuid = product.getUuid();
+
+        if (this.productCache != null && uuid != null) {
+            Object cached = this.productCache.get(uuid);
+
+            if (cached instanceof ProductSnapshot && ((ProductSnapshot) cached).isSnapshotOf(product)) {
+                return (ProductSnapshot) cached;
+            }
+        }
+
+        ProductSnapshot snapshot = new ProductSnapshot(product, this::getContent);
+
+        if (this.productCache != null && uuid != null) {
+            this.productCache.put(uuid, snapshot);
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Fetches the snapshot of the given content, creating and caching it if the catalog does not
+     * yet contain an up-to-date one. Content which has not been persisted is never cached.
+     *
+     * @param content
+     *  the content for which to fetch a snapshot
+     *
+     * @throws IllegalArgumentException
+     *  if content is null
+     *
+     * @return
+     *  the snapshot of the given content
+     */
+    public ContentSnapshot getContent(Content content) {
+        if (content == null) {
+            throw new IllegalArgumentException("content is null");
+        }
+
+        String uuid = content.getUuid();
+
+        if (this.contentCache != null && uuid != null) {
+            Object cached = this.contentCache.get(uuid);
+
+            if (cached instanceof ContentSnapshot && ((ContentSnapshot) cached).isSnapshotOf(content)) {
+                return (ContentSnapshot) cached;
+            }
+        }
+
+        ContentSnapshot snapshot = new ContentSnapshot(content);
+
+        if (this.contentCache != null && uuid != null) {
+            this.contentCache.put(uuid, snapshot);
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Removes the snapshots of the products with the given UUIDs from the catalog.
+     *
+     * @param uuids
+     *  a collection of UUIDs of the products to evict
+     */
+    public void evictProducts(Collection<String> uuids) {
+        this.evict(this.productCache, uuids);
+    }
+
+    /**
+     * Removes the snapshots of the content with the given UUIDs from the catalog.
+     *
+     * @param uuids
+     *  a collection of UUIDs of the content to evict
+     */
+    public void evictContent(Collection<String> uuids) {
+        this.evict(this.contentCache, uuids);
+    }
+
+    private void evict(Cache<Object, Object> cache, Collection<String> uuids) {
+        if (cache != null && uuids != null && !uuids.isEmpty()) {
+            log.debug("Evicting {} snapshots from {}", uuids.size(), cache.getName());
+            cache.removeAll(new HashSet<>(uuids));
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.cache;
+
+import org.candlepin.model.Content;
+import org.candlepin.model.Product;
+import org.candlepin.model.ProductContent;
+import org.candlepin.util.Arch;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.function.Function;
+
+
+
+/**
+ * An immutable, detached copy of the product data needed to build entitlement certificates,
+ * including snapshots of the product's content. Values derived from the product's attributes,
+ * such as its arches and SKU-level content overrides, are computed once when the snapshot is
+ * created.
+ */
+public class ProductSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * A content snapshot along with the enabled flag of its association with the product
+     */
+    public static class ContentEntry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final ContentSnapshot content;
+        private final boolean enabled;
+
+        public ContentEntry(ContentSnapshot content, boolean enabled) {
+            this.content = content;
+            this.enabled = enabled;
+        }
+
+        public ContentSnapshot getContent() {
+            return this.content;
+        }
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+    }
+
+    private final String uuid;
+    private final long updated;
+    private final String id;
+    private final String name;
+    private final Map<String, String> attributes;
+    private final Set<String> arches;
+    private final Set<String> skuEnabledContentIds;
+    private final Set<String> skuDisabledContentIds;
+    private final List<ContentEntry> content;
+
+    /**
+     * Creates a snapshot of the given product entity, using the provided function to fetch the
+     * snapshots of the product's content.
+     *
+     * @param product
+     *  the product entity to copy
+     *
+     * @param contentSnapshots
+     *  a function returning the snapshot of a given content entity
+     */
+    public ProductSnapshot(Product product, Function<Content, ContentSnapshot> contentSnapshots) {
+        if (product == null) {
+            throw new IllegalArgumentException("product is null");
+        }
+
+        if (contentSnapshots == null) {
+            throw new IllegalArgumentException("contentSnapshots is null");
+        }
+
+        this.uuid = product.getUuid();
+        this.updated = ContentSnapshot.timestamp(product.getUpdated());
+        this.id = product.getId();
+        this.name = product.getName();
+        this.attributes = Collections.unmodifiableMap(new HashMap<>(product.getAttributes()));
+        this.arches = Collections.unmodifiableSet(
+            Arch.parseArches(this.attributes.get(Product.Attributes.ARCHITECTURE)));
+        this.skuEnabledContentIds = Collections.unmodifiableSet(
+            parseIds(this.attributes.get(Product.Attributes.CONTENT_OVERRIDE_ENABLED)));
+        this.skuDisabledContentIds = Collections.unmodifiableSet(
+            parseIds(this.attributes.get(Product.Attributes.CONTENT_OVERRIDE_DISABLED)));
+
+        List<ContentEntry> entries = new ArrayList<>();
+        for (ProductContent pc : product.getProductContent()) {
+            entries.add(new ContentEntry(contentSnapshots.apply(pc.getContent()), pc.isEnabled()));
+        }
+
+        this.content = Collections.unmodifiableList(entries);
+    }
+
+    private static Set<String> parseIds(String ids) {
+        Set<String> parsed = new HashSet<>();
+
+        if (ids != null && !ids.isEmpty()) {
+            StringTokenizer tokenizer = new StringTokenizer(ids, ",");
+
+            while (tokenizer.hasMoreTokens()) {
+                parsed.add(tokenizer.nextToken());
+            }
+        }
+
+        return parsed;
+    }
+
+    /**
+     * Checks whether or not this snapshot still reflects the given product entity. Products are
+     * versioned and never change once created, but the last update time is compared anyway to
+     * guard against entities which were modified in place.
+     *
+     * @param product
+     *  the product entity to check
+     *
+     * @return
+     *  true if this snapshot was created from the current state of the given product; false
+     *  otherwise
+     */
+    public boolean isSnapshotOf(Product product) {
+        return this.uuid != null && this.uuid.equals(product.getUuid()) &&
+            this.updated == ContentSnapshot.timestamp(product.getUpdated());
+    }
+
+    public String getUuid() {
+        return this.uuid;
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @param key
+     *  the name of the attribute to fetch
+     *
+     * @return
+     *  the value of the attribute, or null if the product does not define the attribute
+     */
+    public String getAttributeValue(String key) {
+        return this.attributes.get(key);
+    }
+
+    /**
+     * @return
+     *  an unmodifiable set of the arches parsed from the product's arch attribute
+     */
+    public Set<String> getArches() {
+        return this.arches;
+    }
+
+    /**
+     * @return
+     *  an unmodifiable set of the IDs of the content enabled by this product when used as a SKU
+     */
+    public Set<String> getSkuEnabledContentIds() {
+        return this.skuEnabledContentIds;
+    }
+
+    /**
+     * @return
+     *  an unmodifiable set of the IDs of the content disabled by this product when used as a SKU
+     */
+    public Set<String> getSkuDisabledContentIds() {
+        return this.skuDisabledContentIds;
+    }
+
+    /**
+     * @return
+     *  an unmodifiable list of the content of this product
+     */
+    public List<ContentEntry> getContent() {
+        return this.content;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ProductSnapshot [uuid: %s, id: %s, name: %s]", this.uuid, this.id, this.name);
+    }
+}
@@ -21,12 +21,15 @@ import org.candlepin.common.config.Configuration;
 import org.candlepin.pinsetter.tasks.ActiveEntitlementJob;
 import org.candlepin.pinsetter.tasks.CancelJobJob;
 import org.candlepin.pinsetter.tasks.CertificateRevocationListTask;
+import org.candlepin.pinsetter.tasks.ConsumerSearchIndexJob;
 import org.candlepin.pinsetter.tasks.EntitlerJob;
 import org.candlepin.pinsetter.tasks.ExpiredPoolsJob;
+import org.candlepin.pinsetter.tasks.HypervisorUpdateJob;
 import org.candlepin.pinsetter.tasks.ImportRecordJob;
 import org.candlepin.pinsetter.tasks.JobCleaner;
 import org.candlepin.pinsetter.tasks.ManifestCleanerJob;
 import org.candlepin.pinsetter.tasks.OrphanCleanupJob;
+import org.candlepin.pinsetter.tasks.OwnerInfoReconcileJob;
 import org.candlepin.pinsetter.tasks.SweepBarJob;
 import org.candlepin.pinsetter.tasks.UnmappedGuestEntitlementCleanerJob;
 import org.candlepin.pinsetter.tasks.UnpauseJob;
@@ -171,6 +174,15 @@ public class ConfigProperties {
     public static final String CACHE_JMX_STATS = "cache.jmx.statistics";
     public static final String CACHE_CONFIG_FILE_URI = JPA_CONFIG_PREFIX + "hibernate.javax.cache.uri";
 
+    /**
+     * Whether updates and deletions of second-level cached entities are broadcast to the other
+     * Candlepin nodes over the Artemis broker, so they can evict their copies. Only useful when
+     * several nodes share a database and broker; requires candlepin.audit.hornetq.enable, and
+     * startup fails without it. Without invalidation, the owner, consumer type and rules cache
+     * regions rely on their short expiry to pick up changes made on other nodes.
+     */
+    public static final String CACHE_INVALIDATION_ENABLED = "cache.invalidation.enabled";
+
     public static final String[] ENCRYPTED_PROPERTIES = new String[] {
         DB_PASSWORD,
     };
@@ -187,11 +199,13 @@ public class ConfigProperties {
         ActiveEntitlementJob.class.getName(),
         CancelJobJob.class.getName(),
         CertificateRevocationListTask.class.getName(),
+        ConsumerSearchIndexJob.class.getName(),
         ExpiredPoolsJob.class.getName(),
         ImportRecordJob.class.getName(),
         JobCleaner.class.getName(),
         ManifestCleanerJob.class.getName(),
         OrphanCleanupJob.class.getName(),
+        OwnerInfoReconcileJob.class.getName(),
         SweepBarJob.class.getName(),
         UnmappedGuestEntitlementCleanerJob.class.getName(),
         UnpauseJob.class.getName(),
@@ -204,9 +218,40 @@ public class ConfigProperties {
         "pinsetter." + EntitlerJob.class.getName() + ".throttle";
     public static final String ENTITLER_BULK_SIZE = "entitler.bulk.size";
 
+    /**
+     * The number of consumers a bulk bind binds per transaction. The pools locked by a bulk bind are
+     * held only until the consumers of the current sub-batch are committed.
+     */
+    public static final String ENTITLER_BULK_BIND_BATCH_SIZE = "entitler.bulk_bind.batch_size";
+
+    /**
+     * The number of hosts from a hypervisor report the HypervisorUpdateJob will process per transaction
+     */
+    public static final String HYPERVISOR_UPDATE_CHUNK_SIZE =
+        "pinsetter." + HypervisorUpdateJob.class.getName() + ".chunk_size";
+
     public static final String BATCH_BIND_NUMBER_OF_POOLS_LIMIT =
         "candlepin.batch.bind.number_of_pools_limit";
 
+    /**
+     * The number of orphaned products or content the OrphanCleanupJob will delete per transaction
+     */
+    public static final String ORPHAN_CLEANUP_BLOCK_SIZE =
+        "pinsetter." + OrphanCleanupJob.class.getName() + ".block_size";
+
+    /**
+     * The number of job statuses the JobCleaner will delete per transaction
+     */
+    public static final String JOB_CLEANER_CHUNK_SIZE =
+        "pinsetter." + JobCleaner.class.getName() + ".chunk_size";
+
+    /**
+     * The maximum number of job statuses the JobCleaner will delete per second; zero or less
+     * disables the rate limit
+     */
+    public static final String JOB_CLEANER_MAX_ROWS_PER_SECOND =
+        "pinsetter." + JobCleaner.class.getName() + ".max_rows_per_second";
+
     public static final String SYNC_WORK_DIR = "candlepin.sync.work_dir";
 
     /**
@@ -223,6 +268,40 @@ public class ConfigProperties {
     public static final String ENV_CONTENT_FILTERING = "candlepin.environment_content_filtering";
     public static final String USE_SYSTEM_UUID_FOR_MATCHING = "candlepin.use_system_uuid_for_matching";
 
+    /**
+     * Whether or not hosts which are unchanged since the reporter's last accepted hypervisor report
+     * should skip full processing and only have their check-in date updated
+     */
+    public static final String HYPERVISOR_REPORT_FINGERPRINTING =
+        "candlepin.hypervisor.report_fingerprinting";
+
+    /**
+     * Whether or not available pools should be selected from an in-memory index of each owner's
+     * pools, and the maximum number of owners for which to keep an index
+     */
+    public static final String POOL_AVAILABILITY_INDEX_ENABLED = "candlepin.pool_availability_index.enabled";
+    public static final String POOL_AVAILABILITY_INDEX_MAX_OWNERS =
+        "candlepin.pool_availability_index.max_owners";
+
+    /**
+     * Whether or not owner info should be served from incrementally maintained counters, and the
+     * maximum age, in seconds, of counters which may be served before they are recomputed
+     */
+    public static final String OWNER_INFO_COUNTERS_ENABLED = "candlepin.owner_info.counters.enabled";
+    public static final String OWNER_INFO_COUNTERS_MAX_AGE = "candlepin.owner_info.counters.max_age";
+
+    /**
+     * Whether or not consumer searches within an owner should be served from the consumer search
+     * index where the owner has been indexed
+     */
+    public static final String CONSUMER_SEARCH_INDEX_ENABLED = "candlepin.consumer_search_index.enabled";
+
+    /**
+     * The number of consumers deleted in each transaction when deleting consumers in bulk, such as
+     * when an owner is deleted
+     */
+    public static final String CONSUMER_TEARDOWN_CHUNK_SIZE = "candlepin.consumer_teardown.chunk_size";
+
     public static final String CONSUMER_SYSTEM_NAME_PATTERN = "candlepin.consumer_system_name_pattern";
     public static final String CONSUMER_PERSON_NAME_PATTERN = "candlepin.consumer_person_name_pattern";
 
@@ -297,6 +376,49 @@ public class ConfigProperties {
      * Path to keycloak.json
      */
     public static final String KEYCLOAK_FILEPATH = "candlepin.keycloak.config";
+
+    /**
+     * Whether or not requests and jobs should be traced and their per-phase timings aggregated into
+     * the metrics available at /status/metrics
+     */
+    public static final String TRACING_ENABLED = "candlepin.tracing.enabled";
+    /**
+     * The duration, in milliseconds, above which the span tree of a traced request or job is logged.
+     * A value of zero disables slow trace logging.
+     */
+    public static final String TRACING_SLOW_THRESHOLD = "candlepin.tracing.slow_threshold_ms";
+    /**
+     * Whether or not the trace metrics should be exposed as an MBean over JMX
+     */
+    public static final String TRACING_JMX_ENABLED = "candlepin.tracing.jmx.enabled";
+    /**
+     * The number of times an identical SQL statement may be issued within a single traced request or
+     * job before it is logged as a likely N+1 query pattern. A value of zero disables the check.
+     */
+    public static final String TRACING_REPEATED_STATEMENT_THRESHOLD =
+        "candlepin.tracing.repeated_statement_threshold";
+
+    /**
+     * Whether or not bind, compliance, pool listing and hypervisor check-in requests should be
+     * recorded, with their identifying values anonymized, for later replay against a candidate build
+     */
+    public static final String REPLAY_CAPTURE_ENABLED = "candlepin.replay.capture.enabled";
+    /**
+     * The directory in which request capture files are written
+     */
+    public static final String REPLAY_CAPTURE_DIR = "candlepin.replay.capture.dir";
+    /**
+     * The maximum number of requests recorded before capturing stops. A value of zero removes the
+     * limit.
+     */
+    public static final String REPLAY_CAPTURE_MAX_REQUESTS = "candlepin.replay.capture.max_requests";
+    /**
+     * The secret used to derive the pseudonyms of identifying values in captured requests. If blank, a
+     * random secret is generated at startup, and pseudonyms are only consistent within a single
+     * capture file.
+     */
+    public static final String REPLAY_CAPTURE_SECRET = "candlepin.replay.capture.secret";
+
     public static final Map<String, String> DEFAULT_PROPERTIES = new HashMap<String, String>() {
         private static final long serialVersionUID = 1L;
 
@@ -362,6 +484,7 @@ public class ConfigProperties {
 
             this.put(CACHE_JMX_STATS, "false");
             this.put(CACHE_CONFIG_FILE_URI, "ehcache.xml");
+            this.put(CACHE_INVALIDATION_ENABLED, "false");
 
             // Pinsetter
             // prevent Quartz from checking for updates
@@ -372,7 +495,12 @@ public class ConfigProperties {
             this.put(DEFAULT_TASKS, StringUtils.join(DEFAULT_TASK_LIST, ","));
             this.put(ENTITLER_JOB_THROTTLE, "7");
             this.put(ENTITLER_BULK_SIZE, "1000");
+            this.put(ENTITLER_BULK_BIND_BATCH_SIZE, "50");
             this.put(BATCH_BIND_NUMBER_OF_POOLS_LIMIT, "100");
+            this.put(ORPHAN_CLEANUP_BLOCK_SIZE, "1000");
+            this.put(JOB_CLEANER_CHUNK_SIZE, "1000");
+            this.put(JOB_CLEANER_MAX_ROWS_PER_SECOND, "5000");
+            this.put(HYPERVISOR_UPDATE_CHUNK_SIZE, "1000");
 
             // AMQP (Qpid) configuration used by events
             this.put(AMQP_INTEGRATION_ENABLED, String.valueOf(false));
@@ -400,6 +528,13 @@ public class ConfigProperties {
 
             this.put(ENV_CONTENT_FILTERING, "true");
             this.put(USE_SYSTEM_UUID_FOR_MATCHING, "true");
+            this.put(HYPERVISOR_REPORT_FINGERPRINTING, "true");
+            this.put(POOL_AVAILABILITY_INDEX_ENABLED, "true");
+            this.put(POOL_AVAILABILITY_INDEX_MAX_OWNERS, "100");
+            this.put(OWNER_INFO_COUNTERS_ENABLED, "true");
+            this.put(OWNER_INFO_COUNTERS_MAX_AGE, "3600");
+            this.put(CONSUMER_SEARCH_INDEX_ENABLED, "true");
+            this.put(CONSUMER_TEARDOWN_CHUNK_SIZE, "500");
 
             // what constitutes a valid consumer name
             this.put(CONSUMER_SYSTEM_NAME_PATTERN, "[\\#\\?\\'\\`\\!@{}()\\[\\]\\?&\\w-\\.]+");
@@ -439,6 +574,16 @@ public class ConfigProperties {
             // ManifestCleanerJob config
             // Max Age: 24 hours
             this.put(MANIFEST_CLEANER_JOB_MAX_AGE_IN_MINUTES, "1440");
+
+            this.put(TRACING_ENABLED, "true");
+            this.put(TRACING_SLOW_THRESHOLD, "0");
+            this.put(TRACING_JMX_ENABLED, "false");
+            this.put(TRACING_REPEATED_STATEMENT_THRESHOLD, "25");
+
+            this.put(REPLAY_CAPTURE_ENABLED, "false");
+            this.put(REPLAY_CAPTURE_DIR, "/var/lib/candlepin/replay");
+            this.put(REPLAY_CAPTURE_MAX_REQUESTS, "100000");
+            this.put(REPLAY_CAPTURE_SECRET, "");
         }
     };
 
@@ -21,6 +21,7 @@ import org.candlepin.audit.EventBuilder;
 import org.candlepin.audit.EventFactory;
 import org.candlepin.audit.EventSink;
 import org.candlepin.bind.BindChainFactory;
+import org.candlepin.bind.BulkBindResult;
 import org.candlepin.bind.PoolOperationCallback;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.common.paging.Page;
@@ -101,6 +102,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -127,6 +129,9 @@ public class CandlepinPoolManager implements PoolManager {
 
     private static final int MAX_ENTITLE_RETRIES = 3;
 
+    /** The minimum number of candidate pools loaded and filtered at a time when listing a page */
+    private static final int POST_FILTER_CHUNK_SIZE = 100;
+
     private EventSink sink;
     private EventFactory eventFactory;
     private Configuration config;
@@ -1641,6 +1646,68 @@ public class CandlepinPoolManager implements PoolManager {
         return new ArrayList<>();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p></p>
+     * Consumers are bound in sub-batches of ENTITLER_BULK_BIND_BATCH_SIZE consumers, in consumer UUID
+     * order, each committed in its own transaction. The pools of a sub-batch are therefore only
+     * locked until it commits, rather than for the duration of the entire batch. When called within
+     * an existing transaction, the sub-batches join that transaction instead.
+     */
+    @Override
+    public BulkBindResult entitleByPools(Map<Consumer, Map<String, Integer>> requests) {
+        BulkBindResult result = new BulkBindResult();
+        if (MapUtils.isEmpty(requests)) {
+            return result;
+        }
+
+        // Reject requests for unknown pools before any sub-batch is committed
+        Set<String> poolIds = new HashSet<>();
+        for (Map<String, Integer> poolQuantities : requests.values()) {
+            poolIds.addAll(poolQuantities.keySet());
+        }
+
+        poolIds.removeAll(this.poolCurator.getExistingPoolIds(poolIds));
+        if (!poolIds.isEmpty()) {
+            throw new IllegalArgumentException(i18n.tr("Subscription pool(s) {0} do not exist.", poolIds));
+        }
+
+        List<Consumer> consumers = new ArrayList<>(requests.keySet());
+        consumers.sort(Comparator.comparing(Consumer::getUuid));
+
+        int batchSize = Math.max(1, this.config.getInt(ConfigProperties.ENTITLER_BULK_BIND_BATCH_SIZE));
+        for (List<Consumer> block : Iterables.partition(consumers, batchSize)) {
+            Map<Consumer, Map<String, Integer>> subBatch = new HashMap<>();
+            for (Consumer consumer : block) {
+                subBatch.put(consumer, requests.get(consumer));
+            }
+
+            result.addAll(this.entitleByPoolsInTransaction(subBatch));
+        }
+
+        return result;
+    }
+
+    /**
+     * Binds a sub-batch of a bulk bind within a single transaction.
+     *
+     * @param requests
+     *  a mapping of consumers to the pool ids and respective quantities each consumer is requesting
+     *
+     * @return
+     *  the entitlements created for, or the refusals of, each consumer in the sub-batch
+     */
+    @Transactional
+    protected BulkBindResult entitleByPoolsInTransaction(Map<Consumer, Map<String, Integer>> requests) {
+        BulkBindResult result = bindChainFactory
+            .createBulk(requests, CallerType.BIND)
+            .run();
+
+        poolCurator.flush();
+
+        return result;
+    }
+
     @Override
     @Transactional
     /*
@@ -1854,6 +1921,7 @@ public class CandlepinPoolManager implements PoolManager {
      * choose to set this to false.
      * @return the pools that are deleted as a consequence of revoking entitlements
      */
+    @Override
     @Transactional
     @Traceable
     public Set<Pool> revokeEntitlements(List<Entitlement> entsToRevoke, Set<String> alreadyDeletedPools,
@@ -1893,11 +1961,17 @@ public class CandlepinPoolManager implements PoolManager {
 
         log.info("Batch revoking {} entitlements", entsToRevoke.size());
         entsToRevoke = new ArrayList<>(entsToRevoke);
+        Set<String> requestedEntIds = new HashSet<>(getEntIds(entsToRevoke));
 
         for (Pool pool : poolsToDelete) {
             for (Entitlement ent : pool.getEntitlements()) {
                 ent.setDeletedFromPool(true);
-                entsToRevoke.add(ent);
+
+                // The entitlement may already be among those requested, such as when the entitlements
+                // of a host and its guests are revoked together
+                if (ent.getId() == null || !requestedEntIds.contains(ent.getId())) {
+                    entsToRevoke.add(ent);
+                }
             }
         }
 
@@ -2494,6 +2568,11 @@ public class CandlepinPoolManager implements PoolManager {
             filters.addAttributeFilter(Pool.Attributes.DEVELOPMENT_POOL, "!true");
         }
 
+        if (postFilter && pageRequest != null && pageRequest.isPaging()) {
+            return this.listPostFilteredPoolPage(consumer, key, ownerId, productId, subscriptionId, activeOn,
+                includeWarnings, filters, pageRequest, addFuture, onlyFuture, after);
+        }
+
         Page<List<Pool>> page = this.poolCurator.listAvailableEntitlementPools(consumer,
             ownerId, productId, subscriptionId, activeOn, filters, pageRequest, postFilter,
             addFuture, onlyFuture, after);
@@ -2509,27 +2588,117 @@ public class CandlepinPoolManager implements PoolManager {
         // Note that something could change between the time we list a pool as
         // available, and the consumer requests the actual entitlement, and the
         // request still could fail.
-        List<Pool> resultingPools = page.getPageData();
+        List<Pool> resultingPools = this.postFilterPools(consumer, key, page.getPageData(), includeWarnings);
 
-        if (consumer != null) {
-            resultingPools = enforcer.filterPools(consumer, resultingPools, includeWarnings);
+        // Set maxRecords once we are done filtering
+        page.setMaxRecords(resultingPools.size());
+        page.setPageData(resultingPools);
+
+        return page;
+    }
+
+    /**
+     * Lists a single page of the pools available to the given consumer or activation key. Rather
+     * than loading every candidate pool and running the rules against all of them, the candidate
+     * pools are loaded and filtered in chunks, in the requested order, until the requested page
+     * and one further pool have passed the rules. The look-ahead pool lets callers tell whether
+     * there is a next page.
+     * <p></p>
+     * If the candidates are not exhausted by then, the total record count of the page is an
+     * estimate, extrapolated from the proportion of the candidates filtered so far which passed
+     * the rules, and the page is flagged as such. Callers which require an exact total may request
+     * one through the page request, in which case every remaining candidate is filtered as well.
+     */
+    private Page<List<Pool>> listPostFilteredPoolPage(Consumer consumer, ActivationKey key, String ownerId,
+        String productId, String subscriptionId, Date activeOn, boolean includeWarnings,
+        PoolFilterBuilder filters, PageRequest pageRequest, boolean addFuture, boolean onlyFuture,
+        Date after) {
+
+        List<String> poolIds = this.poolCurator.listAvailableEntitlementPoolIds(consumer, ownerId,
+            (productId != null ? Collections.singletonList(productId) : null), subscriptionId, activeOn,
+            filters, pageRequest, addFuture, onlyFuture, after);
+
+        int pageEnd = pageRequest.getPage() * pageRequest.getPerPage();
+        int required = pageRequest.isExactCount() ? Integer.MAX_VALUE : pageEnd + 1;
+        List<Pool> retained = new ArrayList<>();
+        int accepted = 0;
+        int scanned = 0;
+
+        while (scanned < poolIds.size() && accepted < required) {
+            int chunkSize = Math.max(POST_FILTER_CHUNK_SIZE, pageEnd + 1 - accepted);
+            List<String> chunk = poolIds.subList(scanned, Math.min(scanned + chunkSize, poolIds.size()));
+
+            for (Pool pool : this.postFilterPools(consumer, key, this.listPoolsInOrder(chunk),
+                includeWarnings)) {
+
+                // Pools past the end of the page are only counted
+                if (retained.size() < pageEnd) {
+                    retained.add(pool);
+                }
+
+                ++accepted;
+            }
+
+            scanned += chunk.size();
         }
 
-        if (key != null) {
-            resultingPools = this.filterPoolsForActKey(key, resultingPools, includeWarnings);
+        int total = accepted;
+        boolean estimated = scanned < poolIds.size();
+        if (estimated) {
+            total += (int) ((long) (poolIds.size() - scanned) * accepted / scanned);
         }
 
-        // Set maxRecords once we are done filtering
-        page.setMaxRecords(resultingPools.size());
+        log.debug("Post-filtered {} of {} candidate pools; {} accepted, {} {} in total", scanned,
+            poolIds.size(), accepted, total, estimated ? "estimated" : "counted");
 
-        if (pageRequest != null && pageRequest.isPaging()) {
-            resultingPools = poolCurator.takeSubList(pageRequest, resultingPools);
-        }
+        Page<List<Pool>> page = new Page<>();
+        page.setPageRequest(pageRequest);
+        page.setMaxRecords(total);
+        page.setMaxRecordsEstimated(estimated);
+        page.setPageData(poolCurator.takeSubList(pageRequest, retained));
 
-        page.setPageData(resultingPools);
         return page;
     }
 
+    /**
+     * Loads the pools with the given IDs, in the order in which their IDs are listed. IDs of pools
+     * which no longer exist are skipped.
+     */
+    private List<Pool> listPoolsInOrder(List<String> poolIds) {
+        Map<String, Pool> poolMap = new HashMap<>();
+        for (Pool pool : this.poolCurator.listAllByIds(poolIds)) {
+            poolMap.put(pool.getId(), pool);
+        }
+
+        List<Pool> pools = new ArrayList<>(poolIds.size());
+        for (String poolId : poolIds) {
+            Pool pool = poolMap.get(poolId);
+
+            if (pool != null) {
+                pools.add(pool);
+            }
+        }
+
+        return pools;
+    }
+
+    /**
+     * Filters out the pools the given consumer or activation key will not be able to attach.
+     */
+    private List<Pool> postFilterPools(Consumer consumer, ActivationKey key, List<Pool> pools,
+        boolean includeWarnings) {
+
+        if (consumer != null) {
+            pools = enforcer.filterPools(consumer, pools, includeWarnings);
+        }
+
+        if (key != null) {
+            pools = this.filterPoolsForActKey(key, pools, includeWarnings);
+        }
+
+        return pools;
+    }
+
     /**
      * Creates a Subscription object using information derived from the specified pool. Used to
      * support deprecated API calls that still require a subscription.
@@ -0,0 +1,253 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import org.candlepin.model.CertificateBundle;
+import org.candlepin.model.CertificateBundleCurator;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+
+
+/**
+ * The CertificateBundleManager keeps the certificate bundles of consumers in sync with the
+ * certificates they are currently entitled to. Bundles are updated incrementally: only the
+ * serials which were added or removed since the last update are recorded against the new bundle
+ * version.
+ */
+public class CertificateBundleManager {
+    private static Logger log = LoggerFactory.getLogger(CertificateBundleManager.class);
+
+    /**
+     * The number of bundle versions for which removed serials are retained. Clients requesting a
+     * delta from an older version receive the full bundle instead.
+     */
+    public static final int MAX_DELTA_VERSIONS = 50;
+
+    private CertificateBundleCurator bundleCurator;
+    private ConsumerCurator consumerCurator;
+
+    @Inject
+    public CertificateBundleManager(CertificateBundleCurator bundleCurator, ConsumerCurator consumerCurator) {
+        this.bundleCurator = bundleCurator;
+        this.consumerCurator = consumerCurator;
+    }
+
+    /**
+     * Fetches the certificate bundle of the given consumer as it was last refreshed, without
+     * bringing it up to date.
+     *
+     * @param consumer
+     *  the consumer for which to fetch the certificate bundle
+     *
+     * @return
+     *  the certificate bundle of the consumer, or null if the consumer does not yet have one
+     */
+    public CertificateBundle getBundle(Consumer consumer) {
+        return consumer != null ? this.bundleCurator.getForConsumer(consumer) : null;
+    }
+
+    /**
+     * Checks whether the given bundle already contains exactly the given serials and content
+     * access version, in which case refreshing it would not change its version.
+     *
+     * @param bundle
+     *  the bundle to check
+     *
+     * @param serials
+     *  the serials of all of the certificates the consumer is currently entitled to
+     *
+     * @param contentAccessVersion
+     *  the version of the content access certificate served to the consumer, or null if the
+     *  consumer is not served one
+     *
+     * @return
+     *  true if the bundle is up to date; false otherwise
+     */
+    public boolean isCurrent(CertificateBundle bundle, Collection<Long> serials,
+        String contentAccessVersion) {
+
+        return bundle != null && serials != null &&
+            new HashSet<>(serials).equals(bundle.getSerials().keySet()) &&
+            Objects.equals(contentAccessVersion, bundle.getContentAccessVersion());
+    }
+
+    /**
+     * Updates the certificate bundle of the given consumer to contain the given serials, creating
+     * the bundle if the consumer does not yet have one. If the serials have not changed since the
+     * last update, the bundle is returned as-is, without taking any locks.
+     *
+     * @param consumer
+     *  the consumer for which to update the certificate bundle
+     *
+     * @param serials
+     *  the serials of all of the certificates the consumer is currently entitled to
+     *
+     * @throws IllegalArgumentException
+     *  if consumer or serials is null
+     *
+     * @return
+     *  the up-to-date certificate bundle of the consumer
+     */
+    @Transactional
+    public CertificateBundle refresh(Consumer consumer, Collection<Long> serials) {
+        return this.refresh(consumer, serials, null, null);
+    }
+
+    /**
+     * Updates the certificate bundle of the given consumer to contain the given serials and
+     * content access certificate, creating the bundle if the consumer does not yet have one. As
+     * the content payload of the content access certificate is regenerated without reissuing the
+     * certificate, a change in its version alone also creates a new bundle version, at which the
+     * content access certificate is considered added. If nothing has changed since the last
+     * update, the bundle is returned as-is, without taking any locks.
+     *
+     * @param consumer
+     *  the consumer for which to update the certificate bundle
+     *
+     * @param serials
+     *  the serials of all of the certificates the consumer is currently entitled to, including the
+     *  content access certificate
+     *
+     * @param contentAccessSerial
+     *  the serial of the content access certificate served to the consumer, or null if the
+     *  consumer is not served one
+     *
+     * @param contentAccessVersion
+     *  the version of the content access certificate served to the consumer, or null if the
+     *  consumer is not served one
+     *
+     * @throws IllegalArgumentException
+     *  if consumer or serials is null
+     *
+     * @return
+     *  the up-to-date certificate bundle of the consumer
+     */
+    @Transactional
+    public CertificateBundle refresh(Consumer consumer, Collection<Long> serials, Long contentAccessSerial,
+        String contentAccessVersion) {
+
+        if (consumer == null) {
+            throw new IllegalArgumentException("consumer is null");
+        }
+
+        if (serials == null) {
+            throw new IllegalArgumentException("serials is null");
+        }
+
+        Set<Long> current = new HashSet<>(serials);
+
+        CertificateBundle bundle = this.bundleCurator.getForConsumer(consumer);
+        if (this.isCurrent(bundle, current, contentAccessVersion)) {
+            return bundle;
+        }
+
+        // Lock the consumer so concurrent requests don't create or version the bundle twice, then
+        // check again in case another request already applied the change while we waited
+        this.consumerCurator.lock(consumer);
+
+        if (bundle != null) {
+            this.bundleCurator.refresh(bundle);
+        }
+        else {
+            bundle = this.bundleCurator.getForConsumer(consumer);
+        }
+
+        if (bundle == null) {
+            bundle = new CertificateBundle(consumer.getId());
+            bundle.setVersion(1);
+            bundle.setDeltaBase(1);
+            bundle.setContentAccessVersion(contentAccessVersion);
+
+            for (Long serial : current) {
+                bundle.getSerials().put(serial, 1L);
+            }
+
+            log.debug("Created certificate bundle for consumer {} with {} serials", consumer.getUuid(),
+                current.size());
+
+            return this.bundleCurator.create(bundle);
+        }
+
+        if (!this.isCurrent(bundle, current, contentAccessVersion)) {
+            this.applyChanges(bundle, current, contentAccessSerial, contentAccessVersion);
+            bundle = this.bundleCurator.merge(bundle);
+        }
+
+        return bundle;
+    }
+
+    /**
+     * Records the differences between the serials in the bundle and the given set of serials as a
+     * new bundle version, and discards removed serials which fall outside the delta window. A
+     * content access certificate whose version changed is recorded as added again.
+     */
+    private void applyChanges(CertificateBundle bundle, Set<Long> current, Long contentAccessSerial,
+        String contentAccessVersion) {
+
+        long version = bundle.getVersion() + 1;
+        Map<Long, Long> serials = bundle.getSerials();
+        Map<Long, Long> removed = bundle.getRemovedSerials();
+
+        int removedCount = 0;
+        for (Iterator<Long> iterator = serials.keySet().iterator(); iterator.hasNext();) {
+            Long serial = iterator.next();
+
+            if (!current.contains(serial)) {
+                iterator.remove();
+                removed.put(serial, version);
+                ++removedCount;
+            }
+        }
+
+        int addedCount = 0;
+        for (Long serial : current) {
+            if (!serials.containsKey(serial)) {
+                serials.put(serial, version);
+                removed.remove(serial);
+                ++addedCount;
+            }
+        }
+
+        if (contentAccessSerial != null && current.contains(contentAccessSerial) &&
+            !Objects.equals(contentAccessVersion, bundle.getContentAccessVersion())) {
+
+            serials.put(contentAccessSerial, version);
+        }
+
+        long deltaBase = Math.max(bundle.getDeltaBase(), version - MAX_DELTA_VERSIONS);
+        removed.values().removeIf(removedAt -> removedAt <= deltaBase);
+
+        bundle.setVersion(version);
+        bundle.setDeltaBase(deltaBase);
+        bundle.setContentAccessVersion(contentAccessVersion);
+
+        log.debug("Updated certificate bundle {} to version {}: {} serials added, {} removed", bundle.getId(),
+            version, addedCount, removedCount);
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import org.candlepin.audit.EventFactory;
+import org.candlepin.audit.EventSink;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.EntitlementCurator;
+import org.candlepin.model.Owner;
+import org.candlepin.policy.js.consumer.ConsumerRules;
+
+import com.google.common.collect.Iterables;
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.inject.Provider;
+
+
+
+/**
+ * The ConsumerTeardownManager deletes consumers in bulk, such as when an owner is deleted or a
+ * large number of stale consumers are removed at once.
+ * <p></p>
+ * Consumers are processed in chunks ordered by ID, each in its own transaction when no
+ * transaction is already active. For each chunk, the entitlements of the consumers are revoked in
+ * a single batch, and the consumers are removed along with their facts, guest IDs, certificates
+ * and other dependent rows using set-based deletes. Their certificate serials are revoked, their
+ * deleted consumer records are written in batches and a single compact event is emitted for the
+ * chunk.
+ * <p></p>
+ * As each chunk is committed as it completes, an interrupted teardown leaves only whole chunks
+ * deleted, and repeating the teardown resumes with the consumers which remain. The events of each
+ * committed chunk are sent along with it, rather than at the end of the request.
+ */
+public class ConsumerTeardownManager {
+    private static Logger log = LoggerFactory.getLogger(ConsumerTeardownManager.class);
+
+    /* The PoolManager and ConsumerRules are injected separately to avoid a circular reference
+       through the OwnerManager, which has an injection of this class. ConsumerRules is not an
+       interface, so it cannot be proxied by Guice and is provided lazily instead.
+     */
+    @Inject PoolManager poolManager;
+    @Inject Provider<ConsumerRules> consumerRulesProvider;
+
+    private Configuration config;
+    private ConsumerCurator consumerCurator;
+    private EntitlementCurator entitlementCurator;
+    private EventFactory eventFactory;
+    private EventSink sink;
+
+    @Inject
+    public ConsumerTeardownManager(Configuration config, ConsumerCurator consumerCurator,
+        EntitlementCurator entitlementCurator, EventFactory eventFactory, EventSink sink) {
+
+        this.config = config;
+        this.consumerCurator = consumerCurator;
+        this.entitlementCurator = entitlementCurator;
+        this.eventFactory = eventFactory;
+        this.sink = sink;
+    }
+
+    /**
+     * Deletes all of the consumers of the given owner.
+     *
+     * @param owner
+     *  the owner for which to delete consumers
+     *
+     * @return
+     *  the number of consumers deleted
+     */
+    public int deleteOwnerConsumers(Owner owner) {
+        int chunkSize = this.getChunkSize();
+        int deleted = 0;
+
+        List<String> consumerIds = this.consumerCurator.getConsumerIdChunk(owner.getId(), null, chunkSize);
+
+        while (!consumerIds.isEmpty()) {
+            deleted += this.deleteChunkAndSendEvents(owner, consumerIds);
+
+            String lastId = consumerIds.get(consumerIds.size() - 1);
+            consumerIds = this.consumerCurator.getConsumerIdChunk(owner.getId(), lastId, chunkSize);
+        }
+
+        log.info("Deleted {} consumers of owner: {}", deleted, owner);
+        return deleted;
+    }
+
+    /**
+     * Deletes the consumers of the given owner with the given UUIDs. UUIDs which do not belong to
+     * a consumer of the owner are ignored.
+     *
+     * @param owner
+     *  the owner of the consumers to delete
+     *
+     * @param consumerUuids
+     *  the UUIDs of the consumers to delete
+     *
+     * @return
+     *  the number of consumers deleted
+     */
+    public int deleteConsumers(Owner owner, Collection<String> consumerUuids) {
+        if (consumerUuids == null || consumerUuids.isEmpty()) {
+            return 0;
+        }
+
+        List<String> consumerIds = this.consumerCurator.getConsumerIdsByUuids(owner.getId(), consumerUuids);
+        int deleted = 0;
+
+        for (List<String> chunk : Iterables.partition(consumerIds, this.getChunkSize())) {
+            deleted += this.deleteChunkAndSendEvents(owner, chunk);
+        }
+
+        log.info("Deleted {} of {} requested consumers of owner: {}", deleted, consumerUuids.size(),
+            owner);
+
+        return deleted;
+    }
+
+    /**
+     * Deletes a single chunk of consumers of the given owner, sending its events as soon as the
+     * chunk is committed. Events are otherwise only sent once the whole request or job succeeds,
+     * and the events of chunks committed before a later chunk fails would be lost.
+     *
+     * @param owner
+     *  the owner of the consumers
+     *
+     * @param consumerIds
+     *  the IDs of the consumers in the chunk
+     *
+     * @return
+     *  the number of consumers deleted
+     */
+    private int deleteChunkAndSendEvents(Owner owner, List<String> consumerIds) {
+        // Within an active transaction the chunk commits along with it, as do its events
+        boolean commits = !this.consumerCurator.getEntityManager().getTransaction().isActive();
+
+        int deleted = this.deleteChunk(owner, consumerIds);
+
+        if (commits) {
+            this.sink.sendEvents();
+        }
+
+        return deleted;
+    }
+
+    /**
+     * Deletes a single chunk of consumers of the given owner.
+     *
+     * @param owner
+     *  the owner of the consumers
+     *
+     * @param consumerIds
+     *  the IDs of the consumers in the chunk
+     *
+     * @return
+     *  the number of consumers deleted
+     */
+    @Transactional
+    protected int deleteChunk(Owner owner, List<String> consumerIds) {
+        // Consumers deleted concurrently since the chunk was read are no longer loaded here
+        Collection<Consumer> consumers = this.consumerCurator.lockAndLoad(consumerIds);
+        if (consumers.isEmpty()) {
+            return 0;
+        }
+
+        log.debug("Deleting chunk of {} consumers of owner: {}", consumers.size(), owner);
+
+        // We're about to delete these consumers; no need to regen/dirty their dependent
+        // entitlements or recalculate status.
+        List<Entitlement> entitlements = this.entitlementCurator.listByConsumerIds(consumerIds);
+        this.poolManager.revokeEntitlements(entitlements, null, false);
+
+        ConsumerRules consumerRules = this.consumerRulesProvider.get();
+        for (Consumer consumer : consumers) {
+            consumerRules.onConsumerDelete(consumer);
+        }
+
+        List<String> consumerUuids = this.consumerCurator.bulkDelete(owner, new ArrayList<>(consumers));
+        this.sink.queueEvent(this.eventFactory.consumersDeleted(owner, consumerUuids));
+
+        return consumerUuids.size();
+    }
+
+    private int getChunkSize() {
+        return Math.max(1, this.config.getInt(ConfigProperties.CONSUMER_TEARDOWN_CHUNK_SIZE));
+    }
+}
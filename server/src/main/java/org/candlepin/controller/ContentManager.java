@@ -14,6 +14,7 @@
  */
 package org.candlepin.controller;
 
+import org.candlepin.cache.ProductCatalog;
 import org.candlepin.dto.ModelTranslator;
 import org.candlepin.dto.api.v1.ContentDTO;
 import org.candlepin.dto.api.v1.ProductDTO;
@@ -70,12 +71,13 @@ public class ContentManager {
     private ProductCurator productCurator;
     private ProductManager productManager;
     private ModelTranslator modelTranslator;
+    private ProductCatalog productCatalog;
 
     @Inject
     public ContentManager(
         ContentCurator contentCurator, EntitlementCertificateGenerator entitlementCertGenerator,
         OwnerContentCurator ownerContentCurator, ProductCurator productCurator,
-        ProductManager productManager, ModelTranslator modelTranslator) {
+        ProductManager productManager, ModelTranslator modelTranslator, ProductCatalog productCatalog) {
 
         this.contentCurator = contentCurator;
         this.entitlementCertGenerator = entitlementCertGenerator;
@@ -83,6 +85,7 @@ public class ContentManager {
         this.productCurator = productCurator;
         this.productManager = productManager;
         this.modelTranslator = modelTranslator;
+        this.productCatalog = productCatalog;
     }
 
     /**
@@ -125,8 +128,8 @@ public class ContentManager {
         log.debug("Creating new content for org: {}, {}", entity, owner);
 
         // Check if we have an alternate version we can use instead.
-        List<Content> alternateVersions = this.ownerContentCurator.getContentByVersions(
-            owner, Collections.<String, Integer>singletonMap(entity.getId(), entity.getEntityVersion()))
+        List<Content> alternateVersions = this.ownerContentCurator.getContentByEntityHashes(
+            owner, Collections.singleton(entity.getEntityHash()))
             .list();
 
         log.debug("Checking {} alternate content versions", alternateVersions.size());
@@ -232,8 +235,8 @@ public class ContentManager {
         log.debug("Applying content update for org: {}, {}", entity, owner);
         Content updated = this.applyContentChanges((Content) entity.clone(), update);
 
-        List<Content> alternateVersions = this.ownerContentCurator.getContentByVersions(
-            owner, Collections.<String, Integer>singletonMap(updated.getId(), updated.getEntityVersion()))
+        List<Content> alternateVersions = this.ownerContentCurator.getContentByEntityHashes(
+            owner, Collections.singleton(updated.getEntityHash()))
             .list();
 
         log.debug("Checking {} alternate content versions", alternateVersions.size());
@@ -248,6 +251,7 @@ public class ContentManager {
 
                 this.ownerContentCurator.updateOwnerContentReferences(owner,
                     Collections.<String, String>singletonMap(entity.getUuid(), alt.getUuid()));
+                this.productCatalog.evictContent(Collections.singleton(entity.getUuid()));
 
                 log.debug("Updating {} affected products", affectedProducts.size());
                 ContentDTO cdto = this.modelTranslator.translate(alt, ContentDTO.class);
@@ -307,6 +311,7 @@ public class ContentManager {
 
         this.ownerContentCurator.updateOwnerContentReferences(owner,
             Collections.<String, String>singletonMap(entity.getUuid(), updated.getUuid()));
+        this.productCatalog.evictContent(Collections.singleton(entity.getUuid()));
 
         // Impl note:
         // This block is a consequence of products and contents not being strongly related.
@@ -371,7 +376,7 @@ public class ContentManager {
         Map<String, Content> createdContent = importResult.getCreatedEntities();
         Map<String, Content> updatedContent = importResult.getUpdatedEntities();
 
-        Map<String, Integer> contentVersions = new HashMap<>();
+        Set<Long> contentHashes = new HashSet<>();
         Map<String, Content> sourceContent = new HashMap<>();
         Map<String, List<Content>> existingVersions = new HashMap<>();
         List<OwnerContent> ownerContentBuffer = new LinkedList<>();
@@ -397,7 +402,7 @@ public class ContentManager {
             content.setLocked(true);
 
             updatedContent.put(content.getId(), content);
-            contentVersions.put(content.getId(), content.getEntityVersion());
+            contentHashes.add(content.getEntityHash());
         }
 
         log.debug("Validating new content...");
@@ -415,12 +420,12 @@ public class ContentManager {
                 content.setLocked(true);
 
                 createdContent.put(content.getId(), content);
-                contentVersions.put(content.getId(), content.getEntityVersion());
+                contentHashes.add(content.getEntityHash());
             }
         }
 
         log.debug("Checking for existing content versions...");
-        for (Content alt : this.ownerContentCurator.getContentByVersions(owner, contentVersions)) {
+        for (Content alt : this.ownerContentCurator.getContentByEntityHashes(owner, contentHashes)) {
             List<Content> alternates = existingVersions.get(alt.getId());
             if (alternates == null) {
                 alternates = new LinkedList<>();
@@ -430,8 +435,8 @@ public class ContentManager {
             alternates.add(alt);
         }
 
-        contentVersions.clear();
-        contentVersions = null;
+        contentHashes.clear();
+        contentHashes = null;
 
         // We're about to start modifying the maps, so we need to clone the created set before we
         // start adding the update forks to it.
@@ -550,6 +555,7 @@ public class ContentManager {
         }
 
         this.ownerContentCurator.updateOwnerContentReferences(owner, contentUuidMap);
+        this.productCatalog.evictContent(contentUuidMap.keySet());
 
         // Return
         return importResult;
@@ -717,6 +723,7 @@ public class ContentManager {
 
             // Remove content references
             this.ownerContentCurator.removeOwnerContentReferences(owner, contentUuids);
+            this.productCatalog.evictContent(contentUuids);
         }
     }
 
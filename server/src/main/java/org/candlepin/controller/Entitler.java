@@ -17,6 +17,7 @@ package org.candlepin.controller;
 import org.candlepin.audit.Event;
 import org.candlepin.audit.EventFactory;
 import org.candlepin.audit.EventSink;
+import org.candlepin.bind.BulkBindResult;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.exceptions.ForbiddenException;
@@ -61,10 +62,12 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 /**
  * entitler
@@ -149,6 +152,42 @@ public class Entitler {
         }
     }
 
+    /**
+     * Binds many consumers to their requested pools as a single batch. If a consumer or pool
+     * referenced by the requests does not exist, a BadRequestException is thrown and no consumers
+     * are bound.
+     *
+     * @param consumerPoolQuantities
+     *  a mapping of consumer UUIDs to the pool IDs and quantities requested by each consumer
+     *
+     * @return
+     *  the entitlements created for, or the refusals of, each consumer
+     */
+    public BulkBindResult bindByPoolQuantities(Map<String, Map<String, Integer>> consumerPoolQuantities) {
+        Map<Consumer, Map<String, Integer>> requests = new HashMap<>();
+        for (Consumer consumer : consumerCurator.findByUuids(consumerPoolQuantities.keySet())) {
+            requests.put(consumer, consumerPoolQuantities.get(consumer.getUuid()));
+        }
+
+        if (requests.size() != consumerPoolQuantities.size()) {
+            Set<String> missing = new HashSet<>(consumerPoolQuantities.keySet());
+            requests.keySet().forEach(consumer -> missing.remove(consumer.getUuid()));
+
+            throw new BadRequestException(i18n.tr("Unit(s) {0} could not be found.", missing));
+        }
+
+        try {
+            BulkBindResult result = poolManager.entitleByPools(requests);
+            log.debug("Bound {} consumers in bulk; {} refused.", result.getEntitlements().size(),
+                result.getRefusals().size());
+
+            return result;
+        }
+        catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        }
+    }
+
     public void adjustEntitlementQuantity(Consumer consumer, Entitlement ent,
         Integer quantity) {
         // Attempt to adjust an entitlement:
@@ -14,9 +14,9 @@
  */
 package org.candlepin.controller;
 
-import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.ContentAccessCertificateCurator;
+import org.candlepin.model.Environment;
 import org.candlepin.model.EnvironmentCurator;
 import org.candlepin.model.ExporterMetadata;
 import org.candlepin.model.ExporterMetadataCurator;
@@ -33,6 +33,9 @@ import org.candlepin.model.Pool;
 import org.candlepin.model.UeberCertificateCurator;
 import org.candlepin.model.activationkeys.ActivationKey;
 import org.candlepin.model.activationkeys.ActivationKeyCurator;
+import org.candlepin.pinsetter.core.PinsetterException;
+import org.candlepin.pinsetter.core.PinsetterKernel;
+import org.candlepin.pinsetter.tasks.RegenContentAccessPayloadsJob;
 import org.candlepin.service.ContentAccessCertServiceAdapter;
 import org.candlepin.service.OwnerServiceAdapter;
 
@@ -61,6 +64,7 @@ public class OwnerManager {
        the injection to occur after the constructor.
      */
     @Inject PoolManager poolManager;
+    @Inject ConsumerTeardownManager consumerTeardownManager;
     private ConsumerCurator consumerCurator;
     private ActivationKeyCurator activationKeyCurator;
     private EnvironmentCurator envCurator;
@@ -77,6 +81,7 @@ public class OwnerManager {
     private OwnerEnvContentAccessCurator ownerEnvContentAccessCurator;
     private UeberCertificateCurator uberCertificateCurator;
     private OwnerServiceAdapter ownerServiceAdapter;
+    private PinsetterKernel pinsetterKernel;
 
     @Inject
     public OwnerManager(ConsumerCurator consumerCurator,
@@ -88,7 +93,8 @@ public class OwnerManager {
         ContentAccessCertServiceAdapter contentAccessCertService,
         ContentAccessCertificateCurator contentAccessCertCurator,
         OwnerEnvContentAccessCurator ownerEnvContentAccessCurator,
-        UeberCertificateCurator uberCertificateCurator, OwnerServiceAdapter ownerServiceAdapter) {
+        UeberCertificateCurator uberCertificateCurator, OwnerServiceAdapter ownerServiceAdapter,
+        PinsetterKernel pinsetterKernel) {
 
         this.consumerCurator = consumerCurator;
         this.activationKeyCurator = activationKeyCurator;
@@ -106,39 +112,52 @@ public class OwnerManager {
         this.ownerEnvContentAccessCurator = ownerEnvContentAccessCurator;
         this.uberCertificateCurator = uberCertificateCurator;
         this.ownerServiceAdapter = ownerServiceAdapter;
+        this.pinsetterKernel = pinsetterKernel;
     }
-    @Transactional
-    public void cleanupAndDelete(Owner owner, boolean revokeCerts) {
-        log.info("Cleaning up owner: {}", owner);
 
-        Collection<String> consumerIds = this.ownerCurator.getConsumerIds(owner).list();
-        Collection<Consumer> consumers = this.consumerCurator.lockAndLoad(consumerIds);
-
-        for (Consumer consumer : consumers) {
-            log.info("Removing all entitlements for consumer: {}", consumer);
+    /**
+     * Deletes the consumers of the given owner with the specified UUIDs, in chunks. UUIDs which do
+     * not belong to a consumer of the owner are ignored.
+     *
+     * @param owner
+     *  the owner of the consumers to delete
+     *
+     * @param consumerUuids
+     *  the UUIDs of the consumers to delete
+     *
+     * @return
+     *  the number of consumers deleted
+     */
+    public int deleteConsumers(Owner owner, Collection<String> consumerUuids) {
+        return this.consumerTeardownManager.deleteConsumers(owner, consumerUuids);
+    }
 
-            // We're about to delete these consumers; no need to regen/dirty their dependent
-            // entitlements or recalculate status.
-            poolManager.revokeAllEntitlements(consumer, false);
-        }
+    /**
+     * Deletes the given owner, along with its consumers, activation keys, environments, pools and
+     * other data.
+     * <p></p>
+     * The consumers of the owner are deleted first, in chunks, by the ConsumerTeardownManager.
+     * When called outside of a transaction, each chunk is committed as it completes, so deleting an
+     * owner with many consumers does not hold a single long transaction, and a deletion which is
+     * interrupted can be resumed by deleting the owner again.
+     *
+     * @param owner
+     *  the owner to delete
+     *
+     * @param revokeCerts
+     *  whether or not to revoke the certificates of the owner
+     */
+    public void cleanupAndDelete(Owner owner, boolean revokeCerts) {
+        log.info("Cleaning up owner: {}", owner);
 
-        // Actual consumer deletion is done out of the loop above since all
-        // entitlements need to be removed before the deletion occurs. This
-        // is due to the sourceConsumer that was added to Pool. Deleting an
-        // entitlement may result in the deletion of a sub pool, which would
-        // cause issues.
-        // FIXME Perhaps this can be handled a little better.
-        for (Consumer consumer : consumers) {
-            // need to check if this has been removed due to a
-            // parent being deleted
-            // TODO: There has to be a more efficient way to do this...
-            log.info("Deleting consumer: {}", consumer);
-            Consumer next = consumerCurator.get(consumer.getId());
-            if (next != null) {
-                consumerCurator.delete(next);
-            }
-        }
+        // All of the consumers' entitlements need to be removed before the owner's pools are
+        // deleted, as deleting an entitlement may result in the deletion of a sub pool.
+        this.consumerTeardownManager.deleteOwnerConsumers(owner);
+        this.deleteOwnerData(owner);
+    }
 
+    @Transactional
+    protected void deleteOwnerData(Owner owner) {
         for (ActivationKey key : activationKeyCurator.listByOwner(owner)) {
             log.info("Deleting activation key: {}", key);
             activationKeyCurator.delete(key);
@@ -295,11 +314,50 @@ public class OwnerManager {
             contentAccessCertCurator.deleteForOwner(owner);
         }
 
-        // removed cached versions of content access cert data
-        ownerEnvContentAccessCurator.removeAllForOwner(owner.getId());
+        if (owner.isContentAccessEnabled()) {
+            // Keep serving the cached content access cert data until it has been regenerated
+            ownerEnvContentAccessCurator.markStaleForOwner(owner.getId());
+            this.scheduleContentAccessRegen(owner);
+        }
+        else {
+            // removed cached versions of content access cert data
+            ownerEnvContentAccessCurator.removeAllForOwner(owner.getId());
+        }
+
         ownerCurator.flush();
     }
 
+    /**
+     * Refreshes the cached content access data for the given environment after its promoted
+     * content has changed.
+     *
+     * @param environment
+     *  The environment for which to refresh content access
+     */
+    @Transactional
+    public void refreshEnvironmentForContentAccess(Environment environment) {
+        if (ownerEnvContentAccessCurator.markStaleForEnvironment(environment) > 0) {
+            this.scheduleContentAccessRegen(environment.getOwner());
+        }
+    }
+
+    /**
+     * Queues regeneration of the stale content access data of the given owner. If the job cannot
+     * be queued, the stale data is dropped instead, to be regenerated as clients request it.
+     *
+     * @param owner
+     *  The owner for which to regenerate content access data
+     */
+    private void scheduleContentAccessRegen(Owner owner) {
+        try {
+            this.pinsetterKernel.scheduleSingleJob(RegenContentAccessPayloadsJob.forOwner(owner));
+        }
+        catch (PinsetterException e) {
+            log.warn("Unable to queue content access regeneration for owner: {}", owner.getKey(), e);
+            ownerEnvContentAccessCurator.removeAllForOwner(owner.getId());
+        }
+    }
+
     public void updateRefreshDate(Owner owner) {
         owner.setLastRefreshed(new Date());
         ownerCurator.merge(owner);
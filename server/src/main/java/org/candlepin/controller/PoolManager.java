@@ -14,6 +14,7 @@
  */
 package org.candlepin.controller;
 
+import org.candlepin.bind.BulkBindResult;
 import org.candlepin.common.paging.Page;
 import org.candlepin.common.paging.PageRequest;
 import org.candlepin.model.CandlepinQuery;
@@ -104,6 +105,19 @@ public interface PoolManager {
     List<Entitlement> entitleByPools(Consumer consumer, Map<String, Integer> poolQuantities)
         throws EntitlementRefusedException;
 
+    /**
+     * Requests entitlements for many consumers as a single batch. The pools referenced by the
+     * requests are validated and locked once for the entire batch, rather than once per consumer.
+     * Consumers whose requests are refused are reported in the result and do not prevent the
+     * remaining consumers from being bound.
+     *
+     * @param requests a mapping of consumers to the pool ids and respective quantities each
+     *        consumer is requesting
+     * @return the entitlements created for, or the refusals of, each consumer, keyed by consumer
+     *         uuid
+     */
+    BulkBindResult entitleByPools(Map<Consumer, Map<String, Integer>> requests);
+
     /**
      * Request an entitlement by product.
      *
@@ -148,6 +162,8 @@ public interface PoolManager {
     int revokeAllEntitlements(Consumer consumer, boolean regenCertsAndStatuses);
 
     Set<Pool> revokeEntitlements(List<Entitlement> ents);
+    Set<Pool> revokeEntitlements(List<Entitlement> ents, Set<String> alreadyDeletedPools,
+        boolean regenCertsAndStatuses);
     void revokeEntitlement(Entitlement entitlement);
 
     Pool setPoolQuantity(Pool pool, long set);
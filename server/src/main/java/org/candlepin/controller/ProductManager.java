@@ -14,6 +14,7 @@
  */
 package org.candlepin.controller;
 
+import org.candlepin.cache.ProductCatalog;
 import org.candlepin.dto.api.v1.BrandingDTO;
 import org.candlepin.dto.api.v1.ContentDTO;
 import org.candlepin.dto.api.v1.ProductDTO;
@@ -70,16 +71,18 @@ public class ProductManager {
     private OwnerContentCurator ownerContentCurator;
     private OwnerProductCurator ownerProductCurator;
     private ProductCurator productCurator;
+    private ProductCatalog productCatalog;
 
     @Inject
     public ProductManager(EntitlementCertificateGenerator entitlementCertGenerator,
         OwnerContentCurator ownerContentCurator, OwnerProductCurator ownerProductCurator,
-        ProductCurator productCurator) {
+        ProductCurator productCurator, ProductCatalog productCatalog) {
 
         this.entitlementCertGenerator = entitlementCertGenerator;
         this.ownerContentCurator = ownerContentCurator;
         this.ownerProductCurator = ownerProductCurator;
         this.productCurator = productCurator;
+        this.productCatalog = productCatalog;
     }
 
     /**
@@ -123,8 +126,8 @@ public class ProductManager {
         log.debug("Creating new product for org: {}, {}", entity, owner);
 
         // Check if we have an alternate version we can use instead.
-        List<Product> alternateVersions = this.ownerProductCurator.getProductsByVersions(
-            owner, Collections.singletonMap(entity.getId(), entity.getEntityVersion()))
+        List<Product> alternateVersions = this.ownerProductCurator.getProductsByEntityHashes(
+            owner, Collections.singleton(entity.getEntityHash()))
             .list();
 
         for (Product alt : alternateVersions) {
@@ -204,8 +207,8 @@ public class ProductManager {
         // the caller), we can just point the given orgs to the new product instead of giving them
         // their own version.
         // This is probably going to be a very expensive operation, though.
-        List<Product> alternateVersions = this.ownerProductCurator.getProductsByVersions(
-            owner, Collections.singletonMap(updated.getId(), updated.getEntityVersion()))
+        List<Product> alternateVersions = this.ownerProductCurator.getProductsByEntityHashes(
+            owner, Collections.singleton(updated.getEntityHash()))
             .list();
 
         log.debug("Checking {} alternate product versions", alternateVersions.size());
@@ -215,6 +218,7 @@ public class ProductManager {
 
                 this.ownerProductCurator.updateOwnerProductReferences(owner,
                     Collections.<String, String>singletonMap(entity.getUuid(), alt.getUuid()));
+                this.productCatalog.evictProducts(Collections.singleton(entity.getUuid()));
 
                 if (regenerateEntitlementCerts) {
                     this.entitlementCertGenerator.regenerateCertificatesOf(
@@ -253,6 +257,7 @@ public class ProductManager {
 
         this.ownerProductCurator.updateOwnerProductReferences(owner,
             Collections.<String, String>singletonMap(entity.getUuid(), updated.getUuid()));
+        this.productCatalog.evictProducts(Collections.singleton(entity.getUuid()));
 
         if (regenerateEntitlementCerts) {
             this.entitlementCertGenerator.regenerateCertificatesOf(
@@ -309,7 +314,7 @@ public class ProductManager {
         Map<String, Product> createdProducts = importResult.getCreatedEntities();
         Map<String, Product> updatedProducts = importResult.getUpdatedEntities();
 
-        Map<String, Integer> productVersions = new HashMap<>();
+        Set<Long> productHashes = new HashSet<>();
         Map<String, Product> sourceProducts = new HashMap<>();
         Map<String, List<Product>> existingVersions = new HashMap<>();
         List<OwnerProduct> ownerProductBuffer = new LinkedList<>();
@@ -332,7 +337,7 @@ public class ProductManager {
             product.setLocked(true);
 
             updatedProducts.put(product.getId(), product);
-            productVersions.put(product.getId(), product.getEntityVersion());
+            productHashes.add(product.getEntityHash());
         }
 
         log.debug("Validating new products...");
@@ -352,12 +357,12 @@ public class ProductManager {
                 product.setLocked(true);
 
                 createdProducts.put(product.getId(), product);
-                productVersions.put(product.getId(), product.getEntityVersion());
+                productHashes.add(product.getEntityHash());
             }
         }
 
         log.debug("Checking for existing product versions...");
-        for (Product alt : this.ownerProductCurator.getProductsByVersions(owner, productVersions)) {
+        for (Product alt : this.ownerProductCurator.getProductsByEntityHashes(owner, productHashes)) {
             List<Product> alternates = existingVersions.get(alt.getId());
             if (alternates == null) {
                 alternates = new LinkedList<>();
@@ -367,8 +372,8 @@ public class ProductManager {
             alternates.add(alt);
         }
 
-        productVersions.clear();
-        productVersions = null;
+        productHashes.clear();
+        productHashes = null;
 
         // We're about to start modifying the maps, so we need to clone the created set before we
         // start adding the update forks to it.
@@ -443,6 +448,7 @@ public class ProductManager {
         }
 
         this.ownerProductCurator.updateOwnerProductReferences(owner, productUuidMap);
+        this.productCatalog.evictProducts(productUuidMap.keySet());
 
         // Return
         return importResult;
@@ -561,6 +567,7 @@ public class ProductManager {
             // Remove owner references to all the products. This will leave the products orphaned,
             // to be eventually deleted by the orphan removal job
             this.ownerProductCurator.removeOwnerProductReferences(owner, productUuids);
+            this.productCatalog.evictProducts(productUuids);
         }
     }
 
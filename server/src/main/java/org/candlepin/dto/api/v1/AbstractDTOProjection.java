@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.dto.api.v1;
+
+import org.candlepin.model.CandlepinQuery;
+import org.candlepin.model.ProjectedCandlepinQuery;
+import org.candlepin.model.ResultProjection;
+
+import com.google.common.collect.Iterables;
+import com.google.inject.Provider;
+
+import org.hibernate.Session;
+import org.hibernate.criterion.Restrictions;
+
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+
+
+
+/**
+ * The AbstractDTOProjection class provides the common plumbing for projections which build DTOs
+ * directly from the rows of a query, without loading the entities those rows represent. Child
+ * collections are expected to be fetched with a single query for each batch of rows, keyed on
+ * the IDs of the rows in the batch.
+ *
+ * @param <T>
+ *  The DTO type built by this projection
+ */
+public abstract class AbstractDTOProjection<T> implements ResultProjection<T> {
+
+    private final Provider<EntityManager> entityManager;
+
+    /**
+     * Initializes a new projection using the given entity manager provider.
+     *
+     * @param entityManager
+     *  The provider of the entity manager for the current request
+     */
+    protected AbstractDTOProjection(Provider<EntityManager> entityManager) {
+        if (entityManager == null) {
+            throw new IllegalArgumentException("entityManager is null");
+        }
+
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Wraps the given query in a query which streams DTOs built by this projection from flat rows,
+     * in place of the entities the query would otherwise return.
+     *
+     * @param query
+     *  The query to project
+     *
+     * @return
+     *  a query returning the DTOs built by this projection
+     */
+    public CandlepinQuery<T> project(CandlepinQuery<?> query) {
+        return new ProjectedCandlepinQuery<>(this.currentSession(), query, this);
+    }
+
+    /**
+     * Fetches the session of the entity manager for the current request.
+     *
+     * @return
+     *  the current session
+     */
+    protected Session currentSession() {
+        return (Session) this.entityManager.get().getDelegate();
+    }
+
+    /**
+     * Builds the DTOs for the entities with the given IDs, applying this projection to the
+     * entities in batches of the default projection batch size. Unknown IDs are ignored.
+     *
+     * @param session
+     *  The session to use to fetch and build the rows
+     *
+     * @param entityClass
+     *  The class of the entities to project; must have an "id" property
+     *
+     * @param ids
+     *  The IDs of the entities for which to build DTOs
+     *
+     * @param key
+     *  A function returning the entity ID of a built DTO
+     *
+     * @return
+     *  a map containing the DTOs built, keyed on their entity IDs
+     */
+    @SuppressWarnings("unchecked")
+    protected Map<String, T> buildByIds(Session session, Class<?> entityClass, Collection<String> ids,
+        Function<T, String> key) {
+
+        Map<String, T> output = new HashMap<>();
+
+        if (ids != null && !ids.isEmpty()) {
+            Iterable<List<String>> blocks = Iterables.partition(new LinkedHashSet<>(ids),
+                ProjectedCandlepinQuery.DEFAULT_BATCH_SIZE);
+
+            for (List<String> block : blocks) {
+                List<Object[]> rows = session.createCriteria(entityClass)
+                    .add(Restrictions.in("id", block))
+                    .setProjection(this.getProjection())
+                    .setReadOnly(true)
+                    .list();
+
+                for (T dto : this.build(session, rows)) {
+                    output.put(key.apply(dto), dto);
+                }
+            }
+        }
+
+        return output;
+    }
+
+    /**
+     * Runs the given HQL query with the given IDs bound to its "ids" parameter list, and returns
+     * the resulting rows.
+     *
+     * @param session
+     *  The session to use to run the query
+     *
+     * @param hql
+     *  The query to run; must select two or more columns and define an "ids" parameter list
+     *
+     * @param ids
+     *  The IDs to bind to the query
+     *
+     * @return
+     *  the rows returned by the query
+     */
+    @SuppressWarnings("unchecked")
+    protected List<Object[]> fetchRows(Session session, String hql, Collection<?> ids) {
+        return session.createQuery(hql)
+            .setParameterList("ids", ids)
+            .setReadOnly(true)
+            .list();
+    }
+
+    /**
+     * Builds a certificate DTO from the given row, starting at the given column. The row must
+     * contain the certificate ID, key, certificate, created and updated columns, followed by the
+     * ID, expiration, collected, revoked, created and updated columns of its serial, which may be
+     * null.
+     *
+     * @param row
+     *  The row from which to build the certificate
+     *
+     * @param offset
+     *  The column of the certificate ID
+     *
+     * @return
+     *  the certificate DTO built from the row
+     */
+    protected CertificateDTO buildCertificate(Object[] row, int offset) {
+        CertificateSerialDTO serial = null;
+
+        if (row[offset + 5] != null) {
+            Long serialId = (Long) row[offset + 5];
+
+            serial = new CertificateSerialDTO()
+                .setId(serialId)
+                .setSerial(BigInteger.valueOf(serialId))
+                .setExpiration((Date) row[offset + 6])
+                .setCollected((Boolean) row[offset + 7])
+                .setRevoked((Boolean) row[offset + 8]);
+
+            serial.setCreated((Date) row[offset + 9]);
+            serial.setUpdated((Date) row[offset + 10]);
+        }
+
+        CertificateDTO dto = new CertificateDTO()
+            .setId((String) row[offset])
+            .setKey(new String((byte[]) row[offset + 1]))
+            .setCert(new String((byte[]) row[offset + 2]))
+            .setSerial(serial);
+
+        dto.setCreated((Date) row[offset + 3]);
+        dto.setUpdated((Date) row[offset + 4]);
+
+        return dto;
+    }
+
+}
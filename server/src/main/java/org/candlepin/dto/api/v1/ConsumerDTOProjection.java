@@ -0,0 +1,286 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.dto.api.v1;
+
+import org.candlepin.dto.ModelTranslator;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerTypeCurator;
+import org.candlepin.model.EnvironmentCurator;
+import org.candlepin.model.OwnerCurator;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Session;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+
+
+
+/**
+ * The ConsumerDTOProjection builds ConsumerDTOs directly from flat consumer rows. Facts, installed
+ * products, capabilities and the other child collections are fetched with one query per batch of
+ * consumers, and the owner, type and environment of each consumer are translated once per batch,
+ * rather than once per consumer.
+ * <p></p>
+ * The DTOs built by this projection are identical to those built by the ConsumerTranslator.
+ */
+public class ConsumerDTOProjection extends AbstractDTOProjection<ConsumerDTO> {
+
+    private static final String[] PROPERTIES = {
+        "id", "uuid", "name", "username", "entitlementStatus", "serviceLevel", "role", "usage",
+        "systemPurposeStatus", "releaseVer", "entitlementCount", "lastCheckin", "autoheal", "annotations",
+        "contentAccessMode", "ownerId", "environmentId", "typeId", "created", "updated"
+    };
+
+    private static final String FACTS_QUERY = "SELECT c.id, KEY(f), VALUE(f) " +
+        "FROM Consumer c JOIN c.facts f WHERE c.id IN (:ids)";
+
+    private static final String ADDONS_QUERY = "SELECT c.id, a " +
+        "FROM Consumer c JOIN c.addOns a WHERE c.id IN (:ids)";
+
+    private static final String CONTENT_TAGS_QUERY = "SELECT c.id, t " +
+        "FROM Consumer c JOIN c.contentTags t WHERE c.id IN (:ids)";
+
+    // The status and date range of installed products are transient, and are not set on freshly
+    // loaded consumers either
+    private static final String INSTALLED_PRODUCTS_QUERY = "SELECT cip.consumer.id, cip.id, " +
+        "cip.productId, cip.productName, cip.version, cip.arch, cip.created, cip.updated " +
+        "FROM ConsumerInstalledProduct cip WHERE cip.consumer.id IN (:ids)";
+
+    private static final String CAPABILITIES_QUERY = "SELECT cap.consumer.id, cap.id, cap.name " +
+        "FROM ConsumerCapability cap WHERE cap.consumer.id IN (:ids)";
+
+    private static final String HYPERVISOR_IDS_QUERY = "SELECT hv.consumer.id, hv.id, hv.hypervisorId, " +
+        "hv.reporterId, hv.created, hv.updated " +
+        "FROM HypervisorId hv WHERE hv.consumer.id IN (:ids)";
+
+    private static final String ID_CERTS_QUERY = "SELECT c.id, cert.id, cert.key, cert.cert, " +
+        "cert.created, cert.updated, serial.id, serial.expiration, serial.collected, serial.revoked, " +
+        "serial.created, serial.updated " +
+        "FROM Consumer c JOIN c.idCert cert LEFT JOIN cert.serial serial WHERE c.id IN (:ids)";
+
+    private final ModelTranslator translator;
+    private final ConsumerTypeCurator consumerTypeCurator;
+    private final EnvironmentCurator environmentCurator;
+    private final OwnerCurator ownerCurator;
+
+    @Inject
+    public ConsumerDTOProjection(Provider<EntityManager> entityManager, ModelTranslator translator,
+        ConsumerTypeCurator consumerTypeCurator, EnvironmentCurator environmentCurator,
+        OwnerCurator ownerCurator) {
+
+        super(entityManager);
+
+        this.translator = translator;
+        this.consumerTypeCurator = consumerTypeCurator;
+        this.environmentCurator = environmentCurator;
+        this.ownerCurator = ownerCurator;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Projection getProjection() {
+        ProjectionList projection = Projections.projectionList();
+
+        for (String property : PROPERTIES) {
+            projection.add(Projections.property(property));
+        }
+
+        return projection;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ConsumerDTO> build(Session session, List<Object[]> rows) {
+        Map<String, ConsumerDTO> consumers = new LinkedHashMap<>();
+
+        Map<String, OwnerDTO> owners = new HashMap<>();
+        Map<String, EnvironmentDTO> environments = new HashMap<>();
+        Map<String, ConsumerTypeDTO> types = new HashMap<>();
+
+        for (Object[] row : rows) {
+            ConsumerDTO dto = this.buildConsumer(row);
+
+            String ownerId = (String) row[15];
+            if (StringUtils.isNotEmpty(ownerId)) {
+                dto.setOwner(owners.computeIfAbsent(ownerId, id ->
+                    this.translator.translate(this.ownerCurator.findOwnerById(id), OwnerDTO.class)));
+            }
+
+            String environmentId = (String) row[16];
+            if (environmentId != null) {
+                dto.setEnvironment(environments.computeIfAbsent(environmentId, id ->
+                    this.translator.translate(this.environmentCurator.get(id), EnvironmentDTO.class)));
+            }
+
+            String typeId = (String) row[17];
+            if (typeId != null) {
+                dto.setType(types.computeIfAbsent(typeId, id ->
+                    this.translator.translate(this.consumerTypeCurator.get(id), ConsumerTypeDTO.class)));
+            }
+
+            consumers.put(dto.getId(), dto);
+        }
+
+        if (!consumers.isEmpty()) {
+            this.fetchCollections(session, consumers);
+            this.fetchInstalledProducts(session, consumers);
+            this.fetchCapabilities(session, consumers);
+            this.fetchHypervisorIds(session, consumers);
+            this.fetchIdentityCertificates(session, consumers);
+        }
+
+        return new ArrayList<>(consumers.values());
+    }
+
+    private ConsumerDTO buildConsumer(Object[] row) {
+        ConsumerDTO dto = new ConsumerDTO();
+
+        Long entitlementCount = (Long) row[10];
+
+        dto.setId((String) row[0])
+            .setUuid((String) row[1])
+            .setName((String) row[2])
+            .setUsername((String) row[3])
+            .setEntitlementStatus((String) row[4])
+            .setServiceLevel((String) row[5])
+            .setRole((String) row[6])
+            .setUsage((String) row[7])
+            .setSystemPurposeStatus((String) row[8])
+            .setReleaseVersion((String) row[9])
+            .setEntitlementCount(entitlementCount != null ? entitlementCount : 0L)
+            .setLastCheckin((Date) row[11])
+            .setAutoheal((Boolean) row[12])
+            .setAnnotations((String) row[13])
+            .setContentAccessMode((String) row[14])
+            .setCanActivate(false)
+            .setFacts(new HashMap<>())
+            .setAddOns(new HashSet<>())
+            .setContentTags(new HashSet<>())
+            .setInstalledProducts(new HashSet<>())
+            .setCapabilities(new HashSet<>())
+            .setGuestIds(new ArrayList<>());
+
+        dto.setCreated((Date) row[18]);
+        dto.setUpdated((Date) row[19]);
+
+        return dto;
+    }
+
+    private void fetchCollections(Session session, Map<String, ConsumerDTO> consumers) {
+        for (Object[] row : this.fetchRows(session, FACTS_QUERY, consumers.keySet())) {
+            consumers.get(row[0]).setFact((String) row[1], (String) row[2]);
+        }
+
+        Map<String, Set<String>> addOns = new HashMap<>();
+        for (Object[] row : this.fetchRows(session, ADDONS_QUERY, consumers.keySet())) {
+            addOns.computeIfAbsent((String) row[0], id -> new HashSet<>()).add((String) row[1]);
+        }
+
+        Map<String, Set<String>> contentTags = new HashMap<>();
+        for (Object[] row : this.fetchRows(session, CONTENT_TAGS_QUERY, consumers.keySet())) {
+            contentTags.computeIfAbsent((String) row[0], id -> new HashSet<>()).add((String) row[1]);
+        }
+
+        addOns.forEach((id, values) -> consumers.get(id).setAddOns(values));
+        contentTags.forEach((id, values) -> consumers.get(id).setContentTags(values));
+    }
+
+    private void fetchInstalledProducts(Session session, Map<String, ConsumerDTO> consumers) {
+        for (Object[] row : this.fetchRows(session, INSTALLED_PRODUCTS_QUERY, consumers.keySet())) {
+            ConsumerInstalledProductDTO dto = new ConsumerInstalledProductDTO()
+                .setId((String) row[1])
+                .setProductId((String) row[2])
+                .setProductName((String) row[3])
+                .setVersion((String) row[4])
+                .setArch((String) row[5]);
+
+            dto.setCreated((Date) row[6]);
+            dto.setUpdated((Date) row[7]);
+
+            consumers.get(row[0]).addInstalledProduct(dto);
+        }
+    }
+
+    private void fetchCapabilities(Session session, Map<String, ConsumerDTO> consumers) {
+        Map<String, Set<CapabilityDTO>> capabilities = new HashMap<>();
+
+        for (Object[] row : this.fetchRows(session, CAPABILITIES_QUERY, consumers.keySet())) {
+            CapabilityDTO dto = new CapabilityDTO()
+                .setId((String) row[1])
+                .setName((String) row[2]);
+
+            capabilities.computeIfAbsent((String) row[0], id -> new HashSet<>()).add(dto);
+        }
+
+        capabilities.forEach((id, values) -> consumers.get(id).setCapabilities(values));
+    }
+
+    private void fetchHypervisorIds(Session session, Map<String, ConsumerDTO> consumers) {
+        for (Object[] row : this.fetchRows(session, HYPERVISOR_IDS_QUERY, consumers.keySet())) {
+            HypervisorIdDTO dto = new HypervisorIdDTO()
+                .setId((String) row[1])
+                .setHypervisorId((String) row[2])
+                .setReporterId((String) row[3]);
+
+            dto.setCreated((Date) row[4]);
+            dto.setUpdated((Date) row[5]);
+
+            consumers.get(row[0]).setHypervisorId(dto);
+        }
+    }
+
+    private void fetchIdentityCertificates(Session session, Map<String, ConsumerDTO> consumers) {
+        for (Object[] row : this.fetchRows(session, ID_CERTS_QUERY, consumers.keySet())) {
+            consumers.get(row[0]).setIdCertificate(this.buildCertificate(row, 1));
+        }
+    }
+
+    /**
+     * Builds the DTOs for the consumers with the given IDs. Unknown IDs are ignored.
+     *
+     * @param session
+     *  The session to use to fetch and build the consumer rows
+     *
+     * @param consumerIds
+     *  The IDs of the consumers for which to build DTOs
+     *
+     * @return
+     *  a map containing the DTOs built, keyed on consumer ID
+     */
+    public Map<String, ConsumerDTO> buildByIds(Session session, Collection<String> consumerIds) {
+        return this.buildByIds(session, Consumer.class, consumerIds, ConsumerDTO::getId);
+    }
+
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.dto.api.v1;
+
+import org.candlepin.dto.ModelTranslator;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.OwnerCurator;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
+import org.hibernate.Session;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+
+
+
+/**
+ * The EntitlementDTOProjection builds EntitlementDTOs directly from flat entitlement rows. The
+ * pools and consumers of a batch of entitlements are built by the PoolDTOProjection and
+ * ConsumerDTOProjection, certificates are fetched with one query per batch, and the owner of each
+ * entitlement is translated once per batch, rather than once per entitlement.
+ * <p></p>
+ * The DTOs built by this projection are identical to those built by the EntitlementTranslator.
+ */
+public class EntitlementDTOProjection extends AbstractDTOProjection<EntitlementDTO> {
+
+    private static final String[] PROPERTIES = {
+        "id", "quantity", "endDateOverride", "owner.id", "pool.id", "consumer.id", "created", "updated"
+    };
+
+    private static final String CERTIFICATES_QUERY = "SELECT ec.entitlement.id, ec.id, ec.key, ec.cert, " +
+        "ec.created, ec.updated, serial.id, serial.expiration, serial.collected, serial.revoked, " +
+        "serial.created, serial.updated " +
+        "FROM EntitlementCertificate ec LEFT JOIN ec.serial serial WHERE ec.entitlement.id IN (:ids)";
+
+    private final ModelTranslator translator;
+    private final OwnerCurator ownerCurator;
+    private final PoolDTOProjection poolProjection;
+    private final ConsumerDTOProjection consumerProjection;
+
+    @Inject
+    public EntitlementDTOProjection(Provider<EntityManager> entityManager, ModelTranslator translator,
+        OwnerCurator ownerCurator, PoolDTOProjection poolProjection,
+        ConsumerDTOProjection consumerProjection) {
+
+        super(entityManager);
+
+        this.translator = translator;
+        this.ownerCurator = ownerCurator;
+        this.poolProjection = poolProjection;
+        this.consumerProjection = consumerProjection;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Projection getProjection() {
+        ProjectionList projection = Projections.projectionList();
+
+        for (String property : PROPERTIES) {
+            projection.add(Projections.property(property));
+        }
+
+        return projection;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<EntitlementDTO> build(Session session, List<Object[]> rows) {
+        Map<String, EntitlementDTO> entitlements = new LinkedHashMap<>();
+        Map<String, OwnerDTO> owners = new HashMap<>();
+        Set<String> poolIds = new HashSet<>();
+        Set<String> consumerIds = new HashSet<>();
+
+        for (Object[] row : rows) {
+            EntitlementDTO dto = new EntitlementDTO()
+                .setId((String) row[0])
+                .setQuantity((Integer) row[1])
+                .setDeletedFromPool(false)
+                .setCertificates(Collections.emptySet());
+
+            // The end date override is applied once the pool has been built
+            dto.setEndDate((Date) row[2]);
+            dto.setCreated((Date) row[6]);
+            dto.setUpdated((Date) row[7]);
+
+            String ownerId = (String) row[3];
+            if (ownerId != null) {
+                dto.setOwner(owners.computeIfAbsent(ownerId, id ->
+                    this.translator.translate(this.ownerCurator.findOwnerById(id), OwnerDTO.class)));
+            }
+
+            if (row[4] != null) {
+                poolIds.add((String) row[4]);
+            }
+
+            consumerIds.add((String) row[5]);
+            entitlements.put(dto.getId(), dto);
+        }
+
+        if (!entitlements.isEmpty()) {
+            Map<String, PoolDTO> pools = this.poolProjection.buildByIds(session, poolIds);
+            Map<String, ConsumerDTO> consumers = this.consumerProjection.buildByIds(session, consumerIds);
+
+            for (Object[] row : rows) {
+                EntitlementDTO dto = entitlements.get(row[0]);
+                PoolDTO pool = pools.get(row[4]);
+
+                dto.setPool(pool)
+                    .setConsumer(consumers.get(row[5]))
+                    .setStartDate(pool != null ? pool.getStartDate() : null);
+
+                if (dto.getEndDate() == null) {
+                    dto.setEndDate(pool != null ? pool.getEndDate() : null);
+                }
+            }
+
+            this.fetchCertificates(session, entitlements);
+        }
+
+        return new ArrayList<>(entitlements.values());
+    }
+
+    private void fetchCertificates(Session session, Map<String, EntitlementDTO> entitlements) {
+        for (Object[] row : this.fetchRows(session, CERTIFICATES_QUERY, entitlements.keySet())) {
+            entitlements.get(row[0]).addCertificate(this.buildCertificate(row, 1));
+        }
+    }
+
+    /**
+     * Builds the DTOs for the entitlements with the given IDs. Unknown IDs are ignored.
+     *
+     * @param entitlementIds
+     *  The IDs of the entitlements for which to build DTOs
+     *
+     * @return
+     *  a map containing the DTOs built, keyed on entitlement ID
+     */
+    public Map<String, EntitlementDTO> buildByIds(Collection<String> entitlementIds) {
+        return this.buildByIds(this.currentSession(), entitlementIds);
+    }
+
+    /**
+     * Builds the DTOs for the entitlements with the given IDs, using the given session. Unknown
+     * IDs are ignored.
+     *
+     * @param session
+     *  The session to use to fetch and build the entitlement rows
+     *
+     * @param entitlementIds
+     *  The IDs of the entitlements for which to build DTOs
+     *
+     * @return
+     *  a map containing the DTOs built, keyed on entitlement ID
+     */
+    public Map<String, EntitlementDTO> buildByIds(Session session, Collection<String> entitlementIds) {
+        return this.buildByIds(session, Entitlement.class, entitlementIds, EntitlementDTO::getId);
+    }
+
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.dto.api.v1;
+
+import org.candlepin.dto.CandlepinDTO;
+
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+
+import java.util.Date;
+
+
+
+/**
+ * JobPurgeStatusDTO reports the state and throughput of the job status purge
+ */
+public class JobPurgeStatusDTO extends CandlepinDTO<JobPurgeStatusDTO> {
+
+    private Boolean paused;
+    private Long totalRowsPurged;
+    private Long lastRunRowsPurged;
+    private Double rowsPerSecond;
+    private Date lastRunStart;
+    private Date lastRunEnd;
+
+    /**
+     * Initializes a new JobPurgeStatusDTO instance with null values.
+     */
+    public JobPurgeStatusDTO() {
+        // Intentionally left empty
+    }
+
+    /**
+     * Initializes a new JobPurgeStatusDTO instance which is a shallow copy of the provided
+     * source entity.
+     *
+     * @param source
+     *  The source entity to copy
+     */
+    public JobPurgeStatusDTO(JobPurgeStatusDTO source) {
+        super(source);
+    }
+
+    public Boolean isPaused() {
+        return this.paused;
+    }
+
+    public JobPurgeStatusDTO setPaused(Boolean paused) {
+        this.paused = paused;
+        return this;
+    }
+
+    public Long getTotalRowsPurged() {
+        return this.totalRowsPurged;
+    }
+
+    public JobPurgeStatusDTO setTotalRowsPurged(Long totalRowsPurged) {
+        this.totalRowsPurged = totalRowsPurged;
+        return this;
+    }
+
+    public Long getLastRunRowsPurged() {
+        return this.lastRunRowsPurged;
+    }
+
+    public JobPurgeStatusDTO setLastRunRowsPurged(Long lastRunRowsPurged) {
+        this.lastRunRowsPurged = lastRunRowsPurged;
+        return this;
+    }
+
+    public Double getRowsPerSecond() {
+        return this.rowsPerSecond;
+    }
+
+    public JobPurgeStatusDTO setRowsPerSecond(Double rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+        return this;
+    }
+
+    public Date getLastRunStart() {
+        return this.lastRunStart;
+    }
+
+    public JobPurgeStatusDTO setLastRunStart(Date lastRunStart) {
+        this.lastRunStart = lastRunStart;
+        return this;
+    }
+
+    public Date getLastRunEnd() {
+        return this.lastRunEnd;
+    }
+
+    public JobPurgeStatusDTO setLastRunEnd(Date lastRunEnd) {
+        this.lastRunEnd = lastRunEnd;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("JobPurgeStatusDTO [paused: %s, rows purged: %s, rows/sec: %s]",
+            this.isPaused(), this.getLastRunRowsPurged(), this.getRowsPerSecond());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+
+        if (obj instanceof JobPurgeStatusDTO) {
+            JobPurgeStatusDTO that = (JobPurgeStatusDTO) obj;
+
+            EqualsBuilder builder = new EqualsBuilder()
+                .append(this.isPaused(), that.isPaused())
+                .append(this.getTotalRowsPurged(), that.getTotalRowsPurged())
+                .append(this.getLastRunRowsPurged(), that.getLastRunRowsPurged())
+                .append(this.getRowsPerSecond(), that.getRowsPerSecond())
+                .append(this.getLastRunStart(), that.getLastRunStart())
+                .append(this.getLastRunEnd(), that.getLastRunEnd());
+
+            return builder.isEquals();
+        }
+
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        HashCodeBuilder builder = new HashCodeBuilder(7, 17)
+            .append(this.isPaused())
+            .append(this.getTotalRowsPurged())
+            .append(this.getLastRunRowsPurged())
+            .append(this.getRowsPerSecond())
+            .append(this.getLastRunStart())
+            .append(this.getLastRunEnd());
+
+        return builder.toHashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JobPurgeStatusDTO clone() {
+        JobPurgeStatusDTO copy = super.clone();
+
+        Date lastRunStart = this.getLastRunStart();
+        copy.setLastRunStart(lastRunStart != null ? (Date) lastRunStart.clone() : null);
+
+        Date lastRunEnd = this.getLastRunEnd();
+        copy.setLastRunEnd(lastRunEnd != null ? (Date) lastRunEnd.clone() : null);
+
+        return copy;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JobPurgeStatusDTO populate(JobPurgeStatusDTO source) {
+        super.populate(source);
+
+        this.setPaused(source.isPaused());
+        this.setTotalRowsPurged(source.getTotalRowsPurged());
+        this.setLastRunRowsPurged(source.getLastRunRowsPurged());
+        this.setRowsPerSecond(source.getRowsPerSecond());
+        this.setLastRunStart(source.getLastRunStart());
+        this.setLastRunEnd(source.getLastRunEnd());
+
+        return this;
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.dto.api.v1;
+
+import org.candlepin.dto.CandlepinDTO;
+
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+
+import java.util.Date;
+
+
+
+/**
+ * JobQueueStatusDTO reports the depth of the queue of a given job type for a single owner
+ */
+public class JobQueueStatusDTO extends CandlepinDTO<JobQueueStatusDTO> {
+
+    private String owner;
+    private Long queued;
+    private Long running;
+    private Date oldestQueued;
+    private Long maxWaitSeconds;
+
+    /**
+     * Initializes a new JobQueueStatusDTO instance with null values.
+     */
+    public JobQueueStatusDTO() {
+        // Intentionally left empty
+    }
+
+    /**
+     * Initializes a new JobQueueStatusDTO instance which is a shallow copy of the provided
+     * source entity.
+     *
+     * @param source
+     *  The source entity to copy
+     */
+    public JobQueueStatusDTO(JobQueueStatusDTO source) {
+        super(source);
+    }
+
+    public String getOwner() {
+        return this.owner;
+    }
+
+    public JobQueueStatusDTO setOwner(String owner) {
+        this.owner = owner;
+        return this;
+    }
+
+    public Long getQueued() {
+        return this.queued;
+    }
+
+    public JobQueueStatusDTO setQueued(Long queued) {
+        this.queued = queued;
+        return this;
+    }
+
+    public Long getRunning() {
+        return this.running;
+    }
+
+    public JobQueueStatusDTO setRunning(Long running) {
+        this.running = running;
+        return this;
+    }
+
+    public Date getOldestQueued() {
+        return this.oldestQueued;
+    }
+
+    public JobQueueStatusDTO setOldestQueued(Date oldestQueued) {
+        this.oldestQueued = oldestQueued;
+        return this;
+    }
+
+    public Long getMaxWaitSeconds() {
+        return this.maxWaitSeconds;
+    }
+
+    public JobQueueStatusDTO setMaxWaitSeconds(Long maxWaitSeconds) {
+        this.maxWaitSeconds = maxWaitSeconds;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("JobQueueStatusDTO [owner: %s, queued: %s, running: %s, max wait: %s]",
+            this.getOwner(), this.getQueued(), this.getRunning(), this.getMaxWaitSeconds());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+
+        if (obj instanceof JobQueueStatusDTO) {
+            JobQueueStatusDTO that = (JobQueueStatusDTO) obj;
+
+            EqualsBuilder builder = new EqualsBuilder()
+                .append(this.getOwner(), that.getOwner())
+                .append(this.getQueued(), that.getQueued())
+                .append(this.getRunning(), that.getRunning())
+                .append(this.getOldestQueued(), that.getOldestQueued())
+                .append(this.getMaxWaitSeconds(), that.getMaxWaitSeconds());
+
+            return builder.isEquals();
+        }
+
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        HashCodeBuilder builder = new HashCodeBuilder(7, 17)
+            .append(this.getOwner())
+            .append(this.getQueued())
+            .append(this.getRunning())
+            .append(this.getOldestQueued())
+            .append(this.getMaxWaitSeconds());
+
+        return builder.toHashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JobQueueStatusDTO clone() {
+        JobQueueStatusDTO copy = super.clone();
+
+        Date oldestQueued = this.getOldestQueued();
+        copy.setOldestQueued(oldestQueued != null ? (Date) oldestQueued.clone() : null);
+
+        return copy;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JobQueueStatusDTO populate(JobQueueStatusDTO source) {
+        super.populate(source);
+
+        this.setOwner(source.getOwner());
+        this.setQueued(source.getQueued());
+        this.setRunning(source.getRunning());
+        this.setOldestQueued(source.getOldestQueued());
+        this.setMaxWaitSeconds(source.getMaxWaitSeconds());
+
+        return this;
+    }
+}
@@ -0,0 +1,405 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.dto.api.v1;
+
+import org.candlepin.dto.ModelTranslator;
+import org.candlepin.model.OwnerCurator;
+import org.candlepin.model.Pool;
+import org.candlepin.model.Pool.PoolType;
+import org.candlepin.model.Product;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
+import org.hibernate.Session;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+
+
+
+/**
+ * The PoolDTOProjection builds PoolDTOs directly from flat pool rows. Attributes, products,
+ * branding, certificates and the other values a pool derives from its associations are fetched
+ * with one query per batch of pools, and the owner of each pool is translated once per batch,
+ * rather than once per pool. Source entitlements are built by the EntitlementDTOProjection.
+ * <p></p>
+ * The calculated attributes of a pool are not persisted, and are left unset on the DTOs built by
+ * this projection. Aside from those, the DTOs built by this projection are identical to those
+ * built by the PoolTranslator.
+ */
+public class PoolDTOProjection extends AbstractDTOProjection<PoolDTO> {
+
+    private static final String[] PROPERTIES = {
+        "id", "activeSubscription", "quantity", "startDate", "endDate", "restrictedToUsername",
+        "contractNumber", "accountNumber", "orderNumber", "consumed", "exported", "upstreamPoolId",
+        "upstreamEntitlementId", "upstreamConsumerId", "locked", "owner.id", "product.uuid",
+        "derivedProduct.uuid", "sourceEntitlement.id", "created", "updated"
+    };
+
+    private static final String ATTRIBUTES_QUERY = "SELECT p.id, KEY(a), VALUE(a) " +
+        "FROM Pool p JOIN p.attributes a WHERE p.id IN (:ids)";
+
+    private static final String PROVIDED_PRODUCTS_QUERY = "SELECT p.id, pp.id, pp.name " +
+        "FROM Pool p JOIN p.providedProducts pp WHERE p.id IN (:ids)";
+
+    private static final String DERIVED_PROVIDED_PRODUCTS_QUERY = "SELECT p.id, dpp.id, dpp.name " +
+        "FROM Pool p JOIN p.derivedProvidedProducts dpp WHERE p.id IN (:ids)";
+
+    private static final String SOURCE_STACKS_QUERY = "SELECT ss.derivedPool.id, ss.sourceStackId " +
+        "FROM SourceStack ss WHERE ss.derivedPool.id IN (:ids)";
+
+    private static final String SOURCE_SUBSCRIPTIONS_QUERY = "SELECT ss.pool.id, ss.subscriptionId, " +
+        "ss.subscriptionSubKey FROM SourceSubscription ss WHERE ss.pool.id IN (:ids)";
+
+    private static final String CERTIFICATES_QUERY = "SELECT p.id, cert.id, cert.key, cert.cert, " +
+        "cert.created, cert.updated, serial.id, serial.expiration, serial.collected, serial.revoked, " +
+        "serial.created, serial.updated " +
+        "FROM Pool p JOIN p.cert cert LEFT JOIN cert.serial serial WHERE p.id IN (:ids)";
+
+    private static final String PRODUCTS_QUERY = "SELECT p.uuid, p.id, p.name " +
+        "FROM Product p WHERE p.uuid IN (:ids)";
+
+    private static final String PRODUCT_ATTRIBUTES_QUERY = "SELECT p.uuid, KEY(a), VALUE(a) " +
+        "FROM Product p JOIN p.attributes a WHERE p.uuid IN (:ids)";
+
+    private static final String BRANDING_QUERY = "SELECT b.product.uuid, b.productId, b.name, b.type, " +
+        "b.created, b.updated FROM Branding b WHERE b.product.uuid IN (:ids)";
+
+    /**
+     * The values a pool derives from one of its products
+     */
+    private static class ProductRow {
+        private final String id;
+        private final String name;
+        private final Map<String, String> attributes;
+        private final Set<BrandingDTO> branding;
+
+        public ProductRow(String id, String name) {
+            this.id = id;
+            this.name = name;
+            this.attributes = new HashMap<>();
+            this.branding = new HashSet<>();
+        }
+    }
+
+    /**
+     * The values of a pool row needed once its collections have been fetched
+     */
+    private static class PoolRow {
+        private final PoolDTO dto;
+        private final String productUuid;
+        private final String derivedProductUuid;
+        private final String sourceEntitlementId;
+        private final Map<String, String> attributes;
+        private boolean sourceStack;
+
+        public PoolRow(PoolDTO dto, Object[] row) {
+            this.dto = dto;
+            this.attributes = new HashMap<>();
+            this.productUuid = (String) row[16];
+            this.derivedProductUuid = (String) row[17];
+            this.sourceEntitlementId = (String) row[18];
+        }
+    }
+
+    private final ModelTranslator translator;
+    private final OwnerCurator ownerCurator;
+    private final Provider<EntitlementDTOProjection> entitlementProjection;
+
+    @Inject
+    public PoolDTOProjection(Provider<EntityManager> entityManager, ModelTranslator translator,
+        OwnerCurator ownerCurator, Provider<EntitlementDTOProjection> entitlementProjection) {
+
+        super(entityManager);
+
+        this.translator = translator;
+        this.ownerCurator = ownerCurator;
+        this.entitlementProjection = entitlementProjection;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Projection getProjection() {
+        ProjectionList projection = Projections.projectionList();
+
+        for (String property : PROPERTIES) {
+            projection.add(Projections.property(property));
+        }
+
+        return projection;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<PoolDTO> build(Session session, List<Object[]> rows) {
+        Map<String, PoolRow> pools = new LinkedHashMap<>();
+        Map<String, OwnerDTO> owners = new HashMap<>();
+
+        for (Object[] row : rows) {
+            PoolDTO dto = this.buildPool(row);
+
+            String ownerId = (String) row[15];
+            if (ownerId != null) {
+                dto.setOwner(owners.computeIfAbsent(ownerId, id ->
+                    this.translator.translate(this.ownerCurator.findOwnerById(id), OwnerDTO.class)));
+            }
+
+            pools.put(dto.getId(), new PoolRow(dto, row));
+        }
+
+        if (!pools.isEmpty()) {
+            this.fetchCollections(session, pools);
+            this.fetchSources(session, pools);
+            this.fetchCertificates(session, pools);
+            this.fetchProducts(session, pools);
+            this.fetchSourceEntitlements(session, pools);
+        }
+
+        List<PoolDTO> output = new ArrayList<>(pools.size());
+        for (PoolRow pool : pools.values()) {
+            pool.dto.setType(this.getPoolType(pool).name());
+            output.add(pool.dto);
+        }
+
+        return output;
+    }
+
+    private PoolDTO buildPool(Object[] row) {
+        Long consumed = (Long) row[9];
+        Long exported = (Long) row[10];
+
+        PoolDTO dto = new PoolDTO()
+            .setId((String) row[0])
+            .setActiveSubscription((Boolean) row[1])
+            .setQuantity((Long) row[2])
+            .setStartDate((Date) row[3])
+            .setEndDate((Date) row[4])
+            .setRestrictedToUsername((String) row[5])
+            .setContractNumber((String) row[6])
+            .setAccountNumber((String) row[7])
+            .setOrderNumber((String) row[8])
+            .setConsumed(consumed != null ? consumed : 0L)
+            .setExported(exported != null ? exported : 0L)
+            .setUpstreamPoolId((String) row[11])
+            .setUpstreamEntitlementId((String) row[12])
+            .setUpstreamConsumerId((String) row[13])
+            .setProductAttributes(Collections.emptyMap())
+            .setDerivedProductAttributes(Collections.emptyMap())
+            .setStacked(false)
+            .setDevelopmentPool(false)
+            .setLocked(Boolean.TRUE.equals(row[14]))
+            .setBranding(Collections.emptySet())
+            .setProvidedProducts(Collections.emptySet())
+            .setDerivedProvidedProducts(Collections.emptySet());
+
+        dto.setCreated((Date) row[19]);
+        dto.setUpdated((Date) row[20]);
+
+        return dto;
+    }
+
+    private void fetchCollections(Session session, Map<String, PoolRow> pools) {
+        for (Object[] row : this.fetchRows(session, ATTRIBUTES_QUERY, pools.keySet())) {
+            pools.get(row[0]).attributes.put((String) row[1], (String) row[2]);
+        }
+
+        for (Object[] row : this.fetchRows(session, PROVIDED_PRODUCTS_QUERY, pools.keySet())) {
+            pools.get(row[0]).dto.addProvidedProduct(
+                new PoolDTO.ProvidedProductDTO((String) row[1], (String) row[2]));
+        }
+
+        for (Object[] row : this.fetchRows(session, DERIVED_PROVIDED_PRODUCTS_QUERY, pools.keySet())) {
+            pools.get(row[0]).dto.addDerivedProvidedProduct(
+                new PoolDTO.ProvidedProductDTO((String) row[1], (String) row[2]));
+        }
+
+        for (PoolRow pool : pools.values()) {
+            String development = pool.attributes.get(Pool.Attributes.DEVELOPMENT_POOL);
+
+            pool.dto.setAttributes(pool.attributes)
+                .setDevelopmentPool("true".equalsIgnoreCase(development));
+        }
+    }
+
+    private void fetchSources(Session session, Map<String, PoolRow> pools) {
+        for (Object[] row : this.fetchRows(session, SOURCE_STACKS_QUERY, pools.keySet())) {
+            PoolRow pool = pools.get(row[0]);
+
+            pool.sourceStack = true;
+            pool.dto.setSourceStackId((String) row[1]);
+        }
+
+        for (Object[] row : this.fetchRows(session, SOURCE_SUBSCRIPTIONS_QUERY, pools.keySet())) {
+            pools.get(row[0]).dto.setSubscriptionId((String) row[1])
+                .setSubscriptionSubKey((String) row[2]);
+        }
+    }
+
+    private void fetchCertificates(Session session, Map<String, PoolRow> pools) {
+        for (Object[] row : this.fetchRows(session, CERTIFICATES_QUERY, pools.keySet())) {
+            pools.get(row[0]).dto.setCertificate(this.buildCertificate(row, 1));
+        }
+    }
+
+    private void fetchProducts(Session session, Map<String, PoolRow> pools) {
+        Set<String> productUuids = new HashSet<>();
+        for (PoolRow pool : pools.values()) {
+            productUuids.add(pool.productUuid);
+
+            if (pool.derivedProductUuid != null) {
+                productUuids.add(pool.derivedProductUuid);
+            }
+        }
+
+        Map<String, ProductRow> products = new HashMap<>();
+        for (Object[] row : this.fetchRows(session, PRODUCTS_QUERY, productUuids)) {
+            products.put((String) row[0], new ProductRow((String) row[1], (String) row[2]));
+        }
+
+        for (Object[] row : this.fetchRows(session, PRODUCT_ATTRIBUTES_QUERY, productUuids)) {
+            products.get(row[0]).attributes.put((String) row[1], (String) row[2]);
+        }
+
+        for (Object[] row : this.fetchRows(session, BRANDING_QUERY, productUuids)) {
+            BrandingDTO dto = new BrandingDTO()
+                .setProductId((String) row[1])
+                .setName((String) row[2])
+                .setType((String) row[3]);
+
+            dto.setCreated((Date) row[4]);
+            dto.setUpdated((Date) row[5]);
+
+            products.get(row[0]).branding.add(dto);
+        }
+
+        for (PoolRow pool : pools.values()) {
+            ProductRow product = products.get(pool.productUuid);
+            if (product != null) {
+                String stackId = product.attributes.get(Product.Attributes.STACKING_ID);
+
+                pool.dto.setProductId(product.id)
+                    .setProductName(product.name)
+                    .setProductAttributes(product.attributes)
+                    .setStackId(stackId)
+                    .setStacked(product.attributes.containsKey(Product.Attributes.STACKING_ID))
+                    .setBranding(product.branding);
+            }
+
+            ProductRow derived = products.get(pool.derivedProductUuid);
+            if (derived != null) {
+                pool.dto.setDerivedProductId(derived.id)
+                    .setDerivedProductName(derived.name)
+                    .setDerivedProductAttributes(derived.attributes);
+            }
+        }
+    }
+
+    private void fetchSourceEntitlements(Session session, Map<String, PoolRow> pools) {
+        Set<String> entitlementIds = new HashSet<>();
+        for (PoolRow pool : pools.values()) {
+            if (pool.sourceEntitlementId != null) {
+                entitlementIds.add(pool.sourceEntitlementId);
+            }
+        }
+
+        if (!entitlementIds.isEmpty()) {
+            Map<String, EntitlementDTO> entitlements = this.entitlementProjection.get()
+                .buildByIds(session, entitlementIds);
+
+            for (PoolRow pool : pools.values()) {
+                if (pool.sourceEntitlementId != null) {
+                    pool.dto.setSourceEntitlement(entitlements.get(pool.sourceEntitlementId));
+                }
+            }
+        }
+    }
+
+    /**
+     * Determines the type of the given pool in the same way as Pool.getType, once the attributes
+     * and sources of the pool have been fetched.
+     */
+    private PoolType getPoolType(PoolRow pool) {
+        Map<String, String> attributes = pool.attributes;
+
+        if (attributes.containsKey(Pool.Attributes.DERIVED_POOL)) {
+            if (attributes.containsKey(Pool.Attributes.UNMAPPED_GUESTS_ONLY)) {
+                return PoolType.UNMAPPED_GUEST;
+            }
+            else if (pool.sourceEntitlementId != null) {
+                return PoolType.ENTITLEMENT_DERIVED;
+            }
+            else if (pool.sourceStack) {
+                return PoolType.STACK_DERIVED;
+            }
+            else {
+                return PoolType.BONUS;
+            }
+        }
+        else if (attributes.containsKey(Pool.Attributes.DEVELOPMENT_POOL)) {
+            return PoolType.DEVELOPMENT;
+        }
+
+        return PoolType.NORMAL;
+    }
+
+    /**
+     * Builds the DTOs for the pools with the given IDs. Unknown IDs are ignored.
+     *
+     * @param poolIds
+     *  The IDs of the pools for which to build DTOs
+     *
+     * @return
+     *  a map containing the DTOs built, keyed on pool ID
+     */
+    public Map<String, PoolDTO> buildByIds(Collection<String> poolIds) {
+        return this.buildByIds(this.currentSession(), poolIds);
+    }
+
+    /**
+     * Builds the DTOs for the pools with the given IDs, using the given session. Unknown IDs are
+     * ignored.
+     *
+     * @param session
+     *  The session to use to fetch and build the pool rows
+     *
+     * @param poolIds
+     *  The IDs of the pools for which to build DTOs
+     *
+     * @return
+     *  a map containing the DTOs built, keyed on pool ID
+     */
+    public Map<String, PoolDTO> buildByIds(Session session, Collection<String> poolIds) {
+        return this.buildByIds(session, Pool.class, poolIds, PoolDTO::getId);
+    }
+
+}
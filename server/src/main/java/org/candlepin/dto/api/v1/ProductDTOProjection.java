@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.dto.api.v1;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
+import org.hibernate.Session;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+
+
+
+/**
+ * The ProductDTOProjection builds ProductDTOs directly from flat product rows. Attributes, content,
+ * branding and dependent products are fetched with one query per batch of products, and content
+ * shared by several products in a batch is only built once.
+ * <p></p>
+ * The DTOs built by this projection are identical to those built by the ProductTranslator.
+ */
+public class ProductDTOProjection extends AbstractDTOProjection<ProductDTO> {
+
+    private static final String[] PROPERTIES = {
+        "uuid", "id", "name", "multiplier", "locked", "created", "updated"
+    };
+
+    private static final String ATTRIBUTES_QUERY = "SELECT p.uuid, KEY(a), VALUE(a) " +
+        "FROM Product p JOIN p.attributes a WHERE p.uuid IN (:ids)";
+
+    private static final String DEPENDENT_PRODUCTS_QUERY = "SELECT p.uuid, d " +
+        "FROM Product p JOIN p.dependentProductIds d WHERE p.uuid IN (:ids)";
+
+    private static final String PRODUCT_CONTENT_QUERY = "SELECT pc.product.uuid, pc.enabled, c.uuid, " +
+        "c.id, c.type, c.label, c.name, c.vendor, c.contentUrl, c.requiredTags, c.releaseVer, c.gpgUrl, " +
+        "c.metadataExpire, c.arches, c.locked, c.created, c.updated " +
+        "FROM ProductContent pc JOIN pc.content c WHERE pc.product.uuid IN (:ids)";
+
+    private static final String MODIFIED_PRODUCTS_QUERY = "SELECT c.uuid, m " +
+        "FROM Content c JOIN c.modifiedProductIds m WHERE c.uuid IN (:ids)";
+
+    private static final String BRANDING_QUERY = "SELECT b.product.uuid, b.productId, b.name, b.type, " +
+        "b.created, b.updated FROM Branding b WHERE b.product.uuid IN (:ids)";
+
+    @Inject
+    public ProductDTOProjection(Provider<EntityManager> entityManager) {
+        super(entityManager);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Projection getProjection() {
+        ProjectionList projection = Projections.projectionList();
+
+        for (String property : PROPERTIES) {
+            projection.add(Projections.property(property));
+        }
+
+        return projection;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ProductDTO> build(Session session, List<Object[]> rows) {
+        Map<String, ProductDTO> products = new LinkedHashMap<>();
+
+        for (Object[] row : rows) {
+            String uuid = (String) row[0];
+
+            ProductDTO dto = new ProductDTO()
+                .setUuid(uuid)
+                .setId((String) row[1])
+                .setName((String) row[2])
+                .setMultiplier((Long) row[3])
+                .setHref(uuid != null ? String.format("/products/%s", uuid) : null)
+                .setLocked(Boolean.TRUE.equals(row[4]))
+                .setAttributes(new HashMap<>())
+                .setDependentProductIds(new HashSet<>())
+                .setProductContent(Collections.emptyList())
+                .setBranding(Collections.emptySet());
+
+            dto.setCreated((Date) row[5]);
+            dto.setUpdated((Date) row[6]);
+
+            products.put(uuid, dto);
+        }
+
+        if (!products.isEmpty()) {
+            this.fetchAttributes(session, products);
+            this.fetchProductContent(session, products);
+            this.fetchBranding(session, products);
+        }
+
+        return new ArrayList<>(products.values());
+    }
+
+    private void fetchAttributes(Session session, Map<String, ProductDTO> products) {
+        for (Object[] row : this.fetchRows(session, ATTRIBUTES_QUERY, products.keySet())) {
+            products.get(row[0]).setAttribute((String) row[1], (String) row[2]);
+        }
+
+        for (Object[] row : this.fetchRows(session, DEPENDENT_PRODUCTS_QUERY, products.keySet())) {
+            products.get(row[0]).addDependentProductId((String) row[1]);
+        }
+    }
+
+    private void fetchProductContent(Session session, Map<String, ProductDTO> products) {
+        List<Object[]> rows = this.fetchRows(session, PRODUCT_CONTENT_QUERY, products.keySet());
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        Map<String, ContentDTO> contents = new HashMap<>();
+        for (Object[] row : rows) {
+            contents.computeIfAbsent((String) row[2], uuid -> this.buildContent(row));
+        }
+
+        Map<String, Set<String>> modifiedProductIds = new HashMap<>();
+        for (Object[] row : this.fetchRows(session, MODIFIED_PRODUCTS_QUERY, contents.keySet())) {
+            modifiedProductIds.computeIfAbsent((String) row[0], uuid -> new HashSet<>())
+                .add((String) row[1]);
+        }
+
+        modifiedProductIds.forEach((uuid, pids) -> contents.get(uuid).setModifiedProductIds(pids));
+
+        for (Object[] row : rows) {
+            products.get(row[0]).addContent(contents.get(row[2]), Boolean.TRUE.equals(row[1]));
+        }
+    }
+
+    private ContentDTO buildContent(Object[] row) {
+        ContentDTO dto = new ContentDTO()
+            .setUuid((String) row[2])
+            .setId((String) row[3])
+            .setType((String) row[4])
+            .setLabel((String) row[5])
+            .setName((String) row[6])
+            .setVendor((String) row[7])
+            .setContentUrl((String) row[8])
+            .setRequiredTags((String) row[9])
+            .setReleaseVersion((String) row[10])
+            .setGpgUrl((String) row[11])
+            .setMetadataExpiration((Long) row[12])
+            .setModifiedProductIds(new HashSet<>())
+            .setArches((String) row[13])
+            .setLocked(Boolean.TRUE.equals(row[14]));
+
+        dto.setCreated((Date) row[15]);
+        dto.setUpdated((Date) row[16]);
+
+        return dto;
+    }
+
+    private void fetchBranding(Session session, Map<String, ProductDTO> products) {
+        for (Object[] row : this.fetchRows(session, BRANDING_QUERY, products.keySet())) {
+            BrandingDTO dto = new BrandingDTO()
+                .setProductId((String) row[1])
+                .setName((String) row[2])
+                .setType((String) row[3]);
+
+            dto.setCreated((Date) row[4]);
+            dto.setUpdated((Date) row[5]);
+
+            products.get(row[0]).addBranding(dto);
+        }
+    }
+
+}
@@ -20,9 +20,11 @@ import static org.candlepin.config.ConfigProperties.PASSPHRASE_SECRET_FILE;
 
 import org.candlepin.audit.AMQPBusPublisher;
 import org.candlepin.audit.ActiveMQContextListener;
+import org.candlepin.audit.CacheInvalidationBroadcaster;
 import org.candlepin.audit.QpidConnection;
 import org.candlepin.audit.QpidQmf;
 import org.candlepin.audit.QpidStatus;
+import org.candlepin.cache.CacheInvalidationListener;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.common.config.ConfigurationException;
 import org.candlepin.common.config.EncryptedConfiguration;
@@ -33,10 +35,14 @@ import org.candlepin.config.DatabaseConfigFactory;
 import org.candlepin.controller.QpidStatusMonitor;
 import org.candlepin.controller.SuspendModeTransitioner;
 import org.candlepin.logging.LoggerContextListener;
+import org.candlepin.model.ConsumerSearchIndexListener;
+import org.candlepin.model.OwnerInfoCounterListener;
+import org.candlepin.model.PoolAvailabilityListener;
 import org.candlepin.pinsetter.core.PinsetterContextListener;
 import org.candlepin.pki.impl.JSSProviderLoader;
 import org.candlepin.resteasy.ResourceLocatorMap;
 import org.candlepin.swagger.CandlepinSwaggerModelConverter;
+import org.candlepin.tracing.TraceMetrics;
 import org.candlepin.util.Util;
 
 import com.google.inject.AbstractModule;
@@ -141,6 +147,27 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
     public void withInjector(Injector injector) {
         // Must call super.contextInitialized() before accessing injector
         insertValidationEventListeners(injector);
+
+        if (config.getBoolean(ConfigProperties.CACHE_INVALIDATION_ENABLED)) {
+            if (!config.getBoolean(ACTIVEMQ_ENABLED)) {
+                throw new RuntimeException(ConfigProperties.CACHE_INVALIDATION_ENABLED +
+                    " requires " + ACTIVEMQ_ENABLED + " to be enabled");
+            }
+
+            insertCacheInvalidationListeners(injector);
+        }
+
+        if (config.getBoolean(ConfigProperties.OWNER_INFO_COUNTERS_ENABLED)) {
+            insertOwnerInfoCounterListener(injector);
+        }
+
+        if (config.getBoolean(ConfigProperties.CONSUMER_SEARCH_INDEX_ENABLED)) {
+            insertConsumerSearchIndexListener(injector);
+        }
+
+        if (config.getBoolean(ConfigProperties.POOL_AVAILABILITY_INDEX_ENABLED)) {
+            insertPoolAvailabilityListener(injector);
+        }
         ResourceLocatorMap map = injector.getInstance(ResourceLocatorMap.class);
         map.init();
 
@@ -185,6 +212,10 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
 
         }
 
+        if (config.getBoolean(ConfigProperties.TRACING_JMX_ENABLED)) {
+            injector.getInstance(TraceMetrics.class).registerMBean();
+        }
+
         pinsetterListener = injector.getInstance(PinsetterContextListener.class);
         pinsetterListener.contextInitialized();
 
@@ -213,6 +244,10 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
         pinsetterListener.contextDestroyed();
         loggerListener.contextDestroyed();
 
+        if (config.getBoolean(ConfigProperties.TRACING_JMX_ENABLED)) {
+            injector.getInstance(TraceMetrics.class).unregisterMBean();
+        }
+
         // if amqp is enabled, close all connections.
         if (config.getBoolean(ConfigProperties.AMQP_INTEGRATION_ENABLED)) {
             Util.closeSafely(injector.getInstance(AMQPBusPublisher.class), "AMQPBusPublisher");
@@ -329,4 +364,72 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
         registry.getEventListenerGroup(EventType.PRE_UPDATE).appendListener(listenerProvider.get());
         registry.getEventListenerGroup(EventType.PRE_DELETE).appendListener(listenerProvider.get());
     }
+
+    /**
+     * Registers the listener which broadcasts changes to second-level cached entities to the other
+     * nodes of the cluster, and evicts the changes they broadcast from the local cache.
+     * @param injector
+     */
+    private void insertCacheInvalidationListeners(Injector injector) {
+        HibernateEntityManagerFactory hibernateEntityManagerFactory =
+            (HibernateEntityManagerFactory) injector.getInstance(EntityManagerFactory.class);
+        SessionFactoryImpl sessionFactoryImpl =
+            (SessionFactoryImpl) hibernateEntityManagerFactory.getSessionFactory();
+        EventListenerRegistry registry =
+            sessionFactoryImpl.getServiceRegistry().getService(EventListenerRegistry.class);
+
+        CacheInvalidationListener listener = injector.getInstance(CacheInvalidationListener.class);
+        registry.getEventListenerGroup(EventType.POST_COMMIT_UPDATE).appendListener(listener);
+        registry.getEventListenerGroup(EventType.POST_COMMIT_DELETE).appendListener(listener);
+
+        injector.getInstance(CacheInvalidationBroadcaster.class).setHandler(listener::evict);
+    }
+
+    /**
+     * Registers the listener which keeps the owner info counters in line with the consumers and
+     * entitlements written by each transaction.
+     * @param injector
+     */
+    private void insertOwnerInfoCounterListener(Injector injector) {
+        HibernateEntityManagerFactory hibernateEntityManagerFactory =
+            (HibernateEntityManagerFactory) injector.getInstance(EntityManagerFactory.class);
+        SessionFactoryImpl sessionFactoryImpl =
+            (SessionFactoryImpl) hibernateEntityManagerFactory.getSessionFactory();
+        EventListenerRegistry registry =
+            sessionFactoryImpl.getServiceRegistry().getService(EventListenerRegistry.class);
+
+        injector.getInstance(OwnerInfoCounterListener.class).register(registry);
+    }
+
+    /**
+     * Registers the listener which keeps the consumer search index in line with the consumers,
+     * facts and entitlements written by each transaction.
+     * @param injector
+     */
+    private void insertConsumerSearchIndexListener(Injector injector) {
+        HibernateEntityManagerFactory hibernateEntityManagerFactory =
+            (HibernateEntityManagerFactory) injector.getInstance(EntityManagerFactory.class);
+        SessionFactoryImpl sessionFactoryImpl =
+            (SessionFactoryImpl) hibernateEntityManagerFactory.getSessionFactory();
+        EventListenerRegistry registry =
+            sessionFactoryImpl.getServiceRegistry().getService(EventListenerRegistry.class);
+
+        injector.getInstance(ConsumerSearchIndexListener.class).register(registry);
+    }
+
+    /**
+     * Registers the listener which bumps the update date of pools whose collections changed, so
+     * the pool availability index picks up the changes.
+     * @param injector
+     */
+    private void insertPoolAvailabilityListener(Injector injector) {
+        HibernateEntityManagerFactory hibernateEntityManagerFactory =
+            (HibernateEntityManagerFactory) injector.getInstance(EntityManagerFactory.class);
+        SessionFactoryImpl sessionFactoryImpl =
+            (SessionFactoryImpl) hibernateEntityManagerFactory.getSessionFactory();
+        EventListenerRegistry registry =
+            sessionFactoryImpl.getServiceRegistry().getService(EventListenerRegistry.class);
+
+        injector.getInstance(PoolAvailabilityListener.class).register(registry);
+    }
 }
@@ -20,6 +20,7 @@ import org.candlepin.config.ConfigProperties;
 import org.candlepin.servlet.filter.CandlepinPersistFilter;
 import org.candlepin.servlet.filter.CandlepinScopeFilter;
 import org.candlepin.servlet.filter.EventFilter;
+import org.candlepin.servlet.filter.TracingFilter;
 
 import com.google.inject.servlet.ServletModule;
 
@@ -62,6 +63,7 @@ public class CandlepinFilterModule extends ServletModule {
             // don't filter token
             regex = "^(?!/token).*";
         }
+        filterRegex(regex).through(TracingFilter.class);
         filterRegex(regex).through(CandlepinScopeFilter.class);
         filterRegex(regex).through(CandlepinPersistFilter.class);
         filterRegex(regex).through(LoggingFilter.class, loggingFilterConfig);
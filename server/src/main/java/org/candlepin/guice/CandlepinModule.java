@@ -145,9 +145,11 @@ import org.candlepin.resteasy.filter.CandlepinQueryInterceptor;
 import org.candlepin.resteasy.filter.CandlepinSuspendModeFilter;
 import org.candlepin.resteasy.filter.ConsumerCheckInFilter;
 import org.candlepin.resteasy.filter.PinsetterAsyncFilter;
+import org.candlepin.resteasy.filter.ReplayCaptureFilter;
 import org.candlepin.resteasy.filter.SecurityHoleAuthorizationFilter;
 import org.candlepin.resteasy.filter.StoreFactory;
 import org.candlepin.resteasy.filter.SuperAdminAuthorizationFilter;
+import org.candlepin.resteasy.filter.TraceNamingFilter;
 import org.candlepin.resteasy.filter.VerifyAuthorizationFilter;
 import org.candlepin.resteasy.filter.VersionResponseFilter;
 import org.candlepin.service.UniqueIdGenerator;
@@ -387,6 +389,8 @@ public class CandlepinModule extends AbstractModule {
         bind(VersionResponseFilter.class);
         bind(LinkHeaderResponseFilter.class);
         bind(DynamicJsonFilter.class);
+        bind(TraceNamingFilter.class);
+        bind(ReplayCaptureFilter.class);
 
         bindConstant().annotatedWith(Names.named("PREFIX_APIURL_KEY")).to(ConfigProperties.PREFIX_APIURL);
     }
@@ -0,0 +1,247 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.hibernate;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+
+/**
+ * Per-request (or per-job) database statistics: the number of SQL statements prepared, the time spent
+ * executing them, and the number of entities loaded. Statistics are collected on the current thread by
+ * the QueryStatsInspector, QueryStatsSessionListener and QueryStatsIntegrator between calls to
+ * {@link #begin} and {@link #end}. Collections may be nested, in which case statements are counted by
+ * every active collection on the thread.
+ * <p></p>
+ * Identical statements are tracked individually, allowing accidental N+1 access patterns (the same
+ * select issued once per element of a collection) to be identified via {@link #getRepeatedStatements}.
+ * <p></p>
+ * Tests may use this class directly to assert that an operation stays within its query budget:
+ *
+ * <pre>
+ *     QueryStats stats = QueryStats.begin();
+ *     try {
+ *         resource.getConsumer(uuid);
+ *     }
+ *     finally {
+ *         stats.end();
+ *     }
+ *
+ *     assertTrue(stats.getStatementCount() &lt;= 10);
+ * </pre>
+ */
+public class QueryStats {
+
+    /**
+     * The maximum number of distinct statements tracked per collection. Statements beyond this limit
+     * are still counted, but not checked for repetition.
+     */
+    public static final int MAX_DISTINCT_STATEMENTS = 512;
+
+    private static final ThreadLocal<QueryStats> CURRENT = new ThreadLocal<>();
+
+    private final QueryStats parent;
+    private final Map<String, Integer> statementCounts;
+
+    private int statements;
+    private int batches;
+    private long executionNanos;
+    private long entitiesLoaded;
+    private int budget;
+
+    private QueryStats(QueryStats parent) {
+        this.parent = parent;
+        this.statementCounts = new HashMap<>();
+        this.budget = -1;
+    }
+
+    /**
+     * Begins collecting statistics on the current thread.
+     *
+     * @return
+     *  the new statistics collection
+     */
+    public static QueryStats begin() {
+        QueryStats stats = new QueryStats(CURRENT.get());
+        CURRENT.set(stats);
+
+        return stats;
+    }
+
+    /**
+     * Fetches the innermost statistics collection active on the current thread.
+     *
+     * @return
+     *  the current statistics collection, or null if statistics are not being collected
+     */
+    public static QueryStats current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Stops collecting statistics into this collection, restoring the collection which was active
+     * when it began. Any collections nested within this one which were not ended are discarded.
+     */
+    public void end() {
+        for (QueryStats current = CURRENT.get(); current != null; current = current.parent) {
+            if (current == this) {
+                if (this.parent != null) {
+                    CURRENT.set(this.parent);
+                }
+                else {
+                    CURRENT.remove();
+                }
+
+                return;
+            }
+        }
+    }
+
+    static void recordStatement(String sql) {
+        for (QueryStats stats = CURRENT.get(); stats != null; stats = stats.parent) {
+            ++stats.statements;
+
+            Integer count = stats.statementCounts.get(sql);
+            if (count != null) {
+                stats.statementCounts.put(sql, count + 1);
+            }
+            else if (stats.statementCounts.size() < MAX_DISTINCT_STATEMENTS) {
+                stats.statementCounts.put(sql, 1);
+            }
+        }
+    }
+
+    static void recordExecution(long nanos, boolean batch) {
+        for (QueryStats stats = CURRENT.get(); stats != null; stats = stats.parent) {
+            stats.executionNanos += nanos;
+
+            if (batch) {
+                ++stats.batches;
+            }
+        }
+    }
+
+    static void recordEntityLoad() {
+        for (QueryStats stats = CURRENT.get(); stats != null; stats = stats.parent) {
+            ++stats.entitiesLoaded;
+        }
+    }
+
+    /**
+     * Fetches the number of SQL statements prepared while this collection was active. Statements
+     * executed as part of a JDBC batch are counted once per batch.
+     *
+     * @return
+     *  the number of statements prepared
+     */
+    public int getStatementCount() {
+        return this.statements;
+    }
+
+    /**
+     * Fetches the number of JDBC batches executed while this collection was active.
+     *
+     * @return
+     *  the number of batches executed
+     */
+    public int getBatchCount() {
+        return this.batches;
+    }
+
+    /**
+     * Fetches the time spent executing statements and batches, in nanoseconds. This excludes the
+     * time spent reading and hydrating results.
+     *
+     * @return
+     *  the statement execution time, in nanoseconds
+     */
+    public long getExecutionNanos() {
+        return this.executionNanos;
+    }
+
+    /**
+     * Fetches the number of entities loaded from the database or second-level cache while this
+     * collection was active; used as a proxy for the number of rows read.
+     *
+     * @return
+     *  the number of entities loaded
+     */
+    public long getEntitiesLoaded() {
+        return this.entitiesLoaded;
+    }
+
+    /**
+     * Fetches the statements which were prepared at least the given number of times while this
+     * collection was active, ordered from most to least frequent.
+     *
+     * @param threshold
+     *  the minimum number of times a statement must have been prepared to be included
+     *
+     * @return
+     *  a map of statements to the number of times they were prepared
+     */
+    public Map<String, Integer> getRepeatedStatements(int threshold) {
+        if (threshold < 1) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Integer> repeated = new LinkedHashMap<>();
+        this.statementCounts.entrySet().stream()
+            .filter(entry -> entry.getValue() >= threshold)
+            .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+            .forEach(entry -> repeated.put(entry.getKey(), entry.getValue()));
+
+        return repeated;
+    }
+
+    /**
+     * Sets the maximum number of statements the operation being measured is expected to prepare.
+     *
+     * @param budget
+     *  the statement budget, or a negative value to clear it
+     */
+    public void setBudget(int budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Fetches the statement budget of the operation being measured.
+     *
+     * @return
+     *  the statement budget, or a negative value if no budget has been set
+     */
+    public int getBudget() {
+        return this.budget;
+    }
+
+    /**
+     * Checks whether a budget has been set and more statements than budgeted have been prepared.
+     *
+     * @return
+     *  true if the statement budget has been exceeded; false otherwise
+     */
+    public boolean isOverBudget() {
+        return this.budget >= 0 && this.statements > this.budget;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("QueryStats [statements: %d, batches: %d, execution: %d ns, entities: %d]",
+            this.statements, this.batches, this.executionNanos, this.entitiesLoaded);
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.hibernate;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+
+
+/**
+ * Registers a post-load listener counting the entities loaded into the {@link QueryStats} active on
+ * the current thread. Discovered by Hibernate through META-INF/services.
+ */
+public class QueryStatsIntegrator implements Integrator {
+
+    /**
+     * Post-load listener which counts entity loads
+     */
+    private static class EntityLoadCounter implements PostLoadEventListener {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void onPostLoad(PostLoadEvent event) {
+            QueryStats.recordEntityLoad();
+        }
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+        SessionFactoryServiceRegistry serviceRegistry) {
+
+        serviceRegistry.getService(EventListenerRegistry.class)
+            .appendListeners(EventType.POST_LOAD, new EntityLoadCounter());
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory,
+        SessionFactoryServiceRegistry serviceRegistry) {
+        // Nothing to clean up
+    }
+}
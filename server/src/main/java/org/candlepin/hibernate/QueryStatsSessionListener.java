@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.hibernate;
+
+import org.hibernate.BaseSessionEventListener;
+
+
+
+/**
+ * Times the execution of JDBC statements and batches into the {@link QueryStats} active on the current
+ * thread. Hibernate creates a new instance of this listener for every session.
+ */
+public class QueryStatsSessionListener extends BaseSessionEventListener {
+    private static final long serialVersionUID = 1L;
+
+    private long statementStart;
+    private long batchStart;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        this.statementStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        QueryStats.recordExecution(System.nanoTime() - this.statementStart, false);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        this.batchStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        QueryStats.recordExecution(System.nanoTime() - this.batchStart, true);
+    }
+}
@@ -0,0 +1,304 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.liquibase;
+
+import org.candlepin.model.Branding;
+import org.candlepin.model.Content;
+import org.candlepin.model.Product;
+import org.candlepin.model.ProductContent;
+
+import liquibase.database.Database;
+import liquibase.exception.DatabaseException;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * The EntityHashBackfillTask calculates the entity hashes of existing product and content rows.
+ * Content is processed first, as the hash of each product incorporates the hashes of its content.
+ * The hashes are calculated by populating transient entities with the row data and invoking the
+ * same hash methods used at runtime, guaranteeing the migrated hashes match those calculated
+ * when the entities are next persisted.
+ */
+public class EntityHashBackfillTask extends LiquibaseCustomTask {
+
+    public static final int BATCH_SIZE = 512;
+
+    public EntityHashBackfillTask(Database database, CustomTaskLogger logger) {
+        super(database, logger);
+    }
+
+    /**
+     * Expands the single parameter placeholder in the given SQL to a list of the given number of
+     * parameter placeholders.
+     *
+     * @param sql
+     *  the SQL to expand; must contain exactly one parameter placeholder
+     *
+     * @param count
+     *  the number of parameters the placeholder should be expanded to
+     *
+     * @return
+     *  the expanded SQL
+     */
+    private String expandParameters(String sql, int count) {
+        // MySQL's JDBC connector doesn't support arrays as parameters, so we have to expand the
+        // placeholder manually.
+        StringBuilder params = new StringBuilder(3 * count);
+        params.append('?');
+
+        for (int i = 1; i < count; ++i) {
+            params.append(", ?");
+        }
+
+        return sql.replace("?", params.toString());
+    }
+
+    /**
+     * Writes the given entity hashes to the specified table in a single JDBC batch.
+     *
+     * @param table
+     *  the table to update
+     *
+     * @param hashes
+     *  a mapping of entity UUIDs to entity hashes
+     */
+    private void writeHashes(String table, Map<String, Long> hashes) throws DatabaseException, SQLException {
+        PreparedStatement statement = this.connection.prepareStatement(
+            "UPDATE " + table + " SET entity_hash = ? WHERE uuid = ?");
+
+        for (Map.Entry<String, Long> entry : hashes.entrySet()) {
+            statement.setLong(1, entry.getValue());
+            statement.setString(2, entry.getKey());
+            statement.addBatch();
+        }
+
+        statement.executeBatch();
+        statement.close();
+    }
+
+    /**
+     * Calculates the entity hash for all content rows which do not yet have one.
+     *
+     * @return
+     *  the number of content rows updated
+     */
+    private int backfillContent() throws DatabaseException, SQLException {
+        PreparedStatement queryStatement = this.prepareStatement(
+            "SELECT uuid, content_id, name, type, label, vendor, contenturl, requiredtags, releasever, " +
+            "  gpgurl, metadataexpire, arches " +
+            "FROM " + Content.DB_TABLE + " WHERE entity_hash IS NULL");
+        queryStatement.setMaxRows(BATCH_SIZE);
+
+        Map<String, Content> batch = new LinkedHashMap<>();
+        Map<String, List<String>> modifiedProductIds = new HashMap<>();
+        int total = 0;
+
+        do {
+            batch.clear();
+            modifiedProductIds.clear();
+
+            ResultSet results = queryStatement.executeQuery();
+            while (results.next()) {
+                Content content = new Content(results.getString(2), results.getString(3),
+                    results.getString(4), results.getString(5), results.getString(6));
+
+                content.setContentUrl(results.getString(7));
+                content.setRequiredTags(results.getString(8));
+                content.setReleaseVersion(results.getString(9));
+                content.setGpgUrl(results.getString(10));
+
+                long metadataExpire = results.getLong(11);
+                content.setMetadataExpiration(results.wasNull() ? null : metadataExpire);
+                content.setArches(results.getString(12));
+
+                batch.put(results.getString(1), content);
+            }
+            results.close();
+
+            if (!batch.isEmpty()) {
+                ResultSet mpResults = this.executeQuery(this.expandParameters(
+                    "SELECT content_uuid, element FROM cp2_content_modified_products " +
+                    "WHERE content_uuid IN (?)", batch.size()), batch.keySet().toArray());
+
+                while (mpResults.next()) {
+                    modifiedProductIds.computeIfAbsent(mpResults.getString(1), key -> new ArrayList<>())
+                        .add(mpResults.getString(2));
+                }
+                mpResults.close();
+
+                Map<String, Long> hashes = new HashMap<>();
+                for (Map.Entry<String, Content> entry : batch.entrySet()) {
+                    Content content = entry.getValue();
+                    content.setModifiedProductIds(modifiedProductIds.get(entry.getKey()));
+
+                    hashes.put(entry.getKey(), content.getEntityHash());
+                }
+
+                this.writeHashes(Content.DB_TABLE, hashes);
+                total += hashes.size();
+
+                this.logger.info(String.format("Calculated entity hashes for %d content", total));
+            }
+        } while (!batch.isEmpty());
+
+        queryStatement.close();
+        return total;
+    }
+
+    /**
+     * Calculates the entity hash for all product rows which do not yet have one. This must be
+     * performed after the content hashes have been calculated.
+     *
+     * @return
+     *  the number of product rows updated
+     */
+    private int backfillProducts() throws DatabaseException, SQLException {
+        PreparedStatement queryStatement = this.prepareStatement(
+            "SELECT uuid, product_id, name, multiplier FROM " + Product.DB_TABLE +
+            " WHERE entity_hash IS NULL");
+        queryStatement.setMaxRows(BATCH_SIZE);
+
+        Map<String, Product> batch = new LinkedHashMap<>();
+        Map<String, List<Long>> contentHashes = new HashMap<>();
+        int total = 0;
+
+        do {
+            batch.clear();
+            contentHashes.clear();
+
+            ResultSet results = queryStatement.executeQuery();
+            while (results.next()) {
+                Product product = new Product(results.getString(2), results.getString(3));
+
+                long multiplier = results.getLong(4);
+                if (!results.wasNull()) {
+                    product.setMultiplier(multiplier);
+                }
+
+                batch.put(results.getString(1), product);
+            }
+            results.close();
+
+            if (!batch.isEmpty()) {
+                this.loadProductCollections(batch, contentHashes);
+
+                Map<String, Long> hashes = new HashMap<>();
+                for (Map.Entry<String, Product> entry : batch.entrySet()) {
+                    Collection<Long> pcHashes = contentHashes.getOrDefault(entry.getKey(), new ArrayList<>());
+                    hashes.put(entry.getKey(), entry.getValue().getEntityHash(pcHashes));
+                }
+
+                this.writeHashes(Product.DB_TABLE, hashes);
+                total += hashes.size();
+
+                this.logger.info(String.format("Calculated entity hashes for %d products", total));
+            }
+        } while (!batch.isEmpty());
+
+        queryStatement.close();
+        return total;
+    }
+
+    /**
+     * Populates the attributes, dependent product IDs and branding of the given products, and
+     * collects the hashes of their product content.
+     *
+     * @param products
+     *  a mapping of product UUIDs to the transient products to populate
+     *
+     * @param contentHashes
+     *  the map to receive the product content hashes, keyed by product UUID
+     */
+    private void loadProductCollections(Map<String, Product> products, Map<String, List<Long>> contentHashes)
+        throws DatabaseException, SQLException {
+
+        Object[] uuids = products.keySet().toArray();
+
+        ResultSet results = this.executeQuery(this.expandParameters(
+            "SELECT product_uuid, name, value FROM cp2_product_attributes WHERE product_uuid IN (?)",
+            uuids.length), uuids);
+
+        while (results.next()) {
+            products.get(results.getString(1)).setAttribute(results.getString(2), results.getString(3));
+        }
+        results.close();
+
+        results = this.executeQuery(this.expandParameters(
+            "SELECT product_uuid, element FROM cp2_product_dependent_products WHERE product_uuid IN (?)",
+            uuids.length), uuids);
+
+        while (results.next()) {
+            products.get(results.getString(1)).addDependentProductId(results.getString(2));
+        }
+        results.close();
+
+        results = this.executeQuery(this.expandParameters(
+            "SELECT product_uuid, product_id, name, type FROM " + Branding.DB_TABLE +
+            " WHERE product_uuid IN (?)", uuids.length), uuids);
+
+        while (results.next()) {
+            Product product = products.get(results.getString(1));
+            product.addBranding(new Branding(product, results.getString(2), results.getString(3),
+                results.getString(4)));
+        }
+        results.close();
+
+        results = this.executeQuery(this.expandParameters(
+            "SELECT PC.product_uuid, C.entity_hash, PC.enabled FROM " + ProductContent.DB_TABLE + " PC " +
+            "  JOIN " + Content.DB_TABLE + " C ON C.uuid = PC.content_uuid " +
+            "WHERE PC.product_uuid IN (?)", uuids.length), uuids);
+
+        while (results.next()) {
+            contentHashes.computeIfAbsent(results.getString(1), key -> new ArrayList<>())
+                .add(ProductContent.getEntityHash(results.getLong(2), results.getBoolean(3)));
+        }
+        results.close();
+    }
+
+    /**
+     * Executes the entity hash backfill task.
+     *
+     * @throws DatabaseException
+     *  if an error occurs while performing a database operation
+     *
+     * @throws SQLException
+     *  if an error occurs while executing an SQL statement
+     */
+    public void execute() throws DatabaseException, SQLException {
+        // Store the connection's auto commit setting, so we may temporarily clobber it.
+        boolean autocommit = this.connection.getAutoCommit();
+        this.connection.setAutoCommit(false);
+
+        int content = this.backfillContent();
+        int products = this.backfillProducts();
+
+        this.logger.info(String.format("Backfilled entity hashes for %d content and %d products",
+            content, products));
+
+        this.connection.commit();
+        this.connection.setAutoCommit(autocommit);
+    }
+
+}
@@ -22,6 +22,8 @@ import org.candlepin.common.paging.Page;
 import org.candlepin.common.paging.PageRequest;
 import org.candlepin.config.DatabaseConfigFactory;
 import org.candlepin.guice.PrincipalProvider;
+import org.candlepin.tracing.Span;
+import org.candlepin.tracing.Tracer;
 
 import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
@@ -115,6 +117,37 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
         return config.getInt(DatabaseConfigFactory.QUERY_PARAMETER_LIMIT);
     }
 
+    /**
+     * Performs the given database operation on this curator's entity type within a span, if a trace
+     * is in progress on the current thread.
+     *
+     * @param name
+     *  the name of the operation being performed
+     *
+     * @param operation
+     *  the operation to perform
+     *
+     * @return
+     *  the result of the operation
+     */
+    protected <T> T trace(String name, Tracer.Operation<T, RuntimeException> operation) {
+        return Tracer.call(Span.Phase.DB, this.entityType.getSimpleName(), name, operation);
+    }
+
+    /**
+     * Performs the given database action on this curator's entity type within a span, if a trace is
+     * in progress on the current thread.
+     *
+     * @param name
+     *  the name of the action being performed
+     *
+     * @param action
+     *  the action to perform
+     */
+    protected void traceAction(String name, Tracer.Action<RuntimeException> action) {
+        Tracer.run(Span.Phase.DB, this.entityType.getSimpleName(), name, action);
+    }
+
     /**
      * Get one or zero items.  Thanks http://stackoverflow.com/a/6378045/6124862
      * @param query
@@ -161,7 +194,7 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
 
     @Transactional
     protected <T> T get(Class<T> clazz, Serializable id) {
-        return this.currentSession().get(clazz, id);
+        return this.trace("get", () -> this.currentSession().get(clazz, id));
     }
 
     /**
@@ -235,10 +268,13 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
      */
     @Transactional
     public E create(E entity, boolean flush) {
-        getEntityManager().persist(entity);
-        if (flush) {
-            flush();
-        }
+        this.traceAction("create", () -> {
+            getEntityManager().persist(entity);
+            if (flush) {
+                flush();
+            }
+        });
+
         return entity;
     }
 
@@ -318,7 +354,7 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
         return c.list();
     }
 
-    private Order createPagingOrder(PageRequest p) {
+    protected Order createPagingOrder(PageRequest p) {
         String sortBy = (p.getSortBy() == null) ? AbstractHibernateObject.DEFAULT_SORT_FIELD : p.getSortBy();
         PageRequest.Order order = (p.getOrder() == null) ? PageRequest.DEFAULT_ORDER : p.getOrder();
 
@@ -360,7 +396,7 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
     @SuppressWarnings("unchecked")
     @Transactional
     public List<E> listByCriteria(Criteria query) {
-        return query.list();
+        return this.trace("listByCriteria", query::list);
     }
 
     @SuppressWarnings("unchecked")
@@ -602,7 +638,7 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
      */
     @Transactional
     public E merge(E entity) {
-        return getEntityManager().merge(entity);
+        return this.trace("merge", () -> getEntityManager().merge(entity));
     }
 
     @Transactional
@@ -620,7 +656,7 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
 
     public void flush() {
         try {
-            getEntityManager().flush();
+            this.traceAction("flush", () -> getEntityManager().flush());
         }
         catch (OptimisticLockException e) {
             throw new ConcurrentModificationException(getConcurrentModificationMessage(), e);
@@ -705,25 +741,27 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
     public Collection<E> saveAll(Collection<E> entities, boolean flush, boolean evict) {
         if (entities != null && !entities.isEmpty()) {
             try {
-                Session session = this.currentSession();
-                EntityManager em = this.getEntityManager();
-                Iterable<List<E>> blocks = Iterables.partition(entities, getBatchBlockSize());
-
-                for (List<E> block : blocks) {
-                    for (E entity : block) {
-                        session.save(entity);
-                    }
+                this.traceAction("saveAll", () -> {
+                    Session session = this.currentSession();
+                    EntityManager em = this.getEntityManager();
+                    Iterable<List<E>> blocks = Iterables.partition(entities, getBatchBlockSize());
+
+                    for (List<E> block : blocks) {
+                        for (E entity : block) {
+                            session.save(entity);
+                        }
 
-                    if (flush) {
-                        em.flush();
+                        if (flush) {
+                            em.flush();
 
-                        if (evict) {
-                            for (E entity : block) {
-                                session.evict(entity);
+                            if (evict) {
+                                for (E entity : block) {
+                                    session.evict(entity);
+                                }
                             }
                         }
                     }
-                }
+                });
             }
             catch (OptimisticLockException e) {
                 throw new ConcurrentModificationException(getConcurrentModificationMessage(), e);
@@ -736,25 +774,27 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
     public Collection<E> updateAll(Collection<E> entities, boolean flush, boolean evict) {
         if (entities != null && !entities.isEmpty()) {
             try {
-                Session session = this.currentSession();
-                EntityManager em = this.getEntityManager();
-                Iterable<List<E>> blocks = Iterables.partition(entities, getBatchBlockSize());
-
-                for (List<E> block : blocks) {
-                    for (E entity : block) {
-                        session.update(entity);
-                    }
+                this.traceAction("updateAll", () -> {
+                    Session session = this.currentSession();
+                    EntityManager em = this.getEntityManager();
+                    Iterable<List<E>> blocks = Iterables.partition(entities, getBatchBlockSize());
+
+                    for (List<E> block : blocks) {
+                        for (E entity : block) {
+                            session.update(entity);
+                        }
 
-                    if (flush) {
-                        em.flush();
+                        if (flush) {
+                            em.flush();
 
-                        if (evict) {
-                            for (E entity : block) {
-                                session.evict(entity);
+                            if (evict) {
+                                for (E entity : block) {
+                                    session.evict(entity);
+                                }
                             }
                         }
                     }
-                }
+                });
             }
             catch (OptimisticLockException e) {
                 throw new ConcurrentModificationException(getConcurrentModificationMessage(), e);
@@ -798,30 +838,32 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
     public Collection<E> mergeAll(Collection<E> entities, boolean flush) {
         if (entities != null && !entities.isEmpty()) {
             try {
-                Session session = this.currentSession();
-                EntityManager em = this.getEntityManager();
+                this.traceAction("mergeAll", () -> {
+                    Session session = this.currentSession();
+                    EntityManager em = this.getEntityManager();
+
+                    if (flush) {
+                        int i = 0;
+                        for (E entity : entities) {
+                            session.merge(entity);
 
-                if (flush) {
-                    int i = 0;
-                    for (E entity : entities) {
-                        session.merge(entity);
+                            if (++i % getBatchBlockSize() == 0) {
+                                em.flush();
+                                session.clear();
+                            }
+                        }
 
-                        if (++i % getBatchBlockSize() == 0) {
+                        if (i % getBatchBlockSize() != 0) {
                             em.flush();
                             session.clear();
                         }
                     }
-
-                    if (i % getBatchBlockSize() != 0) {
-                        em.flush();
-                        session.clear();
-                    }
-                }
-                else {
-                    for (E entity : entities) {
-                        session.merge(entity);
+                    else {
+                        for (E entity : entities) {
+                            session.merge(entity);
+                        }
                     }
-                }
+                });
             }
             catch (OptimisticLockException e) {
                 throw new ConcurrentModificationException(getConcurrentModificationMessage(), e);
@@ -964,7 +1006,8 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
             throw new IllegalArgumentException("lockMode is null");
         }
 
-        this.getEntityManager().lock(entity, lockMode);
+        this.traceAction("lock", () -> this.getEntityManager().lock(entity, lockMode));
+
         return entity;
     }
 
@@ -1016,10 +1059,10 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
      */
     @SuppressWarnings("unchecked")
     protected E lockAndLoad(Class<E> entityClass, Serializable id) {
-        return this.currentSession()
+        return this.trace("lockAndLoad", () -> this.currentSession()
             .byId(entityClass)
             .with(new LockOptions(LockMode.PESSIMISTIC_WRITE))
-            .load(id);
+            .load(id));
     }
 
     /**
@@ -1078,10 +1121,10 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
 
         // Fetch the entities from the DB...
         if (idSet.size() > 0) {
-            return this.currentSession()
+            return this.trace("lockAndLoad", () -> this.currentSession()
                 .byMultipleIds(entityClass)
                 .with(new LockOptions(LockMode.PESSIMISTIC_WRITE))
-                .multiLoad(new ArrayList(idSet));
+                .multiLoad(new ArrayList(idSet)));
         }
 
         return new ArrayList<E>();
@@ -1230,7 +1273,7 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
                 }
             }
 
-            int blockUpdates = query.executeUpdate();
+            int blockUpdates = this.trace("bulkSQLUpdate", query::executeUpdate);
 
             // Impl note:
             // Since our criteria does not change between queries, the number of rows we update
@@ -1326,7 +1369,7 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
             }
         }
 
-        return query.executeUpdate();
+        return this.trace("bulkSQLDelete", query::executeUpdate);
     }
 
     /**
@@ -15,6 +15,7 @@
 package org.candlepin.model;
 
 import org.candlepin.service.model.BrandingInfo;
+import org.candlepin.util.EntityHashBuilder;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
@@ -189,6 +190,22 @@ public class Branding extends AbstractHibernateObject<Branding> implements Brand
             .toHashCode();
     }
 
+    /**
+     * Calculates and returns a stable, 64-bit content hash for this branding. Unlike hashCode,
+     * the hash does not include the owning product, allowing it to be used when calculating the
+     * hash of the product itself.
+     *
+     * @return
+     *  a 64-bit content hash for this branding
+     */
+    public long getEntityHash() {
+        return new EntityHashBuilder()
+            .append(this.productId)
+            .append(this.name)
+            .append(this.type)
+            .toHash();
+    }
+
     @Override
     public Branding clone() {
         Branding copy;
@@ -18,6 +18,7 @@ import org.candlepin.util.ElementTransformer;
 
 import org.hibernate.Session;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projection;
 
 import java.util.List;
 import java.util.Iterator;
@@ -264,6 +265,26 @@ public interface CandlepinQuery<T> extends Iterable<T> {
      */
     ResultIterator<Object[]> iterateByRow();
 
+    /**
+     * Executes this query with its selection replaced by the given projection, and iterates over
+     * the projected rows. Any ordering, offset and limit configured on this query still apply.
+     * Entities are not loaded by the projected query, allowing callers to read flat rows from the
+     * cursor without materializing the entities behind them.
+     * <p></p>
+     * WARNING: This method must be called from within a transaction, and the iterator must
+     * remain within the bounds of that transaction.
+     *
+     * @param projection
+     *  The projection defining the columns of each row
+     *
+     * @throws IllegalArgumentException
+     *  if projection is null
+     *
+     * @return
+     *  an iterator over the projected rows in the query results
+     */
+    ResultIterator<Object[]> iterateByRow(Projection projection);
+
     /**
      * Executes this query and returns a single, unique entity. If no entities could be found,
      * this method returns null. If more than one entity is found, a runtime exception will be
@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.hibernate.annotations.GenericGenerator;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.MapKeyColumn;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+
+
+
+/**
+ * Tracks the versioned set of certificate serials served to a consumer. The bundle version is
+ * incremented every time the consumer's certificates change, and each serial records the version
+ * at which it was added to or removed from the bundle. This allows clients to skip downloading
+ * an unchanged bundle altogether, or to download only the certificates which changed since the
+ * version they already have.
+ * <p></p>
+ * Removed serials are only retained for a limited number of versions; the delta base is the
+ * oldest version from which a complete delta can still be built.
+ */
+@Entity
+@Table(name = CertificateBundle.DB_TABLE)
+public class CertificateBundle extends AbstractHibernateObject<CertificateBundle> {
+
+    /** Name of the table backing this object in the database */
+    public static final String DB_TABLE = "cp_cert_bundle";
+
+    @Id
+    @GeneratedValue(generator = "system-uuid")
+    @GenericGenerator(name = "system-uuid", strategy = "uuid")
+    @Column(length = 32)
+    @NotNull
+    private String id;
+
+    // Impl note: this is deliberately not mapped as a relation, as the bundle is owned by and
+    // deleted along with the consumer at the database level
+    @Column(name = "consumer_id", length = 32, nullable = false, unique = true)
+    @NotNull
+    private String consumerId;
+
+    @Column(nullable = false)
+    private long version;
+
+    @Column(name = "delta_base", nullable = false)
+    private long deltaBase;
+
+    @Column(name = "content_access_version", length = 64)
+    private String contentAccessVersion;
+
+    @ElementCollection
+    @CollectionTable(name = "cp_cert_bundle_serials", joinColumns = @JoinColumn(name = "bundle_id"))
+    @MapKeyColumn(name = "serial_id")
+    @Column(name = "version", nullable = false)
+    private Map<Long, Long> serials;
+
+    @ElementCollection
+    @CollectionTable(name = "cp_cert_bundle_removed", joinColumns = @JoinColumn(name = "bundle_id"))
+    @MapKeyColumn(name = "serial_id")
+    @Column(name = "version", nullable = false)
+    private Map<Long, Long> removedSerials;
+
+    public CertificateBundle() {
+        this.serials = new HashMap<>();
+        this.removedSerials = new HashMap<>();
+    }
+
+    public CertificateBundle(String consumerId) {
+        this();
+        this.consumerId = consumerId;
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getConsumerId() {
+        return this.consumerId;
+    }
+
+    public void setConsumerId(String consumerId) {
+        this.consumerId = consumerId;
+    }
+
+    public long getVersion() {
+        return this.version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public long getDeltaBase() {
+        return this.deltaBase;
+    }
+
+    public void setDeltaBase(long deltaBase) {
+        this.deltaBase = deltaBase;
+    }
+
+    /**
+     * Retrieves the version of the content access certificate and payload included in this
+     * bundle. The certificate serial alone does not identify the certificate, as its content
+     * payload is regenerated without reissuing it.
+     *
+     * @return
+     *  the content access version of this bundle, or null if it has no content access certificate
+     */
+    public String getContentAccessVersion() {
+        return this.contentAccessVersion;
+    }
+
+    public void setContentAccessVersion(String contentAccessVersion) {
+        this.contentAccessVersion = contentAccessVersion;
+    }
+
+    /**
+     * Retrieves the serials currently in this bundle, mapped to the bundle version at which each
+     * was added.
+     *
+     * @return
+     *  a mutable map of serial IDs to bundle versions
+     */
+    public Map<Long, Long> getSerials() {
+        return this.serials;
+    }
+
+    /**
+     * Retrieves the serials which have been removed from this bundle, mapped to the bundle
+     * version at which each was removed.
+     *
+     * @return
+     *  a mutable map of serial IDs to bundle versions
+     */
+    public Map<Long, Long> getRemovedSerials() {
+        return this.removedSerials;
+    }
+
+    /**
+     * Checks whether or not a delta from the given bundle version can be built from this bundle.
+     *
+     * @param since
+     *  the bundle version from which to build a delta
+     *
+     * @return
+     *  true if the serials added and removed since the given version are known; false otherwise
+     */
+    public boolean hasDeltaFrom(long since) {
+        return since >= this.deltaBase && since <= this.version;
+    }
+
+    /**
+     * Retrieves the serials which were added to this bundle after the given bundle version.
+     *
+     * @param since
+     *  the bundle version after which serials were added
+     *
+     * @return
+     *  a set of the serials added after the given version
+     */
+    public Set<Long> getSerialsAddedSince(long since) {
+        return filterByVersion(this.serials, since);
+    }
+
+    /**
+     * Retrieves the serials which were removed from this bundle after the given bundle version.
+     * The result is only complete if a delta from the given version is available.
+     *
+     * @param since
+     *  the bundle version after which serials were removed
+     *
+     * @return
+     *  a set of the serials removed after the given version
+     */
+    public Set<Long> getSerialsRemovedSince(long since) {
+        return filterByVersion(this.removedSerials, since);
+    }
+
+    private static Set<Long> filterByVersion(Map<Long, Long> serials, long since) {
+        Set<Long> filtered = new HashSet<>();
+
+        for (Map.Entry<Long, Long> entry : serials.entrySet()) {
+            if (entry.getValue() > since) {
+                filtered.add(entry.getKey());
+            }
+        }
+
+        return filtered;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CertificateBundle [id: %s, consumerId: %s, version: %d, serials: %d]",
+            this.id, this.consumerId, this.version, this.serials.size());
+    }
+}
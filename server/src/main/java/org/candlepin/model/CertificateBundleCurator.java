@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.hibernate.criterion.Restrictions;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * The CertificateBundleCurator provides lookups of the certificate bundles of consumers
+ */
+@Singleton
+public class CertificateBundleCurator extends AbstractHibernateCurator<CertificateBundle> {
+
+    public CertificateBundleCurator() {
+        super(CertificateBundle.class);
+    }
+
+    /**
+     * Fetches the certificate bundle of the given consumer.
+     *
+     * @param consumer
+     *  the consumer for which to fetch the certificate bundle
+     *
+     * @throws IllegalArgumentException
+     *  if consumer is null
+     *
+     * @return
+     *  the certificate bundle of the consumer, or null if a bundle has not yet been created for it
+     */
+    public CertificateBundle getForConsumer(Consumer consumer) {
+        if (consumer == null) {
+            throw new IllegalArgumentException("consumer is null");
+        }
+
+        return (CertificateBundle) this.currentSession().createCriteria(CertificateBundle.class)
+            .add(Restrictions.eq("consumerId", consumer.getId()))
+            .uniqueResult();
+    }
+}
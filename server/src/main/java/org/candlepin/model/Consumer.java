@@ -38,7 +38,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import javax.persistence.Basic;
 import javax.persistence.CascadeType;
@@ -470,10 +472,37 @@ public class Consumer extends AbstractHibernateObject implements Linkable, Owned
     }
 
     /**
+     * Sets the facts of this consumer. An existing fact map is updated in place rather than
+     * replaced, so Hibernate writes only the facts which have changed, instead of deleting and
+     * re-inserting the entire fact collection.
+     *
      * @param factsIn facts about this consumer.
      */
     public void setFacts(Map<String, String> factsIn) {
-        facts = factsIn;
+        if (factsIn == null || this.facts == null) {
+            this.facts = factsIn != null ? new HashMap<>(factsIn) : null;
+            return;
+        }
+
+        if (factsIn == this.facts) {
+            return;
+        }
+
+        // Impl note: only keys which actually change are touched, as any write to a managed map
+        // marks the whole collection dirty.
+        List<String> removed = this.facts.keySet().stream()
+            .filter(key -> !factsIn.containsKey(key))
+            .collect(Collectors.toList());
+
+        removed.forEach(this.facts::remove);
+
+        for (Entry<String, String> fact : factsIn.entrySet()) {
+            if (!this.facts.containsKey(fact.getKey()) ||
+                !Objects.equals(this.facts.get(fact.getKey()), fact.getValue())) {
+
+                this.facts.put(fact.getKey(), fact.getValue());
+            }
+        }
     }
 
     /**
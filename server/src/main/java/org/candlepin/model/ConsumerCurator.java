@@ -47,12 +47,16 @@ import org.hibernate.criterion.Subqueries;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -81,6 +85,9 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
     @Inject private OwnerCurator ownerCurator;
     @Inject private Provider<HostCache> cachedHostsProvider;
     @Inject private PrincipalProvider principalProvider;
+    @Inject private OwnerInfoCounterListener ownerInfoCounterListener;
+    @Inject private ConsumerSearchIndexListener consumerSearchIndexListener;
+    @Inject private ConsumerSearchIndexCurator consumerSearchIndexCurator;
 
     public ConsumerCurator() {
         super(Consumer.class);
@@ -117,6 +124,11 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
             .setOwnerDisplayName(owner.getDisplayName())
             .setPrincipalName(principal != null ? principal.getName() : null);
 
+        // The owner info counters need the guest status of the consumer as it is deleted
+        if (this.ownerInfoCounterListener.isEnabled()) {
+            Hibernate.initialize(entity.getFacts());
+        }
+
         // Actually delete the consumer
         super.delete(entity);
 
@@ -124,6 +136,201 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
         this.deletedConsumerCurator.saveOrUpdate(deletedConsumer);
     }
 
+    /**
+     * Fetches the IDs of a chunk of consumers of the given owner in ID order, starting after the
+     * given consumer ID. Used to walk the consumers of an owner in chunks, without holding a
+     * result set open across transactions.
+     *
+     * @param ownerId
+     *  the ID of the owner for which to fetch consumer IDs
+     *
+     * @param afterId
+     *  the consumer ID after which the chunk starts, or null to start with the first consumer
+     *
+     * @param limit
+     *  the maximum number of consumer IDs to fetch
+     *
+     * @return
+     *  a list of up to the given number of consumer IDs, in ID order
+     */
+    public List<String> getConsumerIdChunk(String ownerId, String afterId, int limit) {
+        String jpql = "SELECT c.id FROM Consumer c WHERE c.ownerId = :owner_id" +
+            (afterId != null ? " AND c.id > :after_id" : "") +
+            " ORDER BY c.id ASC";
+
+        TypedQuery<String> query = this.getEntityManager()
+            .createQuery(jpql, String.class)
+            .setParameter("owner_id", ownerId)
+            .setMaxResults(limit);
+
+        if (afterId != null) {
+            query.setParameter("after_id", afterId);
+        }
+
+        return query.getResultList();
+    }
+
+    /**
+     * Fetches the IDs of the consumers of the given owner with the given UUIDs, in ID order.
+     *
+     * @param ownerId
+     *  the ID of the owner of the consumers
+     *
+     * @param consumerUuids
+     *  the UUIDs of the consumers for which to fetch IDs
+     *
+     * @return
+     *  a list of the IDs of the matching consumers, in ID order
+     */
+    public List<String> getConsumerIdsByUuids(String ownerId, Collection<String> consumerUuids) {
+        String jpql = "SELECT c.id FROM Consumer c " +
+            "WHERE c.ownerId = :owner_id AND c.uuid IN (:consumer_uuids)";
+
+        List<String> consumerIds = new ArrayList<>();
+
+        for (List<String> block : this.partition(consumerUuids)) {
+            consumerIds.addAll(this.getEntityManager()
+                .createQuery(jpql, String.class)
+                .setParameter("owner_id", ownerId)
+                .setParameter("consumer_uuids", block)
+                .getResultList());
+        }
+
+        Collections.sort(consumerIds);
+        return consumerIds;
+    }
+
+    /**
+     * Deletes the given consumers of an owner using set-based statements, rather than deleting
+     * each consumer through the session. Along with the consumers, their facts, guest IDs,
+     * installed products, capabilities, hypervisor IDs, content tags, content overrides,
+     * identity and content access certificates and key pairs are deleted. The serials of their
+     * certificates are revoked, and deleted consumer records are written for them in batches.
+     * <p></p>
+     * The entitlements of the consumers must have been revoked beforehand. The session is flushed
+     * and the consumers are evicted from it before they are deleted. Consumers which do not belong
+     * to the given owner are not deleted.
+     *
+     * @param owner
+     *  the owner of the consumers to delete
+     *
+     * @param consumers
+     *  the consumers to delete
+     *
+     * @return
+     *  the UUIDs of the deleted consumers
+     */
+    @Transactional
+    public List<String> bulkDelete(Owner owner, Collection<Consumer> consumers) {
+        if (consumers == null || consumers.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        this.flush();
+
+        Set<String> requestedIds = new HashSet<>();
+        for (Consumer consumer : consumers) {
+            requestedIds.add(consumer.getId());
+            this.evict(consumer);
+        }
+
+        String jpql = "SELECT c.id, c.uuid, ic.id, ics.id, cac.id, cacs.id, kp.id FROM Consumer c " +
+            "LEFT JOIN c.idCert ic LEFT JOIN ic.serial ics " +
+            "LEFT JOIN c.contentAccessCert cac LEFT JOIN cac.serial cacs " +
+            "LEFT JOIN c.keyPair kp " +
+            "WHERE c.ownerId = :owner_id AND c.id IN (:consumer_ids)";
+
+        List<String> consumerIds = new ArrayList<>();
+        List<String> consumerUuids = new ArrayList<>();
+        Set<String> idCertIds = new HashSet<>();
+        Set<String> contentAccessCertIds = new HashSet<>();
+        Set<String> keyPairIds = new HashSet<>();
+        Set<Long> serialIds = new HashSet<>();
+
+        for (List<String> block : this.partition(requestedIds)) {
+            List<Object[]> rows = this.getEntityManager()
+                .createQuery(jpql, Object[].class)
+                .setParameter("owner_id", owner.getId())
+                .setParameter("consumer_ids", block)
+                .getResultList();
+
+            for (Object[] row : rows) {
+                consumerIds.add((String) row[0]);
+                consumerUuids.add((String) row[1]);
+                addIfNotNull(idCertIds, (String) row[2]);
+                addIfNotNull(serialIds, (Long) row[3]);
+                addIfNotNull(contentAccessCertIds, (String) row[4]);
+                addIfNotNull(serialIds, (Long) row[5]);
+                addIfNotNull(keyPairIds, (String) row[6]);
+            }
+        }
+
+        if (consumerIds.isEmpty()) {
+            return consumerUuids;
+        }
+
+        String guestAttributes = "DELETE FROM cp_consumer_guests_attributes WHERE cp_consumer_guest_id IN " +
+            "(SELECT g.id FROM " + GuestId.DB_TABLE + " g WHERE g.consumer_id IN (:consumer_ids))";
+
+        for (List<String> block : this.partition(consumerIds)) {
+            this.currentSession()
+                .createNativeQuery(guestAttributes)
+                .setParameterList("consumer_ids", block)
+                .executeUpdate();
+        }
+
+        this.bulkSQLDelete(GuestId.DB_TABLE, "consumer_id", consumerIds);
+        this.bulkSQLDelete("cp_consumer_facts", "cp_consumer_id", consumerIds);
+        this.bulkSQLDelete(ConsumerInstalledProduct.DB_TABLE, "consumer_id", consumerIds);
+        this.bulkSQLDelete(ConsumerCapability.DB_TABLE, "consumer_id", consumerIds);
+        this.bulkSQLDelete(HypervisorId.DB_TABLE, "consumer_id", consumerIds);
+        this.bulkSQLDelete("cp_consumer_content_tags", "consumer_id", consumerIds);
+        this.bulkSQLDelete("cp_sp_add_on", "consumer_id", consumerIds);
+        this.bulkSQLDelete(ContentOverride.DB_TABLE, "consumer_id", consumerIds);
+        this.bulkSQLDelete(Consumer.DB_TABLE, "id", consumerIds);
+
+        // Revoke the serials in bulk, rather than through the @PreRemove of each certificate, so
+        // they are picked up by the next CRL update
+        String revoke = "UPDATE CertificateSerial SET revoked = true WHERE id IN (:serial_ids)";
+        for (List<Long> block : this.partition(serialIds)) {
+            this.getEntityManager()
+                .createQuery(revoke)
+                .setParameter("serial_ids", block)
+                .executeUpdate();
+        }
+
+        this.bulkSQLDelete(IdentityCertificate.DB_TABLE, "id", idCertIds);
+        this.bulkSQLDelete("cp_cont_access_cert", "id", contentAccessCertIds);
+        this.bulkSQLDelete(KeyPair.DB_TABLE, "id", keyPairIds);
+
+        Principal principal = this.principalProvider.get();
+        this.deletedConsumerCurator.recordDeletedConsumers(owner, consumerUuids,
+            principal != null ? principal.getName() : null);
+
+        // The deletes bypass the session, so the owner info counters are recomputed instead
+        this.ownerInfoCounterListener.markStale(this.currentSession(), owner.getId());
+
+        log.debug("Bulk deleted {} consumers of owner: {}", consumerUuids.size(), owner);
+        return consumerUuids;
+    }
+
+    private int bulkSQLDelete(String table, String column, Collection<?> values) {
+        if (values.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Object> criteria = new HashMap<>();
+        criteria.put(column, values);
+
+        return this.bulkSQLDelete(table, criteria);
+    }
+
+    private static <T> void addIfNotNull(Collection<T> collection, T value) {
+        if (value != null) {
+            collection.add(value);
+        }
+    }
+
     @Transactional
     public Consumer replicate(Consumer consumer) {
         for (Entitlement entitlement : consumer.getEntitlements()) {
@@ -605,6 +812,158 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
             .executeUpdate();
     }
 
+    /**
+     * Fetches the fingerprints recorded for the given hypervisors when a report from the specified
+     * reporter was last accepted. Fingerprints for hosts which have since been reported by another
+     * reporter, or whose consumer has been modified after the fingerprint was recorded, are
+     * considered stale and are not returned.
+     *
+     * @param owner
+     *  the owner of the hypervisors
+     *
+     * @param reporterId
+     *  the ID of the reporter which submitted the report
+     *
+     * @param hypervisorIds
+     *  the IDs of the hypervisors for which to fetch fingerprints
+     *
+     * @return
+     *  a map of lower-cased hypervisor IDs to their current fingerprints
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, HypervisorFingerprint> getHypervisorFingerprints(Owner owner, String reporterId,
+        Collection<String> hypervisorIds) {
+
+        Map<String, HypervisorFingerprint> fingerprints = new HashMap<>();
+
+        if (owner == null || reporterId == null || hypervisorIds == null || hypervisorIds.isEmpty()) {
+            return fingerprints;
+        }
+
+        String hql = "SELECT h.hypervisorId, h.hostFingerprint, h.guestFingerprint, c.uuid " +
+            "FROM HypervisorId h JOIN h.consumer c " +
+            "WHERE h.owner.id = :owner_id " +
+            "AND h.reporterId = :reporter_id " +
+            "AND h.hypervisorId IN (:hypervisor_ids) " +
+            "AND h.fingerprintDate IS NOT NULL " +
+            "AND c.updated <= h.fingerprintDate";
+
+        Query query = this.currentSession().createQuery(hql)
+            .setParameter("owner_id", owner.getId())
+            .setParameter("reporter_id", reporterId);
+
+        Set<String> lowered = new HashSet<>();
+        for (String hypervisorId : hypervisorIds) {
+            lowered.add(hypervisorId.toLowerCase());
+        }
+
+        for (List<String> block : this.partition(lowered)) {
+            List<Object[]> rows = query.setParameterList("hypervisor_ids", block).list();
+
+            for (Object[] row : rows) {
+                fingerprints.put((String) row[0],
+                    new HypervisorFingerprint((String) row[1], (String) row[2], (String) row[3]));
+            }
+        }
+
+        return fingerprints;
+    }
+
+    /**
+     * Records the fingerprints of the given hypervisors as reported in the most recently accepted
+     * report. This should be called only after the changes from the report have been persisted, as
+     * any later modification to the host consumers invalidates the recorded fingerprints.
+     *
+     * @param owner
+     *  the owner of the hypervisors
+     *
+     * @param fingerprints
+     *  a map of hypervisor IDs to the fingerprints to record
+     *
+     * @param date
+     *  the date at which the fingerprints are recorded
+     */
+    @Transactional
+    public void updateHypervisorFingerprints(Owner owner, Map<String, HypervisorFingerprint> fingerprints,
+        Date date) {
+
+        if (owner == null || fingerprints == null || fingerprints.isEmpty()) {
+            return;
+        }
+
+        final int batchSize = this.getBatchBlockSize();
+        final Timestamp timestamp = new Timestamp(date.getTime());
+
+        // Each host has its own fingerprints, so the updates are sent as JDBC batches rather than
+        // as one statement per host
+        this.currentSession().doWork(connection -> {
+            String sql = "UPDATE " + HypervisorId.DB_TABLE + " " +
+                "SET host_fingerprint = ?, guest_fingerprint = ?, fingerprint_date = ? " +
+                "WHERE owner_id = ? AND hypervisor_id = ?";
+
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (List<Map.Entry<String, HypervisorFingerprint>> block :
+                    Iterables.partition(fingerprints.entrySet(), batchSize)) {
+
+                    for (Map.Entry<String, HypervisorFingerprint> entry : block) {
+                        statement.setString(1, entry.getValue().getHostFingerprint());
+                        statement.setString(2, entry.getValue().getGuestFingerprint());
+                        statement.setTimestamp(3, timestamp);
+                        statement.setString(4, owner.getId());
+                        statement.setString(5, entry.getKey().toLowerCase());
+                        statement.addBatch();
+                    }
+
+                    statement.executeBatch();
+                }
+            }
+        });
+    }
+
+    /**
+     * Updates the last check-in date of the consumers of the given hypervisors, without otherwise
+     * modifying them. This is the check-in equivalent of a heartbeat, limited to a subset of the
+     * hosts reported by a reporter.
+     *
+     * @param owner
+     *  the owner of the hypervisors
+     *
+     * @param hypervisorIds
+     *  the IDs of the hypervisors to update
+     *
+     * @param checkIn
+     *  the check-in date to set
+     *
+     * @return
+     *  the number of consumers updated
+     */
+    @Transactional
+    public int updateHypervisorLastCheckin(Owner owner, Collection<String> hypervisorIds, Date checkIn) {
+        if (owner == null || hypervisorIds == null || hypervisorIds.isEmpty()) {
+            return 0;
+        }
+
+        String hql = "UPDATE Consumer c SET c.lastCheckin = :date " +
+            "WHERE c.id IN (SELECT h.consumer.id FROM HypervisorId h " +
+            "    WHERE h.owner.id = :owner_id AND h.hypervisorId IN (:hypervisor_ids))";
+
+        Query query = this.currentSession().createQuery(hql)
+            .setTimestamp("date", checkIn)
+            .setParameter("owner_id", owner.getId());
+
+        Set<String> lowered = new HashSet<>();
+        for (String hypervisorId : hypervisorIds) {
+            lowered.add(hypervisorId.toLowerCase());
+        }
+
+        int count = 0;
+        for (List<String> block : this.partition(lowered)) {
+            count += query.setParameterList("hypervisor_ids", block).executeUpdate();
+        }
+
+        return count;
+    }
+
     private boolean factsChanged(Map<String, String> updatedFacts, Map<String, String> existingFacts) {
         return !existingFacts.equals(updatedFacts);
     }
@@ -633,6 +992,59 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
         }
     }
 
+    /**
+     * Replaces the facts of the given consumer with the provided facts. The consumer's fact map is
+     * updated in place, so Hibernate writes only the facts which differ from the current facts,
+     * instead of deleting and re-inserting the entire fact collection. The consumer's update time
+     * is bumped if any facts changed.
+     *
+     * @param consumer
+     *  The consumer for which to update facts
+     *
+     * @param facts
+     *  The new facts for the consumer
+     *
+     * @return
+     *  the number of facts added, changed or removed
+     */
+    @Transactional
+    public int updateFacts(Consumer consumer, Map<String, String> facts) {
+        if (facts != null) {
+            for (Entry<String, String> fact : facts.entrySet()) {
+                this.factValidator.validate(fact.getKey(), fact.getValue());
+            }
+        }
+
+        Map<String, String> existing = consumer.getFacts() != null ? consumer.getFacts() :
+            Collections.emptyMap();
+        Map<String, String> incoming = facts != null ? facts : Collections.emptyMap();
+
+        // Impl note: Hibernate does not store null elements, so facts with null values are treated
+        // the same as removed facts.
+        int changes = 0;
+
+        for (Entry<String, String> fact : existing.entrySet()) {
+            if (fact.getValue() != null && incoming.get(fact.getKey()) == null) {
+                ++changes;
+            }
+        }
+
+        for (Entry<String, String> fact : incoming.entrySet()) {
+            if (fact.getValue() != null && !fact.getValue().equals(existing.get(fact.getKey()))) {
+                ++changes;
+            }
+        }
+
+        consumer.setFacts(facts);
+
+        if (changes > 0) {
+            consumer.setUpdated(new Date());
+        }
+
+        log.debug("Updated {} facts for consumer {}", changes, consumer.getUuid());
+        return changes;
+    }
+
     /**
      * @param consumers consumers to update
      * @return updated consumers
@@ -1059,6 +1471,13 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
             crit.add(Restrictions.or(ors.toArray(new Criterion[ors.size()])));
         }
 
+        if (owner != null &&
+            this.useSearchIndex(owner.getId(), factFilters, skus, subscriptionIds, contracts)) {
+
+            this.addIndexedSearchFilters(crit, owner.getId(), factFilters, skus, subscriptionIds, contracts);
+            return this.cpQueryFactory.<Consumer>buildQuery(this.currentSession(), crit);
+        }
+
         if (factFilters != null && !factFilters.isEmpty()) {
             // Process the filters passed for the attributes
             FilterBuilder factFilter = new FactFilterBuilder();
@@ -1136,6 +1555,58 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
         return this.cpQueryFactory.<Consumer>buildQuery(this.currentSession(), crit);
     }
 
+    /**
+     * Checks whether the given filters on the consumers of an owner can be served from the consumer
+     * search index, which is the case if the index is maintained and the owner has been indexed.
+     * Searches without any indexed filters do not use the index. Changes made earlier in the
+     * transaction are applied to the index before it is used.
+     */
+    private boolean useSearchIndex(String ownerId, Collection<?>... filters) {
+        if (!this.consumerSearchIndexListener.isEnabled() ||
+            Arrays.stream(filters).allMatch(CollectionUtils::isEmpty)) {
+            return false;
+        }
+
+        this.consumerSearchIndexListener.flush(this.currentSession());
+        return this.consumerSearchIndexCurator.isIndexed(ownerId);
+    }
+
+    /**
+     * Adds the fact, SKU, subscription and contract filters of an owner consumer search to the
+     * given criteria as lookups on the consumer search index. As with the subqueries they replace,
+     * values given for the same fact are ORed, while all other filters are ANDed.
+     */
+    private void addIndexedSearchFilters(DetachedCriteria crit, String ownerId,
+        List<KeyValueParameter> factFilters, List<String> skus, List<String> subscriptionIds,
+        List<String> contracts) {
+
+        if (factFilters != null && !factFilters.isEmpty()) {
+            FilterBuilder factFilter = new FactFilterBuilder();
+            for (KeyValueParameter filterParam : factFilters) {
+                factFilter.addAttributeFilter(filterParam.getKey(), filterParam.getValue());
+            }
+
+            for (Entry<String, List<String>> fact : factFilter.getAttributeFilters().entrySet()) {
+                crit.add(ConsumerSearchIndexCurator.buildFactRestriction(ownerId, fact.getKey(),
+                    fact.getValue()));
+            }
+        }
+
+        Map<String, List<String>> terms = new LinkedHashMap<>();
+        terms.put(ConsumerSearchIndexCurator.SKU, skus);
+        terms.put(ConsumerSearchIndexCurator.SUBSCRIPTION, subscriptionIds);
+        terms.put(ConsumerSearchIndexCurator.CONTRACT, contracts);
+
+        for (Entry<String, List<String>> term : terms.entrySet()) {
+            if (term.getValue() != null) {
+                for (String name : term.getValue()) {
+                    crit.add(ConsumerSearchIndexCurator.buildTermRestriction(ownerId, term.getKey(),
+                        Collections.singletonList(name)));
+                }
+            }
+        }
+    }
+
     /*
      *  JPQL of below criteria can look like this.
      *  If all parameters aren't passed then only sub-parts of it are returned.
@@ -1182,6 +1653,25 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
         boolean hasSkus = !CollectionUtils.isEmpty(skus);
         boolean hasSubscriptionIds = !CollectionUtils.isEmpty(subscriptionIds);
         boolean hasContracts = !CollectionUtils.isEmpty(contracts);
+
+        // The index can only serve a single entitlement filter; combined filters must match on the
+        // same entitlement.
+        if ((hasSkus ? 1 : 0) + (hasSubscriptionIds ? 1 : 0) + (hasContracts ? 1 : 0) == 1) {
+            Owner owner = this.ownerCurator.getByKey(ownerKey);
+
+            if (owner != null && this.useSearchIndex(owner.getId(), skus, subscriptionIds, contracts)) {
+                String term = hasSkus ? ConsumerSearchIndexCurator.SKU :
+                    (hasSubscriptionIds ? ConsumerSearchIndexCurator.SUBSCRIPTION :
+                    ConsumerSearchIndexCurator.CONTRACT);
+
+                crit.add(ConsumerSearchIndexCurator.buildTermRestriction(owner.getId(), term,
+                    hasSkus ? skus : (hasSubscriptionIds ? subscriptionIds : contracts)));
+                crit.setProjection(Projections.rowCount());
+
+                return ((Long) crit.uniqueResult()).intValue();
+            }
+        }
+
         if (hasSkus || hasSubscriptionIds || hasContracts) {
             crit.createAlias("c.entitlements", "e").createAlias("e.pool", "po");
         }
@@ -0,0 +1,418 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.DatabaseConfigFactory;
+
+import com.google.common.collect.Iterables;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.persist.Transactional;
+
+import org.hibernate.LockOptions;
+import org.hibernate.Session;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StringType;
+import org.hibernate.type.Type;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.inject.Singleton;
+import javax.persistence.EntityManager;
+
+
+
+/**
+ * The ConsumerSearchIndexCurator maintains the consumer search index: a denormalized table of the
+ * terms by which the consumers of an owner can be searched, namely their facts and the SKUs,
+ * subscriptions and contracts of the pools they are entitled to. Searches on indexed owners look
+ * up each filter with a single indexed query on this table, rather than joining through facts,
+ * entitlements, pools and products.
+ * <p></p>
+ * An owner is indexed once it has a state row, which is created when the owner is created or when
+ * its index is first built by the ConsumerSearchIndexJob. The terms of indexed owners are kept up
+ * to date by the ConsumerSearchIndexListener, which reindexes the consumers affected by each
+ * transaction just before it commits.
+ * <p></p>
+ * Terms are written with set-based statements. A rebuild locks the state row of its owner
+ * exclusively before it reads any consumer, while transactions reindexing consumers hold a shared
+ * lock on the state rows of their owners until they complete. Reindexing transactions therefore
+ * do not wait for each other, but a rebuild either sees the changes of a reindexing transaction,
+ * or the transaction waits for the rebuild and writes its terms on top of it.
+ */
+@Singleton
+public class ConsumerSearchIndexCurator {
+
+    /** Consumer facts, by fact key and lower-cased value */
+    public static final String FACT = "fact";
+
+    /** Marketing SKUs of the pools consumed by a consumer */
+    public static final String SKU = "sku";
+
+    /** Subscription IDs of the pools consumed by a consumer */
+    public static final String SUBSCRIPTION = "subscription";
+
+    /** Contract numbers of the pools consumed by a consumer */
+    public static final String CONTRACT = "contract";
+
+    private static final String TERM_SUBQUERY = "{alias}.id IN (SELECT t.consumer_id " +
+        "FROM cp_consumer_search_term t WHERE t.owner_id = ? AND t.term = ? AND ";
+
+    private static final String STATE_TABLE = "cp_consumer_search_state";
+    private static final String TERM_TABLE = "cp_consumer_search_term";
+
+    private final Provider<EntityManager> entityManager;
+    private final Configuration config;
+
+    @Inject
+    public ConsumerSearchIndexCurator(Provider<EntityManager> entityManager, Configuration config) {
+        this.entityManager = entityManager;
+        this.config = config;
+    }
+
+    /**
+     * Checks whether or not the consumers of the given owner are indexed.
+     *
+     * @param ownerId
+     *  the ID of the owner to check
+     *
+     * @return
+     *  true if the consumers of the owner are indexed; false otherwise
+     */
+    public boolean isIndexed(String ownerId) {
+        Number count = (Number) this.currentSession()
+            .createNativeQuery("SELECT COUNT(*) FROM cp_consumer_search_state WHERE owner_id = :owner_id")
+            .setParameter("owner_id", ownerId)
+            .uniqueResult();
+
+        return count.intValue() > 0;
+    }
+
+    /**
+     * Rebuilds the index of the given owner from scratch, indexing the owner if it was not indexed
+     * yet. The owner is locked until the current transaction completes, so consumers reindexed
+     * concurrently are either rebuilt with their changes, or reindexed after the rebuild.
+     *
+     * @param ownerId
+     *  the ID of the owner to index
+     *
+     * @return
+     *  the number of terms indexed for the owner
+     */
+    @Transactional
+    public int rebuildOwner(String ownerId) {
+        Session session = this.currentSession();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+
+        // Lock the owner before anything of it is read
+        int updated = createUpdate(session,
+            "UPDATE cp_consumer_search_state SET built = :now WHERE owner_id = :owner_id", STATE_TABLE)
+            .setParameter("now", now)
+            .setParameter("owner_id", ownerId)
+            .executeUpdate();
+
+        if (updated == 0) {
+            this.insertState(session, ownerId, now);
+        }
+
+        createUpdate(session, "DELETE FROM cp_consumer_search_term WHERE owner_id = :owner_id", TERM_TABLE)
+            .setParameter("owner_id", ownerId)
+            .executeUpdate();
+
+        int count = 0;
+        for (String sql : buildTermInserts("c.owner_id = :owner_id")) {
+            count += createUpdate(session, sql, TERM_TABLE)
+                .setParameter("owner_id", ownerId)
+                .executeUpdate();
+        }
+
+        return count;
+    }
+
+    /**
+     * Indexes a newly created owner, which has no consumers to index yet.
+     *
+     * @param session
+     *  the session in which the owner was created
+     *
+     * @param ownerId
+     *  the ID of the new owner
+     */
+    void addOwner(Session session, String ownerId) {
+        this.insertState(session, ownerId, new Timestamp(System.currentTimeMillis()));
+    }
+
+    private void insertState(Session session, String ownerId, Timestamp now) {
+        // Owners created and deleted in the same transaction are not indexed
+        String sql = "INSERT INTO cp_consumer_search_state (owner_id, built) " +
+            "SELECT id, :now FROM cp_owner WHERE id = :owner_id";
+
+        createUpdate(session, sql, STATE_TABLE)
+            .setParameter("owner_id", ownerId)
+            .setParameter("now", now)
+            .executeUpdate();
+    }
+
+    /**
+     * Replaces the terms of the given consumers with their current ones. Consumers which no longer
+     * exist, or which belong to owners which are not indexed, are left without terms.
+     * <p></p>
+     * The owners of the consumers are locked in shared mode until the current transaction
+     * completes, so that the terms are not written while the owners are being rebuilt.
+     *
+     * @param session
+     *  the session in which the consumers were changed
+     *
+     * @param consumerIds
+     *  the IDs of the consumers to reindex
+     */
+    void reindexConsumers(Session session, Collection<String> consumerIds) {
+        String delete = "DELETE FROM cp_consumer_search_term WHERE consumer_id IN (:consumer_ids)";
+        List<String> inserts = buildTermInserts("c.id IN (:consumer_ids)");
+
+        Dialect dialect = ((SessionFactoryImplementor) session.getSessionFactory()).getJdbcServices()
+            .getDialect();
+
+        // Owners are found through both the consumers and their current terms, as consumers may have
+        // been deleted or moved to another owner
+        String lock = "SELECT s.owner_id FROM cp_consumer_search_state s WHERE s.owner_id IN (" +
+            "SELECT c.owner_id FROM cp_consumer c WHERE c.id IN (:consumer_ids) " +
+            "UNION SELECT t.owner_id FROM cp_consumer_search_term t WHERE t.consumer_id IN (:term_ids)) " +
+            "ORDER BY s.owner_id" + dialect.getReadLockString(LockOptions.WAIT_FOREVER);
+
+        for (List<String> block : Iterables.partition(consumerIds, this.getInBlockSize())) {
+            session.createNativeQuery(lock)
+                .setParameterList("consumer_ids", block)
+                .setParameterList("term_ids", block)
+                .list();
+
+            createUpdate(session, delete, TERM_TABLE)
+                .setParameterList("consumer_ids", block)
+                .executeUpdate();
+
+            for (String sql : inserts) {
+                createUpdate(session, sql, TERM_TABLE)
+                    .setParameterList("consumer_ids", block)
+                    .executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Lists the consumers entitled to any of the given pools.
+     *
+     * @param session
+     *  the session in which to look up the consumers
+     *
+     * @param poolIds
+     *  the IDs of the pools for which to list consumers
+     *
+     * @return
+     *  the IDs of the consumers entitled to the pools
+     */
+    @SuppressWarnings("unchecked")
+    List<String> getPoolConsumerIds(Session session, Collection<String> poolIds) {
+        String sql = "SELECT DISTINCT consumer_id FROM cp_entitlement WHERE pool_id IN (:pool_ids)";
+        List<String> consumerIds = new ArrayList<>();
+
+        for (List<String> block : Iterables.partition(poolIds, this.getInBlockSize())) {
+            consumerIds.addAll(session
+                .createNativeQuery(sql)
+                .setParameterList("pool_ids", block)
+                .list());
+        }
+
+        return consumerIds;
+    }
+
+    /**
+     * Builds the statements which index the terms of the consumers matching the given condition
+     * on the consumer table, aliased as "c". Only consumers of indexed owners are matched.
+     */
+    private static List<String> buildTermInserts(String condition) {
+        String insert = "INSERT INTO cp_consumer_search_term (consumer_id, owner_id, term, name";
+        String from = " FROM cp_consumer c " +
+            "JOIN cp_consumer_search_state s ON s.owner_id = c.owner_id ";
+        String entitled = "JOIN cp_entitlement e ON e.consumer_id = c.id " +
+            "JOIN cp_pool po ON po.id = e.pool_id ";
+        String where = "WHERE " + condition;
+
+        List<String> inserts = new ArrayList<>();
+
+        inserts.add(insert + ", value) " +
+            "SELECT c.id, c.owner_id, '" + FACT + "', f.mapkey, LOWER(f.element)" + from +
+            "JOIN cp_consumer_facts f ON f.cp_consumer_id = c.id " + where);
+
+        inserts.add(insert + ") " +
+            "SELECT DISTINCT c.id, c.owner_id, '" + SKU + "', p.product_id" + from + entitled +
+            "JOIN cp2_products p ON p.uuid = po.product_uuid " +
+            "JOIN cp2_product_attributes pa ON pa.product_uuid = p.uuid " +
+            where + " AND pa.name = 'type' AND pa.value = 'MKT'");
+
+        inserts.add(insert + ") " +
+            "SELECT DISTINCT c.id, c.owner_id, '" + SUBSCRIPTION + "', ss.subscription_id" + from +
+            entitled + "JOIN cp2_pool_source_sub ss ON ss.pool_id = po.id " + where);
+
+        inserts.add(insert + ") " +
+            "SELECT DISTINCT c.id, c.owner_id, '" + CONTRACT + "', po.contractnumber" + from +
+            entitled + where + " AND po.contractnumber IS NOT NULL");
+
+        return inserts;
+    }
+
+    /**
+     * Lists the IDs of all owners, those which are not indexed yet first, followed by the others in
+     * the order their indexes were last built.
+     *
+     * @return
+     *  the IDs of the owners to rebuild
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getOwnersToRebuild() {
+        return this.currentSession()
+            .createNativeQuery("SELECT o.id FROM cp_owner o " +
+                "LEFT JOIN cp_consumer_search_state s ON s.owner_id = o.id " +
+                "ORDER BY CASE WHEN s.built IS NULL THEN 0 ELSE 1 END, s.built")
+            .list();
+    }
+
+    /**
+     * Builds a restriction on consumers matching the given fact filter, with the same semantics as
+     * the FactFilterBuilder: the key is matched case sensitively and the values case insensitively,
+     * both supporting wildcards; an empty value matches facts without a value.
+     *
+     * @param ownerId
+     *  the ID of the indexed owner of the consumers
+     *
+     * @param key
+     *  the fact key to match
+     *
+     * @param values
+     *  the fact values to match, any of which may match
+     *
+     * @return
+     *  a restriction on the ID of the consumers matching the filter
+     */
+    public static Criterion buildFactRestriction(String ownerId, String key, Collection<String> values) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(TERM_SUBQUERY);
+
+        params.add(ownerId);
+        params.add(FACT);
+
+        appendMatch(sql, params, "t.name", key);
+
+        if (values != null && !values.isEmpty()) {
+            List<String> matches = new ArrayList<>();
+
+            for (String value : values) {
+                StringBuilder match = new StringBuilder();
+
+                if (value == null || value.isEmpty()) {
+                    match.append("t.value IS NULL OR t.value = ''");
+                }
+                else {
+                    appendMatch(match, params, "t.value", value.toLowerCase(Locale.ROOT));
+                }
+
+                matches.add(match.toString());
+            }
+
+            sql.append(" AND (").append(String.join(" OR ", matches)).append(')');
+        }
+
+        sql.append(')');
+        return buildRestriction(sql.toString(), params);
+    }
+
+    /**
+     * Builds a restriction on consumers entitled to pools matching any of the given SKUs,
+     * subscription IDs or contract numbers.
+     *
+     * @param ownerId
+     *  the ID of the indexed owner of the consumers
+     *
+     * @param term
+     *  the kind of term to match; one of SKU, SUBSCRIPTION or CONTRACT
+     *
+     * @param names
+     *  the SKUs, subscription IDs or contract numbers to match
+     *
+     * @return
+     *  a restriction on the ID of the consumers matching the filter
+     */
+    public static Criterion buildTermRestriction(String ownerId, String term, Collection<String> names) {
+        List<Object> params = new ArrayList<>();
+
+        params.add(ownerId);
+        params.add(term);
+        params.addAll(names);
+
+        String sql = TERM_SUBQUERY + "t.name IN (" +
+            String.join(", ", Collections.nCopies(names.size(), "?")) + "))";
+
+        return buildRestriction(sql, params);
+    }
+
+    /**
+     * Appends a match of the given column against a filter value, which may contain the wildcards
+     * supported by the FilterBuilder.
+     */
+    private static void appendMatch(StringBuilder sql, List<Object> params, String column, String value) {
+        if (value.indexOf('*') < 0 && value.indexOf('?') < 0 && value.indexOf('\\') < 0) {
+            sql.append(column).append(" = ?");
+            params.add(value);
+        }
+        else {
+            sql.append(column).append(" LIKE ? ESCAPE '!'");
+            params.add(FilterBuilder.FilterLikeExpression.escape(value));
+        }
+    }
+
+    private static Criterion buildRestriction(String sql, List<Object> params) {
+        Type[] types = new Type[params.size()];
+        Arrays.fill(types, StringType.INSTANCE);
+
+        return Restrictions.sqlRestriction(sql, params.toArray(), types);
+    }
+
+    /**
+     * Creates a native statement which modifies the given table. Declaring the table keeps
+     * Hibernate from treating the statement as one which could affect any entity, and invalidating
+     * the whole second-level cache on execution.
+     */
+    private static NativeQuery createUpdate(Session session, String sql, String table) {
+        return session.createNativeQuery(sql).addSynchronizedQuerySpace(table);
+    }
+
+    private int getInBlockSize() {
+        return this.config.getInt(DatabaseConfigFactory.IN_OPERATOR_BLOCK_SIZE);
+    }
+
+    protected Session currentSession() {
+        return (Session) this.entityManager.get().getDelegate();
+    }
+}
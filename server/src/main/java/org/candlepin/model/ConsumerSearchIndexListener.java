@@ -0,0 +1,339 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.hibernate.Session;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.event.spi.PreCollectionRecreateEvent;
+import org.hibernate.event.spi.PreCollectionRecreateEventListener;
+import org.hibernate.event.spi.PreCollectionRemoveEvent;
+import org.hibernate.event.spi.PreCollectionRemoveEventListener;
+import org.hibernate.event.spi.PreCollectionUpdateEvent;
+import org.hibernate.event.spi.PreCollectionUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+
+/**
+ * Keeps the consumer search index maintained by the ConsumerSearchIndexCurator in line with the
+ * consumers, facts, entitlements and pools written through the session.
+ * <p></p>
+ * The consumers affected by each transaction are collected as entities are flushed, and reindexed
+ * just before the transaction commits, so their terms become visible with the changes that caused
+ * them. Changes to pools reindex the consumers entitled to them.
+ * <p></p>
+ * Bulk updates and native queries bypass entity events entirely. Code which changes consumers,
+ * facts or entitlements that way is expected to report the affected consumers directly, as
+ * EntitlementCurator.batchDeleteByIds does. Changes to products, which may affect the SKUs of many
+ * pools at once, are picked up by the next rebuild of the owner's index instead.
+ */
+@Singleton
+public class ConsumerSearchIndexListener implements PostInsertEventListener, PostUpdateEventListener,
+    PostDeleteEventListener, PreCollectionUpdateEventListener, PreCollectionRemoveEventListener,
+    PreCollectionRecreateEventListener {
+
+    private static Logger log = LoggerFactory.getLogger(ConsumerSearchIndexListener.class);
+
+    private static final String CONSUMER_FACTS_ROLE = Consumer.class.getName() + ".facts";
+
+    private static final Set<String> CONSUMER_PROPERTIES = new HashSet<>(Arrays.asList("ownerId"));
+
+    private static final Set<String> ENTITLEMENT_PROPERTIES = new HashSet<>(Arrays.asList(
+        "consumer", "pool"));
+
+    private static final Set<String> POOL_PROPERTIES = new HashSet<>(Arrays.asList(
+        "product", "contractNumber", "sourceSubscription"));
+
+    /**
+     * The changes collected in a session during its current transaction
+     */
+    private static class PendingChanges {
+        private final Set<String> owners = new HashSet<>();
+        private final Set<String> consumers = new HashSet<>();
+        private final Set<String> pools = new HashSet<>();
+
+        public void consumer(Consumer consumer) {
+            if (consumer != null && consumer.getId() != null) {
+                this.consumers.add(consumer.getId());
+            }
+        }
+
+        public void pool(Pool pool) {
+            if (pool != null && pool.getId() != null) {
+                this.pools.add(pool.getId());
+            }
+        }
+    }
+
+    private final ConsumerSearchIndexCurator indexCurator;
+    private final Map<EventSource, PendingChanges> pending = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+
+    @Inject
+    public ConsumerSearchIndexListener(ConsumerSearchIndexCurator indexCurator) {
+        this.indexCurator = indexCurator;
+    }
+
+    /**
+     * Registers this listener for the events from which it maintains the consumer search index.
+     *
+     * @param registry
+     *  the registry of the session factory to listen to
+     */
+    public void register(EventListenerRegistry registry) {
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+        registry.appendListeners(EventType.PRE_COLLECTION_UPDATE, this);
+        registry.appendListeners(EventType.PRE_COLLECTION_REMOVE, this);
+        registry.appendListeners(EventType.PRE_COLLECTION_RECREATE, this);
+
+        this.enabled = true;
+    }
+
+    /**
+     * Checks whether or not this listener has been registered, and the consumer search index is
+     * being maintained. The index must not be used for searches otherwise.
+     *
+     * @return
+     *  true if the consumer search index is being maintained; false otherwise
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Reindexes the given consumers as part of the current transaction, for changes which were
+     * written without going through the session.
+     *
+     * @param session
+     *  the session in which the changes were written
+     *
+     * @param consumerIds
+     *  the IDs of the consumers whose facts or entitlements changed
+     */
+    public void consumersChanged(Session session, Collection<String> consumerIds) {
+        if (this.enabled && !consumerIds.isEmpty()) {
+            this.getPendingChanges((EventSource) session).consumers.addAll(consumerIds);
+        }
+    }
+
+    /**
+     * Flushes the session and applies the changes collected so far in the current transaction to
+     * the index, so that searches made later in the transaction see them.
+     *
+     * @param session
+     *  the session about to search the index
+     */
+    public void flush(Session session) {
+        if (!session.getTransaction().isActive()) {
+            return;
+        }
+
+        session.flush();
+
+        PendingChanges changes = this.pending.get(session);
+        if (changes != null) {
+            this.apply(session, changes);
+        }
+    }
+
+    private PendingChanges getPendingChanges(EventSource session) {
+        PendingChanges changes = this.pending.get(session);
+
+        if (changes == null) {
+            PendingChanges created = new PendingChanges();
+            changes = created;
+
+            this.pending.put(session, created);
+
+            session.getActionQueue().registerProcess(sess -> this.apply((Session) sess, created));
+            session.getActionQueue().registerProcess((success, sess) -> this.pending.remove(session));
+        }
+
+        return changes;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        Object entity = event.getEntity();
+
+        if (entity instanceof Consumer) {
+            this.getPendingChanges(event.getSession()).consumer((Consumer) entity);
+        }
+        else if (entity instanceof Entitlement) {
+            this.getPendingChanges(event.getSession()).consumer(((Entitlement) entity).getConsumer());
+        }
+        else if (entity instanceof SourceSubscription) {
+            this.getPendingChanges(event.getSession()).pool(((SourceSubscription) entity).getPool());
+        }
+        else if (entity instanceof Owner) {
+            String ownerId = ((Owner) entity).getId();
+
+            if (ownerId != null) {
+                this.getPendingChanges(event.getSession()).owners.add(ownerId);
+            }
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        Object entity = event.getEntity();
+
+        if (entity instanceof Consumer) {
+            if (this.isDirty(event, CONSUMER_PROPERTIES)) {
+                this.getPendingChanges(event.getSession()).consumer((Consumer) entity);
+            }
+        }
+        else if (entity instanceof Entitlement) {
+            if (this.isDirty(event, ENTITLEMENT_PROPERTIES)) {
+                PendingChanges changes = this.getPendingChanges(event.getSession());
+                changes.consumer(((Entitlement) entity).getConsumer());
+
+                Object consumer = this.getOldValue(event, "consumer");
+                changes.consumer(consumer instanceof Consumer ? (Consumer) consumer : null);
+            }
+        }
+        else if (entity instanceof Pool) {
+            if (this.isDirty(event, POOL_PROPERTIES)) {
+                this.getPendingChanges(event.getSession()).pool((Pool) entity);
+            }
+        }
+        else if (entity instanceof SourceSubscription) {
+            this.getPendingChanges(event.getSession()).pool(((SourceSubscription) entity).getPool());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Object entity = event.getEntity();
+
+        // Deleted consumers lose their terms along with them
+        if (entity instanceof Entitlement) {
+            this.getPendingChanges(event.getSession()).consumer(((Entitlement) entity).getConsumer());
+        }
+        else if (entity instanceof SourceSubscription) {
+            this.getPendingChanges(event.getSession()).pool(((SourceSubscription) entity).getPool());
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        // The index is updated within the transaction making the changes
+        return false;
+    }
+
+    @Override
+    public void onPreUpdateCollection(PreCollectionUpdateEvent event) {
+        this.collectionChanged(event);
+    }
+
+    @Override
+    public void onPreRemoveCollection(PreCollectionRemoveEvent event) {
+        this.collectionChanged(event);
+    }
+
+    @Override
+    public void onPreRecreateCollection(PreCollectionRecreateEvent event) {
+        this.collectionChanged(event);
+    }
+
+    private void collectionChanged(AbstractCollectionEvent event) {
+        Object owner = event.getAffectedOwnerOrNull();
+
+        if (owner instanceof Consumer && CONSUMER_FACTS_ROLE.equals(event.getCollection().getRole())) {
+            this.getPendingChanges(event.getSession()).consumer((Consumer) owner);
+        }
+    }
+
+    private boolean isDirty(PostUpdateEvent event, Set<String> properties) {
+        int[] dirty = event.getDirtyProperties();
+        if (event.getOldState() == null || dirty == null) {
+            return true;
+        }
+
+        String[] names = event.getPersister().getPropertyNames();
+        for (int index : dirty) {
+            if (properties.contains(names[index])) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private Object getOldValue(PostUpdateEvent event, String property) {
+        if (event.getOldState() == null) {
+            return null;
+        }
+
+        String[] names = event.getPersister().getPropertyNames();
+
+        for (int i = 0; i < names.length; ++i) {
+            if (names[i].equals(property)) {
+                return event.getOldState()[i];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Applies the changes collected in a session to the index, and clears them. Consumers are
+     * reindexed in a consistent order, so that concurrent transactions lock their terms without
+     * deadlocking.
+     */
+    private void apply(Session session, PendingChanges changes) {
+        for (String ownerId : changes.owners) {
+            this.indexCurator.addOwner(session, ownerId);
+        }
+
+        Set<String> consumerIds = new TreeSet<>(changes.consumers);
+        if (!changes.pools.isEmpty()) {
+            consumerIds.addAll(this.indexCurator.getPoolConsumerIds(session, changes.pools));
+        }
+
+        if (!consumerIds.isEmpty()) {
+            log.debug("Reindexing {} consumers", consumerIds.size());
+            this.indexCurator.reindexConsumers(session, consumerIds);
+        }
+
+        changes.owners.clear();
+        changes.consumers.clear();
+        changes.pools.clear();
+    }
+}
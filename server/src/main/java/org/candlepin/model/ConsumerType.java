@@ -14,6 +14,10 @@
  */
 package org.candlepin.model;
 
+import org.candlepin.cache.CandlepinCacheRegions;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Type;
 
@@ -35,6 +39,7 @@ import javax.xml.bind.annotation.XmlRootElement;
 @XmlAccessorType(XmlAccessType.PROPERTY)
 @Entity
 @Table(name = ConsumerType.DB_TABLE)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CandlepinCacheRegions.CONSUMER_TYPES)
 public class ConsumerType extends AbstractHibernateObject<ConsumerType> {
 
     /** Name of the table backing this object in the database */
@@ -17,8 +17,10 @@ package org.candlepin.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.candlepin.cache.CandlepinCacheRegions;
 import org.candlepin.model.dto.ContentData;
 import org.candlepin.service.model.ContentInfo;
+import org.candlepin.util.EntityHashBuilder;
 import org.candlepin.util.SetView;
 import org.candlepin.util.Util;
 import org.hibernate.annotations.BatchSize;
@@ -57,7 +59,7 @@ import java.util.Set;
 @XmlAccessorType(XmlAccessType.PROPERTY)
 @Entity
 @Immutable
-@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = CandlepinCacheRegions.CONTENT)
 @Table(name = Content.DB_TABLE)
 public class Content extends AbstractHibernateObject implements SharedEntity, Cloneable, ContentInfo {
 
@@ -124,7 +126,7 @@ public class Content extends AbstractHibernateObject implements SharedEntity, Cl
     @Column(name = "element")
     @Size(max = 255)
     @Immutable
-    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = CandlepinCacheRegions.CONTENT)
     private Set<String> modifiedProductIds;
 
     @Column(nullable = true)
@@ -135,6 +137,10 @@ public class Content extends AbstractHibernateObject implements SharedEntity, Cl
     @Column(name = "entity_version")
     private Integer entityVersion;
 
+    @XmlTransient
+    @Column(name = "entity_hash")
+    private Long entityHash;
+
     @XmlTransient
     @Column
     @Type(type = "org.hibernate.type.NumericBooleanType")
@@ -579,6 +585,34 @@ public class Content extends AbstractHibernateObject implements SharedEntity, Cl
         return builder.toHashCode();
     }
 
+    /**
+     * Calculates and returns a stable, 64-bit content hash for this entity. Unlike the entity
+     * version, the hash is calculated from a cryptographic digest of the entity's data, making it
+     * suitable for use as an indexed deduplication key. Entities with matching hashes should still
+     * be compared with the equals method before being treated as identical.
+     *
+     * @return
+     *  a 64-bit content hash for this entity
+     */
+    @XmlTransient
+    public long getEntityHash() {
+        // This must always be a subset of equals
+        return new EntityHashBuilder()
+            .append(this.id)
+            .append(this.type)
+            .append(this.label)
+            .append(this.name)
+            .append(this.vendor)
+            .append(this.contentUrl)
+            .append(this.requiredTags)
+            .append(this.releaseVer)
+            .append(this.gpgUrl)
+            .append(this.metadataExpire)
+            .append(this.arches)
+            .appendStrings(this.modifiedProductIds)
+            .toHash();
+    }
+
     @Override
     public String toString() {
         return String.format("Content [uuid: %s, id: %s, name: %s, label: %s]",
@@ -589,5 +623,6 @@ public class Content extends AbstractHibernateObject implements SharedEntity, Cl
     @PreUpdate
     public void updateEntityVersion() {
         this.entityVersion = this.getEntityVersion();
+        this.entityHash = this.getEntityHash();
     }
 }
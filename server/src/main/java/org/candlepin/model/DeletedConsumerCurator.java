@@ -14,12 +14,20 @@
  */
 package org.candlepin.model;
 
+import org.candlepin.util.Util;
+
+import com.google.common.collect.Iterables;
+
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 
 import javax.inject.Singleton;
 
@@ -76,4 +84,64 @@ public class DeletedConsumerCurator extends AbstractHibernateCurator<DeletedCons
 
         return this.cpQueryFactory.<DeletedConsumer>buildQuery(this.currentSession(), criteria);
     }
+
+    /**
+     * Records the deletion of the given consumers of an owner, replacing any existing records for
+     * the same consumer UUIDs. This is the batched equivalent of the record written for each
+     * consumer deleted through the ConsumerCurator, for consumers deleted in bulk.
+     *
+     * @param owner
+     *  the owner of the deleted consumers
+     *
+     * @param consumerUuids
+     *  the UUIDs of the deleted consumers
+     *
+     * @param principalName
+     *  the name of the principal which deleted the consumers, or null if not known
+     *
+     * @return
+     *  the number of deleted consumer records written
+     */
+    public int recordDeletedConsumers(Owner owner, Collection<String> consumerUuids, String principalName) {
+        if (consumerUuids == null || consumerUuids.isEmpty()) {
+            return 0;
+        }
+
+        String jpql = "DELETE FROM DeletedConsumer dc WHERE dc.consumerUuid IN (:consumer_uuids)";
+        for (List<String> block : this.partition(consumerUuids)) {
+            this.getEntityManager()
+                .createQuery(jpql)
+                .setParameter("consumer_uuids", block)
+                .executeUpdate();
+        }
+
+        final Timestamp now = new Timestamp(System.currentTimeMillis());
+        final int batchSize = this.getBatchBlockSize();
+
+        this.currentSession().doWork(connection -> {
+            String sql = "INSERT INTO " + DeletedConsumer.DB_TABLE + " (id, created, updated, " +
+                "consumer_uuid, owner_id, owner_key, owner_displayname, principal_name) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (List<String> block : Iterables.partition(consumerUuids, batchSize)) {
+                    for (String consumerUuid : block) {
+                        statement.setString(1, Util.generateDbUUID());
+                        statement.setTimestamp(2, now);
+                        statement.setTimestamp(3, now);
+                        statement.setString(4, consumerUuid);
+                        statement.setString(5, owner.getId());
+                        statement.setString(6, owner.getKey());
+                        statement.setString(7, owner.getDisplayName());
+                        statement.setString(8, principalName);
+                        statement.addBatch();
+                    }
+
+                    statement.executeBatch();
+                }
+            }
+        });
+
+        return consumerUuids.size();
+    }
 }
@@ -14,6 +14,8 @@
  */
 package org.candlepin.model;
 
+import org.candlepin.tracing.Span;
+import org.candlepin.tracing.Tracer;
 import org.candlepin.util.ElementTransformer;
 
 import com.google.inject.persist.Transactional;
@@ -253,8 +255,8 @@ public class DetachedCandlepinQuery<T> implements CandlepinQuery<T> {
     @Override
     @SuppressWarnings("unchecked")
     public List<T> list() {
-        Criteria executable = this.getExecutableCriteria();
-        List<T> list = (List<T>) executable.list();
+        List<T> list = Tracer.call(Span.Phase.DB, "query", "list",
+            () -> (List<T>) this.getExecutableCriteria().list());
 
         return list != null ? list : Collections.<T>emptyList();
     }
@@ -405,14 +407,33 @@ public class DetachedCandlepinQuery<T> implements CandlepinQuery<T> {
         return new RowResultIterator(cursor);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResultIterator<Object[]> iterateByRow(Projection projection) {
+        if (projection == null) {
+            throw new IllegalArgumentException("projection is null");
+        }
+
+        // Impl note:
+        // The projection only lives on the executable criteria; our initial state is restored the
+        // next time one is generated, so it does not leak into other calls.
+        Criteria executable = this.getExecutableCriteria()
+            .setProjection(projection);
+
+        ScrollableResults cursor = executable.scroll(ScrollMode.FORWARD_ONLY);
+        return new RowResultIterator(cursor);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     @SuppressWarnings("unchecked")
     public T uniqueResult() {
-        Criteria executable = this.getExecutableCriteria();
-        return (T) executable.uniqueResult();
+        return Tracer.call(Span.Phase.DB, "query", "uniqueResult",
+            () -> (T) this.getExecutableCriteria().uniqueResult());
     }
 
     /**
@@ -18,6 +18,7 @@ import org.candlepin.util.ElementTransformer;
 
 import org.hibernate.Session;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projection;
 
 import java.util.Collections;
 import java.util.List;
@@ -266,6 +267,17 @@ public class EmptyCandlepinQuery<T> implements CandlepinQuery<T> {
         return (ResultIterator<Object[]>) EMPTY_RESULT_ITERATOR;
     }
 
+    /**
+     * Always returns an iterator with no elements.
+     *
+     * @return
+     *  A ResultIterator containing no elements
+     */
+    @Override
+    public ResultIterator<Object[]> iterateByRow(Projection projection) {
+        return (ResultIterator<Object[]>) EMPTY_RESULT_ITERATOR;
+    }
+
     /**
      * Always returns null.
      *
@@ -69,6 +69,9 @@ public class EntitlementCurator extends AbstractHibernateCurator<Entitlement> {
     private ProductCurator productCurator;
     private ConsumerTypeCurator consumerTypeCurator;
 
+    @Inject private OwnerInfoCounterListener ownerInfoCounterListener;
+    @Inject private ConsumerSearchIndexListener consumerSearchIndexListener;
+
     /**
      * default ctor
      */
@@ -388,6 +391,29 @@ public class EntitlementCurator extends AbstractHibernateCurator<Entitlement> {
 
     }
 
+    /**
+     * Lists the entitlements of the consumers with the given IDs.
+     *
+     * @param consumerIds
+     *  the IDs of the consumers for which to list entitlements
+     *
+     * @return
+     *  a list of the entitlements of the given consumers
+     */
+    public List<Entitlement> listByConsumerIds(Collection<String> consumerIds) {
+        String jpql = "SELECT e FROM Entitlement e WHERE e.consumer.id IN (:consumer_ids)";
+        List<Entitlement> entitlements = new ArrayList<>();
+
+        for (List<String> block : this.partition(consumerIds)) {
+            entitlements.addAll(this.getEntityManager()
+                .createQuery(jpql, Entitlement.class)
+                .setParameter("consumer_ids", block)
+                .getResultList());
+        }
+
+        return entitlements;
+    }
+
     @SuppressWarnings("unchecked")
     public List<Entitlement> listByConsumerAndPoolId(Consumer consumer, String poolId) {
         Criteria query = currentSession().createCriteria(Entitlement.class)
@@ -798,11 +824,40 @@ public class EntitlementCurator extends AbstractHibernateCurator<Entitlement> {
      * @param entitlementIds The collection of ids of the entitlements to be deleted.
      */
     public void batchDeleteByIds(Collection<String> entitlementIds) {
+        // The SQL delete bypasses the session, so report the affected consumers and owners directly
+        if (this.ownerInfoCounterListener.isEnabled() || this.consumerSearchIndexListener.isEnabled()) {
+            this.reportBatchDelete(entitlementIds);
+        }
+
         Map<String, Object> criteria = new HashMap<>();
         criteria.put("id", entitlementIds);
         this.bulkSQLDelete(Entitlement.DB_TABLE, criteria);
     }
 
+    private void reportBatchDelete(Collection<String> entitlementIds) {
+        String jpql = "SELECT DISTINCT e.consumer.id, e.owner.id FROM Entitlement e WHERE e.id IN (:ids)";
+        Set<String> consumerIds = new HashSet<>();
+        Set<String> ownerIds = new HashSet<>();
+
+        for (List<String> block : this.partition(entitlementIds)) {
+            List<Object[]> rows = this.getEntityManager()
+                .createQuery(jpql, Object[].class)
+                .setParameter("ids", block)
+                .getResultList();
+
+            for (Object[] row : rows) {
+                consumerIds.add((String) row[0]);
+                ownerIds.add((String) row[1]);
+            }
+        }
+
+        for (String ownerId : ownerIds) {
+            this.ownerInfoCounterListener.markStale(this.currentSession(), ownerId);
+        }
+
+        this.consumerSearchIndexListener.consumersChanged(this.currentSession(), consumerIds);
+    }
+
     /**
      * Maintains the runtime consistency of the given collection of entitlements, by removing references to
      * themselves and their certificates. This method is supposed to be run before performing the deletion
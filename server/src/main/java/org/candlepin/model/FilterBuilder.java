@@ -162,7 +162,7 @@ public abstract class FilterBuilder {
             super(propertyName, escape(value), '!', ignoreCase);
         }
 
-        private static String escape(String raw) {
+        static String escape(String raw) {
             // If our escape char is already here, escape it
             log.debug("Searching for entries like: ", raw);
             String dbEscaped = raw.replace("!", "!!")
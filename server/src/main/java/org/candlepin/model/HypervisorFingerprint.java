@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.apache.commons.codec.binary.Hex;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+
+
+/**
+ * The HypervisorFingerprint is a digest of a single host entry of a hypervisor report. It consists
+ * of a fingerprint of the host itself (its name and facts) and a fingerprint of its guest list,
+ * allowing a check-in to cheaply determine whether a host has changed since the last report
+ * accepted from the same reporter.
+ */
+public class HypervisorFingerprint {
+
+    private static final String ALGORITHM = "SHA-256";
+
+    private final String hostFingerprint;
+    private final String guestFingerprint;
+    private final String consumerUuid;
+
+    /**
+     * Creates a new fingerprint with the given host and guest digests
+     *
+     * @param hostFingerprint
+     *  the digest of the host's name and facts
+     *
+     * @param guestFingerprint
+     *  the digest of the host's guest list
+     *
+     * @param consumerUuid
+     *  the UUID of the consumer representing the host, if known
+     */
+    public HypervisorFingerprint(String hostFingerprint, String guestFingerprint, String consumerUuid) {
+        this.hostFingerprint = hostFingerprint;
+        this.guestFingerprint = guestFingerprint;
+        this.consumerUuid = consumerUuid;
+    }
+
+    /**
+     * Computes the fingerprint of a host as reported in a hypervisor check-in. The digests are
+     * insensitive to the ordering of facts, guests and guest attributes.
+     *
+     * @param host
+     *  the incoming host consumer
+     *
+     * @return
+     *  the fingerprint of the reported host
+     */
+    public static HypervisorFingerprint fromReport(Consumer host) {
+        MessageDigest digest = getDigest();
+
+        update(digest, host.getName());
+        update(digest, host.getFacts());
+        String hostFingerprint = Hex.encodeHexString(digest.digest());
+
+        List<GuestId> guests = host.getGuestIds() != null ?
+            new ArrayList<>(host.getGuestIds()) :
+            Collections.emptyList();
+
+        guests.sort((lhs, rhs) -> String.valueOf(lhs.getGuestId()).compareTo(
+            String.valueOf(rhs.getGuestId())));
+
+        for (GuestId guest : guests) {
+            update(digest, guest.getGuestId());
+            update(digest, guest.getAttributes());
+        }
+
+        String guestFingerprint = Hex.encodeHexString(digest.digest());
+
+        return new HypervisorFingerprint(hostFingerprint, guestFingerprint, null);
+    }
+
+    private static MessageDigest getDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        // Length-prefix each value so adjacent values cannot be confused with one another
+        if (value == null) {
+            digest.update((byte) 0);
+        }
+        else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+            digest.update((byte) 1);
+            digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) ':');
+            digest.update(bytes);
+        }
+    }
+
+    private static void update(MessageDigest digest, Map<String, String> values) {
+        Map<String, String> sorted = values != null ? new TreeMap<>(values) : Collections.emptyMap();
+
+        update(digest, Integer.toString(sorted.size()));
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            update(digest, entry.getKey());
+            update(digest, entry.getValue());
+        }
+    }
+
+    public String getHostFingerprint() {
+        return this.hostFingerprint;
+    }
+
+    public String getGuestFingerprint() {
+        return this.guestFingerprint;
+    }
+
+    public String getConsumerUuid() {
+        return this.consumerUuid;
+    }
+
+    /**
+     * Checks whether or not this fingerprint has the same host and guest digests as the given
+     * fingerprint. The consumer UUID is not considered.
+     *
+     * @param other
+     *  the fingerprint to compare against
+     *
+     * @return
+     *  true if both the host and guest digests match; false otherwise
+     */
+    public boolean matches(HypervisorFingerprint other) {
+        return other != null &&
+            Objects.equals(this.hostFingerprint, other.hostFingerprint) &&
+            Objects.equals(this.guestFingerprint, other.guestFingerprint);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HypervisorFingerprint [host: %s, guests: %s, consumer: %s]",
+            this.hostFingerprint, this.guestFingerprint, this.consumerUuid);
+    }
+}
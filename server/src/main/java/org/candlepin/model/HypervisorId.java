@@ -17,6 +17,7 @@ package org.candlepin.model;
 import org.hibernate.annotations.GenericGenerator;
 
 import java.io.Serializable;
+import java.util.Date;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -84,6 +85,18 @@ public class HypervisorId extends AbstractHibernateObject {
     @NotNull
     private Owner owner;
 
+    @Column(name = "host_fingerprint", length = 64)
+    @XmlTransient
+    private String hostFingerprint;
+
+    @Column(name = "guest_fingerprint", length = 64)
+    @XmlTransient
+    private String guestFingerprint;
+
+    @Column(name = "fingerprint_date")
+    @XmlTransient
+    private Date fingerprintDate;
+
     public HypervisorId() {
     }
 
@@ -179,4 +192,49 @@ public class HypervisorId extends AbstractHibernateObject {
     public void setOwner(Owner owner) {
         this.owner = owner;
     }
+
+    /**
+     * @return the fingerprint of the host portion of the last accepted report for this hypervisor
+     */
+    @XmlTransient
+    public String getHostFingerprint() {
+        return hostFingerprint;
+    }
+
+    /**
+     * @param hostFingerprint the hostFingerprint to set
+     */
+    public void setHostFingerprint(String hostFingerprint) {
+        this.hostFingerprint = hostFingerprint;
+    }
+
+    /**
+     * @return the fingerprint of the guest list of the last accepted report for this hypervisor
+     */
+    @XmlTransient
+    public String getGuestFingerprint() {
+        return guestFingerprint;
+    }
+
+    /**
+     * @param guestFingerprint the guestFingerprint to set
+     */
+    public void setGuestFingerprint(String guestFingerprint) {
+        this.guestFingerprint = guestFingerprint;
+    }
+
+    /**
+     * @return the date the fingerprints were recorded
+     */
+    @XmlTransient
+    public Date getFingerprintDate() {
+        return fingerprintDate;
+    }
+
+    /**
+     * @param fingerprintDate the fingerprintDate to set
+     */
+    public void setFingerprintDate(Date fingerprintDate) {
+        this.fingerprintDate = fingerprintDate;
+    }
 }
@@ -32,13 +32,21 @@ import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.type.BooleanType;
+import org.hibernate.type.TimestampType;
+import org.hibernate.type.Type;
 
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 
 import javax.inject.Singleton;
 import javax.persistence.TypedQuery;
@@ -51,6 +59,11 @@ import javax.persistence.TypedQuery;
 @Singleton
 public class JobCurator extends AbstractHibernateCurator<JobStatus> {
 
+    private static final String PURGE_STATE_ID = "job_purge";
+
+    private static final List<JobState> TERMINAL_STATES = Arrays.asList(
+        JobState.CANCELED, JobState.FINISHED, JobState.FAILED);
+
     private Configuration config;
 
     @Inject
@@ -91,25 +104,6 @@ public class JobCurator extends AbstractHibernateCurator<JobStatus> {
                 .executeUpdate();
     }
 
-    @Transactional
-    public int cleanupAllOldJobs(Date deadline) {
-        return this.currentSession().createQuery(
-            "delete from JobStatus where updated <= :date")
-               .setTimestamp("date", deadline)
-               .executeUpdate();
-    }
-
-    @Transactional
-    public int cleanUpOldCompletedJobs(Date deadLineDt) {
-        return this.currentSession().createQuery(
-            "delete from JobStatus where updated <= :date and " +
-            "(state = :completed or state = :canceled)")
-               .setTimestamp("date", deadLineDt)
-               .setInteger("completed", JobState.FINISHED.ordinal())
-               .setInteger("canceled", JobState.CANCELED.ordinal())
-               .executeUpdate();
-    }
-
     @SuppressWarnings("unchecked")
     private CandlepinQuery<JobStatus> findByTarget(TargetType type, String tgtid) {
         DetachedCriteria criteria = this.createSecureDetachedCriteria()
@@ -240,43 +234,426 @@ public class JobCurator extends AbstractHibernateCurator<JobStatus> {
         return cancelOrphanedJobs(activeIds, 1000L * 60L * 2L); //2 minutes
     }
 
-    @Transactional
+    /**
+     * Cancels any asynchronous, non-terminal jobs last updated more than the given number of
+     * milliseconds ago which are not present in the collection of active job IDs.
+     * <p></p>
+     * Rather than passing the active IDs to the database as a (potentially enormous) NOT IN
+     * clause, stale candidates are fetched in ID-ordered chunks and the active IDs are subtracted
+     * in memory. Each chunk is then cancelled in its own short transaction.
+     *
+     * @param activeIds
+     *  A collection of IDs of the jobs which are still known to the scheduler
+     *
+     * @param millis
+     *  The minimum age, in milliseconds, of the jobs to cancel
+     *
+     * @return
+     *  the number of jobs cancelled
+     */
     public int cancelOrphanedJobs(Collection<String> activeIds, Long millis) {
+        Set<String> active = activeIds != null ? new HashSet<>(activeIds) : Collections.emptySet();
+        Date before = new Date(System.currentTimeMillis() - millis);
+        int blockSize = Math.min(this.getQueryParameterLimit() - 1, this.getInBlockSize());
         int count = 0;
 
-        Date before = new Date(new Date().getTime() - millis);
-        String hql = "update JobStatus j " +
-            "set j.state = :canceled " +
-            "where j.jobGroup = :async and " +
-            "j.state != :canceled and " +
-            "j.state != :finished and " +
-            "j.state != :failed and " +
-            "j.updated <= :date";
-
-        // Must trim out activeIds if the list is empty, otherwise the
-        // statement will fail.
-        if (!activeIds.isEmpty()) {
-            hql += " and j.id not in (:activeIds)";
+        String lastId = null;
+        List<String> block;
+
+        do {
+            block = this.getOrphanCandidateIds(before, lastId, blockSize);
+
+            if (!block.isEmpty()) {
+                lastId = block.get(block.size() - 1);
+
+                List<String> orphaned = new ArrayList<>(block.size());
+                for (String id : block) {
+                    if (!active.contains(id)) {
+                        orphaned.add(id);
+                    }
+                }
+
+                if (!orphaned.isEmpty()) {
+                    count += this.cancelJobs(orphaned);
+                }
+            }
         }
+        while (block.size() >= blockSize);
+
+        return count;
+    }
+
+    /**
+     * Fetches the IDs of asynchronous, non-terminal jobs last updated on or before the given date,
+     * ordered by ID and starting after the specified ID.
+     *
+     * @param before
+     *  the latest update date of the jobs to fetch
+     *
+     * @param lastId
+     *  the ID after which to start fetching, or null to start with the first job
+     *
+     * @param limit
+     *  the maximum number of IDs to fetch
+     *
+     * @return
+     *  a list of job IDs
+     */
+    @SuppressWarnings("unchecked")
+    protected List<String> getOrphanCandidateIds(Date before, String lastId, int limit) {
+        String hql = "SELECT j.id FROM JobStatus j " +
+            "WHERE j.jobGroup = :async " +
+            "AND j.state NOT IN (:terminal) " +
+            "AND j.updated <= :date " +
+            (lastId != null ? "AND j.id > :last_id " : "") +
+            "ORDER BY j.id ASC";
 
         Query query = this.currentSession().createQuery(hql)
-            .setTimestamp("date", before)
             .setParameter("async", PinsetterKernel.SINGLE_JOB_GROUP)
-            .setInteger("finished", JobState.FINISHED.ordinal())
-            .setInteger("failed", JobState.FAILED.ordinal())
-            .setInteger("canceled", JobState.CANCELED.ordinal());
+            .setParameterList("terminal", TERMINAL_STATES)
+            .setTimestamp("date", before)
+            .setMaxResults(limit);
+
+        if (lastId != null) {
+            query.setParameter("last_id", lastId);
+        }
+
+        return query.list();
+    }
+
+    /**
+     * Cancels the non-terminal jobs with the given IDs. The collection should not be larger than
+     * the database's query parameter limit.
+     *
+     * @param jobIds
+     *  the IDs of the jobs to cancel
+     *
+     * @return
+     *  the number of jobs cancelled
+     */
+    @Transactional
+    public int cancelJobs(Collection<String> jobIds) {
+        if (jobIds == null || jobIds.isEmpty()) {
+            return 0;
+        }
+
+        return this.currentSession().createQuery("UPDATE JobStatus j SET j.state = :canceled " +
+            "WHERE j.id IN (:job_ids) AND j.state NOT IN (:terminal)")
+            .setInteger("canceled", JobState.CANCELED.ordinal())
+            .setParameterList("job_ids", jobIds)
+            .setParameterList("terminal", TERMINAL_STATES)
+            .executeUpdate();
+    }
+
+    /**
+     * Fetches a chunk of jobs eligible for purging, walking the index on the updated column in
+     * ascending order. Each returned row is an array containing the job ID and its updated date.
+     * <p></p>
+     * Since purged rows no longer match, repeated calls will naturally progress through the
+     * table; the optional "from" date allows a caller to skip over rows which were already
+     * examined but not purged.
+     *
+     * @param deadline
+     *  the latest update date of the jobs to fetch
+     *
+     * @param from
+     *  the earliest update date of the jobs to fetch, or null to start with the oldest job
+     *
+     * @param terminalOnly
+     *  whether or not to limit the fetch to jobs which are finished or canceled
+     *
+     * @param limit
+     *  the maximum number of jobs to fetch
+     *
+     * @return
+     *  a list of ID/updated date pairs, ordered by the updated date
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> getPurgeableJobs(Date deadline, Date from, boolean terminalOnly, int limit) {
+        String hql = "SELECT j.id, j.updated FROM JobStatus j " +
+            "WHERE j.updated <= :deadline " +
+            (from != null ? "AND j.updated >= :from " : "") +
+            (terminalOnly ? "AND j.state IN (:states) " : "") +
+            "ORDER BY j.updated ASC";
+
+        Query query = this.currentSession().createQuery(hql)
+            .setTimestamp("deadline", deadline)
+            .setMaxResults(limit);
+
+        if (from != null) {
+            query.setTimestamp("from", from);
+        }
+
+        if (terminalOnly) {
+            query.setParameterList("states", Arrays.asList(JobState.FINISHED, JobState.CANCELED));
+        }
+
+        return query.list();
+    }
+
+    /**
+     * Deletes the jobs with the given IDs, along with any hypervisors they still claim. The
+     * collection should not be larger than the database's query parameter limit.
+     *
+     * @param jobIds
+     *  the IDs of the jobs to delete
+     *
+     * @return
+     *  the number of jobs deleted
+     */
+    @Transactional
+    public int deleteJobs(Collection<String> jobIds) {
+        if (jobIds == null || jobIds.isEmpty()) {
+            return 0;
+        }
+
+        this.currentSession()
+            .createNativeQuery("DELETE FROM cp_hypervisor_job_lock WHERE job_id IN (:job_ids)")
+            .setParameterList("job_ids", jobIds)
+            .executeUpdate();
+
+        return this.currentSession().createQuery("DELETE FROM JobStatus WHERE id IN (:job_ids)")
+            .setParameterList("job_ids", jobIds)
+            .executeUpdate();
+    }
+
+    /**
+     * Checks whether or not the job status purge has been paused. The pause state is stored in
+     * the database, such that it applies to every node in the cluster.
+     *
+     * @return
+     *  true if the purge is paused; false otherwise
+     */
+    public boolean isPurgePaused() {
+        return Boolean.TRUE.equals(this.getPurgeState("paused", BooleanType.INSTANCE));
+    }
+
+    /**
+     * Pauses or resumes the job status purge.
+     *
+     * @param paused
+     *  whether or not the purge should be paused
+     */
+    @Transactional
+    public void setPurgePaused(boolean paused) {
+        this.setPurgeState("paused", paused, BooleanType.INSTANCE);
+    }
+
+    /**
+     * Fetches the updated date from which the given purge pass should resume, or null if its
+     * previous run ran to completion.
+     *
+     * @param terminalOnly
+     *  whether to fetch the cursor of the completed job pass, or that of the all job pass
+     *
+     * @return
+     *  the purge cursor, or null
+     */
+    public Date getPurgeCursor(boolean terminalOnly) {
+        Date cursor = (Date) this.getPurgeState(terminalOnly ? "completed_job_cursor" : "all_job_cursor",
+            TimestampType.INSTANCE);
+
+        return cursor != null ? new Date(cursor.getTime()) : null;
+    }
 
-        if (!activeIds.isEmpty()) {
-            for (List<String> block : this.partition(activeIds)) {
-                count += query.setParameterList("activeIds", block)
-                    .executeUpdate();
+    /**
+     * Stores the updated date from which the given purge pass should resume.
+     *
+     * @param terminalOnly
+     *  whether to set the cursor of the completed job pass, or that of the all job pass
+     *
+     * @param cursor
+     *  the purge cursor, or null if the pass ran to completion
+     */
+    @Transactional
+    public void setPurgeCursor(boolean terminalOnly, Date cursor) {
+        this.setPurgeState(terminalOnly ? "completed_job_cursor" : "all_job_cursor", cursor,
+            TimestampType.INSTANCE);
+    }
+
+    private Object getPurgeState(String column, Type type) {
+        String sql = String.format("SELECT %s AS state_value FROM cp_job_purge_state WHERE id = :id", column);
+
+        List<?> result = this.currentSession()
+            .createNativeQuery(sql)
+            .addScalar("state_value", type)
+            .setParameter("id", PURGE_STATE_ID)
+            .list();
+
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    private void setPurgeState(String column, Object value, Type type) {
+        String sql = String.format("UPDATE cp_job_purge_state SET %s = :value WHERE id = :id", column);
+
+        int updated = this.currentSession()
+            .createNativeQuery(sql)
+            .setParameter("value", value, type)
+            .setParameter("id", PURGE_STATE_ID)
+            .executeUpdate();
+
+        // The state row is created along with the table, but may have been removed since
+        if (updated == 0) {
+            this.currentSession()
+                .createNativeQuery("INSERT INTO cp_job_purge_state (id, paused) VALUES (:id, :paused)")
+                .setParameter("id", PURGE_STATE_ID)
+                .setParameter("paused", false, BooleanType.INSTANCE)
+                .executeUpdate();
+
+            this.currentSession()
+                .createNativeQuery(sql)
+                .setParameter("value", value, type)
+                .setParameter("id", PURGE_STATE_ID)
+                .executeUpdate();
+        }
+    }
+
+    /**
+     * Records the hypervisors claimed by the given job. Claims are inserted in a deterministic,
+     * sorted order using batched statements, and are used to determine whether or not the job may
+     * run alongside the other jobs of its owner. The IDs of the guests reported by the job are
+     * claimed alongside the hypervisor IDs; an accidental match between a guest ID and a
+     * hypervisor ID only serializes the jobs involved.
+     *
+     * @param jobId
+     *  the ID of the job claiming the hypervisors
+     *
+     * @param hypervisorIds
+     *  the IDs of the hypervisors and guests to claim
+     *
+     * @return
+     *  the number of hypervisors claimed
+     */
+    @Transactional
+    public int lockHypervisors(String jobId, Collection<String> hypervisorIds) {
+        if (jobId == null || hypervisorIds == null || hypervisorIds.isEmpty()) {
+            return 0;
+        }
+
+        final List<String> sorted = new ArrayList<>(new TreeSet<>(hypervisorIds));
+        final int batchSize = this.getBatchBlockSize();
+
+        this.currentSession().doWork(connection -> {
+            String sql = "INSERT INTO cp_hypervisor_job_lock (job_id, hypervisor_id) VALUES (?, ?)";
+
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (List<String> block : Iterables.partition(sorted, batchSize)) {
+                    for (String hypervisorId : block) {
+                        statement.setString(1, jobId);
+                        statement.setString(2, hypervisorId);
+                        statement.addBatch();
+                    }
+
+                    statement.executeBatch();
+                }
+            }
+        });
+
+        return sorted.size();
+    }
+
+    /**
+     * Releases any hypervisors claimed by the given job.
+     *
+     * @param jobId
+     *  the ID of the job for which to release claimed hypervisors
+     *
+     * @return
+     *  the number of hypervisors released
+     */
+    @Transactional
+    public int releaseHypervisors(String jobId) {
+        return this.currentSession()
+            .createNativeQuery("DELETE FROM cp_hypervisor_job_lock WHERE job_id = :job_id")
+            .setParameter("job_id", jobId)
+            .executeUpdate();
+    }
+
+    /**
+     * Checks whether or not the given job is blocked by an older, unfinished job of the same class
+     * and target which has claimed any of the same hypervisors. Jobs are ordered by creation date,
+     * and then by ID, such that overlapping jobs are always run serially and in the same order.
+     *
+     * @param status
+     *  the status of the job to check
+     *
+     * @return
+     *  true if an older job has claimed any of the hypervisors claimed by the given job; false
+     *  otherwise
+     */
+    @SuppressWarnings("unchecked")
+    public boolean hasConflictingHypervisorLocks(JobStatus status) {
+        String hql = "SELECT j.id FROM JobStatus j " +
+            "WHERE j.targetId = :target " +
+            "AND j.jobClass = :job_class " +
+            "AND j.state NOT IN (:terminal) " +
+            "AND j.updated >= :cutoff " +
+            "AND j.id != :job_id " +
+            "AND (j.created < :created OR (j.created = :created AND j.id < :job_id))";
+
+        List<String> olderJobIds = this.currentSession().createQuery(hql)
+            .setParameter("target", status.getTargetId())
+            .setParameter("job_class", status.getJobClass())
+            .setParameterList("terminal", TERMINAL_STATES)
+            .setTimestamp("cutoff", this.getBlockingCutoff())
+            .setParameter("job_id", status.getId())
+            .setTimestamp("created", status.getCreated())
+            .list();
+
+        String sql = "SELECT COUNT(*) FROM cp_hypervisor_job_lock mine " +
+            "JOIN cp_hypervisor_job_lock other ON other.hypervisor_id = mine.hypervisor_id " +
+            "WHERE mine.job_id = :job_id AND other.job_id IN (:job_ids)";
+
+        for (List<String> block : this.partition(olderJobIds)) {
+            Number count = (Number) this.currentSession().createNativeQuery(sql)
+                .setParameter("job_id", status.getId())
+                .setParameterList("job_ids", block)
+                .uniqueResult();
+
+            if (count.longValue() > 0) {
+                return true;
             }
         }
-        else {
-            count = query.executeUpdate();
+
+        return false;
+    }
+
+    /**
+     * Fetches statistics on the unfinished jobs of the given class, grouped by target. Each
+     * returned row is an array containing the target ID, the number of queued jobs (waiting to run
+     * or waiting for a worker), the number of running jobs, and the creation date of the oldest
+     * queued job, or null if no jobs are queued for the target.
+     *
+     * @param jobClass
+     *  the class of the jobs for which to fetch statistics
+     *
+     * @return
+     *  a list of statistics rows, ordered by target ID
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> getQueueStatistics(Class<? extends KingpinJob> jobClass) {
+        if (jobClass == null) {
+            throw new IllegalArgumentException("jobClass can not be null");
         }
 
-        return count;
+        String hql = "SELECT j.targetId, " +
+            "SUM(CASE WHEN j.state IN (:queued) THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN j.state = :running THEN 1 ELSE 0 END), " +
+            "MIN(CASE WHEN j.state IN (:queued) THEN j.created ELSE NULL END) " +
+            "FROM JobStatus j " +
+            "WHERE j.jobClass = :job_class " +
+            "AND j.state NOT IN (:terminal) " +
+            "AND j.updated >= :cutoff " +
+            "GROUP BY j.targetId " +
+            "ORDER BY j.targetId";
+
+        return this.currentSession().createQuery(hql)
+            .setParameterList("queued", Arrays.asList(JobState.CREATED, JobState.PENDING, JobState.WAITING))
+            .setParameter("running", JobState.RUNNING)
+            .setParameter("job_class", jobClass.getCanonicalName())
+            .setParameterList("terminal", TERMINAL_STATES)
+            .setTimestamp("cutoff", this.getBlockingCutoff())
+            .list();
     }
 
     private Date getBlockingCutoff() {
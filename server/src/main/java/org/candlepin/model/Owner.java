@@ -14,6 +14,7 @@
  */
 package org.candlepin.model;
 
+import org.candlepin.cache.CandlepinCacheRegions;
 import org.candlepin.common.jackson.HateoasInclude;
 import org.candlepin.model.activationkeys.ActivationKey;
 import org.candlepin.resteasy.InfoProperty;
@@ -27,6 +28,8 @@ import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.GenericGenerator;
 
 import io.swagger.annotations.ApiModelProperty;
@@ -64,6 +67,7 @@ import javax.xml.bind.annotation.XmlTransient;
 @XmlAccessorType(XmlAccessType.PROPERTY)
 @Entity
 @Table(name = Owner.DB_TABLE)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CandlepinCacheRegions.OWNERS)
 @JsonFilter("OwnerFilter")
 public class Owner extends AbstractHibernateObject<Owner>
     implements Serializable, Linkable, Owned, Named, Eventful, OwnerInfo {
@@ -30,10 +30,14 @@ import org.slf4j.LoggerFactory;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.inject.Singleton;
+import javax.persistence.Query;
 
 /**
  * The OwnerContentCurator provides functionality for managing the mapping between owners and
@@ -327,6 +331,53 @@ public class OwnerContentCurator extends AbstractHibernateCurator<OwnerContent>
             .executeUpdate();
     }
 
+    /**
+     * Retrieves a criteria which can be used to fetch a list of content with the specified entity
+     * hashes belonging to owners other than the owner provided. Since the entity hash covers the
+     * content ID and all versioned data, this lookup resolves with a single probe of the indexed
+     * hash column. If no content were found matching the given hashes, this method returns an
+     * empty list.
+     * <p></p>
+     * Note that matching hashes do not guarantee the content is identical; callers must verify any
+     * content returned by this method using the equals method before using it in place of another.
+     *
+     * @param owner
+     *  The owner whose content should be excluded from the results. If an owner is not provided,
+     *  no additional filtering will be performed.
+     *
+     * @param entityHashes
+     *  A collection of content entity hashes to fetch
+     *
+     * @return
+     *  a criteria for fetching content by entity hash
+     */
+    public CandlepinQuery<Content> getContentByEntityHashes(Owner owner, Collection<Long> entityHashes) {
+        if (entityHashes == null || entityHashes.isEmpty()) {
+            return this.cpQueryFactory.<Content>buildQuery();
+        }
+
+        // See the notes in getContentByVersions as to why we're splitting this into two queries
+        Criteria uuidCriteria = this.createSecureCriteria("oc")
+            .createAlias("oc.content", "c")
+            .add(CPRestrictions.in("c.entityHash", entityHashes))
+            .setProjection(Projections.distinct(Projections.property("c.uuid")));
+
+        if (owner != null) {
+            uuidCriteria.add(Restrictions.not(Restrictions.eq("oc.owner", owner)));
+        }
+
+        List<String> uuids = uuidCriteria.list();
+
+        if (uuids != null && !uuids.isEmpty()) {
+            DetachedCriteria criteria = this.createSecureDetachedCriteria(Content.class, null)
+                .add(CPRestrictions.in("uuid", uuids));
+
+            return this.cpQueryFactory.<Content>buildQuery(this.currentSession(), criteria);
+        }
+
+        return this.cpQueryFactory.<Content>buildQuery();
+    }
+
     /**
      * Retrieves a criteria which can be used to fetch a list of content with the specified Red Hat
      * content ID and entity version belonging to owners other than the owner provided. If no
@@ -419,6 +470,103 @@ public class OwnerContentCurator extends AbstractHibernateCurator<OwnerContent>
         return this.cpQueryFactory.<Content>buildQuery();
     }
 
+    /**
+     * Fetches a block of UUIDs of orphaned content, ordered by UUID. Only content with a UUID
+     * greater than the given UUID will be returned, allowing callers to walk the orphaned
+     * content in bounded blocks without holding any locks between blocks.
+     *
+     * @param lastUuid
+     *  The last content UUID processed, or null to start from the beginning
+     *
+     * @param blockSize
+     *  The maximum number of UUIDs to fetch
+     *
+     * @return
+     *  a list containing the UUIDs of up to blockSize orphaned content entities
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getOrphanedContentUuids(String lastUuid, int blockSize) {
+        String sql = "SELECT c.uuid " +
+            "FROM " + Content.DB_TABLE + " c " +
+            "LEFT JOIN " + OwnerContent.DB_TABLE + " oc ON c.uuid = oc.content_uuid " +
+            "WHERE oc.owner_id IS NULL" + (lastUuid != null ? " AND c.uuid > :last_uuid " : " ") +
+            "ORDER BY c.uuid ASC";
+
+        Query query = this.getEntityManager()
+            .createNativeQuery(sql)
+            .setMaxResults(blockSize);
+
+        if (lastUuid != null) {
+            query.setParameter("last_uuid", lastUuid);
+        }
+
+        return query.getResultList();
+    }
+
+    /**
+     * Deletes the specified orphaned content along with their modified product IDs, product-content
+     * mappings and environment-content mappings using set-based SQL. Any content in the given
+     * collection which has been mapped to an owner since it was determined to be orphaned will be
+     * skipped.
+     * <p></p>
+     * <strong>Warning:</strong> This method operates directly on the database and does not update
+     * any content or product entities currently loaded in the session. Callers should avoid
+     * performing this operation in a session holding content entities.
+     *
+     * @param contentUuids
+     *  A collection of UUIDs of orphaned content to delete
+     *
+     * @return
+     *  a mapping of table names to the number of rows deleted from each table
+     */
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public Map<String, Integer> deleteOrphanedContent(Collection<String> contentUuids) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+
+        if (contentUuids == null || contentUuids.isEmpty()) {
+            return counts;
+        }
+
+        // Re-verify the content is still orphaned, as it may have been claimed by an owner since
+        // the UUIDs were fetched.
+        String sql = "SELECT oc.content_uuid FROM " + OwnerContent.DB_TABLE + " oc " +
+            "WHERE oc.content_uuid IN (:content_uuids)";
+
+        Set<String> orphaned = new HashSet<>(contentUuids);
+        for (List<String> block : this.partition(contentUuids)) {
+            List<String> claimed = this.currentSession().createNativeQuery(sql)
+                .setParameterList("content_uuids", block)
+                .list();
+
+            orphaned.removeAll(claimed);
+        }
+
+        if (orphaned.isEmpty()) {
+            return counts;
+        }
+
+        Map<String, Object> criteria = new HashMap<>();
+        criteria.put("content_uuid", orphaned);
+
+        String[] tables = new String[] {
+            "cp2_content_modified_products",
+            ProductContent.DB_TABLE,
+            EnvironmentContent.DB_TABLE
+        };
+
+        for (String table : tables) {
+            counts.put(table, this.bulkSQLDelete(table, criteria));
+        }
+
+        criteria.clear();
+        criteria.put("uuid", orphaned);
+
+        counts.put(Content.DB_TABLE, this.bulkSQLDelete(Content.DB_TABLE, criteria));
+
+        return counts;
+    }
+
     /**
      * Updates the content references currently pointing to the original content to instead point to
      * the updated content for the specified owners.
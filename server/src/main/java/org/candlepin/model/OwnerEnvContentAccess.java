@@ -64,14 +64,33 @@ public class OwnerEnvContentAccess extends AbstractHibernateObject {
     @Column(name = "content_json")
     private String contentJson;
 
+    /**
+     * Set when the owner's content or the environment's promotions have changed since the payload
+     * was generated. Stale payloads continue to be served until they are regenerated.
+     */
+    @NotNull
+    @Column(name = "stale")
+    private Boolean stale;
+
+    /**
+     * Incremented each time the payload is flagged stale. A regenerated payload only clears the
+     * stale flag if this has not changed since the payload was read for regeneration.
+     */
+    @NotNull
+    @Column(name = "stale_version")
+    private Integer staleVersion;
+
     public OwnerEnvContentAccess() {
-        // Intentionally left empty
+        this.stale = false;
+        this.staleVersion = 0;
     }
 
     public OwnerEnvContentAccess(Owner owner, Environment environment, String contentJson) {
         this.setOwner(owner);
         this.setEnvironment(environment);
         this.setContentJson(contentJson);
+        this.stale = false;
+        this.staleVersion = 0;
     }
 
     public Owner getOwner() {
@@ -118,4 +137,20 @@ public class OwnerEnvContentAccess extends AbstractHibernateObject {
     public void setContentJson(String contentJson) {
         this.contentJson = contentJson;
     }
+
+    public boolean isStale() {
+        return this.stale != null && this.stale;
+    }
+
+    public void setStale(boolean stale) {
+        this.stale = stale;
+    }
+
+    public int getStaleVersion() {
+        return this.staleVersion != null ? this.staleVersion : 0;
+    }
+
+    public void setStaleVersion(int staleVersion) {
+        this.staleVersion = staleVersion;
+    }
 }
@@ -19,10 +19,13 @@ import com.google.inject.persist.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Date;
 import java.util.List;
 
 import javax.inject.Singleton;
+import javax.persistence.LockModeType;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 
 
 
@@ -80,6 +83,38 @@ public class OwnerEnvContentAccessCurator extends AbstractHibernateCurator<Owner
         return (resultList == null || resultList.isEmpty()) ? null : resultList.get(0);
     }
 
+    /**
+     * Fetches the time at which the content access payload for the given owner and environment
+     * was last updated, without loading the payload itself.
+     *
+     * @param ownerId
+     *  The ID of the owner for which to fetch the update time
+     *
+     * @param environmentId
+     *  The ID of the environment for which to fetch the update time, or null for the owner-wide
+     *  payload
+     *
+     * @return
+     *  the last update time of the payload, or null if no payload exists
+     */
+    @Transactional
+    public Date getContentAccessUpdated(String ownerId, String environmentId) {
+        String hql = "SELECT oeca.updated FROM OwnerEnvContentAccess oeca " +
+            "WHERE oeca.owner.id = :ownerId AND " +
+            (environmentId != null ? "oeca.environment.id = :environmentId" : "oeca.environment IS NULL");
+
+        TypedQuery<Date> query = this.getEntityManager()
+            .createQuery(hql, Date.class)
+            .setParameter("ownerId", ownerId);
+
+        if (environmentId != null) {
+            query.setParameter("environmentId", environmentId);
+        }
+
+        List<Date> result = query.setMaxResults(1).getResultList();
+        return result.isEmpty() ? null : result.get(0);
+    }
+
     @Transactional
     public void removeAllForOwner(String ownerId) {
         this.currentSession().createQuery(
@@ -95,4 +130,101 @@ public class OwnerEnvContentAccessCurator extends AbstractHibernateCurator<Owner
                 .setParameter("environmentId", environmentId)
                 .executeUpdate();
     }
+
+    /**
+     * Flags all of the cached content access payloads for the given owner as stale. Stale
+     * payloads are still served to clients until they are regenerated.
+     *
+     * @param ownerId
+     *  The ID of the owner for which to flag payloads
+     *
+     * @return
+     *  the number of payloads flagged
+     */
+    @Transactional
+    public int markStaleForOwner(String ownerId) {
+        this.lockOwner(ownerId);
+
+        return this.currentSession().createQuery(
+            "UPDATE OwnerEnvContentAccess SET stale = true, staleVersion = staleVersion + 1 " +
+            "WHERE owner.id = :ownerId")
+            .setParameter("ownerId", ownerId)
+            .executeUpdate();
+    }
+
+    /**
+     * Flags the cached content access payload for the given environment as stale.
+     *
+     * @param environment
+     *  The environment for which to flag payloads
+     *
+     * @return
+     *  the number of payloads flagged
+     */
+    @Transactional
+    public int markStaleForEnvironment(Environment environment) {
+        this.lockOwner(environment.getOwnerId());
+
+        return this.currentSession().createQuery(
+            "UPDATE OwnerEnvContentAccess SET stale = true, staleVersion = staleVersion + 1 " +
+            "WHERE environment.id = :environmentId")
+            .setParameter("environmentId", environment.getId())
+            .executeUpdate();
+    }
+
+    /**
+     * Lists the stale content access payloads of the given owner. The stale flag is left set;
+     * it is only cleared once a regenerated payload is stored by updateContentJson, so a payload
+     * which fails to regenerate remains stale and is picked up again by a later call.
+     *
+     * @param ownerId
+     *  The ID of the owner for which to list payloads
+     *
+     * @return
+     *  a list of the stale payloads of the given owner
+     */
+    @SuppressWarnings("unchecked")
+    @Transactional
+    public List<OwnerEnvContentAccess> listStaleContentAccess(String ownerId) {
+        return this.currentSession().createQuery(
+            "SELECT oeca FROM OwnerEnvContentAccess oeca " +
+            "WHERE oeca.owner.id = :ownerId AND oeca.stale = true")
+            .setParameter("ownerId", ownerId)
+            .list();
+    }
+
+    /**
+     * Stores a regenerated payload and clears its stale flag, provided the payload has not been
+     * flagged stale again since the given stale version was read. If it has, the payload is left
+     * untouched and stale, as the regenerated payload may not reflect the latest changes. The
+     * update timestamp is bumped so clients checking for changes since their last fetch will pick
+     * up the new payload.
+     *
+     * @param id
+     *  The ID of the payload to update
+     *
+     * @param contentJson
+     *  The regenerated payload
+     *
+     * @param staleVersion
+     *  The stale version of the payload at the time it was read for regeneration
+     *
+     * @return
+     *  true if the payload was updated; false if it no longer exists or was flagged stale again
+     */
+    @Transactional
+    public boolean updateContentJson(String id, String contentJson, int staleVersion) {
+        return this.currentSession().createQuery(
+            "UPDATE OwnerEnvContentAccess SET contentJson = :json, updated = :date, stale = false " +
+            "WHERE id = :id AND staleVersion = :version")
+            .setParameter("json", contentJson)
+            .setParameter("date", new Date())
+            .setParameter("id", id)
+            .setParameter("version", staleVersion)
+            .executeUpdate() > 0;
+    }
+
+    private void lockOwner(String ownerId) {
+        this.getEntityManager().find(Owner.class, ownerId, LockModeType.PESSIMISTIC_WRITE);
+    }
 }
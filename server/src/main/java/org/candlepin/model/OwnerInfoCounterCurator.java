@@ -0,0 +1,576 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.candlepin.util.Util;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.persist.Transactional;
+
+import org.hibernate.LockOptions;
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.query.NativeQuery;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.inject.Singleton;
+import javax.persistence.EntityManager;
+
+
+
+/**
+ * The OwnerInfoCounterCurator stores the counters from which owner info is served without being
+ * recomputed. The counters of an owner are written in full whenever its info is reconciled against
+ * the database, and are adjusted in between by the OwnerInfoCounterListener as consumers and
+ * entitlements change.
+ * <p></p>
+ * Each owner with counters has a state row, which records when the counters were last reconciled
+ * and whether they are known to be stale. Adjustments are not written to the counters directly,
+ * but appended to a journal under a shared lock on the state row, so that concurrent transactions
+ * of the same owner do not serialize on its counters. Reconciliation and compaction, which fold
+ * the journal into the counters, lock the state row exclusively: an adjustment is either committed
+ * before they read the database, or recorded after they complete.
+ */
+@Singleton
+public class OwnerInfoCounterCurator {
+
+    /** Consumer counts by consumer type label */
+    public static final String CONSUMERS = "consumers";
+
+    /** Entitlement quantities by consumer type label */
+    public static final String ENTITLEMENTS = "entitlements";
+
+    /** Active pool counts by required consumer type label */
+    public static final String POOLS = "pools";
+
+    /** Active pool counts by enabled consumer type label */
+    public static final String ENABLED_POOLS = "enabled_pools";
+
+    /** Consumer counts by compliance status */
+    public static final String COMPLIANCE = "compliance";
+
+    /** Consumer counts of guests and physical systems */
+    public static final String GUESTS = "guests";
+
+    /** Entitlement quantities of physical pools in active pools, by product family */
+    public static final String FAMILY_PHYSICAL = "family_physical";
+
+    /** Entitlement quantities of virt-only pools in active pools, by product family */
+    public static final String FAMILY_GUEST = "family_guest";
+
+    /**
+     * A single counter of an owner.
+     */
+    public static class Counter {
+        private final String category;
+        private final String name;
+
+        public Counter(String category, String name) {
+            this.category = category;
+            this.name = name;
+        }
+
+        public String getCategory() {
+            return this.category;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Counter)) {
+                return false;
+            }
+
+            Counter other = (Counter) obj;
+            return this.category.equals(other.category) && this.name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.category, this.name);
+        }
+
+        @Override
+        public String toString() {
+            return this.category + ":" + this.name;
+        }
+    }
+
+    private static final String STATE_TABLE = "cp_owner_info_state";
+    private static final String COUNT_TABLE = "cp_owner_info_count";
+    private static final String DELTA_TABLE = "cp_owner_info_delta";
+
+    private final Provider<EntityManager> entityManager;
+
+    @Inject
+    public OwnerInfoCounterCurator(Provider<EntityManager> entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Builds owner info from the counters of the given owner, including the adjustments which have
+     * not been folded into them yet.
+     *
+     * @param ownerId
+     *  the ID of the owner for which to fetch info
+     *
+     * @param reconciledAfter
+     *  the earliest reconciliation time of counters which may be used
+     *
+     * @return
+     *  the info of the owner, or null if the owner has no counters, or its counters are stale or
+     *  were last reconciled before the given time
+     */
+    @SuppressWarnings("unchecked")
+    public OwnerInfo getByOwner(String ownerId, Date reconciledAfter) {
+        List<Object[]> state = this.currentSession()
+            .createNativeQuery("SELECT reconciled, stale FROM cp_owner_info_state WHERE owner_id = :owner_id")
+            .setParameter("owner_id", ownerId)
+            .list();
+
+        if (state.isEmpty() || Boolean.TRUE.equals(state.get(0)[1]) ||
+            ((Date) state.get(0)[0]).before(reconciledAfter)) {
+            return null;
+        }
+
+        // Counters and pending adjustments are read in a single statement, so that the adjustments
+        // being folded into the counters by a concurrent compaction are counted exactly once
+        String sql = "SELECT category, name, SUM(total), SUM(counted) FROM (" +
+            "SELECT category, name, total, 1 AS counted FROM cp_owner_info_count " +
+            "WHERE owner_id = :owner_id " +
+            "UNION ALL " +
+            "SELECT category, name, delta, 0 FROM cp_owner_info_delta WHERE owner_id = :delta_owner_id" +
+            ") counters GROUP BY category, name";
+
+        List<Object[]> rows = this.currentSession()
+            .createNativeQuery(sql)
+            .setParameter("owner_id", ownerId)
+            .setParameter("delta_owner_id", ownerId)
+            .list();
+
+        OwnerInfo info = new OwnerInfo();
+        for (Object[] row : rows) {
+            Counter counter = new Counter((String) row[0], (String) row[1]);
+            int total = ((Number) row[2]).intValue();
+
+            if (((Number) row[3]).intValue() == 0 && !isOptional(counter)) {
+                // An adjustment to a counter the owner did not have when it was last reconciled
+                return null;
+            }
+
+            this.addToInfo(info, counter, total);
+        }
+
+        // The exact computation leaves out the default family when nothing is consumed from it
+        OwnerInfo.ConsumptionTypeCounts none = info.getEntitlementsConsumedByFamily().get("none");
+        if (none != null && none.getPhysical() <= 0 && none.getGuest() <= 0) {
+            info.getEntitlementsConsumedByFamily().remove("none");
+        }
+
+        return info;
+    }
+
+    private void addToInfo(OwnerInfo info, Counter counter, int total) {
+        String name = counter.getName();
+
+        switch (counter.getCategory()) {
+            case CONSUMERS:
+                info.getConsumerCounts().put(name, total);
+                break;
+            case ENTITLEMENTS:
+                info.getEntitlementsConsumedByType().put(name, total);
+                break;
+            case POOLS:
+                info.getConsumerTypeCountByPool().put(name, total);
+                break;
+            case ENABLED_POOLS:
+                info.getEnabledConsumerTypeCountByPool().put(name, total);
+                break;
+            case COMPLIANCE:
+                if (total > 0) {
+                    info.setConsumerCountByComplianceStatus(name, total);
+                }
+                break;
+            case GUESTS:
+                info.getConsumerGuestCounts().put(name, total);
+                break;
+            case FAMILY_PHYSICAL:
+                info.addToEntitlementsConsumedByFamily(name, total, 0);
+                break;
+            case FAMILY_GUEST:
+                info.addToEntitlementsConsumedByFamily(name, 0, total);
+                break;
+            default:
+                // Counters of a newer version; nothing we can serve
+        }
+    }
+
+    /**
+     * Locks the state row of the given owner exclusively, creating it if the owner has no counters
+     * yet. Counter adjustments for the owner wait for the lock until the current transaction
+     * completes, and adjustments committed before the lock was granted are visible once it is.
+     *
+     * @param ownerId
+     *  the ID of the owner to lock
+     */
+    @Transactional
+    public void lock(String ownerId) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+
+        int count = this.createUpdate(this.currentSession(),
+            "UPDATE cp_owner_info_state SET updated = :now WHERE owner_id = :owner_id", STATE_TABLE)
+            .setParameter("now", now)
+            .setParameter("owner_id", ownerId)
+            .executeUpdate();
+
+        if (count == 0) {
+            this.createUpdate(this.currentSession(),
+                "INSERT INTO cp_owner_info_state (owner_id, reconciled, updated, stale) " +
+                "VALUES (:owner_id, :now, :now, :stale)", STATE_TABLE)
+                .setParameter("owner_id", ownerId)
+                .setParameter("now", now)
+                .setParameter("stale", true)
+                .executeUpdate();
+        }
+    }
+
+    /**
+     * Replaces the counters of the given owner with the values of the given info, discards its
+     * pending adjustments and marks the counters reconciled. The owner should have been locked in
+     * the same transaction before its info was computed.
+     *
+     * @param ownerId
+     *  the ID of the owner for which to store counters
+     *
+     * @param info
+     *  the exact info of the owner
+     */
+    @Transactional
+    public void store(String ownerId, OwnerInfo info) {
+        Session session = this.currentSession();
+
+        this.createUpdate(session, "DELETE FROM cp_owner_info_count WHERE owner_id = :owner_id", COUNT_TABLE)
+            .setParameter("owner_id", ownerId)
+            .executeUpdate();
+
+        this.createUpdate(session, "DELETE FROM cp_owner_info_delta WHERE owner_id = :owner_id", DELTA_TABLE)
+            .setParameter("owner_id", ownerId)
+            .executeUpdate();
+
+        List<Object[]> rows = new ArrayList<>();
+        addRows(rows, CONSUMERS, info.getConsumerCounts());
+        addRows(rows, ENTITLEMENTS, info.getEntitlementsConsumedByType());
+        addRows(rows, POOLS, info.getConsumerTypeCountByPool());
+        addRows(rows, ENABLED_POOLS, info.getEnabledConsumerTypeCountByPool());
+        addRows(rows, COMPLIANCE, info.getConsumerCountsByComplianceStatus());
+        addRows(rows, GUESTS, info.getConsumerGuestCounts());
+
+        for (Map.Entry<String, OwnerInfo.ConsumptionTypeCounts> entry :
+            info.getEntitlementsConsumedByFamily().entrySet()) {
+
+            rows.add(new Object[] { FAMILY_PHYSICAL, entry.getKey(), (long) entry.getValue().getPhysical() });
+            rows.add(new Object[] { FAMILY_GUEST, entry.getKey(), (long) entry.getValue().getGuest() });
+        }
+
+        session.doWork(connection -> {
+            String sql = "INSERT INTO cp_owner_info_count (owner_id, category, name, total) " +
+                "VALUES (?, ?, ?, ?)";
+
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (Object[] row : rows) {
+                    statement.setString(1, ownerId);
+                    statement.setString(2, (String) row[0]);
+                    statement.setString(3, (String) row[1]);
+                    statement.setLong(4, (Long) row[2]);
+                    statement.addBatch();
+                }
+
+                statement.executeBatch();
+            }
+        });
+
+        this.createUpdate(session, "UPDATE cp_owner_info_state SET reconciled = :now, stale = :stale " +
+            "WHERE owner_id = :owner_id", STATE_TABLE)
+            .setParameter("now", new Timestamp(System.currentTimeMillis()))
+            .setParameter("stale", false)
+            .setParameter("owner_id", ownerId)
+            .executeUpdate();
+    }
+
+    private static void addRows(List<Object[]> rows, String category, Map<String, Integer> values) {
+        for (Map.Entry<String, Integer> entry : values.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null) {
+                rows.add(new Object[] { category, entry.getKey(), entry.getValue().longValue() });
+            }
+        }
+    }
+
+    /**
+     * Records adjustments to the counters of the given owner, if it has any.
+     * <p></p>
+     * Adjustments are appended to the journal of the owner rather than written to its counters,
+     * holding only a shared lock on the state row of the owner until the transaction completes.
+     * Concurrent transactions adjusting the counters of the same owner therefore do not wait for
+     * each other; only reconciliation and compaction, which lock the state row exclusively, do.
+     *
+     * @param session
+     *  the session in which to adjust the counters
+     *
+     * @param ownerId
+     *  the ID of the owner for which to adjust counters
+     *
+     * @param deltas
+     *  the amounts by which to adjust each counter
+     *
+     * @param stale
+     *  whether or not the counters of the owner are known to be stale
+     */
+    @SuppressWarnings("unchecked")
+    void adjust(Session session, String ownerId, Map<Counter, Long> deltas, boolean stale) {
+        if (stale) {
+            // Only the transition takes the lock on the state row; counters already known to be
+            // stale are left alone
+            this.createUpdate(session, "UPDATE cp_owner_info_state SET updated = :now, stale = :stale " +
+                "WHERE owner_id = :owner_id AND stale = :fresh", STATE_TABLE)
+                .setParameter("now", new Timestamp(System.currentTimeMillis()))
+                .setParameter("stale", true)
+                .setParameter("owner_id", ownerId)
+                .setParameter("fresh", false)
+                .executeUpdate();
+
+            return;
+        }
+
+        List<Map.Entry<Counter, Long>> changes = new ArrayList<>();
+        for (Map.Entry<Counter, Long> delta : deltas.entrySet()) {
+            if (delta.getValue() != 0) {
+                changes.add(delta);
+            }
+        }
+
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        Dialect dialect = ((SessionFactoryImplementor) session.getSessionFactory()).getJdbcServices()
+            .getDialect();
+
+        String lockSql = "SELECT stale FROM cp_owner_info_state WHERE owner_id = :owner_id" +
+            dialect.getReadLockString(LockOptions.WAIT_FOREVER);
+
+        List<Boolean> state = session.createNativeQuery(lockSql)
+            .setParameter("owner_id", ownerId)
+            .list();
+
+        if (state.isEmpty() || Boolean.TRUE.equals(state.get(0))) {
+            // No counters to adjust, or they will be recomputed anyway
+            return;
+        }
+
+        session.doWork(connection -> {
+            String sql = "INSERT INTO cp_owner_info_delta (id, owner_id, category, name, delta) " +
+                "VALUES (?, ?, ?, ?, ?)";
+
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (Map.Entry<Counter, Long> change : changes) {
+                    statement.setString(1, Util.generateDbUUID());
+                    statement.setString(2, ownerId);
+                    statement.setString(3, change.getKey().getCategory());
+                    statement.setString(4, change.getKey().getName());
+                    statement.setLong(5, change.getValue());
+                    statement.addBatch();
+                }
+
+                statement.executeBatch();
+            }
+        });
+    }
+
+    /**
+     * Folds the pending adjustments of the given owner into its counters. Adjustments to counters
+     * which do not exist yet, such as those of a product family the owner did not have when it was
+     * last reconciled, cannot be folded in; the counters of the owner are marked stale instead.
+     *
+     * @param ownerId
+     *  the ID of the owner whose adjustments should be folded into its counters
+     *
+     * @return
+     *  the number of counters adjusted
+     */
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public int compact(String ownerId) {
+        Session session = this.currentSession();
+
+        // Adjusting transactions hold a shared lock on the state row until they complete, so once the
+        // exclusive lock is granted, no adjustments for the owner are in flight
+        int count = this.createUpdate(session,
+            "UPDATE cp_owner_info_state SET updated = :now WHERE owner_id = :owner_id", STATE_TABLE)
+            .setParameter("now", new Timestamp(System.currentTimeMillis()))
+            .setParameter("owner_id", ownerId)
+            .executeUpdate();
+
+        if (count == 0) {
+            return 0;
+        }
+
+        String sql = "SELECT category, name, SUM(delta) FROM cp_owner_info_delta " +
+            "WHERE owner_id = :owner_id GROUP BY category, name";
+
+        List<Object[]> rows = session.createNativeQuery(sql)
+            .setParameter("owner_id", ownerId)
+            .list();
+
+        List<Object[]> changes = new ArrayList<>();
+        for (Object[] row : rows) {
+            if (((Number) row[2]).longValue() != 0) {
+                changes.add(row);
+            }
+        }
+
+        List<Object[]> missing = new ArrayList<>();
+
+        session.doWork(connection -> {
+            String update = "UPDATE cp_owner_info_count SET total = total + ? " +
+                "WHERE owner_id = ? AND category = ? AND name = ?";
+
+            try (PreparedStatement statement = connection.prepareStatement(update)) {
+                for (Object[] change : changes) {
+                    statement.setLong(1, ((Number) change[2]).longValue());
+                    statement.setString(2, ownerId);
+                    statement.setString(3, (String) change[0]);
+                    statement.setString(4, (String) change[1]);
+                    statement.addBatch();
+                }
+
+                // Drivers which cannot report per-statement counts report SUCCESS_NO_INFO instead
+                int[] updated = statement.executeBatch();
+                for (int i = 0; i < updated.length; ++i) {
+                    if (updated[i] == 0) {
+                        missing.add(changes.get(i));
+                    }
+                }
+            }
+        });
+
+        boolean optional = missing.stream()
+            .allMatch(change -> isOptional(new Counter((String) change[0], (String) change[1])));
+
+        if (optional) {
+            session.doWork(connection -> {
+                String insert = "INSERT INTO cp_owner_info_count (owner_id, category, name, total) " +
+                    "VALUES (?, ?, ?, ?)";
+
+                try (PreparedStatement statement = connection.prepareStatement(insert)) {
+                    for (Object[] change : missing) {
+                        statement.setString(1, ownerId);
+                        statement.setString(2, (String) change[0]);
+                        statement.setString(3, (String) change[1]);
+                        statement.setLong(4, ((Number) change[2]).longValue());
+                        statement.addBatch();
+                    }
+
+                    statement.executeBatch();
+                }
+            });
+        }
+        else {
+            this.createUpdate(session, "UPDATE cp_owner_info_state SET stale = :stale " +
+                "WHERE owner_id = :owner_id", STATE_TABLE)
+                .setParameter("stale", true)
+                .setParameter("owner_id", ownerId)
+                .executeUpdate();
+        }
+
+        this.createUpdate(session, "DELETE FROM cp_owner_info_delta WHERE owner_id = :owner_id", DELTA_TABLE)
+            .setParameter("owner_id", ownerId)
+            .executeUpdate();
+
+        return changes.size();
+    }
+
+    /**
+     * Checks whether the given counter is one which is left out of owner info while it is zero,
+     * rather than one whose absence means the counters no longer cover the owner's info.
+     */
+    private static boolean isOptional(Counter counter) {
+        switch (counter.getCategory()) {
+            case COMPLIANCE:
+                return true;
+            case FAMILY_PHYSICAL:
+            case FAMILY_GUEST:
+                return "none".equals(counter.getName());
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Lists the owners whose counters are stale or were last reconciled before the given time.
+     *
+     * @param reconciledBefore
+     *  the reconciliation time before which counters should be reconciled again
+     *
+     * @return
+     *  the IDs of the owners to reconcile, least recently reconciled first
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getOwnersToReconcile(Date reconciledBefore) {
+        return this.currentSession()
+            .createNativeQuery("SELECT owner_id FROM cp_owner_info_state " +
+                "WHERE stale = :stale OR reconciled < :cutoff ORDER BY reconciled")
+            .setParameter("stale", true)
+            .setParameter("cutoff", new Timestamp(reconciledBefore.getTime()))
+            .list();
+    }
+
+    /**
+     * Lists the owners with adjustments which have not been folded into their counters yet.
+     *
+     * @return
+     *  the IDs of the owners with pending adjustments
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getOwnersToCompact() {
+        return this.currentSession()
+            .createNativeQuery("SELECT DISTINCT owner_id FROM cp_owner_info_delta")
+            .list();
+    }
+
+    /**
+     * Creates a native statement which modifies the given table. Declaring the table keeps
+     * Hibernate from treating the statement as one which could affect any entity, and invalidating
+     * the whole second-level cache on execution.
+     */
+    private NativeQuery createUpdate(Session session, String sql, String table) {
+        return session.createNativeQuery(sql).addSynchronizedQuerySpace(table);
+    }
+
+    protected Session currentSession() {
+        return (Session) this.entityManager.get().getDelegate();
+    }
+}
@@ -0,0 +1,582 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.candlepin.model.OwnerInfoCounterCurator.Counter;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.Status;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.event.spi.PreCollectionRecreateEvent;
+import org.hibernate.event.spi.PreCollectionRecreateEventListener;
+import org.hibernate.event.spi.PreCollectionRemoveEvent;
+import org.hibernate.event.spi.PreCollectionRemoveEventListener;
+import org.hibernate.event.spi.PreCollectionUpdateEvent;
+import org.hibernate.event.spi.PreCollectionUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+
+/**
+ * Keeps the owner info counters maintained by the OwnerInfoCounterCurator in line with the
+ * consumers and entitlements written through the session.
+ * <p></p>
+ * Changes are collected per session as entities are flushed, and recorded as adjustments to the
+ * counters just before the transaction commits, so they become visible with the changes that
+ * caused them and are discarded with them on rollback. Changes which cannot be expressed as
+ * counter adjustments, such as those to pools, mark the counters of the owner stale instead,
+ * leaving them to be recomputed on the next request or by the OwnerInfoReconcileJob.
+ * <p></p>
+ * Bulk updates and native queries bypass entity events entirely. Code which changes consumers or
+ * entitlements that way is expected to mark the affected owners stale.
+ */
+@Singleton
+public class OwnerInfoCounterListener implements PostInsertEventListener, PostUpdateEventListener,
+    PostDeleteEventListener, PreCollectionUpdateEventListener, PreCollectionRemoveEventListener,
+    PreCollectionRecreateEventListener {
+
+    private static Logger log = LoggerFactory.getLogger(OwnerInfoCounterListener.class);
+
+    private static final String CONSUMER_FACTS_ROLE = Consumer.class.getName() + ".facts";
+    private static final String POOL_ATTRIBUTES_ROLE = Pool.class.getName() + ".attributes";
+
+    private static final Set<String> CONSUMER_PROPERTIES = new HashSet<>(Arrays.asList(
+        "ownerId", "typeId", "entitlementStatus"));
+
+    private static final Set<String> ENTITLEMENT_PROPERTIES = new HashSet<>(Arrays.asList(
+        "owner", "consumer", "pool"));
+
+    private static final Set<String> POOL_PROPERTIES = new HashSet<>(Arrays.asList(
+        "owner", "product", "startDate", "endDate"));
+
+    /**
+     * The changes collected in a session during its current transaction
+     */
+    private static class PendingChanges {
+        // Consumer and entitlement counters are keyed by consumer type ID until applied
+        private final Map<String, Map<Counter, Long>> deltas = new HashMap<>();
+        private final List<EntitlementChange> entitlements = new ArrayList<>();
+        private final Set<String> stale = new HashSet<>();
+
+        public void add(String ownerId, String category, String name, long delta) {
+            if (ownerId == null || name == null) {
+                return;
+            }
+
+            this.deltas.computeIfAbsent(ownerId, key -> new HashMap<>())
+                .merge(new Counter(category, name), delta, Long::sum);
+        }
+
+        public void stale(String ownerId) {
+            if (ownerId != null) {
+                this.stale.add(ownerId);
+            }
+        }
+    }
+
+    /**
+     * A change in the quantity consumed by an entitlement
+     */
+    private static class EntitlementChange {
+        private String ownerId;
+        private String consumerId;
+        private String typeId;
+        private String poolId;
+        private Pool pool;
+        private long quantity;
+    }
+
+    private final OwnerInfoCounterCurator counterCurator;
+    private final Map<EventSource, PendingChanges> pending = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+
+    @Inject
+    public OwnerInfoCounterListener(OwnerInfoCounterCurator counterCurator) {
+        this.counterCurator = counterCurator;
+    }
+
+    /**
+     * Registers this listener for the events from which it maintains the owner info counters.
+     *
+     * @param registry
+     *  the registry of the session factory to listen to
+     */
+    public void register(EventListenerRegistry registry) {
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+        registry.appendListeners(EventType.PRE_COLLECTION_UPDATE, this);
+        registry.appendListeners(EventType.PRE_COLLECTION_REMOVE, this);
+        registry.appendListeners(EventType.PRE_COLLECTION_RECREATE, this);
+
+        this.enabled = true;
+    }
+
+    /**
+     * Checks whether or not this listener has been registered, and owner info counters are being
+     * maintained.
+     *
+     * @return
+     *  true if the owner info counters are being maintained; false otherwise
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Marks the counters of the given owner stale as part of the current transaction, for changes
+     * which were written without going through the session.
+     *
+     * @param session
+     *  the session in which the changes were written
+     *
+     * @param ownerId
+     *  the ID of the owner whose counters are affected
+     */
+    public void markStale(Session session, String ownerId) {
+        if (this.enabled) {
+            this.getPendingChanges((EventSource) session).stale(ownerId);
+        }
+    }
+
+    /**
+     * Discards the changes collected for the given owner so far in the current transaction, as
+     * they are already part of the info with which its counters were just reconciled. The session
+     * must have been flushed before the info was computed.
+     *
+     * @param session
+     *  the session in which the counters were reconciled
+     *
+     * @param ownerId
+     *  the ID of the reconciled owner
+     */
+    public void reconciled(Session session, String ownerId) {
+        PendingChanges changes = this.pending.get(session);
+
+        if (changes != null) {
+            this.resolveEntitlementChanges(session, changes);
+
+            changes.deltas.remove(ownerId);
+            changes.stale.remove(ownerId);
+        }
+    }
+
+    private PendingChanges getPendingChanges(EventSource session) {
+        PendingChanges changes = this.pending.get(session);
+
+        if (changes == null) {
+            PendingChanges created = new PendingChanges();
+            changes = created;
+
+            this.pending.put(session, created);
+
+            session.getActionQueue().registerProcess(sess -> this.apply((Session) sess, created));
+            session.getActionQueue().registerProcess((success, sess) -> this.pending.remove(session));
+        }
+
+        return changes;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        Object entity = event.getEntity();
+
+        if (entity instanceof Consumer) {
+            this.consumerChanged(this.getPendingChanges(event.getSession()), (Consumer) entity, 1);
+        }
+        else if (entity instanceof Entitlement) {
+            Entitlement entitlement = (Entitlement) entity;
+            this.entitlementChanged(this.getPendingChanges(event.getSession()), entitlement,
+                entitlement.getQuantity());
+        }
+        else if (entity instanceof Pool) {
+            this.getPendingChanges(event.getSession()).stale(this.getOwnerId((Pool) entity));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        Object entity = event.getEntity();
+
+        if (entity instanceof Consumer) {
+            this.consumerUpdated(event, (Consumer) entity);
+        }
+        else if (entity instanceof Entitlement) {
+            this.entitlementUpdated(event, (Entitlement) entity);
+        }
+        else if (entity instanceof Pool) {
+            Pool pool = (Pool) entity;
+
+            if (event.getOldState() == null || this.isDirty(event, POOL_PROPERTIES)) {
+                PendingChanges changes = this.getPendingChanges(event.getSession());
+                changes.stale(this.getOwnerId(pool));
+
+                if (event.getOldState() != null) {
+                    Object owner = this.getOldValue(event, "owner");
+                    changes.stale(owner instanceof Owner ? ((Owner) owner).getId() : null);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Object entity = event.getEntity();
+
+        if (entity instanceof Consumer) {
+            this.consumerChanged(this.getPendingChanges(event.getSession()), (Consumer) entity, -1);
+        }
+        else if (entity instanceof Entitlement) {
+            Entitlement entitlement = (Entitlement) entity;
+            Integer quantity = entitlement.getQuantity();
+
+            this.entitlementChanged(this.getPendingChanges(event.getSession()), entitlement,
+                quantity != null ? -quantity : null);
+        }
+        else if (entity instanceof Pool) {
+            this.getPendingChanges(event.getSession()).stale(this.getOwnerId((Pool) entity));
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        // Counters are adjusted within the transaction making the changes
+        return false;
+    }
+
+    @Override
+    public void onPreUpdateCollection(PreCollectionUpdateEvent event) {
+        this.collectionChanged(event);
+    }
+
+    @Override
+    public void onPreRemoveCollection(PreCollectionRemoveEvent event) {
+        this.collectionChanged(event);
+    }
+
+    @Override
+    public void onPreRecreateCollection(PreCollectionRecreateEvent event) {
+        // A recreated fact collection follows the removal of the collection it replaces, or the
+        // insertion of its consumer; either way the consumer has been accounted for already.
+        if (event.getAffectedOwnerOrNull() instanceof Pool) {
+            this.collectionChanged(event);
+        }
+    }
+
+    private void guestChanged(PendingChanges changes, Consumer consumer, boolean guest) {
+        String ownerId = consumer.getOwnerId();
+
+        changes.add(ownerId, OwnerInfoCounterCurator.GUESTS, OwnerInfo.GUEST, guest ? 1 : -1);
+        changes.add(ownerId, OwnerInfoCounterCurator.GUESTS, OwnerInfo.PHYSICAL, guest ? -1 : 1);
+    }
+
+    private void consumerChanged(PendingChanges changes, Consumer consumer, int delta) {
+        String ownerId = consumer.getOwnerId();
+
+        changes.add(ownerId, OwnerInfoCounterCurator.CONSUMERS, consumer.getTypeId(), delta);
+        changes.add(ownerId, OwnerInfoCounterCurator.COMPLIANCE, consumer.getEntitlementStatus(), delta);
+
+        if (Hibernate.isInitialized(consumer.getFacts())) {
+            String category = consumer.isGuest() ? OwnerInfo.GUEST : OwnerInfo.PHYSICAL;
+            changes.add(ownerId, OwnerInfoCounterCurator.GUESTS, category, delta);
+        }
+        else {
+            changes.stale(ownerId);
+        }
+    }
+
+    private void consumerUpdated(PostUpdateEvent event, Consumer consumer) {
+        if (event.getOldState() == null) {
+            this.getPendingChanges(event.getSession()).stale(consumer.getOwnerId());
+            return;
+        }
+
+        if (!this.isDirty(event, CONSUMER_PROPERTIES)) {
+            return;
+        }
+
+        PendingChanges changes = this.getPendingChanges(event.getSession());
+        String oldOwnerId = (String) this.getOldValue(event, "ownerId");
+        String ownerId = consumer.getOwnerId();
+
+        changes.add(oldOwnerId, OwnerInfoCounterCurator.CONSUMERS, (String) this.getOldValue(event, "typeId"),
+            -1);
+        changes.add(ownerId, OwnerInfoCounterCurator.CONSUMERS, consumer.getTypeId(), 1);
+
+        changes.add(oldOwnerId, OwnerInfoCounterCurator.COMPLIANCE,
+            (String) this.getOldValue(event, "entitlementStatus"), -1);
+        changes.add(ownerId, OwnerInfoCounterCurator.COMPLIANCE, consumer.getEntitlementStatus(), 1);
+
+        if (!Objects.equals(oldOwnerId, ownerId)) {
+            // Moving a consumer between owners moves its guest status and entitlements along with it
+            changes.stale(oldOwnerId);
+            changes.stale(ownerId);
+        }
+    }
+
+    private void entitlementChanged(PendingChanges changes, Entitlement entitlement, Integer quantity) {
+        EntitlementChange change = new EntitlementChange();
+        change.ownerId = entitlement.getOwner() != null ? entitlement.getOwner().getId() : null;
+        change.quantity = quantity != null ? quantity : 0;
+
+        Consumer consumer = entitlement.getConsumer();
+        if (consumer != null) {
+            change.consumerId = consumer.getId();
+
+            if (Hibernate.isInitialized(consumer)) {
+                change.typeId = consumer.getTypeId();
+            }
+        }
+
+        Pool pool = entitlement.getPool();
+        if (pool != null) {
+            change.poolId = pool.getId();
+
+            if (Hibernate.isInitialized(pool)) {
+                change.pool = pool;
+            }
+        }
+
+        if (change.quantity != 0) {
+            changes.entitlements.add(change);
+        }
+    }
+
+    private void entitlementUpdated(PostUpdateEvent event, Entitlement entitlement) {
+        Object[] oldState = event.getOldState();
+
+        if (oldState == null || this.isDirty(event, ENTITLEMENT_PROPERTIES)) {
+            PendingChanges changes = this.getPendingChanges(event.getSession());
+            changes.stale(entitlement.getOwner() != null ? entitlement.getOwner().getId() : null);
+
+            if (oldState != null) {
+                Object owner = this.getOldValue(event, "owner");
+                changes.stale(owner instanceof Owner ? ((Owner) owner).getId() : null);
+            }
+
+            return;
+        }
+
+        Integer oldQuantity = (Integer) this.getOldValue(event, "quantity");
+        Integer quantity = entitlement.getQuantity();
+
+        int delta = (quantity != null ? quantity : 0) - (oldQuantity != null ? oldQuantity : 0);
+        if (delta != 0) {
+            this.entitlementChanged(this.getPendingChanges(event.getSession()), entitlement, delta);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void collectionChanged(AbstractCollectionEvent event) {
+        PersistentCollection collection = event.getCollection();
+        Object owner = event.getAffectedOwnerOrNull();
+
+        if (owner instanceof Pool && POOL_ATTRIBUTES_ROLE.equals(collection.getRole())) {
+            this.getPendingChanges(event.getSession()).stale(this.getOwnerId((Pool) owner));
+        }
+        else if (owner instanceof Consumer && CONSUMER_FACTS_ROLE.equals(collection.getRole())) {
+            Consumer consumer = (Consumer) owner;
+
+            // Facts removed along with their consumer are accounted for by the deletion
+            EntityEntry entry = event.getSession().getPersistenceContext().getEntry(consumer);
+            if (entry == null || entry.getStatus() == Status.DELETED || entry.getStatus() == Status.GONE) {
+                return;
+            }
+
+            PendingChanges changes = this.getPendingChanges(event.getSession());
+            Object snapshot = collection.getStoredSnapshot();
+
+            if (!(snapshot instanceof Map) || !Hibernate.isInitialized(consumer.getFacts())) {
+                changes.stale(consumer.getOwnerId());
+                return;
+            }
+
+            boolean wasGuest = "true".equalsIgnoreCase(((Map<String, String>) snapshot).get("virt.is_guest"));
+            boolean guest = consumer.isGuest();
+
+            if (wasGuest != guest) {
+                this.guestChanged(changes, consumer, guest);
+            }
+        }
+    }
+
+    private boolean isDirty(PostUpdateEvent event, Set<String> properties) {
+        int[] dirty = event.getDirtyProperties();
+        if (dirty == null) {
+            return true;
+        }
+
+        String[] names = event.getPersister().getPropertyNames();
+        for (int index : dirty) {
+            if (properties.contains(names[index])) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private Object getOldValue(PostUpdateEvent event, String property) {
+        String[] names = event.getPersister().getPropertyNames();
+
+        for (int i = 0; i < names.length; ++i) {
+            if (names[i].equals(property)) {
+                return event.getOldState()[i];
+            }
+        }
+
+        return null;
+    }
+
+    private String getOwnerId(Pool pool) {
+        return pool.getOwner() != null ? pool.getOwner().getId() : null;
+    }
+
+    /**
+     * Records the changes collected in a session as adjustments to the counters of the owners they
+     * affect. Owners are processed in a consistent order, so that concurrent transactions lock
+     * their state rows without deadlocking.
+     */
+    private void apply(Session session, PendingChanges changes) {
+        Map<String, String> typeLabels = new HashMap<>();
+
+        this.resolveEntitlementChanges(session, changes);
+
+        Set<String> owners = new TreeSet<>(changes.deltas.keySet());
+        owners.addAll(changes.stale);
+
+        for (String ownerId : owners) {
+            Map<Counter, Long> deltas = new HashMap<>();
+            boolean stale = changes.stale.contains(ownerId);
+
+            Map<Counter, Long> ownerDeltas = changes.deltas.getOrDefault(ownerId, Collections.emptyMap());
+
+            for (Map.Entry<Counter, Long> delta : ownerDeltas.entrySet()) {
+                Counter counter = delta.getKey();
+                String category = counter.getCategory();
+
+                if (OwnerInfoCounterCurator.CONSUMERS.equals(category) ||
+                    OwnerInfoCounterCurator.ENTITLEMENTS.equals(category)) {
+
+                    String label = typeLabels.computeIfAbsent(counter.getName(), typeId -> {
+                        ConsumerType type = session.get(ConsumerType.class, typeId);
+                        return type != null ? type.getLabel() : null;
+                    });
+
+                    if (label == null) {
+                        stale = true;
+                        continue;
+                    }
+
+                    counter = new Counter(category, label);
+                }
+
+                deltas.merge(counter, delta.getValue(), Long::sum);
+            }
+
+            log.debug("Adjusting owner info counters of owner {}{}", ownerId, stale ? " (stale)" : "");
+            this.counterCurator.adjust(session, ownerId, deltas, stale);
+        }
+    }
+
+    private void resolveEntitlementChanges(Session session, PendingChanges changes) {
+        Date now = new Date();
+
+        for (EntitlementChange change : changes.entitlements) {
+            this.resolveEntitlementChange(session, changes, change, now);
+        }
+
+        changes.entitlements.clear();
+    }
+
+    private void resolveEntitlementChange(Session session, PendingChanges changes, EntitlementChange change,
+        Date now) {
+
+        String typeId = change.typeId;
+        if (typeId == null && change.consumerId != null) {
+            Consumer consumer = session.get(Consumer.class, change.consumerId);
+            typeId = consumer != null ? consumer.getTypeId() : null;
+        }
+
+        if (typeId == null) {
+            changes.stale(change.ownerId);
+        }
+        else {
+            changes.add(change.ownerId, OwnerInfoCounterCurator.ENTITLEMENTS, typeId, change.quantity);
+        }
+
+        Pool pool = change.pool;
+        if (pool == null && change.poolId != null) {
+            pool = session.get(Pool.class, change.poolId);
+        }
+
+        if (pool == null) {
+            changes.stale(change.ownerId);
+            return;
+        }
+
+        // Only entitlements of active pools are counted by product family
+        if (pool.getStartDate() == null || pool.getEndDate() == null ||
+            pool.getStartDate().after(now) || pool.getEndDate().before(now)) {
+            return;
+        }
+
+        Product product = pool.getProduct();
+
+        String family = pool.hasAttribute(Pool.Attributes.PRODUCT_FAMILY) ?
+            pool.getAttributeValue(Pool.Attributes.PRODUCT_FAMILY) :
+            (product != null ? product.getAttributeValue(Pool.Attributes.PRODUCT_FAMILY) : null);
+
+        String virtOnly = pool.hasAttribute(Pool.Attributes.VIRT_ONLY) ?
+            pool.getAttributeValue(Pool.Attributes.VIRT_ONLY) :
+            (product != null ? product.getAttributeValue(Pool.Attributes.VIRT_ONLY) : null);
+
+        String category = "true".equalsIgnoreCase(virtOnly) ?
+            OwnerInfoCounterCurator.FAMILY_GUEST :
+            OwnerInfoCounterCurator.FAMILY_PHYSICAL;
+
+        changes.add(this.getOwnerId(pool), category, family != null ? family : "none", change.quantity);
+    }
+}
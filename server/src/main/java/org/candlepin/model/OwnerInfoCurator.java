@@ -14,8 +14,16 @@
  */
 package org.candlepin.model;
 
+import org.candlepin.auth.Principal;
+import org.candlepin.auth.permissions.OwnerPermission;
+import org.candlepin.auth.permissions.Permission;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.guice.PrincipalProvider;
+
 import com.google.inject.Inject;
 import com.google.inject.Provider;
+import com.google.inject.persist.Transactional;
 
 import org.hibernate.Criteria;
 import org.hibernate.Query;
@@ -46,6 +54,11 @@ import javax.persistence.EntityManager;
 
 /**
  * OwnerInfoCurator
+ * <p></p>
+ * Computing the info of an owner takes a dozen aggregate queries over its consumers, entitlements
+ * and pools. Unless disabled, the info is instead served from counters maintained by the
+ * OwnerInfoCounterCurator, which are recomputed here whenever they are missing, known to be stale
+ * or older than the configured maximum age.
  */
 @Singleton
 public class OwnerInfoCurator {
@@ -55,15 +68,101 @@ public class OwnerInfoCurator {
     private ConsumerTypeCurator consumerTypeCurator;
     private ConsumerCurator consumerCurator;
     private PoolCurator poolCurator;
+    private OwnerInfoCounterCurator counterCurator;
+    private OwnerInfoCounterListener counterListener;
+    private PrincipalProvider principalProvider;
+    private Configuration config;
 
     @Inject
     public OwnerInfoCurator(Provider<EntityManager> entityManager,
         ConsumerCurator consumerCurator, ConsumerTypeCurator consumerTypeCurator,
-        PoolCurator poolCurator) {
+        PoolCurator poolCurator, OwnerInfoCounterCurator counterCurator,
+        OwnerInfoCounterListener counterListener, PrincipalProvider principalProvider,
+        Configuration config) {
         this.entityManager = entityManager;
         this.consumerCurator = consumerCurator;
         this.consumerTypeCurator = consumerTypeCurator;
         this.poolCurator = poolCurator;
+        this.counterCurator = counterCurator;
+        this.counterListener = counterListener;
+        this.principalProvider = principalProvider;
+        this.config = config;
+    }
+
+    /**
+     * Fetches the info of the given owner, serving it from the owner's counters where possible.
+     * Principals which can only see part of the owner's consumers or pools always receive info
+     * computed from what they can see.
+     *
+     * @param owner
+     *  the owner for which to fetch info
+     *
+     * @param fresh
+     *  whether or not to recompute the info of the owner, rather than serve it from counters
+     *
+     * @return
+     *  the info of the given owner
+     */
+    @Transactional
+    public OwnerInfo getByOwner(Owner owner, boolean fresh) {
+        if (!this.config.getBoolean(ConfigProperties.OWNER_INFO_COUNTERS_ENABLED) || !this.canSeeAll(owner)) {
+            return this.getByOwner(owner);
+        }
+
+        if (!fresh) {
+            long maxAge = this.config.getLong(ConfigProperties.OWNER_INFO_COUNTERS_MAX_AGE);
+            Date cutoff = new Date(System.currentTimeMillis() - maxAge * 1000);
+
+            OwnerInfo info = this.counterCurator.getByOwner(owner.getId(), cutoff);
+            if (info != null) {
+                return info;
+            }
+        }
+
+        return this.reconcile(owner);
+    }
+
+    /**
+     * Recomputes the info of the given owner and stores it as the owner's counters. The counters
+     * are locked while the info is computed, so that no changes to them are lost, and changes made
+     * earlier in the current transaction are not counted twice.
+     *
+     * @param owner
+     *  the owner for which to recompute info
+     *
+     * @return
+     *  the info of the given owner
+     */
+    @Transactional
+    public OwnerInfo reconcile(Owner owner) {
+        this.currentSession().flush();
+        this.counterCurator.lock(owner.getId());
+
+        OwnerInfo info = this.getByOwner(owner);
+        this.counterCurator.store(owner.getId(), info);
+        this.counterListener.reconciled(this.currentSession(), owner.getId());
+
+        return info;
+    }
+
+    /**
+     * Checks whether the current principal can see every consumer and pool of the given owner, in
+     * which case the info of the owner does not depend on the principal.
+     */
+    private boolean canSeeAll(Owner owner) {
+        Principal principal = this.principalProvider.get();
+        if (principal == null || principal.hasFullAccess()) {
+            return true;
+        }
+
+        for (Permission permission : principal.getPermissions()) {
+            if (permission instanceof OwnerPermission && ((OwnerPermission) permission).getOwner() != null &&
+                owner.getKey().equals(((OwnerPermission) permission).getOwner().getKey())) {
+                return true;
+            }
+        }
+
+        return false;
     }
 
     public OwnerInfo getByOwner(Owner owner) {
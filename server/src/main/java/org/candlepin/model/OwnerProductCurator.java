@@ -32,13 +32,16 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import javax.inject.Singleton;
+import javax.persistence.Query;
 
 
 
@@ -443,6 +446,153 @@ public class OwnerProductCurator extends AbstractHibernateCurator<OwnerProduct>
         return this.cpQueryFactory.<Product>buildQuery();
     }
 
+    /**
+     * Fetches a block of UUIDs of orphaned products, ordered by UUID. Only products with a UUID
+     * greater than the given UUID will be returned, allowing callers to walk the orphaned
+     * products in bounded blocks without holding any locks between blocks.
+     *
+     * @param lastUuid
+     *  The last product UUID processed, or null to start from the beginning
+     *
+     * @param blockSize
+     *  The maximum number of UUIDs to fetch
+     *
+     * @return
+     *  a list containing the UUIDs of up to blockSize orphaned products
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getOrphanedProductUuids(String lastUuid, int blockSize) {
+        String sql = "SELECT p.uuid " +
+            "FROM " + Product.DB_TABLE + " p " +
+            "LEFT JOIN " + OwnerProduct.DB_TABLE + " op ON p.uuid = op.product_uuid " +
+            "WHERE op.owner_id IS NULL" + (lastUuid != null ? " AND p.uuid > :last_uuid " : " ") +
+            "ORDER BY p.uuid ASC";
+
+        Query query = this.getEntityManager()
+            .createNativeQuery(sql)
+            .setMaxResults(blockSize);
+
+        if (lastUuid != null) {
+            query.setParameter("last_uuid", lastUuid);
+        }
+
+        return query.getResultList();
+    }
+
+    /**
+     * Deletes the specified orphaned products along with their attributes, dependent product IDs,
+     * product-content mappings, branding and certificates using set-based SQL. Any product in the
+     * given collection which has been mapped to an owner since it was determined to be orphaned
+     * will be skipped.
+     * <p></p>
+     * <strong>Warning:</strong> This method operates directly on the database and does not update
+     * any product entities currently loaded in the session. Callers should avoid performing this
+     * operation in a session holding product entities.
+     *
+     * @param productUuids
+     *  A collection of UUIDs of orphaned products to delete
+     *
+     * @return
+     *  a mapping of table names to the number of rows deleted from each table
+     */
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public Map<String, Integer> deleteOrphanedProducts(Collection<String> productUuids) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+
+        if (productUuids == null || productUuids.isEmpty()) {
+            return counts;
+        }
+
+        // Re-verify the products are still orphaned, as they may have been claimed by an owner
+        // since the UUIDs were fetched.
+        String sql = "SELECT op.product_uuid FROM " + OwnerProduct.DB_TABLE + " op " +
+            "WHERE op.product_uuid IN (:product_uuids)";
+
+        Set<String> orphaned = new HashSet<>(productUuids);
+        for (List<String> block : this.partition(productUuids)) {
+            List<String> claimed = this.currentSession().createNativeQuery(sql)
+                .setParameterList("product_uuids", block)
+                .list();
+
+            orphaned.removeAll(claimed);
+        }
+
+        if (orphaned.isEmpty()) {
+            return counts;
+        }
+
+        Map<String, Object> criteria = new HashMap<>();
+        criteria.put("product_uuid", orphaned);
+
+        String[] tables = new String[] {
+            "cp2_product_attributes",
+            "cp2_product_dependent_products",
+            ProductContent.DB_TABLE,
+            Branding.DB_TABLE,
+            ProductCertificate.DB_TABLE
+        };
+
+        for (String table : tables) {
+            counts.put(table, this.bulkSQLDelete(table, criteria));
+        }
+
+        criteria.clear();
+        criteria.put("uuid", orphaned);
+
+        counts.put(Product.DB_TABLE, this.bulkSQLDelete(Product.DB_TABLE, criteria));
+
+        return counts;
+    }
+
+    /**
+     * Retrieves a criteria which can be used to fetch a list of products with the specified entity
+     * hashes belonging to owners other than the owner provided. Since the entity hash covers the
+     * product ID and all versioned data, this lookup resolves with a single probe of the indexed
+     * hash column. If no products were found matching the given hashes, this method returns an
+     * empty list.
+     * <p></p>
+     * Note that matching hashes do not guarantee the products are identical; callers must verify
+     * any product returned by this method using the equals method before using it in place of
+     * another.
+     *
+     * @param owner
+     *  The owner whose products should be excluded from the results. If an owner is not provided,
+     *  no additional filtering will be performed.
+     *
+     * @param entityHashes
+     *  A collection of product entity hashes to fetch
+     *
+     * @return
+     *  a criteria for fetching products by entity hash
+     */
+    public CandlepinQuery<Product> getProductsByEntityHashes(Owner owner, Collection<Long> entityHashes) {
+        if (entityHashes == null || entityHashes.isEmpty()) {
+            return this.cpQueryFactory.<Product>buildQuery();
+        }
+
+        // See the notes in getProductsByVersions as to why we're splitting this into two queries
+        Criteria uuidCriteria = this.createSecureCriteria("op")
+            .createAlias("op.product", "p")
+            .add(CPRestrictions.in("p.entityHash", entityHashes))
+            .setProjection(Projections.distinct(Projections.property("p.uuid")));
+
+        if (owner != null) {
+            uuidCriteria.add(Restrictions.not(Restrictions.eq("op.owner", owner)));
+        }
+
+        List<String> uuids = uuidCriteria.list();
+
+        if (uuids != null && !uuids.isEmpty()) {
+            DetachedCriteria criteria = this.createSecureDetachedCriteria(Product.class, null)
+                .add(CPRestrictions.in("uuid", uuids));
+
+            return this.cpQueryFactory.<Product>buildQuery(this.currentSession(), criteria);
+        }
+
+        return this.cpQueryFactory.<Product>buildQuery();
+    }
+
     /**
      * Retrieves a criteria which can be used to fetch a list of products with the specified Red Hat
      * product ID and entity version belonging to owners other than the owner provided. If no
@@ -541,8 +691,28 @@ public class OwnerProductCurator extends AbstractHibernateCurator<OwnerProduct>
         criteria.put("product_uuid", productUuidMap.keySet());
         criteria.put("owner_id", owner.getId());
 
+        // Bump the update date of the pools referencing the products first, as the pool
+        // availability index is versioned by the update dates of the owner's pools
+        String sql = "UPDATE " + Pool.DB_TABLE + " SET updated = :updated " +
+            "WHERE owner_id = :owner_id AND (product_uuid IN (:product_uuids) OR id IN (" +
+            "SELECT pool_id FROM cp2_pool_provided_products WHERE product_uuid IN (:product_uuids)))";
+
+        Date updated = new Date();
+        int count = 0;
+
+        for (List<String> block : this.partition(productUuidMap.keySet())) {
+            count += session.createNativeQuery(sql)
+                .addSynchronizedQuerySpace(Pool.DB_TABLE)
+                .setParameter("updated", updated)
+                .setParameter("owner_id", owner.getId())
+                .setParameterList("product_uuids", block)
+                .executeUpdate();
+        }
+
+        log.debug("{} pool update dates bumped", count);
+
         // Owner products
-        int count = this.bulkSQLUpdate(OwnerProduct.DB_TABLE, "product_uuid", uuidMap, criteria);
+        count = this.bulkSQLUpdate(OwnerProduct.DB_TABLE, "product_uuid", uuidMap, criteria);
 
         log.debug("{} owner-product relations updated", count);
 
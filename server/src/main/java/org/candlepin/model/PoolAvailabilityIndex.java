@@ -0,0 +1,559 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * The PoolAvailabilityIndex holds, for each recently queried owner, a compact in-memory snapshot
+ * of the data used to select available pools: the product and provided product IDs, the source
+ * subscription, the active date range, and the virt_only and requires_host attributes of each
+ * pool. Candidate pools can then be selected without running the filtering query against the
+ * database.
+ * <p></p>
+ * Each snapshot is tagged with the version of the owner's pools it was built from; a snapshot is
+ * only used while the version in the database matches, so any pool creation, update or deletion
+ * on any node invalidates it. Outdated snapshots are brought up to date by reloading only the
+ * pools updated since, unless pools were deleted. Owners may also be invalidated explicitly.
+ */
+@Singleton
+public class PoolAvailabilityIndex {
+
+    /**
+     * The version of an owner's pools, derived from the number of pools and the most recent
+     * update among them.
+     */
+    public static final class Version {
+        private final long count;
+        private final long lastUpdated;
+
+        public Version(long count, Date lastUpdated) {
+            this.count = count;
+            this.lastUpdated = lastUpdated != null ? lastUpdated.getTime() : 0L;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public Date getLastUpdated() {
+            return new Date(this.lastUpdated);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof Version) {
+                Version that = (Version) obj;
+                return this.count == that.count && this.lastUpdated == that.lastUpdated;
+            }
+
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.count, this.lastUpdated);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Version [count: %d, last updated: %d]", this.count, this.lastUpdated);
+        }
+    }
+
+    /**
+     * Accumulates the pool data for a single owner, and encodes it into a {@link Snapshot}.
+     */
+    public static final class Builder {
+        private final Version version;
+        private final Map<String, Integer> positions = new HashMap<>();
+        private final List<String> poolIds = new ArrayList<>();
+        private final List<long[]> dates = new ArrayList<>();
+        private final Map<String, List<Integer>> products = new HashMap<>();
+        private final Map<String, List<Integer>> subscriptions = new HashMap<>();
+        private final BitSet poolVirtOnly = new BitSet();
+        private final BitSet poolDefinesVirtOnly = new BitSet();
+        private final BitSet productVirtOnly = new BitSet();
+        private final BitSet requiresHost = new BitSet();
+        private final Map<Integer, String> requiredHosts = new HashMap<>();
+
+        public Builder(Version version) {
+            this.version = version;
+        }
+
+        public Builder addPool(String poolId, Date startDate, Date endDate, String productId) {
+            int position = this.poolIds.size();
+
+            this.positions.put(poolId, position);
+            this.poolIds.add(poolId);
+            this.dates.add(new long[] { startDate.getTime(), endDate.getTime() });
+            this.add(this.products, productId, position);
+
+            return this;
+        }
+
+        public Builder addProvidedProduct(String poolId, String productId) {
+            Integer position = this.positions.get(poolId);
+            if (position != null) {
+                this.add(this.products, productId, position);
+            }
+
+            return this;
+        }
+
+        public Builder addSubscription(String poolId, String subscriptionId) {
+            Integer position = this.positions.get(poolId);
+            if (position != null) {
+                this.add(this.subscriptions, subscriptionId, position);
+            }
+
+            return this;
+        }
+
+        public Builder addPoolAttribute(String poolId, String name, String value) {
+            Integer position = this.positions.get(poolId);
+
+            if (position != null) {
+                if (Pool.Attributes.VIRT_ONLY.equals(name)) {
+                    this.poolDefinesVirtOnly.set(position);
+                    this.poolVirtOnly.set(position, "true".equalsIgnoreCase(value));
+                }
+                else if (Pool.Attributes.REQUIRES_HOST.equals(name)) {
+                    this.requiresHost.set(position);
+
+                    if (value != null) {
+                        this.requiredHosts.put(position, value);
+                    }
+                }
+            }
+
+            return this;
+        }
+
+        public Builder addProductAttribute(String poolId, String name, String value) {
+            Integer position = this.positions.get(poolId);
+
+            if (position != null && Pool.Attributes.VIRT_ONLY.equals(name)) {
+                this.productVirtOnly.set(position, "true".equalsIgnoreCase(value));
+            }
+
+            return this;
+        }
+
+        /**
+         * Fetches the number of pools added to this builder.
+         *
+         * @return
+         *  the number of pools added to this builder
+         */
+        public int size() {
+            return this.poolIds.size();
+        }
+
+        private void add(Map<String, List<Integer>> map, String key, int position) {
+            if (key != null) {
+                map.computeIfAbsent(key, k -> new ArrayList<>()).add(position);
+            }
+        }
+
+        private static Map<String, BitSet> encode(Map<String, List<Integer>> map) {
+            Map<String, BitSet> encoded = new HashMap<>(map.size() * 4 / 3 + 1);
+
+            for (Map.Entry<String, List<Integer>> entry : map.entrySet()) {
+                BitSet bits = new BitSet();
+                for (Integer position : entry.getValue()) {
+                    bits.set(position);
+                }
+
+                encoded.put(entry.getKey(), bits);
+            }
+
+            return encoded;
+        }
+
+        public Snapshot build() {
+            int size = this.poolIds.size();
+            long[] startDates = new long[size];
+            long[] endDates = new long[size];
+
+            for (int i = 0; i < size; ++i) {
+                startDates[i] = this.dates.get(i)[0];
+                endDates[i] = this.dates.get(i)[1];
+            }
+
+            // A pool is virt-only if it says so, or if its product says so and the pool does not
+            // override the attribute
+            BitSet virtOnly = (BitSet) this.productVirtOnly.clone();
+            virtOnly.andNot(this.poolDefinesVirtOnly);
+            virtOnly.or(this.poolVirtOnly);
+
+            String[] hosts = new String[size];
+            for (Map.Entry<Integer, String> entry : this.requiredHosts.entrySet()) {
+                hosts[entry.getKey()] = entry.getValue();
+            }
+
+            return new Snapshot(this.version, this.poolIds.toArray(new String[size]), startDates,
+                endDates, encode(this.products), encode(this.subscriptions), virtOnly,
+                (BitSet) this.requiresHost.clone(), hosts, new HashMap<>(this.positions));
+        }
+    }
+
+    /**
+     * An immutable snapshot of the pool data for a single owner.
+     */
+    public static final class Snapshot {
+        private final Version version;
+        private final String[] poolIds;
+        private final long[] startDates;
+        private final long[] endDates;
+        private final Map<String, BitSet> products;
+        private final Map<String, BitSet> subscriptions;
+        private final BitSet virtOnly;
+        private final BitSet requiresHost;
+        private final String[] requiredHosts;
+        private final Map<String, Integer> positions;
+
+        private Snapshot(Version version, String[] poolIds, long[] startDates, long[] endDates,
+            Map<String, BitSet> products, Map<String, BitSet> subscriptions, BitSet virtOnly,
+            BitSet requiresHost, String[] requiredHosts, Map<String, Integer> positions) {
+
+            this.version = version;
+            this.poolIds = poolIds;
+            this.startDates = startDates;
+            this.endDates = endDates;
+            this.products = products;
+            this.subscriptions = subscriptions;
+            this.virtOnly = virtOnly;
+            this.requiresHost = requiresHost;
+            this.requiredHosts = requiredHosts;
+            this.positions = positions;
+        }
+
+        public Version getVersion() {
+            return this.version;
+        }
+
+        public int size() {
+            return this.poolIds.length;
+        }
+
+        /**
+         * Creates a builder for a newer version of this snapshot, seeded with the data of every
+         * pool in this snapshot except the given pools. The data of pools which changed since
+         * this snapshot was built can then be added to the builder, without reloading the data
+         * of the pools which did not change.
+         *
+         * @param version
+         *  the version of the owner's pools the new snapshot is built from
+         *
+         * @param excluded
+         *  the IDs of the pools to leave out of the builder
+         *
+         * @return
+         *  a builder seeded with the data of the pools in this snapshot
+         */
+        public Builder toBuilder(Version version, Collection<String> excluded) {
+            Builder builder = new Builder(version);
+
+            for (int i = 0; i < this.poolIds.length; ++i) {
+                if (!excluded.contains(this.poolIds[i])) {
+                    builder.addPool(this.poolIds[i], new Date(this.startDates[i]), new Date(this.endDates[i]),
+                        null);
+                }
+            }
+
+            // The builder ignores pools it does not know, which takes care of the excluded pools
+            this.forEach(this.products, builder::addProvidedProduct);
+            this.forEach(this.subscriptions, builder::addSubscription);
+
+            for (int i = this.virtOnly.nextSetBit(0); i >= 0; i = this.virtOnly.nextSetBit(i + 1)) {
+                builder.addPoolAttribute(this.poolIds[i], Pool.Attributes.VIRT_ONLY, "true");
+            }
+
+            for (int i = this.requiresHost.nextSetBit(0); i >= 0; i = this.requiresHost.nextSetBit(i + 1)) {
+                builder.addPoolAttribute(this.poolIds[i], Pool.Attributes.REQUIRES_HOST,
+                    this.requiredHosts[i]);
+            }
+
+            return builder;
+        }
+
+        private void forEach(Map<String, BitSet> map, BiConsumer<String, String> consumer) {
+            for (Map.Entry<String, BitSet> entry : map.entrySet()) {
+                BitSet bits = entry.getValue();
+
+                for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+                    consumer.accept(this.poolIds[i], entry.getKey());
+                }
+            }
+        }
+
+        /**
+         * Selects the pools matching the given query.
+         *
+         * @param query
+         *  the query to run against this snapshot
+         *
+         * @return
+         *  the IDs of the matching pools
+         */
+        public List<String> select(Query query) {
+            BitSet candidates = new BitSet(this.poolIds.length);
+            candidates.set(0, this.poolIds.length);
+
+            if (query.poolIds != null) {
+                candidates.and(this.lookup(query.poolIds));
+            }
+
+            if (query.productIds != null) {
+                BitSet matched = new BitSet();
+                for (String productId : query.productIds) {
+                    BitSet bits = this.products.get(productId);
+                    if (bits != null) {
+                        matched.or(bits);
+                    }
+                }
+
+                candidates.and(matched);
+            }
+
+            if (query.subscriptionId != null) {
+                BitSet bits = this.subscriptions.get(query.subscriptionId);
+                candidates.and(bits != null ? bits : new BitSet());
+            }
+
+            if (query.excludeVirtOnly) {
+                candidates.andNot(this.virtOnly);
+            }
+
+            if (query.excludeRequiresHost) {
+                candidates.andNot(this.requiresHost);
+            }
+
+            List<String> output = new ArrayList<>();
+
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                if (this.matchesDates(i, query) && this.matchesHost(i, query)) {
+                    output.add(this.poolIds[i]);
+                }
+            }
+
+            return output;
+        }
+
+        private BitSet lookup(Collection<String> poolIds) {
+            BitSet bits = new BitSet();
+            for (String poolId : poolIds) {
+                Integer position = this.positions.get(poolId);
+                if (position != null) {
+                    bits.set(position);
+                }
+            }
+
+            return bits;
+        }
+
+        private boolean matchesDates(int i, Query query) {
+            if (query.activeOn != null) {
+                long activeOn = query.activeOn.getTime();
+
+                if (query.onlyFuture) {
+                    if (this.startDates[i] < activeOn) {
+                        return false;
+                    }
+                }
+                else if (!query.addFuture) {
+                    if (this.startDates[i] > activeOn || this.endDates[i] < activeOn) {
+                        return false;
+                    }
+                }
+                else if (this.endDates[i] < activeOn) {
+                    return false;
+                }
+            }
+
+            return query.after == null || this.startDates[i] > query.after.getTime();
+        }
+
+        private boolean matchesHost(int i, Query query) {
+            // Pools requiring a host other than the given host are excluded; pools with a null
+            // required host are not
+            if (query.requiredHost == null || !this.requiresHost.get(i) || this.requiredHosts[i] == null) {
+                return true;
+            }
+
+            return this.requiredHosts[i].equalsIgnoreCase(query.requiredHost);
+        }
+    }
+
+    /**
+     * The criteria to apply when selecting pools from a snapshot. Unset criteria are not applied.
+     */
+    public static final class Query {
+        private Collection<String> poolIds;
+        private Collection<String> productIds;
+        private String subscriptionId;
+        private Date activeOn;
+        private Date after;
+        private boolean addFuture;
+        private boolean onlyFuture;
+        private boolean excludeVirtOnly;
+        private boolean excludeRequiresHost;
+        private String requiredHost;
+
+        public Query setPoolIds(Collection<String> poolIds) {
+            this.poolIds = poolIds;
+            return this;
+        }
+
+        public Query setProductIds(Collection<String> productIds) {
+            this.productIds = productIds;
+            return this;
+        }
+
+        public Query setSubscriptionId(String subscriptionId) {
+            this.subscriptionId = subscriptionId;
+            return this;
+        }
+
+        public Query setActiveOn(Date activeOn, boolean addFuture, boolean onlyFuture) {
+            this.activeOn = activeOn;
+            this.addFuture = addFuture;
+            this.onlyFuture = onlyFuture;
+            return this;
+        }
+
+        public Query setAfter(Date after) {
+            this.after = after;
+            return this;
+        }
+
+        public Query excludeVirtOnly() {
+            this.excludeVirtOnly = true;
+            return this;
+        }
+
+        public Query excludeRequiresHost() {
+            this.excludeRequiresHost = true;
+            return this;
+        }
+
+        /**
+         * Excludes pools which require a host other than the given host. A null host is
+         * treated as an empty host UUID, which only matches pools requiring an empty host.
+         *
+         * @return
+         *  a reference to this query
+         */
+        public Query requireHost(String hostUuid) {
+            this.requiredHost = hostUuid != null ? hostUuid : "";
+            return this;
+        }
+    }
+
+    private final boolean enabled;
+    private final Map<String, Snapshot> snapshots;
+
+    @Inject
+    public PoolAvailabilityIndex(Configuration config) {
+        this.enabled = config.getBoolean(ConfigProperties.POOL_AVAILABILITY_INDEX_ENABLED);
+        final int maxOwners = Math.max(1, config.getInt(ConfigProperties.POOL_AVAILABILITY_INDEX_MAX_OWNERS));
+
+        this.snapshots = Collections.synchronizedMap(new LinkedHashMap<String, Snapshot>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+                return this.size() > maxOwners;
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Fetches the snapshot for the given owner, provided it was built from the given version of
+     * the owner's pools.
+     *
+     * @param ownerId
+     *  the ID of the owner for which to fetch a snapshot
+     *
+     * @param version
+     *  the current version of the owner's pools
+     *
+     * @return
+     *  the current snapshot for the owner, or null if the owner has no current snapshot
+     */
+    public Snapshot get(String ownerId, Version version) {
+        Snapshot snapshot = this.snapshots.get(ownerId);
+        return snapshot != null && snapshot.getVersion().equals(version) ? snapshot : null;
+    }
+
+    /**
+     * Fetches the most recent snapshot for the given owner, regardless of the version it was
+     * built from. An outdated snapshot may be used as the base of a newer one.
+     *
+     * @param ownerId
+     *  the ID of the owner for which to fetch a snapshot
+     *
+     * @return
+     *  the most recent snapshot for the owner, or null if the owner has no snapshot
+     */
+    public Snapshot getLatest(String ownerId) {
+        return this.snapshots.get(ownerId);
+    }
+
+    public void put(String ownerId, Snapshot snapshot) {
+        this.snapshots.put(ownerId, snapshot);
+    }
+
+    /**
+     * Discards the snapshot of the given owner, if any.
+     *
+     * @param ownerId
+     *  the ID of the owner for which to discard the snapshot
+     */
+    public void invalidate(String ownerId) {
+        if (ownerId != null) {
+            this.snapshots.remove(ownerId);
+        }
+    }
+
+    /**
+     * Discards the snapshots of every owner.
+     */
+    public void invalidateAll() {
+        this.snapshots.clear();
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import com.google.inject.Singleton;
+
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.Status;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.FlushEntityEvent;
+import org.hibernate.event.spi.FlushEntityEventListener;
+
+import java.util.Date;
+
+
+
+/**
+ * Bumps the update date of pools whose attributes or provided products changed. The
+ * PoolAvailabilityIndex versions its snapshots by the update dates of an owner's pools, but
+ * changes made only to these collections do not otherwise update the pool itself.
+ * <p></p>
+ * The listener runs ahead of the default flush listener, so the new update date is written along
+ * with the collection changes.
+ */
+@Singleton
+public class PoolAvailabilityListener implements FlushEntityEventListener {
+
+    private static final String[] COLLECTION_PROPERTIES = { "attributes", "providedProducts" };
+
+    /**
+     * Registers this listener ahead of the default flush listener.
+     *
+     * @param registry
+     *  the registry of the session factory to listen to
+     */
+    public void register(EventListenerRegistry registry) {
+        registry.prependListeners(EventType.FLUSH_ENTITY, this);
+    }
+
+    @Override
+    public void onFlushEntity(FlushEntityEvent event) {
+        Object entity = event.getEntity();
+        EntityEntry entry = event.getEntityEntry();
+
+        if (!(entity instanceof Pool) || entry.getStatus() != Status.MANAGED) {
+            return;
+        }
+
+        for (String property : COLLECTION_PROPERTIES) {
+            Object collection = entry.getPersister().getPropertyValue(entity, property);
+
+            // Collections replaced outright have yet to be wrapped by the session
+            boolean changed = collection instanceof PersistentCollection ?
+                ((PersistentCollection) collection).isDirty() :
+                collection != null;
+
+            if (changed) {
+                ((Pool) entity).setUpdated(new Date());
+                return;
+            }
+        }
+    }
+}
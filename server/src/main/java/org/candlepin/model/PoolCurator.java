@@ -80,15 +80,19 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
     private static Logger log = LoggerFactory.getLogger(PoolCurator.class);
     private ConsumerCurator consumerCurator;
     private ConsumerTypeCurator consumerTypeCurator;
+    private PoolAvailabilityIndex availabilityIndex;
 
     @Inject
     protected Injector injector;
 
     @Inject
-    public PoolCurator(ConsumerCurator consumerCurator, ConsumerTypeCurator consumerTypeCurator) {
+    public PoolCurator(ConsumerCurator consumerCurator, ConsumerTypeCurator consumerTypeCurator,
+        PoolAvailabilityIndex availabilityIndex) {
+
         super(Pool.class);
         this.consumerCurator = consumerCurator;
         this.consumerTypeCurator = consumerTypeCurator;
+        this.availabilityIndex = availabilityIndex;
     }
 
     /**
@@ -345,8 +349,6 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
      * @return List of entitlement pools.
      */
     @Transactional
-    @SuppressWarnings({"unchecked", "checkstyle:indentation", "checkstyle:methodlength"})
-    // TODO: Remove the methodlength suppression once this method is cleaned up
     public Page<List<Pool>> listAvailableEntitlementPools(Consumer consumer, String ownerId,
         Collection<String> productIds, String subscriptionId, Date activeOn, PoolFilterBuilder filters,
         PageRequest pageRequest, boolean postFilter, boolean addFuture, boolean onlyFuture, Date after) {
@@ -361,6 +363,76 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
             log.debug("    after: {}", after);
         }
 
+        if (this.availabilityIndex.isEnabled()) {
+            List<String> poolIds = this.listAvailablePoolIdsFromIndex(consumer, ownerId, productIds,
+                subscriptionId, activeOn, filters, addFuture, onlyFuture, after);
+
+            if (poolIds != null) {
+                return this.hydrateAvailablePools(this.createSecureCriteria(), poolIds, pageRequest,
+                    postFilter);
+            }
+        }
+
+        List<String> poolIds = this.listAvailablePoolIdsByCriteria(consumer, ownerId, productIds,
+            subscriptionId, activeOn, filters, addFuture, onlyFuture, after);
+
+        return this.hydrateAvailablePools(this.currentSession().createCriteria(Pool.class), poolIds,
+            pageRequest, postFilter);
+    }
+
+    /**
+     * Lists the IDs of the available entitlement pools, sorted as specified by the given page
+     * request. The pools are selected using the same filtering as the
+     * listAvailableEntitlementPools method, but are not loaded, allowing callers which need to
+     * post-filter the pools to load and filter them in chunks, and stop once they have found
+     * enough pools.
+     *
+     * @param consumer Consumer being entitled.
+     * @param ownerId Owner whose subscriptions should be inspected.
+     * @param productIds only entitlements which provide these products are included.
+     * @param activeOn Indicates to return only pools valid on this date.
+     *        Set to null for no date filtering.
+     * @param filters filter builder with set filters to apply to the criteria.
+     * @param pageRequest used to specify the sort order; the page and page size are ignored.
+     * @return the sorted list of available pool IDs.
+     */
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public List<String> listAvailableEntitlementPoolIds(Consumer consumer, String ownerId,
+        Collection<String> productIds, String subscriptionId, Date activeOn, PoolFilterBuilder filters,
+        PageRequest pageRequest, boolean addFuture, boolean onlyFuture, Date after) {
+
+        List<String> poolIds = null;
+
+        if (this.availabilityIndex.isEnabled()) {
+            poolIds = this.listAvailablePoolIdsFromIndex(consumer, ownerId, productIds,
+                subscriptionId, activeOn, filters, addFuture, onlyFuture, after);
+        }
+
+        if (poolIds == null) {
+            poolIds = this.listAvailablePoolIdsByCriteria(consumer, ownerId, productIds,
+                subscriptionId, activeOn, filters, addFuture, onlyFuture, after);
+        }
+
+        if (poolIds.isEmpty() || pageRequest == null) {
+            return poolIds;
+        }
+
+        Criteria criteria = this.createSecureCriteria()
+            .createAlias("product", "Product")
+            .add(CPRestrictions.in("id", poolIds))
+            .setProjection(Projections.id())
+            .addOrder(this.createPagingOrder(pageRequest));
+
+        return criteria.list();
+    }
+
+    @SuppressWarnings({"unchecked", "checkstyle:indentation", "checkstyle:methodlength"})
+    // TODO: Remove the methodlength suppression once this method is cleaned up
+    private List<String> listAvailablePoolIdsByCriteria(Consumer consumer, String ownerId,
+        Collection<String> productIds, String subscriptionId, Date activeOn, PoolFilterBuilder filters,
+        boolean addFuture, boolean onlyFuture, Date after) {
+
         boolean joinedProvided = false;
 
         Criteria criteria = this.createSecureCriteria("Pool")
@@ -378,11 +450,7 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
                 log.warn("Attempting to filter entitlement pools by owner and a consumer belonging to a " +
                     "different owner: {}, {}", ownerId, consumer);
 
-                Page<List<Pool>> output = new Page<>();
-                output.setPageData(Collections.<Pool>emptyList());
-                output.setMaxRecords(0);
-
-                return output;
+                return Collections.emptyList();
             }
 
             // We'll set the owner restriction later
@@ -574,13 +642,15 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
         // This also makes it easier to eventually start using a cursor, since the distinct entity
         // functionality doesn't work with cursors.
 
-        List<String> poolIds = criteria.list();
+        return criteria.list();
+    }
+
+    private Page<List<Pool>> hydrateAvailablePools(Criteria criteria, List<String> poolIds,
+        PageRequest pageRequest, boolean postFilter) {
 
         if (poolIds != null && !poolIds.isEmpty()) {
-            criteria = this.currentSession()
-                .createCriteria(Pool.class)
-                .createAlias("product", "Product");
-            criteria.add(CPRestrictions.in("id", poolIds));
+            criteria.createAlias("product", "Product")
+                .add(CPRestrictions.in("id", poolIds));
 
             return this.listByCriteria(criteria, pageRequest, postFilter);
         }
@@ -592,6 +662,224 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
         return output;
     }
 
+    /**
+     * Selects the IDs of the available pools from the in-memory availability index of the
+     * owner's pools, applying the same filtering as the criteria-based lookup. Lookups which
+     * cannot be answered from the index, such as those using "matches" or attribute filters, are
+     * left to the criteria-based lookup.
+     *
+     * @return
+     *  the IDs of the available pools, or null if the lookup cannot be answered from the index
+     */
+    private List<String> listAvailablePoolIdsFromIndex(Consumer consumer, String ownerId,
+        Collection<String> productIds, String subscriptionId, Date activeOn, PoolFilterBuilder filters,
+        boolean addFuture, boolean onlyFuture, Date after) {
+
+        if (filters != null && (!filters.getAttributeFilters().isEmpty() ||
+            (filters.getMatchesFilters() != null && !filters.getMatchesFilters().isEmpty()))) {
+            return null;
+        }
+
+        PoolAvailabilityIndex.Query query = new PoolAvailabilityIndex.Query()
+            .setActiveOn(activeOn, addFuture, onlyFuture)
+            .setAfter(after);
+
+        if (consumer != null) {
+            if (ownerId != null && !ownerId.equals(consumer.getOwnerId())) {
+                return null;
+            }
+
+            ownerId = consumer.getOwnerId();
+
+            ConsumerType ctype = this.consumerTypeCurator.getConsumerType(consumer);
+            if (ctype.isManifest()) {
+                query.excludeRequiresHost();
+            }
+            else if (!consumer.isGuest()) {
+                query.excludeVirtOnly();
+            }
+            else if (consumer.hasFact("virt.uuid")) {
+                String uuidFact = consumer.getFact("virt.uuid");
+                Consumer host = uuidFact != null ? this.consumerCurator.getHost(uuidFact, ownerId) : null;
+
+                query.requireHost(host != null ? host.getUuid() : null);
+            }
+        }
+
+        if (ownerId == null) {
+            return null;
+        }
+
+        String subscription = subscriptionId == null && filters != null ?
+            filters.getSubscriptionIdFilter() :
+            subscriptionId;
+
+        if (subscription != null && !subscription.isEmpty()) {
+            query.setSubscriptionId(subscription);
+        }
+
+        Collection<String> products = productIds == null && filters != null ?
+            filters.getProductIdFilter() :
+            productIds;
+
+        if (products != null && !products.isEmpty()) {
+            query.setProductIds(products);
+        }
+
+        if (filters != null && filters.getIdFilters() != null && !filters.getIdFilters().isEmpty()) {
+            query.setPoolIds(filters.getIdFilters());
+        }
+
+        return this.getAvailabilitySnapshot(ownerId).select(query);
+    }
+
+    /**
+     * Fetches the availability snapshot of the given owner's pools, bringing it up to date if the
+     * owner's pools have been created, updated or deleted since the current snapshot was built.
+     * Only the pools updated since are reloaded, unless pools have been deleted, in which case the
+     * snapshot is rebuilt from scratch.
+     *
+     * @param ownerId
+     *  the ID of the owner for which to fetch the snapshot
+     *
+     * @return
+     *  the current availability snapshot of the owner's pools
+     */
+    @SuppressWarnings("unchecked")
+    protected PoolAvailabilityIndex.Snapshot getAvailabilitySnapshot(String ownerId) {
+        Object[] stamp = (Object[]) this.currentSession()
+            .createQuery("SELECT COUNT(p.id), MAX(p.updated) FROM Pool p WHERE p.owner.id = :owner_id")
+            .setParameter("owner_id", ownerId)
+            .uniqueResult();
+
+        PoolAvailabilityIndex.Version version = new PoolAvailabilityIndex.Version(
+            ((Number) stamp[0]).longValue(), (Date) stamp[1]);
+
+        PoolAvailabilityIndex.Snapshot snapshot = this.availabilityIndex.get(ownerId, version);
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        PoolAvailabilityIndex.Builder builder = null;
+
+        PoolAvailabilityIndex.Snapshot previous = this.availabilityIndex.getLatest(ownerId);
+        if (previous != null) {
+            // Pools updated in the same millisecond as the previous version may not have been
+            // included in it, so those are reloaded as well
+            Set<String> updated = new HashSet<>(this.currentSession()
+                .createQuery("SELECT p.id FROM Pool p WHERE p.owner.id = :owner_id AND p.updated >= :since")
+                .setParameter("owner_id", ownerId)
+                .setParameter("since", previous.getVersion().getLastUpdated())
+                .list());
+
+            log.debug("Updating pool availability index for owner {}: {}; {} pools updated", ownerId,
+                version, updated.size());
+
+            builder = previous.toBuilder(version, updated);
+            this.loadAvailabilityData(builder, ownerId, updated);
+
+            // Deleted pools are still in the builder; start over if there are any
+            if (builder.size() != version.getCount()) {
+                builder = null;
+            }
+        }
+
+        if (builder == null) {
+            log.debug("Building pool availability index for owner {}: {}", ownerId, version);
+
+            builder = new PoolAvailabilityIndex.Builder(version);
+            this.loadAvailabilityData(builder, ownerId, null);
+        }
+
+        snapshot = builder.build();
+        this.availabilityIndex.put(ownerId, snapshot);
+
+        return snapshot;
+    }
+
+    /**
+     * Loads the availability data of the given pools of an owner into the given builder.
+     *
+     * @param builder
+     *  the builder into which to load the availability data
+     *
+     * @param ownerId
+     *  the ID of the owner of the pools
+     *
+     * @param poolIds
+     *  the IDs of the pools to load, or null to load every pool of the owner
+     */
+    private void loadAvailabilityData(PoolAvailabilityIndex.Builder builder, String ownerId,
+        Collection<String> poolIds) {
+
+        if (poolIds == null) {
+            this.loadAvailabilityDataBlock(builder, ownerId, null);
+        }
+        else if (!poolIds.isEmpty()) {
+            for (List<String> block : this.partition(poolIds)) {
+                this.loadAvailabilityDataBlock(builder, ownerId, block);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void loadAvailabilityDataBlock(PoolAvailabilityIndex.Builder builder, String ownerId,
+        List<String> poolIds) {
+
+        Session session = this.currentSession();
+        String poolRestriction = poolIds != null ? " AND p.id IN (:pool_ids)" : "";
+
+        Query query = session.createQuery("SELECT p.id, p.startDate, p.endDate, prod.id " +
+            "FROM Pool p JOIN p.product prod WHERE p.owner.id = :owner_id" + poolRestriction);
+
+        for (Object[] row : (List<Object[]>) this.restrictToPools(query, ownerId, poolIds).list()) {
+            builder.addPool((String) row[0], (Date) row[1], (Date) row[2], (String) row[3]);
+        }
+
+        query = session.createQuery("SELECT p.id, pp.id FROM Pool p JOIN p.providedProducts pp " +
+            "WHERE p.owner.id = :owner_id" + poolRestriction);
+
+        for (Object[] row : (List<Object[]>) this.restrictToPools(query, ownerId, poolIds).list()) {
+            builder.addProvidedProduct((String) row[0], (String) row[1]);
+        }
+
+        query = session.createQuery("SELECT p.id, ss.subscriptionId FROM SourceSubscription ss " +
+            "JOIN ss.pool p WHERE p.owner.id = :owner_id" + poolRestriction);
+
+        for (Object[] row : (List<Object[]>) this.restrictToPools(query, ownerId, poolIds).list()) {
+            builder.addSubscription((String) row[0], (String) row[1]);
+        }
+
+        query = session.createNativeQuery("SELECT pa.pool_id, pa.name, pa.value " +
+            "FROM cp_pool_attribute pa JOIN cp_pool p ON p.id = pa.pool_id " +
+            "WHERE p.owner_id = :owner_id AND pa.name IN (:names)" + poolRestriction)
+            .setParameterList("names",
+                Arrays.asList(Pool.Attributes.VIRT_ONLY, Pool.Attributes.REQUIRES_HOST));
+
+        for (Object[] row : (List<Object[]>) this.restrictToPools(query, ownerId, poolIds).list()) {
+            builder.addPoolAttribute((String) row[0], (String) row[1], (String) row[2]);
+        }
+
+        query = session.createNativeQuery("SELECT p.id, pa.name, pa.value " +
+            "FROM cp_pool p JOIN cp2_product_attributes pa ON pa.product_uuid = p.product_uuid " +
+            "WHERE p.owner_id = :owner_id AND pa.name = :name" + poolRestriction)
+            .setParameter("name", Product.Attributes.VIRT_ONLY);
+
+        for (Object[] row : (List<Object[]>) this.restrictToPools(query, ownerId, poolIds).list()) {
+            builder.addProductAttribute((String) row[0], (String) row[1], (String) row[2]);
+        }
+    }
+
+    private Query restrictToPools(Query query, String ownerId, List<String> poolIds) {
+        query.setParameter("owner_id", ownerId);
+
+        if (poolIds != null) {
+            query.setParameterList("pool_ids", poolIds);
+        }
+
+        return query;
+    }
+
     @SuppressWarnings("checkstyle:indentation")
     private Criterion addAttributeFilterSubquery(String key, Collection<String> values) {
         // key = this.sanitizeMatchesFilter(key);
@@ -1214,6 +1502,32 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
         return output;
     }
 
+    /**
+     * Fetches the IDs of the given pools which exist. If none of the pools exist, this method
+     * returns an empty collection.
+     *
+     * @param poolIds
+     *  A collection of pool IDs to look up
+     *
+     * @return
+     *  A collection of the pool IDs for which a pool exists
+     */
+    @SuppressWarnings("unchecked")
+    public Set<String> getExistingPoolIds(Collection<String> poolIds) {
+        Set<String> output = new HashSet<>();
+
+        if (poolIds != null && !poolIds.isEmpty()) {
+            Query query = this.currentSession()
+                .createQuery("SELECT p.id FROM Pool p WHERE p.id IN (:pool_ids)");
+
+            for (List<String> block : this.partition(poolIds)) {
+                output.addAll(query.setParameterList("pool_ids", block).list());
+            }
+        }
+
+        return output;
+    }
+
     /**
      * Fetches the entitlement IDs for the pools specified by the given pool IDs. If there are no
      * entitlements linked to the given pool IDs, this method returns an empty collection.
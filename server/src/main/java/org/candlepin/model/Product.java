@@ -19,10 +19,12 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.candlepin.cache.CandlepinCacheRegions;
 import org.candlepin.jackson.CandlepinAttributeDeserializer;
 import org.candlepin.jackson.CandlepinLegacyAttributeSerializer;
 import org.candlepin.model.dto.ProductData;
 import org.candlepin.service.model.ProductInfo;
+import org.candlepin.util.EntityHashBuilder;
 import org.candlepin.util.ListView;
 import org.candlepin.util.MapView;
 import org.candlepin.util.SetView;
@@ -58,6 +60,7 @@ import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlTransient;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -83,7 +86,7 @@ import java.util.stream.Collectors;
 @Entity
 @Immutable
 @Table(name = Product.DB_TABLE)
-@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = CandlepinCacheRegions.PRODUCTS)
 public class Product extends AbstractHibernateObject implements SharedEntity, Linkable, Cloneable, Eventful,
     ProductInfo {
 
@@ -212,7 +215,7 @@ public class Product extends AbstractHibernateObject implements SharedEntity, Li
     @JsonSerialize(using = CandlepinLegacyAttributeSerializer.class)
     @JsonDeserialize(using = CandlepinAttributeDeserializer.class)
     @Immutable
-    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = CandlepinCacheRegions.PRODUCTS)
     private Map<String, String> attributes;
 
     @OneToMany(mappedBy = "product")
@@ -220,7 +223,7 @@ public class Product extends AbstractHibernateObject implements SharedEntity, Li
     @Cascade({CascadeType.DELETE, CascadeType.PERSIST})
     @LazyCollection(LazyCollectionOption.EXTRA) // allows .size() without loading all data
     @Immutable
-    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = CandlepinCacheRegions.PRODUCTS)
     private List<ProductContent> productContent;
 
     /*
@@ -234,7 +237,7 @@ public class Product extends AbstractHibernateObject implements SharedEntity, Li
     @Column(name = "element")
     @BatchSize(size = 32)
     @Immutable
-    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = CandlepinCacheRegions.PRODUCTS)
     @LazyCollection(LazyCollectionOption.FALSE)
     private Set<String> dependentProductIds;
 
@@ -242,6 +245,10 @@ public class Product extends AbstractHibernateObject implements SharedEntity, Li
     @Column(name = "entity_version")
     private Integer entityVersion;
 
+    @XmlTransient
+    @Column(name = "entity_hash")
+    private Long entityHash;
+
     @XmlTransient
     @Column
     @Type(type = "org.hibernate.type.NumericBooleanType")
@@ -250,7 +257,7 @@ public class Product extends AbstractHibernateObject implements SharedEntity, Li
     @OneToMany(mappedBy = "product")
     @Cascade({org.hibernate.annotations.CascadeType.ALL})
     @BatchSize(size = 1000)
-    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = CandlepinCacheRegions.PRODUCTS)
     @Immutable
     private Set<Branding> branding;
 
@@ -1258,12 +1265,63 @@ public class Product extends AbstractHibernateObject implements SharedEntity, Li
         return builder.toHashCode();
     }
 
+    /**
+     * Calculates and returns a stable, 64-bit content hash for this entity. Unlike the entity
+     * version, the hash is calculated from a cryptographic digest of the entity's data, making it
+     * suitable for use as an indexed deduplication key. Entities with matching hashes should still
+     * be compared with the equals method before being treated as identical.
+     *
+     * @return
+     *  a 64-bit content hash for this entity
+     */
+    @XmlTransient
+    public long getEntityHash() {
+        List<Long> contentHashes = new ArrayList<>(this.productContent.size());
+        for (ProductContent pc : this.productContent) {
+            contentHashes.add(pc != null ? pc.getEntityHash() : null);
+        }
+
+        return this.getEntityHash(contentHashes);
+    }
+
+    /**
+     * Calculates the content hash for this entity using the provided product content hashes in
+     * place of those of the product content currently attached to this product. This is intended
+     * for cases where the content hashes are already known, such as data migrations operating on
+     * partially populated entities.
+     *
+     * @param productContentHashes
+     *  the hashes of the product content of this product, as calculated by
+     *  {@link ProductContent#getEntityHash(long, boolean)}
+     *
+     * @return
+     *  a 64-bit content hash for this entity
+     */
+    public long getEntityHash(Collection<Long> productContentHashes) {
+        // This must always be a subset of equals
+        List<Long> brandingHashes = new ArrayList<>(this.branding.size());
+        for (Branding brand : this.branding) {
+            brandingHashes.add(brand != null ? brand.getEntityHash() : null);
+        }
+
+        return new EntityHashBuilder()
+            .append(this.id)
+            .append(this.name)
+            .append(this.multiplier)
+            .appendMap(this.attributes)
+            .appendStrings(this.dependentProductIds)
+            .appendHashes(productContentHashes)
+            .appendHashes(brandingHashes)
+            .toHash();
+    }
+
     // TODO: Maybe remove these isChangedBy methods and move them to the translation bits?
 
     @PrePersist
     @PreUpdate
     public void updateEntityVersion() {
         this.entityVersion = this.getEntityVersion();
+        this.entityHash = this.getEntityHash();
     }
 
 }
@@ -16,8 +16,10 @@ package org.candlepin.model;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.candlepin.cache.CandlepinCacheRegions;
 import org.candlepin.model.dto.ProductContentData;
 import org.candlepin.service.model.ProductContentInfo;
+import org.candlepin.util.EntityHashBuilder;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.GenericGenerator;
@@ -39,7 +41,7 @@ import java.io.Serializable;
  */
 @Entity
 @Immutable
-@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = CandlepinCacheRegions.PRODUCTS)
 @Table(name = ProductContent.DB_TABLE)
 public class ProductContent extends AbstractHibernateObject implements ProductContentInfo {
 
@@ -179,6 +181,37 @@ public class ProductContent extends AbstractHibernateObject implements ProductCo
         return hash;
     }
 
+    /**
+     * Calculates and returns a stable, 64-bit content hash for this entity. The hash is derived
+     * from the hash of the content and the enabled flag; the parent product is not included.
+     *
+     * @return
+     *  a 64-bit content hash for this entity
+     */
+    public long getEntityHash() {
+        return getEntityHash(this.content != null ? this.content.getEntityHash() : 0, this.enabled);
+    }
+
+    /**
+     * Calculates the content hash of a product-content mapping for the given content hash and
+     * enabled flag.
+     *
+     * @param contentHash
+     *  the entity hash of the mapped content
+     *
+     * @param enabled
+     *  whether or not the content is enabled
+     *
+     * @return
+     *  a 64-bit content hash for the mapping
+     */
+    public static long getEntityHash(long contentHash, boolean enabled) {
+        return new EntityHashBuilder()
+            .append(contentHash)
+            .append(enabled)
+            .toHash();
+    }
+
     /**
      * Returns a DTO representing this entity.
      *
@@ -0,0 +1,375 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.candlepin.util.ElementTransformer;
+
+import org.hibernate.NonUniqueResultException;
+import org.hibernate.Session;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projection;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.persistence.LockModeType;
+
+
+
+/**
+ * The ProjectedCandlepinQuery class is a decorator for standard CandlepinQuery instances which
+ * reads flat rows from the base query using a ResultProjection, rather than loading its entities.
+ * Rows are read from the cursor in batches and built into output objects by the projection, so
+ * no more than one batch of output objects is held in memory at any given time.
+ * <p></p>
+ * Configuration methods (ordering, paging, locking and the session) are passed through to the
+ * base query.
+ *
+ * @param <T>
+ *  The element type to be returned by this query's result output methods
+ */
+public class ProjectedCandlepinQuery<T> implements CandlepinQuery<T> {
+
+    /** The default number of rows to read from the cursor and build at a time */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * The ProjectedResultIterator reads batches of rows from a projected cursor and returns the
+     * objects built from each batch.
+     */
+    private class ProjectedResultIterator implements ResultIterator<T> {
+        private final Session session;
+        private final ResultIterator<Object[]> cursor;
+        private Iterator<T> batch;
+
+        public ProjectedResultIterator(Session session, ResultIterator<Object[]> cursor) {
+            this.session = session;
+            this.cursor = cursor;
+            this.batch = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.batch == null || !this.batch.hasNext()) {
+                if (!this.cursor.hasNext()) {
+                    return false;
+                }
+
+                List<Object[]> rows = new ArrayList<>(batchSize);
+                while (rows.size() < batchSize && this.cursor.hasNext()) {
+                    rows.add(this.cursor.next());
+                }
+
+                this.batch = projection.build(this.session, rows).iterator();
+            }
+
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return this.batch.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            this.batch = null;
+            this.cursor.close();
+        }
+    }
+
+    private Session session;
+    private CandlepinQuery<?> query;
+    private ResultProjection<T> projection;
+    private int batchSize;
+
+    /**
+     * Creates a new ProjectedCandlepinQuery instance which projects the results of the given query
+     * using the default batch size.
+     *
+     * @param session
+     *  The session to use to build the projected rows
+     *
+     * @param query
+     *  The CandlepinQuery to project
+     *
+     * @param projection
+     *  The ResultProjection to apply to the results of the provided query
+     *
+     * @throws IllegalArgumentException
+     *  if the session, query or projection are null
+     */
+    public ProjectedCandlepinQuery(Session session, CandlepinQuery<?> query, ResultProjection<T> projection) {
+        this(session, query, projection, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a new ProjectedCandlepinQuery instance which projects the results of the given query.
+     *
+     * @param session
+     *  The session to use to build the projected rows
+     *
+     * @param query
+     *  The CandlepinQuery to project
+     *
+     * @param projection
+     *  The ResultProjection to apply to the results of the provided query
+     *
+     * @param batchSize
+     *  The number of rows to read from the cursor and build at a time
+     *
+     * @throws IllegalArgumentException
+     *  if the session, query or projection are null, or the batch size is not positive
+     */
+    public ProjectedCandlepinQuery(Session session, CandlepinQuery<?> query, ResultProjection<T> projection,
+        int batchSize) {
+
+        if (session == null) {
+            throw new IllegalArgumentException("session is null");
+        }
+
+        if (query == null) {
+            throw new IllegalArgumentException("query is null");
+        }
+
+        if (projection == null) {
+            throw new IllegalArgumentException("projection is null");
+        }
+
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize is less than one");
+        }
+
+        this.session = session;
+        this.query = query;
+        this.projection = projection;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CandlepinQuery<T> useSession(Session session) {
+        this.query.useSession(session);
+        this.session = session;
+
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CandlepinQuery<T> setFirstResult(int offset) {
+        this.query.setFirstResult(offset);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CandlepinQuery<T> setMaxResults(int limit) {
+        this.query.setMaxResults(limit);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CandlepinQuery<T> addOrder(Order order) {
+        this.query.addOrder(order);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CandlepinQuery<T> setLockMode(LockModeType lockMode) {
+        this.query.setLockMode(lockMode);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <O> CandlepinQuery<O> transform(ElementTransformer<T, O> transformer) {
+        return new TransformedCandlepinQuery<>(this, transformer);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> list() {
+        List<T> output = new LinkedList<>();
+
+        try (ResultIterator<T> iterator = this.iterate()) {
+            while (iterator.hasNext()) {
+                output.add(iterator.next());
+            }
+        }
+
+        return output;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int forEach(ResultProcessor<T> processor) {
+        return this.forEach(0, false, processor);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int forEach(int column, ResultProcessor<T> processor) {
+        return this.forEach(column, false, processor);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p></p>
+     * Projected queries produce a single column and never load entities, so the evict flag has no
+     * effect.
+     */
+    @Override
+    public int forEach(int column, boolean evict, ResultProcessor<T> processor) {
+        if (processor == null) {
+            throw new IllegalArgumentException("processor is null");
+        }
+
+        int count = 0;
+
+        try (ResultIterator<T> iterator = this.iterate(column, evict)) {
+            boolean cont = true;
+
+            while (cont && iterator.hasNext()) {
+                cont = processor.process(iterator.next());
+                ++count;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int forEachRow(ResultProcessor<Object[]> processor) {
+        return this.query.forEachRow(processor);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResultIterator<T> iterate() {
+        return this.iterate(0, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return this.iterate(0, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResultIterator<T> iterate(int column) {
+        return this.iterate(column, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p></p>
+     * Projected queries produce a single column and never load entities, so the evict flag has no
+     * effect.
+     *
+     * @throws IllegalArgumentException
+     *  if column is not zero
+     */
+    @Override
+    public ResultIterator<T> iterate(int column, boolean evict) {
+        if (column != 0) {
+            throw new IllegalArgumentException("column is out of bounds: " + column);
+        }
+
+        ResultIterator<Object[]> cursor = this.query.iterateByRow(this.projection.getProjection());
+        return new ProjectedResultIterator(this.session, cursor);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResultIterator<Object[]> iterateByRow() {
+        return this.query.iterateByRow();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResultIterator<Object[]> iterateByRow(Projection projection) {
+        return this.query.iterateByRow(projection);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T uniqueResult() {
+        List<T> result = this.list();
+
+        if (result.size() > 1) {
+            throw new NonUniqueResultException(result.size());
+        }
+
+        return !result.isEmpty() ? result.get(0) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getRowCount() {
+        return this.query.getRowCount();
+    }
+
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.hibernate.Session;
+import org.hibernate.criterion.Projection;
+
+import java.util.List;
+
+
+
+/**
+ * The ResultProjection interface defines how the flat rows of a projected query are built into
+ * output objects. Rows are handed over in batches, allowing implementations to fetch any child
+ * collections for the entire batch at once rather than for each row individually.
+ *
+ * @param <T>
+ *  The type of object built from the projected rows
+ */
+public interface ResultProjection<T> {
+
+    /**
+     * Fetches the projection defining the columns of each row passed to the build method. The
+     * projection is applied to the root entity of the query being projected.
+     *
+     * @return
+     *  the projection defining the columns of each row
+     */
+    Projection getProjection();
+
+    /**
+     * Builds output objects from a batch of projected rows. The objects must be returned in the
+     * same order as the rows from which they were built.
+     *
+     * @param session
+     *  The session to use to fetch any additional data needed to build the output objects
+     *
+     * @param rows
+     *  The batch of rows to build, with the columns defined by this projection
+     *
+     * @return
+     *  a list containing one output object for each row
+     */
+    List<T> build(Session session, List<Object[]> rows);
+
+}
@@ -14,8 +14,11 @@
  */
 package org.candlepin.model;
 
+import org.candlepin.cache.CandlepinCacheRegions;
 import org.candlepin.policy.js.RuleParseException;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.GenericGenerator;
 
 import java.io.Serializable;
@@ -41,6 +44,7 @@ import javax.xml.bind.annotation.XmlTransient;
  */
 @Entity
 @Table(name = Rules.DB_TABLE)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CandlepinCacheRegions.RULES)
 @Embeddable
 public class Rules extends AbstractHibernateObject implements Named, Eventful {
 
@@ -18,6 +18,7 @@ import org.candlepin.util.ElementTransformer;
 
 import org.hibernate.Session;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projection;
 
 import java.util.Iterator;
 import java.util.List;
@@ -277,6 +278,14 @@ public class TransformedCandlepinQuery<I, O> implements CandlepinQuery<O> {
         return this.query.iterateByRow();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResultIterator<Object[]> iterateByRow(Projection projection) {
+        return this.query.iterateByRow(projection);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.core;
+
+import org.candlepin.model.JobCurator;
+
+import com.google.inject.Inject;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * The JobPurgeMonitor tracks the progress of the chunked job status purge performed by the
+ * JobCleaner, and allows the purge to be paused and resumed at runtime. When paused, the purge
+ * stops after its current chunk and retains its position so the next run can resume from it.
+ * <p></p>
+ * The pause state and purge cursors are stored in the database, so a pause requested through any
+ * node applies to whichever node runs the purge. The throughput statistics describe the runs
+ * performed by this node only.
+ */
+@Singleton
+public class JobPurgeMonitor {
+
+    private JobCurator jobCurator;
+
+    private long totalRowsPurged;
+    private long lastRunRowsPurged;
+    private long lastRunNanos;
+    private Date lastRunStart;
+    private Date lastRunEnd;
+
+    @Inject
+    public JobPurgeMonitor(JobCurator jobCurator) {
+        this.jobCurator = jobCurator;
+    }
+
+    /**
+     * Requests that the purge stop after its current chunk.
+     */
+    public void pause() {
+        this.jobCurator.setPurgePaused(true);
+    }
+
+    /**
+     * Allows the purge to continue on its next run.
+     */
+    public void resume() {
+        this.jobCurator.setPurgePaused(false);
+    }
+
+    /**
+     * Checks whether or not the purge has been paused.
+     *
+     * @return
+     *  true if the purge is paused; false otherwise
+     */
+    public boolean isPaused() {
+        return this.jobCurator.isPurgePaused();
+    }
+
+    /**
+     * Fetches the updated date from which the purge of old completed jobs should resume, or null
+     * if the previous pass ran to completion.
+     *
+     * @return
+     *  the completed job purge cursor, or null
+     */
+    public Date getCompletedJobCursor() {
+        return this.jobCurator.getPurgeCursor(true);
+    }
+
+    public void setCompletedJobCursor(Date cursor) {
+        this.jobCurator.setPurgeCursor(true, cursor);
+    }
+
+    /**
+     * Fetches the updated date from which the purge of all old jobs should resume, or null if the
+     * previous pass ran to completion.
+     *
+     * @return
+     *  the all job purge cursor, or null
+     */
+    public Date getAllJobCursor() {
+        return this.jobCurator.getPurgeCursor(false);
+    }
+
+    public void setAllJobCursor(Date cursor) {
+        this.jobCurator.setPurgeCursor(false, cursor);
+    }
+
+    /**
+     * Marks the start of a purge run.
+     */
+    public synchronized void runStarted() {
+        this.lastRunStart = new Date();
+        this.lastRunEnd = null;
+        this.lastRunRowsPurged = 0;
+        this.lastRunNanos = 0;
+    }
+
+    /**
+     * Records a purged chunk against the current run.
+     *
+     * @param rows
+     *  the number of rows purged
+     *
+     * @param nanos
+     *  the time spent purging the chunk, in nanoseconds
+     */
+    public synchronized void chunkPurged(int rows, long nanos) {
+        this.totalRowsPurged += rows;
+        this.lastRunRowsPurged += rows;
+        this.lastRunNanos += nanos;
+    }
+
+    /**
+     * Marks the end of a purge run.
+     */
+    public synchronized void runFinished() {
+        this.lastRunEnd = new Date();
+    }
+
+    public synchronized long getTotalRowsPurged() {
+        return this.totalRowsPurged;
+    }
+
+    public synchronized long getLastRunRowsPurged() {
+        return this.lastRunRowsPurged;
+    }
+
+    /**
+     * Calculates the purge throughput of the current or most recent run, in rows per second.
+     * Only the time spent in the database is counted; time spent waiting on the rate limit is not.
+     *
+     * @return
+     *  the number of rows purged per second
+     */
+    public synchronized double getRowsPerSecond() {
+        if (this.lastRunNanos <= 0) {
+            return 0.0;
+        }
+
+        return this.lastRunRowsPurged / ((double) this.lastRunNanos / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public synchronized Date getLastRunStart() {
+        return this.lastRunStart;
+    }
+
+    public synchronized Date getLastRunEnd() {
+        return this.lastRunEnd;
+    }
+}
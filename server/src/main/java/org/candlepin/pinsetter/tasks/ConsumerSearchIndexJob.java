@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.tasks;
+
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.ConsumerSearchIndexCurator;
+
+import com.google.inject.Inject;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+
+
+/**
+ * The ConsumerSearchIndexJob rebuilds the consumer search index of every owner, indexing those
+ * which are not indexed yet first. Between rebuilds the index is kept up to date as consumers and
+ * entitlements change; the rebuild picks up the changes which cannot be tracked that way, such as
+ * those to products.
+ * <p></p>
+ * Each owner is rebuilt in its own transaction.
+ */
+public class ConsumerSearchIndexJob extends KingpinJob {
+    private static Logger log = LoggerFactory.getLogger(ConsumerSearchIndexJob.class);
+
+    // Every day at 01:00
+    public static final String DEFAULT_SCHEDULE = "0 0 1 * * ?";
+
+    private ConsumerSearchIndexCurator indexCurator;
+
+    @Inject
+    public ConsumerSearchIndexJob(ConsumerSearchIndexCurator indexCurator) {
+        this.indexCurator = indexCurator;
+    }
+
+    @Override
+    public void toExecute(JobExecutionContext ctx) throws JobExecutionException {
+        if (!this.config.getBoolean(ConfigProperties.CONSUMER_SEARCH_INDEX_ENABLED)) {
+            log.debug("Consumer search index is disabled; nothing to rebuild");
+            return;
+        }
+
+        List<String> ownerIds = this.indexCurator.getOwnersToRebuild();
+        int rebuilt = 0;
+
+        for (String ownerId : ownerIds) {
+            try {
+                int terms = this.indexCurator.rebuildOwner(ownerId);
+                log.debug("Indexed {} consumer search terms for owner {}", terms, ownerId);
+
+                ++rebuilt;
+            }
+            catch (RuntimeException e) {
+                log.warn("Unable to rebuild consumer search index for owner {}", ownerId, e);
+            }
+        }
+
+        log.info("Rebuilt consumer search index for {} of {} owners", rebuilt, ownerIds.size());
+        ctx.setResult(String.format("Rebuilt consumer search index for %d of %d owners", rebuilt,
+            ownerIds.size()));
+    }
+}
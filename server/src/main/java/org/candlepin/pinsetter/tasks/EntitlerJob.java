@@ -16,6 +16,7 @@ package org.candlepin.pinsetter.tasks;
 
 import static org.quartz.JobBuilder.newJob;
 
+import org.candlepin.bind.BulkBindResult;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.common.filter.LoggingFilter;
 import org.candlepin.config.ConfigProperties;
@@ -64,6 +65,8 @@ public class EntitlerJob extends KingpinJob {
 
     @Inject private static Configuration conf;
 
+    public static final String CONSUMER_POOL_QUANTITIES = "consumer_pool_and_quantities";
+
     protected I18n i18n;
     protected Entitler entitler;
     protected ConsumerCurator consumerCurator;
@@ -79,8 +82,13 @@ public class EntitlerJob extends KingpinJob {
 
     @Override
     public void toExecute(JobExecutionContext ctx) throws JobExecutionException {
+        JobDataMap map = ctx.getMergedJobDataMap();
+        if (map.containsKey(CONSUMER_POOL_QUANTITIES)) {
+            this.executeBulkBind(ctx, map);
+            return;
+        }
+
         try {
-            JobDataMap map = ctx.getMergedJobDataMap();
             String uuid = (String) map.get(JobStatus.TARGET_ID);
             PoolIdAndQuantity[] poolQuantities = (PoolIdAndQuantity[]) map.get("pool_and_quantities");
             Map<String, Integer> poolMap = new HashMap<>();
@@ -100,19 +108,58 @@ public class EntitlerJob extends KingpinJob {
         }
         catch (EntitlementRefusedException e) {
             log.error("EntitlerJob encountered a problem, translating errors", e);
-            Map<String, ValidationResult> validationResults = e.getResults();
+            ctx.setResult(this.translateErrors(e));
+        }
+        // Catch any exception that is fired and re-throw as a JobExecutionException
+        // so that the job will be properly cleaned up on failure.
+        catch (Exception e) {
+            log.error("EntitlerJob encountered a problem.", e);
+            throw new JobExecutionException(e.getMessage(), e, false);
+        }
+    }
 
-            EntitlementRulesTranslator translator = new EntitlementRulesTranslator(i18n);
-            List<PoolIdAndErrors> poolErrors = new ArrayList<>();
+    /**
+     * Binds every consumer in a bulk bind job as a single batch. The job result is a mapping of
+     * consumer UUIDs to either the pools and quantities consumed, or the errors preventing the
+     * consumer from being bound.
+     */
+    @SuppressWarnings("unchecked")
+    private void executeBulkBind(JobExecutionContext ctx, JobDataMap map) throws JobExecutionException {
+        try {
+            Map<String, PoolIdAndQuantity[]> requests =
+                (Map<String, PoolIdAndQuantity[]>) map.get(CONSUMER_POOL_QUANTITIES);
+
+            Map<String, Map<String, Integer>> consumerPoolMap = new HashMap<>();
+            for (Map.Entry<String, PoolIdAndQuantity[]> entry : requests.entrySet()) {
+                Map<String, Integer> poolMap = new HashMap<>();
+                for (PoolIdAndQuantity poolIdAndQuantity : entry.getValue()) {
+                    poolMap.put(poolIdAndQuantity.getPoolId(), poolIdAndQuantity.getQuantity());
+                }
+
+                consumerPoolMap.put(entry.getKey(), poolMap);
+            }
 
-            for (Pool pool : poolCurator.listAllByIds(validationResults.keySet())) {
-                List<String> errorMessages = new ArrayList<>();
-                for (ValidationError error : validationResults.get(pool.getId()).getErrors()) {
-                    errorMessages.add(translator.poolErrorToMessage(pool, error));
+            BulkBindResult bindResult = entitler.bindByPoolQuantities(consumerPoolMap);
+            Map<String, Object> result = new HashMap<>();
+
+            for (Map.Entry<String, List<Entitlement>> entry : bindResult.getEntitlements().entrySet()) {
+                entitler.sendEvents(entry.getValue());
+
+                List<PoolIdAndQuantity> consumed = new ArrayList<>();
+                for (Entitlement ent : entry.getValue()) {
+                    consumed.add(new PoolIdAndQuantity(ent.getPool().getId(), ent.getQuantity()));
                 }
-                poolErrors.add(new PoolIdAndErrors(pool.getId(), errorMessages));
+
+                result.put(entry.getKey(), consumed);
+            }
+
+            for (Map.Entry<String, EntitlementRefusedException> entry : bindResult.getRefusals().entrySet()) {
+                log.warn("Bulk bind refused for consumer {}", entry.getKey());
+                result.put(entry.getKey(), this.translateErrors(entry.getValue()));
             }
-            ctx.setResult(poolErrors);
+
+            ctx.setResult(result);
+            poolCurator.clear();
         }
         // Catch any exception that is fired and re-throw as a JobExecutionException
         // so that the job will be properly cleaned up on failure.
@@ -122,6 +169,23 @@ public class EntitlerJob extends KingpinJob {
         }
     }
 
+    private List<PoolIdAndErrors> translateErrors(EntitlementRefusedException e) {
+        Map<String, ValidationResult> validationResults = e.getResults();
+
+        EntitlementRulesTranslator translator = new EntitlementRulesTranslator(i18n);
+        List<PoolIdAndErrors> poolErrors = new ArrayList<>();
+
+        for (Pool pool : poolCurator.listAllByIds(validationResults.keySet())) {
+            List<String> errorMessages = new ArrayList<>();
+            for (ValidationError error : validationResults.get(pool.getId()).getErrors()) {
+                errorMessages.add(translator.poolErrorToMessage(pool, error));
+            }
+            poolErrors.add(new PoolIdAndErrors(pool.getId(), errorMessages));
+        }
+
+        return poolErrors;
+    }
+
     public static JobDetail bindByPool(String poolId, Consumer consumer, Owner owner, Integer qty) {
         PoolIdAndQuantity[] poolQuantities = new PoolIdAndQuantity[1];
         poolQuantities[0] = new PoolIdAndQuantity(poolId, qty);
@@ -149,6 +213,38 @@ public class EntitlerJob extends KingpinJob {
         return detail;
     }
 
+    /**
+     * Creates a job which binds many consumers of the given owner to their requested pools as a
+     * single batch.
+     *
+     * @param owner
+     *  the owner of the consumers
+     *
+     * @param consumerPoolQuantities
+     *  a mapping of consumer UUIDs to the pools and quantities requested by each consumer
+     *
+     * @return
+     *  the job detail for the bulk bind job
+     */
+    public static JobDetail bulkBindByPoolAndQuantities(Owner owner,
+        Map<String, PoolIdAndQuantity[]> consumerPoolQuantities) {
+
+        JobDataMap map = new JobDataMap();
+        map.put(JobStatus.OWNER_ID, owner.getKey());
+        map.put(JobStatus.OWNER_LOG_LEVEL, owner.getLogLevel());
+        map.put(CONSUMER_POOL_QUANTITIES, new HashMap<>(consumerPoolQuantities));
+        map.put(JobStatus.TARGET_TYPE, JobStatus.TargetType.OWNER);
+        map.put(JobStatus.TARGET_ID, owner.getKey());
+        map.put(JobStatus.CORRELATION_ID, MDC.get(LoggingFilter.CSID));
+
+        return newJob(EntitlerJob.class)
+            .withIdentity("bulk_bind_by_pool_" + Util.generateUUID())
+            .requestRecovery(false) // do not recover the job upon restarts
+            .storeDurably()
+            .usingJobData(map)
+            .build();
+    }
+
     public static boolean isSchedulable(JobCurator jobCurator, JobStatus status) {
 
         Class<? extends KingpinJob> jobClass;
@@ -19,6 +19,7 @@ import static org.quartz.JobBuilder.newJob;
 import org.candlepin.auth.Principal;
 import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.filter.LoggingFilter;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.dto.ModelTranslator;
 import org.candlepin.dto.api.v1.ConsumerDTO;
 import org.candlepin.dto.api.v1.HypervisorConsumerDTO;
@@ -34,6 +35,9 @@ import org.candlepin.resource.ConsumerResource;
 import org.candlepin.service.impl.HypervisorUpdateAction;
 import org.candlepin.util.Util;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
@@ -53,11 +57,13 @@ import org.xnap.commons.i18n.I18n;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
@@ -80,6 +86,7 @@ public class HypervisorUpdateJob extends KingpinJob {
     private HypervisorUpdateAction hypervisorUpdateAction;
     private I18n i18n;
     private ObjectMapper mapper;
+    private JobCurator jobCurator;
 
     public static final String CREATE = "create";
     private static final String REPORTER_ID = "reporter_id";
@@ -95,18 +102,44 @@ public class HypervisorUpdateJob extends KingpinJob {
         final ModelTranslator translator,
         final HypervisorUpdateAction hypervisorUpdateAction,
         final I18n i18n,
-        @Named("HypervisorUpdateJobObjectMapper") final ObjectMapper objectMapper) {
+        @Named("HypervisorUpdateJobObjectMapper") final ObjectMapper objectMapper,
+        final JobCurator jobCurator) {
         this.ownerCurator = Objects.requireNonNull(ownerCurator);
         this.consumerCurator = Objects.requireNonNull(consumerCurator);
         this.translator = Objects.requireNonNull(translator);
         this.hypervisorUpdateAction = Objects.requireNonNull(hypervisorUpdateAction);
         this.i18n = Objects.requireNonNull(i18n);
         this.mapper = Objects.requireNonNull(objectMapper);
+        this.jobCurator = Objects.requireNonNull(jobCurator);
     }
 
+    /**
+     * Schedules the given hypervisor update job. The hypervisors and guests in the job's report
+     * are claimed for the job, so that reports of disjoint sets of hosts and guests for the same
+     * owner may be processed concurrently. If any other update for the owner is still pending,
+     * the job is scheduled without a trigger, to be started by the {@link UnpauseJob} once no
+     * older job holds a claim on any of its hypervisors or guests.
+     *
+     * @return
+     *  the status of the scheduled job
+     */
     public static JobStatus scheduleJob(JobCurator jobCurator, Scheduler scheduler, JobDetail detail,
         Trigger trigger) throws SchedulerException {
 
+        // The hypervisors and guests are claimed before the job's status is created, so that the claims are
+        // in place before the job can be considered by the UnpauseJob
+        try {
+            Set<String> ids = ReportReader.readHypervisorAndGuestIds(
+                (byte[]) detail.getJobDataMap().get(DATA));
+
+            jobCurator.lockHypervisors(detail.getKey().getName(), ids);
+        }
+        catch (IOException e) {
+            // The job will fail on the same malformed report once it runs; without any claims,
+            // it does not block any other job
+            log.warn("Unable to read the hypervisors of job {}", detail.getKey().getName(), e);
+        }
+
         JobStatus result = jobCurator.getByClassAndTarget(
             detail.getJobDataMap().getString(JobStatus.TARGET_ID),
             HypervisorUpdateJob.class);
@@ -120,9 +153,7 @@ public class HypervisorUpdateJob extends KingpinJob {
     }
 
     public static boolean isSchedulable(JobCurator jobCurator, JobStatus status) {
-        JobStatus nextJob = jobCurator.getNextByClassAndTarget(status.getTargetId(),
-            HypervisorUpdateJob.class);
-        return nextJob != null && nextJob.getId().equals(status.getId());
+        return !jobCurator.hasConflictingHypervisorLocks(status);
     }
 
     /**
@@ -143,7 +174,7 @@ public class HypervisorUpdateJob extends KingpinJob {
             final Principal principal = (Principal) map.get(PRINCIPAL);
             final String jobReporterId = map.getString(REPORTER_ID);
 
-            final Owner owner = ownerCurator.getByKey(ownerKey);
+            Owner owner = ownerCurator.getByKey(ownerKey);
             if (owner == null) {
                 context.setResult("Nothing to do. Owner does not exist");
                 log.warn("Hypervisor update attempted against non-existent org id \"{}\"", ownerKey);
@@ -160,31 +191,33 @@ public class HypervisorUpdateJob extends KingpinJob {
                         owner.getKey(), caMessage));
             }
 
-            final HypervisorList hypervisors = parsedHypervisors(map);
-            if (hypervisors.getHypervisors() == null) {
-                throw new Exception("The json report does not contain the proper structure.");
-            }
-            final HypervisorUpdateAction.Result updateResult = hypervisorUpdateAction.update(
-                owner, hypervisors, create, principal, jobReporterId);
-            final HypervisorUpdateResultDTO result = updateResult.getResult();
-            final VirtConsumerMap hypervisorKnownConsumersMap = updateResult.getKnownConsumers();
-
-            final List<Consumer> created = new ArrayList<>();
-            final List<Consumer> updated = new ArrayList<>();
-            for (Consumer consumer : hypervisorKnownConsumersMap.getConsumers()) {
-                final HypervisorConsumerDTO translated = this.translator.translate(
-                    consumer, HypervisorConsumerDTO.class);
-                if (result.wasCreated(translated)) {
-                    created.add(consumer);
-                }
-                else {
-                    updated.add(consumer);
+            final int chunkSize = Math.max(1,
+                this.config.getInt(ConfigProperties.HYPERVISOR_UPDATE_CHUNK_SIZE));
+            final HypervisorUpdateResultDTO result = new HypervisorUpdateResultDTO();
+
+            // Hosts are read from the report and processed a chunk at a time, so only the current
+            // chunk is ever held in memory or in the session
+            try (ReportReader reader = new ReportReader(this.mapper, (byte[]) map.get(DATA))) {
+                List<Consumer> chunk;
+
+                while ((chunk = reader.nextChunk(chunkSize)) != null) {
+                    HypervisorList hypervisors = new HypervisorList();
+                    hypervisors.setConsumers(chunk);
+
+                    HypervisorUpdateAction.Result updateResult = hypervisorUpdateAction.update(
+                        owner, hypervisors, create, principal, jobReporterId, result);
+
+                    this.persist(owner, jobReporterId, updateResult);
+
+                    // Each chunk is committed as it is persisted, so the session is cleared to
+                    // release its hosts and guests rather than keeping every consumer of the
+                    // report managed until the job ends. The owner is reloaded into the new
+                    // session for the next chunk.
+                    this.consumerCurator.clear();
+                    owner = this.ownerCurator.getByKey(ownerKey);
                 }
             }
 
-            doInBulk(created, consumers -> consumerCurator.saveAll(consumers, false, false));
-            doInBulk(updated, consumers -> consumerCurator.bulkUpdate(consumers, false));
-
             log.info("Summary for report from {} by principal {}\n {}", jobReporterId, principal, result);
             context.setResult(result);
         }
@@ -193,12 +226,41 @@ public class HypervisorUpdateJob extends KingpinJob {
             context.setResult(e.getMessage());
             throw new JobExecutionException(e.getMessage(), e, false);
         }
+        finally {
+            JobDetail detail = context.getJobDetail();
+
+            if (detail != null) {
+                this.jobCurator.releaseHypervisors(detail.getKey().getName());
+            }
+        }
     }
 
-    private HypervisorList parsedHypervisors(final JobDataMap map) throws IOException {
-        final byte[] data = (byte[]) map.get(DATA);
-        final String json = decompress(data);
-        return mapper.readValue(json, HypervisorList.class);
+    private void persist(Owner owner, String jobReporterId, HypervisorUpdateAction.Result updateResult) {
+        final HypervisorUpdateResultDTO result = updateResult.getResult();
+        final VirtConsumerMap hypervisorKnownConsumersMap = updateResult.getKnownConsumers();
+
+        final List<Consumer> created = new ArrayList<>();
+        final List<Consumer> updated = new ArrayList<>();
+        for (Consumer consumer : hypervisorKnownConsumersMap.getConsumers()) {
+            final HypervisorConsumerDTO translated = this.translator.translate(
+                consumer, HypervisorConsumerDTO.class);
+            if (result.wasCreated(translated)) {
+                created.add(consumer);
+            }
+            else {
+                updated.add(consumer);
+            }
+        }
+
+        doInBulk(created, consumers -> consumerCurator.saveAll(consumers, false, false));
+        doInBulk(updated, consumers -> consumerCurator.bulkUpdate(consumers, false));
+
+        // Fingerprints are recorded only once the hosts are persisted, so that they postdate
+        // every change made while processing this report
+        if (jobReporterId != null) {
+            consumerCurator.updateHypervisorFingerprints(owner, updateResult.getFingerprints(),
+                new Date());
+        }
     }
 
     private void doInBulk(final List<Consumer> created,
@@ -243,10 +305,8 @@ public class HypervisorUpdateJob extends KingpinJob {
 
     private static byte[] compress(String text) {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try {
-            OutputStream out = new DeflaterOutputStream(baos);
-            out.write(text.getBytes(StandardCharsets.UTF_8));
-            out.close();
+        try (Writer out = new OutputStreamWriter(new DeflaterOutputStream(baos), StandardCharsets.UTF_8)) {
+            out.write(text);
         }
         catch (IOException e) {
             throw new AssertionError(e);
@@ -254,19 +314,155 @@ public class HypervisorUpdateJob extends KingpinJob {
         return baos.toByteArray();
     }
 
-    private static String decompress(byte[] bytes) {
-        InputStream in = new InflaterInputStream(new ByteArrayInputStream(bytes));
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try {
-            byte[] buffer = new byte[8192];
-            int len;
-            while ((len = in.read(buffer)) > 0) {
-                baos.write(buffer, 0, len);
+    /**
+     * Reads the hosts of a compressed hypervisor report incrementally, using Jackson's streaming
+     * API, so that the report is never inflated or mapped as a whole.
+     */
+    static class ReportReader implements Closeable {
+        private static final ObjectMapper ID_MAPPER = new ObjectMapper();
+
+        private final ObjectMapper mapper;
+        private final JsonParser parser;
+        private boolean exhausted;
+
+        /**
+         * Opens the given report and positions the reader at the start of its hypervisor list.
+         *
+         * @param mapper
+         *  the mapper used to read individual hosts
+         *
+         * @param data
+         *  the deflated JSON report
+         *
+         * @throws IOException
+         *  if the report cannot be read, or does not contain a list of hypervisors
+         */
+        ReportReader(ObjectMapper mapper, byte[] data) throws IOException {
+            this.mapper = mapper;
+            this.parser = mapper.getFactory()
+                .createParser(new InflaterInputStream(new ByteArrayInputStream(data)));
+
+            try {
+                this.seekHypervisors();
+            }
+            catch (IOException | RuntimeException e) {
+                this.parser.close();
+                throw e;
             }
-            return new String(baos.toByteArray(), StandardCharsets.UTF_8);
         }
-        catch (IOException e) {
-            throw new AssertionError(e);
+
+        private void seekHypervisors() throws IOException {
+            if (this.parser.nextToken() == JsonToken.START_OBJECT) {
+                while (this.parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = this.parser.getCurrentName();
+                    JsonToken token = this.parser.nextToken();
+
+                    if ("hypervisors".equals(field) && token == JsonToken.START_ARRAY) {
+                        return;
+                    }
+
+                    this.parser.skipChildren();
+                }
+            }
+
+            throw new IOException("The json report does not contain the proper structure.");
+        }
+
+        /**
+         * Reads the IDs of the hypervisors in the given report, and of the guests reported for
+         * them, without mapping the hosts themselves. Guests are included as reports naming the
+         * same guest under different hosts, such as during a migration, update the same guest
+         * records. As with hypervisor IDs in general, the IDs are converted to lower case.
+         *
+         * @param data
+         *  the deflated JSON report
+         *
+         * @throws IOException
+         *  if the report cannot be read, or does not contain a list of hypervisors
+         *
+         * @return
+         *  a set containing the hypervisor and guest IDs found in the report
+         */
+        static Set<String> readHypervisorAndGuestIds(byte[] data) throws IOException {
+            Set<String> ids = new HashSet<>();
+
+            try (ReportReader reader = new ReportReader(ID_MAPPER, data)) {
+                JsonParser parser = reader.parser;
+
+                for (JsonToken token = parser.nextToken(); token != null && token != JsonToken.END_ARRAY;
+                    token = parser.nextToken()) {
+
+                    if (token != JsonToken.START_OBJECT) {
+                        continue;
+                    }
+
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.getCurrentName();
+                        JsonToken value = parser.nextToken();
+
+                        if ("hypervisorId".equals(field) && value == JsonToken.START_OBJECT) {
+                            addId(ids, parser.readValueAsTree(), "hypervisorId");
+                        }
+                        else if ("guestIds".equals(field) && value == JsonToken.START_ARRAY) {
+                            JsonNode guests = parser.readValueAsTree();
+
+                            for (JsonNode guest : guests) {
+                                addId(ids, guest, "guestId");
+                            }
+                        }
+                        else {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+            }
+
+            return ids;
+        }
+
+        private static void addId(Set<String> ids, JsonNode node, String field) {
+            JsonNode id = node.isTextual() ? node : node.get(field);
+
+            if (id != null && id.isTextual()) {
+                ids.add(id.asText().toLowerCase());
+            }
+        }
+
+        /**
+         * Reads up to the given number of hosts from the report.
+         *
+         * @param size
+         *  the maximum number of hosts to read
+         *
+         * @return
+         *  a list of hosts, or null if the report has no further hosts
+         */
+        List<Consumer> nextChunk(int size) throws IOException {
+            if (this.exhausted) {
+                return null;
+            }
+
+            List<Consumer> chunk = new ArrayList<>();
+
+            while (chunk.size() < size) {
+                JsonToken token = this.parser.nextToken();
+
+                if (token == null || token == JsonToken.END_ARRAY) {
+                    this.exhausted = true;
+                    break;
+                }
+
+                if (token == JsonToken.START_OBJECT) {
+                    chunk.add(this.mapper.readValue(this.parser, Consumer.class));
+                }
+            }
+
+            return chunk.isEmpty() && this.exhausted ? null : chunk;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.parser.close();
         }
     }
 
@@ -14,7 +14,9 @@
  */
 package org.candlepin.pinsetter.tasks;
 
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.JobCurator;
+import org.candlepin.pinsetter.core.JobPurgeMonitor;
 import org.candlepin.util.Util;
 
 import com.google.inject.Inject;
@@ -24,11 +26,19 @@ import org.quartz.JobExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * JobCleaner removes finished jobs older than yesterday, and failed
  * jobs from 4 days ago.
+ * <p></p>
+ * Jobs are purged in fixed-size chunks by walking the index on the job's updated timestamp, with
+ * each chunk deleted in its own transaction and the overall deletion rate limited by
+ * configuration. The purge may be paused through the {@link JobPurgeMonitor}, in which case the
+ * next run resumes from where the previous one stopped.
  */
 public class JobCleaner extends KingpinJob {
 
@@ -37,26 +47,139 @@ public class JobCleaner extends KingpinJob {
     private final int MAX_JOB_AGE_IN_DAYS = 4;
 
     private JobCurator jobCurator;
+    private JobPurgeMonitor monitor;
     public static final String DEFAULT_SCHEDULE = "0 0 12 * * ?";
 
     @Inject
-    public JobCleaner(JobCurator curator) {
+    public JobCleaner(JobCurator curator, JobPurgeMonitor monitor) {
         this.jobCurator = curator;
+        this.monitor = monitor;
     }
 
     @Override
-    public void toExecute(JobExecutionContext arg0) throws JobExecutionException {
-        // TODO: Configure deadline date to something else..
-        // CAUTION: jobCurator uses setDate on the delete query,
-        // so all time info is stripped off
-        Date deadLineDt = Util.yesterday();
-        int oldCompletedJobs = this.jobCurator.cleanUpOldCompletedJobs(deadLineDt);
-
-        Date failedJobDeadLineDt = Util.addDaysToDt(-1 * MAX_JOB_AGE_IN_DAYS);
-        int asOf4DaysAgo = this.jobCurator.cleanupAllOldJobs(failedJobDeadLineDt);
-
-        log.debug("Cleaned up {} completed jobs and {} jobs older than {} days old.",
-            oldCompletedJobs, asOf4DaysAgo, MAX_JOB_AGE_IN_DAYS);
+    public void toExecute(JobExecutionContext ctx) throws JobExecutionException {
+        int chunkSize = Math.max(1, this.config.getInt(ConfigProperties.JOB_CLEANER_CHUNK_SIZE));
+        int maxRate = this.config.getInt(ConfigProperties.JOB_CLEANER_MAX_ROWS_PER_SECOND);
+
+        int oldCompletedJobs = 0;
+        int asOf4DaysAgo = 0;
+
+        this.monitor.runStarted();
+        try {
+            Date deadLineDt = Util.yesterday();
+            oldCompletedJobs = this.purge(deadLineDt, true, chunkSize, maxRate);
+
+            Date failedJobDeadLineDt = Util.addDaysToDt(-1 * MAX_JOB_AGE_IN_DAYS);
+            asOf4DaysAgo = this.purge(failedJobDeadLineDt, false, chunkSize, maxRate);
+        }
+        finally {
+            this.monitor.runFinished();
+        }
+
+        String result = String.format("Cleaned up %d completed jobs and %d jobs older than %d days " +
+            "old (%.1f rows/sec)%s", oldCompletedJobs, asOf4DaysAgo, MAX_JOB_AGE_IN_DAYS,
+            this.monitor.getRowsPerSecond(), this.monitor.isPaused() ? "; purge paused" : "");
+
+        log.info(result);
+        ctx.setResult(result);
+    }
+
+    /**
+     * Purges jobs last updated on or before the given deadline, one chunk at a time, until no
+     * further jobs remain, the purge is paused, or the job is interrupted.
+     *
+     * @param deadline
+     *  the latest update date of the jobs to purge
+     *
+     * @param terminalOnly
+     *  whether or not to limit the purge to finished or canceled jobs
+     *
+     * @param chunkSize
+     *  the number of jobs to delete per transaction
+     *
+     * @param maxRate
+     *  the maximum number of jobs to delete per second, or zero for no limit
+     *
+     * @return
+     *  the number of jobs purged
+     */
+    private int purge(Date deadline, boolean terminalOnly, int chunkSize, int maxRate) {
+        Date cursor = terminalOnly ?
+            this.monitor.getCompletedJobCursor() :
+            this.monitor.getAllJobCursor();
+        boolean complete = false;
+        int purged = 0;
+
+        while (!this.monitor.isPaused()) {
+            long start = System.nanoTime();
+
+            List<Object[]> chunk = this.jobCurator
+                .getPurgeableJobs(deadline, cursor, terminalOnly, chunkSize);
+            if (chunk.isEmpty()) {
+                complete = true;
+                break;
+            }
+
+            List<String> ids = new ArrayList<>(chunk.size());
+            for (Object[] row : chunk) {
+                ids.add((String) row[0]);
+            }
+
+            // Rows are returned in updated order, so anything before the last row's timestamp has
+            // already been examined and need not be scanned again
+            cursor = (Date) chunk.get(chunk.size() - 1)[1];
+
+            int deleted = this.jobCurator.deleteJobs(ids);
+            long elapsed = System.nanoTime() - start;
+
+            this.monitor.chunkPurged(deleted, elapsed);
+            purged += deleted;
+
+            if (chunk.size() < chunkSize) {
+                complete = true;
+                break;
+            }
+
+            if (!this.throttle(deleted, elapsed, maxRate)) {
+                break;
+            }
+        }
+
+        // Retain the cursor only if this pass was cut short, so the next run resumes from it
+        Date next = complete ? null : cursor;
+        if (terminalOnly) {
+            this.monitor.setCompletedJobCursor(next);
+        }
+        else {
+            this.monitor.setAllJobCursor(next);
+        }
+
+        return purged;
+    }
+
+    /**
+     * Sleeps for long enough to keep the deletion rate at or below the configured maximum.
+     *
+     * @return
+     *  true if the purge should continue; false if the thread was interrupted
+     */
+    private boolean throttle(int deleted, long elapsed, int maxRate) {
+        if (maxRate > 0 && deleted > 0) {
+            long minimum = TimeUnit.SECONDS.toNanos(deleted) / maxRate;
+
+            if (elapsed < minimum) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(minimum - elapsed);
+                }
+                catch (InterruptedException e) {
+                    log.warn("Job purge interrupted; will resume on next run");
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+
+        return true;
     }
 
 }
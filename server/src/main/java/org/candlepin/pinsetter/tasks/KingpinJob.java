@@ -23,6 +23,8 @@ import org.candlepin.guice.CandlepinRequestScope;
 import org.candlepin.model.JobCurator;
 import org.candlepin.pinsetter.core.PinsetterJobListener;
 import org.candlepin.pinsetter.core.model.JobStatus;
+import org.candlepin.tracing.Span;
+import org.candlepin.tracing.TraceMetrics;
 import org.candlepin.util.Traceable;
 import org.quartz.Job;
 import org.quartz.JobDataMap;
@@ -58,6 +60,7 @@ public abstract class KingpinJob implements Job {
     @Inject protected Configuration config;
     @Inject private EventSink eventSink;
     @Inject private CandlepinRequestScope candlepinRequestScope;
+    @Inject private TraceMetrics traceMetrics;
 
     protected static String prefix = "job";
 
@@ -105,6 +108,10 @@ public abstract class KingpinJob implements Job {
             log.info("Starting job: {}", getClass().getName());
         }
 
+        Span trace = traceMetrics != null ?
+            traceMetrics.startTrace(Span.Phase.JOB, getClass().getSimpleName()) :
+            Span.NOOP;
+
         /*
          * Execute our 'real' job inside a custom unit of work scope, instead
          * of the guice provided one, which is HTTP request scoped.
@@ -170,6 +177,9 @@ public abstract class KingpinJob implements Job {
             if (startedUow) {
                 endUnitOfWork();
             }
+            if (traceMetrics != null) {
+                traceMetrics.record(trace);
+            }
             if (logExecutionTime()) {
                 long executionTime = System.currentTimeMillis() - startTime;
                 log.info("Job completed: time={}", executionTime);
@@ -14,16 +14,11 @@
  */
 package org.candlepin.pinsetter.tasks;
 
-import org.candlepin.model.CandlepinQuery;
-import org.candlepin.model.Content;
-import org.candlepin.model.ContentCurator;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.OwnerContentCurator;
-import org.candlepin.model.Product;
-import org.candlepin.model.ProductCurator;
 import org.candlepin.model.OwnerProductCurator;
 
 import com.google.inject.Inject;
-import com.google.inject.persist.Transactional;
 
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
@@ -31,13 +26,21 @@ import org.quartz.JobExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.persistence.LockModeType;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 
 
 /**
  * The OrphanCleanupJob searches for orphaned entities (products and content and the time of
  * writing) and removes them.
+ * <p></p>
+ * Orphaned entities are removed in blocks using set-based SQL, with each block deleted in its own
+ * short transaction to avoid holding locks on large numbers of rows for the duration of the job.
+ * The number of rows removed from each table is logged and stored as the job's result.
  */
 public class OrphanCleanupJob extends KingpinJob {
     private static Logger log = LoggerFactory.getLogger(OrphanCleanupJob.class);
@@ -45,51 +48,67 @@ public class OrphanCleanupJob extends KingpinJob {
     // Every Sunday at 3:00am
     public static final String DEFAULT_SCHEDULE = "0 0 3 ? * 1";
 
-    private ContentCurator contentCurator;
     private OwnerContentCurator ownerContentCurator;
-    private ProductCurator productCurator;
     private OwnerProductCurator ownerProductCurator;
 
     @Inject
-    public OrphanCleanupJob(ContentCurator contentCurator, OwnerContentCurator ownerContentCurator,
-        ProductCurator productCurator, OwnerProductCurator ownerProductCurator) {
+    public OrphanCleanupJob(OwnerContentCurator ownerContentCurator,
+        OwnerProductCurator ownerProductCurator) {
 
         this.ownerContentCurator = ownerContentCurator;
-        this.contentCurator = contentCurator;
         this.ownerProductCurator = ownerProductCurator;
-        this.productCurator = productCurator;
     }
 
     @Override
-    @Transactional
     public void toExecute(JobExecutionContext ctx) throws JobExecutionException {
         log.debug("Deleting orphaned entities...");
-        int count;
+
+        int blockSize = this.config.getInt(ConfigProperties.ORPHAN_CLEANUP_BLOCK_SIZE);
+        Map<String, Integer> counts = new LinkedHashMap<>();
 
         // Content
-        count = 0;
-        CandlepinQuery<Content> contentQuery = this.ownerContentCurator.getOrphanedContent()
-            .setLockMode(LockModeType.PESSIMISTIC_WRITE);
+        int count = this.deleteOrphans(counts, blockSize, this.ownerContentCurator::getOrphanedContentUuids,
+            this.ownerContentCurator::deleteOrphanedContent);
+        log.debug("{} orphaned content entities processed", count);
 
-        for (Content content : contentQuery) {
-            this.contentCurator.delete(content);
-            ++count;
-        }
+        // Products
+        count = this.deleteOrphans(counts, blockSize, this.ownerProductCurator::getOrphanedProductUuids,
+            this.ownerProductCurator::deleteOrphanedProducts);
+        log.debug("{} orphaned product entities processed", count);
 
-        this.contentCurator.flush();
-        log.debug("{} orphaned content entities deleted", count);
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            log.info("{} rows removed from {}", entry.getValue(), entry.getKey());
+        }
 
-        // Products
-        count = 0;
-        CandlepinQuery<Product> productQuery = this.ownerProductCurator.getOrphanedProducts()
-            .setLockMode(LockModeType.PESSIMISTIC_WRITE);
+        ctx.setResult(counts);
+    }
 
-        for (Product product : productQuery) {
-            this.productCurator.delete(product);
-            ++count;
+    /**
+     * Walks the orphaned entities in blocks of the given size, deleting each block with the
+     * provided deletion function and merging the per-table row counts into the given map.
+     *
+     * @return
+     *  the number of orphaned entity UUIDs processed
+     */
+    private int deleteOrphans(Map<String, Integer> counts, int blockSize,
+        BiFunction<String, Integer, List<String>> fetcher,
+        Function<List<String>, Map<String, Integer>> deleter) {
+
+        int processed = 0;
+        String lastUuid = null;
+
+        List<String> uuids = fetcher.apply(lastUuid, blockSize);
+        while (uuids != null && !uuids.isEmpty()) {
+            for (Map.Entry<String, Integer> entry : deleter.apply(uuids).entrySet()) {
+                counts.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            }
+
+            processed += uuids.size();
+            lastUuid = uuids.get(uuids.size() - 1);
+
+            uuids = uuids.size() < blockSize ? null : fetcher.apply(lastUuid, blockSize);
         }
 
-        this.productCurator.flush();
-        log.debug("{} orphaned product entities deleted", count);
+        return processed;
     }
 }
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.tasks;
+
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Owner;
+import org.candlepin.model.OwnerCurator;
+import org.candlepin.model.OwnerInfoCounterCurator;
+import org.candlepin.model.OwnerInfoCurator;
+
+import com.google.inject.Inject;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+
+/**
+ * The OwnerInfoReconcileJob recomputes the owner info counters which are known to be stale, or
+ * which are halfway to their maximum age, so that most owner info requests can be served from the
+ * counters rather than having to wait for them to be recomputed.
+ * <p></p>
+ * Each owner is reconciled in its own transaction, holding the lock on its counters only while
+ * its info is computed. The pending adjustments of the owners which are not reconciled are folded
+ * into their counters, one owner per transaction.
+ */
+public class OwnerInfoReconcileJob extends KingpinJob {
+    private static Logger log = LoggerFactory.getLogger(OwnerInfoReconcileJob.class);
+
+    // Every 15 minutes
+    public static final String DEFAULT_SCHEDULE = "0 0/15 * * * ?";
+
+    private OwnerCurator ownerCurator;
+    private OwnerInfoCurator ownerInfoCurator;
+    private OwnerInfoCounterCurator counterCurator;
+
+    @Inject
+    public OwnerInfoReconcileJob(OwnerCurator ownerCurator, OwnerInfoCurator ownerInfoCurator,
+        OwnerInfoCounterCurator counterCurator) {
+
+        this.ownerCurator = ownerCurator;
+        this.ownerInfoCurator = ownerInfoCurator;
+        this.counterCurator = counterCurator;
+    }
+
+    @Override
+    public void toExecute(JobExecutionContext ctx) throws JobExecutionException {
+        if (!this.config.getBoolean(ConfigProperties.OWNER_INFO_COUNTERS_ENABLED)) {
+            log.debug("Owner info counters are disabled; nothing to reconcile");
+            return;
+        }
+
+        long maxAge = this.config.getLong(ConfigProperties.OWNER_INFO_COUNTERS_MAX_AGE);
+        Date cutoff = new Date(System.currentTimeMillis() - maxAge * 500);
+
+        List<String> ownerIds = this.counterCurator.getOwnersToReconcile(cutoff);
+        int reconciled = 0;
+
+        for (String ownerId : ownerIds) {
+            try {
+                Owner owner = this.ownerCurator.get(ownerId);
+
+                if (owner != null) {
+                    this.ownerInfoCurator.reconcile(owner);
+                    ++reconciled;
+                }
+            }
+            catch (RuntimeException e) {
+                log.warn("Unable to reconcile owner info counters for owner {}", ownerId, e);
+            }
+        }
+
+        // Fold the pending adjustments of the remaining owners into their counters, so that their
+        // journals stay short
+        Set<String> reconciledIds = new HashSet<>(ownerIds);
+        int compacted = 0;
+
+        for (String ownerId : this.counterCurator.getOwnersToCompact()) {
+            if (reconciledIds.contains(ownerId)) {
+                continue;
+            }
+
+            try {
+                this.counterCurator.compact(ownerId);
+                ++compacted;
+            }
+            catch (RuntimeException e) {
+                log.warn("Unable to compact owner info counters for owner {}", ownerId, e);
+            }
+        }
+
+        log.info("Reconciled owner info counters for {} of {} owners; compacted {}", reconciled,
+            ownerIds.size(), compacted);
+        ctx.setResult(String.format("Reconciled owner info counters for %d of %d owners; compacted %d",
+            reconciled, ownerIds.size(), compacted));
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.tasks;
+
+import static org.quartz.JobBuilder.newJob;
+
+import org.candlepin.auth.SystemPrincipal;
+import org.candlepin.model.JobCurator;
+import org.candlepin.model.Owner;
+import org.candlepin.model.OwnerCurator;
+import org.candlepin.pinsetter.core.PinsetterJobListener;
+import org.candlepin.pinsetter.core.model.JobStatus;
+import org.candlepin.service.ContentAccessCertServiceAdapter;
+import org.candlepin.util.Util;
+
+import com.google.inject.Inject;
+
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Asynchronous job for regenerating the stale content access payloads of an {@link Owner}, so
+ * clients polling for their content access certificates are not left to rebuild them on demand.
+ *
+ * The job is always queued without a trigger, and is only started by the UnpauseJob once the
+ * transaction which flagged the payloads has committed and no other regeneration is running for
+ * the owner. At most one such job is queued per owner.
+ */
+public class RegenContentAccessPayloadsJob extends UniqueByEntityJob {
+    private static Logger log = LoggerFactory.getLogger(RegenContentAccessPayloadsJob.class);
+
+    public static final String JOB_NAME_PREFIX = "regen_content_access_";
+
+    private OwnerCurator ownerCurator;
+    private ContentAccessCertServiceAdapter contentAccessCertService;
+
+    @Inject
+    public RegenContentAccessPayloadsJob(OwnerCurator ownerCurator,
+        ContentAccessCertServiceAdapter contentAccessCertService) {
+
+        this.ownerCurator = ownerCurator;
+        this.contentAccessCertService = contentAccessCertService;
+    }
+
+    @Override
+    public void toExecute(JobExecutionContext context) throws JobExecutionException {
+        String ownerKey = context.getMergedJobDataMap().getString(JobStatus.TARGET_ID);
+        Owner owner = this.ownerCurator.getByKey(ownerKey);
+
+        if (owner == null) {
+            context.setResult("Nothing to do. Owner no longer exists");
+            return;
+        }
+
+        if (!owner.isContentAccessEnabled()) {
+            context.setResult("Nothing to do. Content access is not enabled for owner " + ownerKey);
+            return;
+        }
+
+        try {
+            int count = this.contentAccessCertService.regenerateStalePayloads(owner);
+
+            log.debug("Regenerated {} content access payloads for owner {}", count, ownerKey);
+            context.setResult("Regenerated " + count + " content access payloads for owner " + ownerKey);
+        }
+        catch (IOException e) {
+            throw new JobExecutionException(e, false);
+        }
+    }
+
+    /**
+     * Queues a job waiting to be started by the UnpauseJob, unless the owner already has one
+     * queued which has yet to start running. The given trigger is ignored.
+     *
+     * @return
+     *  the status of the queued job
+     */
+    public static JobStatus scheduleJob(JobCurator jobCurator, Scheduler scheduler, JobDetail detail,
+        Trigger trigger) throws SchedulerException {
+
+        JobStatus existing = jobCurator.getByClassAndTarget(
+            detail.getJobDataMap().getString(JobStatus.TARGET_ID), RegenContentAccessPayloadsJob.class);
+
+        if (existing != null && (existing.getState() == JobStatus.JobState.PENDING ||
+            existing.getState() == JobStatus.JobState.CREATED ||
+            existing.getState() == JobStatus.JobState.WAITING)) {
+
+            log.debug("Content access payload regeneration already queued: {}", existing.getId());
+            return existing;
+        }
+
+        return KingpinJob.scheduleJob(jobCurator, scheduler, detail, null);
+    }
+
+    /**
+     * Creates a {@link JobDetail} that runs this job for the given {@link Owner}.
+     *
+     * @param owner
+     *  the owner for which to regenerate content access payloads
+     *
+     * @return
+     *  a {@link JobDetail} that describes the job run
+     */
+    public static JobDetail forOwner(Owner owner) {
+        JobDataMap map = new JobDataMap();
+        map.put(JobStatus.OWNER_ID, owner.getKey());
+        map.put(JobStatus.OWNER_LOG_LEVEL, owner.getLogLevel());
+        map.put(JobStatus.TARGET_TYPE, JobStatus.TargetType.OWNER);
+        map.put(JobStatus.TARGET_ID, owner.getKey());
+        map.put(PinsetterJobListener.PRINCIPAL_KEY, new SystemPrincipal());
+
+        return newJob(RegenContentAccessPayloadsJob.class)
+            .withIdentity(JOB_NAME_PREFIX + Util.generateUUID())
+            .requestRecovery(true)
+            .usingJobData(map)
+            .storeDurably(true) // required as the job is queued without a trigger
+            .build();
+    }
+}
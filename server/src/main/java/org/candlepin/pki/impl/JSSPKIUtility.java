@@ -21,6 +21,8 @@ import org.candlepin.pki.SubjectKeyIdentifierWriter;
 import org.candlepin.pki.X509ByteExtensionWrapper;
 import org.candlepin.pki.X509CRLEntryWrapper;
 import org.candlepin.pki.X509ExtensionWrapper;
+import org.candlepin.tracing.Span;
+import org.candlepin.tracing.Tracer;
 import org.candlepin.util.Util;
 
 import com.google.common.base.Charsets;
@@ -123,51 +125,54 @@ public class JSSPKIUtility extends ProviderBasedPKIUtility {
         BigInteger serialNumber, String alternateName) throws IOException {
 
         X509CertInfo certInfo = new X509CertInfo();
-        try {
-            X509Certificate caCert = reader.getCACert();
-            byte[] publicKeyEncoded = clientKeyPair.getPublic().getEncoded();
-
-            certInfo.set(X509CertInfo.ISSUER,
-                new CertificateIssuerName(new X500Name(caCert.getSubjectX500Principal().getEncoded())));
-            certInfo.set(X509CertInfo.SERIAL_NUMBER, new CertificateSerialNumber(serialNumber));
-            certInfo.set(X509CertInfo.VALIDITY, new CertificateValidity(startDate, endDate));
-            certInfo.set(X509CertInfo.SUBJECT, new CertificateSubjectName(new X500Name(dn)));
-            certInfo.set(X509CertInfo.KEY,
-                new CertificateX509Key(X509Key.parse(new DerValue(publicKeyEncoded))));
-            certInfo.set(X509CertInfo.ALGORITHM_ID,
-                new CertificateAlgorithmId(AlgorithmId.get(SIGNING_ALG_ID)));
-            certInfo.set(X509CertInfo.VERSION, new CertificateVersion(CertificateVersion.V3));
-
-            CertificateExtensions certExtensions = buildStandardExtensions(new CertificateExtensions(),
-                dn, clientKeyPair, extensions, caCert, alternateName);
-            certInfo.set(X509CertInfo.EXTENSIONS, certExtensions);
-
-            if (extensions != null) {
-                for (X509ExtensionWrapper wrapper : extensions) {
-                    // Avoid null values. Set them to blank if they are null
-                    String value = wrapper.getValue() == null ? "" :  wrapper.getValue();
-                    UTF8String der = new UTF8String(value);
-                    certExtensions.add(buildCustomExtension(wrapper.getOid(), wrapper.isCritical(), der));
+        return Tracer.call(Span.Phase.CRYPTO, "pki.createX509Certificate", () -> {
+            try {
+                X509Certificate caCert = reader.getCACert();
+                byte[] publicKeyEncoded = clientKeyPair.getPublic().getEncoded();
+
+                certInfo.set(X509CertInfo.ISSUER,
+                    new CertificateIssuerName(new X500Name(caCert.getSubjectX500Principal().getEncoded())));
+                certInfo.set(X509CertInfo.SERIAL_NUMBER, new CertificateSerialNumber(serialNumber));
+                certInfo.set(X509CertInfo.VALIDITY, new CertificateValidity(startDate, endDate));
+                certInfo.set(X509CertInfo.SUBJECT, new CertificateSubjectName(new X500Name(dn)));
+                certInfo.set(X509CertInfo.KEY,
+                    new CertificateX509Key(X509Key.parse(new DerValue(publicKeyEncoded))));
+                certInfo.set(X509CertInfo.ALGORITHM_ID,
+                    new CertificateAlgorithmId(AlgorithmId.get(SIGNING_ALG_ID)));
+                certInfo.set(X509CertInfo.VERSION, new CertificateVersion(CertificateVersion.V3));
+
+                CertificateExtensions certExtensions = buildStandardExtensions(new CertificateExtensions(),
+                    dn, clientKeyPair, extensions, caCert, alternateName);
+                certInfo.set(X509CertInfo.EXTENSIONS, certExtensions);
+
+                if (extensions != null) {
+                    for (X509ExtensionWrapper wrapper : extensions) {
+                        // Avoid null values. Set them to blank if they are null
+                        String value = wrapper.getValue() == null ? "" :  wrapper.getValue();
+                        UTF8String der = new UTF8String(value);
+                        certExtensions.add(buildCustomExtension(wrapper.getOid(), wrapper.isCritical(), der));
+                    }
                 }
-            }
 
-            if (byteExtensions != null) {
-                for (X509ByteExtensionWrapper wrapper : byteExtensions) {
-                    // Avoid null values. Set them to blank if they are null
-                    byte[] value = wrapper.getValue() == null ? new byte[0] : wrapper.getValue();
-                    OCTET_STRING der = new OCTET_STRING(value);
-                    certExtensions.add(buildCustomExtension(wrapper.getOid(), wrapper.isCritical(), der));
+                if (byteExtensions != null) {
+                    for (X509ByteExtensionWrapper wrapper : byteExtensions) {
+                        // Avoid null values. Set them to blank if they are null
+                        byte[] value = wrapper.getValue() == null ? new byte[0] : wrapper.getValue();
+                        OCTET_STRING der = new OCTET_STRING(value);
+                        certExtensions.add(buildCustomExtension(wrapper.getOid(), wrapper.isCritical(), der));
+                    }
                 }
-            }
 
-            X509CertImpl certImpl = new X509CertImpl(certInfo);
-            certImpl.sign(reader.getCaKey(), SIGNING_ALG_ID);
-            CertificateFactory cf = CertificateFactory.getInstance("X.509");
-            return (X509Certificate) cf.generateCertificate(new ByteArrayInputStream(certImpl.getEncoded()));
-        }
-        catch (GeneralSecurityException e) {
-            throw new RuntimeException("Could not create X.509 certificate", e);
-        }
+                X509CertImpl certImpl = new X509CertImpl(certInfo);
+                certImpl.sign(reader.getCaKey(), SIGNING_ALG_ID);
+                CertificateFactory cf = CertificateFactory.getInstance("X.509");
+                return (X509Certificate) cf.generateCertificate(
+                    new ByteArrayInputStream(certImpl.getEncoded()));
+            }
+            catch (GeneralSecurityException e) {
+                throw new RuntimeException("Could not create X.509 certificate", e);
+            }
+        });
     }
 
     /**
@@ -280,38 +285,41 @@ public class JSSPKIUtility extends ProviderBasedPKIUtility {
 
     @Override
     public X509CRL createX509CRL(List<X509CRLEntryWrapper> entries, BigInteger crlNumber) {
-        try {
-            X509Certificate caCert = reader.getCACert();
-
-            CRLExtensions entryExtensions = new CRLExtensions();
-            entryExtensions.add(CRLReasonExtension.PRIVILEGE_WITHDRAWN);
-
-            List<RevokedCertificate> revokedCerts = entries.stream()
-                .map(e -> new RevokedCertImpl(e.getSerialNumber(), e.getRevocationDate(), entryExtensions))
-                .collect(Collectors.toCollection(ArrayList::new));
-
-            CRLExtensions crlExtensions = new CRLExtensions();
-            crlExtensions.add(new CRLNumberExtension(crlNumber));
-            crlExtensions.add(buildAuthorityKeyIdentifier(caCert));
-
-            X500Name issuer = new X500Name(caCert.getIssuerX500Principal().getEncoded());
-            Date until = Util.addDaysToDt(config.getInt(ConfigProperties.CRL_NEXT_UPDATE_DELTA));
-            X509CRLImpl crlImpl = new X509CRLImpl(
-                issuer,
-                new Date(),
-                until,
-                revokedCerts.toArray(new RevokedCertificate[] {}),
-                crlExtensions
-            );
-
-            crlImpl.sign(reader.getCaKey(), SIGNING_ALG_ID);
-
-            CertificateFactory cf = CertificateFactory.getInstance("X.509");
-            return (X509CRL) cf.generateCRL(new ByteArrayInputStream(crlImpl.getEncoded()));
-        }
-        catch (GeneralSecurityException | IOException | InvalidBERException e) {
-            throw new RuntimeException("Error creating CRL", e);
-        }
+        return Tracer.call(Span.Phase.CRYPTO, "pki.createX509CRL", () -> {
+            try {
+                X509Certificate caCert = reader.getCACert();
+
+                CRLExtensions entryExtensions = new CRLExtensions();
+                entryExtensions.add(CRLReasonExtension.PRIVILEGE_WITHDRAWN);
+
+                List<RevokedCertificate> revokedCerts = entries.stream()
+                    .map(e -> new RevokedCertImpl(e.getSerialNumber(), e.getRevocationDate(),
+                    entryExtensions))
+                    .collect(Collectors.toCollection(ArrayList::new));
+
+                CRLExtensions crlExtensions = new CRLExtensions();
+                crlExtensions.add(new CRLNumberExtension(crlNumber));
+                crlExtensions.add(buildAuthorityKeyIdentifier(caCert));
+
+                X500Name issuer = new X500Name(caCert.getIssuerX500Principal().getEncoded());
+                Date until = Util.addDaysToDt(config.getInt(ConfigProperties.CRL_NEXT_UPDATE_DELTA));
+                X509CRLImpl crlImpl = new X509CRLImpl(
+                    issuer,
+                    new Date(),
+                    until,
+                    revokedCerts.toArray(new RevokedCertificate[] {}),
+                    crlExtensions
+                );
+
+                crlImpl.sign(reader.getCaKey(), SIGNING_ALG_ID);
+
+                CertificateFactory cf = CertificateFactory.getInstance("X.509");
+                return (X509CRL) cf.generateCRL(new ByteArrayInputStream(crlImpl.getEncoded()));
+            }
+            catch (GeneralSecurityException | IOException | InvalidBERException e) {
+                throw new RuntimeException("Error creating CRL", e);
+            }
+        });
     }
 
     /**
@@ -21,6 +21,8 @@ import org.candlepin.pki.SubjectKeyIdentifierWriter;
 import org.candlepin.pki.X509ByteExtensionWrapper;
 import org.candlepin.pki.X509CRLEntryWrapper;
 import org.candlepin.pki.X509ExtensionWrapper;
+import org.candlepin.tracing.Span;
+import org.candlepin.tracing.Tracer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -110,9 +112,11 @@ public abstract class ProviderBasedPKIUtility implements PKIUtility {
 
     @Override
     public KeyPair generateNewKeyPair() throws NoSuchAlgorithmException {
-        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
-        generator.initialize(RSA_KEY_SIZE);
-        return generator.generateKeyPair();
+        return Tracer.call(Span.Phase.CRYPTO, "pki.generateNewKeyPair", () -> {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(RSA_KEY_SIZE);
+            return generator.generateKeyPair();
+        });
     }
 
     /**
@@ -207,11 +211,13 @@ public abstract class ProviderBasedPKIUtility implements PKIUtility {
     @Override
     public byte[] getSHA256WithRSAHash(InputStream input) {
         try {
-            Signature signature = Signature.getInstance("SHA256withRSA");
-            signature.initSign(reader.getCaKey());
+            return Tracer.call(Span.Phase.CRYPTO, "pki.getSHA256WithRSAHash", () -> {
+                Signature signature = Signature.getInstance("SHA256withRSA");
+                signature.initSign(reader.getCaKey());
 
-            updateSignature(input, signature);
-            return signature.sign();
+                updateSignature(input, signature);
+                return signature.sign();
+            });
         }
         catch (Exception e) {
             throw new RuntimeException(e);
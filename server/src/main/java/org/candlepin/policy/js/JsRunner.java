@@ -14,6 +14,9 @@
  */
 package org.candlepin.policy.js;
 
+import org.candlepin.tracing.Span;
+import org.candlepin.tracing.Tracer;
+
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Function;
 import org.mozilla.javascript.RhinoException;
@@ -90,19 +93,21 @@ public class JsRunner {
     @SuppressWarnings("unchecked")
     public <T> T invokeMethod(String method)
         throws NoSuchMethodException, RhinoException {
-        Scriptable localScope = Context.toObject(this.rulesNameSpace, scope);
-        Object func = ScriptableObject.getProperty(localScope, method);
-        if (!(func instanceof Function)) {
-            throw new NoSuchMethodException("no such javascript method: " + method);
-        }
-        Context context = Context.enter();
-        try {
-            return (T) unwrapReturnValue(((Function) func).call(context, scope,
-                localScope, Context.emptyArgs));
-        }
-        finally {
-            Context.exit();
-        }
+        return Tracer.call(Span.Phase.RULES, "rules", method, () -> {
+            Scriptable localScope = Context.toObject(this.rulesNameSpace, scope);
+            Object func = ScriptableObject.getProperty(localScope, method);
+            if (!(func instanceof Function)) {
+                throw new NoSuchMethodException("no such javascript method: " + method);
+            }
+            Context context = Context.enter();
+            try {
+                return (T) unwrapReturnValue(((Function) func).call(context, scope,
+                    localScope, Context.emptyArgs));
+            }
+            finally {
+                Context.exit();
+            }
+        });
     }
 
     @SuppressWarnings("unchecked")
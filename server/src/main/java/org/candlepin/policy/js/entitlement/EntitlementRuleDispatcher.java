@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.entitlement;
+
+import org.candlepin.model.Pool;
+import org.candlepin.tracing.Span;
+import org.candlepin.tracing.Tracer;
+
+import com.google.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * The EntitlementRuleDispatcher precompiles the attribute mappings declared by the entitlement
+ * rules into a dispatch table, which resolves the set of mapped attributes present on a pool to
+ * the ordered list of validators the rules would run for it. The table is compiled once for each
+ * distinct mapping string, and thus once per rules version, rather than being parsed again for
+ * every pool validated.
+ * <p></p>
+ * The dispatch mirrors the get_validators rules function: the global validator always runs first,
+ * followed by the validator of each mapping whose first attribute is set on the pool, in the order
+ * in which the mappings are declared.
+ */
+@Singleton
+public class EntitlementRuleDispatcher {
+    private static Logger log = LoggerFactory.getLogger(EntitlementRuleDispatcher.class);
+
+    private static final String VALIDATOR_PREFIX = "do_pre_";
+    private static final String GLOBAL_VALIDATOR = VALIDATOR_PREFIX + "global";
+
+    /**
+     * A dispatch table compiled from a single attribute mapping string. Dispatch keys and validator
+     * lists are interned, so pools with the same mapped attributes share a single instance of each.
+     */
+    public static class DispatchTable {
+        private final String mappings;
+        private final String[] validators;
+        private final String[] attributes;
+
+        private final Map<String, String> keys;
+        private final Map<String, List<String>> dispatch;
+        private final AtomicLong hits;
+        private final AtomicLong misses;
+
+        private DispatchTable(String mappings) {
+            this.mappings = mappings;
+
+            List<String> validators = new ArrayList<>();
+            List<String> attributes = new ArrayList<>();
+
+            if (!mappings.trim().isEmpty()) {
+                for (String mapping : mappings.split(",")) {
+                    String[] tokens = mapping.split(":");
+
+                    if (tokens.length < 3) {
+                        throw new IllegalArgumentException("Malformed attribute mapping: " + mapping);
+                    }
+
+                    validators.add(VALIDATOR_PREFIX + tokens[0]);
+                    attributes.add(tokens[2]);
+                }
+            }
+
+            this.validators = validators.toArray(new String[validators.size()]);
+            this.attributes = attributes.toArray(new String[attributes.size()]);
+
+            this.keys = new ConcurrentHashMap<>();
+            this.dispatch = new ConcurrentHashMap<>();
+            this.hits = new AtomicLong();
+            this.misses = new AtomicLong();
+        }
+
+        /**
+         * Fetches the value of the given attribute from the pool or its product in the same way
+         * the rules do: attributes with a value of zero are considered unset.
+         */
+        private static boolean hasAttribute(Pool pool, String attribute) {
+            String value = pool.getAttributes().get(attribute);
+
+            if (value == null || "0".equals(value)) {
+                value = pool.getProductAttributes().get(attribute);
+            }
+
+            return value != null && !"0".equals(value);
+        }
+
+        /**
+         * Builds the dispatch key for the given pool from the mapped attributes set on it. The
+         * returned key is interned, and may be used to look up the pool's validators.
+         *
+         * @param pool
+         *  the pool for which to build a dispatch key
+         *
+         * @return
+         *  the dispatch key of the given pool
+         */
+        public String getDispatchKey(Pool pool) {
+            StringBuilder builder = new StringBuilder();
+
+            for (int i = 0; i < this.attributes.length; ++i) {
+                if (hasAttribute(pool, this.attributes[i])) {
+                    builder.append(builder.length() > 0 ? "," : "").append(i);
+                }
+            }
+
+            String key = builder.toString();
+            return this.keys.computeIfAbsent(key, k -> k);
+        }
+
+        /**
+         * Resolves the given dispatch key to the ordered list of validators to run for pools with
+         * that key.
+         *
+         * @param key
+         *  a dispatch key previously returned by getDispatchKey
+         *
+         * @return
+         *  an unmodifiable list of the names of the validators to run
+         */
+        public List<String> getValidators(String key) {
+            List<String> validators = this.dispatch.get(key);
+
+            if (validators != null) {
+                this.hits.incrementAndGet();
+                return validators;
+            }
+
+            this.misses.incrementAndGet();
+            return this.dispatch.computeIfAbsent(key, this::buildValidators);
+        }
+
+        private List<String> buildValidators(String key) {
+            List<String> validators = new ArrayList<>();
+            validators.add(GLOBAL_VALIDATOR);
+
+            if (!key.isEmpty()) {
+                for (String index : key.split(",")) {
+                    validators.add(this.validators[Integer.parseInt(index)]);
+                }
+            }
+
+            return Collections.unmodifiableList(validators);
+        }
+
+        public String getMappings() {
+            return this.mappings;
+        }
+
+        public int size() {
+            return this.dispatch.size();
+        }
+
+        public long getHits() {
+            return this.hits.get();
+        }
+
+        public long getMisses() {
+            return this.misses.get();
+        }
+    }
+
+    private volatile DispatchTable table;
+    private final AtomicLong compilations = new AtomicLong();
+
+    /**
+     * Fetches the dispatch table for the given attribute mappings, compiling it if the mappings
+     * differ from those of the table compiled last.
+     *
+     * @param mappings
+     *  the attribute mappings declared by the current entitlement rules
+     *
+     * @throws IllegalArgumentException
+     *  if mappings is null or malformed
+     *
+     * @return
+     *  the dispatch table for the given attribute mappings
+     */
+    public DispatchTable getDispatchTable(String mappings) {
+        if (mappings == null) {
+            throw new IllegalArgumentException("mappings is null");
+        }
+
+        DispatchTable current = this.table;
+
+        if (current == null || !current.getMappings().equals(mappings)) {
+            current = Tracer.call(Span.Phase.RULES, "rules.dispatch", "compile",
+                () -> new DispatchTable(mappings));
+
+            log.debug("Compiled entitlement rule dispatch table for mappings: {}", mappings);
+            this.compilations.incrementAndGet();
+            this.table = current;
+        }
+
+        return current;
+    }
+
+    /**
+     * Fetches the statistics of the current dispatch table: the number of tables compiled, the
+     * number of distinct validator lists in the current table, and the number of validator list
+     * lookups which were served from, or added to, the current table.
+     *
+     * @return
+     *  a map containing the statistics of the current dispatch table
+     */
+    public Map<String, Long> getStatistics() {
+        DispatchTable current = this.table;
+        Map<String, Long> statistics = new TreeMap<>();
+
+        statistics.put("compilations", this.compilations.get());
+        statistics.put("dispatchKeys", current != null ? (long) current.size() : 0L);
+        statistics.put("hits", current != null ? current.getHits() : 0L);
+        statistics.put("misses", current != null ? current.getMisses() : 0L);
+
+        return statistics;
+    }
+}
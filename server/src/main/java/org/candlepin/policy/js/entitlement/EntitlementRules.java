@@ -44,13 +44,17 @@ import org.candlepin.policy.js.JsRunner;
 import org.candlepin.policy.js.JsonJsContext;
 import org.candlepin.policy.js.RuleExecutionException;
 import org.candlepin.policy.js.RulesObjectMapper;
+import org.candlepin.policy.js.entitlement.EntitlementRuleDispatcher.DispatchTable;
 import org.candlepin.policy.js.pool.PoolHelper;
+import org.candlepin.tracing.Span;
+import org.candlepin.tracing.Tracer;
 import org.candlepin.util.DateSource;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.google.inject.Inject;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.mozilla.javascript.RhinoException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnap.commons.i18n.I18n;
@@ -91,6 +95,7 @@ public class EntitlementRules implements Enforcer {
     private EventSink eventSink;
     private EventFactory eventFactory;
     private ModelTranslator translator;
+    private EntitlementRuleDispatcher ruleDispatcher;
 
     private static final String POST_PREFIX = "post_";
 
@@ -100,7 +105,7 @@ public class EntitlementRules implements Enforcer {
         ConsumerTypeCurator consumerTypeCurator, ProductCurator productCurator, RulesObjectMapper mapper,
         OwnerCurator ownerCurator, OwnerProductCurator ownerProductCurator,
         ProductManager productManager, EventSink eventSink,
-        EventFactory eventFactory, ModelTranslator translator) {
+        EventFactory eventFactory, ModelTranslator translator, EntitlementRuleDispatcher ruleDispatcher) {
 
         this.jsRules = jsRules;
         this.dateSource = dateSource;
@@ -116,6 +121,7 @@ public class EntitlementRules implements Enforcer {
         this.eventSink = eventSink;
         this.eventFactory = eventFactory;
         this.translator = translator;
+        this.ruleDispatcher = ruleDispatcher;
 
         jsRules.init("entitlement_name_space");
     }
@@ -173,6 +179,10 @@ public class EntitlementRules implements Enforcer {
         args.put("caller", caller.getLabel());
         args.put("log", log, false);
 
+        this.putRuleDispatch(args, entitlementPoolQuantities.stream()
+            .map(PoolQuantity::getPool)
+            .collect(Collectors.toList()));
+
         String json = jsRules.runJsFunction(String.class, "validate_pools_batch", args);
 
         TypeReference<Map<String, ValidationResult>> typeref =
@@ -222,6 +232,10 @@ public class EntitlementRules implements Enforcer {
         args.put("caller", CallerType.LIST_POOLS.getLabel());
         args.put("log", log, false);
 
+        if (pools != null) {
+            this.putRuleDispatch(args, pools);
+        }
+
         String json = jsRules.runJsFunction(String.class, "validate_pools_list", args);
         TypeReference<Map<String, ValidationResult>> typeref =
             new TypeReference<Map<String, ValidationResult>>() {};
@@ -256,6 +270,63 @@ public class EntitlementRules implements Enforcer {
         return filteredPools;
     }
 
+    /**
+     * Resolves the validators to run for each of the given pools from the precompiled dispatch
+     * table of the current rules, and adds them to the rules context. Each distinct list of
+     * validators is only sent once, along with the key of the list to use for each pool. Rules
+     * which do not support precompiled dispatch ignore these values and resolve the validators
+     * themselves.
+     *
+     * @param args
+     *  the rules context to receive the validator dispatch
+     *
+     * @param pools
+     *  the pools being validated
+     */
+    private void putRuleDispatch(JsonJsContext args, Collection<Pool> pools) {
+        String mappings = this.getAttributeMappings();
+
+        if (mappings == null) {
+            return;
+        }
+
+        Tracer.run(Span.Phase.RULES, "rules.dispatch", "resolve", () -> {
+            DispatchTable table = this.ruleDispatcher.getDispatchTable(mappings);
+
+            Map<String, String> poolKeys = new HashMap<>();
+            Map<String, List<String>> dispatch = new HashMap<>();
+
+            for (Pool pool : pools) {
+                if (pool.getId() != null) {
+                    String key = table.getDispatchKey(pool);
+
+                    poolKeys.put(pool.getId(), key);
+                    dispatch.computeIfAbsent(key, table::getValidators);
+                }
+            }
+
+            args.put("poolRuleKeys", poolKeys);
+            args.put("ruleDispatch", dispatch);
+        });
+    }
+
+    /**
+     * Fetches the attribute mappings declared by the rules.
+     *
+     * @return
+     *  the attribute mappings of the rules, or null if the rules do not declare any
+     */
+    private String getAttributeMappings() {
+        try {
+            Object result = jsRules.invokeMethod("attribute_mappings");
+            return result != null ? result.toString() : null;
+        }
+        catch (NoSuchMethodException | RhinoException e) {
+            log.debug("Rules do not declare attribute mappings; skipping precompiled rule dispatch", e);
+            return null;
+        }
+    }
+
     private Consumer getHost(Consumer consumer) {
         Consumer host = consumer.hasFact("virt.uuid") ? consumerCurator.getHost(
             consumer.getFact("virt.uuid"), consumer.getOwnerId()) : null;
@@ -24,6 +24,7 @@ import org.candlepin.model.Consumer;
 import org.candlepin.model.Entitlement;
 import org.candlepin.model.GuestId;
 import org.candlepin.model.Pool;
+import org.candlepin.model.Product;
 import org.candlepin.policy.js.JsRunner;
 import org.candlepin.policy.js.JsonJsContext;
 import org.candlepin.policy.js.RuleExecutionException;
@@ -35,7 +36,11 @@ import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
@@ -47,6 +52,10 @@ import java.util.stream.Stream;
  */
 public class QuantityRules {
 
+    private static final String MULTI_ENTITLEMENT_ATTRIBUTE = Pool.Attributes.MULTI_ENTITLEMENT;
+    private static final String STACKING_ID_ATTRIBUTE = Product.Attributes.STACKING_ID;
+    private static final String INSTANCE_ATTRIBUTE = Product.Attributes.INSTANCE_MULTIPLIER;
+
     private JsRunner jsRules;
     private RulesObjectMapper mapper;
     private static Logger log = LoggerFactory.getLogger(QuantityRules.class);
@@ -64,6 +73,13 @@ public class QuantityRules {
 
     @SuppressWarnings("checkstyle:indentation")
     public SuggestedQuantityDTO getSuggestedQuantity(Pool p, Consumer c, Date date) {
+        ConsumerDTO consumer = this.translator.translate(c, ConsumerDTO.class);
+
+        SuggestedQuantityDTO suggested = this.getUnstackedQuantity(p, consumer, c.isGuest());
+        if (suggested != null) {
+            return suggested;
+        }
+
         JsonJsContext args = new JsonJsContext(mapper);
 
         Stream<EntitlementDTO> entStream = c.getEntitlements() == null ? Stream.empty() :
@@ -75,7 +91,7 @@ public class QuantityRules {
             c.getGuestIds().stream()
                 .map(this.translator.getStreamMapper(GuestId.class, GuestIdDTO.class));
 
-        args.put("consumer", this.translator.translate(c, ConsumerDTO.class));
+        args.put("consumer", consumer);
         args.put("pool", this.translator.translate(p, PoolDTO.class));
         args.put("validEntitlements", entStream);
         args.put("log", log, false);
@@ -91,6 +107,11 @@ public class QuantityRules {
      * performant list pools queries with large numbers of pools and a large amount of
      * entitlements to serialize.
      *
+     * Pools which are not both multi-entitlement and stackable are calculated here without the
+     * rules, as their quantities do not depend on the consumer's existing stacks. The remaining
+     * pools are grouped by the attributes and quantities the stack coverage rules read from them,
+     * and only one pool from each group is sent to the rules, in a single call.
+     *
      * Map returned will map each pool ID to the suggested quantities for it. Every pool
      * provided should have it's ID present in the result.
      *
@@ -99,12 +120,54 @@ public class QuantityRules {
      * @param date
      * @return suggested quantities for all pools requested
      */
-    @SuppressWarnings("checkstyle:indentation")
     public Map<String, SuggestedQuantityDTO> getSuggestedQuantities(List<Pool> pools, Consumer c, Date date) {
+        Map<String, SuggestedQuantityDTO> resultMap = new HashMap<>();
+
+        if (pools == null || pools.isEmpty()) {
+            return resultMap;
+        }
+
+        ConsumerDTO consumer = this.translator.translate(c, ConsumerDTO.class);
+        boolean guest = c.isGuest();
+
+        Map<List<Object>, List<Pool>> stackedPools = new LinkedHashMap<>();
+
+        for (Pool pool : pools) {
+            SuggestedQuantityDTO suggested = this.getUnstackedQuantity(pool, consumer, guest);
+
+            if (suggested != null) {
+                resultMap.put(pool.getId(), suggested);
+            }
+            else {
+                stackedPools.computeIfAbsent(this.getStackSignature(pool), key -> new ArrayList<>())
+                    .add(pool);
+            }
+        }
+
+        if (!stackedPools.isEmpty()) {
+            List<Pool> representatives = new ArrayList<>(stackedPools.size());
+            stackedPools.values().forEach(group -> representatives.add(group.get(0)));
+
+            Map<String, SuggestedQuantityDTO> stackedResults =
+                this.runSuggestedQuantities(representatives, consumer, c, date);
+
+            for (List<Pool> group : stackedPools.values()) {
+                SuggestedQuantityDTO suggested = stackedResults.get(group.get(0).getId());
+                group.forEach(pool -> resultMap.put(pool.getId(), suggested));
+            }
+        }
+
+        return resultMap;
+    }
+
+    @SuppressWarnings("checkstyle:indentation")
+    private Map<String, SuggestedQuantityDTO> runSuggestedQuantities(List<Pool> pools, ConsumerDTO consumer,
+        Consumer c, Date date) {
+
         JsonJsContext args = new JsonJsContext(mapper);
 
-        Stream<PoolDTO> poolStream = pools == null ? Stream.empty() :
-            pools.stream().map(this.translator.getStreamMapper(Pool.class, PoolDTO.class));
+        Stream<PoolDTO> poolStream = pools.stream()
+            .map(this.translator.getStreamMapper(Pool.class, PoolDTO.class));
 
         Stream<EntitlementDTO> entStream = c.getEntitlements() == null ? Stream.empty() :
             c.getEntitlements().stream()
@@ -116,7 +179,7 @@ public class QuantityRules {
                 .map(this.translator.getStreamMapper(GuestId.class, GuestIdDTO.class));
 
         args.put("pools", poolStream);
-        args.put("consumer", this.translator.translate(c, ConsumerDTO.class));
+        args.put("consumer", consumer);
         args.put("validEntitlements", entStream);
         args.put("log", log, false);
         args.put("guestIds", guestIdStream);
@@ -135,4 +198,91 @@ public class QuantityRules {
 
         return resultMap;
     }
+
+    /**
+     * Calculates the suggested quantity for pools which do not require the stack coverage rules,
+     * mirroring the get_suggested_quantity_worker rules function: pools which are not
+     * multi-entitlement, or are being considered for a manifest consumer, are always suggested
+     * and incremented by one. Unstacked multi-entitlement pools are suggested one, and
+     * incremented by their instance multiplier for non-guest consumers.
+     *
+     * @param pool
+     *  the pool for which to calculate the suggested quantity
+     *
+     * @param consumer
+     *  the translated consumer for which the quantity is being suggested
+     *
+     * @param guest
+     *  whether or not the consumer is a virtual guest
+     *
+     * @return
+     *  the suggested quantity for the pool, or null if the pool must be evaluated by the rules
+     */
+    private SuggestedQuantityDTO getUnstackedQuantity(Pool pool, ConsumerDTO consumer, boolean guest) {
+        boolean manifest = consumer.getType() != null && Boolean.TRUE.equals(consumer.getType().isManifest());
+        long increment = 1;
+
+        if (!manifest && "yes".equalsIgnoreCase(getProductAttribute(pool, MULTI_ENTITLEMENT_ATTRIBUTE))) {
+            if (getProductAttribute(pool, STACKING_ID_ATTRIBUTE) != null) {
+                return null;
+            }
+
+            String multiplier = getProductAttribute(pool, INSTANCE_ATTRIBUTE);
+            if (multiplier != null && !guest) {
+                try {
+                    increment = Long.parseLong(multiplier.trim());
+                }
+                catch (NumberFormatException e) {
+                    // Leave the odd values to the rules, which parse them more leniently
+                    return null;
+                }
+            }
+        }
+
+        SuggestedQuantityDTO suggested = new SuggestedQuantityDTO();
+        suggested.setSuggested(1L);
+        suggested.setIncrement(increment);
+
+        return suggested;
+    }
+
+    /**
+     * Builds the key used to group stacked pools which will receive identical results from the
+     * rules. The stack coverage rules only read the pool and product attributes, quantity and
+     * consumption of the pool being evaluated.
+     *
+     * @param pool
+     *  the pool for which to build a stack signature
+     *
+     * @return
+     *  the stack signature of the given pool
+     */
+    private List<Object> getStackSignature(Pool pool) {
+        return Arrays.asList(new HashMap<>(pool.getProductAttributes()), new HashMap<>(pool.getAttributes()),
+            pool.getQuantity(), pool.getConsumed());
+    }
+
+    /**
+     * Fetches a product attribute from the given pool, falling back to the pool's own attributes,
+     * in the same way as the getProductAttribute function on the pools used by the rules. As in
+     * the rules, an attribute with a value of zero is considered unset.
+     *
+     * @param pool
+     *  the pool from which to fetch the attribute
+     *
+     * @param key
+     *  the attribute to fetch
+     *
+     * @return
+     *  the value of the attribute, or null if it is not set
+     */
+    private static String getProductAttribute(Pool pool, String key) {
+        String value = pool.getProductAttributes().get(key);
+
+        if (value == null || "0".equals(value)) {
+            value = pool.getAttributes().get(key);
+        }
+
+        return "0".equals(value) ? null : value;
+    }
 }
@@ -0,0 +1,435 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.replay;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * A single line of a capture file. A capture is a sequence of owner and consumer snapshots, taken the
+ * first time an owner or consumer is involved in a captured request, interleaved with the captured
+ * requests themselves. All identifying values are pseudonyms produced by a {@link ReplayAnonymizer}.
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "kind")
+@JsonSubTypes({
+    @JsonSubTypes.Type(value = CaptureRecord.OwnerRecord.class, name = "owner"),
+    @JsonSubTypes.Type(value = CaptureRecord.ConsumerRecord.class, name = "consumer"),
+    @JsonSubTypes.Type(value = CaptureRecord.RequestRecord.class, name = "request")
+})
+@JsonInclude(Include.NON_EMPTY)
+public abstract class CaptureRecord {
+
+    /**
+     * Creates the object mapper used to (de)serialize capture records.
+     *
+     * @return
+     *  a new object mapper
+     */
+    static ObjectMapper createObjectMapper() {
+        return new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    /**
+     * A snapshot of an owner, and of the products and normal pools needed to recreate its
+     * subscriptions. Derived and bonus pools are not captured, as they are regenerated when the normal
+     * pools are recreated.
+     */
+    public static class OwnerRecord extends CaptureRecord {
+        private String id;
+        private String key;
+        private List<ProductRecord> products = new ArrayList<>();
+        private List<PoolRecord> pools = new ArrayList<>();
+
+        public String getId() {
+            return this.id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getKey() {
+            return this.key;
+        }
+
+        public void setKey(String key) {
+            this.key = key;
+        }
+
+        public List<ProductRecord> getProducts() {
+            return this.products;
+        }
+
+        public void setProducts(List<ProductRecord> products) {
+            this.products = products;
+        }
+
+        public List<PoolRecord> getPools() {
+            return this.pools;
+        }
+
+        public void setPools(List<PoolRecord> pools) {
+            this.pools = pools;
+        }
+    }
+
+    /**
+     * A snapshot of a consumer, including the entitlements it held when it was first captured.
+     */
+    public static class ConsumerRecord extends CaptureRecord {
+        private String uuid;
+        private String owner;
+        private String type;
+        private Map<String, String> facts = new HashMap<>();
+        private List<String> installedProducts = new ArrayList<>();
+        private List<String> guestIds = new ArrayList<>();
+        private String hypervisorId;
+        private List<EntitlementRecord> entitlements = new ArrayList<>();
+
+        public String getUuid() {
+            return this.uuid;
+        }
+
+        public void setUuid(String uuid) {
+            this.uuid = uuid;
+        }
+
+        public String getOwner() {
+            return this.owner;
+        }
+
+        public void setOwner(String owner) {
+            this.owner = owner;
+        }
+
+        public String getType() {
+            return this.type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public Map<String, String> getFacts() {
+            return this.facts;
+        }
+
+        public void setFacts(Map<String, String> facts) {
+            this.facts = facts;
+        }
+
+        public List<String> getInstalledProducts() {
+            return this.installedProducts;
+        }
+
+        public void setInstalledProducts(List<String> installedProducts) {
+            this.installedProducts = installedProducts;
+        }
+
+        public List<String> getGuestIds() {
+            return this.guestIds;
+        }
+
+        public void setGuestIds(List<String> guestIds) {
+            this.guestIds = guestIds;
+        }
+
+        public String getHypervisorId() {
+            return this.hypervisorId;
+        }
+
+        public void setHypervisorId(String hypervisorId) {
+            this.hypervisorId = hypervisorId;
+        }
+
+        public List<EntitlementRecord> getEntitlements() {
+            return this.entitlements;
+        }
+
+        public void setEntitlements(List<EntitlementRecord> entitlements) {
+            this.entitlements = entitlements;
+        }
+    }
+
+    /**
+     * A captured request. Path parameters and identifying query parameters are pseudonyms, and the
+     * body, if any, has been anonymized.
+     */
+    public static class RequestRecord extends CaptureRecord {
+        private ReplayEndpoint endpoint;
+        private String method;
+        private String path;
+        private Map<String, List<String>> query = new HashMap<>();
+        private String mediaType;
+        private String body;
+        private String owner;
+        private String consumer;
+        private long offsetMs;
+        private int status;
+        private double durationMs;
+
+        public ReplayEndpoint getEndpoint() {
+            return this.endpoint;
+        }
+
+        public void setEndpoint(ReplayEndpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        public String getMethod() {
+            return this.method;
+        }
+
+        public void setMethod(String method) {
+            this.method = method;
+        }
+
+        public String getPath() {
+            return this.path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public Map<String, List<String>> getQuery() {
+            return this.query;
+        }
+
+        public void setQuery(Map<String, List<String>> query) {
+            this.query = query;
+        }
+
+        public String getMediaType() {
+            return this.mediaType;
+        }
+
+        public void setMediaType(String mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public String getBody() {
+            return this.body;
+        }
+
+        public void setBody(String body) {
+            this.body = body;
+        }
+
+        public String getOwner() {
+            return this.owner;
+        }
+
+        public void setOwner(String owner) {
+            this.owner = owner;
+        }
+
+        public String getConsumer() {
+            return this.consumer;
+        }
+
+        public void setConsumer(String consumer) {
+            this.consumer = consumer;
+        }
+
+        /**
+         * @return
+         *  the time at which the request was received, in milliseconds since capturing started
+         */
+        public long getOffsetMs() {
+            return this.offsetMs;
+        }
+
+        public void setOffsetMs(long offsetMs) {
+            this.offsetMs = offsetMs;
+        }
+
+        public int getStatus() {
+            return this.status;
+        }
+
+        public void setStatus(int status) {
+            this.status = status;
+        }
+
+        public double getDurationMs() {
+            return this.durationMs;
+        }
+
+        public void setDurationMs(double durationMs) {
+            this.durationMs = durationMs;
+        }
+    }
+
+    /**
+     * A captured product. Product names are not captured.
+     */
+    @JsonInclude(Include.NON_EMPTY)
+    public static class ProductRecord {
+        private String id;
+        private Long multiplier;
+        private Map<String, String> attributes = new HashMap<>();
+
+        public String getId() {
+            return this.id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public Long getMultiplier() {
+            return this.multiplier;
+        }
+
+        public void setMultiplier(Long multiplier) {
+            this.multiplier = multiplier;
+        }
+
+        public Map<String, String> getAttributes() {
+            return this.attributes;
+        }
+
+        public void setAttributes(Map<String, String> attributes) {
+            this.attributes = attributes;
+        }
+    }
+
+    /**
+     * A captured normal pool, referencing its products by ID.
+     */
+    @JsonInclude(Include.NON_EMPTY)
+    public static class PoolRecord {
+        private String id;
+        private String productId;
+        private String derivedProductId;
+        private List<String> providedProducts = new ArrayList<>();
+        private List<String> derivedProvidedProducts = new ArrayList<>();
+        private Long quantity;
+        private Date startDate;
+        private Date endDate;
+        private Map<String, String> attributes = new HashMap<>();
+
+        public String getId() {
+            return this.id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getProductId() {
+            return this.productId;
+        }
+
+        public void setProductId(String productId) {
+            this.productId = productId;
+        }
+
+        public String getDerivedProductId() {
+            return this.derivedProductId;
+        }
+
+        public void setDerivedProductId(String derivedProductId) {
+            this.derivedProductId = derivedProductId;
+        }
+
+        public List<String> getProvidedProducts() {
+            return this.providedProducts;
+        }
+
+        public void setProvidedProducts(List<String> providedProducts) {
+            this.providedProducts = providedProducts;
+        }
+
+        public List<String> getDerivedProvidedProducts() {
+            return this.derivedProvidedProducts;
+        }
+
+        public void setDerivedProvidedProducts(List<String> derivedProvidedProducts) {
+            this.derivedProvidedProducts = derivedProvidedProducts;
+        }
+
+        public Long getQuantity() {
+            return this.quantity;
+        }
+
+        public void setQuantity(Long quantity) {
+            this.quantity = quantity;
+        }
+
+        public Date getStartDate() {
+            return this.startDate;
+        }
+
+        public void setStartDate(Date startDate) {
+            this.startDate = startDate;
+        }
+
+        public Date getEndDate() {
+            return this.endDate;
+        }
+
+        public void setEndDate(Date endDate) {
+            this.endDate = endDate;
+        }
+
+        public Map<String, String> getAttributes() {
+            return this.attributes;
+        }
+
+        public void setAttributes(Map<String, String> attributes) {
+            this.attributes = attributes;
+        }
+    }
+
+    /**
+     * A captured entitlement, referencing its pool by pseudonym.
+     */
+    @JsonInclude(Include.NON_EMPTY)
+    public static class EntitlementRecord {
+        private String pool;
+        private Integer quantity;
+
+        public String getPool() {
+            return this.pool;
+        }
+
+        public void setPool(String pool) {
+            this.pool = pool;
+        }
+
+        public Integer getQuantity() {
+            return this.quantity;
+        }
+
+        public void setQuantity(Integer quantity) {
+            this.quantity = quantity;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+
+
+/**
+ * Writes capture records as gzip-compressed JSON lines. The compressed stream is flushed after every
+ * record, so a capture remains readable up to its last complete record even if the writer is never
+ * closed.
+ */
+public class CaptureWriter implements Closeable {
+
+    private final ObjectMapper mapper;
+    private final Writer writer;
+    private long records;
+
+    /**
+     * Creates a writer appending records to the given stream, which is closed along with the writer.
+     *
+     * @param out
+     *  the stream to write records to
+     *
+     * @throws IOException
+     *  if the compressed stream cannot be started
+     */
+    public CaptureWriter(OutputStream out) throws IOException {
+        this.mapper = CaptureRecord.createObjectMapper();
+        this.writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(out, true),
+            StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Appends the given record to the capture.
+     *
+     * @param record
+     *  the record to write
+     *
+     * @throws IOException
+     *  if the record cannot be written
+     */
+    public synchronized void write(CaptureRecord record) throws IOException {
+        this.writer.write(this.mapper.writeValueAsString(record));
+        this.writer.write('\n');
+        this.writer.flush();
+        ++this.records;
+    }
+
+    /**
+     * @return
+     *  the number of records written
+     */
+    public synchronized long getRecordCount() {
+        return this.records;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.writer.close();
+    }
+}
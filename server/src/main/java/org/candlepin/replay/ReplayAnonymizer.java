@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.replay;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+
+
+/**
+ * Replaces the identifying values of captured requests and entities with pseudonyms. Pseudonyms are
+ * derived from an HMAC of the original value, so the same value always maps to the same pseudonym
+ * under a given secret -- a consumer UUID in a request path still matches the UUID of its captured
+ * consumer, and a guest ID reported by a hypervisor still matches the virt.uuid fact of the guest --
+ * but the original value cannot be recovered without the secret, which is never written to a
+ * capture.
+ * <p></p>
+ * Consumer facts are reduced to those the rules act upon; all other facts are dropped.
+ */
+public class ReplayAnonymizer {
+
+    /** The prefix of every pseudonym, which also lets the replay driver recognize them */
+    public static final String PSEUDONYM_PREFIX = "rp";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int PSEUDONYM_BYTES = 12;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Facts read by the rules, which are kept as-is */
+    private static final Set<String> RETAINED_FACTS = Collections.unmodifiableSet(new HashSet<>(
+        Arrays.asList("cpu.cpu_socket(s)", "cpu.core(s)_per_socket", "memory.memtotal", "uname.machine",
+        "virt.is_guest", "band.storage.usage", "system.certificate_version", "distributor_version",
+        "lscpu.model_name", "hypervisor.type")));
+
+    /** Facts identifying a system or its host, which are kept as pseudonyms */
+    private static final Set<String> PSEUDONYMIZED_FACTS = Collections.unmodifiableSet(new HashSet<>(
+        Arrays.asList("virt.uuid", "dmi.system.uuid")));
+
+    /** Keys of JSON request bodies whose string values identify a system, host or guest */
+    private static final Set<String> PSEUDONYMIZED_FIELDS = Collections.unmodifiableSet(new HashSet<>(
+        Arrays.asList("hypervisorId", "guestId", "guestIds", "name", "uuid", "id", "reporterId")));
+
+    private final byte[] secret;
+    private final ThreadLocal<Mac> macs;
+
+    /**
+     * Creates an anonymizer deriving pseudonyms with the given secret. If the secret is null or empty,
+     * a random secret is generated.
+     *
+     * @param secret
+     *  the secret with which to derive pseudonyms, or null to generate one
+     */
+    public ReplayAnonymizer(String secret) {
+        if (secret == null || secret.isEmpty()) {
+            this.secret = new byte[32];
+            new SecureRandom().nextBytes(this.secret);
+        }
+        else {
+            this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        }
+
+        this.macs = ThreadLocal.withInitial(this::createMac);
+    }
+
+    private Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(this.secret, HMAC_ALGORITHM));
+            return mac;
+        }
+        catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to initialize " + HMAC_ALGORITHM, e);
+        }
+    }
+
+    /**
+     * Fetches the pseudonym of the given value.
+     *
+     * @param value
+     *  the value to pseudonymize
+     *
+     * @return
+     *  the pseudonym of the given value, or null if the value is null
+     */
+    public String pseudonymize(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        byte[] digest = this.macs.get().doFinal(value.getBytes(StandardCharsets.UTF_8));
+        StringBuilder builder = new StringBuilder(PSEUDONYM_PREFIX.length() + PSEUDONYM_BYTES * 2)
+            .append(PSEUDONYM_PREFIX);
+
+        for (int i = 0; i < PSEUDONYM_BYTES; ++i) {
+            builder.append(HEX[(digest[i] >> 4) & 0xF]).append(HEX[digest[i] & 0xF]);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Fetches the pseudonym of the given guest ID. Guest IDs are matched without regard to case, so
+     * they are normalized before being pseudonymized.
+     *
+     * @param guestId
+     *  the guest ID to pseudonymize
+     *
+     * @return
+     *  the pseudonym of the given guest ID, or null if the guest ID is null
+     */
+    public String pseudonymizeGuestId(String guestId) {
+        return guestId != null ? this.pseudonymize(guestId.toLowerCase(Locale.ROOT)) : null;
+    }
+
+    /**
+     * Reduces the given consumer facts to those read by the rules, replacing the values of the facts
+     * which identify the consumer or its host with pseudonyms.
+     *
+     * @param facts
+     *  the facts to anonymize; not modified
+     *
+     * @return
+     *  a new map containing the anonymized facts
+     */
+    public Map<String, String> anonymizeFacts(Map<String, String> facts) {
+        Map<String, String> anonymized = new HashMap<>();
+
+        if (facts != null) {
+            for (Map.Entry<String, String> entry : facts.entrySet()) {
+                if (RETAINED_FACTS.contains(entry.getKey())) {
+                    anonymized.put(entry.getKey(), entry.getValue());
+                }
+                else if (PSEUDONYMIZED_FACTS.contains(entry.getKey())) {
+                    anonymized.put(entry.getKey(), this.pseudonymizeGuestId(entry.getValue()));
+                }
+            }
+        }
+
+        return anonymized;
+    }
+
+    /**
+     * Anonymizes a hypervisor check-in body. Host and guest identifiers and names are replaced with
+     * pseudonyms, and the facts of reported hypervisors are reduced as per
+     * {@link #anonymizeFacts(Map)}. The legacy format, mapping host IDs to lists of guests, has its
+     * keys pseudonymized as well.
+     *
+     * @param body
+     *  the parsed check-in body
+     *
+     * @param legacy
+     *  whether the body is in the legacy host-to-guests format
+     *
+     * @return
+     *  an anonymized copy of the body
+     */
+    public JsonNode anonymizeHypervisorBody(JsonNode body, boolean legacy) {
+        if (legacy && body != null && body.isObject()) {
+            ObjectNode anonymized = JsonNodeFactory.instance.objectNode();
+            Iterator<Map.Entry<String, JsonNode>> fields = body.fields();
+
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                anonymized.set(this.pseudonymize(field.getKey()), this.anonymizeNode(field.getValue(), true));
+            }
+
+            return anonymized;
+        }
+
+        return this.anonymizeNode(body, false);
+    }
+
+    private JsonNode anonymizeNode(JsonNode node, boolean identifying) {
+        if (node == null) {
+            return null;
+        }
+
+        if (node.isTextual()) {
+            return identifying ? new TextNode(this.pseudonymizeGuestId(node.textValue())) : node;
+        }
+
+        if (node.isArray()) {
+            ArrayNode anonymized = JsonNodeFactory.instance.arrayNode();
+            for (JsonNode element : node) {
+                anonymized.add(this.anonymizeNode(element, identifying));
+            }
+
+            return anonymized;
+        }
+
+        if (node.isObject()) {
+            ObjectNode anonymized = JsonNodeFactory.instance.objectNode();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+
+                if ("facts".equals(field.getKey()) && field.getValue().isObject()) {
+                    anonymized.set(field.getKey(), this.anonymizeFactsNode(field.getValue()));
+                }
+                else {
+                    anonymized.set(field.getKey(), this.anonymizeNode(field.getValue(),
+                        PSEUDONYMIZED_FIELDS.contains(field.getKey())));
+                }
+            }
+
+            return anonymized;
+        }
+
+        return node;
+    }
+
+    private ObjectNode anonymizeFactsNode(JsonNode facts) {
+        Map<String, String> values = new HashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = facts.fields();
+
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            values.put(field.getKey(), field.getValue().asText());
+        }
+
+        ObjectNode anonymized = JsonNodeFactory.instance.objectNode();
+        this.anonymizeFacts(values).forEach(anonymized::put);
+
+        return anonymized;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.replay;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+
+
+/**
+ * The endpoints whose requests may be captured and replayed. Each endpoint is identified by the
+ * simple names of the resource class and methods which serve it.
+ */
+public enum ReplayEndpoint {
+    BIND("ConsumerResource", "bind"),
+    COMPLIANCE("ConsumerResource", "getComplianceStatus"),
+    POOL_LISTING("OwnerResource", "listPools"),
+    CONSUMER_POOL_LISTING("PoolResource", "list"),
+    HYPERVISOR_CHECKIN("HypervisorResource", "hypervisorUpdate", "hypervisorUpdateAsync");
+
+    private final String resourceClass;
+    private final Set<String> resourceMethods;
+
+    ReplayEndpoint(String resourceClass, String... resourceMethods) {
+        this.resourceClass = resourceClass;
+        this.resourceMethods = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(resourceMethods)));
+    }
+
+    /**
+     * Looks up the endpoint served by the given resource method.
+     *
+     * @param resourceClass
+     *  the resource class handling a request
+     *
+     * @param method
+     *  the resource method handling a request
+     *
+     * @return
+     *  the matching endpoint, or null if requests to the given method are not captured
+     */
+    public static ReplayEndpoint forResourceMethod(Class<?> resourceClass, Method method) {
+        if (resourceClass == null || method == null) {
+            return null;
+        }
+
+        for (ReplayEndpoint endpoint : values()) {
+            if (endpoint.resourceClass.equals(resourceClass.getSimpleName()) &&
+                endpoint.resourceMethods.contains(method.getName())) {
+                return endpoint;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,472 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.replay;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+import org.candlepin.model.ConsumerInstalledProduct;
+import org.candlepin.model.ConsumerType;
+import org.candlepin.model.ConsumerTypeCurator;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.GuestId;
+import org.candlepin.model.Owner;
+import org.candlepin.model.OwnerCurator;
+import org.candlepin.model.Pool;
+import org.candlepin.model.PoolCurator;
+import org.candlepin.model.Product;
+import org.candlepin.replay.CaptureRecord.ConsumerRecord;
+import org.candlepin.replay.CaptureRecord.EntitlementRecord;
+import org.candlepin.replay.CaptureRecord.OwnerRecord;
+import org.candlepin.replay.CaptureRecord.PoolRecord;
+import org.candlepin.replay.CaptureRecord.ProductRecord;
+import org.candlepin.replay.CaptureRecord.RequestRecord;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.core.MultivaluedMap;
+
+
+
+/**
+ * Records anonymized bind, compliance, pool listing and hypervisor check-in requests, along with
+ * snapshots of the owners and consumers they involve, so they may later be replayed against a
+ * candidate build by the replay driver (see bin/replay-capture). Recording is disabled unless the
+ * candlepin.replay.capture.enabled property is set, and stops once the configured number of requests
+ * has been captured.
+ * <p></p>
+ * Recording must never fail a request: any error encountered while capturing a request is logged and
+ * the request is left out of the capture.
+ */
+@Singleton
+public class ReplayRecorder {
+    private static Logger log = LoggerFactory.getLogger(ReplayRecorder.class);
+
+    /** Query parameters whose values identify an owner, consumer, pool or reporter */
+    private static final Set<String> PSEUDONYMIZED_PARAMS = Collections.unmodifiableSet(new HashSet<>(
+        Arrays.asList("consumer", "owner", "pool", "from_pool", "subscription", "reporter_id")));
+
+    /** Query parameters which may contain personal data, and are not captured */
+    private static final Set<String> DROPPED_PARAMS = Collections.unmodifiableSet(new HashSet<>(
+        Arrays.asList("email", "email_locale", "matches", "activation_key")));
+
+    private final OwnerCurator ownerCurator;
+    private final ConsumerCurator consumerCurator;
+    private final ConsumerTypeCurator consumerTypeCurator;
+    private final PoolCurator poolCurator;
+    private final ReplayAnonymizer anonymizer;
+    private final ObjectMapper mapper;
+
+    private final boolean enabled;
+    private final long maxRequests;
+    private final Path directory;
+
+    private final Set<String> capturedOwners;
+    private final Set<String> capturedConsumers;
+    private final AtomicLong requests;
+    private final long started;
+
+    private CaptureWriter writer;
+    private volatile boolean failed;
+
+    @Inject
+    public ReplayRecorder(Configuration config, OwnerCurator ownerCurator, ConsumerCurator consumerCurator,
+        ConsumerTypeCurator consumerTypeCurator, PoolCurator poolCurator) {
+
+        this.ownerCurator = ownerCurator;
+        this.consumerCurator = consumerCurator;
+        this.consumerTypeCurator = consumerTypeCurator;
+        this.poolCurator = poolCurator;
+
+        this.enabled = config.getBoolean(ConfigProperties.REPLAY_CAPTURE_ENABLED, false);
+        this.maxRequests = config.getInt(ConfigProperties.REPLAY_CAPTURE_MAX_REQUESTS, 0);
+        this.directory = Paths.get(config.getString(ConfigProperties.REPLAY_CAPTURE_DIR));
+        this.anonymizer = new ReplayAnonymizer(config.getString(ConfigProperties.REPLAY_CAPTURE_SECRET, ""));
+        this.mapper = new ObjectMapper();
+
+        this.capturedOwners = ConcurrentHashMap.newKeySet();
+        this.capturedConsumers = ConcurrentHashMap.newKeySet();
+        this.requests = new AtomicLong();
+        this.started = System.currentTimeMillis();
+    }
+
+    /**
+     * Checks whether further requests should be captured.
+     *
+     * @return
+     *  true if capturing is enabled, has not failed and has not reached its request limit
+     */
+    public boolean isEnabled() {
+        return this.enabled && !this.failed &&
+            (this.maxRequests <= 0 || this.requests.get() < this.maxRequests);
+    }
+
+    /**
+     * @return
+     *  the anonymizer used to derive the pseudonyms of this recorder
+     */
+    public ReplayAnonymizer getAnonymizer() {
+        return this.anonymizer;
+    }
+
+    /**
+     * Begins capturing a request, before it is handled. The owner and consumer targeted by the request
+     * are snapshotted at this point if they have not already been captured, so the capture reflects
+     * their state before any change made by the request.
+     *
+     * @param endpoint
+     *  the endpoint receiving the request
+     *
+     * @param method
+     *  the HTTP method of the request
+     *
+     * @param path
+     *  the path of the request, relative to the API root
+     *
+     * @param pathParams
+     *  the path parameters of the request
+     *
+     * @param queryParams
+     *  the query parameters of the request
+     *
+     * @param mediaType
+     *  the media type of the request body, or null if the request has no body
+     *
+     * @param body
+     *  the request body, or null if the request has no body
+     *
+     * @return
+     *  the record of the request, to be passed to {@link #complete(RequestRecord, int, long)} once the
+     *  request is handled, or null if the request is not captured
+     */
+    public RequestRecord begin(ReplayEndpoint endpoint, String method, String path,
+        MultivaluedMap<String, String> pathParams, MultivaluedMap<String, String> queryParams,
+        String mediaType, String body) {
+
+        if (!this.isEnabled()) {
+            return null;
+        }
+
+        if (this.maxRequests > 0 && this.requests.incrementAndGet() > this.maxRequests) {
+            return null;
+        }
+
+        try {
+            RequestRecord record = new RequestRecord();
+            record.setEndpoint(endpoint);
+            record.setMethod(method);
+            record.setPath(this.anonymizePath(path, pathParams));
+            record.setQuery(this.anonymizeQuery(queryParams));
+            record.setOffsetMs(System.currentTimeMillis() - this.started);
+
+            if (endpoint == ReplayEndpoint.HYPERVISOR_CHECKIN && body != null && !body.isEmpty()) {
+                JsonNode parsed = this.mapper.readTree(body);
+                boolean legacy = !pathParams.containsKey("owner");
+
+                record.setMediaType(mediaType);
+                record.setBody(this.mapper.writeValueAsString(
+                    this.anonymizer.anonymizeHypervisorBody(parsed, legacy)));
+            }
+
+            Consumer consumer = this.resolveConsumer(endpoint, pathParams, queryParams);
+            Owner owner = consumer != null ? consumer.getOwner() :
+                this.resolveOwner(endpoint, pathParams, queryParams);
+
+            if (owner != null) {
+                record.setOwner(this.anonymizer.pseudonymize(owner.getKey()));
+                this.captureOwner(owner);
+            }
+
+            if (consumer != null) {
+                record.setConsumer(this.anonymizer.pseudonymize(consumer.getUuid()));
+                this.captureConsumer(consumer, owner);
+            }
+
+            return record;
+        }
+        catch (IOException | RuntimeException e) {
+            log.warn("Unable to capture {} request to {}", endpoint, path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Completes and writes the record of a captured request once it has been handled.
+     *
+     * @param record
+     *  the record returned by {@link #begin}
+     *
+     * @param status
+     *  the HTTP status of the response
+     *
+     * @param durationNanos
+     *  the time taken to handle the request, in nanoseconds
+     */
+    public void complete(RequestRecord record, int status, long durationNanos) {
+        if (record == null) {
+            return;
+        }
+
+        record.setStatus(status);
+        record.setDurationMs(durationNanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+        this.write(record);
+    }
+
+    private String anonymizePath(String path, MultivaluedMap<String, String> pathParams) {
+        Set<String> values = new HashSet<>();
+        if (pathParams != null) {
+            pathParams.values().forEach(values::addAll);
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+
+            builder.append('/').append(values.contains(segment) ? this.anonymizer.pseudonymize(segment) :
+                segment);
+        }
+
+        return builder.toString();
+    }
+
+    private Map<String, List<String>> anonymizeQuery(MultivaluedMap<String, String> queryParams) {
+        Map<String, List<String>> query = new HashMap<>();
+        if (queryParams == null) {
+            return query;
+        }
+
+        for (Map.Entry<String, List<String>> entry : queryParams.entrySet()) {
+            if (DROPPED_PARAMS.contains(entry.getKey())) {
+                continue;
+            }
+
+            List<String> values = new ArrayList<>(entry.getValue());
+            if (PSEUDONYMIZED_PARAMS.contains(entry.getKey())) {
+                values.replaceAll(this.anonymizer::pseudonymize);
+            }
+
+            query.put(entry.getKey(), values);
+        }
+
+        return query;
+    }
+
+    private Consumer resolveConsumer(ReplayEndpoint endpoint, MultivaluedMap<String, String> pathParams,
+        MultivaluedMap<String, String> queryParams) {
+
+        String uuid = null;
+
+        switch (endpoint) {
+            case BIND:
+            case COMPLIANCE:
+                uuid = pathParams.getFirst("consumer_uuid");
+                break;
+
+            case POOL_LISTING:
+            case CONSUMER_POOL_LISTING:
+                uuid = queryParams.getFirst("consumer");
+                break;
+
+            default:
+                // Hypervisor check-ins target an owner rather than a consumer
+        }
+
+        return uuid != null ? this.consumerCurator.findByUuid(uuid) : null;
+    }
+
+    private Owner resolveOwner(ReplayEndpoint endpoint, MultivaluedMap<String, String> pathParams,
+        MultivaluedMap<String, String> queryParams) {
+
+        switch (endpoint) {
+            case POOL_LISTING:
+                return this.ownerCurator.getByKey(pathParams.getFirst("owner_key"));
+
+            case CONSUMER_POOL_LISTING:
+                String ownerId = queryParams.getFirst("owner");
+                return ownerId != null ? this.ownerCurator.get(ownerId) : null;
+
+            case HYPERVISOR_CHECKIN:
+                String ownerKey = pathParams.containsKey("owner") ? pathParams.getFirst("owner") :
+                    queryParams.getFirst("owner");
+
+                return ownerKey != null ? this.ownerCurator.getByKey(ownerKey) : null;
+
+            default:
+                return null;
+        }
+    }
+
+    private void captureOwner(Owner owner) {
+        String key = this.anonymizer.pseudonymize(owner.getKey());
+        if (!this.capturedOwners.add(key)) {
+            return;
+        }
+
+        OwnerRecord record = new OwnerRecord();
+        record.setId(this.anonymizer.pseudonymize(owner.getId()));
+        record.setKey(key);
+
+        Map<String, ProductRecord> products = new HashMap<>();
+        List<Pool> pools = this.poolCurator.listByOwnerAndType(owner, Pool.PoolType.NORMAL).list();
+
+        for (Pool pool : pools) {
+            PoolRecord poolRecord = new PoolRecord();
+            poolRecord.setId(this.anonymizer.pseudonymize(pool.getId()));
+            poolRecord.setProductId(this.captureProduct(products, pool.getProduct()));
+            poolRecord.setDerivedProductId(this.captureProduct(products, pool.getDerivedProduct()));
+            poolRecord.setProvidedProducts(this.captureProducts(products, pool.getProvidedProducts()));
+            poolRecord.setDerivedProvidedProducts(
+                this.captureProducts(products, pool.getDerivedProvidedProducts()));
+            poolRecord.setQuantity(pool.getQuantity());
+            poolRecord.setStartDate(pool.getStartDate());
+            poolRecord.setEndDate(pool.getEndDate());
+            poolRecord.setAttributes(new HashMap<>(pool.getAttributes()));
+
+            record.getPools().add(poolRecord);
+        }
+
+        record.setProducts(new ArrayList<>(products.values()));
+        this.write(record);
+    }
+
+    private List<String> captureProducts(Map<String, ProductRecord> products, Collection<Product> source) {
+        List<String> ids = new ArrayList<>();
+
+        if (source != null) {
+            for (Product product : source) {
+                ids.add(this.captureProduct(products, product));
+            }
+        }
+
+        return ids;
+    }
+
+    private String captureProduct(Map<String, ProductRecord> products, Product product) {
+        if (product == null) {
+            return null;
+        }
+
+        products.computeIfAbsent(product.getId(), id -> {
+            ProductRecord record = new ProductRecord();
+            record.setId(id);
+            record.setMultiplier(product.getMultiplier());
+            record.setAttributes(new HashMap<>(product.getAttributes()));
+
+            return record;
+        });
+
+        return product.getId();
+    }
+
+    private void captureConsumer(Consumer consumer, Owner owner) {
+        String uuid = this.anonymizer.pseudonymize(consumer.getUuid());
+        if (!this.capturedConsumers.add(uuid)) {
+            return;
+        }
+
+        ConsumerType type = this.consumerTypeCurator.getConsumerType(consumer);
+
+        ConsumerRecord record = new ConsumerRecord();
+        record.setUuid(uuid);
+        record.setOwner(this.anonymizer.pseudonymize(owner.getKey()));
+        record.setType(type.getLabel());
+        record.setFacts(this.anonymizer.anonymizeFacts(consumer.getFacts()));
+
+        if (consumer.getHypervisorId() != null) {
+            record.setHypervisorId(
+                this.anonymizer.pseudonymizeGuestId(consumer.getHypervisorId().getHypervisorId()));
+        }
+
+        for (ConsumerInstalledProduct installed : consumer.getInstalledProducts()) {
+            record.getInstalledProducts().add(installed.getProductId());
+        }
+
+        for (GuestId guestId : consumer.getGuestIds()) {
+            record.getGuestIds().add(this.anonymizer.pseudonymizeGuestId(guestId.getGuestId()));
+        }
+
+        for (Entitlement entitlement : consumer.getEntitlements()) {
+            EntitlementRecord entRecord = new EntitlementRecord();
+            entRecord.setPool(this.anonymizer.pseudonymize(entitlement.getPool().getId()));
+            entRecord.setQuantity(entitlement.getQuantity());
+
+            record.getEntitlements().add(entRecord);
+        }
+
+        this.write(record);
+    }
+
+    private void write(CaptureRecord record) {
+        try {
+            this.getWriter().write(record);
+        }
+        catch (IOException e) {
+            log.error("Unable to write to the request capture; capturing has been disabled", e);
+            this.failed = true;
+        }
+    }
+
+    /**
+     * Fetches the writer of the capture, opening a new capture file in the configured directory the
+     * first time it is called.
+     *
+     * @throws IOException
+     *  if the capture file cannot be created
+     *
+     * @return
+     *  the writer of the capture
+     */
+    protected synchronized CaptureWriter getWriter() throws IOException {
+        if (this.writer == null) {
+            Files.createDirectories(this.directory);
+
+            String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(this.started));
+            Path file = this.directory.resolve(String.format("capture-%s.jsonl.gz", timestamp));
+
+            log.info("Capturing requests for replay to {}", file);
+            this.writer = new CaptureWriter(Files.newOutputStream(file));
+        }
+
+        return this.writer;
+    }
+}
@@ -41,6 +41,7 @@ import org.candlepin.common.paging.PageRequest;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.controller.AutobindDisabledForOwnerException;
 import org.candlepin.controller.AutobindHypervisorDisabledException;
+import org.candlepin.controller.CertificateBundleManager;
 import org.candlepin.controller.Entitler;
 import org.candlepin.controller.ManifestManager;
 import org.candlepin.controller.PoolManager;
@@ -56,9 +57,11 @@ import org.candlepin.dto.api.v1.HypervisorIdDTO;
 import org.candlepin.dto.api.v1.OwnerDTO;
 import org.candlepin.dto.api.v1.PoolQuantityDTO;
 import org.candlepin.dto.api.v1.SystemPurposeComplianceStatusDTO;
+import org.candlepin.hibernate.QueryBudget;
 import org.candlepin.model.CandlepinQuery;
 import org.candlepin.model.CdnCurator;
 import org.candlepin.model.Certificate;
+import org.candlepin.model.CertificateBundle;
 import org.candlepin.model.CertificateSerialDto;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCapability;
@@ -100,6 +103,7 @@ import org.candlepin.policy.js.compliance.ComplianceRules;
 import org.candlepin.policy.js.compliance.ComplianceStatus;
 import org.candlepin.policy.js.consumer.ConsumerRules;
 import org.candlepin.resource.dto.AutobindData;
+import org.candlepin.resource.dto.CertificateBundleListing;
 import org.candlepin.resource.dto.ContentAccessListing;
 import org.candlepin.resource.util.CalculatedAttributesUtil;
 import org.candlepin.resource.util.ConsumerBindUtil;
@@ -174,6 +178,7 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -188,6 +193,12 @@ public class ConsumerResource {
 
     private static Logger log = LoggerFactory.getLogger(ConsumerResource.class);
 
+    /** Response header carrying the version of a zipped certificate bundle */
+    public static final String BUNDLE_VERSION_HEADER = "X-Candlepin-Bundle-Version";
+
+    /** Response header listing the serials removed from a zipped certificate bundle delta */
+    public static final String BUNDLE_REMOVED_SERIALS_HEADER = "X-Candlepin-Removed-Serials";
+
     private ConsumerCurator consumerCurator;
     private ConsumerTypeCurator consumerTypeCurator;
     private OwnerProductCurator ownerProductCurator;
@@ -222,6 +233,7 @@ public class ConsumerResource {
     private ConsumerEnricher consumerEnricher;
     private Provider<GuestMigration> migrationProvider;
     private ModelTranslator translator;
+    private CertificateBundleManager certBundleManager;
 
     @Inject
     @SuppressWarnings({"checkstyle:parameternumber"})
@@ -249,7 +261,8 @@ public class ConsumerResource {
         ConsumerTypeValidator consumerTypeValidator,
         ConsumerEnricher consumerEnricher,
         Provider<GuestMigration> migrationProvider,
-        ModelTranslator translator) {
+        ModelTranslator translator,
+        CertificateBundleManager certBundleManager) {
 
         this.consumerCurator = consumerCurator;
         this.consumerTypeCurator = consumerTypeCurator;
@@ -289,6 +302,7 @@ public class ConsumerResource {
         this.consumerEnricher = consumerEnricher;
         this.migrationProvider = migrationProvider;
         this.translator = translator;
+        this.certBundleManager = certBundleManager;
     }
 
     /**
@@ -485,6 +499,7 @@ public class ConsumerResource {
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Path("{consumer_uuid}")
+    @QueryBudget(15)
     public ConsumerDTO getConsumer(
         @PathParam("consumer_uuid") @Verify(Consumer.class) String uuid) {
         Consumer consumer = consumerCurator.verifyAndLookupConsumer(uuid);
@@ -1538,7 +1553,7 @@ public class ConsumerResource {
         }
         else if (!existing.factsAreEqual(incomingFacts)) {
             log.info("Updating facts.");
-            existing.setFacts(incomingFacts);
+            this.consumerCurator.updateFacts(existing, incomingFacts);
             return true;
         }
         return false;
@@ -1892,6 +1907,227 @@ public class ConsumerResource {
         }
     }
 
+    @ApiOperation(notes = "Retrieves the versioned bundle of Entitlement Certificates for the Consumer. " +
+        "If the bundle has not changed since the entity tag given in the If-None-Match header, a 304 " +
+        "response is returned instead. If a previous bundle version is provided, only the certificates " +
+        "added since that version are returned, along with the serials of the certificates removed " +
+        "since then. The full bundle is returned if a delta from the given version is no longer available.",
+        value = "getEntitlementCertificateBundle", response = CertificateBundleListing.class)
+    @ApiResponses({ @ApiResponse(code = 404, message = ""), @ApiResponse(code = 304, message = "") })
+    @GET
+    @Path("{consumer_uuid}/certificates/bundle")
+    @Produces(MediaType.APPLICATION_JSON)
+    @UpdateConsumerCheckIn
+    public Response getEntitlementCertificateBundle(
+        @PathParam("consumer_uuid") @Verify(Consumer.class) String consumerUuid,
+        @QueryParam("since") Long since,
+        @HeaderParam("If-None-Match") String ifNoneMatch) {
+
+        log.debug("Getting client certificate bundle for consumer: {}", consumerUuid);
+        Consumer consumer = consumerCurator.verifyAndLookupConsumer(consumerUuid);
+
+        revokeOnGuestMigration(consumer);
+
+        // Avoid regenerating any certificates if the client already has the current bundle
+        CertificateBundle bundle = this.certBundleManager.getBundle(consumer);
+        if (bundle != null) {
+            EntityTag etag = this.getBundleEntityTag(bundle, "");
+
+            if (this.matchesEntityTag(ifNoneMatch, etag) &&
+                this.isCertificateBundleCurrent(consumer, bundle)) {
+
+
+                return Response.notModified(etag).build();
+            }
+        }
+
+        poolManager.regenerateDirtyEntitlements(consumer);
+
+        ContentAccessCertificate cac = this.getContentAccessCertificate(consumer);
+        bundle = this.refreshCertificateBundle(consumer, cac);
+
+        EntityTag etag = this.getBundleEntityTag(bundle, "");
+        if (this.matchesEntityTag(ifNoneMatch, etag)) {
+            return Response.notModified(etag).build();
+        }
+
+        CertificateBundleListing listing = new CertificateBundleListing();
+        listing.setVersion(bundle.getVersion());
+
+        Set<Long> serials = null;
+        if (since != null && bundle.hasDeltaFrom(since)) {
+            serials = bundle.getSerialsAddedSince(since);
+
+            listing.setDelta(true);
+            listing.setRemovedSerials(new ArrayList<>(bundle.getSerialsRemovedSince(since)));
+        }
+
+        for (EntitlementCertificate cert : entCertService.listForConsumer(consumer)) {
+            if (serials == null || serials.contains(cert.getSerial().getId())) {
+                listing.getCertificates().add(translator.translate(cert, CertificateDTO.class));
+            }
+        }
+
+        if (cac != null && (serials == null || serials.contains(cac.getSerial().getId()))) {
+            listing.getCertificates().add(translator.translate(cac, CertificateDTO.class));
+        }
+
+        return Response.ok(listing, MediaType.APPLICATION_JSON)
+            .tag(etag)
+            .build();
+    }
+
+    @ApiOperation(notes = "Retrieves the versioned bundle of Entitlement Certificates for the Consumer " +
+        "as a compressed file. Entity tags and previous bundle versions are handled as they are for " +
+        "the JSON bundle; the bundle version and, for deltas, the serials removed since the given " +
+        "version are returned in the response headers.",
+        value = "exportCertificateBundle")
+    @ApiResponses({ @ApiResponse(code = 500, message = ""), @ApiResponse(code = 404, message = ""),
+        @ApiResponse(code = 304, message = "") })
+    @GET
+    @Produces("application/zip")
+    @Path("/{consumer_uuid}/certificates/bundle")
+    public Response exportCertificateBundle(
+        @PathParam("consumer_uuid") @Verify(Consumer.class) String consumerUuid,
+        @QueryParam("since") Long since,
+        @HeaderParam("If-None-Match") String ifNoneMatch) {
+
+        Consumer consumer = consumerCurator.verifyAndLookupConsumer(consumerUuid);
+
+        revokeOnGuestMigration(consumer);
+
+        // Avoid regenerating any certificates if the client already has the current bundle
+        CertificateBundle bundle = this.certBundleManager.getBundle(consumer);
+        if (bundle != null) {
+            EntityTag etag = this.getBundleEntityTag(bundle, "-zip");
+
+            if (this.matchesEntityTag(ifNoneMatch, etag) &&
+                this.isCertificateBundleCurrent(consumer, bundle)) {
+
+
+                return Response.notModified(etag).build();
+            }
+        }
+
+        poolManager.regenerateDirtyEntitlements(consumer);
+
+        ContentAccessCertificate cac = this.getContentAccessCertificate(consumer);
+        bundle = this.refreshCertificateBundle(consumer, cac);
+
+        EntityTag etag = this.getBundleEntityTag(bundle, "-zip");
+        if (this.matchesEntityTag(ifNoneMatch, etag)) {
+            return Response.notModified(etag).build();
+        }
+
+        Set<Long> serials = null;
+        Set<Long> removed = null;
+        if (since != null && bundle.hasDeltaFrom(since)) {
+            serials = bundle.getSerialsAddedSince(since);
+            removed = bundle.getSerialsRemovedSince(since);
+        }
+
+        try {
+            File archive = manifestManager.generateEntitlementArchive(consumer, serials);
+
+            Response.ResponseBuilder builder = Response.ok(archive, "application/zip")
+                .tag(etag)
+                .header("Content-Disposition", "attachment; filename=" + archive.getName())
+                .header(BUNDLE_VERSION_HEADER, bundle.getVersion());
+
+            if (removed != null) {
+                builder.header(BUNDLE_REMOVED_SERIALS_HEADER, StringUtils.join(removed, ","));
+            }
+
+            return builder.build();
+        }
+        catch (ExportCreationException e) {
+            throw new IseException(
+                i18n.tr("Unable to create entitlement certificate archive"), e);
+        }
+    }
+
+    private ContentAccessCertificate getContentAccessCertificate(Consumer consumer) {
+        try {
+            return contentAccessCertService.getCertificate(consumer);
+        }
+        catch (IOException ioe) {
+            throw new BadRequestException(i18n.tr("Cannot retrieve content access certificate"), ioe);
+        }
+        catch (GeneralSecurityException gse) {
+            throw new BadRequestException(i18n.tr("Cannot retrieve content access certificate"), gse);
+        }
+    }
+
+    /*
+     * Checks whether the certificate bundle of the consumer is up to date without regenerating
+     * any certificates: the consumer has no dirty entitlements, its serials are unchanged, and its
+     * content access certificate and payload have not been reissued or regenerated since the
+     * bundle was last refreshed
+     */
+    private boolean isCertificateBundleCurrent(Consumer consumer, CertificateBundle bundle) {
+        if (!this.entitlementCurator.listDirty(consumer).isEmpty()) {
+            return false;
+        }
+
+        List<Long> serials = new ArrayList<>(entCertService.listEntitlementSerialIds(consumer));
+        String contentAccessVersion = this.contentAccessCertService.getContentAccessVersion(consumer);
+
+        ContentAccessCertificate cac = consumer.getContentAccessCert();
+        if (contentAccessVersion != null && cac != null) {
+            serials.add(cac.getSerial().getId());
+        }
+
+        return this.certBundleManager.isCurrent(bundle, serials, contentAccessVersion);
+    }
+
+    /*
+     * Brings the certificate bundle of the consumer up to date with the serials of its
+     * entitlement certificates and content access certificate, and the version of the content
+     * access payload
+     */
+    private CertificateBundle refreshCertificateBundle(Consumer consumer, ContentAccessCertificate cac) {
+        List<Long> serials = new ArrayList<>(entCertService.listEntitlementSerialIds(consumer));
+        Long contentAccessSerial = null;
+        String contentAccessVersion = null;
+
+        if (cac != null) {
+            contentAccessSerial = cac.getSerial().getId();
+            contentAccessVersion = this.contentAccessCertService.getContentAccessVersion(consumer);
+            serials.add(contentAccessSerial);
+        }
+
+        return this.certBundleManager.refresh(consumer, serials, contentAccessSerial, contentAccessVersion);
+    }
+
+    private EntityTag getBundleEntityTag(CertificateBundle bundle, String suffix) {
+        return new EntityTag(String.format("%s-%d%s", bundle.getId(), bundle.getVersion(), suffix));
+    }
+
+    /*
+     * Checks whether the entity tags of an If-None-Match header include the given tag. Weak tags
+     * are compared as if they were strong tags, as the bundle tags are never weak.
+     */
+    private boolean matchesEntityTag(String ifNoneMatch, EntityTag etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+            return false;
+        }
+
+        String expected = "\"" + etag.getValue() + "\"";
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+
+            if (tag.equals("*") || tag.equals(expected)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     private Set<Long> extractSerials(String serials) {
         Set<Long> serialSet = new HashSet<>();
         if (serials != null && !serials.isEmpty()) {
@@ -2699,6 +2935,7 @@ public class ConsumerResource {
     @Produces(MediaType.APPLICATION_JSON)
     @Path("{consumer_uuid}/compliance")
     @Transactional
+    @QueryBudget(25)
     public ComplianceStatusDTO getComplianceStatus(
         @PathParam("consumer_uuid") @Verify(Consumer.class) String uuid,
         @ApiParam("Date to get compliance information for, default is now.")
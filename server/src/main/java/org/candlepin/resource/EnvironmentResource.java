@@ -22,6 +22,7 @@ import org.candlepin.common.auth.SecurityHole;
 import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.exceptions.ConflictException;
 import org.candlepin.common.exceptions.NotFoundException;
+import org.candlepin.controller.OwnerManager;
 import org.candlepin.controller.PoolManager;
 import org.candlepin.dto.ModelTranslator;
 import org.candlepin.dto.api.v1.ConsumerDTO;
@@ -35,7 +36,6 @@ import org.candlepin.model.EnvironmentContent;
 import org.candlepin.model.EnvironmentContentCurator;
 import org.candlepin.model.EnvironmentCurator;
 import org.candlepin.model.OwnerContentCurator;
-import org.candlepin.model.OwnerEnvContentAccessCurator;
 import org.candlepin.pinsetter.tasks.RegenEnvEntitlementCertsJob;
 import org.candlepin.util.RdbmsExceptionTranslator;
 import org.candlepin.util.Util;
@@ -93,7 +93,7 @@ public class EnvironmentResource {
     private PoolManager poolManager;
     private ConsumerCurator consumerCurator;
     private OwnerContentCurator ownerContentCurator;
-    private OwnerEnvContentAccessCurator ownerEnvContentAccessCurator;
+    private OwnerManager ownerManager;
     private RdbmsExceptionTranslator rdbmsExceptionTranslator;
     private ModelTranslator translator;
 
@@ -102,7 +102,7 @@ public class EnvironmentResource {
         EnvironmentContentCurator envContentCurator, ConsumerResource consumerResource,
         PoolManager poolManager, ConsumerCurator consumerCurator, OwnerContentCurator ownerContentCurator,
         RdbmsExceptionTranslator rdbmsExceptionTranslator,
-        OwnerEnvContentAccessCurator ownerEnvContentAccessCurator, ModelTranslator translator) {
+        OwnerManager ownerManager, ModelTranslator translator) {
 
         this.envCurator = envCurator;
         this.i18n = i18n;
@@ -112,7 +112,7 @@ public class EnvironmentResource {
         this.consumerCurator = consumerCurator;
         this.ownerContentCurator = ownerContentCurator;
         this.rdbmsExceptionTranslator = rdbmsExceptionTranslator;
-        this.ownerEnvContentAccessCurator = ownerEnvContentAccessCurator;
+        this.ownerManager = ownerManager;
         this.translator = translator;
     }
 
@@ -372,9 +372,8 @@ public class EnvironmentResource {
         return contentIds;
     }
 
-    @Transactional
     private void clearContentAccessCerts(Environment env) {
-        ownerEnvContentAccessCurator.removeAllForEnvironment(env.getId());
+        ownerManager.refreshEnvironmentForContentAccess(env);
     }
 
     private Environment lookupEnvironment(String envId) {
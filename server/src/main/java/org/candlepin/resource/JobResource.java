@@ -20,14 +20,18 @@ import org.candlepin.common.exceptions.IseException;
 import org.candlepin.common.exceptions.NotFoundException;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.dto.ModelTranslator;
+import org.candlepin.dto.api.v1.JobPurgeStatusDTO;
+import org.candlepin.dto.api.v1.JobQueueStatusDTO;
 import org.candlepin.dto.api.v1.JobStatusDTO;
 import org.candlepin.dto.api.v1.SchedulerStatusDTO;
 import org.candlepin.model.CandlepinQuery;
 import org.candlepin.model.JobCurator;
+import org.candlepin.pinsetter.core.JobPurgeMonitor;
 import org.candlepin.pinsetter.core.PinsetterException;
 import org.candlepin.pinsetter.core.PinsetterKernel;
 import org.candlepin.pinsetter.core.model.JobStatus;
 import org.candlepin.pinsetter.core.model.JobStatus.JobState;
+import org.candlepin.pinsetter.tasks.HypervisorUpdateJob;
 import org.candlepin.util.Util;
 
 import com.google.inject.Inject;
@@ -38,6 +42,7 @@ import org.slf4j.LoggerFactory;
 import org.xnap.commons.i18n.I18n;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 import javax.ws.rs.Consumes;
@@ -68,15 +73,19 @@ public class JobResource {
     private PinsetterKernel pk;
     private I18n i18n;
     private ModelTranslator translator;
+    private JobPurgeMonitor purgeMonitor;
 
     private static Logger log = LoggerFactory.getLogger(JobResource.class);
 
     @Inject
-    public JobResource(JobCurator curator, PinsetterKernel pk, I18n i18n, ModelTranslator translator) {
+    public JobResource(JobCurator curator, PinsetterKernel pk, I18n i18n, ModelTranslator translator,
+        JobPurgeMonitor purgeMonitor) {
+
         this.curator = curator;
         this.pk = pk;
         this.i18n = i18n;
         this.translator = translator;
+        this.purgeMonitor = purgeMonitor;
     }
 
 
@@ -184,6 +193,68 @@ public class JobResource {
         return getSchedulerStatus();
     }
 
+    @ApiOperation(notes = "Retrieves the status and throughput of the job status purge",
+        value = "getPurgeStatus")
+    @GET
+    @Path("purge")
+    @Produces(MediaType.APPLICATION_JSON)
+    public JobPurgeStatusDTO getPurgeStatus() {
+        return new JobPurgeStatusDTO()
+            .setPaused(this.purgeMonitor.isPaused())
+            .setTotalRowsPurged(this.purgeMonitor.getTotalRowsPurged())
+            .setLastRunRowsPurged(this.purgeMonitor.getLastRunRowsPurged())
+            .setRowsPerSecond(this.purgeMonitor.getRowsPerSecond())
+            .setLastRunStart(this.purgeMonitor.getLastRunStart())
+            .setLastRunEnd(this.purgeMonitor.getLastRunEnd());
+    }
+
+    @ApiOperation(notes = "Pauses or resumes the job status purge. A paused purge stops after its " +
+        "current chunk and resumes from that point on its next run.", value = "setPurgeStatus")
+    @POST
+    @Path("purge")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public JobPurgeStatusDTO setPurgeStatus(boolean paused) {
+        if (paused) {
+            this.purgeMonitor.pause();
+        }
+        else {
+            this.purgeMonitor.resume();
+        }
+
+        return this.getPurgeStatus();
+    }
+
+    @ApiOperation(notes = "Retrieves the number of queued and running hypervisor update jobs, and " +
+        "the time the oldest queued job has been waiting, for each owner with pending updates",
+        value = "getHypervisorUpdateQueues", response = JobQueueStatusDTO.class, responseContainer = "list")
+    @GET
+    @Path("queues/hypervisor_update")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<JobQueueStatusDTO> getHypervisorUpdateQueues(@QueryParam("owner") String ownerKey) {
+        List<JobQueueStatusDTO> queues = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        for (Object[] row : this.curator.getQueueStatistics(HypervisorUpdateJob.class)) {
+            String owner = (String) row[0];
+            if (!StringUtils.isEmpty(ownerKey) && !ownerKey.equals(owner)) {
+                continue;
+            }
+
+            Date oldestQueued = (Date) row[3];
+            long wait = oldestQueued != null ? (now - oldestQueued.getTime()) / 1000L : 0L;
+
+            queues.add(new JobQueueStatusDTO()
+                .setOwner(owner)
+                .setQueued(row[1] != null ? ((Number) row[1]).longValue() : 0L)
+                .setRunning(row[2] != null ? ((Number) row[2]).longValue() : 0L)
+                .setOldestQueued(oldestQueued)
+                .setMaxWaitSeconds(Math.max(0L, wait)));
+        }
+
+        return queues;
+    }
+
     @ApiOperation(notes = "Re-trigger cron jobs", value = "retrigger")
     @ApiResponses({ @ApiResponse(code = 400, message = ""), @ApiResponse(code = 500, message = "") })
     @POST
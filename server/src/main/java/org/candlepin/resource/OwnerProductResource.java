@@ -26,6 +26,7 @@ import org.candlepin.dto.ModelTranslator;
 import org.candlepin.dto.api.v1.ContentDTO;
 import org.candlepin.dto.api.v1.ProductCertificateDTO;
 import org.candlepin.dto.api.v1.ProductDTO;
+import org.candlepin.dto.api.v1.ProductDTOProjection;
 import org.candlepin.model.CandlepinQuery;
 import org.candlepin.model.Content;
 import org.candlepin.model.Owner;
@@ -93,12 +94,13 @@ public class OwnerProductResource {
     private ProductCurator productCurator;
     private ProductManager productManager;
     private ModelTranslator translator;
+    private ProductDTOProjection productProjection;
 
     @Inject
     public OwnerProductResource(Configuration config, I18n i18n, OwnerCurator ownerCurator,
         OwnerContentCurator ownerContentCurator, OwnerProductCurator ownerProductCurator,
         ProductCertificateCurator productCertCurator, ProductCurator productCurator,
-        ProductManager productManager, ModelTranslator translator) {
+        ProductManager productManager, ModelTranslator translator, ProductDTOProjection productProjection) {
 
         this.config = config;
         this.i18n = i18n;
@@ -109,6 +111,7 @@ public class OwnerProductResource {
         this.productCurator = productCurator;
         this.productManager = productManager;
         this.translator = translator;
+        this.productProjection = productProjection;
     }
 
     /**
@@ -200,7 +203,7 @@ public class OwnerProductResource {
             this.ownerProductCurator.getProductsByIds(owner, productIds) :
             this.ownerProductCurator.getProductsByOwner(owner);
 
-        return this.translator.translateQuery(query, ProductDTO.class);
+        return this.productProjection.project(query);
     }
 
     @ApiOperation(notes = "Retrieves a single Product", value = "getProduct")
@@ -41,15 +41,19 @@ import org.candlepin.controller.PoolManager;
 import org.candlepin.dto.ModelTranslator;
 import org.candlepin.dto.api.v1.ActivationKeyDTO;
 import org.candlepin.dto.api.v1.ConsumerDTO;
+import org.candlepin.dto.api.v1.ConsumerDTOProjection;
 import org.candlepin.dto.api.v1.ContentOverrideDTO;
 import org.candlepin.dto.api.v1.EntitlementDTO;
+import org.candlepin.dto.api.v1.EntitlementDTOProjection;
 import org.candlepin.dto.api.v1.EnvironmentDTO;
 import org.candlepin.dto.api.v1.ImportRecordDTO;
 import org.candlepin.dto.api.v1.OwnerDTO;
 import org.candlepin.dto.api.v1.PoolDTO;
+import org.candlepin.dto.api.v1.PoolDTOProjection;
 import org.candlepin.dto.api.v1.SystemPurposeAttributesDTO;
 import org.candlepin.dto.api.v1.UpstreamConsumerDTO;
 import org.candlepin.dto.api.v1.UeberCertificateDTO;
+import org.candlepin.hibernate.QueryBudget;
 import org.candlepin.model.CandlepinQuery;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
@@ -85,7 +89,9 @@ import org.candlepin.model.UpstreamConsumer;
 import org.candlepin.model.activationkeys.ActivationKey;
 import org.candlepin.model.activationkeys.ActivationKeyContentOverride;
 import org.candlepin.model.activationkeys.ActivationKeyCurator;
+import org.candlepin.model.dto.PoolIdAndQuantity;
 import org.candlepin.model.dto.Subscription;
+import org.candlepin.pinsetter.tasks.EntitlerJob;
 import org.candlepin.pinsetter.tasks.HealEntireOrgJob;
 import org.candlepin.pinsetter.tasks.ImportJob;
 import org.candlepin.pinsetter.tasks.RefreshPoolsJob;
@@ -147,6 +153,7 @@ import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import javax.persistence.PersistenceException;
 import javax.ws.rs.Consumes;
@@ -204,9 +211,13 @@ public class OwnerResource {
     private ConsumerTypeValidator consumerTypeValidator;
     private OwnerProductCurator ownerProductCurator;
     private ModelTranslator translator;
+    private ConsumerDTOProjection consumerProjection;
+    private PoolDTOProjection poolProjection;
+    private EntitlementDTOProjection entitlementProjection;
     private static final Pattern AK_CHAR_FILTER = Pattern.compile("^[a-zA-Z0-9_-]+$");
 
     @Inject
+    @SuppressWarnings({"checkstyle:parameternumber"})
     public OwnerResource(OwnerCurator ownerCurator,
         ProductCurator productCurator,
         ActivationKeyCurator activationKeyCurator,
@@ -235,7 +246,10 @@ public class OwnerResource {
         ResolverUtil resolverUtil,
         ConsumerTypeValidator consumerTypeValidator,
         OwnerProductCurator ownerProductCurator,
-        ModelTranslator translator) {
+        ModelTranslator translator,
+        ConsumerDTOProjection consumerProjection,
+        PoolDTOProjection poolProjection,
+        EntitlementDTOProjection entitlementProjection) {
 
         this.ownerCurator = ownerCurator;
         this.productCurator = productCurator;
@@ -266,6 +280,9 @@ public class OwnerResource {
         this.consumerTypeValidator = consumerTypeValidator;
         this.ownerProductCurator = ownerProductCurator;
         this.translator = translator;
+        this.consumerProjection = consumerProjection;
+        this.poolProjection = poolProjection;
+        this.entitlementProjection = entitlementProjection;
     }
 
     /**
@@ -851,6 +868,7 @@ public class OwnerResource {
      * Retrieves the Owner Info for an Owner
      *
      * @param ownerKey Owner ID.
+     * @param fresh whether to recompute the info rather than serve the owner's counters
      * @return an OwnerInfo object
      * @httpcode 404
      * @httpcode 200
@@ -860,10 +878,12 @@ public class OwnerResource {
     @Produces(MediaType.APPLICATION_JSON)
     @ApiOperation(notes = "Retrieves the Owner Info for an Owner", value = "Get Owner Info")
     @ApiResponses({ @ApiResponse(code = 404, message = "An owner not found") })
+    @QueryBudget(50)
     public OwnerInfo getOwnerInfo(@PathParam("owner_key")
-        @Verify(value = Owner.class, subResource = SubResource.CONSUMERS) String ownerKey) {
+        @Verify(value = Owner.class, subResource = SubResource.CONSUMERS) String ownerKey,
+        @QueryParam("fresh") @DefaultValue("false") boolean fresh) {
         Owner owner = findOwnerByKey(ownerKey);
-        return ownerInfoCurator.getByOwner(owner);
+        return ownerInfoCurator.getByOwner(owner, fresh);
     }
 
     /**
@@ -1078,9 +1098,14 @@ public class OwnerResource {
         // Store the page for the LinkHeaderPostInterceptor
         ResteasyProviderFactory.pushContext(Page.class, entitlementsPage);
 
+        // Build the DTOs straight from the entitlement rows, rather than translating each
+        // entitlement and lazily loading its pool, consumer and their collections one row at a time
+        Map<String, EntitlementDTO> dtos = this.entitlementProjection.buildByIds(
+            entitlementsPage.getPageData().stream().map(Entitlement::getId).collect(Collectors.toList()));
+
         List<EntitlementDTO> entitlementDTOs = new ArrayList<>();
         for (Entitlement entitlement : entitlementsPage.getPageData()) {
-            entitlementDTOs.add(this.translator.translate(entitlement, EntitlementDTO.class));
+            entitlementDTOs.add(dtos.get(entitlement.getId()));
         }
 
         return entitlementDTOs;
@@ -1114,6 +1139,86 @@ public class OwnerResource {
         return HealEntireOrgJob.healEntireOrg(owner, new Date());
     }
 
+    /**
+     * Binds many consumers of an Owner to pools
+     * <p>
+     * Starts an asynchronous bind of the given consumers to the pools and quantities requested
+     * for each. The consumers are bound as a single batch, such that the requested pools are
+     * validated and locked once for the whole batch rather than once per consumer.
+     *
+     * @param ownerKey id of the owner of the consumers
+     * @param consumerPoolQuantities a mapping of consumer UUIDs to the pools and quantities to bind
+     * @return a JobDetail object
+     * @httpcode 400
+     * @httpcode 404
+     * @httpcode 200
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("{owner_key}/entitlements/bulk")
+    @ApiOperation(notes = "Starts an asynchronous bind of many consumers of the given Owner to the " +
+        "pools and quantities requested for each. The consumers are bound as a single batch.",
+        value = "Bulk bind consumers")
+    @ApiResponses({ @ApiResponse(code = 400, message = ""),
+        @ApiResponse(code = 404, message = "Owner not found") })
+    public JobDetail bulkBind(
+        @PathParam("owner_key") @Verify(Owner.class) String ownerKey,
+        @ApiParam(name = "consumerPoolQuantities", required = true)
+        Map<String, List<PoolIdAndQuantity>> consumerPoolQuantities) {
+
+        if (consumerPoolQuantities == null || consumerPoolQuantities.isEmpty()) {
+            throw new BadRequestException(i18n.tr("No consumers specified."));
+        }
+
+        Owner owner = findOwnerByKey(ownerKey);
+        int poolLimit = config.getInt(ConfigProperties.BATCH_BIND_NUMBER_OF_POOLS_LIMIT);
+
+        Map<String, PoolIdAndQuantity[]> requests = new HashMap<>();
+        for (Map.Entry<String, List<PoolIdAndQuantity>> entry : consumerPoolQuantities.entrySet()) {
+            List<PoolIdAndQuantity> poolQuantities = entry.getValue();
+
+            if (poolQuantities == null || poolQuantities.isEmpty()) {
+                throw new BadRequestException(i18n.tr("No pools specified for unit \"{0}\".",
+                    entry.getKey()));
+            }
+
+            if (poolQuantities.size() > poolLimit) {
+                throw new BadRequestException(i18n.tr(
+                    "Cannot bind more than {0} pools per unit in a bulk bind.", poolLimit));
+            }
+
+            for (PoolIdAndQuantity poolQuantity : poolQuantities) {
+                if (poolQuantity == null || poolQuantity.getPoolId() == null ||
+                    (poolQuantity.getQuantity() != null && poolQuantity.getQuantity() < 1)) {
+
+                    throw new BadRequestException(i18n.tr(
+                        "Invalid pool or quantity specified for unit \"{0}\".", entry.getKey()));
+                }
+
+                if (poolQuantity.getQuantity() == null) {
+                    poolQuantity.setQuantity(1);
+                }
+            }
+
+            requests.put(entry.getKey(), poolQuantities.toArray(new PoolIdAndQuantity[0]));
+        }
+
+        // Only consumers of this owner may be bound through it
+        Set<String> missing = new HashSet<>(requests.keySet());
+        for (Consumer consumer : this.consumerCurator.findByUuidsAndOwner(requests.keySet(),
+            owner.getId())) {
+
+            missing.remove(consumer.getUuid());
+        }
+
+        if (!missing.isEmpty()) {
+            throw new BadRequestException(i18n.tr("Unit(s) {0} could not be found.", missing));
+        }
+
+        return EntitlerJob.bulkBindByPoolAndQuantities(owner, requests);
+    }
+
     /**
      * Retrieves a list of Support Levels for an Owner
      *
@@ -1358,7 +1463,45 @@ public class OwnerResource {
         CandlepinQuery<Consumer> query = this.consumerCurator.searchOwnerConsumers(
             owner, userName, types, uuids, hypervisorIds, attrFilters, skus,
             subscriptionIds, contracts);
-        return translator.translateQuery(query, ConsumerDTO.class);
+
+        // Build the DTOs straight from the consumer rows, rather than translating each consumer
+        // and lazily loading its collections one row at a time
+        return this.consumerProjection.project(query);
+    }
+
+    /**
+     * Removes the Consumers of an Owner with the given UUIDs in bulk
+     *
+     * @param ownerKey the key of the owner whose consumers are to be removed
+     * @param uuids the UUIDs of the consumers to remove
+     * @return the number of consumers removed
+     * @httpcode 400
+     * @httpcode 404
+     * @httpcode 200
+     */
+    @DELETE
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("{owner_key}/consumers")
+    @ApiOperation(notes = "Removes the Consumers of the Owner with the given UUIDs in bulk. UUIDs which " +
+        "do not belong to a Consumer of the Owner are ignored. A single bulk deletion event is sent for " +
+        "each chunk of Consumers removed, rather than an event for each Consumer.",
+        value = "Delete Consumers")
+    @ApiResponses({
+        @ApiResponse(code = 404, message = "Owner not found"),
+        @ApiResponse(code = 400, message = "Invalid request")
+    })
+    public int deleteConsumers(
+        @PathParam("owner_key")
+        @Verify(value = Owner.class, subResource = SubResource.CONSUMERS) String ownerKey,
+        @QueryParam("uuid") List<String> uuids) {
+
+        Owner owner = this.findOwnerByKey(ownerKey);
+
+        if (uuids == null || uuids.isEmpty()) {
+            throw new BadRequestException(i18n.tr("At least one consumer UUID must be specified."));
+        }
+
+        return this.ownerManager.deleteConsumers(owner, uuids);
     }
 
     @GET
@@ -1506,9 +1649,18 @@ public class OwnerResource {
         // Store the page for the LinkHeaderResponseFilter
         ResteasyProviderFactory.pushContext(Page.class, page);
 
+        // The page is post-filtered and given its calculated attributes using the pool entities,
+        // but the DTOs are built straight from the pool rows, rather than translating each pool and
+        // lazily loading its products and collections one row at a time
+        Map<String, PoolDTO> dtos = this.poolProjection.buildByIds(
+            poolList.stream().map(Pool::getId).collect(Collectors.toList()));
+
         List<PoolDTO> poolDTOs = new ArrayList<>();
         for (Pool pool : poolList) {
-            poolDTOs.add(translator.translate(pool, PoolDTO.class));
+            PoolDTO dto = dtos.get(pool.getId());
+            dto.setCalculatedAttributes(pool.getCalculatedAttributes());
+
+            poolDTOs.add(dto);
         }
 
         return poolDTOs;
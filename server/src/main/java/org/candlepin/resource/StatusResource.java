@@ -30,6 +30,8 @@ import org.candlepin.model.CandlepinModeChange;
 import org.candlepin.model.Rules.RulesSourceEnum;
 import org.candlepin.model.RulesCurator;
 import org.candlepin.policy.js.JsRunnerProvider;
+import org.candlepin.policy.js.entitlement.EntitlementRuleDispatcher;
+import org.candlepin.tracing.TraceMetrics;
 
 import com.google.inject.Inject;
 import org.keycloak.representations.adapters.config.AdapterConfig;
@@ -38,6 +40,7 @@ import org.slf4j.LoggerFactory;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import javax.ws.rs.GET;
@@ -69,11 +72,16 @@ public class StatusResource {
     private CandlepinCache candlepinCache;
     private ModeManager modeManager;
     private KeycloakConfiguration keycloakConfig;
+    private TraceMetrics traceMetrics;
+    private EntitlementRuleDispatcher ruleDispatcher;
 
     @Inject
     public StatusResource(RulesCurator rulesCurator, Configuration config, JsRunnerProvider jsProvider,
-        CandlepinCache candlepinCache, ModeManager modeManager, KeycloakConfiguration keycloakConfig) {
+        CandlepinCache candlepinCache, ModeManager modeManager, KeycloakConfiguration keycloakConfig,
+        TraceMetrics traceMetrics, EntitlementRuleDispatcher ruleDispatcher) {
         this.modeManager = modeManager;
+        this.traceMetrics = traceMetrics;
+        this.ruleDispatcher = ruleDispatcher;
         this.rulesCurator = rulesCurator;
         this.candlepinCache = candlepinCache;
         this.keycloakConfig = keycloakConfig;
@@ -183,4 +191,59 @@ public class StatusResource {
 
         return status;
     }
+
+    /**
+     * Retrieves the latency metrics of the requests and jobs traced by this server
+     * <p>
+     * <pre>
+     * {
+     *   "traces" : {
+     *     "REQUEST GET ConsumerResource.getConsumer" : {
+     *       "count" : 120, "totalMs" : 1830.2, "meanMs" : 15.25, "maxMs" : 96.1,
+     *       "p50Ms" : 16.384, "p95Ms" : 32.768, "p99Ms" : 65.536
+     *     }
+     *   },
+     *   "phases" : {
+     *     "DB" : { ... },
+     *     "RULES" : { ... }
+     *   },
+     *   "queries" : {
+     *     "REQUEST GET ConsumerResource.getConsumer" : {
+     *       "count" : 120, "meanStatements" : 14.2, "maxStatements" : 31,
+     *       "meanEntitiesLoaded" : 57.0, "meanExecutionMs" : 4.1, "budget" : 40, "overBudget" : 0
+     *     }
+     *   },
+     *   "caches" : {
+     *     "candlepin-products" : {
+     *       "hits" : 5120, "misses" : 310, "hitPercentage" : 94.3, "puts" : 310, "removals" : 0,
+     *       "evictions" : 0
+     *     }
+     *   },
+     *   "rules" : {
+     *     "compilations" : 1, "dispatchKeys" : 6, "hits" : 48210, "misses" : 6
+     *   }
+     * }
+     * </pre>
+     * <p>
+     * Percentiles are reported as the upper bound of a power-of-two bucket and may overstate
+     * the actual value by up to a factor of two.
+     *
+     * @return a map containing the trace and phase latency histograms, per-trace query metrics,
+     *  cache region statistics and entitlement rule dispatch statistics
+     * @httpcode 200
+     */
+    @GET
+    @Path("/metrics")
+    @ApiOperation(value = "Metrics", notes = "Returns the latency metrics of traced requests and jobs")
+    @Produces({ MediaType.APPLICATION_JSON})
+    public Map<String, Map<String, ?>> metrics() {
+        Map<String, Map<String, ?>> metrics = new HashMap<>();
+        metrics.put("traces", this.traceMetrics.getTraceHistograms());
+        metrics.put("phases", this.traceMetrics.getPhaseHistograms());
+        metrics.put("queries", this.traceMetrics.getQueryMetrics());
+        metrics.put("caches", this.candlepinCache.getRegionStatistics());
+        metrics.put("rules", this.ruleDispatcher.getStatistics());
+
+        return metrics;
+    }
 }
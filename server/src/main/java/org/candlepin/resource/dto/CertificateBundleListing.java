@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.resource.dto;
+
+import org.candlepin.dto.api.v1.CertificateDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CertificateBundleListing class dto for returning a consumer's certificate bundle, or the
+ * changes made to it since a given bundle version
+ */
+public class CertificateBundleListing {
+    private long version;
+    private boolean delta;
+    private List<CertificateDTO> certificates = new ArrayList<>();
+    private List<Long> removedSerials = new ArrayList<>();
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public long getVersion() {
+        return this.version;
+    }
+
+    public void setDelta(boolean delta) {
+        this.delta = delta;
+    }
+
+    public boolean isDelta() {
+        return this.delta;
+    }
+
+    public void setCertificates(List<CertificateDTO> certificates) {
+        this.certificates = certificates;
+    }
+
+    public List<CertificateDTO> getCertificates() {
+        return this.certificates;
+    }
+
+    public void setRemovedSerials(List<Long> removedSerials) {
+        this.removedSerials = removedSerials;
+    }
+
+    public List<Long> getRemovedSerials() {
+        return this.removedSerials;
+    }
+}
@@ -22,6 +22,8 @@ import org.candlepin.dto.rules.v1.SuggestedQuantityDTO;
 
 import com.google.inject.Inject;
 
+import org.apache.commons.lang3.tuple.Pair;
+
 import org.xnap.commons.i18n.I18n;
 
 import java.util.ArrayList;
@@ -48,25 +50,35 @@ public class CalculatedAttributesUtil {
 
     public Map<String, String> buildCalculatedAttributes(Pool pool, Date date) {
         Map<String, String> attrMap = new HashMap<>();
-        PoolComplianceType type = pool.getComplianceType();
+        attrMap.put("compliance_type", this.buildComplianceType(pool.getComplianceType(),
+            pool.isUnmappedGuestPool()));
 
+        return attrMap;
+    }
+
+    private String buildComplianceType(PoolComplianceType type, boolean temporary) {
         // TODO: Check that this doesn't break our translation stuff. We may need to have the
         // description strings translated instead.
-        attrMap.put("compliance_type",
-            i18n.tr("{0}{1}", type.getDescription(), (pool.isUnmappedGuestPool() ? " (Temporary)" : ""))
-        );
-
-        return attrMap;
+        return i18n.tr("{0}{1}", type.getDescription(), (temporary ? " (Temporary)" : ""));
     }
 
     public void setCalculatedAttributes(List<Pool> poolList, Date date) {
+        // Listings usually contain many pools of the same few compliance types, so the translated
+        // descriptions are only built once per type for the whole list
+        Map<Pair<PoolComplianceType, Boolean>, String> complianceTypes = new HashMap<>();
+
         for (Pool pool : poolList) {
             Map<String, String> attrMap = pool.getCalculatedAttributes();
             if (attrMap == null) {
                 attrMap = new HashMap<>();
                 pool.setCalculatedAttributes(attrMap);
             }
-            attrMap.putAll(this.buildCalculatedAttributes(pool, date));
+
+            String complianceType = complianceTypes.computeIfAbsent(
+                Pair.of(pool.getComplianceType(), pool.isUnmappedGuestPool()),
+                key -> this.buildComplianceType(key.getLeft(), key.getRight()));
+
+            attrMap.put("compliance_type", complianceType);
         }
     }
 
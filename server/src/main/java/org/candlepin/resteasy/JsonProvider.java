@@ -22,6 +22,8 @@ import org.candlepin.common.jackson.MultiFilter;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.jackson.DateSerializer;
 import org.candlepin.jackson.ProductCachedSerializationModule;
+import org.candlepin.tracing.Span;
+import org.candlepin.tracing.Tracer;
 
 import com.fasterxml.jackson.core.Version;
 import com.fasterxml.jackson.databind.AnnotationIntrospector;
@@ -38,10 +40,17 @@ import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
 import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
 import com.google.inject.Inject;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
 import java.util.Date;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.Provider;
 
 /**
@@ -83,6 +92,24 @@ public class JsonProvider extends JacksonJsonProvider {
         setMapper(mapper);
     }
 
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations,
+        MediaType mediaType, MultivaluedMap<String, String> httpHeaders, InputStream entityStream)
+        throws IOException {
+
+        return Tracer.call(Span.Phase.SERIALIZATION, "json.read", type.getSimpleName(),
+            () -> super.readFrom(type, genericType, annotations, mediaType, httpHeaders, entityStream));
+    }
+
+    @Override
+    public void writeTo(Object value, Class<?> type, Type genericType, Annotation[] annotations,
+        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+        throws IOException {
+
+        Tracer.run(Span.Phase.SERIALIZATION, "json.write", type.getSimpleName(),
+            () -> super.writeTo(value, type, genericType, annotations, mediaType, httpHeaders, entityStream));
+    }
+
     private void configureHateoasObjectMapper(ObjectMapper mapper, boolean indentJson) {
         mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
 
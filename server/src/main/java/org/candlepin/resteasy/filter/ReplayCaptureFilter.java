@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.resteasy.filter;
+
+import org.candlepin.replay.CaptureRecord.RequestRecord;
+import org.candlepin.replay.ReplayEndpoint;
+import org.candlepin.replay.ReplayRecorder;
+
+import org.apache.commons.io.IOUtils;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Hands requests to the endpoints listed in {@link ReplayEndpoint} to the {@link ReplayRecorder} when
+ * request capturing is enabled. Requests are captured once they have been authorized, so rejected
+ * requests are never recorded.
+ */
+@Priority(Priorities.USER)
+@Provider
+public class ReplayCaptureFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String RECORD_PROPERTY = ReplayCaptureFilter.class.getName() + ".record";
+    private static final String START_PROPERTY = ReplayCaptureFilter.class.getName() + ".start";
+
+    private final ReplayRecorder recorder;
+
+    @Inject
+    public ReplayCaptureFilter(ReplayRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        if (!this.recorder.isEnabled()) {
+            return;
+        }
+
+        ResourceInfo resourceInfo = ResteasyProviderFactory.getContextData(ResourceInfo.class);
+        ReplayEndpoint endpoint = resourceInfo != null ? ReplayEndpoint.forResourceMethod(
+            resourceInfo.getResourceClass(), resourceInfo.getResourceMethod()) : null;
+
+        if (endpoint == null) {
+            return;
+        }
+
+        String body = null;
+        if (requestContext.hasEntity()) {
+            byte[] content = IOUtils.toByteArray(requestContext.getEntityStream());
+            requestContext.setEntityStream(new ByteArrayInputStream(content));
+            body = new String(content, StandardCharsets.UTF_8);
+        }
+
+        UriInfo uriInfo = requestContext.getUriInfo();
+        RequestRecord record = this.recorder.begin(endpoint, requestContext.getMethod(), uriInfo.getPath(),
+            uriInfo.getPathParameters(), uriInfo.getQueryParameters(),
+            requestContext.getMediaType() != null ? requestContext.getMediaType().toString() : null, body);
+
+        if (record != null) {
+            requestContext.setProperty(RECORD_PROPERTY, record);
+            requestContext.setProperty(START_PROPERTY, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object record = requestContext.getProperty(RECORD_PROPERTY);
+        Object start = requestContext.getProperty(START_PROPERTY);
+
+        if (record instanceof RequestRecord && start instanceof Long) {
+            this.recorder.complete((RequestRecord) record, responseContext.getStatus(),
+                System.nanoTime() - (Long) start);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.resteasy.filter;
+
+import org.candlepin.hibernate.QueryBudget;
+import org.candlepin.hibernate.QueryStats;
+import org.candlepin.tracing.Span;
+import org.candlepin.tracing.Tracer;
+
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Names the request trace started by the TracingFilter after the resource method which will handle the
+ * request, such as "GET ConsumerResource.getConsumer", so request metrics are aggregated per endpoint
+ * rather than per URI. If the resource method declares a {@link QueryBudget}, it is applied to the
+ * database statistics collected for the request.
+ */
+@Priority(Priorities.AUTHENTICATION - 100)
+@Provider
+public class TraceNamingFilter implements ContainerRequestFilter {
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        Span current = Tracer.current();
+        if (current == null) {
+            return;
+        }
+
+        ResourceInfo resourceInfo = ResteasyProviderFactory.getContextData(ResourceInfo.class);
+        Method method = resourceInfo != null ? resourceInfo.getResourceMethod() : null;
+
+        if (method != null) {
+            current.getRoot().setName(String.format("%s %s.%s", requestContext.getMethod(),
+                resourceInfo.getResourceClass().getSimpleName(), method.getName()));
+
+            QueryBudget budget = method.getAnnotation(QueryBudget.class);
+            QueryStats stats = QueryStats.current();
+
+            if (budget != null && stats != null) {
+                stats.setBudget(budget.value());
+            }
+        }
+    }
+}
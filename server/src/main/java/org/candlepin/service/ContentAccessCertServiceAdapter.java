@@ -16,6 +16,7 @@ package org.candlepin.service;
 
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ContentAccessCertificate;
+import org.candlepin.model.Owner;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
@@ -50,5 +51,36 @@ public interface ContentAccessCertServiceAdapter {
      */
     ContentAccessCertificate getCertificate(Consumer consumer) throws GeneralSecurityException, IOException;
     boolean hasCertChangedSince(Consumer consumer, Date date);
+
+    /**
+     * Builds a version string identifying the content access certificate and content payload
+     * currently served to the given consumer, without generating either. The version changes
+     * whenever the certificate is reissued or the payload is regenerated; it does not match any
+     * previously returned version if the certificate has expired or the payload has yet to be
+     * generated.
+     *
+     * @param consumer
+     *  The consumer for which to build the version
+     *
+     * @return
+     *  the content access version of the consumer, or null if the consumer is not served a
+     *  content access certificate
+     */
+    String getContentAccessVersion(Consumer consumer);
     void removeContentAccessCert(Consumer consumer);
+
+    /**
+     * Regenerates the cached content access payloads of the given owner which have been flagged
+     * as stale.
+     *
+     * @param owner
+     *  The owner for which to regenerate payloads
+     *
+     * @throws IOException
+     *  if a payload could not be generated
+     *
+     * @return
+     *  the number of payloads regenerated
+     */
+    int regenerateStalePayloads(Owner owner) throws IOException;
 }
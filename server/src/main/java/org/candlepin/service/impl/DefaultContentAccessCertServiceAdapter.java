@@ -66,6 +66,13 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * DefaultEntitlementCertServiceAdapter
@@ -73,6 +80,13 @@ import java.util.Set;
 public class DefaultContentAccessCertServiceAdapter implements ContentAccessCertServiceAdapter {
     private static Logger log = LoggerFactory.getLogger(DefaultContentAccessCertServiceAdapter.class);
 
+    /** Payloads currently being generated, keyed by owner and environment ID */
+    private static final ConcurrentMap<String, CompletableFuture<String>> PAYLOADS_IN_FLIGHT =
+        new ConcurrentHashMap<>();
+
+    /** Seconds to wait on an in-flight payload before generating it locally instead */
+    private static final long PAYLOAD_WAIT_TIMEOUT = 30;
+
     private PKIUtility pki;
     private KeyPairCurator keyPairCurator;
     private CertificateSerialCurator serialCurator;
@@ -171,15 +185,7 @@ public class DefaultContentAccessCertServiceAdapter implements ContentAccessCert
         }
 
         Environment env = this.environmentCurator.getConsumerEnvironment(consumer);
-        // we need to see if this is newer than the previous result
-        OwnerEnvContentAccess oeca = ownerEnvContentAccessCurator.getContentAccess(owner.getId(),
-            env == null ? null : env.getId());
-        if (oeca == null) {
-            String contentJson = createPayloadAndSignature(owner, env);
-            oeca = new OwnerEnvContentAccess(owner, env, contentJson);
-            ownerEnvContentAccessCurator.saveOrUpdate(oeca);
-        }
-        pem += oeca.getContentJson();
+        pem += this.getContentPayload(owner, env);
 
         result.setCert(pem);
         result.setCreated(existing.getCreated());
@@ -212,6 +218,178 @@ public class DefaultContentAccessCertServiceAdapter implements ContentAccessCert
             oeca.getUpdated().getTime() > date.getTime();
     }
 
+    @Override
+    public String getContentAccessVersion(Consumer consumer) {
+        Owner owner = ownerCurator.findOwnerById(consumer.getOwnerId());
+        if (!owner.isContentAccessEnabled() || !this.consumerIsCertV3Capable(consumer)) {
+            return null;
+        }
+
+        // Missing or expired certificates and missing payloads are generated on the next fetch,
+        // so leave them blank to ensure the version never matches one recorded after a fetch
+        ContentAccessCertificate cert = consumer.getContentAccessCert();
+        String serial = cert != null && cert.getSerial().getExpiration().after(new Date()) ?
+            String.valueOf(cert.getSerial().getId()) : "";
+
+        Environment env = this.environmentCurator.getConsumerEnvironment(consumer);
+        Date updated = ownerEnvContentAccessCurator.getContentAccessUpdated(owner.getId(),
+            env == null ? null : env.getId());
+
+        return String.format("%s-%s", serial, updated != null ? updated.getTime() : "");
+    }
+
+    /**
+     * Fetches the content access payload for the given owner and environment, generating and
+     * storing it if it does not yet exist. Stale payloads are served as-is; they are regenerated
+     * asynchronously by the RegenContentAccessPayloadsJob.
+     *
+     * @param owner
+     *  The owner for which to fetch the payload
+     *
+     * @param environment
+     *  The environment for which to fetch the payload, or null for the owner-wide payload
+     *
+     * @throws IOException
+     *  if the payload could not be generated
+     *
+     * @return
+     *  the signed content access payload
+     */
+    private String getContentPayload(Owner owner, Environment environment) throws IOException {
+        OwnerEnvContentAccess oeca = ownerEnvContentAccessCurator.getContentAccess(owner.getId(),
+            environment == null ? null : environment.getId());
+
+        if (oeca != null) {
+            if (oeca.isStale()) {
+                log.debug("Serving stale content access payload for owner {} pending regeneration",
+                    owner.getKey());
+            }
+
+            return oeca.getContentJson();
+        }
+
+        // Only the request which actually generates the payload stores it; any requests
+        // coalesced with it reuse the result.
+        return this.generatePayload(owner, environment, contentJson -> ownerEnvContentAccessCurator
+            .saveOrUpdate(new OwnerEnvContentAccess(owner, environment, contentJson)));
+    }
+
+    /**
+     * Regenerates the stale content access payloads of the given owner. A payload's stale flag is
+     * only cleared when its regenerated payload is stored, and only if it was not flagged stale
+     * again in the meantime; such payloads, and any which fail to regenerate, remain stale and
+     * will be regenerated by a subsequent call.
+     *
+     * @param owner
+     *  The owner for which to regenerate payloads
+     *
+     * @throws IOException
+     *  if a payload could not be generated
+     *
+     * @return
+     *  the number of payloads regenerated
+     */
+    @Override
+    public int regenerateStalePayloads(Owner owner) throws IOException {
+        List<OwnerEnvContentAccess> stale = this.ownerEnvContentAccessCurator
+            .listStaleContentAccess(owner.getId());
+
+        int count = 0;
+        for (OwnerEnvContentAccess oeca : stale) {
+            int staleVersion = oeca.getStaleVersion();
+            AtomicBoolean stored = new AtomicBoolean();
+
+            this.generatePayload(owner, oeca.getEnvironment(), contentJson -> stored.set(
+                ownerEnvContentAccessCurator.updateContentJson(oeca.getId(), contentJson, staleVersion)));
+
+            if (stored.get()) {
+                ++count;
+            }
+            else {
+                log.debug("Regenerated content access payload {} was not stored; it remains stale",
+                    oeca.getId());
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Generates the payload for the given owner and environment, coalescing concurrent
+     * generation of the same payload: the first caller generates and stores the payload while
+     * any other callers wait for, and return, its result. Callers which time out waiting on the
+     * result generate the payload themselves, without storing it.
+     *
+     * @param owner
+     *  The owner for which to generate the payload
+     *
+     * @param environment
+     *  The environment for which to generate the payload, or null for the owner-wide payload
+     *
+     * @param store
+     *  A callback to store the payload; only invoked by the caller which generated it
+     *
+     * @throws IOException
+     *  if the payload could not be generated
+     *
+     * @return
+     *  the signed content access payload
+     */
+    private String generatePayload(Owner owner, Environment environment,
+        java.util.function.Consumer<String> store) throws IOException {
+
+        String key = owner.getId() + ":" + (environment != null ? environment.getId() : "");
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> existing = PAYLOADS_IN_FLIGHT.putIfAbsent(key, future);
+
+        if (existing != null) {
+            log.debug("Waiting on in-flight content access payload for owner {}", owner.getKey());
+
+            try {
+                return existing.get(PAYLOAD_WAIT_TIMEOUT, TimeUnit.SECONDS);
+            }
+            catch (TimeoutException e) {
+                // Don't tie up this thread behind a stalled generation; build the payload locally
+                // and leave storing it to the caller generating it
+                log.warn("Timed out waiting on in-flight content access payload for owner {}; " +
+                    "generating it locally", owner.getKey());
+
+                return this.createPayloadAndSignature(owner, environment);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting on content access payload", e);
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+
+                throw new IOException(e.getCause());
+            }
+        }
+
+        try {
+            String contentJson = this.createPayloadAndSignature(owner, environment);
+            store.accept(contentJson);
+
+            future.complete(contentJson);
+            return contentJson;
+        }
+        catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            PAYLOADS_IN_FLIGHT.remove(key, future);
+        }
+    }
+
     public String createPayloadAndSignature(Owner owner, Environment environment)
         throws IOException {
 
@@ -26,6 +26,7 @@ import org.candlepin.model.ConsumerType;
 import org.candlepin.model.ConsumerType.ConsumerTypeEnum;
 import org.candlepin.model.ConsumerTypeCurator;
 import org.candlepin.model.GuestId;
+import org.candlepin.model.HypervisorFingerprint;
 import org.candlepin.model.HypervisorId;
 import org.candlepin.model.Owner;
 import org.candlepin.model.VirtConsumerMap;
@@ -90,6 +91,30 @@ public class HypervisorUpdateAction {
         final Principal principal,
         final String jobReporterId) {
 
+        return this.update(owner, hypervisors, create, principal, jobReporterId,
+            new HypervisorUpdateResultDTO());
+    }
+
+    /**
+     * Processes a hypervisor report, or a chunk thereof, adding the outcome for each reported host
+     * to the provided result. This allows a large report to be processed in several transactions
+     * while still producing a single result.
+     *
+     * @param result
+     *  the result to which the outcome of each host should be added
+     *
+     * @return
+     *  the result of the update
+     */
+    @Transactional
+    public Result update(
+        final Owner owner,
+        final HypervisorUpdateJob.HypervisorList hypervisors,
+        final Boolean create,
+        final Principal principal,
+        final String jobReporterId,
+        final HypervisorUpdateResultDTO result) {
+
         final String ownerKey = owner.getKey();
 
         log.debug("Hypervisor consumers for create/update: {}", hypervisors.getHypervisors().size());
@@ -101,10 +126,14 @@ public class HypervisorUpdateAction {
         parseHypervisorList(hypervisors, hosts, guests, incomingHosts);
         // TODO Need to ensure that we retrieve existing guestIds from the DB before continuing.
 
+        // Hosts which are unchanged since this reporter's last accepted report only need a check-in
+        Map<String, HypervisorFingerprint> fingerprints = new HashMap<>();
+        HypervisorUpdateJob.HypervisorList changed = this.skipUnchangedHosts(owner, hypervisors, hosts,
+            incomingHosts, jobReporterId, fingerprints, result);
+
         // Maps virt hypervisor ID to registered consumer for that hypervisor, should one exist:
         VirtConsumerMap hypervisorKnownConsumersMap = consumerCurator
-            .getHostConsumersMap(owner, hypervisors);
-        HypervisorUpdateResultDTO result = new HypervisorUpdateResultDTO();
+            .getHostConsumersMap(owner, changed);
         Map<String, Consumer> systemUuidKnownConsumersMap = new HashMap<>();
         if (config.getBoolean(ConfigProperties.USE_SYSTEM_UUID_FOR_MATCHING)) {
             for (Consumer consumer : hypervisorKnownConsumersMap.getConsumers()) {
@@ -199,8 +228,79 @@ public class HypervisorUpdateAction {
                 log.debug("hypervisor checkin reported asynchronously without reporter id " +
                     "for hypervisor:{} of owner:{}", hypervisorId, ownerKey);
             }
+            if (reportedOnConsumer == null) {
+                fingerprints.remove(hypervisorId);
+            }
         }
-        return new Result(result, hypervisorKnownConsumersMap);
+        return new Result(result, hypervisorKnownConsumersMap, fingerprints);
+    }
+
+    /**
+     * Removes the hosts whose fingerprints match those recorded for the reporter's last accepted
+     * report from the set of hosts to process, updating their check-in date and recording them as
+     * unchanged. The fingerprints of the remaining hosts are added to the provided map, so they
+     * can be recorded once the report has been persisted. Nothing is skipped when the report has
+     * no reporter ID or fingerprinting is disabled.
+     *
+     * @return
+     *  a hypervisor list containing only the hosts which need full processing
+     */
+    private HypervisorUpdateJob.HypervisorList skipUnchangedHosts(Owner owner,
+        HypervisorUpdateJob.HypervisorList hypervisors, Set<String> hosts,
+        Map<String, Consumer> incomingHosts, String jobReporterId,
+        Map<String, HypervisorFingerprint> fingerprints, HypervisorUpdateResultDTO result) {
+
+        if (jobReporterId == null || !config.getBoolean(ConfigProperties.HYPERVISOR_REPORT_FINGERPRINTING)) {
+            return hypervisors;
+        }
+
+        Map<String, HypervisorFingerprint> known = this.consumerCurator
+            .getHypervisorFingerprints(owner, jobReporterId, hosts);
+
+        HypervisorConsumerDTO.OwnerDTO ownerDTO = new HypervisorConsumerDTO.OwnerDTO()
+            .setKey(owner.getKey());
+
+        Set<String> unchanged = new HashSet<>();
+        for (String hypervisorId : hosts) {
+            Consumer incoming = incomingHosts.get(hypervisorId);
+            HypervisorFingerprint fingerprint = HypervisorFingerprint.fromReport(incoming);
+            HypervisorFingerprint previous = known.get(hypervisorId.toLowerCase());
+
+            if (fingerprint.matches(previous)) {
+                unchanged.add(hypervisorId);
+                result.addUnchanged(new HypervisorConsumerDTO()
+                    .setUuid(previous.getConsumerUuid())
+                    .setName(incoming.getName())
+                    .setOwner(ownerDTO));
+            }
+            else {
+                fingerprints.put(hypervisorId, fingerprint);
+            }
+        }
+
+        if (unchanged.isEmpty()) {
+            return hypervisors;
+        }
+
+        log.debug("Skipping {} of {} hosts unchanged since the last report from {}",
+            unchanged.size(), hosts.size(), jobReporterId);
+
+        this.consumerCurator.updateHypervisorLastCheckin(owner, unchanged, new Date());
+        hosts.removeAll(unchanged);
+
+        List<Consumer> remaining = new ArrayList<>();
+        for (Consumer hypervisor : hypervisors.getHypervisors()) {
+            HypervisorId idWrapper = hypervisor.getHypervisorId();
+
+            if (idWrapper == null || !unchanged.contains(idWrapper.getHypervisorId())) {
+                remaining.add(hypervisor);
+            }
+        }
+
+        HypervisorUpdateJob.HypervisorList changed = new HypervisorUpdateJob.HypervisorList();
+        changed.setConsumers(remaining);
+
+        return changed;
     }
 
     private Consumer reconcileByUuid(Consumer knownHost, Consumer incoming,
@@ -364,12 +464,15 @@ public class HypervisorUpdateAction {
 
         private final HypervisorUpdateResultDTO result;
         private final VirtConsumerMap hypervisorKnownConsumersMap;
+        private final Map<String, HypervisorFingerprint> fingerprints;
 
         Result(
             final HypervisorUpdateResultDTO result,
-            final VirtConsumerMap hypervisorKnownConsumersMap) {
+            final VirtConsumerMap hypervisorKnownConsumersMap,
+            final Map<String, HypervisorFingerprint> fingerprints) {
             this.result = result;
             this.hypervisorKnownConsumersMap = hypervisorKnownConsumersMap;
+            this.fingerprints = fingerprints;
         }
 
         public HypervisorUpdateResultDTO getResult() {
@@ -379,6 +482,14 @@ public class HypervisorUpdateAction {
         public VirtConsumerMap getKnownConsumers() {
             return hypervisorKnownConsumersMap;
         }
+
+        /**
+         * @return the fingerprints of the fully processed hosts, to be recorded once the known
+         *  consumers have been persisted
+         */
+        public Map<String, HypervisorFingerprint> getFingerprints() {
+            return fingerprints;
+        }
     }
 
 }
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.servlet.filter;
+
+import org.candlepin.tracing.Span;
+import org.candlepin.tracing.TraceMetrics;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * TracingFilter
+ *
+ * A servlet filter which wraps each request in a trace, such that the time spent in the various
+ * phases of the request (database, rules, crypto, serialization, events) is recorded in the trace
+ * metrics once the request completes. The trace is initially named after the HTTP method, and is
+ * renamed after the resource method once the request has been matched.
+ */
+@Singleton
+public class TracingFilter implements Filter {
+
+    private TraceMetrics traceMetrics;
+
+    @Inject
+    public TracingFilter(TraceMetrics traceMetrics) {
+        this.traceMetrics = traceMetrics;
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response,
+        FilterChain chain) throws IOException, ServletException {
+
+        String method = request instanceof HttpServletRequest ?
+            ((HttpServletRequest) request).getMethod() :
+            "REQUEST";
+
+        Span trace = this.traceMetrics.startTrace(Span.Phase.REQUEST, method);
+        try {
+            chain.doFilter(request, response);
+        }
+        finally {
+            this.traceMetrics.record(trace);
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+    }
+
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.tracing;
+
+import java.beans.ConstructorProperties;
+
+
+
+/**
+ * An immutable view of a {@link LatencyHistogram}, with all times expressed in milliseconds. Percentiles
+ * are bucket upper bounds, and may overstate the true value by up to a factor of two.
+ */
+public class HistogramSnapshot {
+
+    private final long count;
+    private final double totalMs;
+    private final double meanMs;
+    private final double maxMs;
+    private final double p50Ms;
+    private final double p95Ms;
+    private final double p99Ms;
+
+    @ConstructorProperties({"count", "totalMs", "meanMs", "maxMs", "p50Ms", "p95Ms", "p99Ms"})
+    public HistogramSnapshot(long count, double totalMs, double meanMs, double maxMs, double p50Ms,
+        double p95Ms, double p99Ms) {
+
+        this.count = count;
+        this.totalMs = totalMs;
+        this.meanMs = meanMs;
+        this.maxMs = maxMs;
+        this.p50Ms = p50Ms;
+        this.p95Ms = p95Ms;
+        this.p99Ms = p99Ms;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public double getTotalMs() {
+        return this.totalMs;
+    }
+
+    public double getMeanMs() {
+        return this.meanMs;
+    }
+
+    public double getMaxMs() {
+        return this.maxMs;
+    }
+
+    public double getP50Ms() {
+        return this.p50Ms;
+    }
+
+    public double getP95Ms() {
+        return this.p95Ms;
+    }
+
+    public double getP99Ms() {
+        return this.p99Ms;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HistogramSnapshot [count: %d, mean: %.3f ms, p95: %.3f ms, max: %.3f ms]",
+            this.count, this.meanMs, this.p95Ms, this.maxMs);
+    }
+}
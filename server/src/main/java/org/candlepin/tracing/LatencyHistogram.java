@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.tracing;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+
+/**
+ * A lock-free latency histogram using power-of-two microsecond buckets. Bucket <i>n</i> counts values
+ * below 2<sup>n</sup> microseconds which did not fit in any lower bucket, giving a worst-case relative
+ * error of 2x on reported percentiles -- plenty to tell a 5ms call from a 500ms one, at a fixed cost of
+ * a few hundred bytes per histogram.
+ */
+public class LatencyHistogram {
+
+    /** Enough buckets to cover a little over 25 days, in microseconds */
+    private static final int BUCKETS = 42;
+
+    private final AtomicLongArray buckets;
+    private final LongAdder count;
+    private final LongAdder totalNanos;
+    private final AtomicLong maxNanos;
+
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.count = new LongAdder();
+        this.totalNanos = new LongAdder();
+        this.maxNanos = new AtomicLong();
+    }
+
+    /**
+     * Records a single observation.
+     *
+     * @param nanos
+     *  the observed latency, in nanoseconds; negative values are treated as zero
+     */
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        this.buckets.incrementAndGet(bucket);
+        this.count.increment();
+        this.totalNanos.add(nanos);
+        this.maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Discards all recorded observations. Observations recorded concurrently with a reset may be
+     * partially retained.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; ++i) {
+            this.buckets.set(i, 0);
+        }
+
+        this.count.reset();
+        this.totalNanos.reset();
+        this.maxNanos.set(0);
+    }
+
+    /**
+     * Fetches the upper bound of the bucket containing the given quantile, in nanoseconds, capped by
+     * the largest value observed.
+     *
+     * @param quantile
+     *  the quantile to estimate, between 0.0 and 1.0 inclusive
+     *
+     * @return
+     *  an estimate of the given quantile, in nanoseconds, or zero if no values have been recorded
+     */
+    public long getQuantileNanos(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+
+        for (int i = 0; i < BUCKETS; ++i) {
+            snapshot[i] = this.buckets.get(i);
+            total += snapshot[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += snapshot[i];
+
+            if (seen >= target) {
+                return Math.min(TimeUnit.MICROSECONDS.toNanos(1L << i), this.maxNanos.get());
+            }
+        }
+
+        return this.maxNanos.get();
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    public long getTotalNanos() {
+        return this.totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return this.maxNanos.get();
+    }
+
+    /**
+     * Builds an immutable, millisecond-based view of the current state of this histogram.
+     *
+     * @return
+     *  a snapshot of this histogram
+     */
+    public HistogramSnapshot snapshot() {
+        long count = this.getCount();
+        long total = this.getTotalNanos();
+
+        return new HistogramSnapshot(count,
+            toMillis(total),
+            count > 0 ? toMillis(total / count) : 0,
+            toMillis(this.getMaxNanos()),
+            toMillis(this.getQuantileNanos(0.50)),
+            toMillis(this.getQuantileNanos(0.95)),
+            toMillis(this.getQuantileNanos(0.99)));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.tracing;
+
+import org.candlepin.hibernate.QueryStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+
+
+/**
+ * Aggregates the database statistics of the traces recorded under a single name.
+ */
+public class QueryMetrics {
+
+    private final LongAdder traces;
+    private final LongAdder statements;
+    private final LongAdder entitiesLoaded;
+    private final LongAdder executionNanos;
+    private final LongAdder overBudget;
+    private final AtomicLong maxStatements;
+    private volatile int budget;
+
+    public QueryMetrics() {
+        this.traces = new LongAdder();
+        this.statements = new LongAdder();
+        this.entitiesLoaded = new LongAdder();
+        this.executionNanos = new LongAdder();
+        this.overBudget = new LongAdder();
+        this.maxStatements = new AtomicLong();
+        this.budget = -1;
+    }
+
+    /**
+     * Records the database statistics of a single trace.
+     *
+     * @param stats
+     *  the statistics to record
+     */
+    public void record(QueryStats stats) {
+        this.traces.increment();
+        this.statements.add(stats.getStatementCount());
+        this.entitiesLoaded.add(stats.getEntitiesLoaded());
+        this.executionNanos.add(stats.getExecutionNanos());
+        this.maxStatements.accumulateAndGet(stats.getStatementCount(), Math::max);
+
+        if (stats.getBudget() >= 0) {
+            this.budget = stats.getBudget();
+        }
+
+        if (stats.isOverBudget()) {
+            this.overBudget.increment();
+        }
+    }
+
+    /**
+     * Builds an immutable view of the current state of these metrics.
+     *
+     * @return
+     *  a snapshot of these metrics
+     */
+    public QueryMetricsSnapshot snapshot() {
+        long count = this.traces.sum();
+        double divisor = Math.max(1, count);
+
+        return new QueryMetricsSnapshot(count,
+            this.statements.sum() / divisor,
+            this.maxStatements.get(),
+            this.entitiesLoaded.sum() / divisor,
+            this.executionNanos.sum() / divisor / TimeUnit.MILLISECONDS.toNanos(1),
+            this.budget,
+            this.overBudget.sum());
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.tracing;
+
+import java.beans.ConstructorProperties;
+
+
+
+/**
+ * An immutable view of the {@link QueryMetrics} of a trace name.
+ */
+public class QueryMetricsSnapshot {
+
+    private final long count;
+    private final double meanStatements;
+    private final long maxStatements;
+    private final double meanEntitiesLoaded;
+    private final double meanExecutionMs;
+    private final int budget;
+    private final long overBudget;
+
+    @ConstructorProperties({"count", "meanStatements", "maxStatements", "meanEntitiesLoaded",
+        "meanExecutionMs", "budget", "overBudget"})
+    public QueryMetricsSnapshot(long count, double meanStatements, long maxStatements,
+        double meanEntitiesLoaded, double meanExecutionMs, int budget, long overBudget) {
+
+        this.count = count;
+        this.meanStatements = meanStatements;
+        this.maxStatements = maxStatements;
+        this.meanEntitiesLoaded = meanEntitiesLoaded;
+        this.meanExecutionMs = meanExecutionMs;
+        this.budget = budget;
+        this.overBudget = overBudget;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public double getMeanStatements() {
+        return this.meanStatements;
+    }
+
+    public long getMaxStatements() {
+        return this.maxStatements;
+    }
+
+    public double getMeanEntitiesLoaded() {
+        return this.meanEntitiesLoaded;
+    }
+
+    public double getMeanExecutionMs() {
+        return this.meanExecutionMs;
+    }
+
+    /**
+     * Fetches the statement budget declared for the trace, if any.
+     *
+     * @return
+     *  the statement budget, or -1 if no budget has been declared
+     */
+    public int getBudget() {
+        return this.budget;
+    }
+
+    public long getOverBudget() {
+        return this.overBudget;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("QueryMetricsSnapshot [count: %d, mean statements: %.1f, max statements: %d]",
+            this.count, this.meanStatements, this.maxStatements);
+    }
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.tracing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * A single timed phase of a request or job trace. Spans form a tree rooted at the span started by
+ * {@link Tracer#startTrace}; every span opened while another span is active on the same thread becomes
+ * a child of that span. Spans are closed via {@link #close}, typically through a try-with-resources
+ * block, at which point their elapsed time is rolled up into their parent and into the per-phase
+ * totals kept on the root span.
+ * <p></p>
+ * Spans are not thread-safe and are only ever touched by the thread which opened them.
+ */
+public class Span implements AutoCloseable {
+
+    /**
+     * The broad category of work a span measures. Time is attributed to a phase exclusively, such that
+     * the self-times of all phases within a trace add up to the duration of the trace.
+     */
+    public enum Phase {
+        REQUEST,
+        JOB,
+        METHOD,
+        DB,
+        RULES,
+        CRYPTO,
+        SERIALIZATION,
+        EVENTS
+    }
+
+    /**
+     * The maximum number of children retained on a single span. Children opened beyond this limit are
+     * still timed and attributed to their phase, but are not kept in the tree to bound the memory used by
+     * very chatty requests.
+     */
+    public static final int MAX_RETAINED_CHILDREN = 128;
+
+    /** Shared span returned when no trace is active; closing it is a no-op. */
+    public static final Span NOOP = new Span(null, Phase.METHOD, "noop", 0);
+
+    private final Span parent;
+    private final Span root;
+    private final Phase phase;
+    private final long startNanos;
+    private String name;
+
+    private long endNanos;
+    private long childNanos;
+    private List<Span> children;
+    private int elidedChildren;
+
+    // Only allocated on root spans
+    private final long[] phaseNanos;
+
+    Span(Span parent, Phase phase, String name, long startNanos) {
+        this.parent = parent;
+        this.root = parent != null ? parent.root : this;
+        this.phase = phase;
+        this.name = name;
+        this.startNanos = startNanos;
+        this.endNanos = -1;
+        this.phaseNanos = parent == null ? new long[Phase.values().length] : null;
+
+        if (parent != null) {
+            parent.addChild(this);
+        }
+    }
+
+    private void addChild(Span child) {
+        if (this.children == null) {
+            this.children = new ArrayList<>();
+        }
+
+        if (this.children.size() < MAX_RETAINED_CHILDREN) {
+            this.children.add(child);
+        }
+        else {
+            ++this.elidedChildren;
+        }
+    }
+
+    public Span getParent() {
+        return this.parent;
+    }
+
+    public Span getRoot() {
+        return this.root;
+    }
+
+    public boolean isRoot() {
+        return this.parent == null && this != NOOP;
+    }
+
+    public Phase getPhase() {
+        return this.phase;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Renames this span. Used to give a request trace a meaningful name once the resource method
+     * handling it has been resolved.
+     *
+     * @param name
+     *  the new name for this span
+     */
+    public void setName(String name) {
+        if (this != NOOP && name != null) {
+            this.name = name;
+        }
+    }
+
+    public List<Span> getChildren() {
+        return this.children != null ? Collections.unmodifiableList(this.children) : Collections.emptyList();
+    }
+
+    /**
+     * Fetches the number of children which were timed but not retained on this span as a result of the
+     * {@link #MAX_RETAINED_CHILDREN} limit.
+     *
+     * @return
+     *  the number of elided children
+     */
+    public int getElidedChildren() {
+        return this.elidedChildren;
+    }
+
+    public boolean isClosed() {
+        return this.endNanos >= 0;
+    }
+
+    /**
+     * Fetches the elapsed time of this span, in nanoseconds. If the span has not yet been closed, this
+     * returns the time elapsed so far.
+     *
+     * @return
+     *  the elapsed time of this span, in nanoseconds
+     */
+    public long getDurationNanos() {
+        if (this == NOOP) {
+            return 0;
+        }
+
+        return (this.isClosed() ? this.endNanos : System.nanoTime()) - this.startNanos;
+    }
+
+    /**
+     * Fetches the time spent in this span exclusive of any time spent in its children, in nanoseconds.
+     *
+     * @return
+     *  the self-time of this span, in nanoseconds
+     */
+    public long getSelfNanos() {
+        return Math.max(0, this.getDurationNanos() - this.childNanos);
+    }
+
+    /**
+     * Fetches the total self-time attributed to the given phase across the whole trace this span belongs
+     * to. Only complete once the root span has been closed.
+     *
+     * @param phase
+     *  the phase for which to fetch the total
+     *
+     * @return
+     *  the time attributed to the given phase, in nanoseconds
+     */
+    public long getPhaseNanos(Phase phase) {
+        return this == NOOP ? 0 : this.root.phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * Closes this span, recording its end time and rolling its elapsed time up into its parent and the
+     * trace's phase totals. Closing an already-closed span has no effect.
+     */
+    @Override
+    public void close() {
+        if (this == NOOP || this.isClosed()) {
+            return;
+        }
+
+        this.endNanos = System.nanoTime();
+        long duration = this.endNanos - this.startNanos;
+
+        if (this.parent != null) {
+            this.parent.childNanos += duration;
+        }
+
+        this.root.phaseNanos[this.phase.ordinal()] += Math.max(0, duration - this.childNanos);
+        Tracer.closed(this);
+    }
+
+    /**
+     * Renders this span and its retained children as an indented tree, one span per line, suitable for
+     * logging.
+     *
+     * @return
+     *  a string representation of the span tree rooted at this span
+     */
+    public String toTreeString() {
+        StringBuilder builder = new StringBuilder();
+        this.appendTree(builder, 0);
+        return builder.toString();
+    }
+
+    private void appendTree(StringBuilder builder, int depth) {
+        for (int i = 0; i < depth; ++i) {
+            builder.append("  ");
+        }
+
+        builder.append(this.phase)
+            .append(' ')
+            .append(this.name)
+            .append(": ")
+            .append(toMillis(this.getDurationNanos()))
+            .append(" ms (self: ")
+            .append(toMillis(this.getSelfNanos()))
+            .append(" ms)");
+
+        if (this.elidedChildren > 0) {
+            builder.append(" [")
+                .append(this.elidedChildren)
+                .append(" more children elided]");
+        }
+
+        builder.append('\n');
+
+        for (Span child : this.getChildren()) {
+            child.appendTree(builder, depth + 1);
+        }
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format("%.3f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Span [phase: %s, name: %s, duration: %d ns]", this.phase, this.name,
+            this.getDurationNanos());
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.tracing;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.hibernate.QueryStats;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+
+
+/**
+ * Aggregates completed request and job traces into latency histograms, both per trace name and per
+ * phase, and optionally logs the full span tree of traces exceeding the configured slow threshold.
+ * <p></p>
+ * The database statistics of each trace are collected as well, and aggregated per trace name. Traces
+ * repeating an identical statement more often than the configured threshold -- the signature of an
+ * N+1 access pattern -- or exceeding the {@link org.candlepin.hibernate.QueryBudget} of their resource
+ * method are logged.
+ * <p></p>
+ * The collected metrics are exposed via GET /status/metrics and, when enabled, over JMX.
+ */
+@Singleton
+public class TraceMetrics implements TraceMetricsMXBean {
+    private static Logger log = LoggerFactory.getLogger(TraceMetrics.class);
+
+    public static final String MBEAN_NAME = "org.candlepin:type=TraceMetrics";
+
+    /**
+     * The maximum number of distinct trace names tracked; traces beyond this are recorded under
+     * {@link #OTHER_TRACES} to keep the metrics bounded should names ever be derived from user input.
+     */
+    public static final int MAX_TRACE_NAMES = 1000;
+    public static final String OTHER_TRACES = "(other)";
+
+    private final boolean enabled;
+    private final long slowThresholdNanos;
+    private final int repeatedStatementThreshold;
+
+    private final Map<String, LatencyHistogram> traceHistograms;
+    private final Map<Span.Phase, LatencyHistogram> phaseHistograms;
+    private final Map<String, QueryMetrics> queryMetrics;
+    private final ThreadLocal<QueryStats> traceQueryStats;
+
+    @Inject
+    public TraceMetrics(Configuration config) {
+        this.enabled = config.getBoolean(ConfigProperties.TRACING_ENABLED);
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(
+            config.getLong(ConfigProperties.TRACING_SLOW_THRESHOLD));
+        this.repeatedStatementThreshold =
+            config.getInt(ConfigProperties.TRACING_REPEATED_STATEMENT_THRESHOLD);
+
+        this.traceHistograms = new ConcurrentHashMap<>();
+        this.phaseHistograms = new EnumMap<>(Span.Phase.class);
+        this.queryMetrics = new ConcurrentHashMap<>();
+        this.traceQueryStats = new ThreadLocal<>();
+
+        for (Span.Phase phase : Span.Phase.values()) {
+            this.phaseHistograms.put(phase, new LatencyHistogram());
+        }
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Starts a new trace on the current thread if tracing is enabled. Database statistics are collected
+     * for the trace until it is recorded.
+     *
+     * @param phase
+     *  the phase of the trace, typically REQUEST or JOB
+     *
+     * @param name
+     *  the name of the trace
+     *
+     * @return
+     *  the newly opened span, or {@link Span#NOOP} if tracing is disabled
+     */
+    public Span startTrace(Span.Phase phase, String name) {
+        if (!this.enabled) {
+            return Span.NOOP;
+        }
+
+        Span trace = Tracer.startTrace(phase, name);
+        if (trace.isRoot()) {
+            this.traceQueryStats.set(QueryStats.begin());
+        }
+
+        return trace;
+    }
+
+    /**
+     * Closes the given trace, if necessary, and records it. Spans which are not the root of a trace
+     * are ignored, as their time is already accounted for by the trace containing them.
+     *
+     * @param trace
+     *  the trace to record
+     */
+    public void record(Span trace) {
+        if (trace == null || !trace.isRoot()) {
+            return;
+        }
+
+        trace.close();
+        long duration = trace.getDurationNanos();
+
+        String key = trace.getPhase() + " " + trace.getName();
+        if (!this.traceHistograms.containsKey(key) && this.traceHistograms.size() >= MAX_TRACE_NAMES) {
+            key = OTHER_TRACES;
+        }
+
+        this.traceHistograms.computeIfAbsent(key, k -> new LatencyHistogram()).record(duration);
+
+        for (Span.Phase phase : Span.Phase.values()) {
+            long nanos = trace.getPhaseNanos(phase);
+
+            if (nanos > 0) {
+                this.phaseHistograms.get(phase).record(nanos);
+            }
+        }
+
+        if (this.slowThresholdNanos > 0 && duration >= this.slowThresholdNanos) {
+            log.warn("Slow {} detected ({} ms); span tree:\n{}", trace.getPhase().name().toLowerCase(),
+                TimeUnit.NANOSECONDS.toMillis(duration), trace.toTreeString());
+        }
+
+        QueryStats stats = this.traceQueryStats.get();
+        if (stats != null) {
+            this.traceQueryStats.remove();
+            stats.end();
+
+            this.recordQueryStats(key, stats);
+        }
+    }
+
+    private void recordQueryStats(String key, QueryStats stats) {
+        this.queryMetrics.computeIfAbsent(key, k -> new QueryMetrics()).record(stats);
+
+        if (stats.isOverBudget()) {
+            log.warn("{} exceeded its query budget: {} statements issued; {} budgeted", key,
+                stats.getStatementCount(), stats.getBudget());
+        }
+
+        Map<String, Integer> repeated = stats.getRepeatedStatements(this.repeatedStatementThreshold);
+        if (!repeated.isEmpty()) {
+            StringBuilder builder = new StringBuilder();
+            Iterator<Map.Entry<String, Integer>> iterator = repeated.entrySet().iterator();
+
+            for (int i = 0; i < 5 && iterator.hasNext(); ++i) {
+                Map.Entry<String, Integer> entry = iterator.next();
+                builder.append("\n  ").append(entry.getValue()).append("x: ").append(entry.getKey());
+            }
+
+            log.warn("Possible N+1 query pattern in {}: {} statement(s) repeated {} or more times:{}", key,
+                repeated.size(), this.repeatedStatementThreshold, builder);
+        }
+    }
+
+    @Override
+    public SortedMap<String, HistogramSnapshot> getTraceHistograms() {
+        SortedMap<String, HistogramSnapshot> snapshots = new TreeMap<>();
+        this.traceHistograms.forEach((key, histogram) -> snapshots.put(key, histogram.snapshot()));
+
+        return snapshots;
+    }
+
+    @Override
+    public SortedMap<String, HistogramSnapshot> getPhaseHistograms() {
+        SortedMap<String, HistogramSnapshot> snapshots = new TreeMap<>();
+        this.phaseHistograms.forEach((phase, histogram) -> snapshots.put(phase.name(), histogram.snapshot()));
+
+        return snapshots;
+    }
+
+    @Override
+    public SortedMap<String, QueryMetricsSnapshot> getQueryMetrics() {
+        SortedMap<String, QueryMetricsSnapshot> snapshots = new TreeMap<>();
+        this.queryMetrics.forEach((key, metrics) -> snapshots.put(key, metrics.snapshot()));
+
+        return snapshots;
+    }
+
+    @Override
+    public void reset() {
+        this.traceHistograms.clear();
+        this.queryMetrics.clear();
+        this.phaseHistograms.values().forEach(LatencyHistogram::reset);
+    }
+
+    /**
+     * Registers this instance with the platform MBean server, replacing any instance registered
+     * previously.
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MBEAN_NAME);
+
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+
+            server.registerMBean(this, name);
+            log.info("Registered trace metrics MBean: {}", MBEAN_NAME);
+        }
+        catch (JMException e) {
+            log.warn("Unable to register trace metrics MBean", e);
+        }
+    }
+
+    /**
+     * Unregisters the trace metrics MBean from the platform MBean server, if present.
+     */
+    public void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MBEAN_NAME);
+
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        }
+        catch (JMException e) {
+            log.warn("Unable to unregister trace metrics MBean", e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.tracing;
+
+import java.util.Map;
+
+
+
+/**
+ * JMX management interface for {@link TraceMetrics}.
+ */
+public interface TraceMetricsMXBean {
+
+    /**
+     * Fetches the latency histograms of completed traces, keyed by trace phase and name; for instance,
+     * "REQUEST GET ConsumerResource.getConsumer" or "JOB RefreshPoolsJob".
+     *
+     * @return
+     *  a map of trace names to histogram snapshots
+     */
+    Map<String, HistogramSnapshot> getTraceHistograms();
+
+    /**
+     * Fetches the per-trace histograms of the time attributed to each phase, keyed by phase name.
+     * Traces which spent no time in a given phase are not counted towards that phase.
+     *
+     * @return
+     *  a map of phase names to histogram snapshots
+     */
+    Map<String, HistogramSnapshot> getPhaseHistograms();
+
+    /**
+     * Fetches the database statistics of completed traces, keyed by trace phase and name.
+     *
+     * @return
+     *  a map of trace names to query metric snapshots
+     */
+    Map<String, QueryMetricsSnapshot> getQueryMetrics();
+
+    /**
+     * Discards all recorded metrics.
+     */
+    void reset();
+}
@@ -0,0 +1,312 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.tracing;
+
+
+
+/**
+ * Entry point for the request- and job-level performance tracing API. The tracer keeps the span which
+ * is currently open on each thread, in the same fashion as the logging MDC, so instrumented code does
+ * not need to pass any context around:
+ *
+ * <pre>
+ *     return Tracer.call(Span.Phase.DB, "Pool", "lockAndLoad", () -&gt; {
+ *         ...
+ *     });
+ * </pre>
+ *
+ * Code which needs to work with the span itself, such as to rename it, may instead open and close
+ * the span directly through the {@link #span} methods.
+ *
+ * Spans are only recorded while a trace is in progress on the current thread; outside of one, the
+ * methods here return {@link Span#NOOP}, keeping the cost of instrumentation down to a thread-local
+ * lookup.
+ */
+public final class Tracer {
+
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+
+    /**
+     * An operation measured by a span, returning a value and optionally throwing a checked exception.
+     *
+     * @param <T>
+     *  the type of value returned by the operation
+     *
+     * @param <E>
+     *  the type of checked exception thrown by the operation
+     */
+    @FunctionalInterface
+    public interface Operation<T, E extends Exception> {
+        T execute() throws E;
+    }
+
+    /**
+     * An operation measured by a span which does not return a value, optionally throwing a checked
+     * exception.
+     *
+     * @param <E>
+     *  the type of checked exception thrown by the action
+     */
+    @FunctionalInterface
+    public interface Action<E extends Exception> {
+        void execute() throws E;
+    }
+
+    private Tracer() {
+        // Intentionally left empty
+    }
+
+    /**
+     * Starts a new trace on the current thread. If a trace is already in progress, the new span is
+     * attached to it as a child instead, and will not be a root span.
+     *
+     * @param phase
+     *  the phase of the trace, typically REQUEST or JOB
+     *
+     * @param name
+     *  the name of the trace
+     *
+     * @return
+     *  the newly opened span
+     */
+    public static Span startTrace(Span.Phase phase, String name) {
+        Span span = new Span(CURRENT.get(), phase, name, System.nanoTime());
+        CURRENT.set(span);
+
+        return span;
+    }
+
+    /**
+     * Opens a new span as a child of the current span, if a trace is in progress on this thread.
+     *
+     * @param phase
+     *  the phase the span's time should be attributed to
+     *
+     * @param name
+     *  the name of the span
+     *
+     * @return
+     *  the newly opened span, or {@link Span#NOOP} if no trace is in progress
+     */
+    public static Span span(Span.Phase phase, String name) {
+        Span current = CURRENT.get();
+        if (current == null) {
+            return Span.NOOP;
+        }
+
+        Span span = new Span(current, phase, name, System.nanoTime());
+        CURRENT.set(span);
+
+        return span;
+    }
+
+    /**
+     * Opens a new span named "{prefix}.{operation}" as a child of the current span, if a trace is in
+     * progress on this thread. The name is only built when the span is actually recorded.
+     *
+     * @param phase
+     *  the phase the span's time should be attributed to
+     *
+     * @param prefix
+     *  the prefix of the span name, such as an entity or class name
+     *
+     * @param operation
+     *  the operation being measured
+     *
+     * @return
+     *  the newly opened span, or {@link Span#NOOP} if no trace is in progress
+     */
+    public static Span span(Span.Phase phase, String prefix, String operation) {
+        return CURRENT.get() != null ? span(phase, prefix + '.' + operation) : Span.NOOP;
+    }
+
+    /**
+     * Executes the given operation within a new span, returning its result. The span is closed once
+     * the operation completes, whether or not it completes successfully.
+     *
+     * @param phase
+     *  the phase the span's time should be attributed to
+     *
+     * @param name
+     *  the name of the span
+     *
+     * @param operation
+     *  the operation to execute
+     *
+     * @throws E
+     *  if the operation throws an exception
+     *
+     * @return
+     *  the result of the operation
+     */
+    public static <T, E extends Exception> T call(Span.Phase phase, String name, Operation<T, E> operation)
+        throws E {
+
+        Span span = span(phase, name);
+
+        try {
+            return operation.execute();
+        }
+        finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Executes the given operation within a new span named "{prefix}.{operation}", returning its
+     * result. The span is closed once the operation completes, whether or not it completes
+     * successfully.
+     *
+     * @param phase
+     *  the phase the span's time should be attributed to
+     *
+     * @param prefix
+     *  the prefix of the span name, such as an entity or class name
+     *
+     * @param name
+     *  the operation being measured
+     *
+     * @param operation
+     *  the operation to execute
+     *
+     * @throws E
+     *  if the operation throws an exception
+     *
+     * @return
+     *  the result of the operation
+     */
+    public static <T, E extends Exception> T call(Span.Phase phase, String prefix, String name,
+        Operation<T, E> operation) throws E {
+
+        Span span = span(phase, prefix, name);
+
+        try {
+            return operation.execute();
+        }
+        finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Executes the given action within a new span. The span is closed once the action completes,
+     * whether or not it completes successfully.
+     *
+     * @param phase
+     *  the phase the span's time should be attributed to
+     *
+     * @param name
+     *  the name of the span
+     *
+     * @param action
+     *  the action to execute
+     *
+     * @throws E
+     *  if the action throws an exception
+     */
+    public static <E extends Exception> void run(Span.Phase phase, String name, Action<E> action)
+        throws E {
+
+        Span span = span(phase, name);
+
+        try {
+            action.execute();
+        }
+        finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Executes the given action within a new span named "{prefix}.{operation}". The span is closed
+     * once the action completes, whether or not it completes successfully.
+     *
+     * @param phase
+     *  the phase the span's time should be attributed to
+     *
+     * @param prefix
+     *  the prefix of the span name, such as an entity or class name
+     *
+     * @param name
+     *  the operation being measured
+     *
+     * @param action
+     *  the action to execute
+     *
+     * @throws E
+     *  if the action throws an exception
+     */
+    public static <E extends Exception> void run(Span.Phase phase, String prefix, String name,
+        Action<E> action) throws E {
+
+        Span span = span(phase, prefix, name);
+
+        try {
+            action.execute();
+        }
+        finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Fetches the span currently open on this thread.
+     *
+     * @return
+     *  the current span, or null if no trace is in progress
+     */
+    public static Span current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Checks if a trace is in progress on the current thread.
+     *
+     * @return
+     *  true if a trace is in progress; false otherwise
+     */
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Discards any trace in progress on the current thread without recording it.
+     */
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Called by spans as they are closed to restore the span's parent as the current span. Spans left
+     * open by their callers are implicitly abandoned when one of their ancestors is closed.
+     *
+     * @param span
+     *  the span which was closed
+     */
+    static void closed(Span span) {
+        for (Span current = CURRENT.get(); current != null; current = current.getParent()) {
+            if (current == span) {
+                if (span.getParent() != null) {
+                    CURRENT.set(span.getParent());
+                }
+                else {
+                    CURRENT.remove();
+                }
+
+                return;
+            }
+        }
+    }
+}
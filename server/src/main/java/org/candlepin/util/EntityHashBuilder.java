@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+
+/**
+ * The EntityHashBuilder calculates stable, 64-bit content hashes for entities. Unlike the
+ * HashCodeBuilder-based entity versions, the hashes generated by this builder are derived from a
+ * SHA-256 digest of a canonical, length-prefixed encoding of the appended values, making them
+ * independent of the JVM, the iteration order of unordered collections and the boundaries between
+ * adjacent values. Two entities with the same hash are still not guaranteed to be equal; callers
+ * relying on the hash for deduplication must confirm the match with a full comparison.
+ */
+public class EntityHashBuilder {
+
+    private static final byte NULL_MARKER = 0;
+    private static final byte VALUE_MARKER = 1;
+
+    private static final Comparator<String> NULLS_FIRST = Comparator.nullsFirst(Comparator.naturalOrder());
+
+    private final MessageDigest digest;
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a new, empty hash builder
+     */
+    public EntityHashBuilder() {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            // SHA-256 is required to be present in every JVM implementation
+            throw new IllegalStateException(e);
+        }
+
+        this.buffer = ByteBuffer.allocate(Long.BYTES);
+    }
+
+    private EntityHashBuilder appendMarker(boolean present) {
+        this.digest.update(present ? VALUE_MARKER : NULL_MARKER);
+        return this;
+    }
+
+    private EntityHashBuilder appendRawLong(long value) {
+        this.buffer.clear();
+        this.buffer.putLong(value);
+        this.digest.update(this.buffer.array());
+
+        return this;
+    }
+
+    /**
+     * Appends the given string to this builder. Null values are encoded differently from empty
+     * strings.
+     *
+     * @param value
+     *  the string to append; may be null
+     *
+     * @return
+     *  this builder
+     */
+    public EntityHashBuilder append(String value) {
+        this.appendMarker(value != null);
+
+        if (value != null) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+            this.appendRawLong(bytes.length);
+            this.digest.update(bytes);
+        }
+
+        return this;
+    }
+
+    /**
+     * Appends the given long value to this builder.
+     *
+     * @param value
+     *  the value to append; may be null
+     *
+     * @return
+     *  this builder
+     */
+    public EntityHashBuilder append(Long value) {
+        this.appendMarker(value != null);
+        return value != null ? this.appendRawLong(value) : this;
+    }
+
+    /**
+     * Appends the given boolean value to this builder.
+     *
+     * @param value
+     *  the value to append
+     *
+     * @return
+     *  this builder
+     */
+    public EntityHashBuilder append(boolean value) {
+        return this.appendMarker(true).appendRawLong(value ? 1 : 0);
+    }
+
+    /**
+     * Appends the given collection of strings to this builder. The collection is treated as
+     * unordered; collections containing the same elements in any order produce the same hash.
+     *
+     * @param values
+     *  the collection of strings to append; may be null
+     *
+     * @return
+     *  this builder
+     */
+    public EntityHashBuilder appendStrings(Collection<String> values) {
+        this.appendMarker(values != null);
+
+        if (values != null) {
+            List<String> sorted = new ArrayList<>(values);
+            sorted.sort(NULLS_FIRST);
+
+            this.appendRawLong(sorted.size());
+            sorted.forEach(this::append);
+        }
+
+        return this;
+    }
+
+    /**
+     * Appends the given collection of nested entity hashes to this builder. The collection is
+     * treated as unordered; collections containing the same hashes in any order produce the same
+     * hash.
+     *
+     * @param hashes
+     *  the collection of hashes to append; may be null
+     *
+     * @return
+     *  this builder
+     */
+    public EntityHashBuilder appendHashes(Collection<Long> hashes) {
+        this.appendMarker(hashes != null);
+
+        if (hashes != null) {
+            List<Long> sorted = new ArrayList<>(hashes);
+            sorted.sort(Comparator.nullsFirst(Comparator.naturalOrder()));
+
+            this.appendRawLong(sorted.size());
+            sorted.forEach(this::append);
+        }
+
+        return this;
+    }
+
+    /**
+     * Appends the given map of strings to this builder. The entries are appended in key order,
+     * so the iteration order of the provided map does not affect the resultant hash.
+     *
+     * @param map
+     *  the map to append; may be null
+     *
+     * @return
+     *  this builder
+     */
+    public EntityHashBuilder appendMap(Map<String, String> map) {
+        this.appendMarker(map != null);
+
+        if (map != null) {
+            Map<String, String> sorted = new TreeMap<>(NULLS_FIRST);
+            sorted.putAll(map);
+
+            this.appendRawLong(sorted.size());
+            for (Map.Entry<String, String> entry : sorted.entrySet()) {
+                this.append(entry.getKey());
+                this.append(entry.getValue());
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Completes the hash calculation, returning the first 64 bits of the digest. Once called, the
+     * builder is reset and may be reused.
+     *
+     * @return
+     *  the 64-bit hash of all values appended to this builder
+     */
+    public long toHash() {
+        return ByteBuffer.wrap(this.digest.digest()).getLong();
+    }
+
+}
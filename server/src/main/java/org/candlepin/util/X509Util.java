@@ -29,6 +29,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 
 /**
@@ -120,8 +121,18 @@ public abstract class X509Util {
      * @return the complete content path
      */
     public String createFullContentPath(String contentPrefix, ProductContent pc) {
+        return this.createFullContentPath(contentPrefix, pc.getContent().getContentUrl());
+    }
+
+    /**
+     * Creates a Content URL from the prefix and the content URL of a content
+     * @param contentPrefix to prepend to the path
+     * @param contentUrl the content URL of the content
+     * @return the complete content path
+     */
+    public String createFullContentPath(String contentPrefix, String contentUrl) {
         String prefix = "/";
-        String contentPath = pc.getContent().getContentUrl();
+        String contentPath = contentUrl;
 
         // Allow for the case where the content URL is a true URL.
         // If that is true, then return it as is.
@@ -150,59 +161,76 @@ public abstract class X509Util {
      */
     public Set<ProductContent> filterContentByContentArch(
         Set<ProductContent> pcSet, Consumer consumer, Product product) {
-        Set<ProductContent> filtered = new HashSet<>();
 
+        Set<String> productArches =
+            Arch.parseArches(product.getAttributeValue(Product.Attributes.ARCHITECTURE));
+
+        return this.filterContentByContentArch(pcSet, new HashSet<>(), consumer, productArches,
+            pc -> Arch.parseArches(pc.getContent().getArches()));
+    }
+
+    /**
+     * Removes the content that does not match the arch of the given consumer. Content without arches
+     * of its own inherits the arches of its product; content for which no arches are found at all,
+     * on either the content or the product, is never filtered out.
+     * <p></p>
+     * This is shared by the content entities and their catalog snapshots, which differ only in how
+     * the arches of a content are fetched.
+     *
+     * @param content
+     *  the content to filter
+     *
+     * @param filtered
+     *  the collection to receive the content matching the consumer's arch
+     *
+     * @param consumer
+     *  the consumer for which to filter the content
+     *
+     * @param productArches
+     *  the arches of the product providing the content
+     *
+     * @param contentArches
+     *  a function returning the arches of a given content
+     *
+     * @return
+     *  the given content if the consumer has no arch fact; the filtered collection otherwise
+     */
+    protected <T, C extends Collection<T>> C filterContentByContentArch(C content, C filtered,
+        Consumer consumer, Set<String> productArches, Function<T, Set<String>> contentArches) {
 
         String consumerArch = consumer.getFact(ARCH_FACT);
 
         if (consumerArch == null) {
-            log.debug("consumer: " + consumer.getId() + " has no " +
-                ARCH_FACT + " attribute.");
+            log.debug("consumer: {} has no {} attribute.", consumer.getId(), ARCH_FACT);
             log.debug("Not filtering by arch");
-            return pcSet;
+            return content;
         }
 
-
-        for (ProductContent pc : pcSet) {
-            boolean canUse = true;
-            Set<String> contentArches = Arch.parseArches(pc.getContent().getArches());
-            Set<String> productArches =
-                Arch.parseArches(product.getAttributeValue(Product.Attributes.ARCHITECTURE));
+        for (T entry : content) {
+            Set<String> arches = contentArches.apply(entry);
 
             // Empty or null Content.arches should result in
             // inheriting the arches from the product
-            if (contentArches.isEmpty()) {
-                // No content arch, see if there is a Product arch
-                // and if so inherit it.
-                if (!productArches.isEmpty()) {
-                    contentArches.addAll(productArches);
-                }
-                else {
-                    // No Product arches either, log it, but do
-                    // not filter out this content
-                    log.debug("No arch attributes found for content or product");
-                }
+            if (arches.isEmpty()) {
+                arches = productArches;
             }
 
-            for (String contentArch : contentArches) {
+            // Content where no arch was found at all (on Content or on Product) is
+            // not filtered out
+            boolean canUse = arches.isEmpty();
 
-                if (Arch.contentForConsumer(contentArch, consumerArch)) {
+            for (String arch : arches) {
+                if (Arch.contentForConsumer(arch, consumerArch)) {
                     canUse = true;
                     break;
                 }
-                else {
-                    canUse = false;
-                }
             }
 
-            // If we found a workable arch for this content, include it
-            // also include content where no arch was found at all (on
-            // Content or on Product)
             if (canUse) {
-                filtered.add(pc);
+                filtered.add(entry);
             }
-
         }
+
         return filtered;
     }
 
@@ -15,6 +15,9 @@
 package org.candlepin.util;
 
 import com.google.inject.name.Named;
+import org.candlepin.cache.ContentSnapshot;
+import org.candlepin.cache.ProductCatalog;
+import org.candlepin.cache.ProductSnapshot;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.Consumer;
@@ -23,7 +26,6 @@ import org.candlepin.model.EnvironmentContent;
 import org.candlepin.model.Pool;
 import org.candlepin.model.Product;
 import org.candlepin.model.Branding;
-import org.candlepin.model.ProductContent;
 import org.candlepin.model.dto.Content;
 import org.candlepin.model.dto.EntitlementBody;
 import org.candlepin.model.dto.Order;
@@ -46,7 +48,6 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -69,6 +70,7 @@ public class X509V3ExtensionUtil extends X509Util {
     private ObjectMapper mapper;
     private Configuration config;
     private EntitlementCurator entCurator;
+    private ProductCatalog productCatalog;
     public static final String CERT_VERSION = "3.4";
 
     private long pathNodeId = 0;
@@ -78,12 +80,14 @@ public class X509V3ExtensionUtil extends X509Util {
 
     @Inject
     public X509V3ExtensionUtil(Configuration config, EntitlementCurator entCurator,
-        @Named("X509V3ExtensionUtilObjectMapper") ObjectMapper objectMapper) {
+        @Named("X509V3ExtensionUtilObjectMapper") ObjectMapper objectMapper,
+        ProductCatalog productCatalog) {
 
         // Output everything in UTC
         this.config = config;
         this.entCurator = entCurator;
         this.mapper = objectMapper;
+        this.productCatalog = productCatalog;
     }
 
     public Set<X509ExtensionWrapper> getExtensions() {
@@ -300,29 +304,26 @@ public class X509V3ExtensionUtil extends X509Util {
         String contentPrefix, Map<String, EnvironmentContent> promotedContent,
         Consumer consumer, Pool pool, Set<String> entitledProductIds) {
 
+        // Product data is read from the catalog snapshots rather than the entities, to avoid
+        // walking (and lazily loading) the product and content graphs for every certificate
+        ProductSnapshot engSnapshot = this.productCatalog.getProduct(engProduct);
+        ProductSnapshot skuSnapshot = this.productCatalog.getProduct(sku);
+
         org.candlepin.model.dto.Product toReturn = new org.candlepin.model.dto.Product();
 
-        toReturn.setId(engProduct.getId());
-        toReturn.setName(engProduct.getName());
+        toReturn.setId(engSnapshot.getId());
+        toReturn.setName(engSnapshot.getName());
 
-        String version = engProduct.getAttributeValue(Product.Attributes.VERSION);
+        String version = engSnapshot.getAttributeValue(Product.Attributes.VERSION);
         toReturn.setVersion(version != null ? version : "");
 
-        Branding brand = getBranding(pool, engProduct.getId());
+        Branding brand = getBranding(pool, engSnapshot.getId());
         toReturn.setBrandType(brand.getType());
         toReturn.setBrandName(brand.getName());
 
-        String productArches = engProduct.getAttributeValue(Product.Attributes.ARCHITECTURE);
-        Set<String> productArchSet = Arch.parseArches(productArches);
-
-        // FIXME: getParsedArches might make more sense to just return a list
-        List<String> archList = new ArrayList<>();
-        for (String arch : productArchSet) {
-            archList.add(arch);
-        }
-        toReturn.setArchitectures(archList);
-        toReturn.setContent(createContent(filterProductContent(engProduct, entitledProductIds), sku,
-            contentPrefix, promotedContent, consumer, engProduct));
+        toReturn.setArchitectures(new ArrayList<>(engSnapshot.getArches()));
+        toReturn.setContent(createContent(filterProductContent(engSnapshot, entitledProductIds),
+            skuSnapshot, contentPrefix, promotedContent, consumer, engSnapshot));
 
         return toReturn;
     }
@@ -354,74 +355,67 @@ public class X509V3ExtensionUtil extends X509Util {
     /*
      * createContent
      *
-     * productArchList is a list of arch strings parse from
-     *   product attributes.
+     * Content without arches of its own inherits the arches of the product.
      */
-    public List<Content> createContent(Set<ProductContent> productContent, Product sku, String contentPrefix,
-        Map<String, EnvironmentContent> promotedContent, Consumer consumer, Product product) {
+    public List<Content> createContent(List<ProductSnapshot.ContentEntry> productContent,
+        ProductSnapshot sku, String contentPrefix, Map<String, EnvironmentContent> promotedContent,
+        Consumer consumer, ProductSnapshot product) {
 
         List<Content> toReturn = new ArrayList<>();
 
         boolean enableEnvironmentFiltering = config.getBoolean(ConfigProperties.ENV_CONTENT_FILTERING);
 
         // Return only the contents that are arch appropriate
-        Set<ProductContent> archApproriateProductContent = filterContentByContentArch(
-            productContent, consumer, product);
+        List<ProductSnapshot.ContentEntry> archApproriateProductContent = filterContentByContentArch(
+            productContent, new ArrayList<>(), consumer, product.getArches(),
+            pc -> pc.getContent().getArches());
 
-        List<String> skuDisabled = sku.getSkuDisabledContentIds();
-        List<String> skuEnabled = sku.getSkuEnabledContentIds();
+        Set<String> skuDisabled = sku.getSkuDisabledContentIds();
+        Set<String> skuEnabled = sku.getSkuEnabledContentIds();
+
+        for (ProductSnapshot.ContentEntry pc : archApproriateProductContent) {
+            ContentSnapshot snapshot = pc.getContent();
 
-        for (ProductContent pc : archApproriateProductContent) {
-            Content content = new Content();
             if (enableEnvironmentFiltering && consumer.getEnvironmentId() != null &&
-                !promotedContent.containsKey(pc.getContent().getId())) {
+                !promotedContent.containsKey(snapshot.getId())) {
 
-                log.debug("Skipping content not promoted to environment: {}", pc.getContent());
+                log.debug("Skipping content not promoted to environment: {}", snapshot);
                 continue;
             }
 
+            Content content = new Content();
+
             // Augment the content path with the prefix if it is passed in
-            String contentPath = this.createFullContentPath(contentPrefix, pc);
+            String contentPath = this.createFullContentPath(contentPrefix, snapshot.getContentUrl());
 
-            content.setId(pc.getContent().getId());
-            content.setType(pc.getContent().getType());
-            content.setName(pc.getContent().getName());
-            content.setLabel(pc.getContent().getLabel());
-            content.setVendor(pc.getContent().getVendor());
+            content.setId(snapshot.getId());
+            content.setType(snapshot.getType());
+            content.setName(snapshot.getName());
+            content.setLabel(snapshot.getLabel());
+            content.setVendor(snapshot.getVendor());
             content.setPath(contentPath);
-            content.setGpgUrl(pc.getContent().getGpgUrl());
-
+            content.setGpgUrl(snapshot.getGpgUrl());
 
             // Set content model's arches here, inheriting from the product if
             // they are not set on the content.
-            List<String> archesList = new ArrayList<>();
+            content.setArches(new ArrayList<>(snapshot.getArches().isEmpty() ?
+                product.getArches() : snapshot.getArches()));
 
-            Set<String> contentArches = Arch.parseArches(pc.getContent()
-                .getArches());
-            if (contentArches.isEmpty()) {
-                archesList.addAll(Arch.parseArches(
-                    product.getAttributeValue(Product.Attributes.ARCHITECTURE)));
-            }
-            else {
-                archesList.addAll(Arch.parseArches(pc.getContent().getArches()));
-            }
-            content.setArches(archesList);
-
-            Boolean enabled = pc.isEnabled();
+            boolean enabled = pc.isEnabled();
 
             // sku level content enable override. if on both lists, active wins.
-            if (skuDisabled.contains(pc.getContent().getId())) {
+            if (skuDisabled.contains(snapshot.getId())) {
                 enabled = false;
             }
 
-            if (skuEnabled.contains(pc.getContent().getId())) {
+            if (skuEnabled.contains(snapshot.getId())) {
                 enabled = true;
             }
 
             // Check if we should override the enabled flag due to setting on promoted content
             if (enableEnvironmentFiltering && consumer.getEnvironmentId() != null) {
                 // we know content has been promoted at this point
-                Boolean enabledOverride = promotedContent.get(pc.getContent().getId()).getEnabled();
+                Boolean enabledOverride = promotedContent.get(snapshot.getId()).getEnabled();
                 if (enabledOverride != null) {
                     log.debug("overriding enabled flag: {}", enabledOverride);
                     enabled = enabledOverride;
@@ -434,20 +428,15 @@ public class X509V3ExtensionUtil extends X509Util {
             }
 
             // Include metadata expiry if specified on the content
-            if (pc.getContent().getMetadataExpiration() != null) {
-                content.setMetadataExpiration(pc.getContent().getMetadataExpiration());
+            if (snapshot.getMetadataExpiration() != null) {
+                content.setMetadataExpiration(snapshot.getMetadataExpiration());
             }
 
             // Include required tags if specified on the content set
-            String requiredTags = pc.getContent().getRequiredTags();
-            if ((requiredTags != null) && !requiredTags.equals("")) {
-                StringTokenizer st = new StringTokenizer(requiredTags, ",");
-                List<String> tagList = new ArrayList<>();
-                while (st.hasMoreElements()) {
-                    tagList.add((String) st.nextElement());
-                }
-                content.setRequiredTags(tagList);
+            if (!snapshot.getRequiredTags().isEmpty()) {
+                content.setRequiredTags(new ArrayList<>(snapshot.getRequiredTags()));
             }
+
             toReturn.add(content);
         }
         return toReturn;
@@ -459,17 +448,17 @@ public class X509V3ExtensionUtil extends X509Util {
      * to that modified product. If they do not, we should filter out this content.
      *
      * @param prod
-     * @return ProductContent to include in the certificate.
+     * @return the content entries to include in the certificate.
      */
-    public Set<ProductContent> filterProductContent(Product prod,
+    public List<ProductSnapshot.ContentEntry> filterProductContent(ProductSnapshot prod,
         Set<String> entitledProductIds) {
-        Set<ProductContent> filtered = new HashSet<>();
+        List<ProductSnapshot.ContentEntry> filtered = new ArrayList<>();
 
-        for (ProductContent pc : prod.getProductContent()) {
+        for (ProductSnapshot.ContentEntry pc : prod.getContent()) {
             boolean include = true;
-            if (pc.getContent().getModifiedProductIds().size() > 0) {
+            Set<String> prodIds = pc.getContent().getModifiedProductIds();
+            if (prodIds.size() > 0) {
                 include = false;
-                Collection<String> prodIds = pc.getContent().getModifiedProductIds();
                 // If consumer has an entitlement to just one of the modified products,
                 // we will include this content set
                 for (String prodId : prodIds) {
@@ -485,7 +474,7 @@ public class X509V3ExtensionUtil extends X509Util {
             }
             else {
                 log.debug("No entitlements found for modified products.");
-                log.debug("Skipping content set: " + pc.getContent());
+                log.debug("Skipping content set: {}", pc.getContent());
             }
         }
 
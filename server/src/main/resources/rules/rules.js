@@ -1,4 +1,4 @@
-// Version: 5.39
+// Version: 5.40
 
 /*
  * Default Candlepin rule set.
@@ -2077,6 +2077,29 @@ var Entitlement = {
         return validators;
     },
 
+    /*
+     * Resolves the validators for a pool from the dispatch precompiled by Candlepin, if it was
+     * provided, falling back to get_validators otherwise. The resolved validator arrays are
+     * cached by dispatch key for the duration of the call.
+     */
+    get_dispatched_validators: function(context, pool, cache) {
+        if (!context.ruleDispatch || !context.poolRuleKeys || !(pool.id in context.poolRuleKeys)) {
+            return this.get_validators(pool);
+        }
+
+        var key = context.poolRuleKeys[pool.id];
+        if (!(key in cache)) {
+            var names = context.ruleDispatch[key];
+            var validators = [];
+            for (var i = 0; i < names.length; i++) {
+                validators.push(this[names[i]]);
+            }
+            cache[key] = validators;
+        }
+
+        return cache[key];
+    },
+
     validate_pool: function() {
         context = this.get_attribute_context();
         validators = this.get_validators(context.pool);
@@ -2091,9 +2114,10 @@ var Entitlement = {
         context = this.get_attribute_context();
 
         var result_map = {};
+        var validator_cache = {};
         for (var i = 0; i < context.pools.length; i++) {
             pool = context.pools[i];
-            validators = this.get_validators(pool);
+            validators = this.get_dispatched_validators(context, pool, validator_cache);
             var result = this.ValidationResult();
             for (var k = 0; k < validators.length; k++) {
                 // Set up the context to work like an individual validation
@@ -2112,9 +2136,10 @@ var Entitlement = {
         context.quantity = 1;
 
         var result_map = {};
+        var validator_cache = {};
         for (var i = 0; i < context.pools.length; i++) {
             pool = context.pools[i]
-            validators = this.get_validators(pool);
+            validators = this.get_dispatched_validators(context, pool, validator_cache);
             var result = this.ValidationResult();
             for (var k = 0; k < validators.length; k++) {
                 // Set up the context to work like an individual validation
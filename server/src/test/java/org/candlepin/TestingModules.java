@@ -35,6 +35,7 @@ import org.candlepin.bind.BindChainFactory;
 import org.candlepin.bind.BindContextFactory;
 import org.candlepin.bind.PreEntitlementRulesCheckOpFactory;
 import org.candlepin.cache.CandlepinCache;
+import org.candlepin.cache.ProductCatalog;
 import org.candlepin.cache.StatusCache;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.common.guice.HttpMethodMatcher;
@@ -142,6 +143,7 @@ import java.io.InputStream;
 import java.util.Date;
 import java.util.Properties;
 
+import javax.cache.CacheManager;
 import javax.inject.Provider;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -272,6 +274,8 @@ public class TestingModules {
             //When testing, we are using mock Candlepin cache. It's
             //methods are basically no-op
             bind(CandlepinCache.class).toInstance(mockedCandlepinCache);
+            // Likewise, the product catalog builds its snapshots without caching them
+            bind(ProductCatalog.class).toInstance(new ProductCatalog(mock(CacheManager.class)));
             CandlepinRequestScope requestScope = new CandlepinRequestScope();
             bindScope(CandlepinRequestScoped.class, requestScope);
             //RequestScoped doesn't exist in unit tests, so we must
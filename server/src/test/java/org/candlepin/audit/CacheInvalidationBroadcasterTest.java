@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.cache.CacheInvalidation;
+import org.candlepin.common.config.Configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.apache.activemq.artemis.api.core.ActiveMQBuffer;
+import org.apache.activemq.artemis.api.core.ActiveMQBuffers;
+import org.apache.activemq.artemis.api.core.RoutingType;
+import org.apache.activemq.artemis.api.core.SimpleString;
+import org.apache.activemq.artemis.api.core.client.ClientConsumer;
+import org.apache.activemq.artemis.api.core.client.ClientMessage;
+import org.apache.activemq.artemis.api.core.client.ClientProducer;
+import org.apache.activemq.artemis.api.core.client.ClientSession;
+import org.apache.activemq.artemis.api.core.client.ClientSessionFactory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+
+/**
+ * Test suite for the CacheInvalidationBroadcaster class
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class CacheInvalidationBroadcasterTest {
+
+    @Mock private ClientSessionFactory clientSessionFactory;
+    @Mock private ClientSession clientSession;
+    @Mock private ClientConsumer clientConsumer;
+    @Mock private ClientProducer clientProducer;
+    @Mock private ClientMessage clientMessage;
+    @Mock private Configuration config;
+
+    private ObjectMapper mapper = new ObjectMapper();
+    private ActiveMQBuffer activeMQBuffer = ActiveMQBuffers.fixedBuffer(1000);
+    private CacheInvalidationBroadcaster broadcaster;
+
+    @BeforeEach
+    public void init() throws Exception {
+        when(clientSessionFactory.createSession(eq(true), eq(true))).thenReturn(clientSession);
+        when(clientSession.createConsumer(any(SimpleString.class))).thenReturn(clientConsumer);
+        when(clientSession.createProducer(any(SimpleString.class))).thenReturn(clientProducer);
+        when(clientSession.createMessage(anyBoolean())).thenReturn(clientMessage);
+        when(clientMessage.getBodyBuffer()).thenReturn(activeMQBuffer);
+
+        CacheInvalidationConnection connection = new CacheInvalidationConnection(config) {
+            @Override
+            ClientSessionFactory getFactory() {
+                return clientSessionFactory;
+            }
+        };
+
+        // Run sends on the calling thread so they can be verified synchronously
+        this.broadcaster = new CacheInvalidationBroadcaster(connection, mapper, Runnable::run);
+    }
+
+    @Test
+    public void connectsWhenBrokerIsConnected() throws Exception {
+        broadcaster.onStatusUpdate(ActiveMQStatus.DOWN, ActiveMQStatus.CONNECTED);
+
+        ArgumentCaptor<SimpleString> queue = ArgumentCaptor.forClass(SimpleString.class);
+        ArgumentCaptor<SimpleString> filter = ArgumentCaptor.forClass(SimpleString.class);
+        verify(clientSession).createTemporaryQueue(eq(SimpleString.toSimpleString("cache.invalidation")),
+            eq(RoutingType.MULTICAST), queue.capture(), filter.capture());
+
+        assertTrue(queue.getValue().toString().startsWith("cache.invalidation."));
+        assertTrue(filter.getValue().toString()
+            .startsWith(CacheInvalidationBroadcaster.NODE_PROPERTY + " <> "));
+
+        verify(clientSession).createConsumer(eq(queue.getValue()));
+        verify(clientConsumer).setMessageHandler(eq(broadcaster));
+        verify(clientSession).start();
+    }
+
+    @Test
+    public void publishSendsNonDurableMessage() throws Exception {
+        broadcaster.onStatusUpdate(ActiveMQStatus.DOWN, ActiveMQStatus.CONNECTED);
+        broadcaster.publish(new CacheInvalidation("org.candlepin.model.Owner", "owner_id"));
+
+        verify(clientSession).createMessage(eq(false));
+        verify(clientMessage).putStringProperty(eq(CacheInvalidationBroadcaster.NODE_PROPERTY), anyString());
+        verify(clientProducer).send(eq(clientMessage));
+
+        CacheInvalidation sent = mapper.readValue(activeMQBuffer.readString(), CacheInvalidation.class);
+        assertEquals("org.candlepin.model.Owner", sent.getEntity());
+        assertEquals("owner_id", sent.getId());
+    }
+
+    @Test
+    public void publishDropsInvalidationWhileDisconnected() throws Exception {
+        broadcaster.publish(new CacheInvalidation("org.candlepin.model.Owner", "owner_id"));
+
+        broadcaster.onStatusUpdate(ActiveMQStatus.DOWN, ActiveMQStatus.CONNECTED);
+        broadcaster.onStatusUpdate(ActiveMQStatus.CONNECTED, ActiveMQStatus.DOWN);
+        broadcaster.publish(new CacheInvalidation("org.candlepin.model.Owner", "owner_id"));
+
+        verify(clientSession).close();
+        verifyZeroInteractions(clientProducer);
+    }
+
+    @Test
+    public void receivedInvalidationsArePassedToHandler() throws Exception {
+        List<CacheInvalidation> received = new ArrayList<>();
+        broadcaster.setHandler(received::add);
+
+        activeMQBuffer.writeString(mapper.writeValueAsString(
+            new CacheInvalidation("org.candlepin.model.Rules", "rules_id")));
+        broadcaster.onMessage(clientMessage);
+
+        verify(clientMessage).acknowledge();
+        assertEquals(1, received.size());
+        assertEquals("org.candlepin.model.Rules", received.get(0).getEntity());
+        assertEquals("rules_id", received.get(0).getId());
+    }
+
+    @Test
+    public void malformedMessagesAreIgnored() throws Exception {
+        List<CacheInvalidation> received = new ArrayList<>();
+        broadcaster.setHandler(received::add);
+
+        activeMQBuffer.writeString("not json");
+        broadcaster.onMessage(clientMessage);
+
+        verify(clientMessage).acknowledge();
+        assertTrue(received.isEmpty());
+    }
+}
@@ -134,6 +134,23 @@ public class EventSinkImplTest {
         assertEquals(content, sstr.toString());
     }
 
+    @Test
+    public void eventsQueuedAfterSendingAreSentSeparately() throws Exception {
+        doReturn("Simple String").when(mapper).writeValueAsString(anyObject());
+
+        eventSinkImpl.queueEvent(mock(Event.class));
+        eventSinkImpl.sendEvents();
+
+        eventSinkImpl.queueEvent(mock(Event.class));
+        eventSinkImpl.rollback();
+
+        // Each batch of events is sent or rolled back in a session of its own
+        verify(mockSessionFactory, times(2)).createTransactedSession();
+        verify(mockClientSession).commit();
+        verify(mockClientSession).rollback();
+        verify(mockClientProducer, times(2)).send(any(ClientMessage.class));
+    }
+
     @Test
     public void sendEventShouldNotFailWhenObjectMapperThrowsException() throws Exception {
         doThrow(new JsonGenerationException("Nothing serious!"))
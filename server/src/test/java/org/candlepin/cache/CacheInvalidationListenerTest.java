@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.audit.CacheInvalidationBroadcaster;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import javax.persistence.EntityManagerFactory;
+
+
+
+/**
+ * Test suite for the CacheInvalidationListener class
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class CacheInvalidationListenerTest {
+
+    @Mock private CacheInvalidationBroadcaster broadcaster;
+    @Mock private EntityManagerFactory emf;
+    @Mock private SessionFactory sessionFactory;
+    @Mock private Cache cache;
+    @Mock private EntityPersister persister;
+
+    private CacheInvalidationListener listener;
+
+    @BeforeEach
+    public void init() {
+        when(emf.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        when(sessionFactory.getCache()).thenReturn(cache);
+        when(persister.getEntityName()).thenReturn("org.candlepin.model.Owner");
+        when(persister.canWriteToCache()).thenReturn(true);
+
+        this.listener = new CacheInvalidationListener(broadcaster, () -> emf);
+    }
+
+    private CacheInvalidation captureInvalidation() {
+        ArgumentCaptor<CacheInvalidation> captor = ArgumentCaptor.forClass(CacheInvalidation.class);
+        verify(broadcaster).publish(captor.capture());
+
+        return captor.getValue();
+    }
+
+    @Test
+    public void publishesCommittedUpdates() {
+        listener.onPostUpdate(new PostUpdateEvent(null, "owner_id", null, null, null, persister, null));
+
+        CacheInvalidation invalidation = this.captureInvalidation();
+        assertEquals("org.candlepin.model.Owner", invalidation.getEntity());
+        assertEquals("owner_id", invalidation.getId());
+    }
+
+    @Test
+    public void publishesCommittedDeletes() {
+        listener.onPostDelete(new PostDeleteEvent(null, "owner_id", null, persister, null));
+
+        CacheInvalidation invalidation = this.captureInvalidation();
+        assertEquals("org.candlepin.model.Owner", invalidation.getEntity());
+        assertEquals("owner_id", invalidation.getId());
+    }
+
+    @Test
+    public void publishesEntityWideInvalidationForNonStringIds() {
+        listener.onPostUpdate(new PostUpdateEvent(null, 42L, null, null, null, persister, null));
+
+        CacheInvalidation invalidation = this.captureInvalidation();
+        assertEquals("org.candlepin.model.Owner", invalidation.getEntity());
+        assertNull(invalidation.getId());
+    }
+
+    @Test
+    public void ignoresUncachedEntities() {
+        when(persister.canWriteToCache()).thenReturn(false);
+
+        assertFalse(listener.requiresPostCommitHanding(persister));
+        listener.onPostUpdate(new PostUpdateEvent(null, "owner_id", null, null, null, persister, null));
+
+        verifyZeroInteractions(broadcaster);
+    }
+
+    @Test
+    public void ignoresFailedCommits() {
+        listener.onPostUpdateCommitFailed(
+            new PostUpdateEvent(null, "owner_id", null, null, null, persister, null));
+        listener.onPostDeleteCommitFailed(new PostDeleteEvent(null, "owner_id", null, persister, null));
+
+        verifyZeroInteractions(broadcaster);
+    }
+
+    @Test
+    public void evictsReceivedEntity() {
+        listener.evict(new CacheInvalidation("org.candlepin.model.Owner", "owner_id"));
+
+        verify(cache).evictEntityData(eq("org.candlepin.model.Owner"), eq("owner_id"));
+    }
+
+    @Test
+    public void evictsAllEntitiesOfReceivedType() {
+        listener.evict(new CacheInvalidation("org.candlepin.model.Owner", null));
+
+        verify(cache).evictEntityData(eq("org.candlepin.model.Owner"));
+    }
+
+    @Test
+    public void ignoresUnknownEntities() {
+        doThrow(new IllegalArgumentException()).when(cache).evictEntityData(anyString(), anyString());
+
+        listener.evict(new CacheInvalidation("org.candlepin.model.Unknown", "id"));
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+
+
+
+/**
+ * Test suite for the CandlepinCache class, backed by the default ehcache configuration
+ */
+public class CandlepinCacheTest {
+
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    public void init() throws Exception {
+        CachingProvider provider = Caching.getCachingProvider();
+        ClassLoader classLoader = provider.getDefaultClassLoader();
+
+        this.cacheManager = provider.getCacheManager(classLoader.getResource("ehcache.xml").toURI(),
+            classLoader);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        this.cacheManager.close();
+    }
+
+    @Test
+    public void testEntityRegionsAreConfigured() {
+        for (String region : CandlepinCacheRegions.ENTITY_REGIONS) {
+            assertNotNull(this.cacheManager.getCache(region), region);
+        }
+    }
+
+    @Test
+    public void testRegionStatistics() {
+        Cache<Object, Object> products = this.cacheManager.getCache(CandlepinCacheRegions.PRODUCTS);
+        products.put("product_uuid", "product");
+        products.get("product_uuid");
+        products.get("product_uuid");
+        products.get("missing_uuid");
+
+        Map<String, CacheRegionStatistics> statistics = new CandlepinCache(this.cacheManager)
+            .getRegionStatistics();
+
+        assertEquals(CandlepinCacheRegions.ENTITY_REGIONS.size(), statistics.size());
+
+        CacheRegionStatistics productStats = statistics.get(CandlepinCacheRegions.PRODUCTS);
+        assertEquals(2, productStats.getHits());
+        assertEquals(1, productStats.getMisses());
+        assertEquals(1, productStats.getPuts());
+
+        CacheRegionStatistics ownerStats = statistics.get(CandlepinCacheRegions.OWNERS);
+        assertEquals(0, ownerStats.getHits());
+        assertEquals(0, ownerStats.getMisses());
+    }
+}
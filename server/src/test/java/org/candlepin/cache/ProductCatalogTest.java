@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.model.Content;
+import org.candlepin.model.Product;
+import org.candlepin.test.TestUtil;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+
+
+
+/**
+ * Test suite for the ProductCatalog class, backed by the default ehcache configuration
+ */
+public class ProductCatalogTest {
+
+    private CacheManager cacheManager;
+    private ProductCatalog catalog;
+
+    @BeforeEach
+    public void init() throws Exception {
+        CachingProvider provider = Caching.getCachingProvider();
+        ClassLoader classLoader = provider.getDefaultClassLoader();
+
+        this.cacheManager = provider.getCacheManager(classLoader.getResource("ehcache.xml").toURI(),
+            classLoader);
+        this.catalog = new ProductCatalog(this.cacheManager);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        this.cacheManager.close();
+    }
+
+    private Content createContent(String id, String uuid) {
+        Content content = TestUtil.createContent(id);
+        content.setUuid(uuid);
+        content.setArches("x86_64, ppc64,,aarch64");
+        content.setRequiredTags("rhel-7,server");
+        content.setModifiedProductIds(Arrays.asList("mod1", "mod2"));
+        content.setUpdated(new Date(1000));
+
+        return content;
+    }
+
+    private Product createProduct(String id, String uuid, Content... content) {
+        Product product = TestUtil.createProduct(id, "product-" + id);
+        product.setUuid(uuid);
+        product.setAttribute(Product.Attributes.ARCHITECTURE, "x86_64,s390x");
+        product.setAttribute(Product.Attributes.VERSION, "7.1");
+        product.setAttribute(Product.Attributes.CONTENT_OVERRIDE_ENABLED, "c1,c2");
+        product.setAttribute(Product.Attributes.CONTENT_OVERRIDE_DISABLED, "c3");
+        product.setUpdated(new Date(1000));
+
+        for (Content c : content) {
+            product.addContent(c, !"c2".equals(c.getId()));
+        }
+
+        return product;
+    }
+
+    @Test
+    public void testProductSnapshotContents() {
+        Product product = this.createProduct("p1", "p1_uuid", this.createContent("c1", "c1_uuid"),
+            this.createContent("c2", "c2_uuid"));
+
+        ProductSnapshot snapshot = this.catalog.getProduct(product);
+
+        assertEquals("p1_uuid", snapshot.getUuid());
+        assertEquals("p1", snapshot.getId());
+        assertEquals("product-p1", snapshot.getName());
+        assertEquals("7.1", snapshot.getAttributeValue(Product.Attributes.VERSION));
+        assertNull(snapshot.getAttributeValue("missing"));
+        assertEquals(new HashSet<>(Arrays.asList("x86_64", "s390x")), snapshot.getArches());
+        assertEquals(new HashSet<>(Arrays.asList("c1", "c2")), snapshot.getSkuEnabledContentIds());
+        assertEquals(Collections.singleton("c3"), snapshot.getSkuDisabledContentIds());
+
+        assertEquals(2, snapshot.getContent().size());
+        for (ProductSnapshot.ContentEntry entry : snapshot.getContent()) {
+            ContentSnapshot content = entry.getContent();
+
+            assertEquals(!"c2".equals(content.getId()), entry.isEnabled());
+            assertEquals(content.getId() + "_uuid", content.getUuid());
+            assertEquals("https://test.url.com", content.getContentUrl());
+            assertEquals(new HashSet<>(Arrays.asList("x86_64", "ppc64", "aarch64")), content.getArches());
+            assertEquals(Arrays.asList("rhel-7", "server"), content.getRequiredTags());
+            assertEquals(new HashSet<>(Arrays.asList("mod1", "mod2")), content.getModifiedProductIds());
+        }
+    }
+
+    // Impl note: snapshots are stored by value in the off-heap tier, so the instance returned from
+    // the catalog is not necessarily the one which was built. Instead, we check how often the
+    // entities were read to determine whether or not a snapshot was built or fetched.
+
+    @Test
+    public void testSnapshotsAreCachedByUuid() {
+        Content content = spy(this.createContent("c1", "c1_uuid"));
+        Product product = spy(this.createProduct("p1", "p1_uuid", content));
+
+        for (int i = 0; i < 3; ++i) {
+            assertEquals("p1", this.catalog.getProduct(product).getId());
+            assertEquals("c1", this.catalog.getContent(content).getId());
+        }
+
+        verify(product, times(1)).getProductContent();
+        verify(content, times(1)).getArches();
+    }
+
+    @Test
+    public void testUnpersistedProductsAreNotCached() {
+        Content content = spy(this.createContent("c1", "c1_uuid"));
+        Product product = spy(this.createProduct("p1", null, content));
+
+        this.catalog.getProduct(product);
+        this.catalog.getProduct(product);
+
+        verify(product, times(2)).getProductContent();
+
+        // The content is persisted, however, and should still be cached
+        verify(content, times(1)).getArches();
+    }
+
+    @Test
+    public void testSnapshotIsRebuiltWhenEntityIsUpdated() {
+        Product product = spy(this.createProduct("p1", "p1_uuid"));
+
+        this.catalog.getProduct(product);
+
+        product.setName("updated name");
+        product.setUpdated(new Date(2000));
+
+        assertEquals("updated name", this.catalog.getProduct(product).getName());
+        assertEquals("updated name", this.catalog.getProduct(product).getName());
+        verify(product, times(2)).getProductContent();
+    }
+
+    @Test
+    public void testEvictProducts() {
+        Product product = spy(this.createProduct("p1", "p1_uuid"));
+        this.catalog.getProduct(product);
+
+        this.catalog.evictProducts(Collections.singleton("p1_uuid"));
+
+        this.catalog.getProduct(product);
+        verify(product, times(2)).getProductContent();
+    }
+
+    @Test
+    public void testEvictContent() {
+        Content content = spy(this.createContent("c1", "c1_uuid"));
+        this.catalog.getContent(content);
+
+        this.catalog.evictContent(Arrays.asList("c1_uuid", "unknown_uuid"));
+
+        this.catalog.getContent(content);
+        verify(content, times(2)).getArches();
+    }
+
+    @Test
+    public void testCatalogWithoutCacheRegions() {
+        ProductCatalog uncached = new ProductCatalog(mock(CacheManager.class));
+        Product product = spy(this.createProduct("p1", "p1_uuid", this.createContent("c1", "c1_uuid")));
+
+        assertEquals("p1", uncached.getProduct(product).getId());
+        assertEquals("p1", uncached.getProduct(product).getId());
+        verify(product, times(2)).getProductContent();
+
+        uncached.evictProducts(Collections.singleton("p1_uuid"));
+        uncached.evictContent(Collections.singleton("c1_uuid"));
+    }
+
+    @Test
+    public void testSnapshotsAreSerializable() throws Exception {
+        Product product = this.createProduct("p1", "p1_uuid", this.createContent("c1", "c1_uuid"));
+        ProductSnapshot snapshot = this.catalog.getProduct(product);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(snapshot);
+        }
+
+        ProductSnapshot copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (ProductSnapshot) in.readObject();
+        }
+
+        assertTrue(copy.isSnapshotOf(product));
+        assertEquals(snapshot.getArches(), copy.getArches());
+        assertEquals(1, copy.getContent().size());
+        assertEquals(Arrays.asList("rhel-7", "server"),
+            copy.getContent().get(0).getContent().getRequiredTags());
+    }
+}
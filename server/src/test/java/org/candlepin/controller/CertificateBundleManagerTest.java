@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.candlepin.model.CertificateBundle;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.Owner;
+import org.candlepin.test.DatabaseTestFixture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+
+
+/**
+ * CertificateBundleManagerTest
+ */
+public class CertificateBundleManagerTest extends DatabaseTestFixture {
+
+    private CertificateBundleManager bundleManager;
+    private Consumer consumer;
+
+    @BeforeEach
+    public void setup() {
+        this.bundleManager = this.injector.getInstance(CertificateBundleManager.class);
+
+        Owner owner = this.createOwner("test-owner", "Test Owner");
+        this.consumer = this.createConsumer(owner);
+    }
+
+    @Test
+    public void testCreatesBundleOnFirstRefresh() {
+        CertificateBundle bundle = this.bundleManager.refresh(this.consumer, Arrays.asList(1L, 2L));
+
+        assertNotNull(bundle.getId());
+        assertEquals(this.consumer.getId(), bundle.getConsumerId());
+        assertEquals(1, bundle.getVersion());
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), bundle.getSerials().keySet());
+    }
+
+    @Test
+    public void testUnchangedSerialsKeepVersion() {
+        CertificateBundle bundle = this.bundleManager.refresh(this.consumer, Arrays.asList(1L, 2L));
+        CertificateBundle refreshed = this.bundleManager.refresh(this.consumer, Arrays.asList(2L, 1L));
+
+        assertEquals(bundle.getId(), refreshed.getId());
+        assertEquals(1, refreshed.getVersion());
+    }
+
+    @Test
+    public void testChangedSerialsBumpVersionAndTrackDelta() {
+        this.bundleManager.refresh(this.consumer, Arrays.asList(1L, 2L));
+        this.bundleManager.refresh(this.consumer, Arrays.asList(2L, 3L));
+        CertificateBundle bundle = this.bundleManager.refresh(this.consumer, Arrays.asList(3L, 4L));
+
+        assertEquals(3, bundle.getVersion());
+
+        assertTrue(bundle.hasDeltaFrom(1));
+        assertEquals(new HashSet<>(Arrays.asList(3L, 4L)), bundle.getSerialsAddedSince(1));
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), bundle.getSerialsRemovedSince(1));
+
+        assertEquals(Collections.singleton(4L), bundle.getSerialsAddedSince(2));
+        assertEquals(Collections.singleton(2L), bundle.getSerialsRemovedSince(2));
+
+        assertTrue(bundle.getSerialsAddedSince(3).isEmpty());
+        assertTrue(bundle.getSerialsRemovedSince(3).isEmpty());
+        assertFalse(bundle.hasDeltaFrom(4));
+    }
+
+    @Test
+    public void testReaddedSerialIsNotReportedRemoved() {
+        this.bundleManager.refresh(this.consumer, Arrays.asList(1L, 2L));
+        this.bundleManager.refresh(this.consumer, Arrays.asList(2L));
+        CertificateBundle bundle = this.bundleManager.refresh(this.consumer, Arrays.asList(1L, 2L));
+
+        assertEquals(3, bundle.getVersion());
+        assertEquals(Collections.singleton(1L), bundle.getSerialsAddedSince(1));
+        assertTrue(bundle.getSerialsRemovedSince(1).isEmpty());
+    }
+
+    @Test
+    public void testBundleChangesArePersisted() {
+        this.bundleManager.refresh(this.consumer, Arrays.asList(1L, 2L));
+        this.bundleManager.refresh(this.consumer, Arrays.asList(2L, 3L));
+        this.commitTransaction();
+        this.getEntityManager().clear();
+        this.beginTransaction();
+
+        Consumer consumer = this.consumerCurator.get(this.consumer.getId());
+        CertificateBundle bundle = this.bundleManager.refresh(consumer, Arrays.asList(2L, 3L));
+
+        assertEquals(2, bundle.getVersion());
+        assertEquals(Collections.singleton(1L), bundle.getSerialsRemovedSince(1));
+    }
+
+    @Test
+    public void testContentAccessVersionChangeBumpsVersion() {
+        this.bundleManager.refresh(this.consumer, Arrays.asList(1L, 2L), 2L, "2-1000");
+        CertificateBundle bundle = this.bundleManager.refresh(this.consumer, Arrays.asList(1L, 2L), 2L,
+            "2-1000");
+
+        assertEquals(1, bundle.getVersion());
+        assertTrue(this.bundleManager.isCurrent(bundle, Arrays.asList(1L, 2L), "2-1000"));
+        assertFalse(this.bundleManager.isCurrent(bundle, Arrays.asList(1L, 2L), "2-2000"));
+
+        bundle = this.bundleManager.refresh(this.consumer, Arrays.asList(1L, 2L), 2L, "2-2000");
+
+        assertEquals(2, bundle.getVersion());
+        assertEquals("2-2000", bundle.getContentAccessVersion());
+        assertEquals(Collections.singleton(2L), bundle.getSerialsAddedSince(1));
+        assertTrue(bundle.getSerialsRemovedSince(1).isEmpty());
+    }
+
+    @Test
+    public void testDeltaWindowIsBounded() {
+        long rounds = CertificateBundleManager.MAX_DELTA_VERSIONS + 10;
+        CertificateBundle bundle = null;
+
+        for (long serial = 1; serial <= rounds; ++serial) {
+            bundle = this.bundleManager.refresh(this.consumer, Collections.singletonList(serial));
+        }
+
+        assertEquals(rounds, bundle.getVersion());
+        assertEquals(rounds - CertificateBundleManager.MAX_DELTA_VERSIONS, bundle.getDeltaBase());
+        assertFalse(bundle.hasDeltaFrom(bundle.getDeltaBase() - 1));
+        assertTrue(bundle.hasDeltaFrom(bundle.getDeltaBase()));
+        assertEquals(CertificateBundleManager.MAX_DELTA_VERSIONS, bundle.getRemovedSerials().size());
+    }
+}
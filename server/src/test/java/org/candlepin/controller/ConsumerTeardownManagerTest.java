@@ -0,0 +1,237 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.audit.Event;
+import org.candlepin.audit.EventSink;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.CertificateSerial;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCapability;
+import org.candlepin.model.ConsumerContentOverride;
+import org.candlepin.model.ConsumerInstalledProduct;
+import org.candlepin.model.DeletedConsumer;
+import org.candlepin.model.DeletedConsumerCurator;
+import org.candlepin.model.GuestId;
+import org.candlepin.model.HypervisorId;
+import org.candlepin.model.IdentityCertificate;
+import org.candlepin.model.KeyPair;
+import org.candlepin.model.Owner;
+import org.candlepin.model.Pool;
+import org.candlepin.model.Product;
+import org.candlepin.policy.js.consumer.ConsumerRules;
+import org.candlepin.test.DatabaseTestFixture;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Module;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import javax.inject.Inject;
+
+
+
+/**
+ * ConsumerTeardownManagerTest
+ */
+public class ConsumerTeardownManagerTest extends DatabaseTestFixture {
+
+    @Inject private DeletedConsumerCurator deletedConsumerCurator;
+
+    private EventSink sink = mock(EventSink.class);
+    private ConsumerTeardownManager teardownManager;
+    private Owner owner;
+    private Pool pool;
+
+    @Override
+    protected Module getGuiceOverrideModule() {
+        return new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(EventSink.class).toInstance(sink);
+            }
+        };
+    }
+
+    @BeforeEach
+    public void setUp() {
+        this.config.setProperty(ConfigProperties.CONSUMER_TEARDOWN_CHUNK_SIZE, "2");
+        this.teardownManager = this.injector.getInstance(ConsumerTeardownManager.class);
+
+        this.owner = this.createOwner("test-owner", "Test Owner");
+        Product product = this.createProduct(this.owner);
+        this.pool = this.createPool(this.owner, product);
+    }
+
+    private Consumer createPopulatedConsumer(Owner owner) throws Exception {
+        Consumer consumer = this.createConsumer(owner);
+
+        CertificateSerial serial = this.certSerialCurator.create(new CertificateSerial(new Date()));
+        IdentityCertificate idCert = new IdentityCertificate();
+        idCert.setKey("key");
+        idCert.setCert("cert");
+        idCert.setSerial(serial);
+        consumer.setIdCert(this.identityCertificateCurator.create(idCert));
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        java.security.KeyPair generated = generator.generateKeyPair();
+        consumer.setKeyPair(new KeyPair(generated.getPrivate(), generated.getPublic()));
+
+        consumer.setFact("virt.is_guest", "false");
+        consumer.addGuestId(new GuestId("guest-" + consumer.getUuid(), consumer,
+            Collections.singletonMap("active", "1")));
+        consumer.addInstalledProduct(new ConsumerInstalledProduct("prod-1", "Product 1"));
+        consumer.setCapabilities(new HashSet<>(Arrays.asList(new ConsumerCapability(consumer, "cert_v3"))));
+        consumer.setHypervisorId(new HypervisorId(consumer, owner, "hv-" + consumer.getUuid()));
+        consumer.setContentTags(new HashSet<>(Arrays.asList("tag")));
+        consumer.setAddOns(new HashSet<>(Arrays.asList("addon")));
+        consumer = this.consumerCurator.merge(consumer);
+
+        this.consumerContentOverrideCurator.create(
+            new ConsumerContentOverride(consumer, "content", "enabled", "1"));
+        this.createEntitlement(owner, consumer, this.pool);
+        this.consumerCurator.flush();
+
+        return consumer;
+    }
+
+    @Test
+    public void testDeleteOwnerConsumersInChunks() throws Exception {
+        List<Consumer> consumers = Arrays.asList(this.createPopulatedConsumer(this.owner),
+            this.createPopulatedConsumer(this.owner), this.createPopulatedConsumer(this.owner));
+
+        Owner other = this.createOwner("other-owner", "Other Owner");
+        Consumer otherConsumer = this.createConsumer(other);
+
+        int deleted = this.teardownManager.deleteOwnerConsumers(this.owner);
+        this.consumerCurator.clear();
+
+        assertEquals(3, deleted);
+        assertTrue(this.ownerCurator.getConsumerIds(this.owner).list().isEmpty());
+        assertNotNull(this.consumerCurator.get(otherConsumer.getId()));
+        assertTrue(this.entitlementCurator.listByOwner(this.owner).list().isEmpty());
+
+        for (Consumer consumer : consumers) {
+            DeletedConsumer record = this.deletedConsumerCurator.findByConsumerUuid(consumer.getUuid());
+            assertNotNull(record);
+            assertEquals(this.owner.getId(), record.getOwnerId());
+            assertEquals(this.owner.getKey(), record.getOwnerKey());
+
+            IdentityCertificate idCert = consumer.getIdCert();
+            assertNull(this.identityCertificateCurator.get(idCert.getId()));
+            assertTrue(this.certSerialCurator.get(idCert.getSerial().getId()).isRevoked());
+        }
+
+        // One compact event is sent for each chunk of consumers, alongside the entitlement events
+        ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
+        verify(this.sink, atLeastOnce()).queueEvent(captor.capture());
+
+        int consumerEvents = 0;
+        for (Event event : captor.getAllValues()) {
+            if (event.getTarget() == Event.Target.CONSUMER) {
+                assertEquals(Event.Type.BULK_DELETED, event.getType());
+                assertEquals(this.owner.getId(), event.getOwnerId());
+                ++consumerEvents;
+            }
+        }
+
+        assertEquals(2, consumerEvents);
+    }
+
+    @Test
+    public void testDeleteConsumersByUuid() throws Exception {
+        Consumer consumer1 = this.createPopulatedConsumer(this.owner);
+        Consumer consumer2 = this.createPopulatedConsumer(this.owner);
+
+        Owner other = this.createOwner("other-owner", "Other Owner");
+        Consumer otherConsumer = this.createConsumer(other);
+
+        int deleted = this.teardownManager.deleteConsumers(this.owner,
+            Arrays.asList(consumer1.getUuid(), otherConsumer.getUuid(), "unknown"));
+        this.consumerCurator.clear();
+
+        assertEquals(1, deleted);
+        assertNull(this.consumerCurator.get(consumer1.getId()));
+        assertNotNull(this.consumerCurator.get(consumer2.getId()));
+        assertNotNull(this.consumerCurator.get(otherConsumer.getId()));
+        assertNotNull(this.deletedConsumerCurator.findByConsumerUuid(consumer1.getUuid()));
+        assertNull(this.deletedConsumerCurator.findByConsumerUuid(otherConsumer.getUuid()));
+    }
+
+    @Test
+    public void testDeleteReplacesExistingDeletionRecord() throws Exception {
+        Consumer consumer = this.createPopulatedConsumer(this.owner);
+        DeletedConsumer existing = new DeletedConsumer(consumer.getUuid(), "old-owner-id", "old-owner",
+            "Old Owner");
+        this.deletedConsumerCurator.create(existing);
+
+        this.teardownManager.deleteOwnerConsumers(this.owner);
+        this.consumerCurator.clear();
+
+        DeletedConsumer record = this.deletedConsumerCurator.findByConsumerUuid(consumer.getUuid());
+        assertEquals(this.owner.getId(), record.getOwnerId());
+        assertEquals(1, this.deletedConsumerCurator.countByConsumerUuid(consumer.getUuid()));
+    }
+
+    @Test
+    public void testFailedTeardownResumes() throws Exception {
+        List<Consumer> consumers = Arrays.asList(this.createPopulatedConsumer(this.owner),
+            this.createPopulatedConsumer(this.owner), this.createPopulatedConsumer(this.owner));
+
+        // Without an outer transaction, each chunk is committed on its own
+        this.commitTransaction();
+
+        // The consumers are deleted in ID order; the third one is in the second chunk
+        ConsumerRules rules = mock(ConsumerRules.class);
+        doNothing().doNothing().doThrow(new IllegalStateException("failed"))
+            .when(rules).onConsumerDelete(any(Consumer.class));
+        this.teardownManager.consumerRulesProvider = () -> rules;
+
+        assertThrows(IllegalStateException.class,
+            () -> this.teardownManager.deleteOwnerConsumers(this.owner));
+        this.consumerCurator.clear();
+
+        // The first chunk stays deleted, and its events were sent as it committed
+        List<String> remaining = this.consumerCurator.getConsumerIdChunk(this.owner.getId(), null, 10);
+        assertEquals(1, remaining.size());
+        verify(this.sink, times(1)).sendEvents();
+
+        reset(rules);
+        assertEquals(1, this.teardownManager.deleteOwnerConsumers(this.owner));
+        this.consumerCurator.clear();
+
+        assertEquals(0, this.consumerCurator.getConsumerIdChunk(this.owner.getId(), null, 10).size());
+        verify(this.sink, times(2)).sendEvents();
+
+        for (Consumer consumer : consumers) {
+            assertNotNull(this.deletedConsumerCurator.findByConsumerUuid(consumer.getUuid()));
+        }
+
+        this.beginTransaction();
+    }
+}
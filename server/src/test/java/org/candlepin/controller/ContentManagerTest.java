@@ -17,6 +17,7 @@ package org.candlepin.controller;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import org.candlepin.cache.ProductCatalog;
 import org.candlepin.dto.api.v1.ContentDTO;
 import org.candlepin.model.Content;
 import org.candlepin.model.Owner;
@@ -30,6 +31,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import java.util.Arrays;
+import java.util.Collections;
 
 
 /**
@@ -39,19 +41,22 @@ public class ContentManagerTest extends DatabaseTestFixture {
 
     private ContentManager contentManager;
     private EntitlementCertificateGenerator mockEntCertGenerator;
+    private ProductCatalog mockProductCatalog;
     private ProductManager productManager;
 
     @BeforeEach
     public void setup() throws Exception {
         this.mockEntCertGenerator = mock(EntitlementCertificateGenerator.class);
+        this.mockProductCatalog = mock(ProductCatalog.class);
 
         this.productManager = new ProductManager(
             this.mockEntCertGenerator, this.ownerContentCurator, this.ownerProductCurator,
-            this.productCurator);
+            this.productCurator, this.mockProductCatalog);
 
         this.contentManager = new ContentManager(
             this.contentCurator, this.mockEntCertGenerator, this.ownerContentCurator,
-            this.productCurator, this.productManager, this.modelTranslator);
+            this.productCurator, this.productManager, this.modelTranslator,
+            this.mockProductCatalog);
     }
 
     @Test
@@ -144,6 +149,9 @@ public class ContentManagerTest extends DatabaseTestFixture {
         assertEquals(0, this.ownerContentCurator.getOwnerCount(content));
         assertNotNull(this.ownerContentCurator.getContentById(owner, content.getId()));
 
+        // The catalog snapshot of the superseded version should be evicted
+        verify(this.mockProductCatalog, times(1)).evictContent(Collections.singleton(content.getUuid()));
+
         // The product should have also changed in the same way as a result of the content change
         assertNotNull(this.productCurator.get(product.getUuid()));
         assertEquals(0, this.ownerProductCurator.getOwnerCount(product));
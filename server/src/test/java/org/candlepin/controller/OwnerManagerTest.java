@@ -18,6 +18,7 @@ import static org.mockito.Mockito.*;
 
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.ContentAccessCertificateCurator;
+import org.candlepin.model.Environment;
 import org.candlepin.model.EnvironmentCurator;
 import org.candlepin.model.ExporterMetadataCurator;
 import org.candlepin.model.ImportRecordCurator;
@@ -29,7 +30,9 @@ import org.candlepin.model.OwnerProductCurator;
 import org.candlepin.model.PermissionBlueprintCurator;
 import org.candlepin.model.UeberCertificateCurator;
 import org.candlepin.model.activationkeys.ActivationKeyCurator;
-
+import org.candlepin.pinsetter.core.PinsetterException;
+import org.candlepin.pinsetter.core.PinsetterKernel;
+import org.candlepin.pinsetter.tasks.RegenContentAccessPayloadsJob;
 import org.candlepin.service.ContentAccessCertServiceAdapter;
 import org.candlepin.service.OwnerServiceAdapter;
 
@@ -37,6 +40,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.Assert;
 import org.junit.runner.RunWith;
+import org.quartz.JobDetail;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
@@ -79,6 +84,8 @@ public class OwnerManagerTest {
     private UeberCertificateCurator uberCertificateCurator;
     @Mock
     private OwnerServiceAdapter ownerServiceAdapter;
+    @Mock
+    private PinsetterKernel pinsetterKernel;
 
     @Before
     public void setUp() {
@@ -86,7 +93,7 @@ public class OwnerManagerTest {
             exportCurator, importRecordCurator, permissionCurator, ownerProductCurator, productManager,
             ownerContentCurator, contentManager, ownerCurator, contentAccessCertService,
             contentAccessCertCurator, ownerEnvContentAccessCurator, uberCertificateCurator,
-            ownerServiceAdapter);
+            ownerServiceAdapter, pinsetterKernel);
     }
 
     @Test
@@ -150,4 +157,61 @@ public class OwnerManagerTest {
         when(ownerServiceAdapter.getContentAccessMode(eq(owner.getKey()))).thenReturn("three");
         ownerManager.refreshContentAccessMode(ownerServiceAdapter, owner);
     }
+
+    @Test
+    public void testRefreshContentAccessFlagsPayloadsAndQueuesRegen() throws Exception {
+        Owner owner = new Owner("test_owner", "test_owner");
+        owner.setId("owner_id");
+        owner.setContentAccessMode(ContentAccessCertServiceAdapter.ORG_ENV_ACCESS_MODE);
+
+        ownerManager.refreshOwnerForContentAccess(owner);
+
+        ArgumentCaptor<JobDetail> captor = ArgumentCaptor.forClass(JobDetail.class);
+        verify(ownerEnvContentAccessCurator).markStaleForOwner(eq("owner_id"));
+        verify(ownerEnvContentAccessCurator, never()).removeAllForOwner(anyString());
+        verify(pinsetterKernel).scheduleSingleJob(captor.capture());
+        Assert.assertEquals(RegenContentAccessPayloadsJob.class, captor.getValue().getJobClass());
+    }
+
+    @Test
+    public void testRefreshContentAccessDropsPayloadsWhenRegenCannotBeQueued() throws Exception {
+        Owner owner = new Owner("test_owner", "test_owner");
+        owner.setId("owner_id");
+        owner.setContentAccessMode(ContentAccessCertServiceAdapter.ORG_ENV_ACCESS_MODE);
+        when(pinsetterKernel.scheduleSingleJob(any(JobDetail.class)))
+            .thenThrow(new PinsetterException("fail"));
+
+        ownerManager.refreshOwnerForContentAccess(owner);
+
+        verify(ownerEnvContentAccessCurator).removeAllForOwner(eq("owner_id"));
+    }
+
+    @Test
+    public void testRefreshContentAccessDropsPayloadsInEntitlementMode() throws Exception {
+        Owner owner = new Owner("test_owner", "test_owner");
+        owner.setId("owner_id");
+        owner.setContentAccessMode(ContentAccessCertServiceAdapter.ENTITLEMENT_ACCESS_MODE);
+
+        ownerManager.refreshOwnerForContentAccess(owner);
+
+        verify(contentAccessCertCurator).deleteForOwner(eq(owner));
+        verify(ownerEnvContentAccessCurator).removeAllForOwner(eq("owner_id"));
+        verify(ownerEnvContentAccessCurator, never()).markStaleForOwner(anyString());
+        verifyZeroInteractions(pinsetterKernel);
+    }
+
+    @Test
+    public void testRefreshEnvironmentOnlyQueuesRegenWhenPayloadsFlagged() throws Exception {
+        Owner owner = new Owner("test_owner", "test_owner");
+        owner.setId("owner_id");
+        Environment env = new Environment("env_id", "env", owner);
+
+        when(ownerEnvContentAccessCurator.markStaleForEnvironment(eq(env))).thenReturn(0);
+        ownerManager.refreshEnvironmentForContentAccess(env);
+        verifyZeroInteractions(pinsetterKernel);
+
+        when(ownerEnvContentAccessCurator.markStaleForEnvironment(eq(env))).thenReturn(1);
+        ownerManager.refreshEnvironmentForContentAccess(env);
+        verify(pinsetterKernel).scheduleSingleJob(any(JobDetail.class));
+    }
 }
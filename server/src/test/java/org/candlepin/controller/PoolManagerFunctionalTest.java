@@ -21,8 +21,10 @@ import static org.mockito.Mockito.*;
 
 import org.candlepin.audit.Event;
 import org.candlepin.audit.EventSink;
+import org.candlepin.bind.BulkBindResult;
 import org.candlepin.common.paging.Page;
 import org.candlepin.common.paging.PageRequest;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.dto.manifest.v1.BrandingDTO;
 import org.candlepin.dto.manifest.v1.OwnerDTO;
 import org.candlepin.dto.manifest.v1.ProductDTO;
@@ -61,6 +63,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.mockito.Mockito;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Arrays;
 import java.util.Date;
@@ -283,6 +286,85 @@ public class PoolManagerFunctionalTest extends DatabaseTestFixture {
         assertEquals(0, parentSystem.getEntitlementCount());
     }
 
+    @Test
+    public void testBulkBindConsumesAcrossConsumers() {
+        Pool monitoringPool = poolCurator.listByOwnerAndProduct(o, monitoring.getId()).get(0);
+
+        Map<Consumer, Map<String, Integer>> requests = new HashMap<>();
+        requests.put(parentSystem, Collections.singletonMap(monitoringPool.getId(), 2));
+        requests.put(childVirtSystem, Collections.singletonMap(monitoringPool.getId(), 2));
+
+        BulkBindResult result = poolManager.entitleByPools(requests);
+
+        assertTrue(result.getRefusals().isEmpty());
+        assertEquals(1, result.getEntitlements().get(parentSystem.getUuid()).size());
+        assertEquals(1, result.getEntitlements().get(childVirtSystem.getUuid()).size());
+        assertEquals(Long.valueOf(4), monitoringPool.getConsumed());
+        assertEquals(2, parentSystem.getEntitlementCount());
+        assertEquals(2, childVirtSystem.getEntitlementCount());
+    }
+
+    @Test
+    public void testBulkBindRefusesConsumersExceedingRemainingQuantity() {
+        Pool monitoringPool = poolCurator.listByOwnerAndProduct(o, monitoring.getId()).get(0);
+
+        Consumer thirdSystem = consumerCurator.create(new Consumer("third system", "user", o, systemType));
+
+        Map<Consumer, Map<String, Integer>> requests = new HashMap<>();
+        requests.put(parentSystem, Collections.singletonMap(monitoringPool.getId(), 2));
+        requests.put(childVirtSystem, Collections.singletonMap(monitoringPool.getId(), 2));
+        requests.put(thirdSystem, Collections.singletonMap(monitoringPool.getId(), 2));
+
+        BulkBindResult result = poolManager.entitleByPools(requests);
+
+        // Each request fits the pool on its own, but only two of them fit together
+        assertEquals(2, result.getEntitlements().size());
+        assertEquals(1, result.getRefusals().size());
+        assertEquals(Long.valueOf(4), monitoringPool.getConsumed());
+
+        String refused = result.getRefusals().keySet().iterator().next();
+        assertFalse(result.getEntitlements().containsKey(refused));
+        assertEquals(0, entitlementCurator.listByConsumer(consumerCurator.findByUuid(refused)).size());
+    }
+
+    @Test
+    public void testBulkBindRejectsUnknownPools() {
+        Map<Consumer, Map<String, Integer>> requests = new HashMap<>();
+        requests.put(parentSystem, Collections.singletonMap("bad_pool_id", 1));
+
+        assertThrows(IllegalArgumentException.class, () -> poolManager.entitleByPools(requests));
+    }
+
+    @Test
+    public void testBulkBindInSubBatches() {
+        config.setProperty(ConfigProperties.ENTITLER_BULK_BIND_BATCH_SIZE, "1");
+        Pool monitoringPool = poolCurator.listByOwnerAndProduct(o, monitoring.getId()).get(0);
+
+        Map<Consumer, Map<String, Integer>> requests = new HashMap<>();
+        requests.put(parentSystem, Collections.singletonMap(monitoringPool.getId(), 2));
+        requests.put(childVirtSystem, Collections.singletonMap(monitoringPool.getId(), 2));
+
+        BulkBindResult result = poolManager.entitleByPools(requests);
+
+        assertTrue(result.getRefusals().isEmpty());
+        assertEquals(1, result.getEntitlements().get(parentSystem.getUuid()).size());
+        assertEquals(1, result.getEntitlements().get(childVirtSystem.getUuid()).size());
+        assertEquals(Long.valueOf(4), monitoringPool.getConsumed());
+    }
+
+    @Test
+    public void testBulkBindRejectsUnknownPoolsBeforeBindingAnySubBatch() {
+        config.setProperty(ConfigProperties.ENTITLER_BULK_BIND_BATCH_SIZE, "1");
+        Pool monitoringPool = poolCurator.listByOwnerAndProduct(o, monitoring.getId()).get(0);
+
+        Map<Consumer, Map<String, Integer>> requests = new HashMap<>();
+        requests.put(parentSystem, Collections.singletonMap(monitoringPool.getId(), 1));
+        requests.put(childVirtSystem, Collections.singletonMap("bad_pool_id", 1));
+
+        assertThrows(IllegalArgumentException.class, () -> poolManager.entitleByPools(requests));
+        assertEquals(0, entitlementCurator.listByConsumer(parentSystem).size());
+    }
+
     @Test
     public void testRegenerateEntitlementCertificatesWithSingleEntitlement()
         throws Exception {
@@ -2187,4 +2187,114 @@ public class PoolManagerTest {
         assertEquals(expected, output);
     }
 
+    @SuppressWarnings("unchecked")
+    private List<String> mockPostFilteredPools(Consumer consumer, int count) {
+        List<String> poolIds = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            poolIds.add(String.format("pool-%04d", i));
+        }
+
+        when(mockPoolCurator.listAvailableEntitlementPoolIds(eq(consumer), any(), any(), any(), any(),
+            any(PoolFilterBuilder.class), any(PageRequest.class), anyBoolean(), anyBoolean(), any()))
+            .thenReturn(poolIds);
+
+        // Return the pools in reverse order to verify the manager restores the sort order
+        when(mockPoolCurator.listAllByIds(any(Collection.class))).thenAnswer(invocation -> {
+            List<Pool> pools = new LinkedList<>();
+            for (String poolId : (Collection<String>) invocation.getArgument(0)) {
+                Pool pool = TestUtil.createPool(owner, product);
+                pool.setId(poolId);
+                pools.add(0, pool);
+            }
+
+            CandlepinQuery<Pool> cqmock = mock(CandlepinQuery.class);
+            when(cqmock.iterator()).thenReturn(pools.iterator());
+            return cqmock;
+        });
+
+        // Only pools with an even index pass the rules
+        when(enforcerMock.filterPools(eq(consumer), any(List.class), anyBoolean())).thenAnswer(invocation -> {
+            List<Pool> filtered = new ArrayList<>();
+            for (Pool pool : (List<Pool>) invocation.getArgument(1)) {
+                if (Integer.parseInt(pool.getId().substring(5)) % 2 == 0) {
+                    filtered.add(pool);
+                }
+            }
+
+            return filtered;
+        });
+
+        when(mockPoolCurator.takeSubList(any(PageRequest.class), any(List.class))).thenCallRealMethod();
+
+        return poolIds;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testListAvailablePoolsForConsumerFiltersInChunks() {
+        Consumer consumer = TestUtil.createConsumer(owner);
+        List<String> poolIds = this.mockPostFilteredPools(consumer, 1000);
+
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setPage(2);
+        pageRequest.setPerPage(10);
+
+        Page<List<Pool>> page = this.manager.listAvailableEntitlementPools(consumer, null, owner.getId(),
+            null, null, null, false, new PoolFilterBuilder(), pageRequest, false, false, null);
+
+        List<Pool> pools = page.getPageData();
+        assertEquals(10, pools.size());
+        for (int i = 0; i < pools.size(); ++i) {
+            assertEquals(poolIds.get(20 + i * 2), pools.get(i).getId());
+        }
+
+        // The first chunk of 100 fills the page and its look-ahead, so the scan stops there and
+        // the remaining candidates are extrapolated from its pass rate
+        verify(mockPoolCurator, times(1)).listAllByIds(any(Collection.class));
+        verify(enforcerMock, times(1)).filterPools(eq(consumer), any(List.class), anyBoolean());
+        assertEquals(500, page.getMaxRecords().intValue());
+        assertTrue(page.isMaxRecordsEstimated());
+
+        verify(mockPoolCurator, never()).listAvailableEntitlementPools(any(Consumer.class), any(String.class),
+            any(String.class), any(), any(), any(), any(), anyBoolean(), anyBoolean(), anyBoolean(), any());
+    }
+
+    @Test
+    public void testListAvailablePoolsForConsumerCountsExactly() {
+        Consumer consumer = TestUtil.createConsumer(owner);
+        this.mockPostFilteredPools(consumer, 1001);
+
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setPage(1);
+        pageRequest.setPerPage(10);
+        pageRequest.setExactCount(true);
+
+        Page<List<Pool>> page = this.manager.listAvailableEntitlementPools(consumer, null, owner.getId(),
+            null, null, null, false, new PoolFilterBuilder(), pageRequest, false, false, null);
+
+        // Every even-numbered candidate, pool-0000 through pool-1000, passes the rules
+        verify(mockPoolCurator, times(11)).listAllByIds(any(Collection.class));
+        assertEquals(501, page.getMaxRecords().intValue());
+        assertFalse(page.isMaxRecordsEstimated());
+        assertEquals(10, page.getPageData().size());
+    }
+
+    @Test
+    public void testListAvailablePoolsForConsumerLastPage() {
+        Consumer consumer = TestUtil.createConsumer(owner);
+        List<String> poolIds = this.mockPostFilteredPools(consumer, 25);
+
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setPage(2);
+        pageRequest.setPerPage(10);
+
+        Page<List<Pool>> page = this.manager.listAvailableEntitlementPools(consumer, null, owner.getId(),
+            null, null, null, false, new PoolFilterBuilder(), pageRequest, false, false, null);
+
+        assertEquals(13, page.getMaxRecords().intValue());
+        assertFalse(page.isMaxRecordsEstimated());
+        assertEquals(3, page.getPageData().size());
+        assertEquals(poolIds.get(20), page.getPageData().get(0).getId());
+        assertEquals(poolIds.get(24), page.getPageData().get(2).getId());
+    }
 }
@@ -17,6 +17,7 @@ package org.candlepin.controller;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import org.candlepin.cache.ProductCatalog;
 import org.candlepin.dto.api.v1.BrandingDTO;
 import org.candlepin.dto.api.v1.ContentDTO;
 import org.candlepin.dto.api.v1.ProductDTO;
@@ -34,6 +35,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -46,14 +48,16 @@ import java.util.Map;
 public class ProductManagerTest extends DatabaseTestFixture {
 
     private EntitlementCertificateGenerator mockEntCertGenerator;
+    private ProductCatalog mockProductCatalog;
     private ProductManager productManager;
 
     @BeforeEach
     public void setup() throws Exception {
         this.mockEntCertGenerator = mock(EntitlementCertificateGenerator.class);
+        this.mockProductCatalog = mock(ProductCatalog.class);
 
         this.productManager = new ProductManager(this.mockEntCertGenerator, this.ownerContentCurator,
-            this.ownerProductCurator, this.productCurator);
+            this.ownerProductCurator, this.productCurator, this.mockProductCatalog);
     }
 
     @Test
@@ -130,6 +134,9 @@ public class ProductManagerTest extends DatabaseTestFixture {
         assertEquals(0, this.ownerProductCurator.getOwnerCount(product));
         assertNotNull(this.ownerProductCurator.getProductById(owner, product.getId()));
 
+        // The catalog snapshot of the superseded version should be evicted
+        verify(this.mockProductCatalog, times(1)).evictProducts(Collections.singleton(product.getUuid()));
+
         if (regenCerts) {
             // TODO: Is there a better way to do this? We won't know the exact product instance,
             // we just know that a product should be refreshed as a result of this operation.
@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.dto.api.v1;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.jackson.ProductCachedSerializationModule;
+import org.candlepin.model.CandlepinQuery;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCapability;
+import org.candlepin.model.ConsumerInstalledProduct;
+import org.candlepin.model.ConsumerType;
+import org.candlepin.model.Environment;
+import org.candlepin.model.HypervisorId;
+import org.candlepin.model.IdentityCertificate;
+import org.candlepin.model.Owner;
+import org.candlepin.model.ProductCurator;
+import org.candlepin.model.Release;
+import org.candlepin.resteasy.JsonProvider;
+import org.candlepin.test.DatabaseTestFixture;
+import org.candlepin.test.TestUtil;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hibernate.criterion.Order;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.ws.rs.core.MediaType;
+
+
+
+/**
+ * Test suite for the ConsumerDTOProjection class
+ */
+public class ConsumerDTOProjectionTest extends DatabaseTestFixture {
+
+    @Inject private ConsumerDTOProjection projection;
+
+    private ObjectMapper mapper;
+    private Owner owner;
+    private ConsumerType ctype;
+
+    @BeforeEach
+    public void setup() {
+        JsonProvider provider = new JsonProvider(false,
+            new ProductCachedSerializationModule(mock(ProductCurator.class)));
+        this.mapper = provider.locateMapper(Object.class, MediaType.APPLICATION_JSON_TYPE);
+
+        this.owner = this.createOwner("test_owner");
+        this.ctype = this.createConsumerType();
+    }
+
+    private Consumer createDetailedConsumer(String name, Environment environment) {
+        Consumer consumer = new Consumer(name, "test-user", this.owner, this.ctype);
+        consumer.setFact("cpu.cpu_socket(s)", "2");
+        consumer.setFact("virt.is_guest", "false");
+        consumer.addAddOn("addon-1");
+        consumer.addAddOn("addon-2");
+        consumer.setContentTags(new HashSet<>(Arrays.asList("tag-1", "tag-2")));
+        consumer.setServiceLevel("premium");
+        consumer.setRole("server");
+        consumer.setUsage("production");
+        consumer.setReleaseVer(new Release("7.6"));
+        consumer.setAnnotations("annotated");
+        consumer.setAutoheal(false);
+        consumer.setContentAccessMode("entitlement");
+        consumer.setLastCheckin(new Date());
+        consumer.setEnvironmentId(environment != null ? environment.getId() : null);
+
+        ConsumerInstalledProduct installed = new ConsumerInstalledProduct("installed-" + name, "Installed");
+        installed.setVersion("1.0");
+        installed.setArch("x86_64");
+        consumer.addInstalledProduct(installed);
+
+        Set<ConsumerCapability> capabilities = new HashSet<>();
+        capabilities.add(new ConsumerCapability(consumer, "cert_v3"));
+        capabilities.add(new ConsumerCapability(consumer, "derived_product"));
+        consumer.setCapabilities(capabilities);
+
+        HypervisorId hypervisorId = new HypervisorId("hypervisor-" + name);
+        hypervisorId.setOwner(this.owner);
+        hypervisorId.setReporterId("reporter");
+        consumer.setHypervisorId(hypervisorId);
+
+        IdentityCertificate idCert = TestUtil.createIdCert();
+        idCert.setId(null);
+        this.certSerialCurator.create(idCert.getSerial());
+        consumer.setIdCert(this.identityCertificateCurator.create(idCert));
+
+        return this.consumerCurator.create(consumer);
+    }
+
+    private void assertMatchesTranslation(List<Consumer> expected, List<ConsumerDTO> actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); ++i) {
+            ConsumerDTO translated = this.modelTranslator.translate(expected.get(i), ConsumerDTO.class);
+
+            assertEquals(translated, actual.get(i));
+            assertEquals(TestUtil.toSortedJsonTree(this.mapper, translated),
+                TestUtil.toSortedJsonTree(this.mapper, actual.get(i)));
+        }
+    }
+
+    private CandlepinQuery<Consumer> searchConsumers(Owner owner) {
+        return this.consumerCurator.searchOwnerConsumers(owner, null, null, null, null, null, null, null,
+            null);
+    }
+
+    @Test
+    public void testProjectedConsumersMatchTranslatedConsumers() {
+        Environment environment = this.createEnvironment(this.owner, "test_env");
+
+        this.createDetailedConsumer("consumer-1", environment);
+        this.createDetailedConsumer("consumer-2", null);
+        this.createConsumer(this.owner, this.ctype);
+        this.createConsumer(this.createOwner("other_owner"), this.ctype);
+        this.consumerCurator.flush();
+        this.consumerCurator.clear();
+
+        List<Consumer> expected = this.searchConsumers(this.owner)
+            .addOrder(Order.asc("uuid"))
+            .list();
+
+        List<ConsumerDTO> actual = this.projection.project(this.searchConsumers(this.owner))
+            .addOrder(Order.asc("uuid"))
+            .list();
+
+        assertEquals(3, actual.size());
+        assertMatchesTranslation(expected, actual);
+    }
+
+    @Test
+    public void testProjectionAppliesPaging() {
+        for (int i = 0; i < 5; ++i) {
+            this.createDetailedConsumer("consumer-" + i, null);
+        }
+
+        this.consumerCurator.flush();
+        this.consumerCurator.clear();
+
+        List<Consumer> expected = this.searchConsumers(this.owner)
+            .addOrder(Order.desc("name"))
+            .setFirstResult(1)
+            .setMaxResults(3)
+            .list();
+
+        CandlepinQuery<ConsumerDTO> query = this.projection.project(this.searchConsumers(this.owner))
+            .addOrder(Order.desc("name"))
+            .setFirstResult(1)
+            .setMaxResults(3);
+
+        assertEquals(
+            expected.stream().map(Consumer::getUuid).collect(Collectors.toList()),
+            query.list().stream().map(ConsumerDTO::getUuid).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testProjectionRowCount() {
+        for (int i = 0; i < 5; ++i) {
+            this.createConsumer(this.owner, this.ctype);
+        }
+
+        assertEquals(5, this.projection.project(this.searchConsumers(this.owner)).getRowCount());
+    }
+
+    @Test
+    public void testProjectionOfEmptyQuery() {
+        assertTrue(this.projection.project(this.searchConsumers(this.owner)).list().isEmpty());
+    }
+}
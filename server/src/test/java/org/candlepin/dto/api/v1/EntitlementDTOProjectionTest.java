@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.dto.api.v1;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.jackson.ProductCachedSerializationModule;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.Owner;
+import org.candlepin.model.Pool;
+import org.candlepin.model.Product;
+import org.candlepin.model.ProductCurator;
+import org.candlepin.resteasy.JsonProvider;
+import org.candlepin.test.DatabaseTestFixture;
+import org.candlepin.test.TestUtil;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.ws.rs.core.MediaType;
+
+
+
+/**
+ * Test suite for the EntitlementDTOProjection class
+ */
+public class EntitlementDTOProjectionTest extends DatabaseTestFixture {
+
+    @Inject private EntitlementDTOProjection projection;
+
+    private ObjectMapper mapper;
+    private Owner owner;
+
+    @BeforeEach
+    public void setup() {
+        JsonProvider provider = new JsonProvider(false,
+            new ProductCachedSerializationModule(mock(ProductCurator.class)));
+        this.mapper = provider.locateMapper(Object.class, MediaType.APPLICATION_JSON_TYPE);
+
+        this.owner = this.createOwner("test_owner");
+    }
+
+    @Test
+    public void testProjectedEntitlementsMatchTranslatedEntitlements() {
+        Product provided = this.createProduct("provided", "provided product", this.owner);
+        Product product = TestUtil.createProduct("sku", "sku product");
+        product.setAttribute(Product.Attributes.STACKING_ID, "stack");
+        this.createProduct(product, this.owner);
+
+        Pool pool = this.poolCurator.create(TestUtil.createPool(this.owner, product,
+            Arrays.asList(provided), 10));
+        Pool other = this.createPool(this.owner, this.createProduct());
+
+        Consumer consumer1 = this.createConsumer(this.owner);
+        consumer1.setFact("cpu.cpu_socket(s)", "2");
+        this.consumerCurator.merge(consumer1);
+        Consumer consumer2 = this.createConsumer(this.owner);
+
+        Entitlement certified = this.createEntitlement(this.owner, consumer1, pool);
+        this.createEntitlementCertificate(certified, "key-1", "cert-1");
+        this.createEntitlementCertificate(certified, "key-2", "cert-2");
+
+        Entitlement overridden = this.createEntitlement(this.owner, consumer1, other);
+        overridden.setEndDateOverride(TestUtil.createDate(2050, 1, 1));
+        overridden.setQuantity(3);
+        this.entitlementCurator.merge(overridden);
+
+        Entitlement plain = this.createEntitlement(this.owner, consumer2, pool);
+
+        this.entitlementCurator.flush();
+        this.entitlementCurator.clear();
+
+        List<Entitlement> entitlements = Arrays.asList(certified, overridden, plain);
+        Map<String, EntitlementDTO> actual = this.projection.buildByIds(
+            Arrays.asList(certified.getId(), overridden.getId(), plain.getId()));
+
+        assertEquals(entitlements.size(), actual.size());
+        assertEquals(2, actual.get(certified.getId()).getCertificates().size());
+        assertEquals(TestUtil.createDate(2050, 1, 1), actual.get(overridden.getId()).getEndDate());
+
+        for (Entitlement entitlement : entitlements) {
+            EntitlementDTO translated = this.modelTranslator.translate(
+                this.entitlementCurator.get(entitlement.getId()), EntitlementDTO.class);
+
+            assertEquals(translated, actual.get(entitlement.getId()));
+            assertEquals(TestUtil.toSortedJsonTree(this.mapper, translated),
+                TestUtil.toSortedJsonTree(this.mapper, actual.get(entitlement.getId())));
+        }
+    }
+
+    @Test
+    public void testProjectionOfNoEntitlements() {
+        assertTrue(this.projection.buildByIds(Collections.emptyList()).isEmpty());
+    }
+}
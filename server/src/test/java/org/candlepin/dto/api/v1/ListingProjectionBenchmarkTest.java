@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.dto.api.v1;
+
+import static org.mockito.Mockito.*;
+
+import org.candlepin.jackson.ProductCachedSerializationModule;
+import org.candlepin.model.CandlepinQuery;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerType;
+import org.candlepin.model.Owner;
+import org.candlepin.model.Product;
+import org.candlepin.model.ProductCurator;
+import org.candlepin.model.ResultIterator;
+import org.candlepin.resteasy.JsonProvider;
+import org.candlepin.test.DatabaseTestFixture;
+import org.candlepin.test.TestUtil;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hibernate.criterion.Order;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.inject.Inject;
+import javax.ws.rs.core.MediaType;
+
+
+
+/**
+ * Streams pages of owner consumer and product listings to JSON in the same way as the
+ * CandlepinQueryInterceptor, once through the model translator and once through the row
+ * projections, and reports the rows serialized per second and the bytes allocated per page. The
+ * runs are only enabled when the candlepin.benchmark system property is set to true.
+ */
+@EnabledIfSystemProperty(named = "candlepin.benchmark", matches = "true")
+public class ListingProjectionBenchmarkTest extends DatabaseTestFixture {
+    private static Logger log = LoggerFactory.getLogger(ListingProjectionBenchmarkTest.class);
+
+    private static final int LISTING_SIZE = 2000;
+    private static final int PAGE_SIZE = 500;
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int ITERATIONS = 5;
+
+    @Inject private ConsumerDTOProjection consumerProjection;
+    @Inject private ProductDTOProjection productProjection;
+
+    private ObjectMapper mapper;
+    private Owner owner;
+
+    @BeforeEach
+    public void setup() {
+        JsonProvider provider = new JsonProvider(false,
+            new ProductCachedSerializationModule(mock(ProductCurator.class)));
+        this.mapper = provider.locateMapper(Object.class, MediaType.APPLICATION_JSON_TYPE);
+
+        this.owner = this.createOwner("benchmark_owner");
+    }
+
+    private long allocatedBytes() {
+        // The HotSpot thread bean is the only portable way to read per-thread allocation counts
+        com.sun.management.ThreadMXBean bean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private int stream(CandlepinQuery<?> query) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int rows = 0;
+
+        try (JsonGenerator generator = this.mapper.getJsonFactory().createGenerator(output);
+            ResultIterator<?> iterator = query.iterate()) {
+
+            generator.writeStartArray();
+            while (iterator.hasNext()) {
+                this.mapper.writeValue(generator, iterator.next());
+                ++rows;
+            }
+            generator.writeEndArray();
+        }
+
+        return rows;
+    }
+
+    private <E> void benchmark(String name, Supplier<CandlepinQuery<E>> source,
+        Function<CandlepinQuery<E>, CandlepinQuery<?>> converter) throws Exception {
+
+        int pages = LISTING_SIZE / PAGE_SIZE;
+        long nanos = 0;
+        long bytes = 0;
+        int rows = 0;
+
+        for (int i = 0; i < WARMUP_ITERATIONS + ITERATIONS; ++i) {
+            for (int page = 0; page < pages; ++page) {
+                // Start each page from a clean session, as each request would
+                this.getEntityManager().clear();
+
+                CandlepinQuery<?> query = converter.apply(source.get()
+                    .addOrder(Order.asc("id"))
+                    .setFirstResult(page * PAGE_SIZE)
+                    .setMaxResults(PAGE_SIZE));
+
+                long startBytes = this.allocatedBytes();
+                long start = System.nanoTime();
+                int count = this.stream(query);
+
+                if (i >= WARMUP_ITERATIONS) {
+                    nanos += System.nanoTime() - start;
+                    bytes += this.allocatedBytes() - startBytes;
+                    rows += count;
+                }
+            }
+        }
+
+        log.info("Streamed {} {}: {} rows/sec, {} KiB allocated per page of {}", rows, name,
+            rows * 1000000000L / Math.max(nanos, 1), bytes / (pages * ITERATIONS) / 1024, PAGE_SIZE);
+    }
+
+    @Test
+    public void benchmarkConsumerListing() throws Exception {
+        ConsumerType type = this.createConsumerType();
+
+        for (int i = 0; i < LISTING_SIZE; ++i) {
+            Consumer consumer = new Consumer("consumer-" + i, "admin", this.owner, type);
+
+            for (int f = 0; f < 20; ++f) {
+                consumer.setFact("fact." + f, "value-" + f);
+            }
+
+            consumer.addAddOn("addon");
+            this.consumerCurator.create(consumer, false);
+        }
+
+        this.consumerCurator.flush();
+
+        Supplier<CandlepinQuery<Consumer>> source = () -> this.consumerCurator
+            .searchOwnerConsumers(this.owner, null, null, null, null, null, null, null, null);
+
+        this.benchmark("consumers (translated)", source,
+            query -> query.transform(e -> this.modelTranslator.translate(e, ConsumerDTO.class)));
+        this.benchmark("consumers (projected)", source, this.consumerProjection::project);
+    }
+
+    @Test
+    public void benchmarkProductListing() throws Exception {
+        for (int i = 0; i < LISTING_SIZE; ++i) {
+            Product product = TestUtil.createProduct("product-" + i, "Product " + i);
+            product.setAttribute("arch", "x86_64");
+            product.setAttribute("sockets", "2");
+            product.addContent(this.createContent("content-" + i, "Content " + i, this.owner), true);
+
+            this.createProduct(product, this.owner);
+        }
+
+        this.productCurator.flush();
+
+        Supplier<CandlepinQuery<Product>> source = () -> this.ownerProductCurator
+            .getProductsByOwner(this.owner);
+
+        this.benchmark("products (translated)", source,
+            query -> query.transform(e -> this.modelTranslator.translate(e, ProductDTO.class)));
+        this.benchmark("products (projected)", source, this.productProjection::project);
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.dto.api.v1;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.jackson.ProductCachedSerializationModule;
+import org.candlepin.model.Branding;
+import org.candlepin.model.CertificateSerial;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.Owner;
+import org.candlepin.model.Pool;
+import org.candlepin.model.Product;
+import org.candlepin.model.ProductCurator;
+import org.candlepin.model.SourceStack;
+import org.candlepin.model.SubscriptionsCertificate;
+import org.candlepin.resteasy.JsonProvider;
+import org.candlepin.test.DatabaseTestFixture;
+import org.candlepin.test.TestUtil;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.ws.rs.core.MediaType;
+
+
+
+/**
+ * Test suite for the PoolDTOProjection class
+ */
+public class PoolDTOProjectionTest extends DatabaseTestFixture {
+
+    @Inject private PoolDTOProjection projection;
+
+    private ObjectMapper mapper;
+    private Owner owner;
+
+    @BeforeEach
+    public void setup() {
+        JsonProvider provider = new JsonProvider(false,
+            new ProductCachedSerializationModule(mock(ProductCurator.class)));
+        this.mapper = provider.locateMapper(Object.class, MediaType.APPLICATION_JSON_TYPE);
+
+        this.owner = this.createOwner("test_owner");
+    }
+
+    private Pool createDetailedPool() {
+        Product provided = this.createProduct("provided", "provided product", this.owner);
+        Product derivedProvided = this.createProduct("derived_provided", "derived provided", this.owner);
+
+        Product derived = TestUtil.createProduct("derived", "derived product");
+        derived.setAttribute("cores", "8");
+        this.createProduct(derived, this.owner);
+
+        Product product = TestUtil.createProduct("sku", "sku product");
+        product.setAttribute(Product.Attributes.STACKING_ID, "stack");
+        product.setAttribute(Pool.Attributes.MULTI_ENTITLEMENT, "yes");
+        product.addBranding(new Branding(product, "eng-1", "Branded Name", "OS"));
+        this.createProduct(product, this.owner);
+
+        Pool pool = TestUtil.createPool(this.owner, product, Arrays.asList(provided), derived,
+            Arrays.asList(derivedProvided), 10);
+        pool.setAttribute(Pool.Attributes.VIRT_ONLY, "true");
+        pool.setUpstreamPoolId("upstream_pool");
+        pool.setUpstreamEntitlementId("upstream_entitlement");
+        pool.setUpstreamConsumerId("upstream_consumer");
+        pool.setRestrictedToUsername("username");
+        pool.setLocked(true);
+
+        CertificateSerial serial = new CertificateSerial(new Date());
+        this.certSerialCurator.create(serial);
+
+        SubscriptionsCertificate cert = new SubscriptionsCertificate();
+        cert.setKey("cert-key");
+        cert.setCert("cert-cert");
+        cert.setSerial(serial);
+        pool.setCertificate(cert);
+
+        return this.poolCurator.create(pool);
+    }
+
+    private void assertMatchesTranslation(List<Pool> pools, Map<String, PoolDTO> actual) {
+        this.poolCurator.flush();
+        this.poolCurator.clear();
+
+        assertEquals(pools.size(), actual.size());
+
+        for (Pool pool : pools) {
+            PoolDTO translated = this.modelTranslator.translate(this.poolCurator.get(pool.getId()),
+                PoolDTO.class);
+
+            assertEquals(translated, actual.get(pool.getId()));
+            assertEquals(TestUtil.toSortedJsonTree(this.mapper, translated),
+                TestUtil.toSortedJsonTree(this.mapper, actual.get(pool.getId())));
+        }
+    }
+
+    @Test
+    public void testProjectedPoolsMatchTranslatedPools() {
+        Pool detailed = this.createDetailedPool();
+        Pool plain = this.createPool(this.owner, this.createProduct("plain", "plain", this.owner));
+
+        Pool development = this.createPool(this.owner, this.createProduct("dev", "dev", this.owner));
+        development.setAttribute(Pool.Attributes.DEVELOPMENT_POOL, "true");
+        this.poolCurator.merge(development);
+
+        this.createPool(this.createOwner("other_owner"), this.createProduct());
+
+        this.poolCurator.flush();
+        this.poolCurator.clear();
+
+        List<Pool> pools = Arrays.asList(detailed, plain, development);
+        Map<String, PoolDTO> actual = this.projection.buildByIds(
+            Arrays.asList(detailed.getId(), plain.getId(), development.getId()));
+
+        assertEquals("NORMAL", actual.get(plain.getId()).getType());
+        assertEquals("DEVELOPMENT", actual.get(development.getId()).getType());
+        assertMatchesTranslation(pools, actual);
+    }
+
+    @Test
+    public void testProjectedDerivedPoolsMatchTranslatedPools() {
+        Consumer consumer = this.createConsumer(this.owner);
+        Pool source = this.createDetailedPool();
+        Entitlement entitlement = this.createEntitlement(this.owner, consumer, source);
+        this.createEntitlementCertificate(entitlement, "entitlement-key", "entitlement-cert");
+
+        Pool entitlementDerived = this.createPool(this.owner, this.createProduct("ed", "ed", this.owner));
+        entitlementDerived.setAttribute(Pool.Attributes.DERIVED_POOL, "true");
+        entitlementDerived.setSourceEntitlement(entitlement);
+        this.poolCurator.merge(entitlementDerived);
+
+        Pool stackDerived = this.createPool(this.owner, this.createProduct("sd", "sd", this.owner));
+        stackDerived.setAttribute(Pool.Attributes.DERIVED_POOL, "true");
+        stackDerived.setSourceStack(new SourceStack(stackDerived, consumer, "stack"));
+        this.poolCurator.merge(stackDerived);
+
+        this.poolCurator.flush();
+        this.poolCurator.clear();
+
+        List<Pool> pools = Arrays.asList(entitlementDerived, stackDerived);
+        Map<String, PoolDTO> actual = this.projection.buildByIds(
+            Arrays.asList(entitlementDerived.getId(), stackDerived.getId()));
+
+        assertEquals("ENTITLEMENT_DERIVED", actual.get(entitlementDerived.getId()).getType());
+        assertEquals(entitlement.getId(), actual.get(entitlementDerived.getId()).getSourceEntitlement()
+            .getId());
+        assertEquals("STACK_DERIVED", actual.get(stackDerived.getId()).getType());
+        assertEquals("stack", actual.get(stackDerived.getId()).getSourceStackId());
+        assertMatchesTranslation(pools, actual);
+    }
+
+    @Test
+    public void testProjectionIgnoresUnknownPools() {
+        Pool pool = this.createPool(this.owner, this.createProduct());
+
+        Map<String, PoolDTO> actual = this.projection.buildByIds(Arrays.asList(pool.getId(), "unknown"));
+
+        assertEquals(1, actual.size());
+        assertTrue(actual.containsKey(pool.getId()));
+    }
+
+    @Test
+    public void testProjectionOfNoPools() {
+        assertTrue(this.projection.buildByIds(Collections.emptyList()).isEmpty());
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.dto.api.v1;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.jackson.ProductCachedSerializationModule;
+import org.candlepin.model.Branding;
+import org.candlepin.model.Content;
+import org.candlepin.model.Owner;
+import org.candlepin.model.Product;
+import org.candlepin.model.ProductCurator;
+import org.candlepin.resteasy.JsonProvider;
+import org.candlepin.test.DatabaseTestFixture;
+import org.candlepin.test.TestUtil;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hibernate.criterion.Order;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.ws.rs.core.MediaType;
+
+
+
+/**
+ * Test suite for the ProductDTOProjection class
+ */
+public class ProductDTOProjectionTest extends DatabaseTestFixture {
+
+    @Inject private ProductDTOProjection projection;
+
+    private ObjectMapper mapper;
+    private Owner owner;
+
+    @BeforeEach
+    public void setup() {
+        JsonProvider provider = new JsonProvider(false,
+            new ProductCachedSerializationModule(mock(ProductCurator.class)));
+        this.mapper = provider.locateMapper(Object.class, MediaType.APPLICATION_JSON_TYPE);
+
+        this.owner = this.createOwner("test_owner");
+    }
+
+    @Test
+    public void testProjectedProductsMatchTranslatedProducts() {
+        Content shared = TestUtil.createContent("shared_content");
+        shared.setModifiedProductIds(Arrays.asList("mod-1", "mod-2"));
+        shared = this.createContent(shared, this.owner);
+        Content unshared = this.createContent("unshared_content", "unshared", this.owner);
+
+        Product product1 = TestUtil.createProduct("p1", "product 1");
+        product1.setAttribute("arch", "x86_64");
+        product1.setAttribute("cores", "4");
+        product1.setMultiplier(2L);
+        product1.setDependentProductIds(Arrays.asList("dep-1", "dep-2"));
+        product1.addContent(shared, true);
+        product1.addContent(unshared, false);
+        product1.addBranding(new Branding(product1, "eng-1", "Branded Name", "OS"));
+        this.createProduct(product1, this.owner);
+
+        Product product2 = TestUtil.createProduct("p2", "product 2");
+        product2.addContent(shared, false);
+        this.createProduct(product2, this.owner);
+
+        this.createProduct("p3", "product 3", this.owner);
+        this.createProduct("p4", "product 4", this.createOwner("other_owner"));
+
+        this.productCurator.flush();
+        this.productCurator.clear();
+
+        List<Product> expected = this.ownerProductCurator.getProductsByOwner(this.owner)
+            .addOrder(Order.asc("id"))
+            .list();
+
+        List<ProductDTO> actual = this.projection
+            .project(this.ownerProductCurator.getProductsByOwner(this.owner))
+            .addOrder(Order.asc("id"))
+            .list();
+
+        assertEquals(3, actual.size());
+
+        for (int i = 0; i < expected.size(); ++i) {
+            ProductDTO translated = this.modelTranslator.translate(expected.get(i), ProductDTO.class);
+
+            assertEquals(translated, actual.get(i));
+            assertEquals(TestUtil.toSortedJsonTree(this.mapper, translated),
+                TestUtil.toSortedJsonTree(this.mapper, actual.get(i)));
+        }
+    }
+
+    @Test
+    public void testProjectionOfEmptyQuery() {
+        assertTrue(this.projection.project(this.ownerProductCurator.getProductsByOwner(this.owner))
+            .list()
+            .isEmpty());
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.hibernate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.candlepin.model.Owner;
+import org.candlepin.test.DatabaseTestFixture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+
+
+/**
+ * Test suite for the QueryStats class and the Hibernate hooks which populate it
+ */
+public class QueryStatsTest extends DatabaseTestFixture {
+
+    @AfterEach
+    public void cleanup() {
+        QueryStats current = QueryStats.current();
+        while (current != null) {
+            current.end();
+            current = QueryStats.current();
+        }
+    }
+
+    @Test
+    public void testBeginAndEndRestoreEnclosingCollection() {
+        assertNull(QueryStats.current());
+
+        QueryStats outer = QueryStats.begin();
+        assertSame(outer, QueryStats.current());
+
+        QueryStats inner = QueryStats.begin();
+        assertSame(inner, QueryStats.current());
+
+        inner.end();
+        assertSame(outer, QueryStats.current());
+
+        outer.end();
+        assertNull(QueryStats.current());
+    }
+
+    @Test
+    public void testEndDiscardsUnendedNestedCollections() {
+        QueryStats outer = QueryStats.begin();
+        QueryStats.begin();
+
+        outer.end();
+        assertNull(QueryStats.current());
+    }
+
+    @Test
+    public void testStatementsAreRecordedInEnclosingCollections() {
+        QueryStats outer = QueryStats.begin();
+        QueryStats.recordStatement("select 1");
+
+        QueryStats inner = QueryStats.begin();
+        QueryStats.recordStatement("select 2");
+        QueryStats.recordExecution(100, true);
+        QueryStats.recordEntityLoad();
+        inner.end();
+
+        assertEquals(1, inner.getStatementCount());
+        assertEquals(1, inner.getBatchCount());
+        assertEquals(100, inner.getExecutionNanos());
+        assertEquals(1, inner.getEntitiesLoaded());
+
+        assertEquals(2, outer.getStatementCount());
+        assertEquals(1, outer.getBatchCount());
+        assertEquals(100, outer.getExecutionNanos());
+        assertEquals(1, outer.getEntitiesLoaded());
+    }
+
+    @Test
+    public void testNothingRecordedWithoutActiveCollection() {
+        QueryStats.recordStatement("select 1");
+        QueryStats.recordExecution(100, false);
+        QueryStats.recordEntityLoad();
+
+        QueryStats stats = QueryStats.begin();
+        assertEquals(0, stats.getStatementCount());
+        assertEquals(0, stats.getExecutionNanos());
+        assertEquals(0, stats.getEntitiesLoaded());
+    }
+
+    @Test
+    public void testGetRepeatedStatements() {
+        QueryStats stats = QueryStats.begin();
+
+        for (int i = 0; i < 3; ++i) {
+            QueryStats.recordStatement("select a");
+        }
+
+        for (int i = 0; i < 5; ++i) {
+            QueryStats.recordStatement("select b");
+        }
+
+        QueryStats.recordStatement("select c");
+
+        Map<String, Integer> repeated = stats.getRepeatedStatements(2);
+        assertEquals(2, repeated.size());
+        assertArrayEquals(new String[] { "select b", "select a" }, repeated.keySet().toArray());
+        assertEquals(5, repeated.get("select b"));
+        assertEquals(3, repeated.get("select a"));
+
+        assertEquals(3, stats.getRepeatedStatements(1).size());
+        assertTrue(stats.getRepeatedStatements(0).isEmpty());
+    }
+
+    @Test
+    public void testBudget() {
+        QueryStats stats = QueryStats.begin();
+        QueryStats.recordStatement("select 1");
+        QueryStats.recordStatement("select 1");
+
+        assertEquals(-1, stats.getBudget());
+        assertFalse(stats.isOverBudget());
+
+        stats.setBudget(2);
+        assertFalse(stats.isOverBudget());
+
+        stats.setBudget(1);
+        assertTrue(stats.isOverBudget());
+    }
+
+    @Test
+    public void testHibernateStatementsAndLoadsAreCounted() {
+        for (int i = 0; i < 3; ++i) {
+            this.createOwner();
+        }
+
+        this.getEntityManager().flush();
+        this.getEntityManager().clear();
+
+        QueryStats stats = QueryStats.begin();
+        int owners = this.ownerCurator.listAll().list().size();
+        stats.end();
+
+        assertEquals(3, owners);
+        assertTrue(stats.getStatementCount() >= 1);
+        assertTrue(stats.getEntitiesLoaded() >= 3);
+        assertTrue(stats.getExecutionNanos() > 0);
+    }
+
+    @Test
+    public void testRepeatedLookupsAreDetected() {
+        Owner owner = this.createOwner();
+        String id = owner.getId();
+
+        QueryStats stats = QueryStats.begin();
+        for (int i = 0; i < 3; ++i) {
+            this.getEntityManager().clear();
+            this.ownerCurator.get(id);
+        }
+        stats.end();
+
+        Map<String, Integer> repeated = stats.getRepeatedStatements(3);
+        assertEquals(1, repeated.size());
+        assertEquals(3, (int) repeated.values().iterator().next());
+    }
+}
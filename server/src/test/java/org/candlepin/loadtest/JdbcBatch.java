@@ -0,0 +1,287 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.loadtest;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.collection.AbstractCollectionPersister;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+
+
+/**
+ * A JDBC batch of inserts into, or updates of, the table backing an entity or an element
+ * collection. The table and column names and the value types are read from the Hibernate mapping
+ * of the entity, so rows are written exactly as Hibernate would write them on any of the supported
+ * databases, without the cost of managing an entity instance per row.
+ * <p></p>
+ * Associations are bound by the identifier of the associated entity rather than by an entity
+ * instance. Rows added to a batch are not sent to the database until the batch is flushed, which
+ * leaves the order in which dependent tables are written up to the caller.
+ */
+public class JdbcBatch implements AutoCloseable {
+
+    private final SessionImplementor session;
+    private final String sql;
+    private final Type[] types;
+    private final PreparedStatement statement;
+    private int pending;
+    private long count;
+
+    private JdbcBatch(SessionImplementor session, String sql, List<Type> types) {
+        this.session = session;
+        this.sql = sql;
+        this.types = types.toArray(new Type[0]);
+
+        try {
+            this.statement = session.connection().prepareStatement(sql);
+        }
+        catch (SQLException e) {
+            throw this.convert(e, "Unable to prepare batch statement");
+        }
+    }
+
+    /**
+     * Creates a batch of inserts into the table backing the given entity. Each row consists of the
+     * identifier of the entity followed by the values of the given properties, in order.
+     *
+     * @param entityManager
+     *  the entity manager whose connection the batch should use
+     *
+     * @param entityClass
+     *  the class of the entity to insert
+     *
+     * @param properties
+     *  the names of the properties to insert; any property not listed is left to its column default
+     *
+     * @return
+     *  a new batch of inserts
+     */
+    public static JdbcBatch insert(EntityManager entityManager, Class<?> entityClass,
+        String... properties) {
+
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        AbstractEntityPersister persister = getEntityPersister(session, entityClass);
+
+        List<String> columns = new ArrayList<>(Arrays.asList(persister.getIdentifierColumnNames()));
+        List<Type> types = new ArrayList<>();
+        types.add(resolve(session, persister.getIdentifierType()));
+
+        for (String property : properties) {
+            columns.addAll(Arrays.asList(persister.getPropertyColumnNames(property)));
+            types.add(resolve(session, persister.getPropertyType(property)));
+        }
+
+        return new JdbcBatch(session, buildInsert(persister.getTableName(), columns), types);
+    }
+
+    /**
+     * Creates a batch of inserts into the table backing a collection of the given entity. Each row
+     * consists of the identifier of the owning entity, followed by the map key or list index for
+     * indexed collections, followed by the element.
+     *
+     * @param entityManager
+     *  the entity manager whose connection the batch should use
+     *
+     * @param entityClass
+     *  the class of the entity owning the collection
+     *
+     * @param property
+     *  the name of the collection property
+     *
+     * @return
+     *  a new batch of inserts
+     */
+    public static JdbcBatch insertCollection(EntityManager entityManager, Class<?> entityClass,
+        String property) {
+
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        AbstractCollectionPersister persister = (AbstractCollectionPersister) session.getFactory()
+            .getMetamodel()
+            .collectionPersister(entityClass.getName() + "." + property);
+
+        List<String> columns = new ArrayList<>(Arrays.asList(persister.getKeyColumnNames()));
+        List<Type> types = new ArrayList<>();
+        types.add(resolve(session, persister.getKeyType()));
+
+        if (persister.hasIndex()) {
+            columns.addAll(Arrays.asList(persister.getIndexColumnNames()));
+            types.add(resolve(session, persister.getIndexType()));
+        }
+
+        columns.addAll(Arrays.asList(persister.getElementColumnNames()));
+        types.add(resolve(session, persister.getElementType()));
+
+        return new JdbcBatch(session, buildInsert(persister.getTableName(), columns), types);
+    }
+
+    /**
+     * Creates a batch of updates of the table backing the given entity. Each row consists of the
+     * new values of the given properties, in order, followed by the identifier of the entity to
+     * update.
+     *
+     * @param entityManager
+     *  the entity manager whose connection the batch should use
+     *
+     * @param entityClass
+     *  the class of the entity to update
+     *
+     * @param properties
+     *  the names of the properties to update
+     *
+     * @return
+     *  a new batch of updates
+     */
+    public static JdbcBatch update(EntityManager entityManager, Class<?> entityClass,
+        String... properties) {
+
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        AbstractEntityPersister persister = getEntityPersister(session, entityClass);
+
+        List<String> assignments = new ArrayList<>();
+        List<Type> types = new ArrayList<>();
+
+        for (String property : properties) {
+            for (String column : persister.getPropertyColumnNames(property)) {
+                assignments.add(column + " = ?");
+            }
+
+            types.add(resolve(session, persister.getPropertyType(property)));
+        }
+
+        types.add(resolve(session, persister.getIdentifierType()));
+
+        String sql = String.format("UPDATE %s SET %s WHERE %s = ?", persister.getTableName(),
+            String.join(", ", assignments), String.join(" = ? AND ", persister.getIdentifierColumnNames()));
+
+        return new JdbcBatch(session, sql, types);
+    }
+
+    private static AbstractEntityPersister getEntityPersister(SessionImplementor session,
+        Class<?> entityClass) {
+
+        return (AbstractEntityPersister) session.getFactory()
+            .getMetamodel()
+            .entityPersister(entityClass);
+    }
+
+    /**
+     * Associations are written by the identifier of the associated entity, so their values are
+     * bound with the type of that identifier.
+     */
+    private static Type resolve(SessionImplementor session, Type type) {
+        SessionFactoryImplementor factory = session.getFactory();
+        return type instanceof EntityType ?
+            ((EntityType) type).getIdentifierOrUniqueKeyType(factory) :
+            type;
+    }
+
+    private static String buildInsert(String table, List<String> columns) {
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < columns.size(); ++i) {
+            values.append(i > 0 ? ", ?" : "?");
+        }
+
+        return String.format("INSERT INTO %s (%s) VALUES (%s)", table, String.join(", ", columns), values);
+    }
+
+    /**
+     * Adds a row to this batch.
+     *
+     * @param values
+     *  the values of the row, in the order described by the method which created this batch
+     *
+     * @throws IllegalArgumentException
+     *  if the number of values does not match the number of values in a row of this batch
+     */
+    public void add(Object... values) {
+        if (values.length != this.types.length) {
+            throw new IllegalArgumentException(String.format("expected %d values, received %d",
+                this.types.length, values.length));
+        }
+
+        try {
+            int index = 1;
+            for (int i = 0; i < values.length; ++i) {
+                this.types[i].nullSafeSet(this.statement, values[i], index, this.session);
+                index += this.types[i].getColumnSpan(this.session.getFactory());
+            }
+
+            this.statement.addBatch();
+            ++this.pending;
+        }
+        catch (SQLException e) {
+            throw this.convert(e, "Unable to add row to batch");
+        }
+    }
+
+    /**
+     * Sends the rows added since the last flush to the database.
+     *
+     * @return
+     *  the number of rows sent
+     */
+    public int flush() {
+        int sent = this.pending;
+
+        if (sent > 0) {
+            try {
+                this.statement.executeBatch();
+                this.count += sent;
+                this.pending = 0;
+            }
+            catch (SQLException e) {
+                throw this.convert(e, "Unable to execute batch");
+            }
+        }
+
+        return sent;
+    }
+
+    /**
+     * @return
+     *  the number of rows sent to the database by this batch
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Releases the statement backing this batch. Rows which have not been flushed are discarded.
+     */
+    @Override
+    public void close() {
+        try {
+            this.statement.close();
+        }
+        catch (SQLException e) {
+            throw this.convert(e, "Unable to close batch statement");
+        }
+    }
+
+    private RuntimeException convert(SQLException e, String message) {
+        return this.session.getJdbcServices().getSqlExceptionHelper().convert(e, message, this.sql);
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * A single scenario of a load test: an operation against the organization under test, repeated a
+ * number of times by a number of concurrent clients. Suites of scenarios are read from JSON, in
+ * the form of the default suite in loadtest/default-scenarios.json.
+ */
+public class LoadScenario {
+
+    /** The classpath resource holding the default suite of scenarios */
+    public static final String DEFAULT_SUITE = "loadtest/default-scenarios.json";
+
+    /**
+     * The operations which scenarios may perform.
+     */
+    public enum Type {
+        /** Registers a new system with the facts of a generated consumer */
+        REGISTER(false),
+
+        /** Binds a sampled consumer to a sampled pool; the entitlement is revoked afterwards */
+        BIND(false),
+
+        /** Updates the facts of a sampled consumer and fetches its certificate serials */
+        CHECKIN(false),
+
+        /** Lists a page of the pools of the organization */
+        LIST_POOLS(false),
+
+        /** Lists the pools available to a sampled consumer */
+        LIST_CONSUMER_POOLS(false),
+
+        /** Lists a page of the consumers of the organization */
+        LIST_CONSUMERS(false),
+
+        /** Fetches the summary of the organization */
+        OWNER_INFO(false),
+
+        /** Refreshes the pools of the organization and waits for the job to finish */
+        REFRESH(true),
+
+        /** Heals the organization, or autobinds a sampled consumer, and waits for the result */
+        HEAL(true),
+
+        /** Imports a manifest into a scratch organization and waits for the import to finish */
+        IMPORT_MANIFEST(true);
+
+        private final boolean exclusive;
+
+        Type(boolean exclusive) {
+            this.exclusive = exclusive;
+        }
+
+        /**
+         * @return
+         *  true if concurrent iterations of this operation would conflict with one another, in which
+         *  case scenarios of this type are always run by a single client
+         */
+        public boolean isExclusive() {
+            return this.exclusive;
+        }
+    }
+
+    private String name;
+    private Type type;
+    private int iterations = 100;
+    private int warmup = 0;
+    private int concurrency = 1;
+    private Map<String, String> params = new HashMap<>();
+
+    public String getName() {
+        return this.name != null ? this.name : String.valueOf(this.type).toLowerCase();
+    }
+
+    public LoadScenario setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public Type getType() {
+        return this.type;
+    }
+
+    public LoadScenario setType(Type type) {
+        this.type = type;
+        return this;
+    }
+
+    public int getIterations() {
+        return this.iterations;
+    }
+
+    public LoadScenario setIterations(int iterations) {
+        this.iterations = iterations;
+        return this;
+    }
+
+    /**
+     * @return
+     *  the number of iterations run before the measured iterations, whose results are discarded
+     */
+    public int getWarmup() {
+        return this.warmup;
+    }
+
+    public LoadScenario setWarmup(int warmup) {
+        this.warmup = warmup;
+        return this;
+    }
+
+    public int getConcurrency() {
+        return this.type != null && this.type.isExclusive() ? 1 : this.concurrency;
+    }
+
+    public LoadScenario setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * @return
+     *  the parameters of the operation, such as the page size of listings; see LoadTestRunner for
+     *  the parameters of each type
+     */
+    public Map<String, String> getParams() {
+        return this.params;
+    }
+
+    public LoadScenario setParams(Map<String, String> params) {
+        this.params = params != null ? params : new HashMap<>();
+        return this;
+    }
+
+    public String getParam(String key, String defaultValue) {
+        return this.params.getOrDefault(key, defaultValue);
+    }
+
+    public int getIntParam(String key, int defaultValue) {
+        String value = this.params.get(key);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    /**
+     * Checks that this scenario can be run.
+     *
+     * @throws IllegalArgumentException
+     *  if the scenario has no type, or its counts are out of range
+     */
+    public void validate() {
+        if (this.type == null) {
+            throw new IllegalArgumentException("scenario has no type: " + this.getName());
+        }
+
+        if (this.iterations < 1 || this.warmup < 0 || this.concurrency < 1) {
+            throw new IllegalArgumentException("scenario counts are out of range: " + this.getName());
+        }
+    }
+
+    /**
+     * Reads a suite of scenarios from a JSON array.
+     *
+     * @param in
+     *  the stream from which to read the suite
+     *
+     * @throws IOException
+     *  if the suite cannot be read or parsed
+     *
+     * @return
+     *  the scenarios of the suite, in the order in which they should be run
+     */
+    public static List<LoadScenario> readSuite(InputStream in) throws IOException {
+        List<LoadScenario> suite = new ObjectMapper()
+            .readValue(in, new TypeReference<List<LoadScenario>>() {});
+        suite.forEach(LoadScenario::validate);
+
+        return suite;
+    }
+
+    /**
+     * Reads the default suite of scenarios.
+     *
+     * @throws IOException
+     *  if the suite cannot be read
+     *
+     * @return
+     *  the scenarios of the default suite
+     */
+    public static List<LoadScenario> readDefaultSuite() throws IOException {
+        try (InputStream in = LoadScenario.class.getClassLoader().getResourceAsStream(DEFAULT_SUITE)) {
+            if (in == null) {
+                throw new IOException("default scenario suite not found: " + DEFAULT_SUITE);
+            }
+
+            return readSuite(in);
+        }
+    }
+}
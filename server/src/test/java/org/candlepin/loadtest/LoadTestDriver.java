@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.loadtest;
+
+import org.candlepin.replay.ReplayClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+
+
+/**
+ * Runs a suite of load test scenarios from the command line and writes its results as JSON, or
+ * compares the results of two runs.
+ * <p></p>
+ * To run a suite against an organization, usually one created by the OrgGenerator:
+ * <pre>
+ *   LoadTestDriver run --target &lt;url&gt; --owner &lt;key&gt; [--scenarios &lt;file&gt;]
+ *       [--manifest &lt;file&gt;] [--seed &lt;n&gt;] [--output &lt;file&gt;] [--username &lt;user&gt;]
+ *       [--password &lt;password&gt;] [--insecure]
+ * </pre>
+ * To compare the results of a candidate run with those of a baseline run, exiting with a status of
+ * 1 if any scenario regressed by more than the threshold:
+ * <pre>
+ *   LoadTestDriver compare &lt;baseline&gt; &lt;candidate&gt; [--threshold &lt;fraction&gt;]
+ * </pre>
+ */
+public class LoadTestDriver {
+
+    private static final double DEFAULT_THRESHOLD = 0.1;
+
+    private LoadTestDriver() {
+        // Command line entry point only
+    }
+
+    private static int run(String[] args) throws IOException, InterruptedException {
+        String target = null;
+        String ownerKey = null;
+        String scenarios = null;
+        String manifest = null;
+        String output = null;
+        String username = "admin";
+        String password = "admin";
+        long seed = 1;
+        boolean insecure = false;
+
+        for (int i = 1; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--target":
+                    target = args[++i];
+                    break;
+                case "--owner":
+                    ownerKey = args[++i];
+                    break;
+                case "--scenarios":
+                    scenarios = args[++i];
+                    break;
+                case "--manifest":
+                    manifest = args[++i];
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--output":
+                    output = args[++i];
+                    break;
+                case "--username":
+                    username = args[++i];
+                    break;
+                case "--password":
+                    password = args[++i];
+                    break;
+                case "--insecure":
+                    insecure = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option: " + args[i]);
+            }
+        }
+
+        if (target == null || ownerKey == null) {
+            throw new IllegalArgumentException("a target and an owner are required");
+        }
+
+        List<LoadScenario> suite;
+        if (scenarios != null) {
+            try (InputStream in = Files.newInputStream(Paths.get(scenarios))) {
+                suite = LoadScenario.readSuite(in);
+            }
+        }
+        else {
+            suite = LoadScenario.readDefaultSuite();
+        }
+
+        ReplayClient client = new ReplayClient(target, username, password, insecure);
+        Path manifestPath = manifest != null ? Paths.get(manifest) : null;
+
+        LoadTestResults results = new LoadTestRunner(client, ownerKey, seed, manifestPath).run(suite);
+
+        if (output != null) {
+            try (OutputStream out = Files.newOutputStream(Paths.get(output))) {
+                results.write(out);
+            }
+        }
+        else {
+            results.write(System.out);
+            System.out.println();
+        }
+
+        return results.getScenarios().stream().anyMatch(result -> result.getFailures() > 0) ? 1 : 0;
+    }
+
+    private static int compare(String[] args) throws IOException {
+        if (args.length < 3) {
+            throw new IllegalArgumentException("a baseline and a candidate are required");
+        }
+
+        double threshold = DEFAULT_THRESHOLD;
+        for (int i = 3; i < args.length; ++i) {
+            if ("--threshold".equals(args[i])) {
+                threshold = Double.parseDouble(args[++i]);
+            }
+            else {
+                throw new IllegalArgumentException("unknown option: " + args[i]);
+            }
+        }
+
+        LoadTestResults baseline;
+        LoadTestResults candidate;
+
+        try (InputStream in = Files.newInputStream(Paths.get(args[1]))) {
+            baseline = LoadTestResults.read(in);
+        }
+
+        try (InputStream in = Files.newInputStream(Paths.get(args[2]))) {
+            candidate = LoadTestResults.read(in);
+        }
+
+        List<LoadTestResults.Comparison> comparisons = baseline.compare(candidate, threshold);
+        LoadTestResults.print(comparisons, System.out);
+
+        return comparisons.stream().anyMatch(LoadTestResults.Comparison::isRegressed) ? 1 : 0;
+    }
+
+    /**
+     * Runs the driver from the command line.
+     *
+     * @param args
+     *  the command line arguments
+     */
+    public static void main(String[] args) {
+        try {
+            String command = args.length > 0 ? args[0] : "";
+
+            switch (command) {
+                case "run":
+                    System.exit(run(args));
+                    break;
+                case "compare":
+                    System.exit(compare(args));
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown command: " + command);
+            }
+        }
+        catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Invalid arguments: " + e.getMessage());
+            System.err.println("Usage: LoadTestDriver run --target <url> --owner <key> " +
+                "[--scenarios <file>] [--manifest <file>] [--seed <n>] [--output <file>] " +
+                "[--username <user>] [--password <password>] [--insecure]");
+            System.err.println("       LoadTestDriver compare <baseline> <candidate> " +
+                "[--threshold <fraction>]");
+            System.exit(2);
+        }
+        catch (IOException | InterruptedException e) {
+            System.err.println("Load test failed: " + e);
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,464 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.loadtest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * The results of a run of a suite of load test scenarios. Results are written as JSON, and two
+ * sets of results, such as those of a baseline and a candidate build run against organizations of
+ * the same shape, can be read back and compared scenario by scenario.
+ */
+public class LoadTestResults {
+
+    /**
+     * Exact latency percentiles of the measured iterations of a scenario, in milliseconds.
+     */
+    public static class Latency {
+        private long count;
+        private double meanMs;
+        private double p50Ms;
+        private double p90Ms;
+        private double p95Ms;
+        private double p99Ms;
+        private double maxMs;
+
+        /**
+         * Computes the percentiles of the given latencies.
+         *
+         * @param nanos
+         *  the latencies, in nanoseconds; the array is sorted by this method
+         *
+         * @return
+         *  the percentiles of the given latencies
+         */
+        public static Latency of(long[] nanos) {
+            Latency latency = new Latency();
+            latency.count = nanos.length;
+
+            if (nanos.length > 0) {
+                Arrays.sort(nanos);
+
+                latency.meanMs = toMillis((long) Arrays.stream(nanos).average().orElse(0));
+                latency.p50Ms = toMillis(percentile(nanos, 0.50));
+                latency.p90Ms = toMillis(percentile(nanos, 0.90));
+                latency.p95Ms = toMillis(percentile(nanos, 0.95));
+                latency.p99Ms = toMillis(percentile(nanos, 0.99));
+                latency.maxMs = toMillis(nanos[nanos.length - 1]);
+            }
+
+            return latency;
+        }
+
+        private static long percentile(long[] sorted, double quantile) {
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+
+        private static double toMillis(long nanos) {
+            return Math.round(nanos / (double) TimeUnit.MILLISECONDS.toNanos(1) * 1000) / 1000.0;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        public double getMeanMs() {
+            return this.meanMs;
+        }
+
+        public void setMeanMs(double meanMs) {
+            this.meanMs = meanMs;
+        }
+
+        public double getP50Ms() {
+            return this.p50Ms;
+        }
+
+        public void setP50Ms(double p50Ms) {
+            this.p50Ms = p50Ms;
+        }
+
+        public double getP90Ms() {
+            return this.p90Ms;
+        }
+
+        public void setP90Ms(double p90Ms) {
+            this.p90Ms = p90Ms;
+        }
+
+        public double getP95Ms() {
+            return this.p95Ms;
+        }
+
+        public void setP95Ms(double p95Ms) {
+            this.p95Ms = p95Ms;
+        }
+
+        public double getP99Ms() {
+            return this.p99Ms;
+        }
+
+        public void setP99Ms(double p99Ms) {
+            this.p99Ms = p99Ms;
+        }
+
+        public double getMaxMs() {
+            return this.maxMs;
+        }
+
+        public void setMaxMs(double maxMs) {
+            this.maxMs = maxMs;
+        }
+    }
+
+    /**
+     * The outcome of a single scenario.
+     */
+    public static class ScenarioResult {
+        private String name;
+        private LoadScenario.Type type;
+        private int iterations;
+        private int concurrency;
+        private String skipped;
+        private long successes;
+        private long failures;
+        private Map<String, Long> statuses = new TreeMap<>();
+        private Latency latency = new Latency();
+        private long durationMs;
+        private double throughput;
+
+        public String getName() {
+            return this.name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public LoadScenario.Type getType() {
+            return this.type;
+        }
+
+        public void setType(LoadScenario.Type type) {
+            this.type = type;
+        }
+
+        public int getIterations() {
+            return this.iterations;
+        }
+
+        public void setIterations(int iterations) {
+            this.iterations = iterations;
+        }
+
+        public int getConcurrency() {
+            return this.concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        /**
+         * @return
+         *  the reason the scenario was not run, or null if it was run
+         */
+        public String getSkipped() {
+            return this.skipped;
+        }
+
+        public void setSkipped(String skipped) {
+            this.skipped = skipped;
+        }
+
+        public long getSuccesses() {
+            return this.successes;
+        }
+
+        public void setSuccesses(long successes) {
+            this.successes = successes;
+        }
+
+        public long getFailures() {
+            return this.failures;
+        }
+
+        public void setFailures(long failures) {
+            this.failures = failures;
+        }
+
+        /**
+         * @return
+         *  the number of measured iterations by outcome: the HTTP status of the operation, the final
+         *  state of its job for asynchronous operations, or "error" if the server could not be reached
+         */
+        public Map<String, Long> getStatuses() {
+            return this.statuses;
+        }
+
+        public void setStatuses(Map<String, Long> statuses) {
+            this.statuses = statuses;
+        }
+
+        public Latency getLatency() {
+            return this.latency;
+        }
+
+        public void setLatency(Latency latency) {
+            this.latency = latency;
+        }
+
+        public long getDurationMs() {
+            return this.durationMs;
+        }
+
+        public void setDurationMs(long durationMs) {
+            this.durationMs = durationMs;
+        }
+
+        /**
+         * @return
+         *  the number of measured iterations completed per second
+         */
+        public double getThroughput() {
+            return this.throughput;
+        }
+
+        public void setThroughput(double throughput) {
+            this.throughput = throughput;
+        }
+
+        private double getFailureRate() {
+            long total = this.successes + this.failures;
+            return total > 0 ? this.failures / (double) total : 0;
+        }
+    }
+
+    /**
+     * The comparison of a scenario between two sets of results.
+     */
+    public static class Comparison {
+        private final String name;
+        private final double baselineP95Ms;
+        private final double candidateP95Ms;
+        private final double ratio;
+        private final boolean regressed;
+
+        Comparison(String name, double baselineP95Ms, double candidateP95Ms, double ratio,
+            boolean regressed) {
+
+            this.name = name;
+            this.baselineP95Ms = baselineP95Ms;
+            this.candidateP95Ms = candidateP95Ms;
+            this.ratio = ratio;
+            this.regressed = regressed;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public double getBaselineP95Ms() {
+            return this.baselineP95Ms;
+        }
+
+        public double getCandidateP95Ms() {
+            return this.candidateP95Ms;
+        }
+
+        /**
+         * @return
+         *  the candidate 95th percentile divided by that of the baseline
+         */
+        public double getRatio() {
+            return this.ratio;
+        }
+
+        /**
+         * @return
+         *  true if the 95th percentile of the candidate exceeds that of the baseline by more than
+         *  the threshold of the comparison, or the candidate failed a greater share of iterations
+         */
+        public boolean isRegressed() {
+            return this.regressed;
+        }
+    }
+
+    private String target;
+    private String ownerKey;
+    private long seed;
+    private String startTime;
+    private long durationMs;
+    private List<ScenarioResult> scenarios = new ArrayList<>();
+
+    public String getTarget() {
+        return this.target;
+    }
+
+    public void setTarget(String target) {
+        this.target = target;
+    }
+
+    public String getOwnerKey() {
+        return this.ownerKey;
+    }
+
+    public void setOwnerKey(String ownerKey) {
+        this.ownerKey = ownerKey;
+    }
+
+    public long getSeed() {
+        return this.seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public String getStartTime() {
+        return this.startTime;
+    }
+
+    public void setStartTime(String startTime) {
+        this.startTime = startTime;
+    }
+
+    public long getDurationMs() {
+        return this.durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public List<ScenarioResult> getScenarios() {
+        return this.scenarios;
+    }
+
+    public void setScenarios(List<ScenarioResult> scenarios) {
+        this.scenarios = scenarios;
+    }
+
+    /**
+     * Compares the scenarios of these results, as the baseline, with those of the same name in the
+     * given results. Scenarios skipped by either run are not compared.
+     *
+     * @param candidate
+     *  the results to compare with these results
+     *
+     * @param threshold
+     *  the fraction by which the 95th percentile of a scenario may grow before it is considered a
+     *  regression
+     *
+     * @return
+     *  the comparison of each scenario present in both sets of results, in the order of these results
+     */
+    public List<Comparison> compare(LoadTestResults candidate, double threshold) {
+        Map<String, ScenarioResult> candidates = new TreeMap<>();
+        candidate.getScenarios().forEach(result -> candidates.put(result.getName(), result));
+
+        List<Comparison> comparisons = new ArrayList<>();
+        for (ScenarioResult base : this.scenarios) {
+            ScenarioResult other = candidates.get(base.getName());
+            if (other == null || base.getSkipped() != null || other.getSkipped() != null) {
+                continue;
+            }
+
+            double baseP95 = base.getLatency().getP95Ms();
+            double otherP95 = other.getLatency().getP95Ms();
+            double ratio = baseP95 > 0 ? otherP95 / baseP95 : 1.0;
+            boolean regressed = ratio > 1.0 + threshold || other.getFailureRate() > base.getFailureRate();
+
+            comparisons.add(new Comparison(base.getName(), baseP95, otherP95, ratio, regressed));
+        }
+
+        return comparisons;
+    }
+
+    /**
+     * Prints a table of the given comparisons.
+     *
+     * @param comparisons
+     *  the comparisons to print
+     *
+     * @param out
+     *  the stream to which to print the table
+     */
+    public static void print(List<Comparison> comparisons, PrintStream out) {
+        out.println(String.format("%-28s %14s %14s %8s", "scenario", "baseline p95", "candidate p95",
+            "ratio"));
+
+        for (Comparison comparison : comparisons) {
+            out.println(String.format("%-28s %12.1fms %12.1fms %7.2fx%s", comparison.getName(),
+                comparison.getBaselineP95Ms(), comparison.getCandidateP95Ms(), comparison.getRatio(),
+                comparison.isRegressed() ? "  REGRESSED" : ""));
+        }
+    }
+
+    /**
+     * Writes these results as JSON. The stream is left open.
+     *
+     * @param out
+     *  the stream to which to write the results
+     *
+     * @throws IOException
+     *  if the results cannot be written
+     */
+    public void write(OutputStream out) throws IOException {
+        createObjectMapper().writeValue(out, this);
+    }
+
+    /**
+     * Reads results written by {@link #write(OutputStream)}.
+     *
+     * @param in
+     *  the stream from which to read the results
+     *
+     * @throws IOException
+     *  if the results cannot be read or parsed
+     *
+     * @return
+     *  the results read
+     */
+    public static LoadTestResults read(InputStream in) throws IOException {
+        return createObjectMapper().readValue(in, LoadTestResults.class);
+    }
+
+    private static ObjectMapper createObjectMapper() {
+        return new ObjectMapper()
+            .enable(SerializationFeature.INDENT_OUTPUT)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.loadtest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.candlepin.loadtest.LoadTestResults.Comparison;
+import org.candlepin.loadtest.LoadTestResults.Latency;
+import org.candlepin.loadtest.LoadTestResults.ScenarioResult;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.LongStream;
+
+
+
+public class LoadTestResultsTest {
+
+    private ScenarioResult buildResult(String name, long p95Nanos, long failures) {
+        long[] nanos = LongStream.rangeClosed(1, 100).map(i -> i * p95Nanos / 95).toArray();
+
+        ScenarioResult result = new ScenarioResult();
+        result.setName(name);
+        result.setType(LoadScenario.Type.OWNER_INFO);
+        result.setIterations(100);
+        result.setSuccesses(100 - failures);
+        result.setFailures(failures);
+        result.setLatency(Latency.of(nanos));
+
+        return result;
+    }
+
+    private LoadTestResults buildResults(ScenarioResult... scenarios) {
+        LoadTestResults results = new LoadTestResults();
+        for (ScenarioResult scenario : scenarios) {
+            results.getScenarios().add(scenario);
+        }
+
+        return results;
+    }
+
+    @Test
+    public void testLatencyPercentiles() {
+        long[] nanos = LongStream.rangeClosed(1, 100).map(i -> (101 - i) * 1000000L).toArray();
+        Latency latency = Latency.of(nanos);
+
+        assertEquals(100, latency.getCount());
+        assertEquals(50.5, latency.getMeanMs(), 0.001);
+        assertEquals(50.0, latency.getP50Ms(), 0.001);
+        assertEquals(90.0, latency.getP90Ms(), 0.001);
+        assertEquals(95.0, latency.getP95Ms(), 0.001);
+        assertEquals(99.0, latency.getP99Ms(), 0.001);
+        assertEquals(100.0, latency.getMaxMs(), 0.001);
+    }
+
+    @Test
+    public void testLatencyOfNoIterations() {
+        Latency latency = Latency.of(new long[0]);
+
+        assertEquals(0, latency.getCount());
+        assertEquals(0.0, latency.getP95Ms(), 0.001);
+    }
+
+    @Test
+    public void testCompareFlagsRegressions() {
+        LoadTestResults baseline = this.buildResults(
+            this.buildResult("steady", 10000000, 0),
+            this.buildResult("slower", 10000000, 0),
+            this.buildResult("failing", 10000000, 0),
+            this.buildResult("removed", 10000000, 0));
+
+        LoadTestResults candidate = this.buildResults(
+            this.buildResult("steady", 10500000, 0),
+            this.buildResult("slower", 12000000, 0),
+            this.buildResult("failing", 9000000, 5));
+
+        List<Comparison> comparisons = baseline.compare(candidate, 0.1);
+
+        assertEquals(3, comparisons.size());
+        assertEquals("steady", comparisons.get(0).getName());
+        assertFalse(comparisons.get(0).isRegressed());
+        assertEquals(1.05, comparisons.get(0).getRatio(), 0.001);
+        assertTrue(comparisons.get(1).isRegressed());
+        assertTrue(comparisons.get(2).isRegressed());
+    }
+
+    @Test
+    public void testCompareIgnoresSkippedScenarios() {
+        ScenarioResult skipped = this.buildResult("import", 10000000, 0);
+        skipped.setSkipped("nothing to operate on");
+
+        List<Comparison> comparisons = this.buildResults(this.buildResult("import", 1000000, 0))
+            .compare(this.buildResults(skipped), 0.1);
+
+        assertTrue(comparisons.isEmpty());
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        ScenarioResult scenario = this.buildResult("info", 20000000, 1);
+        scenario.getStatuses().put("200", 99L);
+        scenario.getStatuses().put("500", 1L);
+
+        LoadTestResults results = this.buildResults(scenario);
+        results.setOwnerKey("scale");
+        results.setSeed(42);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        results.write(out);
+
+        LoadTestResults read = LoadTestResults.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals("scale", read.getOwnerKey());
+        assertEquals(42, read.getSeed());
+        assertEquals(1, read.getScenarios().size());
+        assertEquals(LoadScenario.Type.OWNER_INFO, read.getScenarios().get(0).getType());
+        assertEquals(Long.valueOf(1), read.getScenarios().get(0).getStatuses().get("500"));
+        assertEquals(20.0, read.getScenarios().get(0).getLatency().getP95Ms(), 0.001);
+
+        List<Comparison> comparisons = results.compare(read, 0.0);
+        assertFalse(comparisons.get(0).isRegressed());
+
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        LoadTestResults.print(comparisons, new PrintStream(table, true, "UTF-8"));
+        assertTrue(new String(table.toByteArray(), StandardCharsets.UTF_8).contains("info"));
+    }
+
+    @Test
+    public void testDefaultSuiteIsValid() throws Exception {
+        List<LoadScenario> suite = LoadScenario.readDefaultSuite();
+
+        assertFalse(suite.isEmpty());
+        for (LoadScenario scenario : suite) {
+            assertNotNull(scenario.getType());
+        }
+    }
+
+    @Test
+    public void testSuiteRejectsInvalidScenario() {
+        String json = "[{\"name\": \"bad\", \"type\": \"BIND\", \"iterations\": 0}]";
+
+        assertThrows(IllegalArgumentException.class, () ->
+            LoadScenario.readSuite(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))));
+    }
+}
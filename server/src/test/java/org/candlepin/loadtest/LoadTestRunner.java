@@ -0,0 +1,570 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.loadtest;
+
+import org.candlepin.loadtest.LoadTestResults.Latency;
+import org.candlepin.loadtest.LoadTestResults.ScenarioResult;
+import org.candlepin.replay.ReplayClient;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * Runs suites of load test scenarios against an organization on a running server, usually one
+ * created by the OrgGenerator. Consumers and pools on which scenarios operate are sampled from the
+ * organization, and every random choice is drawn from a generator seeded by the run, so that runs
+ * with the same seed against the same organization, such as a baseline and a candidate build
+ * sharing a database, perform the same operations.
+ * <p></p>
+ * Scenarios leave the organization as they found it where they can: registered consumers are
+ * deleted, and entitlements created by binds are revoked, after the measured requests.
+ * <p></p>
+ * The parameters understood by the scenario types are:
+ * <ul>
+ *   <li>LIST_POOLS, LIST_CONSUMERS: per_page, the page size, and pages, the number of leading
+ *   pages from which each iteration picks one</li>
+ *   <li>HEAL: scope, either "owner" to heal the organization or "consumer" to autobind a sampled
+ *   consumer</li>
+ *   <li>IMPORT_MANIFEST: manifest, the path of the manifest to import, if not given to the
+ *   runner</li>
+ * </ul>
+ */
+public class LoadTestRunner {
+    private static Logger log = LoggerFactory.getLogger(LoadTestRunner.class);
+
+    private static final int SAMPLE_SIZE = 1000;
+    private static final List<String> FINAL_JOB_STATES = Arrays.asList("FINISHED", "FAILED", "CANCELED");
+
+    /**
+     * The outcome of one iteration of a scenario.
+     */
+    private static class Outcome {
+        private final String status;
+        private final boolean success;
+        private final long nanos;
+
+        Outcome(String status, boolean success, long nanos) {
+            this.status = status;
+            this.success = success;
+            this.nanos = nanos;
+        }
+
+        static Outcome of(ReplayClient.Result result) {
+            return new Outcome(String.valueOf(result.getStatus()), result.isSuccessful(), result.getNanos());
+        }
+    }
+
+    /**
+     * A single iteration of a scenario.
+     */
+    private interface Operation {
+        Outcome run(Random random) throws IOException, InterruptedException;
+    }
+
+    private final ReplayClient client;
+    private final String ownerKey;
+    private final long seed;
+    private final Path manifest;
+    private final ObjectMapper mapper;
+    private final List<String> createdConsumers;
+    private long pollIntervalMs;
+
+    private List<String> consumers;
+    private List<String> pools;
+
+    /**
+     * Creates a runner for the given organization.
+     *
+     * @param client
+     *  the client with which to send requests
+     *
+     * @param ownerKey
+     *  the key of the organization under test
+     *
+     * @param seed
+     *  the seed from which every random choice of the run is drawn
+     *
+     * @param manifest
+     *  the manifest imported by manifest import scenarios, or null to skip those without one of
+     *  their own
+     */
+    public LoadTestRunner(ReplayClient client, String ownerKey, long seed, Path manifest) {
+        this.client = client;
+        this.ownerKey = ownerKey;
+        this.seed = seed;
+        this.manifest = manifest;
+        this.mapper = new ObjectMapper();
+        this.createdConsumers = Collections.synchronizedList(new ArrayList<>());
+        this.pollIntervalMs = 250;
+    }
+
+    /**
+     * Sets the interval at which the status of asynchronous jobs is polled.
+     *
+     * @param pollIntervalMs
+     *  the interval, in milliseconds
+     *
+     * @return
+     *  this runner
+     */
+    public LoadTestRunner setPollInterval(long pollIntervalMs) {
+        this.pollIntervalMs = pollIntervalMs;
+        return this;
+    }
+
+    /**
+     * Runs the given scenarios, in order.
+     *
+     * @param suite
+     *  the scenarios to run
+     *
+     * @throws InterruptedException
+     *  if the run is interrupted
+     *
+     * @return
+     *  the results of the run
+     */
+    public LoadTestResults run(List<LoadScenario> suite) throws InterruptedException {
+        LoadTestResults results = new LoadTestResults();
+        results.setTarget(this.client.getBaseUrl());
+        results.setOwnerKey(this.ownerKey);
+        results.setSeed(this.seed);
+        results.setStartTime(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").format(new Date()));
+
+        long start = System.nanoTime();
+        for (LoadScenario scenario : suite) {
+            results.getScenarios().add(this.runScenario(scenario));
+        }
+
+        results.setDurationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return results;
+    }
+
+    private ScenarioResult runScenario(LoadScenario scenario) throws InterruptedException {
+        ScenarioResult result = new ScenarioResult();
+        result.setName(scenario.getName());
+        result.setType(scenario.getType());
+        result.setIterations(scenario.getIterations());
+        result.setConcurrency(scenario.getConcurrency());
+
+        Operation operation;
+        try {
+            operation = this.prepare(scenario);
+        }
+        catch (IOException e) {
+            log.warn("Unable to prepare scenario {}", scenario.getName(), e);
+            operation = null;
+            result.setSkipped("preparation failed: " + e.getMessage());
+        }
+
+        if (operation == null) {
+            if (result.getSkipped() == null) {
+                result.setSkipped("nothing to operate on");
+            }
+
+            log.info("Skipping scenario {}: {}", scenario.getName(), result.getSkipped());
+            return result;
+        }
+
+        try {
+            for (int i = 0; i < scenario.getWarmup(); ++i) {
+                this.execute(operation, new Random(this.seed - i - 1));
+            }
+
+            this.measure(scenario, operation, result);
+        }
+        finally {
+            this.cleanup(scenario);
+        }
+
+        log.info("Scenario {}: {} iterations, p95 {}ms, {} failures", scenario.getName(),
+            result.getIterations(), result.getLatency().getP95Ms(), result.getFailures());
+
+        return result;
+    }
+
+    private void measure(LoadScenario scenario, Operation operation, ScenarioResult result)
+        throws InterruptedException {
+
+        int iterations = scenario.getIterations();
+        long[] nanos = new long[iterations];
+        Map<String, AtomicLong> statuses = new ConcurrentHashMap<>();
+        AtomicLong successes = new AtomicLong();
+
+        ExecutorService executor = Executors.newFixedThreadPool(scenario.getConcurrency());
+        long start = System.nanoTime();
+
+        try {
+            for (int i = 0; i < iterations; ++i) {
+                int iteration = i;
+
+                executor.submit(() -> {
+                    // Seeded by iteration rather than by thread, so the operations performed do not
+                    // depend on scheduling
+                    Outcome outcome = this.execute(operation, new Random(this.seed * 31 + iteration));
+
+                    nanos[iteration] = outcome.nanos;
+                    statuses.computeIfAbsent(outcome.status, key -> new AtomicLong()).incrementAndGet();
+                    if (outcome.success) {
+                        successes.incrementAndGet();
+                    }
+                });
+            }
+        }
+        finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        long elapsed = System.nanoTime() - start;
+
+        statuses.forEach((status, count) -> result.getStatuses().put(status, count.get()));
+        result.setSuccesses(successes.get());
+        result.setFailures(iterations - successes.get());
+        result.setLatency(Latency.of(nanos));
+        result.setDurationMs(TimeUnit.NANOSECONDS.toMillis(elapsed));
+        result.setThroughput(iterations / Math.max(elapsed / 1e9, 1e-9));
+    }
+
+    private Outcome execute(Operation operation, Random random) {
+        long start = System.nanoTime();
+
+        try {
+            return operation.run(random);
+        }
+        catch (IOException e) {
+            log.debug("Load test request failed", e);
+            return new Outcome("error", false, System.nanoTime() - start);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Outcome("interrupted", false, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Prepares the organization for the given scenario, and creates its operation.
+     *
+     * @return
+     *  the operation of the scenario, or null if the scenario cannot be run
+     */
+    private Operation prepare(LoadScenario scenario) throws IOException {
+        String owner = "/owners/" + this.ownerKey;
+
+        switch (scenario.getType()) {
+            case REGISTER:
+                return this::register;
+
+            case BIND:
+                return this.sampleConsumers().isEmpty() || this.samplePools().isEmpty() ? null : this::bind;
+
+            case CHECKIN:
+                return this.sampleConsumers().isEmpty() ? null : this::checkin;
+
+            case LIST_POOLS:
+                return random -> this.getPage(owner + "/pools", scenario, random);
+
+            case LIST_CONSUMER_POOLS:
+                return this.sampleConsumers().isEmpty() ? null : random -> Outcome.of(this.client.execute(
+                    "GET", owner + "/pools", query("consumer", this.pick(this.consumers, random)), null,
+                    null));
+
+            case LIST_CONSUMERS:
+                return random -> this.getPage(owner + "/consumers", scenario, random);
+
+            case OWNER_INFO:
+                return random -> Outcome.of(this.client.execute("GET", owner + "/info", null, null, null));
+
+            case REFRESH:
+                return random -> this.awaitJob(this.client.execute("PUT", owner + "/subscriptions", null,
+                    null, null));
+
+            case HEAL:
+                if ("consumer".equals(scenario.getParam("scope", "owner"))) {
+                    return this.sampleConsumers().isEmpty() ? null : this::autobind;
+                }
+
+                return random -> this.awaitJob(this.client.execute("POST", owner + "/entitlements", null,
+                    null, null));
+
+            case IMPORT_MANIFEST:
+                return this.prepareImport(scenario);
+
+            default:
+                throw new IllegalArgumentException("unsupported scenario type: " + scenario.getType());
+        }
+    }
+
+    private Outcome register(Random random) throws IOException {
+        Map<String, String> facts = new LinkedHashMap<>();
+        facts.put("system.certificate_version", "3.2");
+        facts.put("uname.machine", "x86_64");
+        facts.put("cpu.cpu_socket(s)", String.valueOf(1 << random.nextInt(4)));
+        facts.put("virt.is_guest", String.valueOf(random.nextBoolean()));
+
+        ObjectNode body = this.mapper.createObjectNode();
+        body.put("name", String.format("lt-register-%08x.example.com", random.nextInt()));
+        body.putObject("type").put("label", "system");
+        body.set("facts", this.mapper.valueToTree(facts));
+
+        ReplayClient.Result result = this.client.execute("POST", "/consumers", query("owner", this.ownerKey),
+            null, body.toString());
+
+        if (result.isSuccessful()) {
+            this.createdConsumers.add(this.mapper.readTree(result.getBody()).path("uuid").asText());
+        }
+
+        return Outcome.of(result);
+    }
+
+    private Outcome bind(Random random) throws IOException {
+        String consumer = this.pick(this.consumers, random);
+        Map<String, List<String>> query = query("pool", this.pick(this.pools, random));
+        query.put("async", Collections.singletonList("false"));
+
+        ReplayClient.Result result = this.client.execute("POST", "/consumers/" + consumer + "/entitlements",
+            query, null, null);
+
+        this.revoke(consumer, result);
+        return Outcome.of(result);
+    }
+
+    private Outcome autobind(Random random) throws IOException {
+        String consumer = this.pick(this.consumers, random);
+
+        ReplayClient.Result result = this.client.execute("POST", "/consumers/" + consumer + "/entitlements",
+            query("async", "false"), null, null);
+
+        this.revoke(consumer, result);
+        return Outcome.of(result);
+    }
+
+    /**
+     * Revokes the entitlements listed in the response to a bind, so the organization keeps its shape.
+     */
+    private void revoke(String consumer, ReplayClient.Result result) throws IOException {
+        if (!result.isSuccessful() || result.getBody().isEmpty()) {
+            return;
+        }
+
+        for (JsonNode entitlement : this.mapper.readTree(result.getBody())) {
+            String id = entitlement.path("id").asText(null);
+            if (id != null) {
+                this.client.execute("DELETE", "/consumers/" + consumer + "/entitlements/" + id, null, null,
+                    null);
+            }
+        }
+    }
+
+    private Outcome checkin(Random random) throws IOException {
+        String consumer = "/consumers/" + this.pick(this.consumers, random);
+
+        ReplayClient.Result current = this.client.execute("GET", consumer, null, null, null);
+        if (!current.isSuccessful()) {
+            return Outcome.of(current);
+        }
+
+        JsonNode existing = this.mapper.readTree(current.getBody()).path("facts");
+        ObjectNode facts = existing.isObject() ? (ObjectNode) existing : this.mapper.createObjectNode();
+        facts.put("lt.checkin", String.valueOf(random.nextInt(Integer.MAX_VALUE)));
+
+        ObjectNode body = this.mapper.createObjectNode();
+        body.set("facts", facts);
+
+        ReplayClient.Result update = this.client.execute("PUT", consumer, null, null, body.toString());
+        if (!update.isSuccessful()) {
+            return Outcome.of(update);
+        }
+
+        ReplayClient.Result serials = this.client.execute("GET", consumer + "/certificates/serials", null,
+            null, null);
+
+        return new Outcome(String.valueOf(serials.getStatus()), serials.isSuccessful(),
+            update.getNanos() + serials.getNanos());
+    }
+
+    private Outcome getPage(String path, LoadScenario scenario, Random random) throws IOException {
+        Map<String, List<String>> query = query("page",
+            String.valueOf(1 + random.nextInt(Math.max(1, scenario.getIntParam("pages", 1)))));
+        query.put("per_page", Collections.singletonList(scenario.getParam("per_page", "100")));
+
+        return Outcome.of(this.client.execute("GET", path, query, null, null));
+    }
+
+    private Operation prepareImport(LoadScenario scenario) throws IOException {
+        String path = scenario.getParam("manifest", this.manifest != null ? this.manifest.toString() : null);
+        if (path == null) {
+            return null;
+        }
+
+        byte[] data = Files.readAllBytes(Paths.get(path));
+        String scratch = "/owners/" + this.getImportOwnerKey();
+
+        // A scratch organization, so imports do not disturb the organization under test
+        this.client.execute("DELETE", scratch, query("revoke", "true"), null, null);
+
+        ObjectNode owner = this.mapper.createObjectNode()
+            .put("key", this.getImportOwnerKey())
+            .put("displayName", this.getImportOwnerKey());
+
+        ReplayClient.Result created = this.client.execute("POST", "/owners", null, null, owner.toString());
+        if (!created.isSuccessful()) {
+            throw new IOException("unable to create scratch organization: " + created.getStatus());
+        }
+
+        Map<String, List<String>> query = new LinkedHashMap<>();
+        query.put("force", Arrays.asList("MANIFEST_SAME", "MANIFEST_OLD"));
+
+        String fileName = Paths.get(path).getFileName().toString();
+        return random -> Outcome.of(this.client.upload(scratch + "/imports", query, fileName, data));
+    }
+
+    private String getImportOwnerKey() {
+        return this.ownerKey + "-import";
+    }
+
+    /**
+     * Follows the job started by an asynchronous request until it finishes. Requests which did not
+     * start a job are returned as they are.
+     */
+    private Outcome awaitJob(ReplayClient.Result result) throws IOException, InterruptedException {
+        JsonNode job = result.isSuccessful() && !result.getBody().isEmpty() ?
+            this.mapper.readTree(result.getBody()) : null;
+
+        if (job == null || !job.has("id") || !job.has("state")) {
+            return Outcome.of(result);
+        }
+
+        long start = System.nanoTime();
+        String state = job.path("state").asText();
+
+        while (!FINAL_JOB_STATES.contains(state)) {
+            Thread.sleep(this.pollIntervalMs);
+
+            ReplayClient.Result status = this.client.execute("GET", "/jobs/" + job.path("id").asText(), null,
+                null, null);
+
+            if (!status.isSuccessful()) {
+                return new Outcome(String.valueOf(status.getStatus()), false,
+                    result.getNanos() + System.nanoTime() - start);
+            }
+
+            state = this.mapper.readTree(status.getBody()).path("state").asText();
+        }
+
+        return new Outcome(state, "FINISHED".equals(state), result.getNanos() + System.nanoTime() - start);
+    }
+
+    private void cleanup(LoadScenario scenario) {
+        try {
+            if (scenario.getType() == LoadScenario.Type.REGISTER) {
+                List<String> created;
+                synchronized (this.createdConsumers) {
+                    created = new ArrayList<>(this.createdConsumers);
+                    this.createdConsumers.clear();
+                }
+
+                for (String uuid : created) {
+                    this.client.execute("DELETE", "/consumers/" + uuid, null, null, null);
+                }
+            }
+            else if (scenario.getType() == LoadScenario.Type.IMPORT_MANIFEST) {
+                this.client.execute("DELETE", "/owners/" + this.getImportOwnerKey(), query("revoke", "true"),
+                    null, null);
+            }
+        }
+        catch (IOException e) {
+            log.warn("Unable to clean up after scenario {}", scenario.getName(), e);
+        }
+    }
+
+    private List<String> sampleConsumers() throws IOException {
+        if (this.consumers == null) {
+            Map<String, List<String>> query = query("type", "system");
+            query.put("page", Collections.singletonList("1"));
+            query.put("per_page", Collections.singletonList(String.valueOf(SAMPLE_SIZE)));
+
+            this.consumers = this.sample("/owners/" + this.ownerKey + "/consumers", query, "uuid");
+        }
+
+        return this.consumers;
+    }
+
+    private List<String> samplePools() throws IOException {
+        if (this.pools == null) {
+            Map<String, List<String>> query = query("page", "1");
+            query.put("per_page", Collections.singletonList(String.valueOf(SAMPLE_SIZE)));
+
+            this.pools = this.sample("/owners/" + this.ownerKey + "/pools", query, "id");
+        }
+
+        return this.pools;
+    }
+
+    private List<String> sample(String path, Map<String, List<String>> query, String field)
+        throws IOException {
+
+        query.put("sort_by", Collections.singletonList(field));
+        query.put("order", Collections.singletonList("asc"));
+
+        ReplayClient.Result result = this.client.execute("GET", path, query, null, null);
+        if (!result.isSuccessful()) {
+            throw new IOException(String.format("unable to list %s: %d", path, result.getStatus()));
+        }
+
+        List<String> values = new ArrayList<>();
+        for (JsonNode node : this.mapper.readTree(result.getBody())) {
+            values.add(node.path(field).asText());
+        }
+
+        return values;
+    }
+
+    private String pick(List<String> values, Random random) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static Map<String, List<String>> query(String key, String value) {
+        Map<String, List<String>> query = new LinkedHashMap<>();
+        query.put(key, Collections.singletonList(value));
+
+        return query;
+    }
+}
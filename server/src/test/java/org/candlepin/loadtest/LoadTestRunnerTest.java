@@ -0,0 +1,264 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.loadtest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.loadtest.LoadTestResults.ScenarioResult;
+import org.candlepin.replay.ReplayClient;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+
+public class LoadTestRunnerTest {
+
+    private static final String CONSUMERS = "[{\"uuid\": \"c1\"}, {\"uuid\": \"c2\"}]";
+    private static final String POOLS = "[{\"id\": \"p1\"}, {\"id\": \"p2\"}]";
+
+    private ReplayClient client;
+    private AtomicInteger jobPolls;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        this.client = mock(ReplayClient.class);
+        this.jobPolls = new AtomicInteger();
+
+        when(this.client.getBaseUrl()).thenReturn("https://candlepin:8443/candlepin");
+        when(this.client.execute(anyString(), anyString(), any(), any(), any())).thenAnswer(invocation -> {
+            String method = invocation.getArgument(0);
+            String path = invocation.getArgument(1);
+
+            if ("GET".equals(method) && path.equals("/owners/scale/consumers")) {
+                return new ReplayClient.Result(200, CONSUMERS, 1000000);
+            }
+            else if ("GET".equals(method) && path.equals("/owners/scale/pools")) {
+                return new ReplayClient.Result(200, POOLS, 2000000);
+            }
+            else if ("POST".equals(method) && path.matches("/consumers/[^/]+/entitlements")) {
+                return new ReplayClient.Result(200, "[{\"id\": \"ent-1\"}]", 3000000);
+            }
+            else if ("POST".equals(method) && path.equals("/consumers")) {
+                return new ReplayClient.Result(200, "{\"uuid\": \"registered\"}", 4000000);
+            }
+            else if ("GET".equals(method) && path.matches("/consumers/c[12]")) {
+                return new ReplayClient.Result(200, "{\"facts\": {\"a\": \"b\"}}", 1000000);
+            }
+            else if ("POST".equals(method) && path.equals("/owners/scale/entitlements")) {
+                return new ReplayClient.Result(202, "{\"id\": \"job-1\", \"state\": \"CREATED\"}", 1000000);
+            }
+            else if ("GET".equals(method) && path.equals("/jobs/job-1")) {
+                String state = this.jobPolls.incrementAndGet() < 3 ? "RUNNING" : "FINISHED";
+                return new ReplayClient.Result(200, "{\"id\": \"job-1\", \"state\": \"" + state + "\"}", 1);
+            }
+            else if ("GET".equals(method) && path.equals("/owners/scale/info")) {
+                return new ReplayClient.Result(500, "", 5000000);
+            }
+
+            return new ReplayClient.Result(200, "", 1000000);
+        });
+    }
+
+    private LoadTestRunner buildRunner(Path manifest) {
+        return new LoadTestRunner(this.client, "scale", 7, manifest).setPollInterval(1);
+    }
+
+    private ScenarioResult runScenario(LoadScenario scenario) throws InterruptedException {
+        LoadTestResults results = this.buildRunner(null).run(Collections.singletonList(scenario));
+
+        assertEquals(1, results.getScenarios().size());
+        return results.getScenarios().get(0);
+    }
+
+    @Test
+    public void testBindRevokesEntitlements() throws Exception {
+        ScenarioResult result = this.runScenario(new LoadScenario()
+            .setType(LoadScenario.Type.BIND)
+            .setIterations(10)
+            .setWarmup(2)
+            .setConcurrency(3));
+
+        assertNull(result.getSkipped());
+        assertEquals(10, result.getSuccesses());
+        assertEquals(0, result.getFailures());
+        assertEquals(Long.valueOf(10), result.getStatuses().get("200"));
+        assertEquals(10, result.getLatency().getCount());
+        assertEquals(3.0, result.getLatency().getP95Ms(), 0.001);
+
+        // Every bind, including those of the warmup, is revoked
+        verify(this.client, times(12)).execute(eq("DELETE"), matches("/consumers/c[12]/entitlements/ent-1"),
+            any(), any(), any());
+    }
+
+    @Test
+    public void testRegisteredConsumersAreDeleted() throws Exception {
+        ScenarioResult result = this.runScenario(new LoadScenario()
+            .setType(LoadScenario.Type.REGISTER)
+            .setIterations(4));
+
+        assertEquals(4, result.getSuccesses());
+        verify(this.client, times(4)).execute(eq("DELETE"), eq("/consumers/registered"), any(), any(), any());
+    }
+
+    @Test
+    public void testCheckinUpdatesFacts() throws Exception {
+        ScenarioResult result = this.runScenario(new LoadScenario()
+            .setType(LoadScenario.Type.CHECKIN)
+            .setIterations(2));
+
+        ArgumentCaptor<String> body = ArgumentCaptor.forClass(String.class);
+        verify(this.client, times(2)).execute(eq("PUT"), matches("/consumers/c[12]"), any(), any(),
+            body.capture());
+
+        assertTrue(body.getValue().contains("\"a\":\"b\""));
+        assertTrue(body.getValue().contains("lt.checkin"));
+
+        // The update and the serials are measured; the lookup of the current facts is not
+        assertEquals(2.0, result.getLatency().getP50Ms(), 0.001);
+    }
+
+    @Test
+    public void testHealWaitsForJob() throws Exception {
+        ScenarioResult result = this.runScenario(new LoadScenario()
+            .setType(LoadScenario.Type.HEAL)
+            .setConcurrency(4)
+            .setIterations(1));
+
+        assertEquals(1, result.getConcurrency());
+        assertEquals(1, result.getSuccesses());
+        assertEquals(Long.valueOf(1), result.getStatuses().get("FINISHED"));
+        assertEquals(3, this.jobPolls.get());
+    }
+
+    @Test
+    public void testFailuresAreCounted() throws Exception {
+        ScenarioResult result = this.runScenario(new LoadScenario()
+            .setType(LoadScenario.Type.OWNER_INFO)
+            .setIterations(3));
+
+        assertEquals(0, result.getSuccesses());
+        assertEquals(3, result.getFailures());
+        assertEquals(Long.valueOf(3), result.getStatuses().get("500"));
+    }
+
+    @Test
+    public void testUnreachableServerIsCountedAsError() throws Exception {
+        when(this.client.execute(eq("GET"), eq("/owners/scale/info"), any(), any(), any()))
+            .thenThrow(new IOException("connection refused"));
+
+        ScenarioResult result = this.runScenario(new LoadScenario()
+            .setType(LoadScenario.Type.OWNER_INFO)
+            .setIterations(2));
+
+        assertEquals(2, result.getFailures());
+        assertEquals(Long.valueOf(2), result.getStatuses().get("error"));
+    }
+
+    @Test
+    public void testListingsPickPages() throws Exception {
+        this.runScenario(new LoadScenario()
+            .setType(LoadScenario.Type.LIST_CONSUMERS)
+            .setIterations(20)
+            .setParams(Collections.singletonMap("pages", "3")));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, List<String>>> query = ArgumentCaptor.forClass(Map.class);
+        verify(this.client, times(20)).execute(eq("GET"), eq("/owners/scale/consumers"), query.capture(),
+            any(), any());
+
+        for (Map<String, List<String>> params : query.getAllValues()) {
+            assertTrue(Arrays.asList("1", "2", "3").contains(params.get("page").get(0)));
+            assertEquals("100", params.get("per_page").get(0));
+        }
+    }
+
+    @Test
+    public void testSameSeedPerformsSameOperations() throws Exception {
+        LoadScenario scenario = new LoadScenario()
+            .setType(LoadScenario.Type.BIND)
+            .setIterations(20)
+            .setConcurrency(4);
+
+        List<String> first = this.captureBoundPools(scenario);
+        List<String> second = this.captureBoundPools(scenario);
+
+        assertEquals(first, second);
+    }
+
+    private List<String> captureBoundPools(LoadScenario scenario) throws Exception {
+        clearInvocations(this.client);
+        this.buildRunner(null).run(Collections.singletonList(scenario));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, List<String>>> query = ArgumentCaptor.forClass(Map.class);
+        ArgumentCaptor<String> path = ArgumentCaptor.forClass(String.class);
+        verify(this.client, atLeastOnce()).execute(eq("POST"), path.capture(), query.capture(), any(), any());
+
+        List<String> binds = new java.util.ArrayList<>();
+        for (int i = 0; i < path.getAllValues().size(); ++i) {
+            binds.add(path.getAllValues().get(i) + "?" + query.getAllValues().get(i).get("pool"));
+        }
+
+        binds.sort(null);
+        return binds;
+    }
+
+    @Test
+    public void testManifestImportSkippedWithoutManifest() throws Exception {
+        ScenarioResult result = this.runScenario(new LoadScenario()
+            .setType(LoadScenario.Type.IMPORT_MANIFEST)
+            .setIterations(1));
+
+        assertNotNull(result.getSkipped());
+        verify(this.client, never()).upload(anyString(), any(), anyString(), any());
+    }
+
+    @Test
+    public void testManifestImportUsesScratchOwner() throws Exception {
+        Path manifest = Files.createTempFile("manifest", ".zip");
+        Files.write(manifest, new byte[] { 1, 2, 3 });
+
+        when(this.client.upload(anyString(), any(), anyString(), any()))
+            .thenReturn(new ReplayClient.Result(200, "{}", 6000000));
+
+        try {
+            LoadTestResults results = this.buildRunner(manifest).run(Collections.singletonList(
+                new LoadScenario().setType(LoadScenario.Type.IMPORT_MANIFEST).setIterations(2)));
+
+            assertEquals(2, results.getScenarios().get(0).getSuccesses());
+            verify(this.client, times(2)).upload(eq("/owners/scale-import/imports"), any(),
+                eq(manifest.getFileName().toString()), eq(new byte[] { 1, 2, 3 }));
+            verify(this.client).execute(eq("POST"), eq("/owners"), any(), any(), contains("scale-import"));
+            verify(this.client, times(2)).execute(eq("DELETE"), eq("/owners/scale-import"), any(), any(),
+                any());
+        }
+        finally {
+            Files.delete(manifest);
+        }
+    }
+}
@@ -0,0 +1,761 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.loadtest;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.common.config.ConfigurationException;
+import org.candlepin.common.config.ConfigurationPrefixes;
+import org.candlepin.common.config.EncryptedConfiguration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerInstalledProduct;
+import org.candlepin.model.ConsumerType;
+import org.candlepin.model.ConsumerType.ConsumerTypeEnum;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.GuestId;
+import org.candlepin.model.HypervisorId;
+import org.candlepin.model.Owner;
+import org.candlepin.model.OwnerProduct;
+import org.candlepin.model.OwnerProductKey;
+import org.candlepin.model.Pool;
+import org.candlepin.model.Pool.PoolType;
+import org.candlepin.model.Product;
+import org.candlepin.model.SourceSubscription;
+import org.candlepin.util.Util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+
+
+
+/**
+ * Generates a large organization, with its products, pools, consumers and entitlements, directly
+ * in the database. Rows are written with JDBC batches rather than through the curators, which
+ * makes it practical to generate organizations with hundreds of thousands of consumers and
+ * millions of entitlements with which to test the scaling of queries and jobs.
+ * <p></p>
+ * The organization is shaped by an OrgShape, and is random but reproducible: every choice is drawn
+ * from a generator seeded by the shape. Marketing SKUs are the products of pools, which provide
+ * engineering products; consumers are physical systems, virtual guests or hypervisors reporting
+ * guests, with the facts and installed products of their kind, and are entitled to pools chosen
+ * with a skew towards the most popular pools. Entitlements are created without certificates and
+ * flagged dirty, so their certificates are generated on demand.
+ * <p></p>
+ * When called within an active transaction, all rows are written within that transaction.
+ * Otherwise, each batch is written in a transaction of its own, so that the transaction size does
+ * not grow with the organization.
+ */
+public class OrgGenerator {
+    private static Logger log = LoggerFactory.getLogger(OrgGenerator.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    private static final String[] ARCHES = { "x86_64", "x86_64", "x86_64", "ppc64le", "s390x", "aarch64" };
+    private static final String[] SUPPORT_LEVELS = { "Premium", "Standard", "Self-Support" };
+    private static final String[] SOCKETS = { "2", "2", "4", "8", "16" };
+
+    /**
+     * The number of rows of each table written, and the time taken by each step, of a generation.
+     */
+    public static class Summary {
+        private final String ownerKey;
+        private final String ownerId;
+        private final OrgShape shape;
+        private final Map<String, Long> rows = new LinkedHashMap<>();
+        private final Map<String, Long> timings = new LinkedHashMap<>();
+
+        public Summary(String ownerKey, String ownerId, OrgShape shape) {
+            this.ownerKey = ownerKey;
+            this.ownerId = ownerId;
+            this.shape = shape;
+        }
+
+        public String getOwnerKey() {
+            return this.ownerKey;
+        }
+
+        public String getOwnerId() {
+            return this.ownerId;
+        }
+
+        public OrgShape getShape() {
+            return this.shape;
+        }
+
+        /**
+         * @return
+         *  the number of rows written, keyed by the entity or collection they were written for
+         */
+        public Map<String, Long> getRows() {
+            return this.rows;
+        }
+
+        /**
+         * @return
+         *  the time taken by each step of the generation, in milliseconds
+         */
+        public Map<String, Long> getTimings() {
+            return this.timings;
+        }
+
+        private void addRows(String name, long count) {
+            this.rows.merge(name, count, Long::sum);
+        }
+    }
+
+    /**
+     * The state of a generation shared between its steps. Only identifiers and the counters needed
+     * by later steps are retained, so the memory required is independent of the number of
+     * entitlements.
+     */
+    private static class Generation {
+        private final OrgShape shape;
+        private final Random random;
+        private final Date now = new Date();
+        private final Summary summary;
+        private final String ownerId;
+
+        private String systemTypeId;
+        private String hypervisorTypeId;
+        private String[] skuUuids;
+        private String[] engineeringUuids;
+        private String[] engineeringIds;
+        private String[] engineeringNames;
+        private String[] poolIds;
+        private long[] poolQuantities;
+        private long[] poolConsumed;
+        private int[][] poolProvided;
+        private final LinkedList<String> unreportedGuests = new LinkedList<>();
+
+        Generation(Owner owner, OrgShape shape) {
+            this.shape = shape;
+            this.random = new Random(shape.getSeed());
+            this.ownerId = owner.getId();
+            this.summary = new Summary(owner.getKey(), owner.getId(), shape);
+        }
+
+        /**
+         * Picks an index below the given bound, favoring low indexes so that a few pools and
+         * products are far more popular than the rest, as they are in real organizations.
+         */
+        int pickSkewed(int bound) {
+            double value = this.random.nextDouble();
+            return (int) (bound * value * value);
+        }
+
+        Date daysAgo(int bound) {
+            return new Date(this.now.getTime() - this.random.nextInt(bound) * DAY_MS);
+        }
+    }
+
+    private final EntityManager entityManager;
+    private final int batchSize;
+
+    /**
+     * Creates a generator which writes through the connection of the given entity manager.
+     *
+     * @param entityManager
+     *  the entity manager to use
+     *
+     * @param batchSize
+     *  the number of products, pools or consumers written in each batch
+     */
+    public OrgGenerator(EntityManager entityManager, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be positive");
+        }
+
+        this.entityManager = entityManager;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Generates an organization of the given shape.
+     *
+     * @param ownerKey
+     *  the key of the organization to create; an organization with this key must not exist
+     *
+     * @param shape
+     *  the shape of the organization to generate
+     *
+     * @throws IllegalArgumentException
+     *  if the shape is not valid
+     *
+     * @throws IllegalStateException
+     *  if an organization with the given key already exists
+     *
+     * @return
+     *  a summary of the rows written
+     */
+    public Summary generate(String ownerKey, OrgShape shape) {
+        shape.validate();
+
+        long start = System.nanoTime();
+        Owner owner = this.inTransaction(() -> this.createOwner(ownerKey));
+        Generation gen = new Generation(owner, shape);
+
+        this.inTransaction(() -> {
+            gen.systemTypeId = this.findOrCreateType(ConsumerTypeEnum.SYSTEM);
+            gen.hypervisorTypeId = this.findOrCreateType(ConsumerTypeEnum.HYPERVISOR);
+            return null;
+        });
+
+        this.timed(gen, "products", () -> this.generateProducts(gen));
+        this.timed(gen, "pools", () -> this.generatePools(gen));
+        this.timed(gen, "consumers", () -> this.generateConsumers(gen));
+        this.timed(gen, "consumption", () -> this.updateConsumption(gen));
+
+        gen.summary.getTimings().put("total", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("Generated organization {} with {} in {}ms", ownerKey, shape,
+            gen.summary.getTimings().get("total"));
+
+        return gen.summary;
+    }
+
+    private Owner createOwner(String ownerKey) {
+        Long existing = this.entityManager
+            .createQuery("SELECT count(o) FROM Owner o WHERE o.key = :key", Long.class)
+            .setParameter("key", ownerKey)
+            .getSingleResult();
+
+        if (existing > 0) {
+            throw new IllegalStateException("organization already exists: " + ownerKey);
+        }
+
+        Owner owner = new Owner(ownerKey, ownerKey);
+        this.entityManager.persist(owner);
+        this.entityManager.flush();
+
+        return owner;
+    }
+
+    private String findOrCreateType(ConsumerTypeEnum type) {
+        List<ConsumerType> types = this.entityManager
+            .createQuery("SELECT t FROM ConsumerType t WHERE t.label = :label", ConsumerType.class)
+            .setParameter("label", type.getLabel())
+            .getResultList();
+
+        if (!types.isEmpty()) {
+            return types.get(0).getId();
+        }
+
+        ConsumerType created = new ConsumerType(type);
+        this.entityManager.persist(created);
+        this.entityManager.flush();
+
+        return created.getId();
+    }
+
+    private void generateProducts(Generation gen) {
+        OrgShape shape = gen.shape;
+        int skus = Math.max(1, shape.getProducts() * shape.getSkuPercent() / 100);
+        int engineering = shape.getProducts() - skus;
+
+        gen.skuUuids = new String[skus];
+        gen.engineeringUuids = new String[engineering];
+        gen.engineeringIds = new String[engineering];
+        gen.engineeringNames = new String[engineering];
+
+        for (int offset = 0; offset < shape.getProducts(); offset += this.batchSize) {
+            int first = offset;
+            int last = Math.min(offset + this.batchSize, shape.getProducts());
+
+            this.inTransaction(() -> {
+                try (JdbcBatch products = JdbcBatch.insert(this.entityManager, Product.class, "id", "name",
+                    "multiplier", "locked", "entityVersion", "entityHash", "created", "updated");
+                    JdbcBatch attributes = JdbcBatch.insertCollection(this.entityManager, Product.class,
+                        "attributes");
+                    JdbcBatch ownerProducts = JdbcBatch.insert(this.entityManager, OwnerProduct.class)) {
+
+                    for (int i = first; i < last; ++i) {
+                        String uuid = Util.generateDbUUID();
+                        Map<String, String> attrs = new LinkedHashMap<>();
+                        String id;
+                        String name;
+
+                        if (i < skus) {
+                            id = String.format("LT%06d", i);
+                            name = "Load Test Subscription " + i;
+                            this.addSkuAttributes(gen, attrs);
+                            gen.skuUuids[i] = uuid;
+                        }
+                        else {
+                            int index = i - skus;
+                            id = String.valueOf(100000 + index);
+                            name = "Load Test Product " + index;
+                            attrs.put("arch", ARCHES[gen.random.nextInt(ARCHES.length)]);
+                            attrs.put("version", (1 + gen.random.nextInt(9)) + "." + gen.random.nextInt(10));
+                            gen.engineeringUuids[index] = uuid;
+                            gen.engineeringIds[index] = id;
+                            gen.engineeringNames[index] = name;
+                        }
+
+                        // The version and hash are calculated by the product itself, so generated
+                        // products are matched and deduplicated like any other
+                        Product product = new Product(id, name, 1L);
+                        product.setAttributes(attrs);
+
+                        products.add(uuid, id, name, 1L, false, product.getEntityVersion(),
+                            product.getEntityHash(), gen.now, gen.now);
+                        attrs.forEach((key, value) -> attributes.add(uuid, key, value));
+                        ownerProducts.add(new OwnerProductKey(gen.ownerId, uuid));
+                    }
+
+                    products.flush();
+                    attributes.flush();
+                    ownerProducts.flush();
+
+                    gen.summary.addRows("products", products.getCount());
+                    gen.summary.addRows("product attributes", attributes.getCount());
+                    gen.summary.addRows("owner products", ownerProducts.getCount());
+                }
+
+                return null;
+            });
+        }
+    }
+
+    private void addSkuAttributes(Generation gen, Map<String, String> attrs) {
+        attrs.put("type", "MKT");
+        attrs.put("arch", ARCHES[gen.random.nextInt(ARCHES.length)]);
+        attrs.put("sockets", SOCKETS[gen.random.nextInt(SOCKETS.length)]);
+        attrs.put("support_level", SUPPORT_LEVELS[gen.random.nextInt(SUPPORT_LEVELS.length)]);
+        attrs.put("support_type", "L1-L3");
+
+        if (gen.random.nextBoolean()) {
+            attrs.put("stacking_id", "lt-stack-" + gen.random.nextInt(100));
+            attrs.put("multi-entitlement", "yes");
+        }
+    }
+
+    private void generatePools(Generation gen) {
+        int count = gen.shape.getPools();
+
+        gen.poolIds = new String[count];
+        gen.poolQuantities = new long[count];
+        gen.poolConsumed = new long[count];
+        gen.poolProvided = new int[count][];
+
+        for (int offset = 0; offset < count; offset += this.batchSize) {
+            int first = offset;
+            int last = Math.min(offset + this.batchSize, count);
+
+            this.inTransaction(() -> {
+                try (JdbcBatch pools = JdbcBatch.insert(this.entityManager, Pool.class, "type", "owner",
+                    "product", "quantity", "startDate", "endDate", "consumed", "exported", "locked",
+                    "activeSubscription", "contractNumber", "accountNumber", "orderNumber", "created",
+                    "updated");
+                    JdbcBatch subscriptions = JdbcBatch.insert(this.entityManager, SourceSubscription.class,
+                        "subscriptionId", "subscriptionSubKey", "pool", "created", "updated");
+                    JdbcBatch provided = JdbcBatch.insertCollection(this.entityManager, Pool.class,
+                        "providedProducts")) {
+
+                    for (int i = first; i < last; ++i) {
+                        String id = Util.generateDbUUID();
+                        long quantity = 10L * (1 + gen.random.nextInt(100));
+                        Date startDate = gen.daysAgo(365);
+                        Date endDate = new Date(startDate.getTime() +
+                            (1 + gen.random.nextInt(3)) * 365 * DAY_MS);
+                        String contract = String.valueOf(10000000 + i);
+
+                        gen.poolIds[i] = id;
+                        gen.poolQuantities[i] = quantity;
+                        gen.poolProvided[i] = this.pickProvidedProducts(gen);
+
+                        pools.add(id, PoolType.NORMAL, gen.ownerId, gen.skuUuids[i % gen.skuUuids.length],
+                            quantity, startDate, endDate, 0L, 0L, false, true, contract,
+                            String.valueOf(5000000 + gen.random.nextInt(1000)), "LT-ORDER-" + contract,
+                            gen.now, gen.now);
+                        subscriptions.add(Util.generateDbUUID(), Util.generateDbUUID(), "master", id, gen.now,
+                            gen.now);
+
+                        for (int product : gen.poolProvided[i]) {
+                            provided.add(id, gen.engineeringUuids[product]);
+                        }
+                    }
+
+                    pools.flush();
+                    subscriptions.flush();
+                    provided.flush();
+
+                    gen.summary.addRows("pools", pools.getCount());
+                    gen.summary.addRows("source subscriptions", subscriptions.getCount());
+                    gen.summary.addRows("provided products", provided.getCount());
+                }
+
+                return null;
+            });
+        }
+    }
+
+    private int[] pickProvidedProducts(Generation gen) {
+        int bound = gen.engineeringUuids.length;
+        Set<Integer> picked = new LinkedHashSet<>();
+
+        int count = bound == 0 ? 0 :
+            1 + gen.random.nextInt(Math.max(1, gen.shape.getProvidedProductsPerPool()));
+        for (int attempt = 0; picked.size() < Math.min(count, bound) && attempt < count * 4; ++attempt) {
+            picked.add(gen.pickSkewed(bound));
+        }
+
+        return picked.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void generateConsumers(Generation gen) {
+        int count = gen.shape.getConsumers();
+
+        for (int offset = 0; offset < count; offset += this.batchSize) {
+            int first = offset;
+            int last = Math.min(offset + this.batchSize, count);
+
+            this.inTransaction(() -> {
+                try (ConsumerBatches batches = new ConsumerBatches(this.entityManager)) {
+                    for (int i = first; i < last; ++i) {
+                        this.generateConsumer(gen, batches, i);
+                    }
+
+                    batches.flush(gen.summary);
+                }
+
+                return null;
+            });
+        }
+    }
+
+    /**
+     * The batches written for each chunk of consumers, flushed in an order which satisfies their
+     * foreign keys.
+     */
+    private static class ConsumerBatches implements AutoCloseable {
+        private final JdbcBatch consumers;
+        private final JdbcBatch facts;
+        private final JdbcBatch installed;
+        private final JdbcBatch hypervisorIds;
+        private final JdbcBatch guestIds;
+        private final JdbcBatch entitlements;
+
+        ConsumerBatches(EntityManager em) {
+            this.consumers = JdbcBatch.insert(em, Consumer.class, "uuid", "name", "username", "typeId",
+                "ownerId", "entitlementCount", "lastCheckin", "autoheal", "created", "updated");
+            this.facts = JdbcBatch.insertCollection(em, Consumer.class, "facts");
+            this.installed = JdbcBatch.insert(em, ConsumerInstalledProduct.class, "productId",
+                "productName", "consumer", "created", "updated");
+            this.hypervisorIds = JdbcBatch.insert(em, HypervisorId.class, "hypervisorId", "consumer",
+                "owner", "created", "updated");
+            this.guestIds = JdbcBatch.insert(em, GuestId.class, "guestId", "guestIdLower", "consumer",
+                "created", "updated");
+            this.entitlements = JdbcBatch.insert(em, Entitlement.class, "owner", "consumer", "pool",
+                "quantity", "dirty", "updatedOnStart", "created", "updated");
+        }
+
+        void flush(Summary summary) {
+            Map<String, JdbcBatch> ordered = new LinkedHashMap<>();
+            ordered.put("consumers", this.consumers);
+            ordered.put("consumer facts", this.facts);
+            ordered.put("installed products", this.installed);
+            ordered.put("hypervisor ids", this.hypervisorIds);
+            ordered.put("guest ids", this.guestIds);
+            ordered.put("entitlements", this.entitlements);
+
+            ordered.forEach((name, batch) -> summary.addRows(name, batch.flush()));
+        }
+
+        @Override
+        public void close() {
+            for (JdbcBatch batch : new JdbcBatch[] { this.consumers, this.facts, this.installed,
+                this.hypervisorIds, this.guestIds, this.entitlements }) {
+                batch.close();
+            }
+        }
+    }
+
+    private void generateConsumer(Generation gen, ConsumerBatches batches, int index) {
+        OrgShape shape = gen.shape;
+        String id = Util.generateDbUUID();
+        boolean hypervisor = gen.random.nextInt(100) < shape.getHypervisorPercent();
+        boolean guest = !hypervisor && gen.random.nextInt(100) < shape.getGuestPercent();
+
+        Map<String, String> facts = new HashMap<>();
+        facts.put("system.certificate_version", "3.2");
+        facts.put("uname.machine", ARCHES[gen.random.nextInt(ARCHES.length)]);
+        facts.put("cpu.cpu_socket(s)", SOCKETS[gen.random.nextInt(SOCKETS.length)]);
+        facts.put("cpu.core(s)_per_socket", String.valueOf(1 << gen.random.nextInt(4)));
+        facts.put("memory.memtotal", String.valueOf((1 << (2 + gen.random.nextInt(6))) * 1048576));
+        facts.put("distribution.name", "Red Hat Enterprise Linux Server");
+        facts.put("distribution.version", (6 + gen.random.nextInt(3)) + "." + gen.random.nextInt(10));
+        facts.put("virt.is_guest", String.valueOf(guest));
+
+        if (guest) {
+            String guestId = new UUID(gen.random.nextLong(), gen.random.nextLong()).toString();
+            facts.put("virt.uuid", guestId);
+            gen.unreportedGuests.add(guestId);
+        }
+
+        // Pick the pools first, as the consumer row carries its entitlement count
+        Set<Integer> pools = new LinkedHashSet<>();
+        int mean = shape.getEntitlementsPerConsumer();
+        int wanted = Math.min(mean == 0 ? 0 : gen.random.nextInt(2 * mean + 1), gen.poolIds.length);
+        for (int attempt = 0; pools.size() < wanted && attempt < wanted * 4; ++attempt) {
+            pools.add(gen.pickSkewed(gen.poolIds.length));
+        }
+
+        String name = String.format("lt-%s-%06d.example.com", hypervisor ? "hypervisor" : "system", index);
+        batches.consumers.add(id, Util.generateUUID(), name, "admin",
+            hypervisor ? gen.hypervisorTypeId : gen.systemTypeId, gen.ownerId, (long) pools.size(),
+            gen.daysAgo(7), true, gen.now, gen.now);
+
+        facts.forEach((key, value) -> batches.facts.add(id, key, value));
+
+        // Installed products are mostly those provided by the pools to which the consumer is entitled
+        Set<Integer> installed = new LinkedHashSet<>();
+        for (int pool : pools) {
+            int[] provided = gen.poolProvided[pool];
+            if (provided.length > 0 && installed.size() < shape.getInstalledProductsPerConsumer()) {
+                installed.add(provided[gen.random.nextInt(provided.length)]);
+            }
+        }
+
+        int bound = gen.engineeringUuids.length;
+        for (int attempt = 0; bound > 0 && installed.size() < shape.getInstalledProductsPerConsumer() &&
+            attempt < shape.getInstalledProductsPerConsumer() * 4; ++attempt) {
+            installed.add(gen.pickSkewed(bound));
+        }
+
+        for (int product : installed) {
+            batches.installed.add(Util.generateDbUUID(), gen.engineeringIds[product],
+                gen.engineeringNames[product], id, gen.now, gen.now);
+        }
+
+        if (hypervisor) {
+            batches.hypervisorIds.add(Util.generateDbUUID(), name, id, gen.ownerId, gen.now, gen.now);
+
+            for (int i = 0; i < shape.getGuestsPerHypervisor(); ++i) {
+                String guestId = !gen.unreportedGuests.isEmpty() ? gen.unreportedGuests.poll() :
+                    new UUID(gen.random.nextLong(), gen.random.nextLong()).toString();
+
+                batches.guestIds.add(Util.generateDbUUID(), guestId, guestId.toLowerCase(), id, gen.now,
+                    gen.now);
+            }
+        }
+
+        for (int pool : pools) {
+            gen.poolConsumed[pool] += 1;
+            batches.entitlements.add(Util.generateDbUUID(), gen.ownerId, id, gen.poolIds[pool], 1, true,
+                false, gen.now, gen.now);
+        }
+    }
+
+    /**
+     * Records the consumption of each pool by the generated entitlements. Pools which were
+     * oversubscribed by the random choice of entitlements grow to fit their consumption.
+     */
+    private void updateConsumption(Generation gen) {
+        for (int offset = 0; offset < gen.poolIds.length; offset += this.batchSize) {
+            int first = offset;
+            int last = Math.min(offset + this.batchSize, gen.poolIds.length);
+
+            this.inTransaction(() -> {
+                try (JdbcBatch pools = JdbcBatch.update(this.entityManager, Pool.class, "quantity",
+                    "consumed")) {
+
+                    for (int i = first; i < last; ++i) {
+                        long quantity = Math.max(gen.poolQuantities[i], gen.poolConsumed[i]);
+                        pools.add(quantity, gen.poolConsumed[i], gen.poolIds[i]);
+                    }
+
+                    gen.summary.addRows("pool updates", pools.flush());
+                }
+
+                return null;
+            });
+        }
+    }
+
+    private void timed(Generation gen, String step, Runnable work) {
+        long start = System.nanoTime();
+        work.run();
+
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        gen.summary.getTimings().put(step, elapsed);
+        log.info("Generated {} for {} in {}ms", step, gen.summary.getOwnerKey(), elapsed);
+    }
+
+    /**
+     * Runs the given work within the active transaction, or within a transaction of its own if
+     * there is no active transaction.
+     */
+    private <T> T inTransaction(Supplier<T> work) {
+        EntityTransaction transaction = this.entityManager.getTransaction();
+
+        if (transaction.isActive()) {
+            return work.get();
+        }
+
+        transaction.begin();
+        try {
+            T result = work.get();
+            transaction.commit();
+            this.entityManager.clear();
+
+            return result;
+        }
+        finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+        }
+    }
+
+    /**
+     * Creates an entity manager factory for the database configured in the given Candlepin
+     * configuration file, with caching disabled.
+     *
+     * @param configFile
+     *  the Candlepin configuration file
+     *
+     * @throws ConfigurationException
+     *  if the configuration file cannot be read
+     *
+     * @return
+     *  a new entity manager factory
+     */
+    public static EntityManagerFactory createEntityManagerFactory(File configFile)
+        throws ConfigurationException {
+
+        EncryptedConfiguration systemConfig = new EncryptedConfiguration();
+        systemConfig.setEncoding(StandardCharsets.UTF_8);
+        systemConfig.load(configFile);
+        systemConfig.use(ConfigProperties.PASSPHRASE_SECRET_FILE)
+            .toDecrypt(ConfigProperties.ENCRYPTED_PROPERTIES);
+
+        Configuration jpaConfig = systemConfig.strippedSubset(ConfigurationPrefixes.JPA_CONFIG_PREFIX);
+        Properties properties = jpaConfig.toProperties();
+        properties.setProperty("hibernate.cache.use_second_level_cache", "false");
+        properties.setProperty("hibernate.cache.use_query_cache", "false");
+        properties.setProperty("hibernate.hbm2ddl.auto", "");
+
+        return Persistence.createEntityManagerFactory("default", properties);
+    }
+
+    /**
+     * Generates an organization in the database configured for the local Candlepin server.
+     *
+     * @param args
+     *  the command line arguments
+     */
+    public static void main(String[] args) {
+        String config = ConfigProperties.DEFAULT_CONFIG_FILE;
+        String ownerKey = null;
+        OrgShape shape = OrgShape.Preset.SMALL.toShape();
+        int batchSize = DEFAULT_BATCH_SIZE;
+
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "--config":
+                        config = args[++i];
+                        break;
+                    case "--owner":
+                        ownerKey = args[++i];
+                        break;
+                    case "--shape":
+                        long seed = shape.getSeed();
+                        shape = OrgShape.Preset.valueOf(args[++i].toUpperCase()).toShape().setSeed(seed);
+                        break;
+                    case "--seed":
+                        shape.setSeed(Long.parseLong(args[++i]));
+                        break;
+                    case "--consumers":
+                        shape.setConsumers(Integer.parseInt(args[++i]));
+                        break;
+                    case "--pools":
+                        shape.setPools(Integer.parseInt(args[++i]));
+                        break;
+                    case "--products":
+                        shape.setProducts(Integer.parseInt(args[++i]));
+                        break;
+                    case "--entitlements":
+                        shape.setEntitlementsPerConsumer(Integer.parseInt(args[++i]));
+                        break;
+                    case "--batch-size":
+                        batchSize = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option: " + args[i]);
+                }
+            }
+
+            if (ownerKey == null) {
+                throw new IllegalArgumentException("an owner key is required");
+            }
+
+            shape.validate();
+        }
+        catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Invalid arguments: " + e.getMessage());
+            System.err.println("Usage: OrgGenerator --owner <key> [--shape small|medium|large] " +
+                "[--seed <n>] [--consumers <n>] [--pools <n>] [--products <n>] [--entitlements <n>] " +
+                "[--batch-size <n>] [--config <candlepin.conf>]");
+            System.exit(2);
+            return;
+        }
+
+        EntityManagerFactory factory = null;
+        try {
+            factory = createEntityManagerFactory(new File(config));
+            EntityManager entityManager = factory.createEntityManager();
+
+            Summary summary = new OrgGenerator(entityManager, batchSize).generate(ownerKey, shape);
+            entityManager.close();
+
+            System.out.println(new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValueAsString(summary));
+        }
+        catch (Exception e) {
+            System.err.println("Generation failed: " + e);
+            System.exit(1);
+        }
+        finally {
+            if (factory != null) {
+                factory.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.loadtest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.candlepin.model.Consumer;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.Owner;
+import org.candlepin.model.OwnerInfo;
+import org.candlepin.model.Pool;
+import org.candlepin.model.Product;
+import org.candlepin.test.DatabaseTestFixture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+
+
+public class OrgGeneratorTest extends DatabaseTestFixture {
+
+    private OrgShape shape;
+
+    @BeforeEach
+    public void setup() {
+        this.shape = new OrgShape()
+            .setSeed(42)
+            .setConsumers(60)
+            .setPools(12)
+            .setProducts(40)
+            .setEntitlementsPerConsumer(3)
+            .setHypervisorPercent(10)
+            .setGuestPercent(50)
+            .setGuestsPerHypervisor(4);
+    }
+
+    private OrgGenerator.Summary generate(String ownerKey, OrgShape shape) {
+        OrgGenerator generator = new OrgGenerator(this.getEntityManager(), 7);
+        OrgGenerator.Summary summary = generator.generate(ownerKey, shape);
+        this.getEntityManager().clear();
+
+        return summary;
+    }
+
+    @Test
+    public void testGeneratesOrganizationOfShape() {
+        OrgGenerator.Summary summary = this.generate("generated", this.shape);
+
+        Owner owner = this.ownerCurator.getByKey("generated");
+        assertNotNull(owner);
+        assertEquals(owner.getId(), summary.getOwnerId());
+
+        List<Product> products = this.ownerProductCurator.getProductsByOwner(owner).list();
+        assertEquals(40, products.size());
+        assertEquals(8, products.stream().filter(p -> "MKT".equals(p.getAttributeValue("type"))).count());
+
+        // Generated products carry the same version and hash the product would calculate itself
+        Product product = products.get(0);
+        assertEquals(1, this.ownerProductCurator.getProductsByEntityHashes(null,
+            Collections.singleton(product.getEntityHash())).list().size());
+
+        List<Pool> pools = this.poolCurator.listByOwner(owner).list();
+        assertEquals(12, pools.size());
+
+        List<Consumer> consumers = this.consumerCurator.listByOwner(owner).list();
+        assertEquals(60, consumers.size());
+        assertEquals(summary.getRows().get("consumers"), Long.valueOf(consumers.size()));
+
+        long entitlements = 0;
+        for (Consumer consumer : consumers) {
+            List<Entitlement> consumed = this.entitlementCurator.listByConsumer(consumer);
+            assertEquals(consumer.getEntitlementCount(), consumed.size());
+            assertNotNull(consumer.getFact("cpu.cpu_socket(s)"));
+            assertFalse(consumer.getInstalledProducts().isEmpty());
+
+            entitlements += consumed.size();
+        }
+
+        assertTrue(entitlements > 0);
+        assertEquals(summary.getRows().get("entitlements"), Long.valueOf(entitlements));
+    }
+
+    @Test
+    public void testPoolConsumptionMatchesEntitlements() {
+        this.generate("generated", this.shape);
+
+        Owner owner = this.ownerCurator.getByKey("generated");
+        for (Pool pool : this.poolCurator.listByOwner(owner)) {
+            assertEquals(Long.valueOf(pool.getEntitlements().size()), pool.getConsumed());
+            assertTrue(pool.getQuantity() >= pool.getConsumed());
+            assertNotNull(pool.getSubscriptionId());
+            assertFalse(pool.getProvidedProducts().isEmpty());
+        }
+    }
+
+    @Test
+    public void testHypervisorsReportRegisteredGuests() {
+        this.generate("generated", this.shape);
+
+        Owner owner = this.ownerCurator.getByKey("generated");
+        List<Consumer> consumers = this.consumerCurator.listByOwner(owner).list();
+        List<Consumer> hypervisors = consumers.stream()
+            .filter(consumer -> consumer.getHypervisorId() != null)
+            .collect(Collectors.toList());
+
+        assertFalse(hypervisors.isEmpty());
+
+        for (Consumer hypervisor : hypervisors) {
+            assertEquals(4, hypervisor.getGuestIds().size());
+        }
+
+        OwnerInfo info = this.ownerInfoCurator.getByOwner(owner);
+        assertEquals(Integer.valueOf(consumers.size() - hypervisors.size()),
+            info.getConsumerCounts().get("system"));
+        assertTrue(info.getConsumerGuestCounts().get(OwnerInfo.GUEST) > 0);
+    }
+
+    @Test
+    public void testSameSeedGeneratesSameShape() {
+        this.generate("first", this.shape);
+        this.generate("second", this.shape);
+
+        assertEquals(this.describePools("first"), this.describePools("second"));
+        assertEquals(this.describeConsumers("first"), this.describeConsumers("second"));
+    }
+
+    @Test
+    public void testDifferentSeedGeneratesDifferentShape() {
+        this.generate("first", this.shape);
+        this.generate("second", this.shape.setSeed(7));
+
+        assertNotEquals(this.describePools("first"), this.describePools("second"));
+    }
+
+    @Test
+    public void testRejectsExistingOwner() {
+        this.createOwner("existing");
+
+        assertThrows(IllegalStateException.class, () -> this.generate("existing", this.shape));
+    }
+
+    @Test
+    public void testRejectsInvalidShape() {
+        this.shape.setProducts(1);
+
+        assertThrows(IllegalArgumentException.class, () -> this.generate("invalid", this.shape));
+        assertNull(this.ownerCurator.getByKey("invalid"));
+    }
+
+    private List<String> describePools(String ownerKey) {
+        Owner owner = this.ownerCurator.getByKey(ownerKey);
+
+        return this.poolCurator.listByOwner(owner).list().stream()
+            .map(pool -> String.format("%s:%d:%d:%d", pool.getProductId(), pool.getQuantity(),
+                pool.getConsumed(), pool.getProvidedProducts().size()))
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    private List<String> describeConsumers(String ownerKey) {
+        Owner owner = this.ownerCurator.getByKey(ownerKey);
+
+        return this.consumerCurator.listByOwner(owner).list().stream()
+            .sorted(Comparator.comparing(Consumer::getName))
+            .map(consumer -> String.format("%s:%s:%d:%d", consumer.getName(),
+                new TreeMap<>(consumer.getFacts()), consumer.getEntitlementCount(),
+                consumer.getInstalledProducts().size()))
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.loadtest;
+
+
+
+/**
+ * Describes the size and makeup of an organization created by the OrgGenerator. Two organizations
+ * generated from shapes with the same values, including the seed, have the same products, pools,
+ * consumers and entitlements, differing only in their database identifiers and consumer UUIDs.
+ */
+public class OrgShape {
+
+    /**
+     * Named shapes; the largest matches the size of the largest organizations in production.
+     */
+    public enum Preset {
+        SMALL(1000, 200, 500, 2),
+        MEDIUM(10000, 2000, 5000, 5),
+        LARGE(100000, 20000, 50000, 20);
+
+        private final int consumers;
+        private final int pools;
+        private final int products;
+        private final int entitlementsPerConsumer;
+
+        Preset(int consumers, int pools, int products, int entitlementsPerConsumer) {
+            this.consumers = consumers;
+            this.pools = pools;
+            this.products = products;
+            this.entitlementsPerConsumer = entitlementsPerConsumer;
+        }
+
+        /**
+         * @return
+         *  a new shape with the sizes of this preset and default values for everything else
+         */
+        public OrgShape toShape() {
+            return new OrgShape()
+                .setConsumers(this.consumers)
+                .setPools(this.pools)
+                .setProducts(this.products)
+                .setEntitlementsPerConsumer(this.entitlementsPerConsumer);
+        }
+    }
+
+    private long seed = 1;
+    private int consumers;
+    private int pools;
+    private int products;
+    private int entitlementsPerConsumer;
+    private int skuPercent = 20;
+    private int providedProductsPerPool = 5;
+    private int installedProductsPerConsumer = 3;
+    private int hypervisorPercent = 2;
+    private int guestPercent = 40;
+    private int guestsPerHypervisor = 20;
+
+    public long getSeed() {
+        return this.seed;
+    }
+
+    public OrgShape setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public int getConsumers() {
+        return this.consumers;
+    }
+
+    public OrgShape setConsumers(int consumers) {
+        this.consumers = consumers;
+        return this;
+    }
+
+    public int getPools() {
+        return this.pools;
+    }
+
+    public OrgShape setPools(int pools) {
+        this.pools = pools;
+        return this;
+    }
+
+    public int getProducts() {
+        return this.products;
+    }
+
+    public OrgShape setProducts(int products) {
+        this.products = products;
+        return this;
+    }
+
+    /**
+     * @return
+     *  the mean number of entitlements of each consumer; the actual number for a consumer is
+     *  uniformly distributed between zero and twice the mean
+     */
+    public int getEntitlementsPerConsumer() {
+        return this.entitlementsPerConsumer;
+    }
+
+    public OrgShape setEntitlementsPerConsumer(int entitlementsPerConsumer) {
+        this.entitlementsPerConsumer = entitlementsPerConsumer;
+        return this;
+    }
+
+    /**
+     * @return
+     *  the percentage of products which are marketing SKUs, from which pools are created; the
+     *  remainder are engineering products, which are provided by pools and installed on consumers
+     */
+    public int getSkuPercent() {
+        return this.skuPercent;
+    }
+
+    public OrgShape setSkuPercent(int skuPercent) {
+        this.skuPercent = skuPercent;
+        return this;
+    }
+
+    public int getProvidedProductsPerPool() {
+        return this.providedProductsPerPool;
+    }
+
+    public OrgShape setProvidedProductsPerPool(int providedProductsPerPool) {
+        this.providedProductsPerPool = providedProductsPerPool;
+        return this;
+    }
+
+    public int getInstalledProductsPerConsumer() {
+        return this.installedProductsPerConsumer;
+    }
+
+    public OrgShape setInstalledProductsPerConsumer(int installedProductsPerConsumer) {
+        this.installedProductsPerConsumer = installedProductsPerConsumer;
+        return this;
+    }
+
+    public int getHypervisorPercent() {
+        return this.hypervisorPercent;
+    }
+
+    public OrgShape setHypervisorPercent(int hypervisorPercent) {
+        this.hypervisorPercent = hypervisorPercent;
+        return this;
+    }
+
+    /**
+     * @return
+     *  the percentage of consumers which are not hypervisors that are virtual guests
+     */
+    public int getGuestPercent() {
+        return this.guestPercent;
+    }
+
+    public OrgShape setGuestPercent(int guestPercent) {
+        this.guestPercent = guestPercent;
+        return this;
+    }
+
+    /**
+     * @return
+     *  the number of guests reported by each hypervisor, including guests which are not registered
+     */
+    public int getGuestsPerHypervisor() {
+        return this.guestsPerHypervisor;
+    }
+
+    public OrgShape setGuestsPerHypervisor(int guestsPerHypervisor) {
+        this.guestsPerHypervisor = guestsPerHypervisor;
+        return this;
+    }
+
+    /**
+     * Checks that the values of this shape describe an organization which can be generated.
+     *
+     * @throws IllegalArgumentException
+     *  if any of the values of this shape are out of range
+     */
+    public void validate() {
+        if (this.consumers < 0 || this.pools < 0 || this.entitlementsPerConsumer < 0 ||
+            this.providedProductsPerPool < 0 || this.installedProductsPerConsumer < 0 ||
+            this.guestsPerHypervisor < 0) {
+            throw new IllegalArgumentException("shape sizes must not be negative: " + this);
+        }
+
+        if (this.products < 2) {
+            throw new IllegalArgumentException("a shape requires at least two products: " + this);
+        }
+
+        if (this.skuPercent < 1 || this.skuPercent > 99 || this.hypervisorPercent < 0 ||
+            this.hypervisorPercent > 100 || this.guestPercent < 0 || this.guestPercent > 100) {
+            throw new IllegalArgumentException("shape percentages are out of range: " + this);
+        }
+
+        if (this.entitlementsPerConsumer > 0 && this.pools == 0) {
+            throw new IllegalArgumentException("a shape with entitlements requires pools: " + this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OrgShape [seed: %d, consumers: %d, pools: %d, products: %d, " +
+            "entitlements per consumer: %d]", this.seed, this.consumers, this.pools, this.products,
+            this.entitlementsPerConsumer);
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.hibernate.event.service.spi.EventListenerGroup;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+
+
+
+/**
+ * Runs the consumer search tests against owners served from the consumer search index
+ */
+public class ConsumerCuratorIndexedSearchTest extends ConsumerCuratorSearchTest {
+
+    private static final List<EventType<?>> EVENT_TYPES = Arrays.asList(EventType.POST_INSERT,
+        EventType.POST_UPDATE, EventType.POST_DELETE, EventType.PRE_COLLECTION_UPDATE,
+        EventType.PRE_COLLECTION_REMOVE, EventType.PRE_COLLECTION_RECREATE);
+
+    private Map<EventType<?>, List<Object>> originalListeners;
+
+    @Override
+    @BeforeEach
+    public void setUp() {
+        SessionFactoryImpl sessionFactory = (SessionFactoryImpl) this.injector
+            .getInstance(EntityManagerFactory.class);
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry()
+            .getService(EventListenerRegistry.class);
+
+        this.originalListeners = new HashMap<>();
+        for (EventType<?> type : EVENT_TYPES) {
+            List<Object> listeners = new ArrayList<>();
+            registry.getEventListenerGroup(type).listeners().forEach(listeners::add);
+            this.originalListeners.put(type, listeners);
+        }
+
+        // Owners created from here on are indexed as they are created
+        this.injector.getInstance(ConsumerSearchIndexListener.class).register(registry);
+
+        super.setUp();
+    }
+
+    @AfterEach
+    @SuppressWarnings("unchecked")
+    public void unregisterListener() {
+        SessionFactoryImpl sessionFactory = (SessionFactoryImpl) this.injector
+            .getInstance(EntityManagerFactory.class);
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry()
+            .getService(EventListenerRegistry.class);
+
+        for (EventType<?> type : EVENT_TYPES) {
+            EventListenerGroup<Object> group =
+                (EventListenerGroup<Object>) registry.getEventListenerGroup(type);
+            group.clear();
+
+            for (Object listener : this.originalListeners.get(type)) {
+                group.appendListener(listener);
+            }
+        }
+    }
+}
@@ -1008,6 +1008,130 @@ public class ConsumerCuratorTest extends DatabaseTestFixture {
         assertThrows(PropertyValidationException.class, () -> consumerCurator.create(factConsumer));
     }
 
+    private Consumer createConsumerWithFacts(Map<String, String> facts) {
+        factConsumer.setFacts(new HashMap<>(facts));
+        factConsumer = consumerCurator.create(factConsumer);
+
+        consumerCurator.flush();
+        consumerCurator.clear();
+
+        return consumerCurator.get(factConsumer.getId());
+    }
+
+    @Test
+    public void testUpdateFactsWritesOnlyChangedFacts() {
+        Map<String, String> facts = new HashMap<>();
+        facts.put("unchanged", "value");
+        facts.put("changed", "old");
+        facts.put("removed", "value");
+        facts.put("nulled", "value");
+        Consumer consumer = this.createConsumerWithFacts(facts);
+
+        Map<String, String> updated = new HashMap<>();
+        updated.put("unchanged", "value");
+        updated.put("changed", "new");
+        updated.put("nulled", null);
+        updated.put("added", "value");
+
+        Map<String, String> managed = consumer.getFacts();
+
+        assertEquals(4, consumerCurator.updateFacts(consumer, updated));
+        assertEquals("new", consumer.getFact("changed"));
+        assertFalse(consumer.hasFact("removed"));
+
+        // The managed collection must be updated in place rather than replaced
+        assertSame(managed, consumer.getFacts());
+
+        consumer.setName("renamed");
+        consumerCurator.flush();
+        consumerCurator.clear();
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("unchanged", "value");
+        expected.put("changed", "new");
+        expected.put("added", "value");
+
+        Consumer fetched = consumerCurator.get(consumer.getId());
+        assertEquals(expected, fetched.getFacts());
+        assertEquals("renamed", fetched.getName());
+    }
+
+    @Test
+    public void testUpdateFactsSkipsUnchangedFacts() {
+        Map<String, String> facts = new HashMap<>();
+        facts.put("system.count", "3");
+        Consumer consumer = this.createConsumerWithFacts(facts);
+
+        assertEquals(0, consumerCurator.updateFacts(consumer, new HashMap<>(facts)));
+    }
+
+    @Test
+    public void testUpdateFactsIncludesPendingChanges() {
+        Map<String, String> facts = new HashMap<>();
+        facts.put("fact", "value");
+        Consumer consumer = this.createConsumerWithFacts(facts);
+
+        consumer.setFact("pending", "value");
+
+        Map<String, String> updated = new HashMap<>();
+        updated.put("fact", "value");
+        updated.put("other", "value");
+        consumerCurator.updateFacts(consumer, updated);
+        consumerCurator.flush();
+        consumerCurator.clear();
+
+        assertEquals(updated, consumerCurator.get(consumer.getId()).getFacts());
+    }
+
+    @Test
+    public void testUpdateFactsBumpsConsumerUpdated() throws Exception {
+        Map<String, String> facts = new HashMap<>();
+        facts.put("fact", "value");
+        Consumer consumer = this.createConsumerWithFacts(facts);
+        Date updated = consumer.getUpdated();
+        Thread.sleep(5);
+
+        Map<String, String> changed = new HashMap<>();
+        changed.put("fact", "changed");
+        consumerCurator.updateFacts(consumer, changed);
+        assertTrue(consumer.getUpdated().after(updated));
+
+        consumerCurator.flush();
+        consumerCurator.clear();
+
+        Consumer fetched = consumerCurator.get(consumer.getId());
+        assertEquals(changed, fetched.getFacts());
+        assertTrue(fetched.getUpdated().after(updated));
+    }
+
+    @Test
+    public void testUpdateFactsDiscardsPendingChanges() {
+        Map<String, String> facts = new HashMap<>();
+        facts.put("fact", "value");
+        Consumer consumer = this.createConsumerWithFacts(facts);
+
+        consumer.setFact("pending", "value");
+
+        assertEquals(1, consumerCurator.updateFacts(consumer, new HashMap<>(facts)));
+        assertEquals(facts, consumer.getFacts());
+        consumerCurator.flush();
+        consumerCurator.clear();
+
+        assertEquals(facts, consumerCurator.get(consumer.getId()).getFacts());
+    }
+
+    @Test
+    public void testUpdateFactsValidatesFacts() {
+        Map<String, String> facts = new HashMap<>();
+        facts.put("system.count", "3");
+        Consumer consumer = this.createConsumerWithFacts(facts);
+
+        Map<String, String> updated = new HashMap<>();
+        updated.put("system.count", "zzz");
+
+        assertThrows(PropertyValidationException.class, () -> consumerCurator.updateFacts(consumer, updated));
+    }
+
     @Test
     public void testConsumerFactsVerifyBadUpdateValue() {
         Map<String, String> facts = new HashMap<>();
@@ -1431,6 +1555,83 @@ public class ConsumerCuratorTest extends DatabaseTestFixture {
     }
 
 
+    @Test
+    public void testHypervisorFingerprints() {
+        Consumer consumer = new Consumer("testConsumer", "testUser", owner, ct);
+        HypervisorId hypervisorId = new HypervisorId("Hypervisor");
+        hypervisorId.setOwner(owner);
+        hypervisorId.setReporterId("reporter");
+        consumer.setHypervisorId(hypervisorId);
+        consumer = consumerCurator.create(consumer);
+
+        List<String> hypervisorIds = Arrays.asList("HYPERVISOR", "unknown");
+        assertTrue(consumerCurator.getHypervisorFingerprints(owner, "reporter", hypervisorIds).isEmpty());
+
+        HypervisorFingerprint fingerprint = new HypervisorFingerprint("host", "guests", null);
+        consumerCurator.updateHypervisorFingerprints(owner,
+            Collections.singletonMap("Hypervisor", fingerprint), Util.tomorrow());
+
+        Map<String, HypervisorFingerprint> fingerprints = consumerCurator
+            .getHypervisorFingerprints(owner, "reporter", hypervisorIds);
+        assertEquals(1, fingerprints.size());
+        assertTrue(fingerprint.matches(fingerprints.get("hypervisor")));
+        assertEquals(consumer.getUuid(), fingerprints.get("hypervisor").getConsumerUuid());
+
+        // Fingerprints are scoped to the reporter which submitted the report
+        assertTrue(consumerCurator.getHypervisorFingerprints(owner, "other", hypervisorIds).isEmpty());
+
+        // Changes made to the consumer after the fingerprint was recorded invalidate it
+        consumerCurator.updateHypervisorFingerprints(owner,
+            Collections.singletonMap("hypervisor", fingerprint), Util.yesterday());
+        assertTrue(consumerCurator.getHypervisorFingerprints(owner, "reporter", hypervisorIds).isEmpty());
+    }
+
+    @Test
+    public void testUpdateHypervisorFingerprintsForMultipleHosts() {
+        Map<String, HypervisorFingerprint> recorded = new HashMap<>();
+
+        for (int i = 0; i < 3; ++i) {
+            Consumer consumer = new Consumer("testConsumer" + i, "testUser", owner, ct);
+            HypervisorId hypervisorId = new HypervisorId("hypervisor" + i);
+            hypervisorId.setOwner(owner);
+            hypervisorId.setReporterId("reporter");
+            consumer.setHypervisorId(hypervisorId);
+            consumerCurator.create(consumer);
+
+            recorded.put("Hypervisor" + i, new HypervisorFingerprint("host" + i, "guests" + i, null));
+        }
+
+        consumerCurator.updateHypervisorFingerprints(owner, recorded, Util.tomorrow());
+
+        Map<String, HypervisorFingerprint> fingerprints = consumerCurator.getHypervisorFingerprints(owner,
+            "reporter", Arrays.asList("hypervisor0", "hypervisor1", "hypervisor2"));
+
+        assertEquals(3, fingerprints.size());
+        for (int i = 0; i < 3; ++i) {
+            assertTrue(recorded.get("Hypervisor" + i).matches(fingerprints.get("hypervisor" + i)));
+        }
+    }
+
+    @Test
+    public void testUpdateHypervisorLastCheckin() {
+        Consumer consumer = new Consumer("testConsumer", "testUser", owner, ct);
+        HypervisorId hypervisorId = new HypervisorId("hypervisor");
+        hypervisorId.setOwner(owner);
+        consumer.setHypervisorId(hypervisorId);
+        consumer = consumerCurator.create(consumer);
+
+        Consumer other = new Consumer("otherConsumer", "testUser", owner, ct);
+        other = consumerCurator.create(other);
+
+        Date checkin = Util.tomorrow();
+        assertEquals(1, consumerCurator.updateHypervisorLastCheckin(owner,
+            Arrays.asList("HYPERVISOR", "unknown"), checkin));
+
+        consumerCurator.refresh(consumer, other);
+        assertEquals(checkin, consumer.getLastCheckin());
+        assertNotEquals(checkin, other.getLastCheckin());
+    }
+
     @Test
     public void testGetHypervisorsBulkEmpty() {
         String hypervisorid = "hypervisor";
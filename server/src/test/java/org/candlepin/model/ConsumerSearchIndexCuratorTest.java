@@ -0,0 +1,282 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.candlepin.resteasy.parameter.KeyValueParameter;
+import org.candlepin.test.DatabaseTestFixture;
+import org.candlepin.test.TestUtil;
+import org.candlepin.util.Util;
+
+import org.hibernate.event.service.spi.EventListenerGroup;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManagerFactory;
+
+
+
+/**
+ * Test suite for the ConsumerSearchIndexCurator and the ConsumerSearchIndexListener which
+ * maintains its index
+ */
+public class ConsumerSearchIndexCuratorTest extends DatabaseTestFixture {
+
+    private static final List<EventType<?>> EVENT_TYPES = Arrays.asList(EventType.POST_INSERT,
+        EventType.POST_UPDATE, EventType.POST_DELETE, EventType.PRE_COLLECTION_UPDATE,
+        EventType.PRE_COLLECTION_REMOVE, EventType.PRE_COLLECTION_RECREATE);
+
+    @Inject private ConsumerSearchIndexCurator indexCurator;
+
+    private Map<EventType<?>, List<Object>> originalListeners;
+
+    private Owner owner;
+    private ConsumerType systemType;
+    private Pool pool;
+
+    @BeforeEach
+    public void setUp() {
+        this.registerListener();
+
+        this.owner = this.createOwner();
+        this.systemType = this.createConsumerType("system", false);
+
+        Product product = TestUtil.createProduct("sku-1", "product");
+        product.setAttribute(Product.Attributes.TYPE, "MKT");
+        this.pool = this.createPool(this.owner, this.createProduct(product, this.owner), 10L, "sub-1",
+            "master", Util.yesterday(), Util.tomorrow());
+
+        this.commitAndBegin();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void registerListener() {
+        SessionFactoryImpl sessionFactory = (SessionFactoryImpl) this.injector
+            .getInstance(EntityManagerFactory.class);
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry()
+            .getService(EventListenerRegistry.class);
+
+        this.originalListeners = new HashMap<>();
+        for (EventType<?> type : EVENT_TYPES) {
+            List<Object> listeners = new ArrayList<>();
+            registry.getEventListenerGroup(type).listeners().forEach(listeners::add);
+            this.originalListeners.put(type, listeners);
+        }
+
+        this.injector.getInstance(ConsumerSearchIndexListener.class).register(registry);
+    }
+
+    @AfterEach
+    @SuppressWarnings("unchecked")
+    public void unregisterListener() {
+        SessionFactoryImpl sessionFactory = (SessionFactoryImpl) this.injector
+            .getInstance(EntityManagerFactory.class);
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry()
+            .getService(EventListenerRegistry.class);
+
+        for (EventType<?> type : EVENT_TYPES) {
+            EventListenerGroup<Object> group =
+                (EventListenerGroup<Object>) registry.getEventListenerGroup(type);
+            group.clear();
+
+            for (Object listener : this.originalListeners.get(type)) {
+                group.appendListener(listener);
+            }
+        }
+    }
+
+    private void commitAndBegin() {
+        this.commitTransaction();
+        this.getEntityManager().clear();
+        this.beginTransaction();
+    }
+
+    private Consumer createConsumer(String arch) {
+        Consumer consumer = new Consumer("test-consumer", "test-user", this.owner, this.systemType);
+        consumer.setFact("cpu.architecture", arch);
+
+        return this.consumerCurator.create(consumer);
+    }
+
+    private int countTerms(String consumerId, String term) {
+        String sql = "SELECT COUNT(*) FROM cp_consumer_search_term " +
+            "WHERE consumer_id = :consumer_id AND term = :term";
+
+        Number count = (Number) this.getEntityManager()
+            .createNativeQuery(sql)
+            .setParameter("consumer_id", consumerId)
+            .setParameter("term", term)
+            .getSingleResult();
+
+        return count.intValue();
+    }
+
+    private void unindexOwner() {
+        this.getEntityManager()
+            .createNativeQuery("DELETE FROM cp_consumer_search_term WHERE owner_id = :owner_id")
+            .setParameter("owner_id", this.owner.getId())
+            .executeUpdate();
+
+        this.getEntityManager()
+            .createNativeQuery("DELETE FROM cp_consumer_search_state WHERE owner_id = :owner_id")
+            .setParameter("owner_id", this.owner.getId())
+            .executeUpdate();
+    }
+
+    private void addTerm(Consumer consumer, String name, String value) {
+        this.getEntityManager()
+            .createNativeQuery("INSERT INTO cp_consumer_search_term (consumer_id, owner_id, term, name, " +
+                "value) VALUES (:consumer_id, :owner_id, :term, :name, :value)")
+            .setParameter("consumer_id", consumer.getId())
+            .setParameter("owner_id", consumer.getOwnerId())
+            .setParameter("term", ConsumerSearchIndexCurator.FACT)
+            .setParameter("name", name)
+            .setParameter("value", value)
+            .executeUpdate();
+    }
+
+    private List<Consumer> searchByFact(String key, String value) {
+        return this.consumerCurator.searchOwnerConsumers(this.owner, null, null, null, null,
+            Collections.singletonList(new KeyValueParameter(key + ":" + value)), null, null, null).list();
+    }
+
+    @Test
+    public void testNewOwnerIsIndexed() {
+        assertTrue(this.indexCurator.isIndexed(this.owner.getId()));
+    }
+
+    @Test
+    public void testConsumerTermsIndexedOnCommit() {
+        Consumer consumer = this.createConsumer("X86_64");
+        this.createEntitlement(this.owner, consumer, this.pool);
+
+        assertEquals(0, this.countTerms(consumer.getId(), ConsumerSearchIndexCurator.FACT));
+
+        this.commitAndBegin();
+
+        assertEquals(1, this.countTerms(consumer.getId(), ConsumerSearchIndexCurator.FACT));
+        assertEquals(1, this.countTerms(consumer.getId(), ConsumerSearchIndexCurator.SKU));
+        assertEquals(1, this.countTerms(consumer.getId(), ConsumerSearchIndexCurator.SUBSCRIPTION));
+        assertEquals(1, this.countTerms(consumer.getId(), ConsumerSearchIndexCurator.CONTRACT));
+    }
+
+    @Test
+    public void testSearchServedFromIndex() {
+        Consumer consumer = this.createConsumer("x86_64");
+        this.commitAndBegin();
+
+        // A term the consumer doesn't have as a fact can only be found through the index
+        this.addTerm(consumer, "indexed.only", "yes");
+
+        assertEquals(Collections.singletonList(consumer), this.searchByFact("indexed.only", "YES"));
+        assertEquals(Collections.singletonList(consumer), this.searchByFact("cpu.arch*", "X86?64"));
+        assertEquals(Collections.emptyList(), this.searchByFact("cpu.architecture", "ppc64"));
+    }
+
+    @Test
+    public void testSearchOfUnindexedOwnerUsesFacts() {
+        Consumer consumer = this.createConsumer("x86_64");
+        this.commitAndBegin();
+
+        this.unindexOwner();
+        this.addTerm(consumer, "indexed.only", "yes");
+
+        assertFalse(this.indexCurator.isIndexed(this.owner.getId()));
+        assertEquals(Collections.emptyList(), this.searchByFact("indexed.only", "yes"));
+        assertEquals(Collections.singletonList(consumer), this.searchByFact("cpu.architecture", "x86_64"));
+    }
+
+    @Test
+    public void testUpdatedFactsReindexed() {
+        Consumer consumer = this.createConsumer("x86_64");
+        this.commitAndBegin();
+
+        consumer = this.consumerCurator.get(consumer.getId());
+        Map<String, String> facts = new HashMap<>();
+        facts.put("cpu.architecture", "ppc64");
+        this.consumerCurator.updateFacts(consumer, facts);
+        this.commitAndBegin();
+
+        assertEquals(Collections.emptyList(), this.searchByFact("cpu.architecture", "x86_64"));
+        assertEquals(1, this.searchByFact("cpu.architecture", "ppc64").size());
+    }
+
+    @Test
+    public void testRevokedEntitlementsReindexed() {
+        Consumer consumer = this.createConsumer("x86_64");
+        Entitlement entitlement = this.createEntitlement(this.owner, consumer, this.pool);
+        this.commitAndBegin();
+
+        assertEquals(1, this.consumerCurator.countConsumers(this.owner.getKey(), null,
+            Collections.singletonList("sku-1"), null, null));
+
+        this.entitlementCurator.batchDeleteByIds(Collections.singletonList(entitlement.getId()));
+        this.commitAndBegin();
+
+        assertEquals(0, this.countTerms(consumer.getId(), ConsumerSearchIndexCurator.SKU));
+        assertEquals(0, this.consumerCurator.countConsumers(this.owner.getKey(), null,
+            Collections.singletonList("sku-1"), null, null));
+    }
+
+    @Test
+    public void testDeletedConsumerTermsRemoved() {
+        Consumer consumer = this.createConsumer("x86_64");
+        this.createEntitlement(this.owner, consumer, this.pool);
+        this.commitAndBegin();
+
+        this.consumerCurator.delete(this.consumerCurator.get(consumer.getId()));
+        this.commitAndBegin();
+
+        assertEquals(0, this.countTerms(consumer.getId(), ConsumerSearchIndexCurator.FACT));
+        assertEquals(0, this.countTerms(consumer.getId(), ConsumerSearchIndexCurator.SKU));
+    }
+
+    @Test
+    public void testRebuildOwner() {
+        Consumer consumer = this.createConsumer("x86_64");
+        this.createEntitlement(this.owner, consumer, this.pool);
+        this.commitAndBegin();
+
+        this.unindexOwner();
+        Owner indexed = this.createOwner();
+        this.commitAndBegin();
+
+        // Owners which are not indexed yet are rebuilt first
+        List<String> ownerIds = this.indexCurator.getOwnersToRebuild();
+        assertEquals(this.owner.getId(), ownerIds.get(0));
+        assertTrue(ownerIds.contains(indexed.getId()));
+
+        assertEquals(4, this.indexCurator.rebuildOwner(this.owner.getId()));
+        this.commitAndBegin();
+
+        assertTrue(this.indexCurator.isIndexed(this.owner.getId()));
+        assertEquals(1, this.countTerms(consumer.getId(), ConsumerSearchIndexCurator.FACT));
+        assertEquals(1, this.countTerms(consumer.getId(), ConsumerSearchIndexCurator.SKU));
+        assertEquals(Collections.singletonList(consumer), this.searchByFact("cpu.architecture", "x86_64"));
+    }
+}
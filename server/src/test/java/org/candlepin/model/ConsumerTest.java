@@ -30,6 +30,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
 
 import javax.inject.Inject;
@@ -386,6 +387,24 @@ public class ConsumerTest extends DatabaseTestFixture {
         assertFalse(first.factsAreEqual(second.getFacts()));
     }
 
+    @Test
+    public void setFactsUpdatesExistingFactsInPlace() {
+        Consumer consumer = new Consumer();
+        consumer.setFact("kept", "1");
+        consumer.setFact("changed", "old");
+        consumer.setFact("removed", "1");
+        Map<String, String> facts = consumer.getFacts();
+
+        Map<String, String> updated = new HashMap<>();
+        updated.put("kept", "1");
+        updated.put("changed", "new");
+        updated.put("added", "1");
+        consumer.setFacts(updated);
+
+        assertSame(facts, consumer.getFacts());
+        assertEquals(updated, consumer.getFacts());
+    }
+
     @Test
     public void factsBothNull() {
         Consumer first = new Consumer();
@@ -216,4 +216,34 @@ public class ContentTest extends DatabaseTestFixture {
         assertNotEquals(accessor.invoke(lhs), accessor.invoke(rhs));
         assertNotEquals(lhs.getEntityVersion(), rhs.getEntityVersion());
     }
+
+    @Test
+    public void testBaseEntityHash() {
+        Content lhs = new Content();
+        Content rhs = new Content();
+
+        assertEquals(lhs.getEntityHash(), rhs.getEntityHash());
+    }
+
+    @ParameterizedTest
+    @MethodSource("getValuesForEqualityAndReplication")
+    public void testEntityHash(String valueName, Object value1, Object value2) throws Exception {
+        Method[] methods = this.getAccessorAndMutator(valueName, value1.getClass());
+        Method accessor = methods[0];
+        Method mutator = methods[1];
+
+        Content lhs = new Content();
+        Content rhs = new Content();
+
+        mutator.invoke(lhs, value1);
+        mutator.invoke(rhs, value1);
+
+        assertEquals(accessor.invoke(lhs), accessor.invoke(rhs));
+        assertEquals(lhs.getEntityHash(), rhs.getEntityHash());
+
+        mutator.invoke(rhs, value2);
+
+        assertNotEquals(accessor.invoke(lhs), accessor.invoke(rhs));
+        assertNotEquals(lhs.getEntityHash(), rhs.getEntityHash());
+    }
 }
@@ -27,6 +27,7 @@ import org.candlepin.pinsetter.core.PinsetterKernel;
 import org.candlepin.pinsetter.core.model.JobStatus;
 import org.candlepin.pinsetter.core.model.JobStatus.JobState;
 import org.candlepin.pinsetter.tasks.HealEntireOrgJob;
+import org.candlepin.pinsetter.tasks.HypervisorUpdateJob;
 import org.candlepin.pinsetter.tasks.RefreshPoolsJob;
 import org.candlepin.test.DatabaseTestFixture;
 import org.candlepin.test.TestUtil;
@@ -38,9 +39,12 @@ import org.quartz.Job;
 import org.quartz.JobDataMap;
 import org.quartz.JobExecutionContext;
 
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import javax.inject.Inject;
 
@@ -50,59 +54,6 @@ import javax.inject.Inject;
 public class JobCuratorTest extends DatabaseTestFixture {
     @Inject private JobCurator curator;
 
-    /**
-     *All the job status objects which have executed successfully and
-     *are clear for deletion should be swept away from the db.
-     */
-    @Test
-    public void completedAndSelectedByDateCriteriaShouldBeDeleted() {
-        newJobStatus().startTime(new Date())
-            .finishTime(Util.tomorrow()).create();
-        this.curator.cleanUpOldCompletedJobs(Util.addDaysToDt(2));
-        assertEquals(0, this.curator.listAll().list().size());
-    }
-
-    /**
-     * Jobs which have not completed execution should stay in db
-     */
-    @Test
-    public void notCompletedButSelectedByDateCriteriaShouldNotBeDeleted() {
-        newJobStatus().finishTime(Util.yesterday()).create();
-        this.curator.cleanUpOldCompletedJobs(Util.tomorrow());
-        assertEquals(1, this.curator.listAll().list().size());
-    }
-
-    /**
-     * Jobs which are completed but don't pass the selection criteria
-     * should stay in the db.
-     */
-    @Test
-    public void completedButNotSelectedByDateCriteriaShouldNotBeDeleted() {
-        newJobStatus().startTime(Util.yesterday()).finishTime(new Date())
-            .create();
-        this.curator.cleanUpOldCompletedJobs(Util.yesterday());
-        assertEquals(1, this.curator.listAll().list().size());
-    }
-
-    /**
-     * Jobs which neither completed nor pass selection criteria
-     * should stay in db.
-     */
-    @Test
-    public void notCompletedAndNotSelectedByDateCriteriaShouldNotBeDeleted() {
-        newJobStatus().startTime(Util.yesterday()).create();
-        this.curator.cleanUpOldCompletedJobs(Util.tomorrow());
-        assertEquals(1, this.curator.listAll().list().size());
-    }
-
-    @Test
-    public void failedJobs() {
-        newJobStatus().startTime(Util.yesterday()).finishTime(null)
-            .result("wrong pool").state(JobState.FAILED).create();
-        this.curator.cleanupAllOldJobs(new Date());
-        assertEquals(0, this.curator.listAll().list().size());
-    }
-
     @Test
     public void deleteJobNoStatusReturn() {
         newJobStatus().result("Taylor Swift").state(JobState.CANCELED).create();
@@ -279,6 +230,168 @@ public class JobCuratorTest extends DatabaseTestFixture {
         assertEquals(JobStatus.JobState.CANCELED, status5.getState());
     }
 
+    @Test
+    public void cancelJobsSkipsTerminalJobs() {
+        List<String> activeIds = new LinkedList<>();
+        for (int i = 0; i < 5; ++i) {
+            JobStatus status = newJobStatus().state(JobStatus.JobState.WAITING).id("job-" + i).create();
+            if (i % 2 == 0) {
+                activeIds.add(status.getId());
+            }
+        }
+
+        newJobStatus().state(JobStatus.JobState.FINISHED).id("job-finished").create();
+
+        assertEquals(2, curator.cancelJobs(Arrays.asList("job-1", "job-3", "job-finished")));
+        assertEquals(0, curator.cancelOrphanedJobs(activeIds, 0L));
+        curator.clear();
+
+        assertEquals(JobStatus.JobState.WAITING, curator.get("job-0").getState());
+        assertEquals(JobStatus.JobState.CANCELED, curator.get("job-1").getState());
+        assertEquals(JobStatus.JobState.FINISHED, curator.get("job-finished").getState());
+    }
+
+    @Test
+    public void getPurgeableJobs() {
+        newJobStatus().state(JobState.FINISHED).id("finished").create();
+        newJobStatus().state(JobState.CANCELED).id("canceled").create();
+        newJobStatus().state(JobState.FAILED).id("failed").create();
+        newJobStatus().state(JobState.RUNNING).id("running").create();
+
+        List<Object[]> rows = this.curator.getPurgeableJobs(Util.tomorrow(), null, true, 10);
+        Set<String> ids = new HashSet<>();
+        for (Object[] row : rows) {
+            ids.add((String) row[0]);
+            assertNotNull(row[1]);
+        }
+
+        assertEquals(new HashSet<>(Arrays.asList("finished", "canceled")), ids);
+        assertEquals(4, this.curator.getPurgeableJobs(Util.tomorrow(), null, false, 10).size());
+        assertEquals(2, this.curator.getPurgeableJobs(Util.tomorrow(), null, false, 2).size());
+        assertEquals(0, this.curator.getPurgeableJobs(Util.yesterday(), null, false, 10).size());
+        assertEquals(0, this.curator.getPurgeableJobs(Util.tomorrow(), Util.tomorrow(), false, 10).size());
+    }
+
+    @Test
+    public void deleteJobs() {
+        newJobStatus().state(JobState.FINISHED).id("job-1").create();
+        newJobStatus().state(JobState.FINISHED).id("job-2").create();
+        newJobStatus().state(JobState.FINISHED).id("job-3").create();
+
+        assertEquals(2, this.curator.deleteJobs(Arrays.asList("job-1", "job-3", "job-4")));
+        assertEquals(1, this.curator.listAll().list().size());
+        assertNotNull(this.curator.get("job-2"));
+    }
+
+    @Test
+    public void hypervisorLocksBlockOnlyOverlappingNewerJobs() {
+        long offset = System.currentTimeMillis() - 5000;
+
+        JobStatus first = newJobStatus(new Date(offset + 1000)).state(JobState.RUNNING)
+            .jobClass(HypervisorUpdateJob.class).owner("my_owner").id("first").create();
+        JobStatus disjoint = newJobStatus(new Date(offset + 2000)).state(JobState.WAITING)
+            .jobClass(HypervisorUpdateJob.class).owner("my_owner").id("disjoint").create();
+        JobStatus overlapping = newJobStatus(new Date(offset + 3000)).state(JobState.WAITING)
+            .jobClass(HypervisorUpdateJob.class).owner("my_owner").id("overlapping").create();
+        JobStatus otherOwner = newJobStatus(new Date(offset + 4000)).state(JobState.WAITING)
+            .jobClass(HypervisorUpdateJob.class).owner("other_owner").id("other_owner").create();
+
+        assertEquals(2, this.curator.lockHypervisors("first", Arrays.asList("host-1", "host-2")));
+        this.curator.lockHypervisors("disjoint", Arrays.asList("host-3", "host-4"));
+        this.curator.lockHypervisors("overlapping", Arrays.asList("host-2", "host-5"));
+        this.curator.lockHypervisors("other_owner", Arrays.asList("host-1"));
+
+        assertFalse(this.curator.hasConflictingHypervisorLocks(first));
+        assertFalse(this.curator.hasConflictingHypervisorLocks(disjoint));
+        assertTrue(this.curator.hasConflictingHypervisorLocks(overlapping));
+        assertFalse(this.curator.hasConflictingHypervisorLocks(otherOwner));
+
+        assertEquals(2, this.curator.releaseHypervisors("first"));
+        assertFalse(this.curator.hasConflictingHypervisorLocks(overlapping));
+    }
+
+    @Test
+    public void finishedJobsDoNotBlockHypervisorLocks() {
+        long offset = System.currentTimeMillis() - 5000;
+
+        newJobStatus(new Date(offset + 1000)).state(JobState.FINISHED)
+            .jobClass(HypervisorUpdateJob.class).owner("my_owner").id("finished").create();
+        JobStatus waiting = newJobStatus(new Date(offset + 2000)).state(JobState.WAITING)
+            .jobClass(HypervisorUpdateJob.class).owner("my_owner").id("waiting").create();
+
+        this.curator.lockHypervisors("finished", Arrays.asList("host-1"));
+        this.curator.lockHypervisors("waiting", Arrays.asList("host-1"));
+
+        assertFalse(this.curator.hasConflictingHypervisorLocks(waiting));
+    }
+
+    @Test
+    public void purgePausedIsStored() {
+        assertFalse(this.curator.isPurgePaused());
+
+        this.curator.setPurgePaused(true);
+        assertTrue(this.curator.isPurgePaused());
+
+        this.curator.setPurgePaused(false);
+        assertFalse(this.curator.isPurgePaused());
+    }
+
+    @Test
+    public void purgeCursorsAreStoredSeparately() {
+        Date cursor = Util.yesterday();
+
+        assertNull(this.curator.getPurgeCursor(true));
+        assertNull(this.curator.getPurgeCursor(false));
+
+        this.curator.setPurgeCursor(true, cursor);
+        assertEquals(cursor, this.curator.getPurgeCursor(true));
+        assertNull(this.curator.getPurgeCursor(false));
+
+        this.curator.setPurgeCursor(true, null);
+        assertNull(this.curator.getPurgeCursor(true));
+    }
+
+    @Test
+    public void deleteJobsReleasesHypervisorLocks() {
+        newJobStatus().state(JobState.FINISHED).jobClass(HypervisorUpdateJob.class).id("job-1").create();
+        this.curator.lockHypervisors("job-1", Arrays.asList("host-1", "host-2"));
+
+        assertEquals(1, this.curator.deleteJobs(Arrays.asList("job-1")));
+        assertEquals(0, this.curator.releaseHypervisors("job-1"));
+    }
+
+    @Test
+    public void getQueueStatistics() {
+        long offset = System.currentTimeMillis() - 5000;
+
+        newJobStatus(new Date(offset + 1000)).state(JobState.RUNNING)
+            .jobClass(HypervisorUpdateJob.class).owner("owner_a").create();
+        Date oldest = new Date(offset + 2000);
+        newJobStatus(oldest).state(JobState.WAITING)
+            .jobClass(HypervisorUpdateJob.class).owner("owner_a").create();
+        newJobStatus(new Date(offset + 3000)).state(JobState.CREATED)
+            .jobClass(HypervisorUpdateJob.class).owner("owner_a").create();
+        newJobStatus(new Date(offset + 4000)).state(JobState.RUNNING)
+            .jobClass(HypervisorUpdateJob.class).owner("owner_b").create();
+        newJobStatus(new Date(offset + 4000)).state(JobState.FINISHED)
+            .jobClass(HypervisorUpdateJob.class).owner("owner_c").create();
+        newJobStatus(new Date(offset + 4000)).state(JobState.WAITING)
+            .jobClass(RefreshPoolsJob.class).owner("owner_d").create();
+
+        List<Object[]> rows = this.curator.getQueueStatistics(HypervisorUpdateJob.class);
+        assertEquals(2, rows.size());
+
+        assertEquals("owner_a", rows.get(0)[0]);
+        assertEquals(2L, ((Number) rows.get(0)[1]).longValue());
+        assertEquals(1L, ((Number) rows.get(0)[2]).longValue());
+        assertEquals(oldest.getTime(), ((Date) rows.get(0)[3]).getTime());
+
+        assertEquals("owner_b", rows.get(1)[0]);
+        assertEquals(0L, ((Number) rows.get(1)[1]).longValue());
+        assertEquals(1L, ((Number) rows.get(1)[2]).longValue());
+        assertNull(rows.get(1)[3]);
+    }
+
     @Test
     public void findByPrincipalNameRestrictsUserToAccessableOrgs() {
         JobStatus job = newJobStatus().principalName("donald").owner("ducks").create();
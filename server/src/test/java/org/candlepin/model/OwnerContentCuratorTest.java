@@ -735,4 +735,122 @@ public class OwnerContentCuratorTest extends DatabaseTestFixture {
             Collections.<String, Integer>emptyMap()).list();
         assertEquals(0, contentList4.size());
     }
+
+    @Test
+    public void testGetContentByEntityHashes() {
+        Owner owner1 = this.createOwner();
+        Owner owner2 = this.createOwner();
+        Owner owner3 = this.createOwner();
+
+        Content content1 = this.createContent("p1", "p1", owner1);
+        Content content2 = this.createContent("p1", "p1", owner2);
+        Content content3 = this.createContent("p1", "p1", owner3);
+        Content content4 = this.createContent("p2", "p2", owner2);
+
+        assertEquals(content1.getEntityHash(), content2.getEntityHash());
+        assertNotEquals(content1.getEntityHash(), content4.getEntityHash());
+
+        List<Content> contentList1 = this.ownerContentCurator.getContentByEntityHashes(owner1,
+            Collections.singleton(content1.getEntityHash())).list();
+
+        List<Content> contentList2 = this.ownerContentCurator.getContentByEntityHashes(null,
+            Arrays.asList(content1.getEntityHash(), content4.getEntityHash())).list();
+
+        List<String> uuidList1 = new LinkedList<>();
+        for (Content content : contentList1) {
+            uuidList1.add(content.getUuid());
+        }
+
+        List<String> uuidList2 = new LinkedList<>();
+        for (Content content : contentList2) {
+            uuidList2.add(content.getUuid());
+        }
+
+        assertEquals(2, uuidList1.size());
+        assertTrue(uuidList1.containsAll(Arrays.asList(content2.getUuid(), content3.getUuid())));
+
+        assertEquals(4, uuidList2.size());
+        assertTrue(uuidList2.containsAll(
+            Arrays.asList(content1.getUuid(), content2.getUuid(), content3.getUuid(), content4.getUuid())));
+    }
+
+    @Test
+    public void testGetContentByEntityHashesNoHashes() {
+        Owner owner1 = this.createOwner();
+        this.createContent("p1", "p1", owner1);
+
+        assertEquals(0, this.ownerContentCurator.getContentByEntityHashes(owner1, null).list().size());
+        assertEquals(0, this.ownerContentCurator.getContentByEntityHashes(null, Collections.<Long>emptyList())
+            .list().size());
+    }
+
+    private long countRows(String table, String column, String value) {
+        String sql = "SELECT count(*) FROM " + table + " WHERE " + column + " = :value";
+
+        return ((Number) this.getEntityManager()
+            .createNativeQuery(sql)
+            .setParameter("value", value)
+            .getSingleResult()).longValue();
+    }
+
+    @Test
+    public void testGetOrphanedContentUuids() {
+        Owner owner = this.createOwner();
+        Content content1 = this.createContent(owner);
+        Content content2 = this.createContent();
+        Content content3 = this.createContent();
+
+        List<String> uuids = this.ownerContentCurator.getOrphanedContentUuids(null, Integer.MAX_VALUE);
+        assertFalse(uuids.contains(content1.getUuid()));
+        assertTrue(uuids.contains(content2.getUuid()));
+        assertTrue(uuids.contains(content3.getUuid()));
+
+        List<String> sorted = new LinkedList<>(uuids);
+        Collections.sort(sorted);
+        assertEquals(sorted, uuids);
+
+        List<String> block = this.ownerContentCurator.getOrphanedContentUuids(null, 1);
+        assertEquals(1, block.size());
+        assertEquals(uuids.get(0), block.get(0));
+
+        List<String> next = this.ownerContentCurator.getOrphanedContentUuids(block.get(0), 1);
+        assertEquals(1, next.size());
+        assertEquals(uuids.get(1), next.get(0));
+    }
+
+    @Test
+    public void testDeleteOrphanedContent() {
+        Owner owner = this.createOwner();
+        Content orphan = this.createContent();
+        Content owned = this.createContent(owner);
+
+        Product product = TestUtil.createProduct();
+        product.addContent(orphan, true);
+        product.addContent(owned, true);
+        this.createProduct(product, owner);
+
+        Map<String, Integer> counts = this.ownerContentCurator
+            .deleteOrphanedContent(Arrays.asList(orphan.getUuid(), owned.getUuid()));
+
+        assertEquals(Integer.valueOf(1), counts.get(Content.DB_TABLE));
+        assertEquals(Integer.valueOf(1), counts.get(ProductContent.DB_TABLE));
+
+        this.contentCurator.clear();
+        assertEquals(0, this.countRows(Content.DB_TABLE, "uuid", orphan.getUuid()));
+        assertEquals(0, this.countRows(ProductContent.DB_TABLE, "content_uuid", orphan.getUuid()));
+        assertEquals(1, this.countRows(Content.DB_TABLE, "uuid", owned.getUuid()));
+        assertEquals(1, this.countRows(ProductContent.DB_TABLE, "content_uuid", owned.getUuid()));
+    }
+
+    @Test
+    public void testDeleteOrphanedContentSkipsClaimedContent() {
+        Owner owner = this.createOwner();
+        Content content = this.createContent(owner);
+
+        Map<String, Integer> counts = this.ownerContentCurator
+            .deleteOrphanedContent(Arrays.asList(content.getUuid()));
+
+        assertTrue(counts.isEmpty());
+        assertEquals(1, this.countRows(Content.DB_TABLE, "uuid", content.getUuid()));
+    }
 }
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.candlepin.test.DatabaseTestFixture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.inject.Inject;
+
+
+
+/**
+ * OwnerEnvContentAccessCuratorTest
+ */
+public class OwnerEnvContentAccessCuratorTest extends DatabaseTestFixture {
+    @Inject private OwnerEnvContentAccessCurator oecaCurator;
+
+    private Owner owner;
+    private Environment environment;
+    private OwnerEnvContentAccess ownerAccess;
+    private OwnerEnvContentAccess envAccess;
+
+    @BeforeEach
+    public void setUp() {
+        owner = this.createOwner("test-owner");
+        environment = this.createEnvironment(owner, "env1");
+
+        ownerAccess = oecaCurator.create(new OwnerEnvContentAccess(owner, null, "owner-json"));
+        envAccess = oecaCurator.create(new OwnerEnvContentAccess(owner, environment, "env-json"));
+    }
+
+    private OwnerEnvContentAccess reload(OwnerEnvContentAccess oeca) {
+        this.getEntityManager().clear();
+        return oecaCurator.get(oeca.getId());
+    }
+
+    @Test
+    public void markStaleForOwner() {
+        Owner other = this.createOwner("other-owner");
+        OwnerEnvContentAccess otherAccess = oecaCurator.create(
+            new OwnerEnvContentAccess(other, null, "other-json"));
+
+        assertEquals(2, oecaCurator.markStaleForOwner(owner.getId()));
+
+        assertTrue(this.reload(ownerAccess).isStale());
+        assertTrue(this.reload(envAccess).isStale());
+        assertFalse(this.reload(otherAccess).isStale());
+        assertEquals("owner-json", this.reload(ownerAccess).getContentJson());
+    }
+
+    @Test
+    public void markStaleForEnvironment() {
+        assertEquals(1, oecaCurator.markStaleForEnvironment(environment));
+
+        assertFalse(this.reload(ownerAccess).isStale());
+        assertTrue(this.reload(envAccess).isStale());
+    }
+
+    @Test
+    public void listStaleContentAccessLeavesFlagSet() {
+        Date updated = this.reload(envAccess).getUpdated();
+        oecaCurator.markStaleForEnvironment(environment);
+
+        List<OwnerEnvContentAccess> stale = oecaCurator.listStaleContentAccess(owner.getId());
+        assertEquals(1, stale.size());
+        assertEquals(envAccess.getId(), stale.get(0).getId());
+
+        OwnerEnvContentAccess reloaded = this.reload(envAccess);
+        assertTrue(reloaded.isStale());
+        assertEquals(updated, reloaded.getUpdated());
+        assertEquals(1, oecaCurator.listStaleContentAccess(owner.getId()).size());
+    }
+
+    @Test
+    public void markStaleBumpsStaleVersion() {
+        oecaCurator.markStaleForOwner(owner.getId());
+        oecaCurator.markStaleForEnvironment(environment);
+
+        assertEquals(1, this.reload(ownerAccess).getStaleVersion());
+        assertEquals(2, this.reload(envAccess).getStaleVersion());
+    }
+
+    @Test
+    public void updateContentJsonClearsStaleAndBumpsUpdated() throws Exception {
+        oecaCurator.markStaleForOwner(owner.getId());
+        OwnerEnvContentAccess stale = this.reload(ownerAccess);
+        Date updated = stale.getUpdated();
+        Thread.sleep(5);
+
+        assertTrue(oecaCurator.updateContentJson(ownerAccess.getId(), "new-json", stale.getStaleVersion()));
+        assertFalse(oecaCurator.updateContentJson("missing", "new-json", 0));
+
+        OwnerEnvContentAccess reloaded = this.reload(ownerAccess);
+        assertEquals("new-json", reloaded.getContentJson());
+        assertFalse(reloaded.isStale());
+        assertTrue(reloaded.getUpdated().after(updated));
+        assertTrue(oecaCurator.listStaleContentAccess(owner.getId()).stream()
+            .noneMatch(oeca -> oeca.getId().equals(ownerAccess.getId())));
+    }
+
+    @Test
+    public void updateContentJsonLeavesPayloadFlaggedDuringRegenerationStale() {
+        oecaCurator.markStaleForEnvironment(environment);
+        int staleVersion = this.reload(envAccess).getStaleVersion();
+
+        // Flagged again while the payload was being regenerated
+        oecaCurator.markStaleForEnvironment(environment);
+
+        assertFalse(oecaCurator.updateContentJson(envAccess.getId(), "new-json", staleVersion));
+
+        OwnerEnvContentAccess reloaded = this.reload(envAccess);
+        assertEquals("env-json", reloaded.getContentJson());
+        assertTrue(reloaded.isStale());
+    }
+}
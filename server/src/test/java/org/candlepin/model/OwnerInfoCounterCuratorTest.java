@@ -0,0 +1,372 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.candlepin.auth.Principal;
+import org.candlepin.auth.UserPrincipal;
+import org.candlepin.auth.permissions.Permission;
+import org.candlepin.auth.permissions.UsernameConsumersPermission;
+import org.candlepin.test.DatabaseTestFixture;
+import org.candlepin.test.TestUtil;
+import org.candlepin.util.Util;
+
+import org.hibernate.event.service.spi.EventListenerGroup;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManagerFactory;
+
+
+
+/**
+ * Test suite for the OwnerInfoCounterCurator and the OwnerInfoCounterListener which maintains its
+ * counters
+ */
+public class OwnerInfoCounterCuratorTest extends DatabaseTestFixture {
+
+    private static final List<EventType<?>> EVENT_TYPES = Arrays.asList(EventType.POST_INSERT,
+        EventType.POST_UPDATE, EventType.POST_DELETE, EventType.PRE_COLLECTION_UPDATE,
+        EventType.PRE_COLLECTION_REMOVE, EventType.PRE_COLLECTION_RECREATE);
+
+    @Inject private OwnerInfoCounterCurator counterCurator;
+
+    private Map<EventType<?>, List<Object>> originalListeners;
+
+    private Owner owner;
+    private ConsumerType systemType;
+    private ConsumerType hypervisorType;
+    private Pool physicalPool;
+    private Pool virtPool;
+
+    @BeforeEach
+    public void setUp() {
+        this.registerListener();
+
+        this.owner = this.createOwner();
+        this.systemType = this.createConsumerType("system", false);
+        this.hypervisorType = this.createConsumerType("hypervisor", false);
+
+        Product physical = TestUtil.createProduct("physical", "physical");
+        physical.setAttribute(Pool.Attributes.PRODUCT_FAMILY, "server");
+        this.physicalPool = this.createPool(this.owner, this.createProduct(physical, this.owner), 100L,
+            Util.yesterday(), Util.tomorrow());
+
+        Product virt = TestUtil.createProduct("virt", "virt");
+        virt.setAttribute(Pool.Attributes.PRODUCT_FAMILY, "server");
+        virt.setAttribute(Pool.Attributes.VIRT_ONLY, "true");
+        this.virtPool = this.createPool(this.owner, this.createProduct(virt, this.owner), 100L,
+            Util.yesterday(), Util.tomorrow());
+
+        this.ownerInfoCurator.reconcile(this.owner);
+        this.commitAndBegin();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void registerListener() {
+        SessionFactoryImpl sessionFactory = (SessionFactoryImpl) this.injector
+            .getInstance(EntityManagerFactory.class);
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry()
+            .getService(EventListenerRegistry.class);
+
+        this.originalListeners = new HashMap<>();
+        for (EventType<?> type : EVENT_TYPES) {
+            List<Object> listeners = new ArrayList<>();
+            registry.getEventListenerGroup(type).listeners().forEach(listeners::add);
+            this.originalListeners.put(type, listeners);
+        }
+
+        this.injector.getInstance(OwnerInfoCounterListener.class).register(registry);
+    }
+
+    @AfterEach
+    @SuppressWarnings("unchecked")
+    public void unregisterListener() {
+        SessionFactoryImpl sessionFactory = (SessionFactoryImpl) this.injector
+            .getInstance(EntityManagerFactory.class);
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry()
+            .getService(EventListenerRegistry.class);
+
+        for (EventType<?> type : EVENT_TYPES) {
+            EventListenerGroup<Object> group =
+                (EventListenerGroup<Object>) registry.getEventListenerGroup(type);
+            group.clear();
+
+            for (Object listener : this.originalListeners.get(type)) {
+                group.appendListener(listener);
+            }
+        }
+    }
+
+    private void commitAndBegin() {
+        this.commitTransaction();
+        this.getEntityManager().clear();
+        this.beginTransaction();
+    }
+
+    private Consumer createConsumer(ConsumerType type, boolean guest) {
+        Consumer consumer = new Consumer("test-consumer", "test-user", this.owner, type);
+        consumer.setFact("virt.is_guest", String.valueOf(guest));
+        consumer.setEntitlementStatus("valid");
+
+        return this.consumerCurator.create(consumer);
+    }
+
+    private Entitlement bind(Consumer consumer, Pool pool, int quantity) {
+        Entitlement entitlement = this.createEntitlement(this.owner, consumer, pool);
+        entitlement.setQuantity(quantity);
+
+        return this.entitlementCurator.merge(entitlement);
+    }
+
+    private OwnerInfo getCounters() {
+        return this.counterCurator.getByOwner(this.owner.getId(), new Date(0));
+    }
+
+    private void assertCountersMatchInfo() {
+        OwnerInfo counters = this.getCounters();
+        OwnerInfo expected = this.ownerInfoCurator.getByOwner(this.owner);
+
+        assertNotNull(counters);
+        assertEquals(expected.getConsumerCounts(), counters.getConsumerCounts());
+        assertEquals(expected.getEntitlementsConsumedByType(), counters.getEntitlementsConsumedByType());
+        assertEquals(expected.getConsumerTypeCountByPool(), counters.getConsumerTypeCountByPool());
+        assertEquals(expected.getEnabledConsumerTypeCountByPool(),
+            counters.getEnabledConsumerTypeCountByPool());
+        assertEquals(expected.getConsumerCountsByComplianceStatus(),
+            counters.getConsumerCountsByComplianceStatus());
+        assertEquals(expected.getConsumerGuestCounts(), counters.getConsumerGuestCounts());
+        assertEquals(expected.getEntitlementsConsumedByFamily(), counters.getEntitlementsConsumedByFamily());
+    }
+
+    @Test
+    public void testReconcileStoresInfo() {
+        this.assertCountersMatchInfo();
+        assertEquals(Collections.singletonList(this.owner.getId()),
+            this.counterCurator.getOwnersToReconcile(new Date(System.currentTimeMillis() + 60000)));
+        assertEquals(0, this.counterCurator.getOwnersToReconcile(new Date(0)).size());
+    }
+
+    @Test
+    public void testCountersFollowConsumerChanges() {
+        Consumer guest = this.createConsumer(this.systemType, true);
+        this.createConsumer(this.systemType, false);
+        Consumer hypervisor = this.createConsumer(this.hypervisorType, false);
+        this.commitAndBegin();
+
+        this.assertCountersMatchInfo();
+        assertEquals(Integer.valueOf(2), this.getCounters().getConsumerCounts().get("system"));
+        assertEquals(Integer.valueOf(1), this.getCounters().getConsumerGuestCounts().get(OwnerInfo.GUEST));
+
+        guest = this.consumerCurator.get(guest.getId());
+        guest.setEntitlementStatus("invalid");
+        this.consumerCurator.merge(guest);
+
+        this.consumerCurator.delete(this.consumerCurator.get(hypervisor.getId()));
+        this.commitAndBegin();
+
+        this.assertCountersMatchInfo();
+        assertEquals(Integer.valueOf(1), this.getCounters().getConsumerCountByStatus("invalid"));
+        assertEquals(Integer.valueOf(0), this.getCounters().getConsumerCounts().get("hypervisor"));
+    }
+
+    @Test
+    public void testCountersFollowGuestFactChanges() {
+        Consumer consumer = this.createConsumer(this.systemType, false);
+        this.commitAndBegin();
+
+        consumer = this.consumerCurator.get(consumer.getId());
+        Map<String, String> facts = new HashMap<>(consumer.getFacts());
+        facts.put("virt.is_guest", "true");
+        this.consumerCurator.updateFacts(consumer, facts);
+        this.commitAndBegin();
+
+        this.assertCountersMatchInfo();
+        assertEquals(Integer.valueOf(1), this.getCounters().getConsumerGuestCounts().get(OwnerInfo.GUEST));
+
+        consumer = this.consumerCurator.get(consumer.getId());
+        consumer.setFact("virt.is_guest", "false");
+        this.consumerCurator.merge(consumer);
+        this.commitAndBegin();
+
+        this.assertCountersMatchInfo();
+        assertEquals(Integer.valueOf(0), this.getCounters().getConsumerGuestCounts().get(OwnerInfo.GUEST));
+    }
+
+    @Test
+    public void testCountersFollowEntitlementChanges() {
+        Consumer consumer = this.createConsumer(this.systemType, false);
+        Consumer guest = this.createConsumer(this.systemType, true);
+        this.commitAndBegin();
+
+        consumer = this.consumerCurator.get(consumer.getId());
+        guest = this.consumerCurator.get(guest.getId());
+
+        Entitlement physical = this.bind(consumer, this.physicalPool, 5);
+        this.bind(guest, this.virtPool, 3);
+        this.commitAndBegin();
+
+        this.assertCountersMatchInfo();
+        assertEquals(Integer.valueOf(8), this.getCounters().getEntitlementsConsumedByType().get("system"));
+        assertEquals(new OwnerInfo.ConsumptionTypeCounts(5, 3),
+            this.getCounters().getEntitlementsConsumedByFamily().get("server"));
+
+        physical = this.entitlementCurator.get(physical.getId());
+        physical.setQuantity(2);
+        this.entitlementCurator.merge(physical);
+        this.commitAndBegin();
+
+        this.assertCountersMatchInfo();
+
+        this.entitlementCurator.delete(this.entitlementCurator.get(physical.getId()));
+        this.commitAndBegin();
+
+        this.assertCountersMatchInfo();
+        assertEquals(Integer.valueOf(3), this.getCounters().getEntitlementsConsumedByType().get("system"));
+    }
+
+    @Test
+    public void testRollbackDiscardsChanges() {
+        this.createConsumer(this.systemType, false);
+        this.rollbackTransaction();
+        this.getEntityManager().clear();
+        this.beginTransaction();
+
+        this.assertCountersMatchInfo();
+        assertEquals(Integer.valueOf(0), this.getCounters().getConsumerCounts().get("system"));
+    }
+
+    @Test
+    public void testPoolChangesMarkCountersStale() {
+        this.createPool(this.owner, this.createProduct(this.owner));
+        this.commitAndBegin();
+
+        assertNull(this.getCounters());
+        assertEquals(Collections.singletonList(this.owner.getId()),
+            this.counterCurator.getOwnersToReconcile(new Date(0)));
+
+        // Serving the info recomputes the counters
+        this.ownerInfoCurator.getByOwner(this.owner, false);
+        this.commitAndBegin();
+
+        this.assertCountersMatchInfo();
+    }
+
+    @Test
+    public void testUnknownCounterMarksCountersStale() {
+        ConsumerType type = this.createConsumerType("person", false);
+        this.createConsumer(type, false);
+        this.commitAndBegin();
+
+        assertNull(this.getCounters());
+    }
+
+    private long countPendingAdjustments() {
+        return ((Number) this.getEntityManager()
+            .createNativeQuery("SELECT COUNT(*) FROM cp_owner_info_delta WHERE owner_id = :owner_id")
+            .setParameter("owner_id", this.owner.getId())
+            .getSingleResult()).longValue();
+    }
+
+    @Test
+    public void testAdjustmentsRecordedUntilCompacted() {
+        Consumer consumer = this.createConsumer(this.systemType, false);
+        this.bind(consumer, this.physicalPool, 3);
+        this.commitAndBegin();
+
+        assertTrue(this.countPendingAdjustments() > 0);
+        assertEquals(Arrays.asList(this.owner.getId()), this.counterCurator.getOwnersToCompact());
+        this.assertCountersMatchInfo();
+
+        assertTrue(this.counterCurator.compact(this.owner.getId()) > 0);
+        this.commitAndBegin();
+
+        assertEquals(0, this.countPendingAdjustments());
+        assertEquals(0, this.counterCurator.getOwnersToCompact().size());
+        this.assertCountersMatchInfo();
+    }
+
+    @Test
+    public void testReconcileDiscardsPendingAdjustments() {
+        this.createConsumer(this.systemType, false);
+        this.commitAndBegin();
+
+        this.ownerInfoCurator.reconcile(this.owner);
+        this.commitAndBegin();
+
+        assertEquals(0, this.countPendingAdjustments());
+        this.assertCountersMatchInfo();
+    }
+
+    @Test
+    public void testCompactingUnknownCounterMarksCountersStale() {
+        ConsumerType type = this.createConsumerType("person", false);
+        this.createConsumer(type, false);
+        this.commitAndBegin();
+
+        this.counterCurator.compact(this.owner.getId());
+        this.commitAndBegin();
+
+        assertEquals(0, this.countPendingAdjustments());
+        assertEquals(Arrays.asList(this.owner.getId()),
+            this.counterCurator.getOwnersToReconcile(new Date(0)));
+    }
+
+    @Test
+    public void testInfoServedFromCountersUnlessFresh() {
+        this.getEntityManager().createNativeQuery("UPDATE cp_owner_info_count SET total = 42 " +
+            "WHERE category = 'consumers' AND name = 'system'").executeUpdate();
+        this.commitAndBegin();
+
+        OwnerInfo info = this.ownerInfoCurator.getByOwner(this.owner, false);
+        assertEquals(Integer.valueOf(42), info.getConsumerCounts().get("system"));
+
+        info = this.ownerInfoCurator.getByOwner(this.owner, true);
+        assertEquals(Integer.valueOf(0), info.getConsumerCounts().get("system"));
+
+        this.commitAndBegin();
+        this.assertCountersMatchInfo();
+    }
+
+    @Test
+    public void testRestrictedPrincipalGetsComputedInfo() {
+        this.createConsumer(this.systemType, false);
+        this.commitAndBegin();
+
+        Permission permission = new UsernameConsumersPermission(new User("someone", "password"), this.owner);
+        Principal principal = new UserPrincipal("someone", Arrays.asList(permission), false);
+        this.setupPrincipal(principal);
+
+        OwnerInfo info = this.ownerInfoCurator.getByOwner(this.owner, false);
+        assertEquals(Integer.valueOf(0), info.getConsumerCounts().get("system"));
+
+        // The counters still reflect every consumer of the owner
+        assertEquals(Integer.valueOf(1), this.getCounters().getConsumerCounts().get("system"));
+    }
+}
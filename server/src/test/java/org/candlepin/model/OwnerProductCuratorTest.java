@@ -742,4 +742,127 @@ public class OwnerProductCuratorTest extends DatabaseTestFixture {
             Collections.<String, Integer>emptyMap()).list();
         assertEquals(0, productList4.size());
     }
+
+    @Test
+    public void testGetProductsByEntityHashes() {
+        Owner owner1 = this.createOwner();
+        Owner owner2 = this.createOwner();
+        Owner owner3 = this.createOwner();
+
+        Product product1 = this.createProduct("p1", "p1", owner1);
+        Product product2 = this.createProduct("p1", "p1", owner2);
+        Product product3 = this.createProduct("p1", "p1", owner3);
+        Product product4 = this.createProduct("p2", "p2", owner2);
+
+        assertEquals(product1.getEntityHash(), product2.getEntityHash());
+        assertNotEquals(product1.getEntityHash(), product4.getEntityHash());
+
+        List<Product> productList1 = this.ownerProductCurator.getProductsByEntityHashes(owner1,
+            Collections.singleton(product1.getEntityHash())).list();
+
+        List<Product> productList2 = this.ownerProductCurator.getProductsByEntityHashes(null,
+            Arrays.asList(product1.getEntityHash(), product4.getEntityHash())).list();
+
+        List<String> uuidList1 = new LinkedList<>();
+        for (Product product : productList1) {
+            uuidList1.add(product.getUuid());
+        }
+
+        List<String> uuidList2 = new LinkedList<>();
+        for (Product product : productList2) {
+            uuidList2.add(product.getUuid());
+        }
+
+        assertEquals(2, uuidList1.size());
+        assertTrue(uuidList1.containsAll(Arrays.asList(product2.getUuid(), product3.getUuid())));
+
+        assertEquals(4, uuidList2.size());
+        assertTrue(uuidList2.containsAll(
+            Arrays.asList(product1.getUuid(), product2.getUuid(), product3.getUuid(), product4.getUuid())));
+    }
+
+    @Test
+    public void testGetProductsByEntityHashesNoHashes() {
+        Owner owner1 = this.createOwner();
+        this.createProduct("p1", "p1", owner1);
+
+        assertEquals(0, this.ownerProductCurator.getProductsByEntityHashes(owner1, null).list().size());
+        assertEquals(0, this.ownerProductCurator.getProductsByEntityHashes(null, Collections.emptySet())
+            .list().size());
+    }
+
+    private long countRows(String table, String column, String value) {
+        String sql = "SELECT count(*) FROM " + table + " WHERE " + column + " = :value";
+
+        return ((Number) this.getEntityManager()
+            .createNativeQuery(sql)
+            .setParameter("value", value)
+            .getSingleResult()).longValue();
+    }
+
+    @Test
+    public void testGetOrphanedProductUuids() {
+        Owner owner = this.createOwner();
+        Product product1 = this.createProduct(owner);
+        Product product2 = this.createProduct();
+        Product product3 = this.createProduct();
+
+        List<String> uuids = this.ownerProductCurator.getOrphanedProductUuids(null, Integer.MAX_VALUE);
+        assertFalse(uuids.contains(product1.getUuid()));
+        assertTrue(uuids.contains(product2.getUuid()));
+        assertTrue(uuids.contains(product3.getUuid()));
+
+        List<String> sorted = new LinkedList<>(uuids);
+        Collections.sort(sorted);
+        assertEquals(sorted, uuids);
+
+        List<String> block = this.ownerProductCurator.getOrphanedProductUuids(null, 1);
+        assertEquals(1, block.size());
+        assertEquals(uuids.get(0), block.get(0));
+
+        List<String> next = this.ownerProductCurator.getOrphanedProductUuids(block.get(0), 1);
+        assertEquals(1, next.size());
+        assertEquals(uuids.get(1), next.get(0));
+    }
+
+    @Test
+    public void testDeleteOrphanedProducts() {
+        Owner owner = this.createOwner();
+        Content content = this.createContent(owner);
+
+        Product orphan = TestUtil.createProduct();
+        orphan.setAttribute("attrib", "value");
+        orphan.addContent(content, true);
+        orphan = this.createProduct(orphan);
+
+        Product owned = TestUtil.createProduct();
+        owned.setAttribute("attrib", "value");
+        owned = this.createProduct(owned, owner);
+
+        Map<String, Integer> counts = this.ownerProductCurator
+            .deleteOrphanedProducts(Arrays.asList(orphan.getUuid(), owned.getUuid()));
+
+        assertEquals(Integer.valueOf(1), counts.get(Product.DB_TABLE));
+        assertEquals(Integer.valueOf(1), counts.get(ProductContent.DB_TABLE));
+        assertEquals(Integer.valueOf(1), counts.get("cp2_product_attributes"));
+
+        this.productCurator.clear();
+        assertEquals(0, this.countRows(Product.DB_TABLE, "uuid", orphan.getUuid()));
+        assertEquals(0, this.countRows("cp2_product_attributes", "product_uuid", orphan.getUuid()));
+        assertEquals(1, this.countRows(Product.DB_TABLE, "uuid", owned.getUuid()));
+        assertEquals(1, this.countRows("cp2_product_attributes", "product_uuid", owned.getUuid()));
+        assertEquals(1, this.countRows(Content.DB_TABLE, "uuid", content.getUuid()));
+    }
+
+    @Test
+    public void testDeleteOrphanedProductsSkipsClaimedProducts() {
+        Owner owner = this.createOwner();
+        Product product = this.createProduct(owner);
+
+        Map<String, Integer> counts = this.ownerProductCurator
+            .deleteOrphanedProducts(Arrays.asList(product.getUuid()));
+
+        assertTrue(counts.isEmpty());
+        assertEquals(1, this.countRows(Product.DB_TABLE, "uuid", product.getUuid()));
+    }
 }
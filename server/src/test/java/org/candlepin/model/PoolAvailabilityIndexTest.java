@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.test.TestUtil;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+
+
+
+/**
+ * Test suite for the PoolAvailabilityIndex class
+ */
+public class PoolAvailabilityIndexTest {
+
+    private static final Date START = TestUtil.createDate(2010, 1, 1);
+    private static final Date END = TestUtil.createDate(2020, 1, 1);
+
+    private PoolAvailabilityIndex index;
+    private PoolAvailabilityIndex.Version version;
+    private PoolAvailabilityIndex.Snapshot snapshot;
+
+    @BeforeEach
+    public void setUp() {
+        Configuration config = mock(Configuration.class);
+        when(config.getBoolean(ConfigProperties.POOL_AVAILABILITY_INDEX_ENABLED)).thenReturn(true);
+        when(config.getInt(ConfigProperties.POOL_AVAILABILITY_INDEX_MAX_OWNERS)).thenReturn(2);
+
+        this.index = new PoolAvailabilityIndex(config);
+        this.version = new PoolAvailabilityIndex.Version(5, END);
+
+        this.snapshot = new PoolAvailabilityIndex.Builder(this.version)
+            .addPool("plain", START, END, "prod-a")
+            .addPool("provider", START, END, "prod-b")
+            .addPool("future", END, TestUtil.createDate(2030, 1, 1), "prod-a")
+            .addPool("virt", START, END, "prod-c")
+            .addPool("host", START, END, "prod-c")
+            .addProvidedProduct("provider", "prov-1")
+            .addSubscription("plain", "sub-1")
+            .addProductAttribute("virt", Product.Attributes.VIRT_ONLY, "True")
+            .addProductAttribute("host", Product.Attributes.VIRT_ONLY, "true")
+            .addPoolAttribute("host", Pool.Attributes.VIRT_ONLY, "false")
+            .addPoolAttribute("host", Pool.Attributes.REQUIRES_HOST, "Host-UUID")
+            .build();
+    }
+
+    private PoolAvailabilityIndex.Query query() {
+        return new PoolAvailabilityIndex.Query();
+    }
+
+    @Test
+    public void testSelectAll() {
+        assertEquals(5, this.snapshot.size());
+        assertEquals(Arrays.asList("plain", "provider", "future", "virt", "host"),
+            this.snapshot.select(query()));
+    }
+
+    @Test
+    public void testSelectByProductOrProvidedProduct() {
+        assertEquals(Arrays.asList("plain", "future"),
+            this.snapshot.select(query().setProductIds(Collections.singleton("prod-a"))));
+        assertEquals(Arrays.asList("provider"),
+            this.snapshot.select(query().setProductIds(Arrays.asList("prov-1", "unknown"))));
+        assertEquals(Collections.emptyList(),
+            this.snapshot.select(query().setProductIds(Collections.singleton("unknown"))));
+    }
+
+    @Test
+    public void testSelectBySubscriptionAndPoolId() {
+        assertEquals(Arrays.asList("plain"), this.snapshot.select(query().setSubscriptionId("sub-1")));
+        assertEquals(Collections.emptyList(), this.snapshot.select(query().setSubscriptionId("sub-2")));
+        assertEquals(Arrays.asList("virt"),
+            this.snapshot.select(query().setPoolIds(Arrays.asList("virt", "missing"))));
+    }
+
+    @Test
+    public void testSelectByDates() {
+        Date now = TestUtil.createDate(2015, 1, 1);
+
+        assertEquals(4, this.snapshot.select(query().setActiveOn(now, false, false)).size());
+        assertEquals(5, this.snapshot.select(query().setActiveOn(now, true, false)).size());
+        assertEquals(Arrays.asList("future"), this.snapshot.select(query().setActiveOn(now, false, true)));
+        assertEquals(Arrays.asList("future"), this.snapshot.select(query().setAfter(now)));
+
+        // Date ranges are inclusive
+        assertEquals(5, this.snapshot.select(query().setActiveOn(END, false, false)).size());
+    }
+
+    @Test
+    public void testPoolVirtOnlyAttributeOverridesProduct() {
+        assertEquals(Arrays.asList("plain", "provider", "future", "host"),
+            this.snapshot.select(query().excludeVirtOnly()));
+    }
+
+    @Test
+    public void testRequiresHost() {
+        assertEquals(4, this.snapshot.select(query().excludeRequiresHost()).size());
+        assertEquals(5, this.snapshot.select(query().requireHost("host-uuid")).size());
+        assertEquals(4, this.snapshot.select(query().requireHost("other-uuid")).size());
+        assertEquals(4, this.snapshot.select(query().requireHost(null)).size());
+    }
+
+    @Test
+    public void testToBuilderReplacesExcludedPools() {
+        PoolAvailabilityIndex.Version updated = new PoolAvailabilityIndex.Version(5,
+            TestUtil.createDate(2021, 1, 1));
+
+        PoolAvailabilityIndex.Snapshot rebuilt = this.snapshot
+            .toBuilder(updated, new HashSet<>(Arrays.asList("plain", "virt")))
+            .addPool("plain", START, END, "prod-d")
+            .addPool("virt", START, END, "prod-c")
+            .build();
+
+        assertSame(updated, rebuilt.getVersion());
+        assertEquals(5, rebuilt.size());
+
+        // Unchanged pools keep their data
+        assertEquals(Arrays.asList("provider"),
+            rebuilt.select(query().setProductIds(Collections.singleton("prov-1"))));
+        assertEquals(Arrays.asList("future"),
+            rebuilt.select(query().setProductIds(Collections.singleton("prod-a"))));
+        assertEquals(4, rebuilt.select(query().requireHost("other-uuid")).size());
+
+        // Replaced pools only have their new data
+        assertEquals(Arrays.asList("plain"),
+            rebuilt.select(query().setProductIds(Collections.singleton("prod-d"))));
+        assertEquals(Collections.emptyList(), rebuilt.select(query().setSubscriptionId("sub-1")));
+        assertEquals(Arrays.asList("provider", "future", "host", "plain", "virt"),
+            rebuilt.select(query().excludeVirtOnly()));
+    }
+
+    @Test
+    public void testSnapshotsAreVersioned() {
+        this.index.put("owner", this.snapshot);
+
+        assertSame(this.snapshot, this.index.get("owner", new PoolAvailabilityIndex.Version(5, END)));
+        assertNull(this.index.get("owner", new PoolAvailabilityIndex.Version(6, END)));
+        assertNull(this.index.get("owner", new PoolAvailabilityIndex.Version(5, START)));
+
+        this.index.invalidate("owner");
+        assertNull(this.index.get("owner", this.version));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedOwnersAreEvicted() {
+        this.index.put("owner-1", this.snapshot);
+        this.index.put("owner-2", this.snapshot);
+        this.index.get("owner-1", this.version);
+        this.index.put("owner-3", this.snapshot);
+
+        assertNotNull(this.index.get("owner-1", this.version));
+        assertNull(this.index.get("owner-2", this.version));
+        assertNotNull(this.index.get("owner-3", this.version));
+    }
+}
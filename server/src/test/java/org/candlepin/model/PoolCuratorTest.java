@@ -32,6 +32,11 @@ import org.candlepin.test.TestUtil;
 import org.candlepin.util.Util;
 
 import org.hamcrest.Matchers;
+import org.hibernate.event.service.spi.EventListenerGroup;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.FlushEntityEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
@@ -54,6 +59,7 @@ import java.util.Set;
 import java.util.stream.Stream;
 
 import javax.inject.Inject;
+import javax.persistence.EntityManagerFactory;
 
 
 
@@ -176,6 +182,120 @@ public class PoolCuratorTest extends DatabaseTestFixture {
         assertEquals(1, results.size());
     }
 
+    @Test
+    public void testListAvailableEntitlementPoolIdsIsSorted() {
+        Owner owner = this.createOwner();
+        Product product = this.createProduct(owner);
+        Consumer consumer = this.createMockConsumer(owner, false);
+
+        List<Pool> pools = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            Pool pool = createPool(owner, product, 100L,
+                TestUtil.createDate(2000, 3, 2), TestUtil.createDate(2010 - i, 3, 2));
+            pools.add(poolCurator.create(pool));
+        }
+
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setSortBy("endDate");
+        pageRequest.setOrder(PageRequest.Order.ASCENDING);
+
+        List<String> poolIds = poolCurator.listAvailableEntitlementPoolIds(consumer, owner.getId(), null,
+            null, TestUtil.createDate(2005, 3, 2), new PoolFilterBuilder(), pageRequest, false, false, null);
+
+        List<String> expected = new ArrayList<>();
+        for (int i = pools.size() - 1; i >= 0; --i) {
+            expected.add(pools.get(i).getId());
+        }
+
+        assertEquals(expected, poolIds);
+    }
+
+    @Test
+    public void availablePoolsReflectProvidedProductChanges() throws Exception {
+        SessionFactoryImpl sessionFactory = (SessionFactoryImpl) this.injector
+            .getInstance(EntityManagerFactory.class);
+        EventListenerGroup<FlushEntityEventListener> listeners = sessionFactory.getServiceRegistry()
+            .getService(EventListenerRegistry.class)
+            .getEventListenerGroup(EventType.FLUSH_ENTITY);
+
+        List<FlushEntityEventListener> originalListeners = new ArrayList<>();
+        listeners.listeners().forEach(originalListeners::add);
+
+        this.injector.getInstance(PoolAvailabilityListener.class)
+            .register(sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class));
+
+        try {
+            Date activeDate = TestUtil.createDate(2000, 3, 2);
+            Pool pool = createPool(owner, product, 100L, activeDate, TestUtil.createDate(2005, 3, 2));
+            poolCurator.create(pool);
+
+            Collection<String> productIds = Collections.singleton(providedProduct.getId());
+            List<Pool> results = poolCurator.listAvailableEntitlementPools(null, owner, productIds,
+                activeDate);
+            assertEquals(0, results.size());
+
+            // Ensure the change is not made within the same millisecond as the pool creation
+            Thread.sleep(5);
+            pool.addProvidedProduct(providedProduct);
+            poolCurator.merge(pool);
+
+            results = poolCurator.listAvailableEntitlementPools(null, owner, productIds, activeDate);
+            assertEquals(1, results.size());
+            assertEquals(pool.getId(), results.get(0).getId());
+
+            poolCurator.delete(pool);
+
+            results = poolCurator.listAvailableEntitlementPools(null, owner, productIds, activeDate);
+            assertEquals(0, results.size());
+        }
+        finally {
+            listeners.clear();
+            originalListeners.forEach(listeners::appendListener);
+        }
+    }
+
+    @Test
+    public void availablePoolsReflectPoolUpdates() throws Exception {
+        Date activeDate = TestUtil.createDate(2000, 3, 2);
+        Pool pool = createPool(owner, product, 100L, activeDate, TestUtil.createDate(2005, 3, 2));
+        Pool other = createPool(owner, product, 100L, activeDate, TestUtil.createDate(2005, 3, 2));
+        poolCurator.create(pool);
+        poolCurator.create(other);
+
+        Date lookupDate = TestUtil.createDate(2004, 3, 2);
+        List<Pool> results = poolCurator.listAvailableEntitlementPools(null, owner, (String) null,
+            lookupDate);
+        assertEquals(2, results.size());
+
+        Thread.sleep(5);
+        pool.setEndDate(TestUtil.createDate(2003, 3, 2));
+        poolCurator.merge(pool);
+
+        results = poolCurator.listAvailableEntitlementPools(null, owner, (String) null, lookupDate);
+        assertEquals(1, results.size());
+        assertEquals(other.getId(), results.get(0).getId());
+    }
+
+    @Test
+    public void availablePoolsReflectProductReferenceUpdates() throws Exception {
+        Date activeDate = TestUtil.createDate(2000, 3, 2);
+        Pool pool = createPool(owner, product, 100L, activeDate, TestUtil.createDate(2005, 3, 2));
+        poolCurator.create(pool);
+
+        Product replacement = this.createProduct();
+        Collection<String> productIds = Collections.singleton(replacement.getId());
+        List<Pool> results = poolCurator.listAvailableEntitlementPools(null, owner, productIds, activeDate);
+        assertEquals(0, results.size());
+
+        Thread.sleep(5);
+        this.ownerProductCurator.updateOwnerProductReferences(owner,
+            Collections.singletonMap(product.getUuid(), replacement.getUuid()));
+
+        results = poolCurator.listAvailableEntitlementPools(null, owner, productIds, activeDate);
+        assertEquals(1, results.size());
+        assertEquals(pool.getId(), results.get(0).getId());
+    }
+
     @Test
     public void availablePoolsCanBeFilteredByProductPoolAttribute() throws Exception {
         Date activeDate = TestUtil.createDate(2000, 3, 2);
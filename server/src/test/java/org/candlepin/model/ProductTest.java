@@ -201,6 +201,36 @@ public class ProductTest {
         assertNotEquals(lhs.getEntityVersion(), rhs.getEntityVersion());
     }
 
+    @Test
+    public void testBaseEntityHash() {
+        Product lhs = new Product();
+        Product rhs = new Product();
+
+        assertEquals(lhs.getEntityHash(), rhs.getEntityHash());
+    }
+
+    @ParameterizedTest
+    @MethodSource("getValuesForEqualityAndReplication")
+    public void testEntityHash(String valueName, Object value1, Object value2) throws Exception {
+        Method[] methods = this.getAccessorAndMutator(valueName, value1.getClass());
+        Method accessor = methods[0];
+        Method mutator = methods[1];
+
+        Product lhs = new Product();
+        Product rhs = new Product();
+
+        mutator.invoke(lhs, value1);
+        mutator.invoke(rhs, value1);
+
+        assertEquals(accessor.invoke(lhs), accessor.invoke(rhs));
+        assertEquals(lhs.getEntityHash(), rhs.getEntityHash());
+
+        mutator.invoke(rhs, value2);
+
+        assertNotEquals(accessor.invoke(lhs), accessor.invoke(rhs));
+        assertNotEquals(lhs.getEntityHash(), rhs.getEntityHash());
+    }
+
     @ParameterizedTest
     @MethodSource("getValuesForEqualityAndReplication")
     public void testClone(String valueName, Object value1, Object value2) throws Exception {
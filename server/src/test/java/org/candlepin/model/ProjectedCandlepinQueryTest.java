@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.candlepin.test.DatabaseTestFixture;
+
+import org.hibernate.Session;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.Projections;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+
+
+public class ProjectedCandlepinQueryTest extends DatabaseTestFixture {
+
+    /**
+     * Projects owners to their keys, recording the size of each batch it is asked to build
+     */
+    private static class OwnerKeyProjection implements ResultProjection<String> {
+        private final List<Integer> batches = new LinkedList<>();
+
+        @Override
+        public Projection getProjection() {
+            return Projections.projectionList()
+                .add(Projections.property("key"))
+                .add(Projections.property("displayName"));
+        }
+
+        @Override
+        public List<String> build(Session session, List<Object[]> rows) {
+            this.batches.add(rows.size());
+
+            return rows.stream()
+                .map(row -> row[0] + ":" + row[1])
+                .collect(Collectors.toList());
+        }
+    }
+
+    private Session session;
+    private OwnerKeyProjection projection;
+
+    @BeforeEach
+    public void setup() {
+        this.session = (Session) this.getEntityManager().getDelegate();
+        this.projection = new OwnerKeyProjection();
+
+        for (int i = 1; i <= 5; ++i) {
+            this.createOwner("owner-" + i, "Owner " + i);
+        }
+    }
+
+    private CandlepinQuery<String> buildQuery(int batchSize) {
+        CandlepinQuery<Owner> base = this.ownerCurator.listAll()
+            .addOrder(Order.asc("key"));
+
+        return new ProjectedCandlepinQuery<>(this.session, base, this.projection, batchSize);
+    }
+
+    @Test
+    public void testListBuildsRowsInBatches() {
+        List<String> result = this.buildQuery(2).list();
+
+        assertEquals(Arrays.asList("owner-1:Owner 1", "owner-2:Owner 2", "owner-3:Owner 3",
+            "owner-4:Owner 4", "owner-5:Owner 5"), result);
+        assertEquals(Arrays.asList(2, 2, 1), this.projection.batches);
+    }
+
+    @Test
+    public void testPagingIsAppliedToBaseQuery() {
+        CandlepinQuery<String> query = this.buildQuery(10)
+            .setFirstResult(1)
+            .setMaxResults(2);
+
+        assertEquals(Arrays.asList("owner-2:Owner 2", "owner-3:Owner 3"), query.list());
+        assertEquals(Arrays.asList(2), this.projection.batches);
+    }
+
+    @Test
+    public void testRowCountIsReadFromBaseQuery() {
+        assertEquals(5, this.buildQuery(2).getRowCount());
+        assertTrue(this.projection.batches.isEmpty());
+    }
+
+    @Test
+    public void testForEachStopsEarly() {
+        List<String> processed = new LinkedList<>();
+
+        int count = this.buildQuery(2).forEach(key -> {
+            processed.add(key);
+            return processed.size() < 3;
+        });
+
+        assertEquals(3, count);
+        assertEquals(3, processed.size());
+        assertEquals(Arrays.asList(2, 2), this.projection.batches);
+    }
+
+    @Test
+    public void testIteratorExhaustion() {
+        try (ResultIterator<String> iterator = this.buildQuery(3).iterate()) {
+            for (int i = 0; i < 5; ++i) {
+                assertTrue(iterator.hasNext());
+                assertNotNull(iterator.next());
+            }
+
+            assertFalse(iterator.hasNext());
+            assertThrows(NoSuchElementException.class, iterator::next);
+        }
+    }
+
+    @Test
+    public void testIterateRejectsNonZeroColumn() {
+        assertThrows(IllegalArgumentException.class, () -> this.buildQuery(2).iterate(1));
+    }
+
+    @Test
+    public void testConstructorRejectsInvalidBatchSize() {
+        CandlepinQuery<Owner> base = this.ownerCurator.listAll();
+
+        assertThrows(IllegalArgumentException.class,
+            () -> new ProjectedCandlepinQuery<>(this.session, base, this.projection, 0));
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.tasks;
+
+import static org.mockito.Mockito.*;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.ConsumerSearchIndexCurator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.quartz.JobExecutionContext;
+
+import java.util.Arrays;
+
+
+
+/**
+ * ConsumerSearchIndexJobTest
+ */
+public class ConsumerSearchIndexJobTest extends BaseJobTest {
+
+    @Mock private ConsumerSearchIndexCurator indexCurator;
+    @Mock private JobExecutionContext ctx;
+
+    private ConsumerSearchIndexJob job;
+
+    @Before
+    public void setUp() {
+        super.init();
+        MockitoAnnotations.initMocks(this);
+
+        this.job = new ConsumerSearchIndexJob(this.indexCurator);
+        this.injector.injectMembers(this.job);
+    }
+
+    @Test
+    public void testOwnersRebuiltIndividually() throws Exception {
+        when(this.indexCurator.getOwnersToRebuild()).thenReturn(Arrays.asList("id1", "id2", "id3"));
+        when(this.indexCurator.rebuildOwner("id2")).thenThrow(new IllegalStateException("lock timeout"));
+
+        this.job.execute(this.ctx);
+
+        // A failure to rebuild one owner does not prevent the others from being rebuilt
+        verify(this.indexCurator).rebuildOwner("id1");
+        verify(this.indexCurator).rebuildOwner("id2");
+        verify(this.indexCurator).rebuildOwner("id3");
+        verify(this.ctx).setResult("Rebuilt consumer search index for 2 of 3 owners");
+    }
+
+    @Test
+    public void testNothingRebuiltWhenDisabled() throws Exception {
+        this.injector.getInstance(Configuration.class)
+            .setProperty(ConfigProperties.CONSUMER_SEARCH_INDEX_ENABLED, "false");
+
+        this.job.execute(this.ctx);
+
+        verifyZeroInteractions(this.indexCurator);
+    }
+}
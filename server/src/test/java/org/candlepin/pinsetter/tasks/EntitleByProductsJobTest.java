@@ -29,6 +29,7 @@ import org.junit.Test;
 import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
 
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutput;
@@ -109,8 +110,13 @@ public class EntitleByProductsJobTest extends BaseJobTest {
     }
 
     private void serialize(Object obj) throws IOException {
-        ObjectOutput out = new ObjectOutputStream(new FileOutputStream("obj.ser"));
-        out.writeObject(obj);
-        out.close();
+        File file = File.createTempFile("obj", ".ser");
+
+        try (ObjectOutput out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(obj);
+        }
+        finally {
+            file.delete();
+        }
     }
 }
@@ -17,6 +17,7 @@ package org.candlepin.pinsetter.tasks;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import org.candlepin.bind.BulkBindResult;
 import org.candlepin.common.exceptions.ForbiddenException;
 import org.candlepin.controller.Entitler;
 import org.candlepin.model.CandlepinQuery;
@@ -32,7 +33,6 @@ import org.candlepin.pinsetter.core.model.JobStatus;
 import org.candlepin.policy.EntitlementRefusedException;
 import org.candlepin.policy.ValidationResult;
 
-import org.hibernate.mapping.Map;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -50,9 +50,11 @@ import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * EntitlerJobTest
@@ -133,6 +135,48 @@ public class EntitlerJobTest extends BaseJobTest {
         assertEquals(100, result.get(0).getQuantity().intValue());
     }
 
+    @Test
+    public void bulkBindByPoolExec() throws JobExecutionException {
+        String pool = "pool10";
+
+        Map<String, PoolIdAndQuantity[]> requests = new HashMap<>();
+        requests.put(consumerUuid, new PoolIdAndQuantity[] { new PoolIdAndQuantity(pool, 1) });
+        JobDetail detail = EntitlerJob.bulkBindByPoolAndQuantities(owner, requests);
+        assertEquals(owner.getKey(), detail.getJobDataMap().get(JobStatus.TARGET_ID));
+        assertTrue(detail.getKey().getName().startsWith("bulk_bind_by_pool_"));
+
+        JobExecutionContext ctx = mock(JobExecutionContext.class);
+        when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
+
+        Pool p = new Pool();
+        p.setId(pool);
+        Entitlement ent = new Entitlement();
+        ent.setPool(p);
+        ent.setQuantity(1);
+        List<Entitlement> ents = Collections.singletonList(ent);
+
+        BulkBindResult bindResult = mock(BulkBindResult.class);
+        when(bindResult.getEntitlements()).thenReturn(Collections.singletonMap(consumerUuid, ents));
+        when(e.bindByPoolQuantities(anyMap())).thenReturn(bindResult);
+
+        EntitlerJob job = new EntitlerJob(e, null, pC, null);
+        injector.injectMembers(job);
+        job.execute(ctx);
+
+        ArgumentCaptor<Map> requestCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(e).bindByPoolQuantities(requestCaptor.capture());
+        assertEquals(Collections.singletonMap(consumerUuid, Collections.singletonMap(pool, 1)),
+            requestCaptor.getValue());
+        verify(e).sendEvents(eq(ents));
+
+        ArgumentCaptor<Object> argumentCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(ctx).setResult(argumentCaptor.capture());
+        Map<String, Object> result = (Map<String, Object>) argumentCaptor.getValue();
+        List<PoolIdAndQuantity> consumed = (List<PoolIdAndQuantity>) result.get(consumerUuid);
+        assertEquals(1, consumed.size());
+        assertEquals(pool, consumed.get(0).getPoolId());
+    }
+
     /**
      * At first glance this seems like a stupid test of Quartz functionality,
      * but its intent is to ensure that what we put into the JobDataMap can
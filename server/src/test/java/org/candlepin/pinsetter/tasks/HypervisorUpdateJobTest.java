@@ -17,9 +17,12 @@ package org.candlepin.pinsetter.tasks;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyBoolean;
+import static org.mockito.Mockito.anyCollection;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
@@ -34,12 +37,14 @@ import org.candlepin.config.ConfigProperties;
 import org.candlepin.dto.ModelTranslator;
 import org.candlepin.dto.StandardTranslator;
 import org.candlepin.dto.api.v1.ConsumerDTO;
+import org.candlepin.dto.api.v1.HypervisorUpdateResultDTO;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.ConsumerType;
 import org.candlepin.model.ConsumerType.ConsumerTypeEnum;
 import org.candlepin.model.ConsumerTypeCurator;
 import org.candlepin.model.EnvironmentCurator;
+import org.candlepin.model.HypervisorFingerprint;
 import org.candlepin.model.HypervisorId;
 import org.candlepin.model.JobCurator;
 import org.candlepin.model.Owner;
@@ -66,7 +71,13 @@ import org.quartz.SchedulerException;
 import org.xnap.commons.i18n.I18n;
 import org.xnap.commons.i18n.I18nFactory;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -90,6 +101,7 @@ public class HypervisorUpdateJobTest extends BaseJobTest {
     private Configuration config;
 
     private ModelTranslator translator;
+    private JobCurator jobCurator;
 
 
     @BeforeEach
@@ -110,6 +122,7 @@ public class HypervisorUpdateJobTest extends BaseJobTest {
         environmentCurator = mock(EnvironmentCurator.class);
         config = mock(Configuration.class);
         objectMapper = new ObjectMapper();
+        jobCurator = mock(JobCurator.class);
         when(owner.getId()).thenReturn("joe");
 
         ConsumerType ctype = new ConsumerType(ConsumerTypeEnum.HYPERVISOR);
@@ -157,7 +170,8 @@ public class HypervisorUpdateJobTest extends BaseJobTest {
             any(HypervisorUpdateJob.HypervisorList.class))).thenReturn(new VirtConsumerMap());
 
         HypervisorUpdateJob job = new HypervisorUpdateJob(
-            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper);
+            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper,
+            jobCurator);
         injector.injectMembers(job);
         job.execute(ctx);
         verify(consumerCurator).saveAll(any(Set.class), eq(false), eq(false));
@@ -176,7 +190,8 @@ public class HypervisorUpdateJobTest extends BaseJobTest {
             any(HypervisorUpdateJob.HypervisorList.class))).thenReturn(new VirtConsumerMap());
 
         HypervisorUpdateJob job = new HypervisorUpdateJob(
-            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper);
+            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper,
+            jobCurator);
         injector.injectMembers(job);
         job.execute(ctx);
         ArgumentCaptor<Set<Consumer>> argument = ArgumentCaptor.forClass(Set.class);
@@ -204,7 +219,8 @@ public class HypervisorUpdateJobTest extends BaseJobTest {
         when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
 
         HypervisorUpdateJob job = new HypervisorUpdateJob(
-            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper);
+            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper,
+            jobCurator);
         injector.injectMembers(job);
         job.execute(ctx);
         verify(consumerResource).checkForFactsUpdate(any(Consumer.class), any(Consumer.class));
@@ -231,7 +247,8 @@ public class HypervisorUpdateJobTest extends BaseJobTest {
         when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
 
         HypervisorUpdateJob job = new HypervisorUpdateJob(
-            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper);
+            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper,
+            jobCurator);
         injector.injectMembers(job);
         job.execute(ctx);
         assertEquals("updateReporterId", hypervisor.getHypervisorId().getReporterId());
@@ -267,7 +284,8 @@ public class HypervisorUpdateJobTest extends BaseJobTest {
         when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
 
         HypervisorUpdateJob job = new HypervisorUpdateJob(
-            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper);
+            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper,
+            jobCurator);
         injector.injectMembers(job);
         job.execute(ctx);
 
@@ -308,7 +326,8 @@ public class HypervisorUpdateJobTest extends BaseJobTest {
         when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
 
         HypervisorUpdateJob job = new HypervisorUpdateJob(
-            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper);
+            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper,
+            jobCurator);
         injector.injectMembers(job);
         job.execute(ctx);
 
@@ -337,7 +356,8 @@ public class HypervisorUpdateJobTest extends BaseJobTest {
             any(HypervisorUpdateJob.HypervisorList.class))).thenReturn(new VirtConsumerMap());
 
         HypervisorUpdateJob job = new HypervisorUpdateJob(
-            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper);
+            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper,
+            jobCurator);
         injector.injectMembers(job);
         job.execute(ctx);
         verify(consumerResource, never()).createConsumerFromDTO(any(ConsumerDTO.class),
@@ -345,6 +365,85 @@ public class HypervisorUpdateJobTest extends BaseJobTest {
             eq(false));
     }
 
+    @Test
+    public void unchangedHostsSkipFullProcessing() throws Exception {
+        when(ownerCurator.getByKey(eq("joe"))).thenReturn(owner);
+        when(ownerCurator.findOwnerById(eq("joe"))).thenReturn(owner);
+        when(config.getBoolean(eq(ConfigProperties.HYPERVISOR_REPORT_FINGERPRINTING))).thenReturn(true);
+
+        Consumer reported = objectMapper.readValue(hypervisorJson, HypervisorUpdateJob.HypervisorList.class)
+            .getHypervisors().get(0);
+        HypervisorFingerprint previous = HypervisorFingerprint.fromReport(reported);
+        Map<String, HypervisorFingerprint> known = new HashMap<>();
+        known.put("uuid_999", new HypervisorFingerprint(previous.getHostFingerprint(),
+            previous.getGuestFingerprint(), "host-uuid"));
+
+        when(consumerCurator.getHypervisorFingerprints(eq(owner), eq("reporter"), anyCollection()))
+            .thenReturn(known);
+        when(consumerCurator.getHostConsumersMap(eq(owner),
+            any(HypervisorUpdateJob.HypervisorList.class))).thenReturn(new VirtConsumerMap());
+
+        JobDetail detail = HypervisorUpdateJob.forOwner(owner, hypervisorJson, true, principal, "reporter");
+        JobExecutionContext ctx = mock(JobExecutionContext.class);
+        when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
+
+        HypervisorUpdateJob job = new HypervisorUpdateJob(
+            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper,
+            jobCurator);
+        injector.injectMembers(job);
+        job.execute(ctx);
+
+        verify(consumerCurator).updateHypervisorLastCheckin(eq(owner),
+            eq(Collections.singleton("uuid_999")), any(Date.class));
+        verify(consumerCurator, never()).saveAll(any(Set.class), anyBoolean(), anyBoolean());
+        verify(consumerResource, never()).checkForFactsUpdate(any(Consumer.class), any(Consumer.class));
+
+        ArgumentCaptor<HypervisorUpdateJob.HypervisorList> captor =
+            ArgumentCaptor.forClass(HypervisorUpdateJob.HypervisorList.class);
+        verify(consumerCurator).getHostConsumersMap(eq(owner), captor.capture());
+        assertTrue(captor.getValue().getHypervisors().isEmpty());
+
+        ArgumentCaptor<HypervisorUpdateResultDTO> resultCaptor =
+            ArgumentCaptor.forClass(HypervisorUpdateResultDTO.class);
+        verify(ctx).setResult(resultCaptor.capture());
+        assertEquals(1, resultCaptor.getValue().getUnchanged().size());
+        assertEquals("host-uuid", resultCaptor.getValue().getUnchanged().iterator().next().getUuid());
+    }
+
+    @Test
+    public void changedHostsRecordFingerprints() throws Exception {
+        when(ownerCurator.getByKey(eq("joe"))).thenReturn(owner);
+        when(ownerCurator.findOwnerById(eq("joe"))).thenReturn(owner);
+        when(config.getBoolean(eq(ConfigProperties.HYPERVISOR_REPORT_FINGERPRINTING))).thenReturn(true);
+
+        Map<String, HypervisorFingerprint> known = new HashMap<>();
+        known.put("uuid_999", new HypervisorFingerprint("stale", "stale", "host-uuid"));
+
+        when(consumerCurator.getHypervisorFingerprints(eq(owner), eq("reporter"), anyCollection()))
+            .thenReturn(known);
+        when(consumerCurator.getHostConsumersMap(eq(owner),
+            any(HypervisorUpdateJob.HypervisorList.class))).thenReturn(new VirtConsumerMap());
+
+        JobDetail detail = HypervisorUpdateJob.forOwner(owner, hypervisorJson, true, principal, "reporter");
+        JobExecutionContext ctx = mock(JobExecutionContext.class);
+        when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
+
+        HypervisorUpdateJob job = new HypervisorUpdateJob(
+            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper,
+            jobCurator);
+        injector.injectMembers(job);
+        job.execute(ctx);
+
+        verify(consumerCurator, never()).updateHypervisorLastCheckin(any(Owner.class), anyCollection(),
+            any(Date.class));
+        verify(consumerCurator).saveAll(any(Set.class), eq(false), eq(false));
+
+        ArgumentCaptor<Map<String, HypervisorFingerprint>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(consumerCurator).updateHypervisorFingerprints(eq(owner), captor.capture(), any(Date.class));
+        assertEquals(Collections.singleton("uuid_999"), captor.getValue().keySet());
+        assertFalse(captor.getValue().get("uuid_999").matches(known.get("uuid_999")));
+    }
+
     @Test
     public void hypervisorUpdateIgnoresEmptyGuestIds() throws Exception {
         when(ownerCurator.getByKey(eq("joe"))).thenReturn(owner);
@@ -366,9 +465,68 @@ public class HypervisorUpdateJobTest extends BaseJobTest {
             .thenReturn(new VirtConsumerMap());
 
         HypervisorUpdateJob job = new HypervisorUpdateJob(
-            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper);
+            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper,
+            jobCurator);
+        injector.injectMembers(job);
+        job.execute(ctx);
+    }
+
+    @Test
+    public void hypervisorReportProcessedInChunks() throws Exception {
+        when(ownerCurator.getByKey(eq("joe"))).thenReturn(owner);
+        when(ownerCurator.findOwnerById(eq("joe"))).thenReturn(owner);
+        injector.getInstance(Configuration.class)
+            .setProperty(ConfigProperties.HYPERVISOR_UPDATE_CHUNK_SIZE, "2");
+
+        hypervisorJson =
+            "{\"ignored\": {\"hypervisors\": []}, \"hypervisors\": [" +
+                "{\"hypervisorId\" : {\"hypervisorId\" : \"hypervisor_1\"}, \"name\" : \"h1\"}," +
+                "{\"hypervisorId\" : {\"hypervisorId\" : \"hypervisor_2\"}, \"name\" : \"h2\"}," +
+                "{\"hypervisorId\" : {\"hypervisorId\" : \"hypervisor_3\"}, \"name\" : \"h3\"}" +
+                "]}";
+
+        JobDetail detail = HypervisorUpdateJob.forOwner(owner, hypervisorJson, true, principal, null);
+        JobExecutionContext ctx = mock(JobExecutionContext.class);
+        when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
+
+        when(consumerCurator.getHostConsumersMap(eq(owner), any(HypervisorUpdateJob.HypervisorList.class)))
+            .thenReturn(new VirtConsumerMap());
+
+        HypervisorUpdateJob job = new HypervisorUpdateJob(
+            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper,
+            jobCurator);
         injector.injectMembers(job);
         job.execute(ctx);
+
+        ArgumentCaptor<HypervisorUpdateJob.HypervisorList> captor =
+            ArgumentCaptor.forClass(HypervisorUpdateJob.HypervisorList.class);
+        verify(consumerCurator, times(2)).getHostConsumersMap(eq(owner), captor.capture());
+        assertEquals(2, captor.getAllValues().get(0).getHypervisors().size());
+        assertEquals(1, captor.getAllValues().get(1).getHypervisors().size());
+        verify(consumerCurator, times(2)).clear();
+
+        ArgumentCaptor<HypervisorUpdateResultDTO> resultCaptor =
+            ArgumentCaptor.forClass(HypervisorUpdateResultDTO.class);
+        verify(ctx).setResult(resultCaptor.capture());
+        assertEquals(3, resultCaptor.getValue().getCreated().size());
+    }
+
+    @Test
+    public void hypervisorReportWithoutHypervisorsFails() {
+        when(ownerCurator.getByKey(eq("joe"))).thenReturn(owner);
+
+        JobDetail detail = HypervisorUpdateJob.forOwner(owner, "{\"hosts\": []}", true, principal, null);
+        JobExecutionContext ctx = mock(JobExecutionContext.class);
+        when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
+
+        HypervisorUpdateJob job = new HypervisorUpdateJob(
+            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper,
+            jobCurator);
+        injector.injectMembers(job);
+
+        assertThrows(JobExecutionException.class, () -> job.execute(ctx));
+        verify(consumerCurator, never()).getHostConsumersMap(any(Owner.class),
+            any(HypervisorUpdateJob.HypervisorList.class));
     }
 
     /*
@@ -380,7 +538,8 @@ public class HypervisorUpdateJobTest extends BaseJobTest {
         JobStatus preExistingJobStatus = new JobStatus();
         preExistingJobStatus.setState(JobState.WAITING);
         HypervisorUpdateJob job = new HypervisorUpdateJob(
-            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper);
+            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper,
+            jobCurator);
         JobStatus newlyScheduledJobStatus = new JobStatus();
 
         JobCurator jobCurator = mock(JobCurator.class);
@@ -394,22 +553,47 @@ public class HypervisorUpdateJobTest extends BaseJobTest {
 
         JobStatus resultStatus = job.scheduleJob(jobCurator, scheduler, detail, null);
         assertEquals(newlyScheduledJobStatus, resultStatus);
+        verify(jobCurator).lockHypervisors(eq(detail.getKey().getName()),
+            eq(new HashSet<>(Arrays.asList("uuid_999", "guestid_1_999"))));
     }
 
     /*
-     * Make sure only one test is running at a time.
+     * Make sure jobs reporting any of the same hosts run one at a time.
      */
     @Test
     public void monogamousJobTest() {
         JobDetail detail = HypervisorUpdateJob.forOwner(owner, hypervisorJson, true, principal, null);
         JobStatus newJob = new JobStatus(detail);
         JobCurator jobCurator = mock(JobCurator.class);
-        when(jobCurator.findNumRunningByClassAndTarget(owner.getKey(), HypervisorUpdateJob.class))
-            .thenReturn(1L);
+        when(jobCurator.hasConflictingHypervisorLocks(newJob)).thenReturn(true);
 
         assertFalse(HypervisorUpdateJob.isSchedulable(jobCurator, newJob));
     }
 
+    @Test
+    public void disjointJobsRunConcurrently() {
+        JobDetail detail = HypervisorUpdateJob.forOwner(owner, hypervisorJson, true, principal, null);
+        JobStatus newJob = new JobStatus(detail);
+        JobCurator jobCurator = mock(JobCurator.class);
+        when(jobCurator.hasConflictingHypervisorLocks(newJob)).thenReturn(false);
+
+        assertTrue(HypervisorUpdateJob.isSchedulable(jobCurator, newJob));
+    }
+
+    @Test
+    public void readHypervisorAndGuestIdsFromReport() throws Exception {
+        String json = "{\"hypervisors\":[" +
+            "{\"name\":\"host-a\",\"hypervisorId\":{\"hypervisorId\":\"UUID_A\"}," +
+            "\"facts\":{\"hypervisorId\":\"ignored\"},\"guestIds\":[{\"guestId\":\"G1\"}, \"g2\"]}," +
+            "{\"name\":\"host-b\",\"hypervisorId\":{\"hypervisorId\":\"uuid_b\"}}]}";
+        JobDetail detail = HypervisorUpdateJob.forOwner(owner, json, true, principal, null);
+
+        Set<String> ids = HypervisorUpdateJob.ReportReader.readHypervisorAndGuestIds(
+            (byte[]) detail.getJobDataMap().get("data"));
+
+        assertEquals(new HashSet<>(Arrays.asList("uuid_a", "uuid_b", "g1", "g2")), ids);
+    }
+
     @Test
     public void ensureJobFailsWhenAutobindDisabledForTargetOwner() {
         // Disabled autobind
@@ -423,7 +607,8 @@ public class HypervisorUpdateJobTest extends BaseJobTest {
             .thenReturn(new VirtConsumerMap());
 
         HypervisorUpdateJob job = new HypervisorUpdateJob(
-            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper);
+            ownerCurator, consumerCurator, translator, hypervisorUpdateAction, i18n, objectMapper,
+            jobCurator);
         injector.injectMembers(job);
 
         try {
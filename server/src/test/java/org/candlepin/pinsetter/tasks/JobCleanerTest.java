@@ -14,16 +14,23 @@
  */
 package org.candlepin.pinsetter.tasks;
 
+import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.JobCurator;
+import org.candlepin.pinsetter.core.JobPurgeMonitor;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import org.quartz.JobExecutionContext;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 
 /**
@@ -31,20 +38,76 @@ import java.util.Date;
  */
 public class JobCleanerTest extends BaseJobTest {
 
+    private JobCurator curator;
+    private JobPurgeMonitor monitor;
+    private JobExecutionContext context;
+    private JobCleaner cleaner;
+
     @Before
     public void init() {
         super.init();
+
+        this.curator = mock(JobCurator.class);
+        this.monitor = new JobPurgeMonitor(this.curator);
+        this.context = mock(JobExecutionContext.class);
+        this.cleaner = new JobCleaner(this.curator, this.monitor);
+        injector.injectMembers(this.cleaner);
+
+        Configuration config = injector.getInstance(Configuration.class);
+        config.setProperty(ConfigProperties.JOB_CLEANER_CHUNK_SIZE, "2");
+        config.setProperty(ConfigProperties.JOB_CLEANER_MAX_ROWS_PER_SECOND, "0");
+
+        when(this.curator.getPurgeableJobs(any(Date.class), any(), anyBoolean(), anyInt()))
+            .thenReturn(Collections.emptyList());
     }
 
     @Test
     public void execute() throws Exception {
-        JobCurator curator = mock(JobCurator.class);
-        JobCleaner cleaner = new JobCleaner(curator);
-        JobExecutionContext context = mock(JobExecutionContext.class);
-        injector.injectMembers(cleaner);
+        cleaner.execute(context);
+        verify(curator).getPurgeableJobs(any(Date.class), isNull(), eq(true), eq(2));
+        verify(curator).getPurgeableJobs(any(Date.class), isNull(), eq(false), eq(2));
+        verify(curator, never()).deleteJobs(anyList());
+    }
+
+    @Test
+    public void purgesInChunks() throws Exception {
+        Date d1 = new Date(1000L);
+        Date d2 = new Date(2000L);
+
+        when(this.curator.getPurgeableJobs(any(Date.class), isNull(), eq(true), eq(2)))
+            .thenReturn(Arrays.asList(new Object[] { "j1", d1 }, new Object[] { "j2", d1 }));
+        when(this.curator.getPurgeableJobs(any(Date.class), eq(d1), eq(true), eq(2)))
+            .thenReturn(Collections.singletonList(new Object[] { "j3", d2 }));
+        when(this.curator.deleteJobs(anyList()))
+            .thenAnswer(inv -> ((List) inv.getArgument(0)).size());
 
         cleaner.execute(context);
-        verify(curator).cleanUpOldCompletedJobs(any(Date.class));
-        verify(curator).cleanupAllOldJobs(any(Date.class));
+
+        verify(curator).deleteJobs(eq(Arrays.asList("j1", "j2")));
+        verify(curator).deleteJobs(eq(Arrays.asList("j3")));
+        verify(curator, never()).getPurgeableJobs(any(Date.class), eq(d2), eq(true), anyInt());
+
+        assertEquals(3, monitor.getLastRunRowsPurged());
+        verify(curator).setPurgeCursor(eq(true), isNull());
+        assertNotNull(monitor.getLastRunEnd());
+    }
+
+    @Test
+    public void pausedPurgeResumesFromCursor() throws Exception {
+        Date d1 = new Date(1000L);
+
+        when(curator.getPurgeCursor(true)).thenReturn(d1);
+        when(curator.isPurgePaused()).thenReturn(true);
+
+        cleaner.execute(context);
+
+        verify(curator, never()).getPurgeableJobs(any(Date.class), any(), anyBoolean(), anyInt());
+        verify(curator).setPurgeCursor(eq(true), eq(d1));
+
+        when(curator.isPurgePaused()).thenReturn(false);
+        cleaner.execute(context);
+
+        verify(curator).getPurgeableJobs(any(Date.class), eq(d1), eq(true), eq(2));
+        verify(curator).setPurgeCursor(eq(true), isNull());
     }
 }
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.tasks;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Content;
+import org.candlepin.model.OwnerContentCurator;
+import org.candlepin.model.OwnerProductCurator;
+import org.candlepin.model.Product;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.quartz.JobExecutionContext;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+
+
+/**
+ * OrphanCleanupJobTest
+ */
+public class OrphanCleanupJobTest extends BaseJobTest {
+
+    @Mock private OwnerContentCurator ownerContentCurator;
+    @Mock private OwnerProductCurator ownerProductCurator;
+    @Mock private JobExecutionContext ctx;
+
+    private OrphanCleanupJob job;
+
+    @Before
+    public void setUp() {
+        super.init();
+        MockitoAnnotations.initMocks(this);
+
+        this.job = new OrphanCleanupJob(this.ownerContentCurator, this.ownerProductCurator);
+        this.injector.injectMembers(this.job);
+
+        this.injector.getInstance(Configuration.class)
+            .setProperty(ConfigProperties.ORPHAN_CLEANUP_BLOCK_SIZE, "2");
+    }
+
+    @Test
+    public void testOrphansDeletedInBlocks() throws Exception {
+        when(this.ownerContentCurator.getOrphanedContentUuids(isNull(), eq(2)))
+            .thenReturn(Arrays.asList("c1", "c2"));
+        when(this.ownerContentCurator.getOrphanedContentUuids(eq("c2"), eq(2)))
+            .thenReturn(Arrays.asList("c3"));
+        when(this.ownerContentCurator.deleteOrphanedContent(anyList()))
+            .thenReturn(Collections.singletonMap(Content.DB_TABLE, 2))
+            .thenReturn(Collections.singletonMap(Content.DB_TABLE, 1));
+
+        when(this.ownerProductCurator.getOrphanedProductUuids(isNull(), eq(2)))
+            .thenReturn(Arrays.asList("p1"));
+        when(this.ownerProductCurator.deleteOrphanedProducts(anyList()))
+            .thenReturn(Collections.singletonMap(Product.DB_TABLE, 1));
+
+        this.job.execute(this.ctx);
+
+        verify(this.ownerContentCurator).deleteOrphanedContent(eq(Arrays.asList("c1", "c2")));
+        verify(this.ownerContentCurator).deleteOrphanedContent(eq(Arrays.asList("c3")));
+        verify(this.ownerProductCurator).deleteOrphanedProducts(eq(Arrays.asList("p1")));
+
+        // Short blocks signal the end of the orphans; no further lookups should occur
+        verify(this.ownerContentCurator, never()).getOrphanedContentUuids(eq("c3"), anyInt());
+        verify(this.ownerProductCurator, never()).getOrphanedProductUuids(eq("p1"), anyInt());
+
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(this.ctx).setResult(captor.capture());
+
+        Map<String, Integer> counts = (Map<String, Integer>) captor.getValue();
+        assertEquals(Integer.valueOf(3), counts.get(Content.DB_TABLE));
+        assertEquals(Integer.valueOf(1), counts.get(Product.DB_TABLE));
+    }
+
+    @Test
+    public void testNoOrphans() throws Exception {
+        when(this.ownerContentCurator.getOrphanedContentUuids(isNull(), anyInt()))
+            .thenReturn(Collections.<String>emptyList());
+        when(this.ownerProductCurator.getOrphanedProductUuids(isNull(), anyInt()))
+            .thenReturn(Collections.<String>emptyList());
+
+        this.job.execute(this.ctx);
+
+        verify(this.ownerContentCurator, never()).deleteOrphanedContent(anyList());
+        verify(this.ownerProductCurator, never()).deleteOrphanedProducts(anyList());
+    }
+}
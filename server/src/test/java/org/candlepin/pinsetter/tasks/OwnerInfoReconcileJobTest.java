@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.tasks;
+
+import static org.mockito.Mockito.*;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Owner;
+import org.candlepin.model.OwnerCurator;
+import org.candlepin.model.OwnerInfoCounterCurator;
+import org.candlepin.model.OwnerInfoCurator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.quartz.JobExecutionContext;
+
+import java.util.Arrays;
+import java.util.Date;
+
+
+
+/**
+ * OwnerInfoReconcileJobTest
+ */
+public class OwnerInfoReconcileJobTest extends BaseJobTest {
+
+    @Mock private OwnerCurator ownerCurator;
+    @Mock private OwnerInfoCurator ownerInfoCurator;
+    @Mock private OwnerInfoCounterCurator counterCurator;
+    @Mock private JobExecutionContext ctx;
+
+    private OwnerInfoReconcileJob job;
+
+    @Before
+    public void setUp() {
+        super.init();
+        MockitoAnnotations.initMocks(this);
+
+        this.job = new OwnerInfoReconcileJob(this.ownerCurator, this.ownerInfoCurator, this.counterCurator);
+        this.injector.injectMembers(this.job);
+    }
+
+    @Test
+    public void testOwnersReconciledIndividually() throws Exception {
+        Owner owner1 = new Owner("owner1");
+        Owner owner2 = new Owner("owner2");
+
+        when(this.counterCurator.getOwnersToReconcile(any(Date.class)))
+            .thenReturn(Arrays.asList("id1", "id2", "deleted"));
+        when(this.ownerCurator.get("id1")).thenReturn(owner1);
+        when(this.ownerCurator.get("id2")).thenReturn(owner2);
+        when(this.ownerInfoCurator.reconcile(owner1)).thenThrow(new IllegalStateException("lock timeout"));
+
+        this.job.execute(this.ctx);
+
+        // A failure to reconcile one owner does not prevent the others from being reconciled
+        verify(this.ownerInfoCurator).reconcile(owner1);
+        verify(this.ownerInfoCurator).reconcile(owner2);
+        verify(this.ctx).setResult("Reconciled owner info counters for 1 of 3 owners; compacted 0");
+    }
+
+    @Test
+    public void testPendingAdjustmentsCompacted() throws Exception {
+        Owner owner1 = new Owner("owner1");
+
+        when(this.counterCurator.getOwnersToReconcile(any(Date.class))).thenReturn(Arrays.asList("id1"));
+        when(this.counterCurator.getOwnersToCompact()).thenReturn(Arrays.asList("id1", "id2"));
+        when(this.ownerCurator.get("id1")).thenReturn(owner1);
+
+        this.job.execute(this.ctx);
+
+        // Reconciled owners have no pending adjustments left to compact
+        verify(this.counterCurator, never()).compact("id1");
+        verify(this.counterCurator).compact("id2");
+        verify(this.ctx).setResult("Reconciled owner info counters for 1 of 1 owners; compacted 1");
+    }
+
+    @Test
+    public void testNothingReconciledWhenDisabled() throws Exception {
+        this.injector.getInstance(Configuration.class)
+            .setProperty(ConfigProperties.OWNER_INFO_COUNTERS_ENABLED, "false");
+
+        this.job.execute(this.ctx);
+
+        verifyZeroInteractions(this.counterCurator, this.ownerInfoCurator);
+    }
+}
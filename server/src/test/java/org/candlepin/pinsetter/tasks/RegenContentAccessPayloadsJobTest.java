@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.tasks;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.model.JobCurator;
+import org.candlepin.model.Owner;
+import org.candlepin.model.OwnerCurator;
+import org.candlepin.pinsetter.core.model.JobStatus;
+import org.candlepin.service.ContentAccessCertServiceAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.ListenerManager;
+import org.quartz.Scheduler;
+import org.quartz.Trigger;
+
+import java.io.IOException;
+
+/**
+ * RegenContentAccessPayloadsJobTest
+ */
+public class RegenContentAccessPayloadsJobTest extends BaseJobTest {
+
+    private OwnerCurator ownerCurator;
+    private ContentAccessCertServiceAdapter contentAccessCertService;
+    private Owner owner;
+    private JobExecutionContext ctx;
+
+    @Before
+    public void setUp() {
+        super.init();
+        ownerCurator = mock(OwnerCurator.class);
+        contentAccessCertService = mock(ContentAccessCertServiceAdapter.class);
+        owner = new Owner("owner_key", "owner");
+        owner.setId("owner_id");
+        owner.setContentAccessMode(ContentAccessCertServiceAdapter.ORG_ENV_ACCESS_MODE);
+        ctx = mock(JobExecutionContext.class);
+
+        JobDataMap jdm = mock(JobDataMap.class);
+        when(ctx.getMergedJobDataMap()).thenReturn(jdm);
+        when(jdm.getString(eq(JobStatus.TARGET_ID))).thenReturn("owner_key");
+        when(ownerCurator.getByKey(eq("owner_key"))).thenReturn(owner);
+    }
+
+    private RegenContentAccessPayloadsJob createJob() {
+        RegenContentAccessPayloadsJob job = new RegenContentAccessPayloadsJob(ownerCurator,
+            contentAccessCertService);
+
+        injector.injectMembers(job);
+        return job;
+    }
+
+    @Test
+    public void execute() throws Exception {
+        when(contentAccessCertService.regenerateStalePayloads(eq(owner))).thenReturn(2);
+
+        this.createJob().execute(ctx);
+
+        verify(contentAccessCertService).regenerateStalePayloads(eq(owner));
+        verify(ctx).setResult(eq("Regenerated 2 content access payloads for owner owner_key"));
+    }
+
+    @Test
+    public void skipsOwnersWithoutContentAccess() throws Exception {
+        owner.setContentAccessMode(ContentAccessCertServiceAdapter.ENTITLEMENT_ACCESS_MODE);
+
+        this.createJob().execute(ctx);
+
+        verify(contentAccessCertService, never()).regenerateStalePayloads(any(Owner.class));
+    }
+
+    @Test
+    public void failsWithoutRefireOnGenerationError() throws Exception {
+        when(contentAccessCertService.regenerateStalePayloads(eq(owner))).thenThrow(new IOException());
+
+        try {
+            this.createJob().execute(ctx);
+            fail("Expected exception not thrown");
+        }
+        catch (JobExecutionException ex) {
+            assertFalse(ex.refireImmediately());
+        }
+    }
+
+    @Test
+    public void forOwner() {
+        JobDetail detail = RegenContentAccessPayloadsJob.forOwner(owner);
+
+        assertTrue(detail.requestsRecovery());
+        assertTrue(detail.isDurable());
+        assertEquals("owner_key", detail.getJobDataMap().get(JobStatus.TARGET_ID));
+        assertEquals(JobStatus.TargetType.OWNER, detail.getJobDataMap().get(JobStatus.TARGET_TYPE));
+    }
+
+    @Test
+    public void scheduleJobQueuesWithoutTrigger() throws Exception {
+        JobCurator jobCurator = mock(JobCurator.class);
+        Scheduler scheduler = mock(Scheduler.class);
+        when(scheduler.getListenerManager()).thenReturn(mock(ListenerManager.class));
+        when(jobCurator.create(any(JobStatus.class))).thenAnswer(i -> i.getArguments()[0]);
+
+        JobDetail detail = RegenContentAccessPayloadsJob.forOwner(owner);
+        JobStatus status = RegenContentAccessPayloadsJob.scheduleJob(jobCurator, scheduler, detail,
+            mock(Trigger.class));
+
+        assertEquals(JobStatus.JobState.WAITING, status.getState());
+        verify(scheduler).addJob(eq(detail), eq(false));
+        verify(scheduler, never()).scheduleJob(any(JobDetail.class), any(Trigger.class));
+    }
+
+    @Test
+    public void scheduleJobReusesQueuedJob() throws Exception {
+        JobCurator jobCurator = mock(JobCurator.class);
+        Scheduler scheduler = mock(Scheduler.class);
+        JobDetail detail = RegenContentAccessPayloadsJob.forOwner(owner);
+
+        JobStatus queued = new JobStatus(detail, true);
+        when(jobCurator.getByClassAndTarget(eq("owner_key"), eq(RegenContentAccessPayloadsJob.class)))
+            .thenReturn(queued);
+
+        JobStatus status = RegenContentAccessPayloadsJob.scheduleJob(jobCurator, scheduler,
+            RegenContentAccessPayloadsJob.forOwner(owner), null);
+
+        assertSame(queued, status);
+        verifyZeroInteractions(scheduler);
+        verify(jobCurator, never()).create(any(JobStatus.class));
+    }
+
+    @Test
+    public void scheduleJobQueuesBehindRunningJob() throws Exception {
+        JobCurator jobCurator = mock(JobCurator.class);
+        Scheduler scheduler = mock(Scheduler.class);
+        when(scheduler.getListenerManager()).thenReturn(mock(ListenerManager.class));
+        when(jobCurator.create(any(JobStatus.class))).thenAnswer(i -> i.getArguments()[0]);
+
+        JobStatus running = new JobStatus(RegenContentAccessPayloadsJob.forOwner(owner), false);
+        running.setState(JobStatus.JobState.RUNNING);
+        when(jobCurator.getByClassAndTarget(eq("owner_key"), eq(RegenContentAccessPayloadsJob.class)))
+            .thenReturn(running);
+
+        JobStatus status = RegenContentAccessPayloadsJob.scheduleJob(jobCurator, scheduler,
+            RegenContentAccessPayloadsJob.forOwner(owner), null);
+
+        assertNotSame(running, status);
+        assertEquals(JobStatus.JobState.WAITING, status.getState());
+    }
+}
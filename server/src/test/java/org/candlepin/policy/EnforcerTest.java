@@ -42,6 +42,7 @@ import org.candlepin.policy.js.JsRunnerRequestCache;
 import org.candlepin.policy.js.RuleExecutionException;
 import org.candlepin.policy.js.RulesObjectMapper;
 import org.candlepin.policy.js.entitlement.Enforcer;
+import org.candlepin.policy.js.entitlement.EntitlementRuleDispatcher;
 import org.candlepin.policy.js.entitlement.EntitlementRules;
 import org.candlepin.policy.js.entitlement.EntitlementRules.Rule;
 import org.candlepin.service.ProductServiceAdapter;
@@ -129,7 +130,7 @@ public class EnforcerTest extends DatabaseTestFixture {
             mockProductCurator,
             new RulesObjectMapper(new ProductCachedSerializationModule(mockProductCurator)),
             mockOwnerCurator, mockOwnerProductCurator, mockProductManager,
-            mockEventSink, mockEventFactory, translator
+            mockEventSink, mockEventFactory, translator, new EntitlementRuleDispatcher()
         );
     }
 
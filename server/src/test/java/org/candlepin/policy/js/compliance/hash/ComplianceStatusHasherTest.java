@@ -194,7 +194,8 @@ public class ComplianceStatusHasherTest {
         ComplianceStatus testStatus = createInitialStatus(consumer);
         assertEquals(initialHash, generateHash(testStatus, consumer));
 
-        Map<String, String> initialConsumerFacts = consumer.getFacts();
+        // Copied, as setFacts updates the consumer's fact map in place
+        Map<String, String> initialConsumerFacts = new HashMap<>(consumer.getFacts());
         String firstFactKey = initialConsumerFacts.keySet().iterator().next();
 
         // Same facts, new map.
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.entitlement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.candlepin.model.Owner;
+import org.candlepin.model.Pool;
+import org.candlepin.model.Product;
+import org.candlepin.policy.js.entitlement.EntitlementRuleDispatcher.DispatchTable;
+import org.candlepin.test.TestUtil;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+
+
+/**
+ * Test suite for the EntitlementRuleDispatcher class
+ */
+public class EntitlementRuleDispatcherTest {
+
+    private static final String MAPPINGS = "architecture:1:arch,sockets:1:sockets,ram:1:ram," +
+        "virt_only:1:virt_only";
+
+    private EntitlementRuleDispatcher dispatcher;
+    private Owner owner;
+
+    @BeforeEach
+    public void setup() {
+        this.dispatcher = new EntitlementRuleDispatcher();
+        this.owner = TestUtil.createOwner();
+    }
+
+    private Pool createPool(String... productAttributes) {
+        Product product = TestUtil.createProduct();
+        for (int i = 0; i < productAttributes.length; i += 2) {
+            product.setAttribute(productAttributes[i], productAttributes[i + 1]);
+        }
+
+        return TestUtil.createPool(this.owner, product);
+    }
+
+    @Test
+    public void testGlobalValidatorAlwaysRunsFirst() {
+        DispatchTable table = this.dispatcher.getDispatchTable(MAPPINGS);
+        String key = table.getDispatchKey(this.createPool());
+
+        assertEquals(Collections.singletonList("do_pre_global"), table.getValidators(key));
+    }
+
+    @Test
+    public void testValidatorsFollowMappingOrder() {
+        DispatchTable table = this.dispatcher.getDispatchTable(MAPPINGS);
+        Pool pool = this.createPool("ram", "4", "arch", "x86_64");
+        pool.setAttribute("virt_only", "true");
+
+        assertEquals(Arrays.asList("do_pre_global", "do_pre_architecture", "do_pre_ram", "do_pre_virt_only"),
+            table.getValidators(table.getDispatchKey(pool)));
+    }
+
+    @Test
+    public void testZeroValuedAttributesAreUnset() {
+        DispatchTable table = this.dispatcher.getDispatchTable(MAPPINGS);
+        Pool pool = this.createPool("sockets", "0");
+
+        assertEquals(Collections.singletonList("do_pre_global"),
+            table.getValidators(table.getDispatchKey(pool)));
+
+        pool.setAttribute("sockets", "2");
+
+        assertEquals(Arrays.asList("do_pre_global", "do_pre_sockets"),
+            table.getValidators(table.getDispatchKey(pool)));
+    }
+
+    @Test
+    public void testPoolsWithSameAttributesShareDispatch() {
+        DispatchTable table = this.dispatcher.getDispatchTable(MAPPINGS);
+
+        String key1 = table.getDispatchKey(this.createPool("arch", "x86_64", "sockets", "2"));
+        String key2 = table.getDispatchKey(this.createPool("sockets", "4", "arch", "ppc64"));
+
+        assertSame(key1, key2);
+        assertSame(table.getValidators(key1), table.getValidators(key2));
+        assertEquals(1, table.size());
+        assertEquals(1, table.getMisses());
+        assertEquals(1, table.getHits());
+    }
+
+    @Test
+    public void testTableIsOnlyRecompiledWhenMappingsChange() {
+        DispatchTable table = this.dispatcher.getDispatchTable(MAPPINGS);
+
+        assertSame(table, this.dispatcher.getDispatchTable(new String(MAPPINGS)));
+        assertEquals(1L, this.dispatcher.getStatistics().get("compilations"));
+
+        DispatchTable updated = this.dispatcher.getDispatchTable(MAPPINGS + ",cores:1:cores");
+        String key = updated.getDispatchKey(this.createPool("cores", "8"));
+
+        assertNotSame(table, updated);
+        assertEquals(Arrays.asList("do_pre_global", "do_pre_cores"), updated.getValidators(key));
+
+        Map<String, Long> statistics = this.dispatcher.getStatistics();
+        assertEquals(2L, statistics.get("compilations"));
+        assertEquals(1L, statistics.get("dispatchKeys"));
+    }
+
+    @Test
+    public void testEmptyMappingsOnlyDispatchGlobal() {
+        DispatchTable table = this.dispatcher.getDispatchTable("");
+        String key = table.getDispatchKey(this.createPool("arch", "x86_64"));
+
+        assertEquals(Collections.singletonList("do_pre_global"), table.getValidators(key));
+    }
+
+    @Test
+    public void testMalformedMappingsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> this.dispatcher.getDispatchTable("sockets:1"));
+        assertThrows(IllegalArgumentException.class, () -> this.dispatcher.getDispatchTable(null));
+    }
+}
@@ -109,6 +109,7 @@ public class EntitlementRulesTestFixture {
     protected String productId = "a-product";
     protected PoolRules poolRules;
     protected ModelTranslator translator;
+    protected EntitlementRuleDispatcher ruleDispatcher;
 
     @Before
     public void createEnforcer() throws Exception {
@@ -128,6 +129,7 @@ public class EntitlementRulesTestFixture {
         JsRunner jsRules = new JsRunnerProvider(rulesCurator, cacheProvider).get();
 
         translator = new StandardTranslator(consumerTypeCurator, environmentCurator, ownerCurator);
+        ruleDispatcher = new EntitlementRuleDispatcher();
         enforcer = new EntitlementRules(
             new DateSourceImpl(),
             jsRules,
@@ -142,7 +144,8 @@ public class EntitlementRulesTestFixture {
             productManager,
             eventSink,
             eventFactory,
-            translator
+            translator,
+            ruleDispatcher
         );
 
         owner = TestUtil.createOwner();
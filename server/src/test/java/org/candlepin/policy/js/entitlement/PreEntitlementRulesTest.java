@@ -853,6 +853,29 @@ public class PreEntitlementRulesTest extends EntitlementRulesTestFixture {
         assertTrue(filtered.contains(pool));
     }
 
+    @Test
+    public void testListDispatchesPoolsWithSameAttributesOnce() {
+        consumer.setFacts(new HashMap<>());
+        consumer.setFact("cpu.cpu_socket(s)", "1");
+        consumer.setFact("cpu.core(s)_per_socket", "10");
+
+        List<Pool> pools = new LinkedList<>();
+        for (String cores : new String[] { "10", "20", "2" }) {
+            Product product = TestUtil.createProduct(productId + cores, "A product for testing");
+            product.setAttribute(Product.Attributes.CORES, cores);
+            pools.add(createPool(owner, product));
+        }
+
+        assertEquals(pools.subList(0, 2), enforcer.filterPools(consumer, pools, false));
+        assertEquals(pools.subList(0, 2), enforcer.filterPools(consumer, pools, false));
+
+        Map<String, Long> statistics = ruleDispatcher.getStatistics();
+        assertEquals(Long.valueOf(1), statistics.get("compilations"));
+        assertEquals(Long.valueOf(1), statistics.get("dispatchKeys"));
+        assertEquals(Long.valueOf(1), statistics.get("misses"));
+        assertEquals(Long.valueOf(1), statistics.get("hits"));
+    }
+
     @Test
     public void devPoolConsumerMatches() {
         Pool pool = setupDevConsumerRestrictedPool(consumer);
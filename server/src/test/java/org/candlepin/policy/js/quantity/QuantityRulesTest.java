@@ -36,6 +36,8 @@ import org.candlepin.model.Product;
 import org.candlepin.model.ProductCurator;
 import org.candlepin.model.Rules;
 import org.candlepin.model.RulesCurator;
+import org.candlepin.policy.js.JsContext;
+import org.candlepin.policy.js.JsRunner;
 import org.candlepin.policy.js.JsRunnerProvider;
 import org.candlepin.policy.js.JsRunnerRequestCache;
 import org.candlepin.policy.js.RulesObjectMapper;
@@ -610,4 +612,121 @@ public class QuantityRulesTest {
         assertEquals(new Long(1), suggested.getSuggested());
         assertEquals(new Long(1), suggested.getIncrement());
     }
+
+    private QuantityRules buildSpiedQuantityRules(JsRunner runner) {
+        return new QuantityRules(runner, new RulesObjectMapper(
+            new ProductCachedSerializationModule(productCurator)), translator);
+    }
+
+    private Pool createPool(String id, Product product) {
+        Pool pool = TestUtil.createPool(owner, product);
+        pool.setId(id);
+
+        return pool;
+    }
+
+    @Test
+    public void testUnstackedPoolsAreCalculatedWithoutRules() {
+        JsRunner runner = spy(provider.get());
+        QuantityRules rules = this.buildSpiedQuantityRules(runner);
+        consumer.setFact(IS_VIRT, "false");
+
+        Product standard = TestUtil.createProduct();
+        Product multiEnt = TestUtil.createProduct();
+        multiEnt.setAttribute(Pool.Attributes.MULTI_ENTITLEMENT, "yes");
+        Product instanceBased = TestUtil.createProduct();
+        instanceBased.setAttribute(Pool.Attributes.MULTI_ENTITLEMENT, "yes");
+        instanceBased.setAttribute(INSTANCE_ATTRIBUTE, "2");
+
+        List<Pool> pools = new LinkedList<>();
+        pools.add(this.createPool("standard", standard));
+        pools.add(this.createPool("multi_ent", multiEnt));
+        pools.add(this.createPool("instance_based", instanceBased));
+
+        Map<String, SuggestedQuantityDTO> results = rules.getSuggestedQuantities(pools, consumer, new Date());
+
+        assertEquals(3, results.size());
+        assertEquals(new Long(1), results.get("standard").getSuggested());
+        assertEquals(new Long(1), results.get("standard").getIncrement());
+        assertEquals(new Long(1), results.get("multi_ent").getSuggested());
+        assertEquals(new Long(1), results.get("multi_ent").getIncrement());
+        assertEquals(new Long(1), results.get("instance_based").getSuggested());
+        assertEquals(new Long(2), results.get("instance_based").getIncrement());
+
+        verify(runner, never()).runJsFunction(eq(String.class), anyString(), any(JsContext.class));
+    }
+
+    @Test
+    public void testInstanceMultiplierIgnoredForGuestsWithoutRules() {
+        JsRunner runner = spy(provider.get());
+        QuantityRules rules = this.buildSpiedQuantityRules(runner);
+        consumer.setFact(IS_VIRT, "true");
+
+        pool.getProduct().removeAttribute(Product.Attributes.STACKING_ID);
+        pool.getProduct().setAttribute(INSTANCE_ATTRIBUTE, "2");
+
+        SuggestedQuantityDTO suggested = rules.getSuggestedQuantity(pool, consumer, new Date());
+
+        assertEquals(new Long(1), suggested.getSuggested());
+        assertEquals(new Long(1), suggested.getIncrement());
+        verify(runner, never()).runJsFunction(eq(String.class), anyString(), any(JsContext.class));
+    }
+
+    @Test
+    public void testIdenticalStackedPoolsEvaluatedOnce() {
+        JsRunner runner = spy(provider.get());
+        QuantityRules rules = this.buildSpiedQuantityRules(runner);
+        consumer.setFact(SOCKET_FACT, "4");
+        pool.getProduct().setAttribute(SOCKET_ATTRIBUTE, "2");
+
+        List<Pool> pools = new LinkedList<>();
+        for (int i = 0; i < 1000; ++i) {
+            pools.add(this.createPool("pool-" + i, pool.getProduct()));
+        }
+
+        Map<String, SuggestedQuantityDTO> results = rules.getSuggestedQuantities(pools, consumer, new Date());
+
+        assertEquals(1000, results.size());
+        for (Pool p : pools) {
+            assertEquals(new Long(2), results.get(p.getId()).getSuggested());
+        }
+
+        verify(runner, times(1))
+            .runJsFunction(eq(String.class), eq("get_suggested_quantities"), any(JsContext.class));
+    }
+
+    @Test
+    public void testStackedPoolsWithDifferentAttributesEvaluatedSeparately() {
+        consumer.setFact(SOCKET_FACT, "8");
+
+        Product twoSockets = TestUtil.createProduct();
+        twoSockets.setAttribute(Pool.Attributes.MULTI_ENTITLEMENT, "yes");
+        twoSockets.setAttribute(Product.Attributes.STACKING_ID, "1");
+        twoSockets.setAttribute(SOCKET_ATTRIBUTE, "2");
+
+        Product fourSockets = TestUtil.createProduct();
+        fourSockets.setAttribute(Pool.Attributes.MULTI_ENTITLEMENT, "yes");
+        fourSockets.setAttribute(Product.Attributes.STACKING_ID, "1");
+        fourSockets.setAttribute(SOCKET_ATTRIBUTE, "4");
+
+        Pool limited = this.createPool("limited", twoSockets);
+        limited.setQuantity(10L);
+        limited.setConsumed(7L);
+
+        List<Pool> pools = new LinkedList<>();
+        pools.add(this.createPool("two", twoSockets));
+        pools.add(this.createPool("four", fourSockets));
+        pools.add(limited);
+
+        Map<String, SuggestedQuantityDTO> results = quantityRules.getSuggestedQuantities(pools, consumer,
+            new Date());
+
+        assertEquals(new Long(4), results.get("two").getSuggested());
+        assertEquals(new Long(2), results.get("four").getSuggested());
+        assertEquals(new Long(3), results.get("limited").getSuggested());
+
+        for (Pool p : pools) {
+            assertEquals(quantityRules.getSuggestedQuantity(p, consumer, new Date()), results.get(p.getId()));
+        }
+    }
 }
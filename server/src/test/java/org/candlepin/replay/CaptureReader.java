@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+
+
+/**
+ * Reads the records of a capture written by a {@link CaptureWriter}.
+ */
+public class CaptureReader {
+    private static Logger log = LoggerFactory.getLogger(CaptureReader.class);
+
+    private CaptureReader() {
+        // Intentionally left empty
+    }
+
+    /**
+     * Reads all records of the given capture file. A capture which was not closed cleanly, such as
+     * the capture of a server which is still running, is read up to its last complete record.
+     *
+     * @param path
+     *  the capture file to read
+     *
+     * @throws IOException
+     *  if the file cannot be read, or contains an invalid record
+     *
+     * @return
+     *  the records of the capture, in the order they were written
+     */
+    public static List<CaptureRecord> read(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Reads all records from the given gzip-compressed stream.
+     *
+     * @param in
+     *  the stream to read
+     *
+     * @throws IOException
+     *  if the stream cannot be read, or contains an invalid record
+     *
+     * @return
+     *  the records read, in the order they were written
+     */
+    public static List<CaptureRecord> read(InputStream in) throws IOException {
+        // The content is decompressed in full before it is parsed, as the partial block at the end of
+        // an unclosed capture fails the read which reaches it, along with any content it returns
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+
+        try (GZIPInputStream gzip = new GZIPInputStream(in)) {
+            int read;
+            while ((read = gzip.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+        }
+        catch (EOFException e) {
+            log.debug("Capture ended without a trailer after {} bytes", content.size());
+        }
+
+        ObjectMapper mapper = CaptureRecord.createObjectMapper();
+        List<CaptureRecord> records = new ArrayList<>();
+        String text = new String(content.toByteArray(), StandardCharsets.UTF_8);
+
+        // Anything following the last newline is a partially written record, and is discarded
+        int start = 0;
+        for (int end = text.indexOf('\n'); end != -1; end = text.indexOf('\n', start)) {
+            if (end > start) {
+                records.add(mapper.readValue(text.substring(start, end), CaptureRecord.class));
+            }
+
+            start = end + 1;
+        }
+
+        return records;
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.replay;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.candlepin.replay.CaptureRecord.ConsumerRecord;
+import org.candlepin.replay.CaptureRecord.OwnerRecord;
+import org.candlepin.replay.CaptureRecord.PoolRecord;
+import org.candlepin.replay.CaptureRecord.RequestRecord;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+
+
+public class CaptureReaderTest {
+
+    private List<CaptureRecord> buildRecords() {
+        OwnerRecord owner = new OwnerRecord();
+        owner.setId("rp-owner-id");
+        owner.setKey("rp-owner");
+
+        PoolRecord pool = new PoolRecord();
+        pool.setId("rp-pool");
+        pool.setProductId("prod-1");
+        pool.setQuantity(10L);
+        pool.setStartDate(new Date(1000));
+        pool.getAttributes().put("multi-entitlement", "yes");
+        owner.getPools().add(pool);
+
+        ConsumerRecord consumer = new ConsumerRecord();
+        consumer.setUuid("rp-consumer");
+        consumer.setOwner("rp-owner");
+        consumer.setType("system");
+        consumer.getFacts().put("cpu.cpu_socket(s)", "2");
+
+        RequestRecord request = new RequestRecord();
+        request.setEndpoint(ReplayEndpoint.BIND);
+        request.setMethod("POST");
+        request.setPath("/consumers/rp-consumer/entitlements");
+        request.getQuery().put("pool", Collections.singletonList("rp-pool"));
+        request.setConsumer("rp-consumer");
+        request.setStatus(200);
+        request.setDurationMs(12.5);
+
+        return Arrays.asList(owner, consumer, request);
+    }
+
+    @Test
+    public void testRecordsRoundTrip() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (CaptureWriter writer = new CaptureWriter(out)) {
+            for (CaptureRecord record : this.buildRecords()) {
+                writer.write(record);
+            }
+
+            assertEquals(3, writer.getRecordCount());
+        }
+
+        List<CaptureRecord> records = CaptureReader.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(3, records.size());
+
+        OwnerRecord owner = (OwnerRecord) records.get(0);
+        assertEquals("rp-owner", owner.getKey());
+        assertEquals(1, owner.getPools().size());
+        assertEquals(10L, (long) owner.getPools().get(0).getQuantity());
+        assertEquals(new Date(1000), owner.getPools().get(0).getStartDate());
+        assertEquals("yes", owner.getPools().get(0).getAttributes().get("multi-entitlement"));
+
+        ConsumerRecord consumer = (ConsumerRecord) records.get(1);
+        assertEquals("system", consumer.getType());
+        assertEquals("2", consumer.getFacts().get("cpu.cpu_socket(s)"));
+
+        RequestRecord request = (RequestRecord) records.get(2);
+        assertEquals(ReplayEndpoint.BIND, request.getEndpoint());
+        assertEquals(Collections.singletonList("rp-pool"), request.getQuery().get("pool"));
+        assertEquals(200, request.getStatus());
+        assertEquals(12.5, request.getDurationMs(), 0.0);
+    }
+
+    @Test
+    public void testUnclosedCaptureIsReadUpToItsLastRecord() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        CaptureWriter writer = new CaptureWriter(out);
+        for (CaptureRecord record : this.buildRecords()) {
+            writer.write(record);
+        }
+
+        // The writer is deliberately left open, as it would be by a running server
+        List<CaptureRecord> records = CaptureReader.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(3, records.size());
+        assertTrue(records.get(2) instanceof RequestRecord);
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.replay;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+
+public class ReplayAnonymizerTest {
+
+    @Test
+    public void testPseudonymsAreStableUnderTheSameSecret() {
+        ReplayAnonymizer anonymizer = new ReplayAnonymizer("secret");
+
+        String pseudonym = anonymizer.pseudonymize("consumer-uuid");
+
+        assertEquals(pseudonym, anonymizer.pseudonymize("consumer-uuid"));
+        assertEquals(pseudonym, new ReplayAnonymizer("secret").pseudonymize("consumer-uuid"));
+        assertNotEquals(pseudonym, anonymizer.pseudonymize("other-uuid"));
+        assertTrue(pseudonym.startsWith(ReplayAnonymizer.PSEUDONYM_PREFIX));
+        assertFalse(pseudonym.contains("consumer"));
+    }
+
+    @Test
+    public void testPseudonymsDependOnTheSecret() {
+        assertNotEquals(new ReplayAnonymizer("secret").pseudonymize("value"),
+            new ReplayAnonymizer("other").pseudonymize("value"));
+        assertNotEquals(new ReplayAnonymizer(null).pseudonymize("value"),
+            new ReplayAnonymizer(null).pseudonymize("value"));
+    }
+
+    @Test
+    public void testNullIsNotPseudonymized() {
+        ReplayAnonymizer anonymizer = new ReplayAnonymizer("secret");
+
+        assertNull(anonymizer.pseudonymize(null));
+        assertNull(anonymizer.pseudonymizeGuestId(null));
+    }
+
+    @Test
+    public void testGuestIdsArePseudonymizedWithoutRegardToCase() {
+        ReplayAnonymizer anonymizer = new ReplayAnonymizer("secret");
+
+        assertEquals(anonymizer.pseudonymizeGuestId("ABC-def"), anonymizer.pseudonymizeGuestId("abc-DEF"));
+    }
+
+    @Test
+    public void testFactsAreReducedToThoseReadByTheRules() {
+        ReplayAnonymizer anonymizer = new ReplayAnonymizer("secret");
+
+        Map<String, String> facts = new HashMap<>();
+        facts.put("cpu.cpu_socket(s)", "4");
+        facts.put("virt.is_guest", "true");
+        facts.put("virt.uuid", "GUEST-1");
+        facts.put("network.hostname", "host.example.com");
+        facts.put("net.interface.eth0.ipv4_address", "10.0.0.1");
+
+        Map<String, String> anonymized = anonymizer.anonymizeFacts(facts);
+
+        assertEquals(3, anonymized.size());
+        assertEquals("4", anonymized.get("cpu.cpu_socket(s)"));
+        assertEquals("true", anonymized.get("virt.is_guest"));
+        assertEquals(anonymizer.pseudonymizeGuestId("guest-1"), anonymized.get("virt.uuid"));
+        assertEquals(5, facts.size());
+    }
+
+    @Test
+    public void testHypervisorCheckInIsAnonymized() throws Exception {
+        ReplayAnonymizer anonymizer = new ReplayAnonymizer("secret");
+        ObjectMapper mapper = new ObjectMapper();
+
+        JsonNode body = mapper.readTree("{\"hypervisors\": [{" +
+            "\"hypervisorId\": {\"hypervisorId\": \"host-1\"}, \"name\": \"host.example.com\"," +
+            "\"guestIds\": [{\"guestId\": \"Guest-1\", \"state\": 1}]," +
+            "\"facts\": {\"cpu.cpu_socket(s)\": \"2\", \"network.hostname\": \"host.example.com\"}}]}");
+
+        JsonNode anonymized = anonymizer.anonymizeHypervisorBody(body, false);
+        JsonNode hypervisor = anonymized.get("hypervisors").get(0);
+
+        assertEquals(anonymizer.pseudonymizeGuestId("host-1"),
+            hypervisor.get("hypervisorId").get("hypervisorId").asText());
+        assertEquals(anonymizer.pseudonymizeGuestId("host.example.com"), hypervisor.get("name").asText());
+        assertEquals(anonymizer.pseudonymizeGuestId("guest-1"),
+            hypervisor.get("guestIds").get(0).get("guestId").asText());
+        assertEquals(1, hypervisor.get("guestIds").get(0).get("state").asInt());
+        assertEquals(1, hypervisor.get("facts").size());
+        assertFalse(anonymized.toString().contains("example.com"));
+    }
+
+    @Test
+    public void testLegacyHypervisorCheckInIsAnonymized() throws Exception {
+        ReplayAnonymizer anonymizer = new ReplayAnonymizer("secret");
+        JsonNode body = new ObjectMapper()
+            .readTree("{\"host-1\": [\"guest-1\", {\"guestId\": \"guest-2\"}]}");
+
+        JsonNode anonymized = anonymizer.anonymizeHypervisorBody(body, true);
+        JsonNode guests = anonymized.get(anonymizer.pseudonymize("host-1"));
+
+        assertNotNull(guests);
+        assertEquals(anonymizer.pseudonymizeGuestId("guest-1"), guests.get(0).asText());
+        assertEquals(anonymizer.pseudonymizeGuestId("guest-2"), guests.get(1).get("guestId").asText());
+    }
+}
@@ -0,0 +1,282 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.replay;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+
+
+/**
+ * A minimal HTTP client for the Candlepin API, used by the replay driver to load synthetic data into
+ * and replay requests against a running server, and by the load test driver to run its scenarios.
+ * Requests are authenticated with HTTP basic auth.
+ */
+public class ReplayClient {
+
+    /**
+     * The outcome of a single request.
+     */
+    public static class Result {
+        private final int status;
+        private final String body;
+        private final long nanos;
+
+        public Result(int status, String body, long nanos) {
+            this.status = status;
+            this.body = body;
+            this.nanos = nanos;
+        }
+
+        public int getStatus() {
+            return this.status;
+        }
+
+        public String getBody() {
+            return this.body;
+        }
+
+        /**
+         * @return
+         *  the time between sending the request and reading the last byte of the response
+         */
+        public long getNanos() {
+            return this.nanos;
+        }
+
+        public boolean isSuccessful() {
+            return this.status >= 200 && this.status < 300;
+        }
+    }
+
+    private final String baseUrl;
+    private final String authorization;
+    private final SSLSocketFactory socketFactory;
+
+    /**
+     * Creates a client for the server at the given URL.
+     *
+     * @param baseUrl
+     *  the URL of the API root, such as https://localhost:8443/candlepin
+     *
+     * @param username
+     *  the username with which to authenticate
+     *
+     * @param password
+     *  the password with which to authenticate
+     *
+     * @param insecure
+     *  whether the certificate of the server should be accepted without validation, as is needed for
+     *  the self-signed certificates of development deployments
+     */
+    public ReplayClient(String baseUrl, String username, String password, boolean insecure) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.authorization = "Basic " + Base64.getEncoder()
+            .encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+        this.socketFactory = insecure ? createInsecureSocketFactory() : null;
+    }
+
+    public String getBaseUrl() {
+        return this.baseUrl;
+    }
+
+    /**
+     * Sends a request to the server.
+     *
+     * @param method
+     *  the HTTP method of the request
+     *
+     * @param path
+     *  the path of the request, relative to the API root; path segments are encoded by this method
+     *
+     * @param query
+     *  the query parameters of the request, or null
+     *
+     * @param mediaType
+     *  the media type of the request body, or null to send JSON
+     *
+     * @param body
+     *  the request body, or null to send the request without a body
+     *
+     * @throws IOException
+     *  if the server cannot be reached
+     *
+     * @return
+     *  the outcome of the request
+     */
+    public Result execute(String method, String path, Map<String, List<String>> query, String mediaType,
+        String body) throws IOException {
+
+        return this.send(method, path, query, mediaType != null ? mediaType : "application/json",
+            body != null ? body.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    /**
+     * Uploads a file to the server as the only part of a multipart form, as is expected by the
+     * manifest import endpoints.
+     *
+     * @param path
+     *  the path of the request, relative to the API root; path segments are encoded by this method
+     *
+     * @param query
+     *  the query parameters of the request, or null
+     *
+     * @param fileName
+     *  the name of the uploaded file
+     *
+     * @param data
+     *  the content of the uploaded file
+     *
+     * @throws IOException
+     *  if the server cannot be reached
+     *
+     * @return
+     *  the outcome of the request
+     */
+    public Result upload(String path, Map<String, List<String>> query, String fileName, byte[] data)
+        throws IOException {
+
+        String boundary = "candlepin-" + UUID.randomUUID();
+        String head = String.format("--%s\r\nContent-Disposition: form-data; name=\"upload\"; " +
+            "filename=\"%s\"\r\nContent-Type: application/octet-stream\r\n\r\n", boundary, fileName);
+        String tail = String.format("\r\n--%s--\r\n", boundary);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(data.length + 512);
+        body.write(head.getBytes(StandardCharsets.UTF_8));
+        body.write(data);
+        body.write(tail.getBytes(StandardCharsets.UTF_8));
+
+        return this.send("POST", path, query, "multipart/form-data; boundary=" + boundary,
+            body.toByteArray());
+    }
+
+    private Result send(String method, String path, Map<String, List<String>> query, String contentType,
+        byte[] body) throws IOException {
+
+        URL url = new URL(this.baseUrl + encodePath(path) + encodeQuery(query));
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+        if (this.socketFactory != null && connection instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) connection).setSSLSocketFactory(this.socketFactory);
+            ((HttpsURLConnection) connection).setHostnameVerifier((host, session) -> true);
+        }
+
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Authorization", this.authorization);
+        connection.setRequestProperty("Accept", "application/json");
+
+        long start = System.nanoTime();
+
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", contentType);
+
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        String response = "";
+
+        if (in != null) {
+            try (InputStream stream = in) {
+                response = IOUtils.toString(stream, "UTF-8");
+            }
+        }
+
+        return new Result(status, response, System.nanoTime() - start);
+    }
+
+    private static String encodePath(String path) throws UnsupportedEncodingException {
+        StringBuilder builder = new StringBuilder();
+
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                builder.append('/').append(URLEncoder.encode(segment, "UTF-8").replace("+", "%20"));
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static String encodeQuery(Map<String, List<String>> query) throws UnsupportedEncodingException {
+        StringBuilder builder = new StringBuilder();
+
+        if (query != null) {
+            for (Map.Entry<String, List<String>> entry : query.entrySet()) {
+                for (String value : entry.getValue()) {
+                    builder.append(builder.length() == 0 ? '?' : '&')
+                        .append(URLEncoder.encode(entry.getKey(), "UTF-8"))
+                        .append('=')
+                        .append(URLEncoder.encode(value, "UTF-8"));
+                }
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static SSLSocketFactory createInsecureSocketFactory() {
+        TrustManager trustAll = new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType) {
+                // Intentionally left empty
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType) {
+                // Intentionally left empty
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        };
+
+        try {
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, new TrustManager[] { trustAll }, null);
+
+            return context.getSocketFactory();
+        }
+        catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to initialize an insecure SSL context", e);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.replay;
+
+import org.candlepin.replay.CaptureRecord.ConsumerRecord;
+import org.candlepin.replay.CaptureRecord.OwnerRecord;
+import org.candlepin.replay.CaptureRecord.RequestRecord;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+
+
+/**
+ * Replays a capture written by the {@link ReplayRecorder} against one or two running servers --
+ * typically a baseline build and a candidate build -- and reports per-endpoint latency percentiles
+ * and, given two targets, the requests whose responses diverged between them.
+ * <p></p>
+ * Each target is first loaded with the synthetic owners, pools and consumers rebuilt from the capture.
+ * Requests are then replayed in the order they were received, at the configured concurrency; requests
+ * involving the same consumer (or, lacking one, the same owner) are always replayed sequentially, so
+ * both targets see the same per-consumer sequence of binds and the comparison of their responses is
+ * meaningful. Targets are replayed one after the other so they do not compete for resources. Binds
+ * are always replayed synchronously, so their results rather than their job details are compared.
+ * <p></p>
+ * Usage:
+ * <pre>
+ *   ReplayDriver --capture capture.jsonl.gz --target https://baseline:8443/candlepin
+ *       [--target https://candidate:8443/candlepin] [--concurrency 4] [--username admin]
+ *       [--password admin] [--insecure] [--no-load]
+ * </pre>
+ * The driver exits with status 1 if any responses diverged, and 2 if it could not run.
+ */
+public class ReplayDriver {
+    private static Logger log = LoggerFactory.getLogger(ReplayDriver.class);
+
+    private final List<ReplayTarget> targets;
+    private final int concurrency;
+    private final SyntheticDataLoader loader;
+    private final ResponseNormalizer normalizer;
+
+    /**
+     * Creates a driver replaying against the given targets.
+     *
+     * @param targets
+     *  the targets to replay against; the first is the baseline against which the second, if any, is
+     *  compared
+     *
+     * @param concurrency
+     *  the number of requests to replay concurrently against a target
+     */
+    public ReplayDriver(List<ReplayTarget> targets, int concurrency) {
+        if (targets == null || targets.isEmpty() || targets.size() > 2) {
+            throw new IllegalArgumentException("one or two targets are required");
+        }
+
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+
+        this.targets = targets;
+        this.concurrency = concurrency;
+        this.loader = new SyntheticDataLoader();
+        this.normalizer = new ResponseNormalizer();
+    }
+
+    /**
+     * Replays the given capture against the targets of this driver.
+     *
+     * @param records
+     *  the records of the capture to replay
+     *
+     * @param load
+     *  whether the synthetic data of the capture should be loaded into the targets before replaying;
+     *  may be skipped when the targets were loaded by a previous run
+     *
+     * @throws IOException
+     *  if a target cannot be reached while loading its synthetic data
+     *
+     * @throws InterruptedException
+     *  if interrupted while waiting for the replay to complete
+     *
+     * @return
+     *  the report of the replay
+     */
+    public ReplayReport replay(List<CaptureRecord> records, boolean load)
+        throws IOException, InterruptedException {
+
+        List<OwnerRecord> owners = new ArrayList<>();
+        List<ConsumerRecord> consumers = new ArrayList<>();
+        List<RequestRecord> requests = new ArrayList<>();
+
+        for (CaptureRecord record : records) {
+            if (record instanceof OwnerRecord) {
+                owners.add((OwnerRecord) record);
+            }
+            else if (record instanceof ConsumerRecord) {
+                consumers.add((ConsumerRecord) record);
+            }
+            else if (record instanceof RequestRecord) {
+                requests.add((RequestRecord) record);
+            }
+        }
+
+        requests.sort(Comparator.comparingLong(RequestRecord::getOffsetMs));
+
+        ReplayReport report = new ReplayReport(this.targets.stream()
+            .map(ReplayTarget::getName)
+            .collect(Collectors.toList()));
+
+        List<String[]> fingerprints = new ArrayList<>();
+        for (ReplayTarget target : this.targets) {
+            if (load) {
+                this.loader.load(target, owners, consumers);
+            }
+
+            log.info("Replaying {} requests against {}", requests.size(), target.getName());
+            fingerprints.add(this.replay(target, requests, report));
+        }
+
+        if (fingerprints.size() > 1) {
+            for (int i = 0; i < requests.size(); ++i) {
+                String baseline = fingerprints.get(0)[i];
+                String candidate = fingerprints.get(1)[i];
+
+                if (baseline != null && candidate != null) {
+                    report.recordComparison(requests.get(i), baseline, candidate);
+                }
+            }
+        }
+
+        return report;
+    }
+
+    private String[] replay(ReplayTarget target, List<RequestRecord> requests, ReplayReport report)
+        throws InterruptedException {
+
+        String[] fingerprints = new String[requests.size()];
+        Map<String, List<Integer>> sequences = new LinkedHashMap<>();
+
+        for (int i = 0; i < requests.size(); ++i) {
+            RequestRecord request = requests.get(i);
+            String key = request.getConsumer() != null ? request.getConsumer() : request.getOwner();
+
+            sequences.computeIfAbsent(key != null ? key : "request-" + i, k -> new ArrayList<>()).add(i);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(this.concurrency);
+
+        for (List<Integer> sequence : sequences.values()) {
+            executor.execute(() -> {
+                for (int index : sequence) {
+                    fingerprints[index] = this.replay(target, requests.get(index), report);
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+        return fingerprints;
+    }
+
+    private String replay(ReplayTarget target, RequestRecord request, ReplayReport report) {
+        Map<String, List<String>> query = new HashMap<>();
+
+        for (Map.Entry<String, List<String>> entry : request.getQuery().entrySet()) {
+            List<String> values = new ArrayList<>();
+
+            for (String value : entry.getValue()) {
+                if (("pool".equals(entry.getKey()) || "from_pool".equals(entry.getKey())) &&
+                    target.isUnmappedPool(value)) {
+
+                    report.recordSkipped(target.getName(), request.getEndpoint());
+                    return null;
+                }
+
+                values.add(target.resolve(value));
+            }
+
+            query.put(entry.getKey(), values);
+        }
+
+        if (request.getEndpoint() == ReplayEndpoint.BIND) {
+            query.put("async", Collections.singletonList("false"));
+        }
+
+        StringBuilder resolved = new StringBuilder();
+        for (String segment : request.getPath().split("/")) {
+            if (!segment.isEmpty()) {
+                resolved.append('/').append(target.resolve(segment));
+            }
+        }
+
+        try {
+            ReplayClient.Result result = target.getClient().execute(request.getMethod(), resolved.toString(),
+                query, request.getMediaType(), request.getBody());
+
+            report.recordRequest(target.getName(), request.getEndpoint(), result.getStatus(),
+                result.getNanos());
+
+            return this.normalizer.fingerprint(target, result);
+        }
+        catch (IOException e) {
+            log.warn("Unable to replay {} {} against {}", request.getMethod(), request.getPath(),
+                target.getName(), e);
+
+            report.recordError(target.getName(), request.getEndpoint());
+            return "error";
+        }
+    }
+
+    /**
+     * Runs the driver from the command line.
+     *
+     * @param args
+     *  the command line arguments
+     */
+    public static void main(String[] args) {
+        String capture = null;
+        List<String> urls = new ArrayList<>();
+        String username = "admin";
+        String password = "admin";
+        int concurrency = 4;
+        boolean insecure = false;
+        boolean load = true;
+
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "--capture":
+                        capture = args[++i];
+                        break;
+                    case "--target":
+                        urls.add(args[++i]);
+                        break;
+                    case "--username":
+                        username = args[++i];
+                        break;
+                    case "--password":
+                        password = args[++i];
+                        break;
+                    case "--concurrency":
+                        concurrency = Integer.parseInt(args[++i]);
+                        break;
+                    case "--insecure":
+                        insecure = true;
+                        break;
+                    case "--no-load":
+                        load = false;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option: " + args[i]);
+                }
+            }
+
+            if (capture == null || urls.isEmpty()) {
+                throw new IllegalArgumentException("a capture and at least one target are required");
+            }
+
+            List<ReplayTarget> targets = new ArrayList<>();
+            for (String url : urls) {
+                String name = targets.isEmpty() ? "baseline" : "candidate";
+                targets.add(new ReplayTarget(name, new ReplayClient(url, username, password, insecure)));
+            }
+
+            ReplayReport report = new ReplayDriver(targets, concurrency)
+                .replay(CaptureReader.read(Paths.get(capture)), load);
+
+            report.print(System.out);
+            System.exit(report.getDivergentCount() > 0 ? 1 : 0);
+        }
+        catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Invalid arguments: " + e.getMessage());
+            System.err.println("Usage: ReplayDriver --capture <file> --target <url> [--target <url>] " +
+                "[--concurrency <n>] [--username <user>] [--password <password>] [--insecure] [--no-load]");
+            System.exit(2);
+        }
+        catch (IOException | InterruptedException e) {
+            System.err.println("Replay failed: " + e);
+            System.exit(2);
+        }
+    }
+}
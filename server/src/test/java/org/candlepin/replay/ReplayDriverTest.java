@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.replay;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.replay.CaptureRecord.ConsumerRecord;
+import org.candlepin.replay.CaptureRecord.EntitlementRecord;
+import org.candlepin.replay.CaptureRecord.OwnerRecord;
+import org.candlepin.replay.CaptureRecord.PoolRecord;
+import org.candlepin.replay.CaptureRecord.ProductRecord;
+import org.candlepin.replay.CaptureRecord.RequestRecord;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+
+
+public class ReplayDriverTest {
+
+    private static final String ENTITLEMENTS_PATH = "/consumers/rp-consumer/entitlements";
+    private static final String COMPLIANCE_PATH = "/consumers/rp-consumer/compliance";
+
+    private List<CaptureRecord> capture;
+
+    @BeforeEach
+    public void setup() {
+        ProductRecord product = new ProductRecord();
+        product.setId("prod-1");
+
+        PoolRecord pool = new PoolRecord();
+        pool.setId("rp-pool");
+        pool.setProductId("prod-1");
+        pool.setQuantity(10L);
+
+        OwnerRecord owner = new OwnerRecord();
+        owner.setId("rp-owner-id");
+        owner.setKey("rp-owner");
+        owner.getProducts().add(product);
+        owner.getPools().add(pool);
+
+        EntitlementRecord entitlement = new EntitlementRecord();
+        entitlement.setPool("rp-pool");
+        entitlement.setQuantity(1);
+
+        ConsumerRecord consumer = new ConsumerRecord();
+        consumer.setUuid("rp-consumer");
+        consumer.setOwner("rp-owner");
+        consumer.setType("system");
+        consumer.getEntitlements().add(entitlement);
+
+        this.capture = new ArrayList<>(Arrays.asList(owner, consumer,
+            this.buildRequest(ReplayEndpoint.BIND, "POST", ENTITLEMENTS_PATH, "rp-pool", 2),
+            this.buildRequest(ReplayEndpoint.BIND, "POST", ENTITLEMENTS_PATH, "rp-uncaptured", 3),
+            this.buildRequest(ReplayEndpoint.COMPLIANCE, "GET", COMPLIANCE_PATH, null, 1)));
+    }
+
+    private RequestRecord buildRequest(ReplayEndpoint endpoint, String method, String path, String pool,
+        long offset) {
+
+        RequestRecord request = new RequestRecord();
+        request.setEndpoint(endpoint);
+        request.setMethod(method);
+        request.setPath(path);
+        request.setConsumer("rp-consumer");
+        request.setOffsetMs(offset);
+
+        if (pool != null) {
+            request.getQuery().put("pool", Collections.singletonList(pool));
+            request.getQuery().put("async", Collections.singletonList("true"));
+        }
+
+        return request;
+    }
+
+    private ReplayClient mockClient(String poolId, String complianceStatus) throws Exception {
+        ReplayClient client = mock(ReplayClient.class);
+
+        when(client.execute(anyString(), anyString(), any(), any(), any())).thenAnswer(invocation -> {
+            String method = invocation.getArgument(0);
+            String path = invocation.getArgument(1);
+
+            if ("POST".equals(method) && "/owners".equals(path)) {
+                return new ReplayClient.Result(200, "{\"id\": \"owner-" + poolId + "\"}", 1);
+            }
+            else if ("POST".equals(method) && path.endsWith("/pools")) {
+                return new ReplayClient.Result(200, "{\"id\": \"" + poolId + "\"}", 1);
+            }
+            else if (path.endsWith("/entitlements")) {
+                String entitlement = String.format("[{\"id\": \"%d\", \"poolId\": \"%s\", \"quantity\": 1}]",
+                    System.nanoTime(), poolId);
+
+                return new ReplayClient.Result(200, entitlement, 1000000);
+            }
+            else if (path.endsWith("/compliance")) {
+                return new ReplayClient.Result(200, "{\"status\": \"" + complianceStatus + "\"}", 2000000);
+            }
+
+            return new ReplayClient.Result(200, "", 1);
+        });
+
+        return client;
+    }
+
+    @Test
+    public void testDriverLoadsTheCaptureAndDetectsDivergence() throws Exception {
+        ReplayClient baselineClient = this.mockClient("pool-a", "valid");
+        ReplayClient candidateClient = this.mockClient("pool-b", "invalid");
+
+        ReplayTarget baseline = new ReplayTarget("baseline", baselineClient);
+        ReplayTarget candidate = new ReplayTarget("candidate", candidateClient);
+
+        ReplayReport report = new ReplayDriver(Arrays.asList(baseline, candidate), 2)
+            .replay(this.capture, true);
+
+        // Only the compliance status differs; the binds differ only in generated and mapped IDs
+        assertEquals(1, report.getDivergentCount());
+        assertEquals(1, report.getLatency("baseline", ReplayEndpoint.BIND).getCount());
+        assertEquals(1, report.getLatency("candidate", ReplayEndpoint.COMPLIANCE).getCount());
+
+        assertEquals("pool-a", baseline.resolve("rp-pool"));
+        assertEquals("owner-pool-b", candidate.resolve("rp-owner-id"));
+
+        verify(baselineClient)
+            .execute(eq("POST"), eq("/consumers"), any(), isNull(), contains("rp-consumer"));
+        verify(candidateClient).execute(eq("POST"), eq(ENTITLEMENTS_PATH),
+            argThat((Map<String, List<String>> query) -> query.get("pool").contains("pool-b") &&
+            Collections.singletonList("false").equals(query.get("async"))), isNull(), isNull());
+        verify(candidateClient, never()).execute(eq("POST"), eq(ENTITLEMENTS_PATH),
+            argThat((Map<String, List<String>> query) -> query.get("pool").contains("rp-uncaptured")), any(),
+            any());
+    }
+
+    @Test
+    public void testSingleTargetIsNotCompared() throws Exception {
+        ReplayTarget baseline = new ReplayTarget("baseline", this.mockClient("pool-a", "valid"));
+
+        ReplayReport report = new ReplayDriver(Collections.singletonList(baseline), 1)
+            .replay(this.capture, true);
+
+        assertEquals(0, report.getDivergentCount());
+        assertEquals(1, report.getLatency("baseline", ReplayEndpoint.COMPLIANCE).getCount());
+    }
+
+    @Test
+    public void testDriverRequiresOneOrTwoTargets() {
+        ReplayTarget target = new ReplayTarget("target", mock(ReplayClient.class));
+
+        assertThrows(IllegalArgumentException.class, () -> new ReplayDriver(Collections.emptyList(), 1));
+        assertThrows(IllegalArgumentException.class,
+            () -> new ReplayDriver(Arrays.asList(target, target, target), 1));
+        assertThrows(IllegalArgumentException.class,
+            () -> new ReplayDriver(Collections.singletonList(target), 0));
+    }
+}
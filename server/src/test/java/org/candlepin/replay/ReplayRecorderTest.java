@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.replay;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.Owner;
+import org.candlepin.model.Pool;
+import org.candlepin.model.Product;
+import org.candlepin.replay.CaptureRecord.ConsumerRecord;
+import org.candlepin.replay.CaptureRecord.OwnerRecord;
+import org.candlepin.replay.CaptureRecord.RequestRecord;
+import org.candlepin.test.DatabaseTestFixture;
+import org.candlepin.test.TestUtil;
+
+import org.apache.commons.io.FileUtils;
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.ws.rs.core.MultivaluedMap;
+
+
+
+public class ReplayRecorderTest extends DatabaseTestFixture {
+
+    private Path directory;
+    private CandlepinCommonTestConfig captureConfig;
+
+    private Owner owner;
+    private Pool pool;
+    private Consumer consumer;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        this.directory = Files.createTempDirectory("replay");
+
+        this.captureConfig = new CandlepinCommonTestConfig();
+        this.captureConfig.setProperty(ConfigProperties.REPLAY_CAPTURE_ENABLED, "true");
+        this.captureConfig.setProperty(ConfigProperties.REPLAY_CAPTURE_DIR, this.directory.toString());
+        this.captureConfig.setProperty(ConfigProperties.REPLAY_CAPTURE_SECRET, "secret");
+
+        this.owner = this.createOwner("replay-owner", "Replay Owner");
+
+        Product product = TestUtil.createProduct("replay-product", "Secret Product Name");
+        product.setAttribute("sockets", "2");
+        product = this.createProduct(product, this.owner);
+
+        this.pool = this.createPool(this.owner, product);
+
+        this.consumer = this.createConsumer(this.owner);
+        this.consumer.setFact("cpu.cpu_socket(s)", "4");
+        this.consumer.setFact("network.hostname", "host.example.com");
+        this.consumer = this.consumerCurator.merge(this.consumer);
+
+        this.createEntitlement(this.owner, this.consumer, this.pool);
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        FileUtils.deleteDirectory(this.directory.toFile());
+    }
+
+    private ReplayRecorder buildRecorder() {
+        return new ReplayRecorder(this.captureConfig, this.ownerCurator, this.consumerCurator,
+            this.consumerTypeCurator, this.poolCurator);
+    }
+
+    private RequestRecord captureBind(ReplayRecorder recorder) {
+        MultivaluedMap<String, String> pathParams = new MultivaluedMapImpl<>();
+        pathParams.putSingle("consumer_uuid", this.consumer.getUuid());
+
+        MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl<>();
+        queryParams.putSingle("pool", this.pool.getId());
+        queryParams.putSingle("email", "user@example.com");
+        queryParams.putSingle("quantity", "1");
+
+        RequestRecord record = recorder.begin(ReplayEndpoint.BIND, "POST",
+            "/consumers/" + this.consumer.getUuid() + "/entitlements", pathParams, queryParams, null, null);
+
+        recorder.complete(record, 200, 1000000);
+        return record;
+    }
+
+    private List<CaptureRecord> readCapture() throws IOException {
+        List<CaptureRecord> records = new ArrayList<>();
+
+        try (Stream<Path> files = Files.list(this.directory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                records.addAll(CaptureReader.read(file));
+            }
+        }
+
+        return records;
+    }
+
+    @Test
+    public void testBindIsCapturedWithItsOwnerAndConsumer() throws IOException {
+        ReplayRecorder recorder = this.buildRecorder();
+        ReplayAnonymizer anonymizer = recorder.getAnonymizer();
+
+        this.captureBind(recorder);
+
+        List<CaptureRecord> records = this.readCapture();
+        assertEquals(3, records.size());
+
+        OwnerRecord ownerRecord = (OwnerRecord) records.get(0);
+        assertEquals(anonymizer.pseudonymize("replay-owner"), ownerRecord.getKey());
+        assertEquals(1, ownerRecord.getPools().size());
+        assertEquals(anonymizer.pseudonymize(this.pool.getId()), ownerRecord.getPools().get(0).getId());
+        assertEquals("replay-product", ownerRecord.getPools().get(0).getProductId());
+        assertEquals(1, ownerRecord.getProducts().size());
+        assertEquals("2", ownerRecord.getProducts().get(0).getAttributes().get("sockets"));
+
+        ConsumerRecord consumerRecord = (ConsumerRecord) records.get(1);
+        assertEquals(anonymizer.pseudonymize(this.consumer.getUuid()), consumerRecord.getUuid());
+        assertEquals(ownerRecord.getKey(), consumerRecord.getOwner());
+        assertEquals(Collections.singletonMap("cpu.cpu_socket(s)", "4"), consumerRecord.getFacts());
+        assertEquals(1, consumerRecord.getEntitlements().size());
+        assertEquals(ownerRecord.getPools().get(0).getId(),
+            consumerRecord.getEntitlements().get(0).getPool());
+
+        RequestRecord request = (RequestRecord) records.get(2);
+        assertEquals(ReplayEndpoint.BIND, request.getEndpoint());
+        assertEquals("/consumers/" + consumerRecord.getUuid() + "/entitlements", request.getPath());
+        assertEquals(Collections.singletonList(ownerRecord.getPools().get(0).getId()),
+            request.getQuery().get("pool"));
+        assertEquals(Collections.singletonList("1"), request.getQuery().get("quantity"));
+        assertFalse(request.getQuery().containsKey("email"));
+        assertEquals(consumerRecord.getUuid(), request.getConsumer());
+        assertEquals(200, request.getStatus());
+        assertEquals(1.0, request.getDurationMs(), 0.0);
+    }
+
+    @Test
+    public void testOwnersAndConsumersAreCapturedOnce() throws IOException {
+        ReplayRecorder recorder = this.buildRecorder();
+
+        this.captureBind(recorder);
+        this.captureBind(recorder);
+
+        List<CaptureRecord> records = this.readCapture();
+        assertEquals(4, records.size());
+        assertTrue(records.get(3) instanceof RequestRecord);
+    }
+
+    @Test
+    public void testPoolListingCapturesTheOwner() throws IOException {
+        ReplayRecorder recorder = this.buildRecorder();
+
+        MultivaluedMap<String, String> pathParams = new MultivaluedMapImpl<>();
+        pathParams.putSingle("owner_key", "replay-owner");
+
+        RequestRecord record = recorder.begin(ReplayEndpoint.POOL_LISTING, "GET",
+            "/owners/replay-owner/pools", pathParams, new MultivaluedMapImpl<>(), null, null);
+        recorder.complete(record, 200, 1000000);
+
+        List<CaptureRecord> records = this.readCapture();
+        assertEquals(2, records.size());
+        assertTrue(records.get(0) instanceof OwnerRecord);
+        assertEquals("/owners/" + recorder.getAnonymizer().pseudonymize("replay-owner") + "/pools",
+            ((RequestRecord) records.get(1)).getPath());
+    }
+
+    @Test
+    public void testNothingIsCapturedWhenDisabled() throws IOException {
+        this.captureConfig.setProperty(ConfigProperties.REPLAY_CAPTURE_ENABLED, "false");
+        ReplayRecorder recorder = this.buildRecorder();
+
+        assertFalse(recorder.isEnabled());
+        assertNull(this.captureBind(recorder));
+        assertEquals(0, this.readCapture().size());
+    }
+
+    @Test
+    public void testCapturingStopsAtTheRequestLimit() throws IOException {
+        this.captureConfig.setProperty(ConfigProperties.REPLAY_CAPTURE_MAX_REQUESTS, "1");
+        ReplayRecorder recorder = this.buildRecorder();
+
+        assertNotNull(this.captureBind(recorder));
+        assertFalse(recorder.isEnabled());
+        assertNull(this.captureBind(recorder));
+        assertEquals(3, this.readCapture().size());
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.replay;
+
+import org.candlepin.tracing.HistogramSnapshot;
+import org.candlepin.tracing.LatencyHistogram;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+
+
+/**
+ * Collects the outcome of a replay: per-endpoint latency percentiles and error counts for each target
+ * and, when a capture is replayed against two targets, the number of requests whose responses
+ * diverged between them.
+ */
+public class ReplayReport {
+
+    /** The number of divergent requests listed in the report */
+    private static final int MAX_EXAMPLES = 10;
+
+    /**
+     * Per-target statistics for a single endpoint.
+     */
+    private static class EndpointStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+    }
+
+    private final Map<String, Map<ReplayEndpoint, EndpointStats>> stats;
+    private final Map<ReplayEndpoint, LongAdder> compared;
+    private final Map<ReplayEndpoint, LongAdder> divergent;
+    private final List<String> examples;
+
+    /**
+     * Creates an empty report for the given targets.
+     *
+     * @param targets
+     *  the names of the targets being replayed against, in the order they are reported
+     */
+    public ReplayReport(List<String> targets) {
+        this.stats = new LinkedHashMap<>();
+        this.compared = new EnumMap<>(ReplayEndpoint.class);
+        this.divergent = new EnumMap<>(ReplayEndpoint.class);
+        this.examples = Collections.synchronizedList(new ArrayList<>());
+
+        for (String target : targets) {
+            Map<ReplayEndpoint, EndpointStats> endpoints = new EnumMap<>(ReplayEndpoint.class);
+            for (ReplayEndpoint endpoint : ReplayEndpoint.values()) {
+                endpoints.put(endpoint, new EndpointStats());
+            }
+
+            this.stats.put(target, endpoints);
+        }
+
+        for (ReplayEndpoint endpoint : ReplayEndpoint.values()) {
+            this.compared.put(endpoint, new LongAdder());
+            this.divergent.put(endpoint, new LongAdder());
+        }
+    }
+
+    /**
+     * Records a replayed request. Requests answered with a server error are counted as errors in
+     * addition to having their latency recorded.
+     *
+     * @param target
+     *  the name of the target the request was sent to
+     *
+     * @param endpoint
+     *  the endpoint of the request
+     *
+     * @param status
+     *  the HTTP status of the response
+     *
+     * @param nanos
+     *  the latency of the request, in nanoseconds
+     */
+    public void recordRequest(String target, ReplayEndpoint endpoint, int status, long nanos) {
+        EndpointStats endpointStats = this.stats.get(target).get(endpoint);
+        endpointStats.latency.record(nanos);
+
+        if (status >= 500) {
+            endpointStats.errors.increment();
+        }
+    }
+
+    /**
+     * Records a request which could not be sent to a target.
+     *
+     * @param target
+     *  the name of the target the request was to be sent to
+     *
+     * @param endpoint
+     *  the endpoint of the request
+     */
+    public void recordError(String target, ReplayEndpoint endpoint) {
+        this.stats.get(target).get(endpoint).errors.increment();
+    }
+
+    /**
+     * Records a request which was not replayed because it references an entity missing from the
+     * capture.
+     *
+     * @param target
+     *  the name of the target the request was to be sent to
+     *
+     * @param endpoint
+     *  the endpoint of the request
+     */
+    public void recordSkipped(String target, ReplayEndpoint endpoint) {
+        this.stats.get(target).get(endpoint).skipped.increment();
+    }
+
+    /**
+     * Records the comparison of the responses of two targets to the same request.
+     *
+     * @param request
+     *  the compared request
+     *
+     * @param baseline
+     *  the fingerprint of the response of the baseline target
+     *
+     * @param candidate
+     *  the fingerprint of the response of the candidate target
+     */
+    public void recordComparison(CaptureRecord.RequestRecord request, String baseline, String candidate) {
+        this.compared.get(request.getEndpoint()).increment();
+
+        if (!baseline.equals(candidate)) {
+            this.divergent.get(request.getEndpoint()).increment();
+
+            if (this.examples.size() < MAX_EXAMPLES) {
+                this.examples.add(String.format("%s %s %s: %s vs %s", request.getEndpoint(),
+                    request.getMethod(), request.getPath(), baseline, candidate));
+            }
+        }
+    }
+
+    /**
+     * Fetches a snapshot of the latencies observed for an endpoint on a target.
+     *
+     * @param target
+     *  the name of the target
+     *
+     * @param endpoint
+     *  the endpoint
+     *
+     * @return
+     *  the latency snapshot of the endpoint on the target
+     */
+    public HistogramSnapshot getLatency(String target, ReplayEndpoint endpoint) {
+        return this.stats.get(target).get(endpoint).latency.snapshot();
+    }
+
+    /**
+     * @return
+     *  the total number of requests whose responses diverged between the targets
+     */
+    public long getDivergentCount() {
+        return this.divergent.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * Prints the report in a human-readable tabular form.
+     *
+     * @param out
+     *  the stream to print the report to
+     */
+    public void print(PrintStream out) {
+        out.printf("%-12s %-22s %8s %8s %8s %10s %10s %10s %10s%n", "target", "endpoint", "count", "errors",
+            "skipped", "mean ms", "p50 ms", "p95 ms", "p99 ms");
+
+        for (Map.Entry<String, Map<ReplayEndpoint, EndpointStats>> target : this.stats.entrySet()) {
+            for (Map.Entry<ReplayEndpoint, EndpointStats> entry : target.getValue().entrySet()) {
+                EndpointStats endpointStats = entry.getValue();
+                HistogramSnapshot latency = endpointStats.latency.snapshot();
+
+                out.printf("%-12s %-22s %8d %8d %8d %10.2f %10.2f %10.2f %10.2f%n", target.getKey(),
+                    entry.getKey(), latency.getCount(), endpointStats.errors.sum(),
+                    endpointStats.skipped.sum(), latency.getMeanMs(), latency.getP50Ms(), latency.getP95Ms(),
+                    latency.getP99Ms());
+            }
+        }
+
+        if (this.stats.size() > 1) {
+            out.println();
+            out.printf("%-22s %10s %10s%n", "endpoint", "compared", "divergent");
+
+            for (ReplayEndpoint endpoint : ReplayEndpoint.values()) {
+                out.printf("%-22s %10d %10d%n", endpoint, this.compared.get(endpoint).sum(),
+                    this.divergent.get(endpoint).sum());
+            }
+
+            synchronized (this.examples) {
+                for (String example : this.examples) {
+                    out.println("  diverged: " + example);
+                }
+            }
+        }
+    }
+}
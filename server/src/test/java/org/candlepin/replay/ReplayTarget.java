@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.replay;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+
+/**
+ * A server against which a capture is replayed, along with the mapping of the pseudonyms in the
+ * capture to the IDs of the entities created from them on that server. Owner keys and consumer UUIDs
+ * are chosen by the client, so the synthetic data uses the pseudonyms themselves; only the IDs which
+ * the server generates, such as those of owners and pools, need to be mapped.
+ */
+public class ReplayTarget {
+
+    private final String name;
+    private final ReplayClient client;
+    private final Map<String, String> ids;
+    private final Map<String, String> pseudonyms;
+
+    public ReplayTarget(String name, ReplayClient client) {
+        this.name = name;
+        this.client = client;
+        this.ids = new ConcurrentHashMap<>();
+        this.pseudonyms = new ConcurrentHashMap<>();
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public ReplayClient getClient() {
+        return this.client;
+    }
+
+    /**
+     * Maps a pseudonym to the ID of the entity created from it on this target.
+     *
+     * @param pseudonym
+     *  the pseudonym of the entity in the capture
+     *
+     * @param id
+     *  the ID of the entity on this target
+     */
+    public void mapId(String pseudonym, String id) {
+        this.ids.put(pseudonym, id);
+        this.pseudonyms.put(id, pseudonym);
+    }
+
+    /**
+     * Translates a value of a captured request to the value to send to this target.
+     *
+     * @param value
+     *  the captured value
+     *
+     * @return
+     *  the ID mapped to the value if it is a mapped pseudonym, or the value itself otherwise
+     */
+    public String resolve(String value) {
+        return value != null ? this.ids.getOrDefault(value, value) : null;
+    }
+
+    /**
+     * Checks whether the given captured value is a pseudonym which could not be mapped to an entity on
+     * this target, such as the ID of a pool which was not captured.
+     *
+     * @param value
+     *  the captured value
+     *
+     * @return
+     *  true if the value is an unmapped pool pseudonym
+     */
+    public boolean isUnmappedPool(String value) {
+        return value != null && value.startsWith(ReplayAnonymizer.PSEUDONYM_PREFIX) &&
+            !this.ids.containsKey(value);
+    }
+
+    /**
+     * @return
+     *  an unmodifiable view of the mapping of the IDs of this target back to capture pseudonyms
+     */
+    public Map<String, String> getPseudonyms() {
+        return Collections.unmodifiableMap(this.pseudonyms);
+    }
+}
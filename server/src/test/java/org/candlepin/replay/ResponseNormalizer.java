@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.replay;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+
+
+/**
+ * Reduces replayed responses to fingerprints which can be compared across targets. Fields which
+ * legitimately differ between two servers holding the same data -- generated IDs, timestamps,
+ * certificates and links -- are removed, IDs mapped by the target are translated back to their
+ * capture pseudonyms, object fields are sorted by name and arrays are sorted by content, so that two
+ * responses have the same fingerprint exactly when the builds which produced them agree.
+ */
+public class ResponseNormalizer {
+
+    /** Fields whose values are expected to differ between targets */
+    private static final Set<String> VOLATILE_FIELDS = Collections.unmodifiableSet(new HashSet<>(
+        Arrays.asList("id", "created", "updated", "href", "serial", "cert", "key", "certificates", "idCert",
+        "date", "lastCheckin", "startTime", "finishTime", "statusPath", "principalName", "targetId")));
+
+    private final ObjectMapper mapper;
+
+    public ResponseNormalizer() {
+        this.mapper = CaptureRecord.createObjectMapper();
+    }
+
+    /**
+     * Computes the fingerprint of a response received from the given target.
+     *
+     * @param target
+     *  the target which produced the response
+     *
+     * @param result
+     *  the response to fingerprint
+     *
+     * @return
+     *  the fingerprint of the response
+     */
+    public String fingerprint(ReplayTarget target, ReplayClient.Result result) {
+        return result.getStatus() + ":" + DigestUtils.sha256Hex(this.normalize(result.getBody(),
+            target.getPseudonyms()));
+    }
+
+    /**
+     * Normalizes a response body. Bodies which are not JSON are returned as-is.
+     *
+     * @param body
+     *  the response body
+     *
+     * @param pseudonyms
+     *  the mapping of target IDs to capture pseudonyms
+     *
+     * @return
+     *  the normalized body
+     */
+    public String normalize(String body, Map<String, String> pseudonyms) {
+        if (body == null || body.isEmpty()) {
+            return "";
+        }
+
+        try {
+            return this.mapper.writeValueAsString(this.normalize(this.mapper.readTree(body), pseudonyms));
+        }
+        catch (IOException e) {
+            return body;
+        }
+    }
+
+    private JsonNode normalize(JsonNode node, Map<String, String> pseudonyms) {
+        if (node.isTextual()) {
+            String pseudonym = pseudonyms.get(node.textValue());
+            return pseudonym != null ? new TextNode(pseudonym) : node;
+        }
+
+        if (node.isArray()) {
+            List<JsonNode> elements = new ArrayList<>();
+            for (JsonNode element : node) {
+                elements.add(this.normalize(element, pseudonyms));
+            }
+
+            elements.sort((lhs, rhs) -> lhs.toString().compareTo(rhs.toString()));
+
+            ArrayNode normalized = this.mapper.createArrayNode();
+            normalized.addAll(elements);
+            return normalized;
+        }
+
+        if (node.isObject()) {
+            Map<String, JsonNode> fields = new TreeMap<>();
+            node.fields().forEachRemaining(field -> {
+                if (!VOLATILE_FIELDS.contains(field.getKey())) {
+                    fields.put(field.getKey(), this.normalize(field.getValue(), pseudonyms));
+                }
+            });
+
+            ObjectNode normalized = this.mapper.createObjectNode();
+            normalized.setAll(fields);
+            return normalized;
+        }
+
+        return node;
+    }
+}
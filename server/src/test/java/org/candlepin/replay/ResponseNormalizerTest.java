@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.replay;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+
+
+public class ResponseNormalizerTest {
+
+    private ResponseNormalizer normalizer;
+
+    @BeforeEach
+    public void setup() {
+        this.normalizer = new ResponseNormalizer();
+    }
+
+    @Test
+    public void testVolatileFieldsAreRemoved() {
+        String normalized = this.normalizer.normalize(
+            "{\"id\": \"abc\", \"created\": \"2019-01-01\", \"quantity\": 2}", Collections.emptyMap());
+
+        assertEquals("{\"quantity\":2}", normalized);
+    }
+
+    @Test
+    public void testTargetIdsAreTranslatedToPseudonyms() {
+        Map<String, String> pseudonyms = Collections.singletonMap("pool-on-target", "rp-pool");
+
+        String normalized = this.normalizer.normalize("{\"pool\": {\"poolId\": \"pool-on-target\"}}",
+            pseudonyms);
+
+        assertEquals("{\"pool\":{\"poolId\":\"rp-pool\"}}", normalized);
+    }
+
+    @Test
+    public void testFieldAndArrayOrderIsIgnored() {
+        String lhs = this.normalizer.normalize("[{\"b\": 1, \"a\": 2}, {\"a\": 1}]", Collections.emptyMap());
+        String rhs = this.normalizer.normalize("[{\"a\": 1}, {\"a\": 2, \"b\": 1}]", Collections.emptyMap());
+
+        assertEquals(lhs, rhs);
+    }
+
+    @Test
+    public void testNonJsonBodiesAreKeptAsIs() {
+        assertEquals("not json {", this.normalizer.normalize("not json {", Collections.emptyMap()));
+        assertEquals("", this.normalizer.normalize(null, Collections.emptyMap()));
+    }
+
+    @Test
+    public void testFingerprintsIncludeTheStatus() {
+        ReplayTarget target = new ReplayTarget("target", mock(ReplayClient.class));
+
+        String ok = this.normalizer.fingerprint(target, new ReplayClient.Result(200, "{}", 1));
+        String error = this.normalizer.fingerprint(target, new ReplayClient.Result(500, "{}", 1));
+
+        assertNotEquals(ok, error);
+        assertEquals(ok, this.normalizer.fingerprint(target, new ReplayClient.Result(200, "{}", 5)));
+    }
+}
@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.replay;
+
+import org.candlepin.replay.CaptureRecord.ConsumerRecord;
+import org.candlepin.replay.CaptureRecord.EntitlementRecord;
+import org.candlepin.replay.CaptureRecord.OwnerRecord;
+import org.candlepin.replay.CaptureRecord.PoolRecord;
+import org.candlepin.replay.CaptureRecord.ProductRecord;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * Rebuilds the owners, products, pools and consumers of a capture on a replay target through its API,
+ * so that the captured requests find the same state they originally did. Owners left behind by a
+ * previous replay are deleted first, so a target may be loaded repeatedly.
+ * <p></p>
+ * Pools are recreated as custom pools of their owner, which is sufficient for the rules to evaluate
+ * them as they evaluated the originals, but does not recreate their upstream subscriptions.
+ */
+public class SyntheticDataLoader {
+    private static Logger log = LoggerFactory.getLogger(SyntheticDataLoader.class);
+
+    private final ObjectMapper mapper;
+    private int failures;
+
+    public SyntheticDataLoader() {
+        this.mapper = CaptureRecord.createObjectMapper();
+    }
+
+    /**
+     * Loads the given owners and consumers into the given target, recording the IDs of the created
+     * owners and pools in the target.
+     *
+     * @param target
+     *  the target to load
+     *
+     * @param owners
+     *  the owners to create, along with their products and pools
+     *
+     * @param consumers
+     *  the consumers to register, along with the entitlements they held when captured
+     *
+     * @throws IOException
+     *  if the target cannot be reached
+     *
+     * @return
+     *  the number of entities which could not be created
+     */
+    public int load(ReplayTarget target, Collection<OwnerRecord> owners, Collection<ConsumerRecord> consumers)
+        throws IOException {
+
+        this.failures = 0;
+
+        for (OwnerRecord owner : owners) {
+            this.loadOwner(target, owner);
+        }
+
+        for (ConsumerRecord consumer : consumers) {
+            this.loadConsumer(target, consumer);
+        }
+
+        for (ConsumerRecord consumer : consumers) {
+            for (EntitlementRecord entitlement : consumer.getEntitlements()) {
+                if (target.isUnmappedPool(entitlement.getPool())) {
+                    continue;
+                }
+
+                Map<String, List<String>> query = new HashMap<>();
+                query.put("pool", Collections.singletonList(target.resolve(entitlement.getPool())));
+                if (entitlement.getQuantity() != null) {
+                    query.put("quantity", Collections.singletonList(entitlement.getQuantity().toString()));
+                }
+
+                this.send(target, "POST", "/consumers/" + consumer.getUuid() + "/entitlements", query, null);
+            }
+        }
+
+        log.info("Loaded {} owners and {} consumers into {} with {} failures", owners.size(),
+            consumers.size(), target.getName(), this.failures);
+
+        return this.failures;
+    }
+
+    private void loadOwner(ReplayTarget target, OwnerRecord owner) throws IOException {
+        target.getClient().execute("DELETE", "/owners/" + owner.getKey(), null, null, null);
+
+        ObjectNode ownerNode = this.mapper.createObjectNode()
+            .put("key", owner.getKey())
+            .put("displayName", owner.getKey());
+
+        JsonNode created = this.send(target, "POST", "/owners", null, ownerNode);
+        if (created == null) {
+            return;
+        }
+
+        target.mapId(owner.getId(), created.path("id").asText());
+
+        for (ProductRecord product : owner.getProducts()) {
+            ObjectNode productNode = this.mapper.createObjectNode()
+                .put("id", product.getId())
+                .put("name", product.getId());
+
+            if (product.getMultiplier() != null) {
+                productNode.put("multiplier", product.getMultiplier());
+            }
+
+            productNode.set("attributes", this.mapper.valueToTree(product.getAttributes()));
+            this.send(target, "POST", "/owners/" + owner.getKey() + "/products", null, productNode);
+        }
+
+        for (PoolRecord pool : owner.getPools()) {
+            ObjectNode poolNode = this.mapper.createObjectNode()
+                .put("productId", pool.getProductId())
+                .put("derivedProductId", pool.getDerivedProductId());
+
+            poolNode.put("quantity", pool.getQuantity());
+            poolNode.set("startDate", this.mapper.valueToTree(pool.getStartDate()));
+            poolNode.set("endDate", this.mapper.valueToTree(pool.getEndDate()));
+            poolNode.set("attributes", this.mapper.valueToTree(pool.getAttributes()));
+            poolNode.set("providedProducts", this.toProductRefs(pool.getProvidedProducts()));
+            poolNode.set("derivedProvidedProducts", this.toProductRefs(pool.getDerivedProvidedProducts()));
+
+            JsonNode createdPool = this.send(target, "POST", "/owners/" + owner.getKey() + "/pools", null,
+                poolNode);
+
+            if (createdPool != null) {
+                target.mapId(pool.getId(), createdPool.path("id").asText());
+            }
+        }
+    }
+
+    private ArrayNode toProductRefs(List<String> productIds) {
+        ArrayNode refs = this.mapper.createArrayNode();
+        for (String productId : productIds) {
+            refs.addObject().put("productId", productId);
+        }
+
+        return refs;
+    }
+
+    private void loadConsumer(ReplayTarget target, ConsumerRecord consumer) throws IOException {
+        ObjectNode consumerNode = this.mapper.createObjectNode()
+            .put("uuid", consumer.getUuid())
+            .put("name", consumer.getUuid());
+
+        consumerNode.putObject("type").put("label", consumer.getType());
+        consumerNode.set("facts", this.mapper.valueToTree(consumer.getFacts()));
+
+        ArrayNode installed = consumerNode.putArray("installedProducts");
+        for (String productId : consumer.getInstalledProducts()) {
+            installed.addObject().put("productId", productId).put("productName", productId);
+        }
+
+        ArrayNode guestIds = consumerNode.putArray("guestIds");
+        for (String guestId : consumer.getGuestIds()) {
+            guestIds.addObject().put("guestId", guestId);
+        }
+
+        if (consumer.getHypervisorId() != null) {
+            consumerNode.putObject("hypervisorId").put("hypervisorId", consumer.getHypervisorId());
+        }
+
+        Map<String, List<String>> query = new HashMap<>();
+        query.put("owner", Arrays.asList(consumer.getOwner()));
+
+        this.send(target, "POST", "/consumers", query, consumerNode);
+    }
+
+    private JsonNode send(ReplayTarget target, String method, String path, Map<String, List<String>> query,
+        JsonNode body) throws IOException {
+
+        String content = body != null ? this.mapper.writeValueAsString(body) : null;
+        ReplayClient.Result result = target.getClient().execute(method, path, query, null, content);
+
+        if (!result.isSuccessful()) {
+            log.warn("Unable to load synthetic data into {}: {} {} returned {}: {}", target.getName(), method,
+                path, result.getStatus(), result.getBody());
+
+            ++this.failures;
+            return null;
+        }
+
+        return result.getBody().isEmpty() ? this.mapper.createObjectNode() :
+            this.mapper.readTree(result.getBody());
+    }
+}
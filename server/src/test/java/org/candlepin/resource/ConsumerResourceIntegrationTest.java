@@ -58,6 +58,7 @@ import org.candlepin.resource.util.GuestMigration;
 import org.candlepin.service.ContentAccessCertServiceAdapter;
 import org.candlepin.service.IdentityCertServiceAdapter;
 import org.candlepin.test.DatabaseTestFixture;
+import org.candlepin.test.QueryBudgetAssert;
 import org.candlepin.test.TestDateUtil;
 import org.candlepin.test.TestUtil;
 
@@ -600,7 +601,7 @@ public class ConsumerResourceIntegrationTest extends DatabaseTestFixture {
             null, null, null, null, null, null, this.poolManager, null, null, null, null,
             null, null, null, null, null,
             new CandlepinCommonTestConfig(), null, null, null, mock(ConsumerBindUtil.class),
-            null, null, null, null, consumerEnricher, migrationProvider, this.modelTranslator);
+            null, null, null, null, consumerEnricher, migrationProvider, this.modelTranslator, null);
 
         Response rsp = consumerResource.bind(consumer.getUuid(), pool.getId().toString(), null, 1, null,
             null, false, null, null);
@@ -641,6 +642,39 @@ public class ConsumerResourceIntegrationTest extends DatabaseTestFixture {
         return result;
     }
 
+    private void createCurrentEntitlements(int count) {
+        for (int i = 0; i < count; i++) {
+            Product current = this.createProduct(this.owner);
+            Pool currentPool = createPool(owner, current, 10L, createDate(2000, 1, 1),
+                createDate(2100, 1, 1));
+
+            Entitlement entitlement = this.createEntitlement(owner, consumer, currentPool);
+            this.createEntitlementCertificate(entitlement, "key-" + i, "cert-" + i);
+        }
+
+        this.getEntityManager().flush();
+        this.getEntityManager().clear();
+
+        assertEquals(count, consumerCurator.findByUuid(consumer.getUuid()).getEntitlements().size());
+        this.getEntityManager().clear();
+    }
+
+    @Test
+    public void testGetConsumerWithinQueryBudget() {
+        this.createCurrentEntitlements(3);
+
+        QueryBudgetAssert.assertWithinBudget(ConsumerResource.class, "getConsumer",
+            () -> consumerResource.getConsumer(consumer.getUuid()));
+    }
+
+    @Test
+    public void testGetComplianceStatusWithinQueryBudget() {
+        this.createCurrentEntitlements(3);
+
+        QueryBudgetAssert.assertWithinBudget(ConsumerResource.class, "getComplianceStatus",
+            () -> consumerResource.getComplianceStatus(consumer.getUuid(), null));
+    }
+
     @Test
     public void testContentAccessExpireRegen() {
         owner.setContentAccessModeList(ContentAccessCertServiceAdapter.ORG_ENV_ACCESS_MODE);
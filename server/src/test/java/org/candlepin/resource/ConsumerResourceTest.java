@@ -33,6 +33,7 @@ import org.candlepin.common.exceptions.GoneException;
 import org.candlepin.common.exceptions.NotFoundException;
 import org.candlepin.config.CandlepinCommonTestConfig;
 import org.candlepin.controller.CandlepinPoolManager;
+import org.candlepin.controller.CertificateBundleManager;
 import org.candlepin.controller.Entitler;
 import org.candlepin.controller.ManifestManager;
 import org.candlepin.controller.PoolManager;
@@ -45,6 +46,7 @@ import org.candlepin.dto.api.v1.OwnerDTO;
 import org.candlepin.model.CandlepinQuery;
 import org.candlepin.model.Cdn;
 import org.candlepin.model.CdnCurator;
+import org.candlepin.model.CertificateBundle;
 import org.candlepin.model.CertificateSerial;
 import org.candlepin.model.CertificateSerialDto;
 import org.candlepin.model.Consumer;
@@ -72,6 +74,7 @@ import org.candlepin.policy.activationkey.ActivationKeyRules;
 import org.candlepin.policy.js.compliance.ComplianceRules;
 import org.candlepin.policy.js.compliance.ComplianceStatus;
 import org.candlepin.resource.dto.AutobindData;
+import org.candlepin.resource.dto.CertificateBundleListing;
 import org.candlepin.resource.util.ConsumerBindUtil;
 import org.candlepin.resource.util.ConsumerEnricher;
 import org.candlepin.resource.util.ConsumerTypeValidator;
@@ -142,6 +145,7 @@ public class ConsumerResourceTest {
     @Mock private OwnerCurator mockOwnerCurator;
     @Mock private EntitlementCertServiceAdapter mockEntitlementCertServiceAdapter;
     @Mock private OwnerServiceAdapter mockOwnerServiceAdapter;
+    @Mock private CertificateBundleManager mockCertBundleManager;
     @Mock private SubscriptionServiceAdapter mockSubscriptionServiceAdapter;
     @Mock private PoolManager mockPoolManager;
     @Mock private EntitlementCurator mockEntitlementCurator;
@@ -222,7 +226,8 @@ public class ConsumerResourceTest {
             new ConsumerTypeValidator(mockConsumerTypeCurator, i18n),
             consumerEnricher,
             migrationProvider,
-            translator);
+            translator,
+            mockCertBundleManager);
 
         mockedConsumerResource = Mockito.spy(consumerResource);
     }
@@ -383,7 +388,7 @@ public class ConsumerResourceTest {
             mockEntitlementCertServiceAdapter, null, null, null, null, null,
             poolManager, null, null, null, null, null, null, null, null, null,
             this.config, null, null, null, consumerBindUtil,
-            null, null, this.factValidator, null, consumerEnricher, migrationProvider, translator);
+            null, null, this.factValidator, null, consumerEnricher, migrationProvider, translator, null);
 
         assertThrows(RuntimeException.class, () ->
             consumerResource.regenerateEntitlementCertificates(consumer.getUuid(), "9999", false)
@@ -768,6 +773,137 @@ public class ConsumerResourceTest {
         verify(mockedConsumerResource).revokeOnGuestMigration(consumer);
     }
 
+    private CertificateBundle mockCertificateBundle(Consumer consumer, List<EntitlementCertificate> certs) {
+        CertificateBundle bundle = new CertificateBundle(consumer.getId());
+        bundle.setId("bundle_id");
+        bundle.setVersion(3);
+        bundle.setDeltaBase(1);
+        bundle.getSerials().put(certs.get(0).getSerial().getId(), 1L);
+        bundle.getSerials().put(certs.get(1).getSerial().getId(), 2L);
+        bundle.getSerials().put(certs.get(2).getSerial().getId(), 3L);
+        bundle.getRemovedSerials().put(99L, 3L);
+
+        when(mockConsumerCurator.verifyAndLookupConsumer(consumer.getUuid())).thenReturn(consumer);
+        when(mockEntitlementCertServiceAdapter.listForConsumer(consumer)).thenReturn(certs);
+        when(mockCertBundleManager.getBundle(consumer)).thenReturn(bundle);
+        when(mockCertBundleManager.refresh(eq(consumer), any(), any(), any())).thenReturn(bundle);
+
+        return bundle;
+    }
+
+    private List<EntitlementCertificate> createSerializedEntitlementCertificates() {
+        List<EntitlementCertificate> certs = createEntitlementCertificates();
+        long serial = 1;
+
+        for (EntitlementCertificate cert : certs) {
+            cert.setSerial(new CertificateSerial(serial++, new Date()));
+        }
+
+        return certs;
+    }
+
+    @Test
+    public void testGetEntitlementCertificateBundle() {
+        Consumer consumer = createConsumer(createOwner());
+        List<EntitlementCertificate> certs = createSerializedEntitlementCertificates();
+        mockCertificateBundle(consumer, certs);
+
+        Response response = consumerResource.getEntitlementCertificateBundle(consumer.getUuid(), null, null);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("bundle_id-3", response.getEntityTag().getValue());
+
+        CertificateBundleListing listing = (CertificateBundleListing) response.getEntity();
+        assertEquals(3, listing.getVersion());
+        assertFalse(listing.isDelta());
+        assertEquals(3, listing.getCertificates().size());
+        assertTrue(listing.getRemovedSerials().isEmpty());
+    }
+
+    @Test
+    public void testGetEntitlementCertificateBundleNotModified() throws Exception {
+        Consumer consumer = createConsumer(createOwner());
+        mockCertificateBundle(consumer, createSerializedEntitlementCertificates());
+        when(mockCertBundleManager.isCurrent(any(CertificateBundle.class), any(), any())).thenReturn(true);
+
+        Response response = consumerResource.getEntitlementCertificateBundle(consumer.getUuid(), null,
+            "\"bundle_id-2\", W/\"bundle_id-3\"");
+
+        assertEquals(304, response.getStatus());
+        assertNull(response.getEntity());
+        verify(mockEntitlementCertServiceAdapter, never()).listForConsumer(any(Consumer.class));
+        verify(mockPoolManager, never()).regenerateDirtyEntitlements(any(Consumer.class));
+        verify(mockContentAccessCertService, never()).getCertificate(any(Consumer.class));
+    }
+
+    @Test
+    public void testGetEntitlementCertificateBundleRefreshedWhenContentAccessChanged() {
+        Consumer consumer = createConsumer(createOwner());
+        List<EntitlementCertificate> certs = createSerializedEntitlementCertificates();
+        CertificateBundle bundle = mockCertificateBundle(consumer, certs);
+
+        CertificateBundle refreshed = new CertificateBundle(consumer.getId());
+        refreshed.setId(bundle.getId());
+        refreshed.setVersion(4);
+        refreshed.setDeltaBase(1);
+        refreshed.getSerials().putAll(bundle.getSerials());
+        when(mockCertBundleManager.isCurrent(any(CertificateBundle.class), any(), any())).thenReturn(false);
+        when(mockCertBundleManager.refresh(eq(consumer), any(), any(), any())).thenReturn(refreshed);
+
+        Response response = consumerResource.getEntitlementCertificateBundle(consumer.getUuid(), null,
+            "\"bundle_id-3\"");
+
+        assertEquals(200, response.getStatus());
+        assertEquals("bundle_id-4", response.getEntityTag().getValue());
+        verify(mockPoolManager).regenerateDirtyEntitlements(consumer);
+    }
+
+    @Test
+    public void testGetEntitlementCertificateBundleIgnoresStaleEntityTag() {
+        Consumer consumer = createConsumer(createOwner());
+        mockCertificateBundle(consumer, createSerializedEntitlementCertificates());
+
+        Response response = consumerResource.getEntitlementCertificateBundle(consumer.getUuid(), null,
+            "\"bundle_id-2\"");
+
+        assertEquals(200, response.getStatus());
+        assertEquals(3, ((CertificateBundleListing) response.getEntity()).getCertificates().size());
+    }
+
+    @Test
+    public void testGetEntitlementCertificateBundleDelta() {
+        Consumer consumer = createConsumer(createOwner());
+        List<EntitlementCertificate> certs = createSerializedEntitlementCertificates();
+        mockCertificateBundle(consumer, certs);
+
+        Response response = consumerResource.getEntitlementCertificateBundle(consumer.getUuid(), 1L, null);
+        CertificateBundleListing listing = (CertificateBundleListing) response.getEntity();
+
+        assertTrue(listing.isDelta());
+        assertEquals(2, listing.getCertificates().size());
+        assertEquals(Arrays.asList(99L), listing.getRemovedSerials());
+
+        Set<Long> serials = new HashSet<>();
+        for (CertificateDTO cert : listing.getCertificates()) {
+            serials.add(cert.getSerial().getId());
+        }
+
+        assertEquals(new HashSet<>(Arrays.asList(2L, 3L)), serials);
+    }
+
+    @Test
+    public void testGetEntitlementCertificateBundleFullWhenDeltaUnavailable() {
+        Consumer consumer = createConsumer(createOwner());
+        mockCertificateBundle(consumer, createSerializedEntitlementCertificates());
+
+        // Version 0 predates the oldest tracked version of the bundle
+        Response response = consumerResource.getEntitlementCertificateBundle(consumer.getUuid(), 0L, null);
+        CertificateBundleListing listing = (CertificateBundleListing) response.getEntity();
+
+        assertFalse(listing.isDelta());
+        assertEquals(3, listing.getCertificates().size());
+    }
+
     @Test
     public void testNoDryBindWhenAutobindDisabledForOwner() throws Exception {
         Owner owner = createOwner();
@@ -92,6 +92,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import javax.inject.Provider;
@@ -150,7 +151,7 @@ public class ConsumerResourceUpdateTest {
             this.deletedConsumerCurator, this.environmentCurator, null,
             config, null, null, null, this.consumerBindUtil,
             null, null, new FactValidator(config, this.i18nProvider),
-            null, consumerEnricher, migrationProvider, this.translator);
+            null, consumerEnricher, migrationProvider, this.translator, null);
 
         when(complianceRules.getStatus(any(Consumer.class), any(Date.class), any(Boolean.class),
             any(Boolean.class))).thenReturn(new ComplianceStatus(new Date()));
@@ -729,8 +730,13 @@ public class ConsumerResourceUpdateTest {
 
         when(this.consumerCurator.getGuestConsumersMap(any(String.class), any(Set.class))).
             thenReturn(new VirtConsumerMap());
+        doAnswer(invocation -> {
+            ((Consumer) invocation.getArguments()[0]).setFacts((Map) invocation.getArguments()[1]);
+            return 1;
+        }).when(this.consumerCurator).updateFacts(any(Consumer.class), any(Map.class));
         this.resource.updateConsumer(existing.getUuid(), updated, principal);
 
+        verify(this.consumerCurator).updateFacts(eq(existing), eq(updated.getFacts()));
         assertEquals(1, existing.getFacts().size());
         assertEquals(expectedFactValue, existing.getFact(expectedFactName));
 
@@ -297,7 +297,7 @@ public class GuestIdResourceTest {
             super(null, null, null, null, null, null, null, null, null, null, null, null, null, null,
                 null, null, null, null, null, null, null, null, null, null, null, null, null,
                 null,
-                null, null, null, null, consumerEnricher, null, modelTranslator);
+                null, null, null, null, consumerEnricher, null, modelTranslator, null);
         }
 
         public void checkForMigration(Consumer host, Consumer guest) {
@@ -21,6 +21,7 @@ import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.exceptions.NotFoundException;
 import org.candlepin.dto.ModelTranslator;
 import org.candlepin.dto.StandardTranslator;
+import org.candlepin.dto.api.v1.JobQueueStatusDTO;
 import org.candlepin.dto.api.v1.JobStatusDTO;
 import org.candlepin.model.CandlepinQuery;
 import org.candlepin.model.ConsumerTypeCurator;
@@ -28,10 +29,12 @@ import org.candlepin.model.EnvironmentCurator;
 import org.candlepin.model.JobCurator;
 import org.candlepin.model.OwnerCurator;
 import org.candlepin.model.TransformedCandlepinQuery;
+import org.candlepin.pinsetter.core.JobPurgeMonitor;
 import org.candlepin.pinsetter.core.PinsetterException;
 import org.candlepin.pinsetter.core.PinsetterKernel;
 import org.candlepin.pinsetter.core.model.JobStatus;
 import org.candlepin.pinsetter.core.model.JobStatus.JobState;
+import org.candlepin.pinsetter.tasks.HypervisorUpdateJob;
 import org.candlepin.test.MockResultIterator;
 import org.candlepin.util.ElementTransformer;
 
@@ -46,6 +49,7 @@ import org.xnap.commons.i18n.I18nFactory;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
@@ -63,6 +67,7 @@ public class JobResourceTest {
 
     private I18n i18n;
     private ModelTranslator translator;
+    private JobPurgeMonitor purgeMonitor;
 
     @Before
     public void init() {
@@ -71,7 +76,8 @@ public class JobResourceTest {
         translator = new StandardTranslator(this.consumerTypeCurator,
             this.environmentCurator,
             this.ownerCurator);
-        jobResource = new JobResource(jobCurator, pinsetterKernel, i18n, translator);
+        purgeMonitor = new JobPurgeMonitor(jobCurator);
+        jobResource = new JobResource(jobCurator, pinsetterKernel, i18n, translator, purgeMonitor);
     }
 
     private void mockCPQueryTransform(final CandlepinQuery query) {
@@ -96,6 +102,41 @@ public class JobResourceTest {
         }
     }
 
+    @Test
+    public void purgePausedTest() {
+        assertFalse(jobResource.getPurgeStatus().isPaused());
+
+        when(jobCurator.isPurgePaused()).thenReturn(true);
+        assertTrue(jobResource.setPurgeStatus(true).isPaused());
+        verify(jobCurator).setPurgePaused(true);
+
+        when(jobCurator.isPurgePaused()).thenReturn(false);
+        assertFalse(jobResource.setPurgeStatus(false).isPaused());
+        verify(jobCurator).setPurgePaused(false);
+    }
+
+    @Test
+    public void getHypervisorUpdateQueues() {
+        Date oldest = new Date(System.currentTimeMillis() - 60000L);
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] { "owner_a", 3L, 1L, oldest });
+        rows.add(new Object[] { "owner_b", 0L, 1L, null });
+        when(jobCurator.getQueueStatistics(HypervisorUpdateJob.class)).thenReturn(rows);
+
+        List<JobQueueStatusDTO> queues = jobResource.getHypervisorUpdateQueues(null);
+        assertEquals(2, queues.size());
+        assertEquals("owner_a", queues.get(0).getOwner());
+        assertEquals(Long.valueOf(3L), queues.get(0).getQueued());
+        assertEquals(Long.valueOf(1L), queues.get(0).getRunning());
+        assertEquals(oldest, queues.get(0).getOldestQueued());
+        assertTrue(queues.get(0).getMaxWaitSeconds() >= 60L);
+        assertEquals(Long.valueOf(0L), queues.get(1).getMaxWaitSeconds());
+
+        queues = jobResource.getHypervisorUpdateQueues("owner_b");
+        assertEquals(1, queues.size());
+        assertEquals("owner_b", queues.get(0).getOwner());
+    }
+
     @Test
     public void schedulerPausedTest() throws PinsetterException {
         when(pinsetterKernel.getSchedulerStatus()).thenReturn(true);
@@ -23,6 +23,7 @@ import org.candlepin.controller.ProductManager;
 import org.candlepin.dto.api.v1.ContentDTO;
 import org.candlepin.dto.api.v1.ProductCertificateDTO;
 import org.candlepin.dto.api.v1.ProductDTO;
+import org.candlepin.dto.api.v1.ProductDTOProjection;
 import org.candlepin.model.Content;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerCurator;
@@ -53,6 +54,7 @@ import javax.inject.Inject;
 public class OwnerProductResourceTest extends DatabaseTestFixture {
 
     @Inject protected ProductManager productManager;
+    @Inject protected ProductDTOProjection productProjection;
 
     private OwnerProductResource ownerProductResource;
 
@@ -60,7 +62,8 @@ public class OwnerProductResourceTest extends DatabaseTestFixture {
     public void setup() {
         this.ownerProductResource = new OwnerProductResource(this.config, this.i18n, this.ownerCurator,
             this.ownerContentCurator, this.ownerProductCurator, this.productCertificateCurator,
-            this.productCurator, this.productManager, this.modelTranslator
+            this.productCurator, this.productManager, this.modelTranslator,
+            this.productProjection
         );
     }
 
@@ -148,7 +151,7 @@ public class OwnerProductResourceTest extends DatabaseTestFixture {
         I18n i18n = I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK);
 
         OwnerProductResource pr = new OwnerProductResource(
-            config, i18n, oc, null, opc, null, pc, null, this.modelTranslator);
+            config, i18n, oc, null, opc, null, pc, null, this.modelTranslator, null);
 
         Owner o = mock(Owner.class);
         Product p = mock(Product.class);
@@ -39,6 +39,7 @@ import org.candlepin.controller.OwnerManager;
 import org.candlepin.dto.api.v1.ActivationKeyDTO;
 import org.candlepin.dto.api.v1.ConsumerDTO;
 import org.candlepin.dto.api.v1.EntitlementDTO;
+import org.candlepin.dto.api.v1.EntitlementDTOProjection;
 import org.candlepin.dto.api.v1.ImportRecordDTO;
 import org.candlepin.dto.api.v1.OwnerDTO;
 import org.candlepin.dto.api.v1.PoolDTO;
@@ -70,7 +71,10 @@ import org.candlepin.model.UeberCertificateGenerator;
 import org.candlepin.model.UpstreamConsumer;
 import org.candlepin.model.activationkeys.ActivationKey;
 import org.candlepin.model.activationkeys.ActivationKeyCurator;
+import org.candlepin.model.dto.PoolIdAndQuantity;
 import org.candlepin.model.dto.Subscription;
+import org.candlepin.pinsetter.core.model.JobStatus;
+import org.candlepin.pinsetter.tasks.EntitlerJob;
 import org.candlepin.resteasy.parameter.KeyValueParameter;
 import org.candlepin.service.OwnerServiceAdapter;
 import org.candlepin.service.impl.DefaultOwnerServiceAdapter;
@@ -78,6 +82,7 @@ import org.candlepin.service.impl.ImportSubscriptionServiceAdapter;
 import org.candlepin.sync.ConflictOverrides;
 import org.candlepin.sync.ImporterException;
 import org.candlepin.test.DatabaseTestFixture;
+import org.candlepin.test.QueryBudgetAssert;
 import org.candlepin.test.TestUtil;
 import org.candlepin.util.ContentOverrideValidator;
 import org.candlepin.util.ServiceLevelValidator;
@@ -90,6 +95,7 @@ import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
 import org.xnap.commons.i18n.I18n;
 
@@ -100,6 +106,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -124,6 +131,7 @@ public class OwnerResourceTest extends DatabaseTestFixture {
     @Inject private ServiceLevelValidator serviceLevelValidator;
     @Inject private I18n i18n;
     @Inject private OwnerResource ownerResource;
+    @Inject private EntitlementDTOProjection entitlementProjection;
     @Inject private EventFactory eventFactory;
     @Inject private Configuration config;
     @Inject private ContentOverrideValidator contentOverrideValidator;
@@ -157,6 +165,22 @@ public class OwnerResourceTest extends DatabaseTestFixture {
         assertTrue(owner.getPools().isEmpty());
     }
 
+    @Test
+    public void testGetOwnerInfoWithinQueryBudget() {
+        ConsumerType ctype = this.createConsumerType();
+        for (int i = 0; i < 5; ++i) {
+            this.createConsumer(owner, ctype);
+            this.createPool(owner, product, 10L, TestUtil.createDate(2000, 1, 1),
+                TestUtil.createDate(3000, 1, 1));
+        }
+
+        this.getEntityManager().flush();
+        this.getEntityManager().clear();
+
+        QueryBudgetAssert.assertWithinBudget(OwnerResource.class, "getOwnerInfo",
+            () -> ownerResource.getOwnerInfo(owner.getKey(), true));
+    }
+
     @Test
     public void testSimpleDeleteOwner() {
         String id = owner.getId();
@@ -165,6 +189,24 @@ public class OwnerResourceTest extends DatabaseTestFixture {
         assertNull(owner);
     }
 
+    @Test
+    public void testDeleteConsumers() {
+        Consumer consumer1 = this.createConsumer(owner);
+        Consumer consumer2 = this.createConsumer(owner);
+
+        int deleted = ownerResource.deleteConsumers(owner.getKey(), Arrays.asList(consumer1.getUuid()));
+
+        assertEquals(1, deleted);
+        assertNull(consumerCurator.get(consumer1.getId()));
+        assertNotNull(consumerCurator.get(consumer2.getId()));
+    }
+
+    @Test
+    public void testDeleteConsumersRequiresUuids() {
+        assertThrows(BadRequestException.class, () ->
+            ownerResource.deleteConsumers(owner.getKey(), Collections.emptyList()));
+    }
+
     @Test
     public void testRefreshPoolsWithNewSubscriptions() {
         Product prod = this.createProduct(owner);
@@ -732,6 +774,45 @@ public class OwnerResourceTest extends DatabaseTestFixture {
         assertEquals("No such unit type(s): unknown", ex.getMessage());
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void bulkBindCreatesOwnerJob() {
+        Consumer c1 = createConsumer(owner);
+        Consumer c2 = createConsumer(owner);
+
+        Map<String, List<PoolIdAndQuantity>> requests = new HashMap<>();
+        requests.put(c1.getUuid(), Arrays.asList(new PoolIdAndQuantity("pool1", 2)));
+        requests.put(c2.getUuid(), Arrays.asList(new PoolIdAndQuantity("pool1", null)));
+
+        JobDetail detail = ownerResource.bulkBind(owner.getKey(), requests);
+        JobDataMap map = detail.getJobDataMap();
+
+        assertEquals(EntitlerJob.class, detail.getJobClass());
+        assertEquals(JobStatus.TargetType.OWNER, map.get(JobStatus.TARGET_TYPE));
+        assertEquals(owner.getKey(), map.get(JobStatus.TARGET_ID));
+
+        Map<String, PoolIdAndQuantity[]> queued =
+            (Map<String, PoolIdAndQuantity[]>) map.get(EntitlerJob.CONSUMER_POOL_QUANTITIES);
+
+        assertEquals(2, queued.size());
+        assertEquals(2, queued.get(c1.getUuid())[0].getQuantity().intValue());
+        assertEquals(1, queued.get(c2.getUuid())[0].getQuantity().intValue());
+    }
+
+    @Test
+    public void bulkBindRejectsConsumersOfAnotherOwner() {
+        Consumer c1 = createConsumer(owner);
+
+        Owner owner2 = ownerCurator.create(new Owner("Owner2"));
+        Consumer c2 = createConsumer(owner2);
+
+        Map<String, List<PoolIdAndQuantity>> requests = new HashMap<>();
+        requests.put(c1.getUuid(), Arrays.asList(new PoolIdAndQuantity("pool1", 1)));
+        requests.put(c2.getUuid(), Arrays.asList(new PoolIdAndQuantity("pool1", 1)));
+
+        assertThrows(BadRequestException.class, () -> ownerResource.bulkBind(owner.getKey(), requests));
+    }
+
     @Test
     public void consumerCanListMultipleConsumers() {
         Consumer c = createConsumer(owner);
@@ -894,7 +975,7 @@ public class OwnerResourceTest extends DatabaseTestFixture {
         OwnerResource ownerres = new OwnerResource(
             oc, pc, null, null, i18n, null, null, null, null, null, null, null, null, null, null, null,
             null, null, null, null, null, null, null, null, null, null,
-            null, null, this.modelTranslator);
+            null, null, this.modelTranslator, null, null, null);
         when(oc.getByKey(anyString())).thenReturn(o);
         ActivationKeyDTO key = new ActivationKeyDTO();
         assertThrows(BadRequestException.class, () ->
@@ -911,7 +992,7 @@ public class OwnerResourceTest extends DatabaseTestFixture {
         OwnerResource ownerres = new OwnerResource(
             oc, pc, null, null, i18n, null, null, null, null, null, null, null, null, null, null, null,
             null, null, null, null, null, null, null, null, null, null, null,
-            null, this.modelTranslator);
+            null, this.modelTranslator, null, null, null);
         when(oc.getByKey(anyString())).thenReturn(o);
         ActivationKeyDTO key = new ActivationKeyDTO();
         key.setReleaseVersion(TestUtil.getStringOfSize(256));
@@ -1091,7 +1172,7 @@ public class OwnerResourceTest extends DatabaseTestFixture {
             oc, pc, null, null, i18n, null, eventFactory, null, null, poolManager, ownerManager,  null,
             null, null, null, null, null, null, null, null, null, contentOverrideValidator,
             serviceLevelValidator, null, null, null, null, null,
-            this.modelTranslator);
+            this.modelTranslator, null, null, null);
 
         when(oc.getByKey(eq("testOwner"))).thenReturn(o);
         ConstraintViolationException ce = new ConstraintViolationException(null, null, null);
@@ -1117,7 +1198,7 @@ public class OwnerResourceTest extends DatabaseTestFixture {
             oc, pc, akc, null, i18n, null, null, null, null, null, null, null, null,
             null, null, null, null,
             null, null, null, null, contentOverrideValidator, null, null, null, null, null,
-            null, this.modelTranslator);
+            null, this.modelTranslator, null, null, null);
 
         assertThrows(BadRequestException.class, () -> ownerres.createActivationKey("testOwner", ak));
     }
@@ -1256,7 +1337,7 @@ public class OwnerResourceTest extends DatabaseTestFixture {
             null, manifestManager, null, null, null,
             null, importRecordCurator, null, null, null, null, null, null, null, contentOverrideValidator,
             serviceLevelValidator, null, null, null, null,
-            null, this.modelTranslator);
+            null, this.modelTranslator, null, null, null);
 
         MultipartInput input = mock(MultipartInput.class);
         InputPart part = mock(InputPart.class);
@@ -1292,7 +1373,7 @@ public class OwnerResourceTest extends DatabaseTestFixture {
             null, manifestManager, null, null, null,
             null, importRecordCurator, null, null, null, null, null, null, null, contentOverrideValidator,
             serviceLevelValidator, null, null, null, null,
-            null, this.modelTranslator);
+            null, this.modelTranslator, null, null, null);
 
         MultipartInput input = mock(MultipartInput.class);
         InputPart part = mock(InputPart.class);
@@ -1329,7 +1410,7 @@ public class OwnerResourceTest extends DatabaseTestFixture {
             null, manifestManager, null, null, null,
             null, importRecordCurator, null, null, null, null, null, null, null, contentOverrideValidator,
             serviceLevelValidator, null, null, null, null,
-            null, this.modelTranslator);
+            null, this.modelTranslator, null, null, null);
 
         MultipartInput input = mock(MultipartInput.class);
         InputPart part = mock(InputPart.class);
@@ -1370,7 +1451,7 @@ public class OwnerResourceTest extends DatabaseTestFixture {
         OwnerResource ownerres = new OwnerResource(
             oc, pc, null, null, i18n, null, null, null, null, null, null, null, null, null, null, null,
             null, null, null, null, null, contentOverrideValidator, serviceLevelValidator, null,
-            null, null, null, null, this.modelTranslator);
+            null, null, null, null, this.modelTranslator, null, null, null);
 
         when(oc.getByKey(eq("admin"))).thenReturn(owner);
         when(owner.getUpstreamConsumer()).thenReturn(upstream);
@@ -1579,7 +1660,7 @@ public class OwnerResourceTest extends DatabaseTestFixture {
             this.ownerCurator, this.productCurator, null, null, i18n, null, null,
             null, null, null, null, null, null, null, null, null, this.entitlementCurator,
             null, null, null, null, null, null, null, null, null, null,
-            null, this.modelTranslator);
+            null, this.modelTranslator, null, null, this.entitlementProjection);
 
         List<EntitlementDTO> result = ownerres.ownerEntitlements(owner.getKey(), null, null, null, req);
 
@@ -1598,7 +1679,7 @@ public class OwnerResourceTest extends DatabaseTestFixture {
         OwnerResource ownerres = new OwnerResource(
             oc, pc, null, null, i18n, null, null, null, null, null, null, null, null, null, null, null,
             null, null, null, null, null, null, null, null, null, null, null,
-            null, this.modelTranslator);
+            null, this.modelTranslator, null, null, null);
 
         assertThrows(NotFoundException.class, () ->
             ownerres.ownerEntitlements("Taylor Swift", null, null, null, req)
@@ -1623,7 +1704,7 @@ public class OwnerResourceTest extends DatabaseTestFixture {
         OwnerResource resource = new OwnerResource(
             oc, pc, null, cc, i18n, null, null, null, null, cpm, null, null, null, null, null, ecc, ec,
             uc, ucg, null, null, null, null, null, null, null, null,
-            null, this.modelTranslator);
+            null, this.modelTranslator, null, null, null);
 
         when(oc.getByKey(eq("admin"))).thenReturn(owner);
         when(ucg.generate(eq(owner.getKey()), eq(principal))).thenReturn(entCert);
@@ -1651,7 +1732,7 @@ public class OwnerResourceTest extends DatabaseTestFixture {
         OwnerResource resource = new OwnerResource(
             oc, pc, null, cc, i18n, null, null, null, null, cpm, null, null, null, null, null, ecc, ec,
             uc, ucg, null, null, null, null, null, null, null, null,
-            null, this.modelTranslator);
+            null, this.modelTranslator, null, null, null);
 
         when(ucg.generate(eq(owner.getKey()), eq(principal))).thenReturn(entCert);
 
@@ -1669,7 +1750,7 @@ public class OwnerResourceTest extends DatabaseTestFixture {
 
         OwnerResource resource = new OwnerResource(oc, null, null, null, null, null, null, null, null,
             null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
-            null, null, opc, this.modelTranslator
+            null, null, opc, this.modelTranslator, null, null, null
         );
 
         when(oc.getByKey(eq(owner.getKey()))).thenReturn(owner);
@@ -1714,7 +1795,7 @@ public class OwnerResourceTest extends DatabaseTestFixture {
 
         OwnerResource resource = new OwnerResource(oc, null, null, cc, null, null, null, null, null,
             null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
-            null, null, null, this.modelTranslator
+            null, null, null, this.modelTranslator, null, null, null
         );
 
         when(oc.getByKey(eq(owner.getKey()))).thenReturn(owner);
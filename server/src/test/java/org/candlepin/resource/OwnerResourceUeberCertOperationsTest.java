@@ -77,7 +77,7 @@ public class OwnerResourceUeberCertOperationsTest extends DatabaseTestFixture {
             null, null, poolManager, null, null,
             null, null, consumerTypeCurator, entitlementCertificateCurator, entitlementCurator,
             ueberCertCurator, ueberCertGenerator, null,  null, contentOverrideValidator,
-            serviceLevelValidator, null, null, null, null, null, this.modelTranslator);
+            serviceLevelValidator, null, null, null, null, null, this.modelTranslator, null, null, null);
     }
 
     @Test
@@ -32,6 +32,7 @@ import org.candlepin.model.Pool;
 import org.candlepin.model.Product;
 import org.candlepin.resource.util.CalculatedAttributesUtil;
 import org.candlepin.test.DatabaseTestFixture;
+import org.candlepin.test.QueryBudgetAssert;
 import org.candlepin.test.TestUtil;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -289,6 +290,15 @@ public class PoolResourceTest extends DatabaseTestFixture {
         assertTrue(p.getCalculatedAttributes().isEmpty());
     }
 
+    @Test
+    public void testGetPoolWithinQueryBudget() {
+        this.getEntityManager().flush();
+        this.getEntityManager().clear();
+
+        QueryBudgetAssert.assertWithinBudget(PoolResource.class, "getPool",
+            () -> poolResource.getPool(pool1.getId(), null, null, adminPrincipal));
+    }
+
     @Test
     public void testUnauthorizedUserRequestingPool() {
         Owner owner2 = createOwner();
@@ -18,7 +18,9 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 import org.candlepin.auth.KeycloakConfiguration;
+import org.candlepin.cache.CacheRegionStatistics;
 import org.candlepin.cache.CandlepinCache;
+import org.candlepin.cache.CandlepinCacheRegions;
 import org.candlepin.cache.StatusCache;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.config.ConfigProperties;
@@ -32,6 +34,9 @@ import org.candlepin.model.CandlepinQuery;
 import org.candlepin.model.Rules;
 import org.candlepin.model.RulesCurator;
 import org.candlepin.policy.js.JsRunnerProvider;
+import org.candlepin.policy.js.entitlement.EntitlementRuleDispatcher;
+import org.candlepin.tracing.HistogramSnapshot;
+import org.candlepin.tracing.TraceMetrics;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -51,6 +56,8 @@ import java.io.File;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
 
 
 /**
@@ -66,6 +73,7 @@ public class StatusResourceTest {
     @Mock private ModeManager modeManager;
     @Mock private KeycloakConfiguration keycloakConfig;
     @Mock private AdapterConfig mockKeycloakAdapterConfig;
+    @Mock private TraceMetrics traceMetrics;
 
     @Before
     public void setUp() {
@@ -94,7 +102,7 @@ public class StatusResourceTest {
         ps.println("version=${version}");
         ps.println("release=${release}");
         StatusResource sr = new StatusResource(rulesCurator, config, jsProvider, candlepinCache,
-            modeManager, keycloakConfig);
+            modeManager, keycloakConfig, traceMetrics, new EntitlementRuleDispatcher());
         StatusDTO s = sr.status();
         ps.close();
         assertNotNull(s);
@@ -109,7 +117,7 @@ public class StatusResourceTest {
             .getClassLoader().getResource("version.properties").toURI()));
         ps.println("foo");
         StatusResource sr = new StatusResource(rulesCurator, config, jsProvider, candlepinCache,
-            modeManager, keycloakConfig);
+            modeManager, keycloakConfig, traceMetrics, new EntitlementRuleDispatcher());
         StatusDTO s = sr.status();
         ps.close();
         assertNotNull(s);
@@ -126,7 +134,7 @@ public class StatusResourceTest {
         ps.println("release=${release}");
         when(rulesCurator.getUpdatedFromDB()).thenThrow(new RuntimeException());
         StatusResource sr = new StatusResource(rulesCurator, config, jsProvider, candlepinCache,
-            modeManager, keycloakConfig);
+            modeManager, keycloakConfig, traceMetrics, new EntitlementRuleDispatcher());
         StatusDTO s = sr.status();
         ps.close();
         assertNotNull(s);
@@ -150,7 +158,7 @@ public class StatusResourceTest {
         ps.println("version=${version}");
         ps.println("release=${release}");
         StatusResource sr = new StatusResource(rulesCurator, config, jsProvider, candlepinCache,
-            modeManager, keycloakConfig);
+            modeManager, keycloakConfig, traceMetrics, new EntitlementRuleDispatcher());
         StatusDTO s = sr.status();
         ps.close();
 
@@ -168,7 +176,7 @@ public class StatusResourceTest {
         when(config.getBoolean(eq(ConfigProperties.KEYCLOAK_AUTHENTICATION))).thenReturn(true);
 
         StatusResource sr = new StatusResource(rulesCurator, config, jsProvider, candlepinCache,
-            modeManager, keycloakConfig);
+            modeManager, keycloakConfig, traceMetrics, new EntitlementRuleDispatcher());
 
         StatusDTO s = sr.status();
         assertTrue("not a keycloak-enabled status", s instanceof KeycloakStatusDTO);
@@ -183,9 +191,35 @@ public class StatusResourceTest {
         when(config.getBoolean(eq(ConfigProperties.KEYCLOAK_AUTHENTICATION))).thenReturn(false);
 
         StatusResource sr = new StatusResource(rulesCurator, config, jsProvider, candlepinCache,
-            modeManager, keycloakConfig);
+            modeManager, keycloakConfig, traceMetrics, new EntitlementRuleDispatcher());
 
         StatusDTO s = sr.status();
         assertFalse("is a keycloak-enabled status", s instanceof KeycloakStatusDTO);
     }
+
+    @Test
+    public void metrics() {
+        TreeMap<String, HistogramSnapshot> traces = new TreeMap<>();
+        traces.put("REQUEST GET StatusResource.status",
+            new HistogramSnapshot(1, 2.0, 2.0, 2.0, 2.0, 2.0, 2.0));
+        TreeMap<String, HistogramSnapshot> phases = new TreeMap<>();
+        phases.put("DB", new HistogramSnapshot(1, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0));
+
+        when(traceMetrics.getTraceHistograms()).thenReturn(traces);
+        when(traceMetrics.getPhaseHistograms()).thenReturn(phases);
+
+        TreeMap<String, CacheRegionStatistics> caches = new TreeMap<>();
+        caches.put(CandlepinCacheRegions.PRODUCTS, new CacheRegionStatistics(9, 1, 90.0f, 1, 0, 0));
+        when(candlepinCache.getRegionStatistics()).thenReturn(caches);
+
+        StatusResource sr = new StatusResource(rulesCurator, config, jsProvider, candlepinCache,
+            modeManager, keycloakConfig, traceMetrics, new EntitlementRuleDispatcher());
+        Map<String, Map<String, ?>> metrics = sr.metrics();
+
+        assertEquals(traces, metrics.get("traces"));
+        assertEquals(phases, metrics.get("phases"));
+        assertTrue(metrics.containsKey("queries"));
+        assertEquals(caches, metrics.get("caches"));
+        assertEquals(0L, metrics.get("rules").get("compilations"));
+    }
 }
@@ -0,0 +1,237 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.resteasy;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.common.jackson.DynamicFilterData;
+import org.candlepin.dto.api.v1.ConsumerDTO;
+import org.candlepin.dto.api.v1.ConsumerInstalledProductDTO;
+import org.candlepin.dto.api.v1.OwnerDTO;
+import org.candlepin.dto.api.v1.PoolDTO;
+import org.candlepin.jackson.ProductCachedSerializationModule;
+import org.candlepin.model.ProductCurator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.ws.rs.core.MediaType;
+
+
+
+/**
+ * Serializes large consumer and pool listings through the JSON provider, with and without dynamic
+ * include and exclude filters. The timed runs are only enabled when the candlepin.benchmark
+ * system property is set to true.
+ */
+public class JsonProviderFilterBenchmarkTest {
+    private static Logger log = LoggerFactory.getLogger(JsonProviderFilterBenchmarkTest.class);
+
+    private static final int LISTING_SIZE = 5000;
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 20;
+
+    private ObjectMapper mapper;
+
+    @BeforeEach
+    public void setup() {
+        JsonProvider provider = new JsonProvider(false,
+            new ProductCachedSerializationModule(mock(ProductCurator.class)));
+
+        this.mapper = provider.locateMapper(Object.class, MediaType.APPLICATION_JSON_TYPE);
+    }
+
+    @AfterEach
+    public void clearFilters() {
+        ResteasyProviderFactory.popContextData(DynamicFilterData.class);
+    }
+
+    private List<PoolDTO> createPools(int count) {
+        OwnerDTO owner = new OwnerDTO().setId("owner_id").setKey("owner_key").setDisplayName("Owner");
+        List<PoolDTO> pools = new ArrayList<>(count);
+
+        for (int i = 0; i < count; ++i) {
+            PoolDTO pool = new PoolDTO()
+                .setId("pool-" + i)
+                .setType("NORMAL")
+                .setOwner(owner)
+                .setQuantity(100L)
+                .setConsumed(10L)
+                .setExported(0L)
+                .setStartDate(new Date())
+                .setEndDate(new Date())
+                .setProductId("sku-" + (i % 50))
+                .setProductName("SKU " + (i % 50))
+                .setContractNumber("contract-" + i)
+                .setAccountNumber("account")
+                .setOrderNumber("order-" + i);
+
+            Map<String, String> attributes = new HashMap<>();
+            attributes.put("multi-entitlement", "yes");
+            attributes.put("virt_limit", "4");
+            pool.setAttributes(attributes);
+
+            Map<String, String> productAttributes = new HashMap<>();
+            productAttributes.put("sockets", "2");
+            productAttributes.put("arch", "x86_64");
+            pool.setProductAttributes(productAttributes);
+
+            for (int p = 0; p < 5; ++p) {
+                pool.addProvidedProduct(new PoolDTO.ProvidedProductDTO("eng-" + p, "Engineering " + p));
+            }
+
+            pools.add(pool);
+        }
+
+        return pools;
+    }
+
+    private List<ConsumerDTO> createConsumers(int count) {
+        OwnerDTO owner = new OwnerDTO().setId("owner_id").setKey("owner_key").setDisplayName("Owner");
+        List<ConsumerDTO> consumers = new ArrayList<>(count);
+
+        for (int i = 0; i < count; ++i) {
+            ConsumerDTO consumer = new ConsumerDTO()
+                .setId("consumer-id-" + i)
+                .setUuid("consumer-uuid-" + i)
+                .setName("consumer-" + i)
+                .setUsername("admin")
+                .setEntitlementStatus("valid")
+                .setOwner(owner)
+                .setEntitlementCount(2L)
+                .setLastCheckin(new Date());
+
+            for (int f = 0; f < 20; ++f) {
+                consumer.setFact("fact." + f, "value-" + f);
+            }
+
+            for (int p = 0; p < 3; ++p) {
+                consumer.addInstalledProduct(new ConsumerInstalledProductDTO("eng-" + p, "Engineering " + p));
+            }
+
+            consumers.add(consumer);
+        }
+
+        return consumers;
+    }
+
+    private void pushFilters(Consumer<DynamicFilterData> configurator) {
+        DynamicFilterData filterData = new DynamicFilterData();
+        configurator.accept(filterData);
+
+        ResteasyProviderFactory.pushContext(DynamicFilterData.class, filterData);
+    }
+
+    @Test
+    public void testExcludeFiltersApplyToNestedProperties() throws Exception {
+        this.pushFilters(filters -> {
+            filters.excludeAttribute("providedProducts.productName");
+            filters.excludeAttribute("productAttributes");
+        });
+
+        JsonNode json = this.mapper.readTree(this.mapper.writeValueAsString(this.createPools(2)));
+
+        assertEquals(2, json.size());
+        for (JsonNode pool : json) {
+            assertTrue(pool.has("id"));
+            assertFalse(pool.has("productAttributes"));
+            assertTrue(pool.get("providedProducts").get(0).has("productId"));
+            assertFalse(pool.get("providedProducts").get(0).has("productName"));
+        }
+    }
+
+    @Test
+    public void testIncludeFiltersApplyToNestedProperties() throws Exception {
+        this.pushFilters(filters -> {
+            filters.setWhitelistMode(true);
+            filters.includeAttribute("uuid");
+            filters.includeAttribute("installedProducts.productId");
+        });
+
+        JsonNode json = this.mapper.readTree(this.mapper.writeValueAsString(this.createConsumers(2)));
+
+        for (JsonNode consumer : json) {
+            assertEquals(2, consumer.size());
+            assertTrue(consumer.has("uuid"));
+            assertEquals(1, consumer.get("installedProducts").get(0).size());
+        }
+    }
+
+    private long time(Object listing) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+            this.mapper.writeValueAsBytes(listing);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i) {
+            this.mapper.writeValueAsBytes(listing);
+        }
+
+        return (System.nanoTime() - start) / ITERATIONS / 1000000;
+    }
+
+    private void benchmark(String name, Object listing) throws Exception {
+        long unfiltered = this.time(listing);
+
+        this.pushFilters(filters -> {
+            filters.excludeAttribute("owner.href");
+            filters.excludeAttribute("facts");
+            filters.excludeAttribute("providedProducts.productName");
+        });
+        long excluded = this.time(listing);
+        ResteasyProviderFactory.popContextData(DynamicFilterData.class);
+
+        this.pushFilters(filters -> {
+            filters.setWhitelistMode(true);
+            filters.includeAttribute("id");
+            filters.includeAttribute("uuid");
+            filters.includeAttribute("owner.key");
+            filters.includeAttribute("providedProducts");
+            filters.includeAttribute("installedProducts.productId");
+        });
+        long included = this.time(listing);
+
+        log.info("Serialized {} {}: {}ms unfiltered, {}ms with excludes, {}ms with includes",
+            LISTING_SIZE, name, unfiltered, excluded, included);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "candlepin.benchmark", matches = "true")
+    public void benchmarkPoolListing() throws Exception {
+        this.benchmark("pools", this.createPools(LISTING_SIZE));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "candlepin.benchmark", matches = "true")
+    public void benchmarkConsumerListing() throws Exception {
+        this.benchmark("consumers", this.createConsumers(LISTING_SIZE));
+    }
+}
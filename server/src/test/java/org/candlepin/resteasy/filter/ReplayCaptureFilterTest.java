@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.resteasy.filter;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.replay.CaptureRecord.RequestRecord;
+import org.candlepin.replay.ReplayEndpoint;
+import org.candlepin.replay.ReplayRecorder;
+import org.candlepin.resource.HypervisorResource;
+import org.candlepin.resource.StatusResource;
+
+import org.apache.commons.io.IOUtils;
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.UriInfo;
+
+
+
+public class ReplayCaptureFilterTest {
+
+    private ReplayRecorder recorder;
+    private ResourceInfo resourceInfo;
+    private ContainerRequestContext requestContext;
+    private ReplayCaptureFilter filter;
+
+    @BeforeEach
+    public void setup() {
+        this.recorder = mock(ReplayRecorder.class);
+        this.resourceInfo = mock(ResourceInfo.class);
+        this.requestContext = mock(ContainerRequestContext.class);
+
+        UriInfo uriInfo = mock(UriInfo.class);
+        when(uriInfo.getPath()).thenReturn("/hypervisors/owner");
+        when(uriInfo.getPathParameters()).thenReturn(new MultivaluedMapImpl<>());
+        when(uriInfo.getQueryParameters()).thenReturn(new MultivaluedMapImpl<>());
+
+        when(this.requestContext.getUriInfo()).thenReturn(uriInfo);
+        when(this.requestContext.getMethod()).thenReturn("POST");
+
+        ResteasyProviderFactory.pushContext(ResourceInfo.class, this.resourceInfo);
+
+        this.filter = new ReplayCaptureFilter(this.recorder);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        ResteasyProviderFactory.clearContextData();
+    }
+
+    private void mockResourceMethod(Class<?> resourceClass, String name) {
+        Method method = Arrays.stream(resourceClass.getMethods())
+            .filter(m -> m.getName().equals(name))
+            .findFirst()
+            .orElseThrow(IllegalStateException::new);
+
+        doReturn(resourceClass).when(this.resourceInfo).getResourceClass();
+        when(this.resourceInfo.getResourceMethod()).thenReturn(method);
+    }
+
+    @Test
+    public void testNothingIsCapturedWhenDisabled() throws Exception {
+        when(this.recorder.isEnabled()).thenReturn(false);
+        this.mockResourceMethod(HypervisorResource.class, "hypervisorUpdateAsync");
+
+        this.filter.filter(this.requestContext);
+
+        verify(this.recorder, never()).begin(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void testOtherEndpointsAreNotCaptured() throws Exception {
+        when(this.recorder.isEnabled()).thenReturn(true);
+        this.mockResourceMethod(StatusResource.class, "status");
+
+        this.filter.filter(this.requestContext);
+
+        verify(this.recorder, never()).begin(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void testRequestIsCapturedAndItsBodyRestored() throws Exception {
+        String body = "{\"hypervisors\": []}";
+        RequestRecord record = new RequestRecord();
+
+        when(this.recorder.isEnabled()).thenReturn(true);
+        when(this.recorder.begin(any(), any(), any(), any(), any(), any(), any())).thenReturn(record);
+        this.mockResourceMethod(HypervisorResource.class, "hypervisorUpdateAsync");
+
+        when(this.requestContext.hasEntity()).thenReturn(true);
+        when(this.requestContext.getMediaType()).thenReturn(MediaType.TEXT_PLAIN_TYPE);
+        when(this.requestContext.getEntityStream())
+            .thenReturn(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+        this.filter.filter(this.requestContext);
+
+        verify(this.recorder).begin(eq(ReplayEndpoint.HYPERVISOR_CHECKIN), eq("POST"),
+            eq("/hypervisors/owner"), any(), any(), eq("text/plain"), eq(body));
+
+        ArgumentCaptor<InputStream> stream = ArgumentCaptor.forClass(InputStream.class);
+        verify(this.requestContext).setEntityStream(stream.capture());
+        assertEquals(body, IOUtils.toString(stream.getValue(), "UTF-8"));
+
+        verify(this.requestContext).setProperty(anyString(), eq(record));
+    }
+
+    @Test
+    public void testResponseCompletesTheCapture() {
+        RequestRecord record = new RequestRecord();
+        when(this.requestContext.getProperty(endsWith(".record"))).thenReturn(record);
+        when(this.requestContext.getProperty(endsWith(".start"))).thenReturn(System.nanoTime());
+
+        ContainerResponseContext responseContext = mock(ContainerResponseContext.class);
+        when(responseContext.getStatus()).thenReturn(202);
+
+        this.filter.filter(this.requestContext, responseContext);
+
+        verify(this.recorder).complete(eq(record), eq(202), anyLong());
+    }
+
+    @Test
+    public void testResponseOfUncapturedRequestIsIgnored() {
+        ContainerResponseContext responseContext = mock(ContainerResponseContext.class);
+
+        this.filter.filter(this.requestContext, responseContext);
+
+        verify(this.recorder, never()).complete(any(), anyInt(), anyLong());
+    }
+}
@@ -18,6 +18,7 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 import org.candlepin.TestingModules;
+import org.candlepin.cache.ProductCatalog;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.model.CertificateSerial;
 import org.candlepin.model.CertificateSerialCurator;
@@ -135,6 +136,7 @@ public class DefaultEntitlementCertServiceAdapterTest {
     @Inject private Configuration config;
     @Inject private X509ExtensionUtil extensionUtil;
     @Inject @Named("X509V3ExtensionUtilObjectMapper") private ObjectMapper mapper;
+    @Inject private ProductCatalog productCatalog;
 
     @Mock private Configuration mockConfig;
     @Mock private X509V3ExtensionUtil mockV3extensionUtil;
@@ -201,7 +203,7 @@ public class DefaultEntitlementCertServiceAdapterTest {
         );
         injector.injectMembers(this);
 
-        v3extensionUtil = new X509V3ExtensionUtil(config, entCurator, mapper);
+        v3extensionUtil = new X509V3ExtensionUtil(config, entCurator, mapper, productCatalog);
         certServiceAdapter = new DefaultEntitlementCertServiceAdapter(
             mockedPKI, extensionUtil, v3extensionUtil,
             mock(EntitlementCertificateCurator.class),
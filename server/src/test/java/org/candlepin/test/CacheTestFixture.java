@@ -16,6 +16,7 @@ package org.candlepin.test;
 
 import org.candlepin.cache.CandlepinCache;
 import org.candlepin.cache.JCacheManagerProvider;
+import org.candlepin.cache.ProductCatalog;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Module;
@@ -40,6 +41,7 @@ public class CacheTestFixture extends DatabaseTestFixture {
                  * back to the standard cache implementation.
                  */
                 bind(CandlepinCache.class);
+                bind(ProductCatalog.class);
                 bind(CacheManager.class).toProvider(JCacheManagerProvider.class).in(Singleton.class);
             }
         };
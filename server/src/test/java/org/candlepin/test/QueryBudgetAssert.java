@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.test;
+
+import org.candlepin.hibernate.QueryBudget;
+import org.candlepin.hibernate.QueryStats;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+
+
+/**
+ * Assertions for verifying that operations stay within the {@link QueryBudget} declared on their
+ * resource methods, so accidental N+1 query patterns fail the build rather than surfacing in
+ * production.
+ */
+public final class QueryBudgetAssert {
+
+    private QueryBudgetAssert() {
+        // Intentionally left empty
+    }
+
+    /**
+     * Runs the given operation, collecting the database statistics of the statements it issues.
+     *
+     * @param operation
+     *  the operation to measure
+     *
+     * @return
+     *  the database statistics collected while running the operation
+     */
+    public static QueryStats measure(Runnable operation) {
+        QueryStats stats = QueryStats.begin();
+
+        try {
+            operation.run();
+        }
+        finally {
+            stats.end();
+        }
+
+        return stats;
+    }
+
+    /**
+     * Fetches the statement budget declared on the given resource method.
+     *
+     * @param resourceClass
+     *  the resource class declaring the method
+     *
+     * @param methodName
+     *  the name of the resource method
+     *
+     * @throws AssertionError
+     *  if the class does not declare a method with the given name annotated with QueryBudget
+     *
+     * @return
+     *  the statement budget of the method
+     */
+    public static int getBudget(Class<?> resourceClass, String methodName) {
+        for (Method method : resourceClass.getMethods()) {
+            QueryBudget budget = method.getAnnotation(QueryBudget.class);
+
+            if (budget != null && method.getName().equals(methodName)) {
+                return budget.value();
+            }
+        }
+
+        throw new AssertionError(String.format("%s.%s does not declare a query budget",
+            resourceClass.getSimpleName(), methodName));
+    }
+
+    /**
+     * Runs the given operation and verifies it issues no more statements than the budget declared on
+     * the given resource method.
+     *
+     * @param resourceClass
+     *  the resource class declaring the method
+     *
+     * @param methodName
+     *  the name of the resource method the operation invokes
+     *
+     * @param operation
+     *  the operation to measure
+     *
+     * @throws AssertionError
+     *  if the operation exceeds the budget of the resource method
+     *
+     * @return
+     *  the database statistics collected while running the operation
+     */
+    public static QueryStats assertWithinBudget(Class<?> resourceClass, String methodName,
+        Runnable operation) {
+
+        int budget = getBudget(resourceClass, methodName);
+        QueryStats stats = measure(operation);
+
+        if (stats.getStatementCount() > budget) {
+            StringBuilder builder = new StringBuilder();
+            for (Map.Entry<String, Integer> entry : stats.getRepeatedStatements(2).entrySet()) {
+                builder.append("\n  ").append(entry.getValue()).append("x: ").append(entry.getKey());
+            }
+
+            throw new AssertionError(String.format(
+                "%s.%s issued %d statements, exceeding its budget of %d; repeated statements:%s",
+                resourceClass.getSimpleName(), methodName, stats.getStatementCount(), budget, builder));
+        }
+
+        return stats;
+    }
+}
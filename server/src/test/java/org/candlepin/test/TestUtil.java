@@ -52,6 +52,8 @@ import org.candlepin.util.Util;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.FileUtils;
@@ -63,6 +65,7 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -706,6 +709,43 @@ public class TestUtil {
         return tree1.equals(tree2);
     }
 
+    /**
+     * Converts the given object to a JSON tree using the given mapper, sorting the elements of
+     * every array in the tree. Trees built from equal collections with differing iteration orders
+     * can then be compared with equals.
+     *
+     * @param mapper
+     *  the mapper to use to serialize the object
+     *
+     * @param object
+     *  the object to convert
+     *
+     * @return
+     *  a JSON tree representing the object, with all of its arrays sorted
+     */
+    public static JsonNode toSortedJsonTree(ObjectMapper mapper, Object object) {
+        return sortJsonArrays(mapper.valueToTree(object));
+    }
+
+    private static JsonNode sortJsonArrays(JsonNode node) {
+        if (node.isObject()) {
+            ObjectNode sorted = JsonNodeFactory.instance.objectNode();
+            node.fields().forEachRemaining(field ->
+                sorted.set(field.getKey(), sortJsonArrays(field.getValue())));
+            return sorted;
+        }
+
+        if (node.isArray()) {
+            List<JsonNode> elements = new ArrayList<>();
+            node.elements().forEachRemaining(element -> elements.add(sortJsonArrays(element)));
+            elements.sort(Comparator.comparing(JsonNode::toString));
+
+            return JsonNodeFactory.instance.arrayNode().addAll(elements);
+        }
+
+        return node;
+    }
+
     public static String getStringOfSize(int size) {
         char[] charArray = new char[size];
         Arrays.fill(charArray, 'x');
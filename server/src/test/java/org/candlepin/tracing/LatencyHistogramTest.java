@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.tracing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * Test suite for the LatencyHistogram class
+ */
+public class LatencyHistogramTest {
+
+    private static long millis(long value) {
+        return TimeUnit.MILLISECONDS.toNanos(value);
+    }
+
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        HistogramSnapshot snapshot = histogram.snapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0.0, snapshot.getMeanMs());
+        assertEquals(0.0, snapshot.getP99Ms());
+    }
+
+    @Test
+    public void testCountsAndTotals() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(millis(1));
+        histogram.record(millis(3));
+        histogram.record(-5);
+
+        assertEquals(3, histogram.getCount());
+        assertEquals(millis(4), histogram.getTotalNanos());
+        assertEquals(millis(3), histogram.getMaxNanos());
+    }
+
+    @Test
+    public void testQuantilesAreBucketUpperBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (int i = 0; i < 99; ++i) {
+            histogram.record(millis(1));
+        }
+
+        histogram.record(millis(1000));
+
+        // 1ms falls in the (512us, 1024us] bucket
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1024), histogram.getQuantileNanos(0.50));
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1024), histogram.getQuantileNanos(0.99));
+
+        // The upper bound of the top bucket is capped to the observed maximum
+        assertEquals(millis(1000), histogram.getQuantileNanos(1.0));
+    }
+
+    @Test
+    public void testQuantileNeverExceedsMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(millis(5));
+
+        assertEquals(millis(5), histogram.getQuantileNanos(0.5));
+    }
+
+    @Test
+    public void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(millis(5));
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getQuantileNanos(0.5));
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.tracing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.hibernate.QueryStats;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+
+
+/**
+ * Test suite for the TraceMetrics class
+ */
+public class TraceMetricsTest {
+
+    private CandlepinCommonTestConfig config;
+
+    @BeforeEach
+    public void init() {
+        this.config = new CandlepinCommonTestConfig();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        Tracer.clear();
+    }
+
+    @Test
+    public void testRecordsTraceAndPhases() {
+        TraceMetrics metrics = new TraceMetrics(this.config);
+
+        Span trace = metrics.startTrace(Span.Phase.REQUEST, "GET");
+        trace.setName("GET StatusResource.status");
+        Tracer.span(Span.Phase.DB, "Rules", "get").close();
+        metrics.record(trace);
+
+        assertFalse(Tracer.isActive());
+
+        Map<String, HistogramSnapshot> traces = metrics.getTraceHistograms();
+        assertEquals(1, traces.size());
+        assertEquals(1, traces.get("REQUEST GET StatusResource.status").getCount());
+
+        Map<String, HistogramSnapshot> phases = metrics.getPhaseHistograms();
+        assertEquals(1, phases.get("DB").getCount());
+        assertEquals(1, phases.get("REQUEST").getCount());
+        assertEquals(0, phases.get("RULES").getCount());
+    }
+
+    @Test
+    public void testIgnoresNonRootSpans() {
+        TraceMetrics metrics = new TraceMetrics(this.config);
+
+        Span trace = metrics.startTrace(Span.Phase.REQUEST, "GET");
+        Span job = metrics.startTrace(Span.Phase.JOB, "EntitlerJob");
+        metrics.record(job);
+        metrics.record(Span.NOOP);
+        metrics.record(null);
+
+        assertTrue(metrics.getTraceHistograms().isEmpty());
+
+        metrics.record(trace);
+        assertEquals(1, metrics.getTraceHistograms().size());
+    }
+
+    @Test
+    public void testDisabledTracing() {
+        this.config.setProperty(ConfigProperties.TRACING_ENABLED, "false");
+        TraceMetrics metrics = new TraceMetrics(this.config);
+
+        Span trace = metrics.startTrace(Span.Phase.REQUEST, "GET");
+        assertSame(Span.NOOP, trace);
+        assertFalse(Tracer.isActive());
+
+        metrics.record(trace);
+        assertTrue(metrics.getTraceHistograms().isEmpty());
+    }
+
+    @Test
+    public void testTraceNamesAreBounded() {
+        TraceMetrics metrics = new TraceMetrics(this.config);
+
+        for (int i = 0; i < TraceMetrics.MAX_TRACE_NAMES + 5; ++i) {
+            metrics.record(metrics.startTrace(Span.Phase.JOB, "job-" + i));
+        }
+
+        Map<String, HistogramSnapshot> traces = metrics.getTraceHistograms();
+        assertEquals(TraceMetrics.MAX_TRACE_NAMES + 1, traces.size());
+        assertEquals(5, traces.get(TraceMetrics.OTHER_TRACES).getCount());
+    }
+
+    @Test
+    public void testRecordsQueryStatsPerTrace() {
+        TraceMetrics metrics = new TraceMetrics(this.config);
+
+        Span trace = metrics.startTrace(Span.Phase.REQUEST, "GET");
+        QueryStats stats = QueryStats.current();
+        assertNotNull(stats);
+        stats.setBudget(10);
+
+        metrics.record(trace);
+        assertNull(QueryStats.current());
+
+        Map<String, QueryMetricsSnapshot> queries = metrics.getQueryMetrics();
+        assertEquals(1, queries.size());
+
+        QueryMetricsSnapshot snapshot = queries.get("REQUEST GET");
+        assertEquals(1, snapshot.getCount());
+        assertEquals(0, snapshot.getMaxStatements());
+        assertEquals(10, snapshot.getBudget());
+        assertEquals(0, snapshot.getOverBudget());
+    }
+
+    @Test
+    public void testReset() {
+        TraceMetrics metrics = new TraceMetrics(this.config);
+        metrics.record(metrics.startTrace(Span.Phase.JOB, "EntitlerJob"));
+
+        metrics.reset();
+
+        assertTrue(metrics.getTraceHistograms().isEmpty());
+        assertEquals(0, metrics.getPhaseHistograms().get("JOB").getCount());
+        assertTrue(metrics.getQueryMetrics().isEmpty());
+    }
+}
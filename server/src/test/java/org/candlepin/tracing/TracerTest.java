@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.tracing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+
+
+/**
+ * Test suite for the Tracer and Span classes
+ */
+public class TracerTest {
+
+    @AfterEach
+    public void cleanup() {
+        Tracer.clear();
+    }
+
+    @Test
+    public void testSpansAreNoopWithoutTrace() {
+        assertFalse(Tracer.isActive());
+
+        try (Span span = Tracer.span(Span.Phase.DB, "Pool", "get")) {
+            assertSame(Span.NOOP, span);
+        }
+
+        assertFalse(Tracer.isActive());
+        assertNull(Tracer.current());
+    }
+
+    @Test
+    public void testSpansNestUnderCurrentSpan() {
+        Span root = Tracer.startTrace(Span.Phase.REQUEST, "GET");
+        assertTrue(root.isRoot());
+
+        try (Span rules = Tracer.span(Span.Phase.RULES, "rules", "pre_quantity")) {
+            assertSame(rules, Tracer.current());
+            assertSame(root, rules.getParent());
+
+            try (Span db = Tracer.span(Span.Phase.DB, "Pool", "get")) {
+                assertSame(rules, db.getParent());
+                assertSame(root, db.getRoot());
+                assertFalse(db.isRoot());
+            }
+
+            assertSame(rules, Tracer.current());
+        }
+
+        assertSame(root, Tracer.current());
+        root.close();
+
+        assertFalse(Tracer.isActive());
+        assertEquals(1, root.getChildren().size());
+        assertEquals("rules.pre_quantity", root.getChildren().get(0).getName());
+        assertEquals("Pool.get", root.getChildren().get(0).getChildren().get(0).getName());
+    }
+
+    @Test
+    public void testNestedTraceIsNotRoot() {
+        Span root = Tracer.startTrace(Span.Phase.REQUEST, "GET");
+        Span job = Tracer.startTrace(Span.Phase.JOB, "RefreshPoolsJob");
+
+        assertFalse(job.isRoot());
+        assertSame(root, job.getParent());
+
+        job.close();
+        root.close();
+    }
+
+    @Test
+    public void testPhaseTimesAddUpToTraceDuration() throws Exception {
+        Span root = Tracer.startTrace(Span.Phase.REQUEST, "GET");
+
+        try (Span db = Tracer.span(Span.Phase.DB, "Pool", "lockAndLoad")) {
+            Thread.sleep(5);
+
+            try (Span crypto = Tracer.span(Span.Phase.CRYPTO, "pki.createX509Certificate")) {
+                Thread.sleep(5);
+            }
+        }
+
+        root.close();
+
+        long db = root.getPhaseNanos(Span.Phase.DB);
+        long crypto = root.getPhaseNanos(Span.Phase.CRYPTO);
+        long request = root.getPhaseNanos(Span.Phase.REQUEST);
+
+        assertTrue(db > 0);
+        assertTrue(crypto > 0);
+        assertEquals(0, root.getPhaseNanos(Span.Phase.RULES));
+        assertEquals(root.getDurationNanos(), db + crypto + request);
+    }
+
+    @Test
+    public void testClosingParentAbandonsOpenChildren() {
+        Span root = Tracer.startTrace(Span.Phase.REQUEST, "GET");
+        Span parent = Tracer.span(Span.Phase.METHOD, "parent");
+        Tracer.span(Span.Phase.DB, "leaked");
+
+        parent.close();
+        assertSame(root, Tracer.current());
+
+        root.close();
+        assertFalse(Tracer.isActive());
+    }
+
+    @Test
+    public void testCloseIsIdempotent() {
+        Span root = Tracer.startTrace(Span.Phase.REQUEST, "GET");
+        Span child = Tracer.span(Span.Phase.DB, "Pool.get");
+
+        child.close();
+        long duration = child.getDurationNanos();
+        child.close();
+
+        assertTrue(child.isClosed());
+        assertEquals(duration, child.getDurationNanos());
+        assertSame(root, Tracer.current());
+        root.close();
+    }
+
+    @Test
+    public void testChildrenBeyondLimitAreElided() {
+        Span root = Tracer.startTrace(Span.Phase.REQUEST, "GET");
+
+        for (int i = 0; i < Span.MAX_RETAINED_CHILDREN + 10; ++i) {
+            Tracer.span(Span.Phase.DB, "Pool", "get").close();
+        }
+
+        root.close();
+
+        assertEquals(Span.MAX_RETAINED_CHILDREN, root.getChildren().size());
+        assertEquals(10, root.getElidedChildren());
+        assertTrue(root.toTreeString().contains("10 more children elided"));
+    }
+
+    @Test
+    public void testRenameRoot() {
+        Span root = Tracer.startTrace(Span.Phase.REQUEST, "GET");
+
+        try (Span span = Tracer.span(Span.Phase.METHOD, "child")) {
+            span.getRoot().setName("GET StatusResource.status");
+        }
+
+        root.close();
+        assertEquals("GET StatusResource.status", root.getName());
+        assertTrue(root.toTreeString().startsWith("REQUEST GET StatusResource.status: "));
+    }
+
+    @Test
+    public void testCallRecordsSpanAroundOperation() {
+        Span root = Tracer.startTrace(Span.Phase.REQUEST, "GET");
+
+        String result = Tracer.call(Span.Phase.DB, "Pool", "get", () -> {
+            assertEquals("Pool.get", Tracer.current().getName());
+            assertSame(root, Tracer.current().getParent());
+            return "pool";
+        });
+
+        assertEquals("pool", result);
+        assertSame(root, Tracer.current());
+        assertEquals(1, root.getChildren().size());
+        assertTrue(root.getChildren().get(0).isClosed());
+    }
+
+    @Test
+    public void testRunClosesSpanWhenActionFails() {
+        Span root = Tracer.startTrace(Span.Phase.REQUEST, "GET");
+
+        assertThrows(IOException.class, () -> Tracer.run(Span.Phase.CRYPTO, "pki.sign", () -> {
+            throw new IOException("failed");
+        }));
+
+        assertSame(root, Tracer.current());
+        assertTrue(root.getChildren().get(0).isClosed());
+    }
+
+    @Test
+    public void testCallWithoutTrace() {
+        assertEquals(Integer.valueOf(3), Tracer.call(Span.Phase.DB, "query", () -> 3));
+        assertFalse(Tracer.isActive());
+    }
+}
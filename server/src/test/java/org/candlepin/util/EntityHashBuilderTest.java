@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+
+/**
+ * Test suite for the EntityHashBuilder class
+ */
+public class EntityHashBuilderTest {
+
+    @Test
+    public void testHashIsStable() {
+        long hash1 = new EntityHashBuilder().append("id").append(5L).append(true).toHash();
+        long hash2 = new EntityHashBuilder().append("id").append(5L).append(true).toHash();
+
+        assertEquals(hash1, hash2);
+    }
+
+    @Test
+    public void testHashIsIndependentOfValueBoundaries() {
+        long hash1 = new EntityHashBuilder().append("ab").append("c").toHash();
+        long hash2 = new EntityHashBuilder().append("a").append("bc").toHash();
+
+        assertNotEquals(hash1, hash2);
+    }
+
+    @Test
+    public void testNullAndEmptyValuesHashDifferently() {
+        long hash1 = new EntityHashBuilder().append((String) null).toHash();
+        long hash2 = new EntityHashBuilder().append("").toHash();
+        long hash3 = new EntityHashBuilder().append((Long) null).toHash();
+        long hash4 = new EntityHashBuilder().append(0L).toHash();
+
+        assertNotEquals(hash1, hash2);
+        assertNotEquals(hash3, hash4);
+    }
+
+    @Test
+    public void testStringCollectionOrderIsIgnored() {
+        long hash1 = new EntityHashBuilder().appendStrings(Arrays.asList("a", "b", null)).toHash();
+        long hash2 = new EntityHashBuilder().appendStrings(Arrays.asList(null, "b", "a")).toHash();
+        long hash3 = new EntityHashBuilder().appendStrings(Arrays.asList("a", "b")).toHash();
+
+        assertEquals(hash1, hash2);
+        assertNotEquals(hash1, hash3);
+    }
+
+    @Test
+    public void testHashCollectionOrderIsIgnored() {
+        long hash1 = new EntityHashBuilder().appendHashes(Arrays.asList(3L, 1L, 2L)).toHash();
+        long hash2 = new EntityHashBuilder().appendHashes(Arrays.asList(1L, 2L, 3L)).toHash();
+
+        assertEquals(hash1, hash2);
+    }
+
+    @Test
+    public void testMapOrderIsIgnored() {
+        Map<String, String> map1 = new LinkedHashMap<>();
+        map1.put("a", "1");
+        map1.put("b", "2");
+
+        Map<String, String> map2 = new HashMap<>();
+        map2.put("b", "2");
+        map2.put("a", "1");
+
+        long hash1 = new EntityHashBuilder().appendMap(map1).toHash();
+        long hash2 = new EntityHashBuilder().appendMap(map2).toHash();
+
+        assertEquals(hash1, hash2);
+
+        map2.put("a", "2");
+        assertNotEquals(hash1, new EntityHashBuilder().appendMap(map2).toHash());
+    }
+
+    @Test
+    public void testMapEntriesAreNotConfusedWithValues() {
+        Map<String, String> map = new HashMap<>();
+        map.put("a", "b");
+
+        long hash1 = new EntityHashBuilder().appendMap(map).toHash();
+        long hash2 = new EntityHashBuilder().appendStrings(Arrays.asList("a", "b")).toHash();
+
+        assertNotEquals(hash1, hash2);
+    }
+}
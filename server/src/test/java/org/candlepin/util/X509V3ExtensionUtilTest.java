@@ -24,6 +24,8 @@ import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.name.Named;
 import org.candlepin.TestingModules;
+import org.candlepin.cache.ProductCatalog;
+import org.candlepin.cache.ProductSnapshot;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.Content;
@@ -42,6 +44,7 @@ import org.candlepin.util.X509V3ExtensionUtil.PathNode;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -58,6 +61,7 @@ public class X509V3ExtensionUtilTest {
     private EntitlementCurator ec;
     private X509V3ExtensionUtil util;
     @Inject @Named("X509V3ExtensionUtilObjectMapper") private ObjectMapper mapper;
+    @Inject private ProductCatalog productCatalog;
 
     @Before
     public void init() {
@@ -69,7 +73,7 @@ public class X509V3ExtensionUtilTest {
             new TestingModules.StandardTest()
         );
         injector.injectMembers(this);
-        util = new X509V3ExtensionUtil(config, ec, this.mapper);
+        util = new X509V3ExtensionUtil(config, ec, this.mapper, this.productCatalog);
     }
 
     @Test
@@ -144,6 +148,47 @@ public class X509V3ExtensionUtilTest {
         assertEquals("file://some/path", util.createFullContentPath("/this/is", pc));
     }
 
+    @Test
+    public void filterContentByContentArchMatchesForEntitiesAndSnapshots() {
+        Product product = TestUtil.createProduct("prod", "product");
+        product.setAttribute(Product.Attributes.ARCHITECTURE, "x86_64");
+
+        Content wrongArch = TestUtil.createContent("wrong_arch");
+        wrongArch.setArches("ppc64,s390x");
+        Content inheritedArch = TestUtil.createContent("inherited_arch");
+        inheritedArch.setArches("");
+        Content multiArch = TestUtil.createContent("multi_arch");
+        multiArch.setArches("ppc64,x86_64");
+
+        // Product content is hashed on content UUID
+        wrongArch.setUuid("wrong_arch_uuid");
+        inheritedArch.setUuid("inherited_arch_uuid");
+        multiArch.setUuid("multi_arch_uuid");
+
+        product.addContent(wrongArch, true);
+        product.addContent(inheritedArch, true);
+        product.addContent(multiArch, true);
+
+        Consumer consumer = new Consumer();
+        consumer.setFact("uname.machine", "x86_64");
+
+        Set<String> entityIds = new HashSet<>();
+        for (ProductContent pc : util.filterContentByContentArch(
+            new HashSet<>(product.getProductContent()), consumer, product)) {
+            entityIds.add(pc.getContent().getId());
+        }
+
+        ProductSnapshot snapshot = this.productCatalog.getProduct(product);
+        Set<String> snapshotIds = new HashSet<>();
+        for (ProductSnapshot.ContentEntry entry : util.filterContentByContentArch(snapshot.getContent(),
+            new ArrayList<>(), consumer, snapshot.getArches(), pc -> pc.getContent().getArches())) {
+            snapshotIds.add(entry.getContent().getId());
+        }
+
+        assertEquals(new HashSet<>(Arrays.asList("inherited_arch", "multi_arch")), entityIds);
+        assertEquals(entityIds, snapshotIds);
+    }
+
     @Test
     public void productWithBrandName() {
         String engProdId = "1000";